@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of signing an authenticated request with the {@link RequestSigner}, against
+ * the code the Exchange Adapters used before it.
+ *
+ * <p>The Bitstamp benchmarks sign with HmacSHA256 to upper case hex. The Kraken benchmarks sign
+ * the request path and the SHA-256 hash of the post data with HmacSHA512 to Base64; itBit signs the
+ * same way. Run with {@code -prof gc} to see the bytes allocated per request too.
+ *
+ * @author gazbert
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestSignerBenchmark {
+
+  private static final byte[] SECRET =
+      "my-api-secret-my-api-secret-my-api-secret".getBytes(StandardCharsets.UTF_8);
+  private static final String BITSTAMP_MESSAGE = "1442080734391" + "123456" + "my-api-key";
+  private static final String KRAKEN_PATH = "/0/private/AddOrder";
+  private static final String KRAKEN_POST_DATA =
+      "1442080734391nonce=1442080734391&pair=XXBTZUSD&type=buy&ordertype=limit"
+          + "&price=9123.45&volume=0.5";
+
+  private RequestSigner bitstampSigner;
+  private RequestSigner krakenSigner;
+  private Mac bitstampMac;
+  private Mac krakenMac;
+
+  /**
+   * Creates the signers, and the Macs the adapters used to keep, once per thread.
+   *
+   * @throws NoSuchAlgorithmException if an algorithm is not installed.
+   * @throws InvalidKeyException if the secret is not a valid key.
+   */
+  @Setup
+  public void setUp() throws NoSuchAlgorithmException, InvalidKeyException {
+    bitstampSigner = RequestSigner.forHmac("HmacSHA256", SECRET);
+    krakenSigner = RequestSigner.forHmac("HmacSHA512", SECRET);
+    bitstampMac = Mac.getInstance("HmacSHA256");
+    bitstampMac.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+    krakenMac = Mac.getInstance("HmacSHA512");
+    krakenMac.init(new SecretKeySpec(SECRET, "HmacSHA512"));
+  }
+
+  /**
+   * Signs a Bitstamp request with the request signer.
+   *
+   * @return the signature.
+   */
+  @Benchmark
+  public String bitstampHmacSha256ToHex() {
+    return bitstampSigner.signToHex(BITSTAMP_MESSAGE, true);
+  }
+
+  /**
+   * Signs a Bitstamp request the way the adapter did before the request signer.
+   *
+   * @return the signature.
+   */
+  @Benchmark
+  public String bitstampHmacSha256ToHexBefore() {
+    final byte[] rawHmac = bitstampMac.doFinal(BITSTAMP_MESSAGE.getBytes(StandardCharsets.UTF_8));
+    final StringBuilder hexString = new StringBuilder();
+    for (final byte aByte : rawHmac) {
+      hexString.append(String.format("%02x", aByte & 0xff));
+    }
+    return hexString.toString().toUpperCase();
+  }
+
+  /**
+   * Signs a Kraken request with the request signer.
+   *
+   * @return the signature.
+   */
+  @Benchmark
+  public String krakenHmacSha512WithSha256ToBase64() {
+    return krakenSigner.signWithSha256ToBase64(KRAKEN_PATH, KRAKEN_POST_DATA);
+  }
+
+  /**
+   * Signs a Kraken request the way the adapter did before the request signer.
+   *
+   * @return the signature.
+   * @throws NoSuchAlgorithmException if SHA-256 is not installed.
+   */
+  @Benchmark
+  public String krakenHmacSha512WithSha256ToBase64Before() throws NoSuchAlgorithmException {
+    final byte[] pathInBytes = KRAKEN_PATH.getBytes(StandardCharsets.UTF_8);
+    final MessageDigest md = MessageDigest.getInstance("SHA-256");
+    md.update(KRAKEN_POST_DATA.getBytes(StandardCharsets.UTF_8));
+    final byte[] messageHash = md.digest();
+    krakenMac.reset();
+    krakenMac.update(pathInBytes);
+    krakenMac.update(messageHash);
+    return Base64.getEncoder().encodeToString(krakenMac.doFinal());
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of updating each indicator with a new price and reading its value, for a
+ * range of periods.
+ *
+ * <p>The indicators are updated in constant time, so the cost should not change with the period.
+ * For comparison, {@link #simpleMovingAverageRecomputed()} sums the whole window on every update,
+ * like an indicator recomputed from its candles each time, and gets slower as the period grows.
+ *
+ * <p>The indicators are warmed up before they are measured, so their windows are full. Run with
+ * {@code -prof gc} to check that updates do not allocate.
+ *
+ * @author gazbert
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IndicatorBenchmark {
+
+  /* More prices than the longest period; a power of 2, so the next index is a mask away. */
+  private static final int PRICE_COUNT = 8192;
+  private static final int PRICE_MASK = PRICE_COUNT - 1;
+
+  /** The period of the indicators, and the slow period of the MACD. */
+  @Param({"14", "200", "5000"})
+  public int period;
+
+  private final double[] prices = new double[PRICE_COUNT];
+  private final double[] quantities = new double[PRICE_COUNT];
+  private int next;
+
+  private SimpleMovingAverage simpleMovingAverage;
+  private ExponentialMovingAverage exponentialMovingAverage;
+  private RelativeStrengthIndex relativeStrengthIndex;
+  private BollingerBands bollingerBands;
+  private AverageTrueRange averageTrueRange;
+  private VolumeWeightedAveragePrice volumeWeightedAveragePrice;
+  private MovingAverageConvergenceDivergence movingAverageConvergenceDivergence;
+
+  /** Creates a random walk of prices and fills the indicators' windows with it. */
+  @Setup
+  public void setUp() {
+    final Random random = new Random(42);
+    double price = 10000;
+    for (int i = 0; i < PRICE_COUNT; i++) {
+      price += random.nextGaussian() * 10;
+      prices[i] = price;
+      quantities[i] = random.nextDouble() * 2;
+    }
+
+    simpleMovingAverage = new SimpleMovingAverage(period);
+    exponentialMovingAverage = new ExponentialMovingAverage(period);
+    relativeStrengthIndex = new RelativeStrengthIndex(period);
+    bollingerBands = new BollingerBands(period, 2);
+    averageTrueRange = new AverageTrueRange(period);
+    volumeWeightedAveragePrice = new VolumeWeightedAveragePrice(period);
+    movingAverageConvergenceDivergence =
+        new MovingAverageConvergenceDivergence(period / 2, period, 9);
+    for (int i = 0; i < PRICE_COUNT; i++) {
+      simpleMovingAverage();
+      exponentialMovingAverage();
+      relativeStrengthIndex();
+      bollingerBands();
+      averageTrueRange();
+      volumeWeightedAveragePrice();
+      movingAverageConvergenceDivergence();
+    }
+  }
+
+  /**
+   * Updates the SMA.
+   *
+   * @return the SMA.
+   */
+  @Benchmark
+  public double simpleMovingAverage() {
+    simpleMovingAverage.update(nextPrice());
+    return simpleMovingAverage.getValue();
+  }
+
+  /**
+   * Computes the SMA by summing the whole window each time.
+   *
+   * @return the SMA.
+   */
+  @Benchmark
+  public double simpleMovingAverageRecomputed() {
+    final int latest = next++;
+    double sum = 0;
+    for (int i = 0; i < period; i++) {
+      sum += prices[(latest - i) & PRICE_MASK];
+    }
+    return sum / period;
+  }
+
+  /**
+   * Updates the EMA.
+   *
+   * @return the EMA.
+   */
+  @Benchmark
+  public double exponentialMovingAverage() {
+    exponentialMovingAverage.update(nextPrice());
+    return exponentialMovingAverage.getValue();
+  }
+
+  /**
+   * Updates the RSI.
+   *
+   * @return the RSI.
+   */
+  @Benchmark
+  public double relativeStrengthIndex() {
+    relativeStrengthIndex.update(nextPrice());
+    return relativeStrengthIndex.getValue();
+  }
+
+  /**
+   * Updates the Bollinger Bands.
+   *
+   * @return the upper band.
+   */
+  @Benchmark
+  public double bollingerBands() {
+    bollingerBands.update(nextPrice());
+    return bollingerBands.getUpper();
+  }
+
+  /**
+   * Updates the ATR with a price range around the next price.
+   *
+   * @return the ATR.
+   */
+  @Benchmark
+  public double averageTrueRange() {
+    final double price = nextPrice();
+    averageTrueRange.update(price + 5, price - 5, price);
+    return averageTrueRange.getValue();
+  }
+
+  /**
+   * Updates the VWAP with a trade.
+   *
+   * @return the VWAP.
+   */
+  @Benchmark
+  public double volumeWeightedAveragePrice() {
+    final int index = next++ & PRICE_MASK;
+    volumeWeightedAveragePrice.update(prices[index], quantities[index]);
+    return volumeWeightedAveragePrice.getValue();
+  }
+
+  /**
+   * Updates the MACD.
+   *
+   * @return the MACD histogram.
+   */
+  @Benchmark
+  public double movingAverageConvergenceDivergence() {
+    movingAverageConvergenceDivergence.update(nextPrice());
+    return movingAverageConvergenceDivergence.getHistogram();
+  }
+
+  private double nextPrice() {
+    return prices[next++ & PRICE_MASK];
+  }
+}
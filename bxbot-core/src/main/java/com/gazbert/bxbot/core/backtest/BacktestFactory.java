@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.gazbert.bxbot.strategy.api.IStrategyConfigItems;
+import com.gazbert.bxbot.strategy.api.TradingStrategy;
+import java.util.List;
+
+/**
+ * Creates the exchange and strategies for each backtest in a {@link ParameterSweep}. Backtests run
+ * in parallel, so each call must return new instances that share no mutable state.
+ *
+ * @author gazbert
+ */
+public interface BacktestFactory {
+
+  /**
+   * Creates the exchange for a backtest, with its markets added and balances deposited.
+   *
+   * @return a new exchange.
+   */
+  ReplayExchangeAdapter createExchangeAdapter();
+
+  /**
+   * Creates and initialises the strategies for a backtest.
+   *
+   * @param exchangeAdapter the exchange the strategies trade on.
+   * @param config the config items for this backtest.
+   * @return new strategies.
+   */
+  List<TradingStrategy> createTradingStrategies(
+      ReplayExchangeAdapter exchangeAdapter, IStrategyConfigItems config);
+}
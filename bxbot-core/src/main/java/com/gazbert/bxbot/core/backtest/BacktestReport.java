@@ -0,0 +1,282 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.gazbert.bxbot.domain.transaction.TransactionEntry;
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.google.common.base.MoreObjects;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The results of a backtest. The order and fill counts and the volumes are built from the {@link
+ * TransactionEntry} records of the orders sent and the fills made.
+ *
+ * @author gazbert
+ */
+public final class BacktestReport {
+
+  private static final BigDecimal ONE_HUNDRED = new BigDecimal("100");
+
+  private final long startTime;
+  private final long endTime;
+  private final long eventCount;
+  private final long tradeCycleCount;
+  private final String valuationCurrency;
+  private final BigDecimal startingValue;
+  private final BigDecimal endingValue;
+  private final BigDecimal maxDrawdownPercentage;
+  private final BalanceInfo balanceInfo;
+  private final Map<String, BigDecimal> feesPaid;
+  private final List<TransactionEntry> transactions;
+
+  private final int ordersSent;
+  private final int ordersFilled;
+  private final int fillCount;
+  private final BigDecimal buyVolume;
+  private final BigDecimal sellVolume;
+
+  BacktestReport(
+      long startTime,
+      long endTime,
+      long eventCount,
+      long tradeCycleCount,
+      String valuationCurrency,
+      BigDecimal startingValue,
+      BigDecimal endingValue,
+      BigDecimal maxDrawdownPercentage,
+      BalanceInfo balanceInfo,
+      Map<String, BigDecimal> feesPaid,
+      List<TransactionEntry> transactions) {
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.eventCount = eventCount;
+    this.tradeCycleCount = tradeCycleCount;
+    this.valuationCurrency = valuationCurrency;
+    this.startingValue = startingValue;
+    this.endingValue = endingValue;
+    this.maxDrawdownPercentage = maxDrawdownPercentage;
+    this.balanceInfo = balanceInfo;
+    this.feesPaid = Collections.unmodifiableMap(feesPaid);
+    this.transactions = Collections.unmodifiableList(new ArrayList<>(transactions));
+
+    int sent = 0;
+    int fills = 0;
+    final Set<String> filledOrderIds = new HashSet<>();
+    BigDecimal buys = BigDecimal.ZERO;
+    BigDecimal sells = BigDecimal.ZERO;
+    for (final TransactionEntry transaction : transactions) {
+      if (TransactionEntry.Status.SENT.toString().equals(transaction.getStatus())) {
+        sent++;
+      } else {
+        fills++;
+        filledOrderIds.add(transaction.getOrderId());
+        final BigDecimal value = BigDecimal.valueOf(transaction.getValue());
+        if (OrderType.BUY.getStringValue().equals(transaction.getType())) {
+          buys = buys.add(value);
+        } else {
+          sells = sells.add(value);
+        }
+      }
+    }
+    ordersSent = sent;
+    ordersFilled = filledOrderIds.size();
+    fillCount = fills;
+    buyVolume = buys;
+    sellVolume = sells;
+  }
+
+  /**
+   * Returns the time of the first event replayed.
+   *
+   * @return the start time, in millis since the epoch.
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Returns the time of the last event replayed.
+   *
+   * @return the end time, in millis since the epoch.
+   */
+  public long getEndTime() {
+    return endTime;
+  }
+
+  public long getEventCount() {
+    return eventCount;
+  }
+
+  public long getTradeCycleCount() {
+    return tradeCycleCount;
+  }
+
+  public String getValuationCurrency() {
+    return valuationCurrency;
+  }
+
+  /**
+   * Returns the value of the balances at the start of the first trade cycle.
+   *
+   * @return the starting value, in the valuation currency.
+   */
+  public BigDecimal getStartingValue() {
+    return startingValue;
+  }
+
+  /**
+   * Returns the value of the balances at the end of the replay.
+   *
+   * @return the ending value, in the valuation currency.
+   */
+  public BigDecimal getEndingValue() {
+    return endingValue;
+  }
+
+  public BigDecimal getProfit() {
+    return endingValue.subtract(startingValue);
+  }
+
+  /**
+   * Returns the profit as a percentage of the starting value.
+   *
+   * @return the return, or 0 if the starting value is 0.
+   */
+  public BigDecimal getReturnPercentage() {
+    if (startingValue.signum() == 0) {
+      return BigDecimal.ZERO;
+    }
+    return getProfit().multiply(ONE_HUNDRED).divide(startingValue, MathContext.DECIMAL64);
+  }
+
+  /**
+   * Returns the largest fall in value from a peak, measured after each trade cycle.
+   *
+   * @return the maximum drawdown, as a percentage of the peak value.
+   */
+  public BigDecimal getMaxDrawdownPercentage() {
+    return maxDrawdownPercentage;
+  }
+
+  /**
+   * Returns the balances at the end of the replay.
+   *
+   * @return the balances.
+   */
+  public BalanceInfo getBalanceInfo() {
+    return balanceInfo;
+  }
+
+  public Map<String, BigDecimal> getFeesPaid() {
+    return feesPaid;
+  }
+
+  /**
+   * Returns the orders sent and the fills made, in the order they happened.
+   *
+   * @return the transactions.
+   */
+  public List<TransactionEntry> getTransactions() {
+    return transactions;
+  }
+
+  public int getOrdersSent() {
+    return ordersSent;
+  }
+
+  /**
+   * Returns the number of orders that were filled, in full or in part.
+   *
+   * @return the orders filled.
+   */
+  public int getOrdersFilled() {
+    return ordersFilled;
+  }
+
+  /**
+   * Returns the fraction of the orders sent that were filled, in full or in part.
+   *
+   * @return the fill rate, or 0 if no orders were sent.
+   */
+  public BigDecimal getFillRate() {
+    if (ordersSent == 0) {
+      return BigDecimal.ZERO;
+    }
+    return new BigDecimal(ordersFilled).divide(new BigDecimal(ordersSent), MathContext.DECIMAL64);
+  }
+
+  public int getFillCount() {
+    return fillCount;
+  }
+
+  /**
+   * Returns the value of the buy fills, in their counter currencies.
+   *
+   * @return the buy volume.
+   */
+  public BigDecimal getBuyVolume() {
+    return buyVolume;
+  }
+
+  /**
+   * Returns the value of the sell fills, in their counter currencies.
+   *
+   * @return the sell volume.
+   */
+  public BigDecimal getSellVolume() {
+    return sellVolume;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("startTime", Instant.ofEpochMilli(startTime))
+        .add("endTime", Instant.ofEpochMilli(endTime))
+        .add("eventCount", eventCount)
+        .add("tradeCycleCount", tradeCycleCount)
+        .add("valuationCurrency", valuationCurrency)
+        .add("startingValue", startingValue)
+        .add("endingValue", endingValue)
+        .add("profit", getProfit())
+        .add("returnPercentage", getReturnPercentage())
+        .add("maxDrawdownPercentage", maxDrawdownPercentage)
+        .add("ordersSent", ordersSent)
+        .add("ordersFilled", ordersFilled)
+        .add("fillRate", getFillRate())
+        .add("fillCount", fillCount)
+        .add("buyVolume", buyVolume)
+        .add("sellVolume", sellVolume)
+        .add("feesPaid", feesPaid)
+        .toString();
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.gazbert.bxbot.strategy.api.StrategyException;
+import com.gazbert.bxbot.strategy.api.TradingStrategy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs Trading Strategies against recorded market data, as fast as the data can be read.
+ *
+ * <p>The backtest has a virtual clock instead of sleeps. The clock is set to the time of each event
+ * as it is replayed to the {@link ReplayExchangeAdapter}, and every time it passes the trade cycle
+ * interval, a trade cycle executes the strategies one after another, like the Trading Engine does.
+ * Trade cycles only start once every market has an order book.
+ *
+ * <p>The strategies must have been initialised with the {@link ReplayExchangeAdapter}, e.g. by the
+ * {@link com.gazbert.bxbot.core.config.strategy.TradingStrategiesBuilder}. After each trade cycle,
+ * the balances are valued in the valuation currency at the latest prices, to track the drawdown.
+ *
+ * @author gazbert
+ */
+public final class Backtester {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final BigDecimal ONE_HUNDRED = new BigDecimal("100");
+
+  private final ReplayExchangeAdapter exchangeAdapter;
+  private final long tradeCycleIntervalMillis;
+  private final String valuationCurrency;
+
+  /**
+   * Creates the backtester.
+   *
+   * @param exchangeAdapter the replay adapter the strategies trade on.
+   * @param tradeCycleIntervalMillis the trade cycle interval on the virtual clock.
+   * @param valuationCurrency the currency to value the balances in, e.g. USD.
+   */
+  public Backtester(
+      ReplayExchangeAdapter exchangeAdapter,
+      long tradeCycleIntervalMillis,
+      String valuationCurrency) {
+    if (tradeCycleIntervalMillis <= 0) {
+      throw new IllegalArgumentException(
+          "Trade cycle interval must be positive: " + tradeCycleIntervalMillis);
+    }
+    this.exchangeAdapter = exchangeAdapter;
+    this.tradeCycleIntervalMillis = tradeCycleIntervalMillis;
+    this.valuationCurrency = valuationCurrency;
+  }
+
+  /**
+   * Replays the market data to the strategies.
+   *
+   * @param tradingStrategies the strategies to execute every trade cycle.
+   * @param marketData the recorded market data. It is read to the end, but not closed.
+   * @return the report.
+   * @throws IOException if the market data cannot be read.
+   * @throws StrategyException if a strategy throws it. The backtest stops, like the Trading Engine
+   *     does.
+   */
+  public BacktestReport run(
+      List<TradingStrategy> tradingStrategies, MarketDataSource marketData)
+      throws IOException, StrategyException {
+
+    final BacktestRun run = new BacktestRun();
+    MarketDataEvent event = marketData.next();
+    if (event != null) {
+      run.startTime = event.getTimestamp();
+      run.nextCycleTime = event.getTimestamp() + tradeCycleIntervalMillis;
+    }
+    while (event != null) {
+      while (event.getTimestamp() >= run.nextCycleTime) {
+        executeTradeCycle(tradingStrategies, run);
+        run.nextCycleTime += tradeCycleIntervalMillis;
+      }
+      exchangeAdapter.onMarketData(event);
+      run.eventCount++;
+      event = marketData.next();
+    }
+
+    final BacktestReport report =
+        new BacktestReport(
+            run.startTime,
+            exchangeAdapter.getTime(),
+            run.eventCount,
+            run.tradeCycleCount,
+            valuationCurrency,
+            run.startingValue == null ? BigDecimal.ZERO : run.startingValue,
+            exchangeAdapter.getTotalValue(valuationCurrency),
+            run.maxDrawdownPercentage,
+            exchangeAdapter.getBalanceInfo(),
+            exchangeAdapter.getFeesPaid(),
+            exchangeAdapter.getTransactions());
+    LOG.info(() -> "Backtest complete: " + report);
+    return report;
+  }
+
+  private void executeTradeCycle(List<TradingStrategy> tradingStrategies, BacktestRun run)
+      throws StrategyException {
+    exchangeAdapter.setTime(run.nextCycleTime);
+    if (!exchangeAdapter.hasMarketDataForAllMarkets()) {
+      return;
+    }
+    if (run.startingValue == null) {
+      run.startingValue = exchangeAdapter.getTotalValue(valuationCurrency);
+      run.peakValue = run.startingValue;
+    }
+    for (final TradingStrategy tradingStrategy : tradingStrategies) {
+      exchangeAdapter.setStrategyName(tradingStrategy.getClass().getSimpleName());
+      tradingStrategy.execute();
+    }
+    run.tradeCycleCount++;
+
+    final BigDecimal value = exchangeAdapter.getTotalValue(valuationCurrency);
+    if (value.compareTo(run.peakValue) > 0) {
+      run.peakValue = value;
+    } else if (run.peakValue.signum() > 0) {
+      final BigDecimal drawdownPercentage =
+          run.peakValue
+              .subtract(value)
+              .multiply(ONE_HUNDRED)
+              .divide(run.peakValue, MathContext.DECIMAL64);
+      run.maxDrawdownPercentage = run.maxDrawdownPercentage.max(drawdownPercentage);
+    }
+  }
+
+  /*
+   * The progress of 1 backtest run.
+   */
+  private static final class BacktestRun {
+    private long startTime;
+    private long nextCycleTime;
+    private long eventCount;
+    private long tradeCycleCount;
+    private BigDecimal startingValue;
+    private BigDecimal peakValue;
+    private BigDecimal maxDrawdownPercentage = BigDecimal.ZERO;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads recorded market data for a backtest, 1 event at a time, so months of tick data can be
+ * replayed without loading it into memory. Files ending in .gz are decompressed as they are read.
+ *
+ * <p>Each line is an event, and the events must be in time order. Blank lines and lines starting
+ * with # are skipped. Order book snapshots list the levels as price:quantity, best first:
+ *
+ * <pre>
+ * # timestamp millis,market id,B,bids,asks
+ * 1577836800000,btcusd,B,7200.10:0.5;7200.00:1.2,7201.30:0.4;7202.00:2.0
+ * # timestamp millis,market id,T,price,quantity
+ * 1577836800150,btcusd,T,7201.30,0.01
+ * </pre>
+ *
+ * <p>This class is not thread safe.
+ *
+ * @author gazbert
+ */
+public final class HistoricalMarketDataReader implements MarketDataSource {
+
+  private static final String ORDER_BOOK_EVENT_TYPE = "B";
+  private static final String TRADE_EVENT_TYPE = "T";
+  private static final String COMMENT_PREFIX = "#";
+  private static final String GZIP_FILE_SUFFIX = ".gz";
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final BufferedReader reader;
+  private long lineNumber;
+  private long lastTimestamp = Long.MIN_VALUE;
+
+  /**
+   * Opens a recorded market data file.
+   *
+   * @param path the file to read.
+   * @throws IOException if the file cannot be opened.
+   */
+  public HistoricalMarketDataReader(Path path) throws IOException {
+    InputStream inputStream = Files.newInputStream(path);
+    if (path.toString().endsWith(GZIP_FILE_SUFFIX)) {
+      inputStream = new GZIPInputStream(inputStream, BUFFER_SIZE);
+    }
+    reader =
+        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+  }
+
+  HistoricalMarketDataReader(Reader reader) {
+    this.reader = new BufferedReader(reader, BUFFER_SIZE);
+  }
+
+  /**
+   * Reads the next event.
+   *
+   * @return the event, or null if there are no more.
+   * @throws IOException if the data cannot be read.
+   * @throws IllegalArgumentException if a line is not a valid event, or is older than the event
+   *     before it.
+   */
+  @Override
+  public MarketDataEvent next() throws IOException {
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (!line.isEmpty() && !line.startsWith(COMMENT_PREFIX)) {
+        final MarketDataEvent event = parse(line.trim());
+        if (event.getTimestamp() < lastTimestamp) {
+          throw new IllegalArgumentException(
+              "Market data is not in time order at line " + lineNumber + ": " + line);
+        }
+        lastTimestamp = event.getTimestamp();
+        return event;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  /*
+   * Split by hand: String.split compiles a regex and allocates an array per line, which is most of
+   * the cost of reading a large file.
+   */
+  private MarketDataEvent parse(String line) {
+    try {
+      final int timestampEnd = line.indexOf(',');
+      final int marketIdEnd = line.indexOf(',', timestampEnd + 1);
+      final int typeEnd = line.indexOf(',', marketIdEnd + 1);
+      final int firstFieldEnd = line.indexOf(',', typeEnd + 1);
+      if (timestampEnd < 0 || marketIdEnd < 0 || typeEnd < 0 || firstFieldEnd < 0) {
+        throw new IllegalArgumentException("Too few fields");
+      }
+      final long timestamp = Long.parseLong(line.substring(0, timestampEnd));
+      final String marketId = line.substring(timestampEnd + 1, marketIdEnd);
+      final String type = line.substring(marketIdEnd + 1, typeEnd);
+      final String firstField = line.substring(typeEnd + 1, firstFieldEnd);
+      final String secondField = line.substring(firstFieldEnd + 1);
+
+      if (ORDER_BOOK_EVENT_TYPE.equals(type)) {
+        return MarketDataEvent.orderBook(timestamp, marketId, firstField, secondField);
+      } else if (TRADE_EVENT_TYPE.equals(type)) {
+        return MarketDataEvent.trade(
+            timestamp, marketId, new BigDecimal(firstField), new BigDecimal(secondField));
+      }
+      throw new IllegalArgumentException("Unknown event type: " + type);
+
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "Invalid market data at line " + lineNumber + ": " + line + " - " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.google.common.base.MoreObjects;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recorded market data event: an order book snapshot or a trade.
+ *
+ * <p>The order book levels are parsed the first time they are asked for. Most of the snapshots in
+ * a backtest are replaced by the next one before a strategy or a resting order looks at them, so
+ * they are never parsed. Once the levels have been parsed, the event does not change, so it can be
+ * shared by backtests on different threads - see {@link ParsedMarketData}.
+ *
+ * @author gazbert
+ */
+public final class MarketDataEvent {
+
+  /** The type of event. */
+  public enum Type {
+    ORDER_BOOK,
+    TRADE
+  }
+
+  private static final char LEVEL_SEPARATOR = ';';
+  private static final char PRICE_QUANTITY_SEPARATOR = ':';
+
+  private final Type type;
+  private final long timestamp;
+  private final String marketId;
+  private final String bids;
+  private final String asks;
+  private final BigDecimal price;
+  private final BigDecimal quantity;
+  private List<MarketOrder> buyOrders;
+  private List<MarketOrder> sellOrders;
+
+  private MarketDataEvent(
+      Type type,
+      long timestamp,
+      String marketId,
+      String bids,
+      String asks,
+      BigDecimal price,
+      BigDecimal quantity,
+      List<MarketOrder> buyOrders,
+      List<MarketOrder> sellOrders) {
+    this.type = type;
+    this.timestamp = timestamp;
+    this.marketId = marketId;
+    this.bids = bids;
+    this.asks = asks;
+    this.price = price;
+    this.quantity = quantity;
+    this.buyOrders = buyOrders;
+    this.sellOrders = sellOrders;
+  }
+
+  /**
+   * Creates an order book snapshot.
+   *
+   * @param timestamp when the snapshot was taken, in millis since the epoch.
+   * @param marketId the market id.
+   * @param bids the bids as price:quantity levels separated by ;, best first.
+   * @param asks the asks as price:quantity levels separated by ;, best first.
+   * @return the event.
+   */
+  static MarketDataEvent orderBook(long timestamp, String marketId, String bids, String asks) {
+    return new MarketDataEvent(
+        Type.ORDER_BOOK, timestamp, marketId, bids, asks, null, null, null, null);
+  }
+
+  /**
+   * Creates an order book snapshot from levels that have already been parsed.
+   *
+   * @param timestamp when the snapshot was taken, in millis since the epoch.
+   * @param marketId the market id.
+   * @param buyOrders the bids, best first.
+   * @param sellOrders the asks, best first.
+   * @return the event.
+   */
+  static MarketDataEvent orderBook(
+      long timestamp, String marketId, List<MarketOrder> buyOrders, List<MarketOrder> sellOrders) {
+    return new MarketDataEvent(
+        Type.ORDER_BOOK, timestamp, marketId, null, null, null, null, buyOrders, sellOrders);
+  }
+
+  /**
+   * Creates a trade.
+   *
+   * @param timestamp when the trade happened, in millis since the epoch.
+   * @param marketId the market id.
+   * @param price the price the trade was made at.
+   * @param quantity the quantity traded.
+   * @return the event.
+   */
+  static MarketDataEvent trade(
+      long timestamp, String marketId, BigDecimal price, BigDecimal quantity) {
+    return new MarketDataEvent(
+        Type.TRADE, timestamp, marketId, null, null, price, quantity, null, null);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public String getMarketId() {
+    return marketId;
+  }
+
+  /**
+   * Returns the trade price.
+   *
+   * @return the price, or null if the event is an order book snapshot.
+   */
+  public BigDecimal getPrice() {
+    return price;
+  }
+
+  /**
+   * Returns the trade quantity.
+   *
+   * @return the quantity, or null if the event is an order book snapshot.
+   */
+  public BigDecimal getQuantity() {
+    return quantity;
+  }
+
+  /**
+   * Returns the bids in the order book snapshot, best first.
+   *
+   * @return the bids, or an empty list if the event is a trade.
+   */
+  public List<MarketOrder> getBuyOrders() {
+    if (buyOrders == null) {
+      buyOrders = parseLevels(bids, OrderType.BUY);
+    }
+    return buyOrders;
+  }
+
+  /**
+   * Returns the asks in the order book snapshot, best first.
+   *
+   * @return the asks, or an empty list if the event is a trade.
+   */
+  public List<MarketOrder> getSellOrders() {
+    if (sellOrders == null) {
+      sellOrders = parseLevels(asks, OrderType.SELL);
+    }
+    return sellOrders;
+  }
+
+  private static List<MarketOrder> parseLevels(String levels, OrderType orderType) {
+    if (levels == null || levels.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<MarketOrder> marketOrders = new ArrayList<>();
+    int start = 0;
+    while (start < levels.length()) {
+      int end = levels.indexOf(LEVEL_SEPARATOR, start);
+      if (end < 0) {
+        end = levels.length();
+      }
+      final int separator = levels.indexOf(PRICE_QUANTITY_SEPARATOR, start);
+      if (separator < 0 || separator > end) {
+        throw new IllegalArgumentException(
+            "Order book level must be price:quantity but was: " + levels.substring(start, end));
+      }
+      final BigDecimal levelPrice = new BigDecimal(levels.substring(start, separator));
+      final BigDecimal levelQuantity = new BigDecimal(levels.substring(separator + 1, end));
+      marketOrders.add(
+          new MarketOrderImpl(
+              orderType, levelPrice, levelQuantity, levelPrice.multiply(levelQuantity)));
+      start = end + 1;
+    }
+    return Collections.unmodifiableList(marketOrders);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("type", type)
+        .add("timestamp", timestamp)
+        .add("marketId", marketId)
+        .add("bids", bids)
+        .add("asks", asks)
+        .add("price", price)
+        .add("quantity", quantity)
+        .toString();
+  }
+}
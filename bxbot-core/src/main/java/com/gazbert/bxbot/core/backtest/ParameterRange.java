@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.google.common.base.MoreObjects;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The values to try for a strategy config item in a {@link ParameterSweep}.
+ *
+ * @author gazbert
+ */
+public final class ParameterRange {
+
+  private final String configItemKey;
+  private final List<String> values;
+
+  private ParameterRange(String configItemKey, List<String> values) {
+    if (values.isEmpty()) {
+      throw new IllegalArgumentException("No values to try for config item: " + configItemKey);
+    }
+    this.configItemKey = configItemKey;
+    this.values = Collections.unmodifiableList(new ArrayList<>(values));
+  }
+
+  /**
+   * Creates a range of listed values.
+   *
+   * @param configItemKey the config item key, as used in the strategies.yaml file.
+   * @param values the values to try.
+   * @return the range.
+   */
+  public static ParameterRange of(String configItemKey, String... values) {
+    return new ParameterRange(configItemKey, Arrays.asList(values));
+  }
+
+  /**
+   * Creates a range of evenly stepped numbers, e.g. 0.5 to 2 in steps of 0.5.
+   *
+   * @param configItemKey the config item key, as used in the strategies.yaml file.
+   * @param from the first value.
+   * @param to the last value. It is only tried if it is a whole number of steps from the first.
+   * @param step the step between values.
+   * @return the range.
+   */
+  public static ParameterRange steps(
+      String configItemKey, BigDecimal from, BigDecimal to, BigDecimal step) {
+    if (step.signum() <= 0) {
+      throw new IllegalArgumentException("Step must be positive: " + step);
+    }
+    if (to.compareTo(from) < 0) {
+      throw new IllegalArgumentException("Range is empty: " + from + " to " + to);
+    }
+    final List<String> values = new ArrayList<>();
+    for (BigDecimal value = from; value.compareTo(to) <= 0; value = value.add(step)) {
+      values.add(value.toPlainString());
+    }
+    return new ParameterRange(configItemKey, values);
+  }
+
+  public String getConfigItemKey() {
+    return configItemKey;
+  }
+
+  public List<String> getValues() {
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("configItemKey", configItemKey)
+        .add("values", values)
+        .toString();
+  }
+}
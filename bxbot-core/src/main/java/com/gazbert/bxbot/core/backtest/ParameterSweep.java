@@ -0,0 +1,244 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.gazbert.bxbot.core.config.strategy.StrategyConfigItems;
+import com.gazbert.bxbot.strategy.api.StrategyException;
+import com.gazbert.bxbot.strategy.api.TradingStrategy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Tunes a strategy's config items by backtesting every combination of the values to try, in
+ * parallel, and ranking the results.
+ *
+ * <p>Each backtest gets its own exchange and strategies from the {@link BacktestFactory} and its
+ * own source over the shared {@link RecordedMarketData}, e.g. a {@link ParsedMarketData} file or a
+ * {@link TickStoreMarketData} time range, so the backtests share nothing mutable and run on all
+ * the cores of a fork/join pool. The results are ranked by profit, then by the lowest
+ * drawdown, then by fill rate.
+ *
+ * <p>A backtest that fails, e.g. because a combination is not valid config for the strategy, is
+ * reported and ranked last; it does not stop the sweep.
+ *
+ * @author gazbert
+ */
+public final class ParameterSweep {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final BacktestFactory backtestFactory;
+  private final long tradeCycleIntervalMillis;
+  private final String valuationCurrency;
+  private final int parallelism;
+
+  /**
+   * Creates the sweep.
+   *
+   * @param backtestFactory creates the exchange and strategies for each backtest.
+   * @param tradeCycleIntervalMillis the trade cycle interval on the virtual clock.
+   * @param valuationCurrency the currency to value the balances in, e.g. USD.
+   * @param parallelism the number of backtests to run at once, usually the number of cores.
+   */
+  public ParameterSweep(
+      BacktestFactory backtestFactory,
+      long tradeCycleIntervalMillis,
+      String valuationCurrency,
+      int parallelism) {
+    if (tradeCycleIntervalMillis <= 0) {
+      throw new IllegalArgumentException(
+          "Trade cycle interval must be positive: " + tradeCycleIntervalMillis);
+    }
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+    }
+    this.backtestFactory = backtestFactory;
+    this.tradeCycleIntervalMillis = tradeCycleIntervalMillis;
+    this.valuationCurrency = valuationCurrency;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Backtests every combination of the parameter ranges.
+   *
+   * @param strategyId the strategy id to give the config items.
+   * @param fixedConfigItems the config items that are the same for every backtest.
+   * @param parameterRanges the config items to vary.
+   * @param marketData the market data to replay.
+   * @return the results, best first.
+   * @throws IOException if the market data cannot be read.
+   */
+  public List<SweepResult> run(
+      String strategyId,
+      Map<String, String> fixedConfigItems,
+      List<ParameterRange> parameterRanges,
+      RecordedMarketData marketData)
+      throws IOException {
+
+    final Sweep sweep = new Sweep(strategyId, fixedConfigItems, parameterRanges, marketData);
+    LOG.info(
+        () ->
+            "Starting sweep of "
+                + sweep.results.length
+                + " backtests with parallelism "
+                + parallelism
+                + ": "
+                + parameterRanges);
+
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new SweepTask(sweep, 0, sweep.results.length));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      pool.shutdown();
+    }
+
+    final List<SweepResult> results = new ArrayList<>(Arrays.asList(sweep.results));
+    results.sort(SweepResult.RANKING);
+    LOG.info(() -> "Sweep complete. Best result: " + results.get(0));
+    return results;
+  }
+
+  private SweepResult runBacktest(Sweep sweep, int combination) {
+    final Map<String, String> configItems = sweep.getConfigItems(combination);
+    final StrategyConfigItems strategyConfigItems = new StrategyConfigItems(sweep.strategyId);
+    strategyConfigItems.setItems(new LinkedHashMap<>(configItems));
+
+    SweepResult result;
+    try {
+      final ReplayExchangeAdapter exchangeAdapter = backtestFactory.createExchangeAdapter();
+      final List<TradingStrategy> tradingStrategies =
+          backtestFactory.createTradingStrategies(exchangeAdapter, strategyConfigItems);
+      try (MarketDataSource source = sweep.marketData.open()) {
+        result =
+            SweepResult.completed(
+                configItems,
+                new Backtester(exchangeAdapter, tradeCycleIntervalMillis, valuationCurrency)
+                    .run(tradingStrategies, source));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (StrategyException | RuntimeException e) {
+      LOG.warn(() -> "Backtest failed for config items " + configItems, e);
+      result = SweepResult.failed(configItems, e.toString());
+    }
+
+    final int completed = sweep.completed.incrementAndGet();
+    final SweepResult completedResult = result;
+    LOG.info(
+        () ->
+            "Sweep backtest "
+                + completed
+                + " of "
+                + sweep.results.length
+                + " complete: "
+                + completedResult);
+    return result;
+  }
+
+  /*
+   * The combinations are numbered, so a fork/join task only needs a range of numbers and the
+   * cartesian product is never built in memory.
+   */
+  private static final class Sweep {
+
+    private final String strategyId;
+    private final Map<String, String> fixedConfigItems;
+    private final List<ParameterRange> parameterRanges;
+    private final RecordedMarketData marketData;
+    private final SweepResult[] results;
+    private final AtomicInteger completed = new AtomicInteger();
+
+    Sweep(
+        String strategyId,
+        Map<String, String> fixedConfigItems,
+        List<ParameterRange> parameterRanges,
+        RecordedMarketData marketData) {
+      this.strategyId = strategyId;
+      this.fixedConfigItems = new LinkedHashMap<>(fixedConfigItems);
+      this.parameterRanges = new ArrayList<>(parameterRanges);
+      this.marketData = marketData;
+
+      int combinations = 1;
+      for (final ParameterRange parameterRange : parameterRanges) {
+        try {
+          combinations = Math.multiplyExact(combinations, parameterRange.getValues().size());
+        } catch (ArithmeticException e) {
+          throw new IllegalArgumentException("Too many combinations to sweep: " + parameterRanges);
+        }
+      }
+      results = new SweepResult[combinations];
+    }
+
+    Map<String, String> getConfigItems(int combination) {
+      final Map<String, String> configItems = new LinkedHashMap<>(fixedConfigItems);
+      int remaining = combination;
+      for (final ParameterRange parameterRange : parameterRanges) {
+        final List<String> values = parameterRange.getValues();
+        configItems.put(parameterRange.getConfigItemKey(), values.get(remaining % values.size()));
+        remaining /= values.size();
+      }
+      return configItems;
+    }
+  }
+
+  /*
+   * Splits the combinations in half until each task has 1 backtest to run.
+   */
+  private final class SweepTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Sweep sweep;
+    private final int from;
+    private final int to;
+
+    SweepTask(Sweep sweep, int from, int to) {
+      this.sweep = sweep;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        sweep.results[from] = runBacktest(sweep, from);
+      } else if (to > from) {
+        final int middle = (from + to) >>> 1;
+        invokeAll(new SweepTask(sweep, from, middle), new SweepTask(sweep, middle, to));
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.google.common.base.MoreObjects;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recorded market data file parsed once into memory, so many backtests can replay the same
+ * events at the same time without each parsing the file - see {@link ParameterSweep}.
+ *
+ * <p>The file must be in the {@link HistoricalMarketDataReader} format, and may be gzipped. Every
+ * event is held in memory, with its order book levels parsed up front, so the events are never
+ * changed once loaded. Data too big for that should be recorded in a {@link
+ * com.gazbert.bxbot.core.marketdata.TickStore} and replayed with {@link TickStoreMarketData}.
+ *
+ * <p>This class is thread safe. Each source it opens is not.
+ *
+ * @author gazbert
+ */
+public final class ParsedMarketData implements RecordedMarketData {
+
+  private final Path path;
+  private final List<MarketDataEvent> events;
+
+  /**
+   * Reads and parses a recorded market data file.
+   *
+   * @param path the file to read.
+   * @throws IOException if the file cannot be read.
+   * @throws IllegalArgumentException if the file is not valid market data.
+   */
+  public ParsedMarketData(Path path) throws IOException {
+    this.path = path;
+    final List<MarketDataEvent> parsedEvents = new ArrayList<>();
+    try (HistoricalMarketDataReader reader = new HistoricalMarketDataReader(path)) {
+      MarketDataEvent event;
+      while ((event = reader.next()) != null) {
+        if (event.getType() == MarketDataEvent.Type.ORDER_BOOK) {
+          // Parse the levels now, while the event is only seen by this thread.
+          event.getBuyOrders();
+          event.getSellOrders();
+        }
+        parsedEvents.add(event);
+      }
+    }
+    events = Collections.unmodifiableList(parsedEvents);
+  }
+
+  @Override
+  public MarketDataSource open() {
+    return new EventListSource(events);
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public int getEventCount() {
+    return events.size();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("path", path)
+        .add("eventCount", events.size())
+        .toString();
+  }
+
+  /*
+   * Replays the shared events from the start.
+   */
+  private static final class EventListSource implements MarketDataSource {
+
+    private final List<MarketDataEvent> events;
+    private int nextEvent;
+
+    EventListSource(List<MarketDataEvent> events) {
+      this.events = events;
+    }
+
+    @Override
+    public MarketDataEvent next() {
+      return nextEvent < events.size() ? events.get(nextEvent++) : null;
+    }
+
+    @Override
+    public void close() {
+      // nothing to release
+    }
+  }
+}
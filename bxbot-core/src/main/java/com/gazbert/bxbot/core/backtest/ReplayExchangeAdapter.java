@@ -0,0 +1,576 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.gazbert.bxbot.domain.transaction.TransactionEntry;
+import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
+import com.gazbert.bxbot.exchange.api.ExchangeConfig;
+import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderBookImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.OpenOrderImpl;
+import com.gazbert.bxbot.services.runtime.CandleService;
+import com.gazbert.bxbot.services.runtime.impl.CandleServiceImpl;
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleApi;
+import com.gazbert.bxbot.trading.api.CandleInterval;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import com.google.common.base.MoreObjects;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Exchange Adapter that replays recorded market data to the Trading Strategies in a backtest, and
+ * fills their orders against it.
+ *
+ * <p>The strategies see the latest recorded order book and trade price, and the time is the time
+ * of the last event replayed - see {@link Backtester}. Orders are filled like this:
+ *
+ * <ul>
+ *   <li>An order that crosses the recorded order book when it is placed is filled straight away
+ *       at the book's prices, as deep as its limit price allows. The liquidity it takes is not
+ *       offered again until the next snapshot.
+ *   <li>The rest of the order rests. It is filled at its own price when a recorded trade is made
+ *       at that price or through it, up to the quantity traded, or when a later snapshot crosses
+ *       it.
+ * </ul>
+ *
+ * <p>The fees are taken from the counter currency. The order value, plus the fee for buy orders, is
+ * held until the order is filled or cancelled, and orders the balance cannot cover are rejected.
+ * Every order sent and every fill is recorded as a {@link TransactionEntry}, with the time on the
+ * backtest's clock.
+ *
+ * <p>The recorded trades are folded into candles on the backtest's clock, so strategies read the
+ * same candles through the {@link CandleApi} as they do when trading.
+ *
+ * <p>This class is not thread safe.
+ *
+ * @author gazbert
+ */
+public final class ReplayExchangeAdapter implements ExchangeAdapter, CandleApi {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final String IMPL_NAME = "Backtest Replay";
+
+  private final BigDecimal buyFee;
+  private final BigDecimal sellFee;
+  private final Map<String, ReplayMarket> markets = new LinkedHashMap<>();
+  private final Map<String, BigDecimal> balancesAvailable = new HashMap<>();
+  private final Map<String, BigDecimal> balancesOnHold = new HashMap<>();
+  private final Map<String, BigDecimal> feesPaid = new HashMap<>();
+  private final List<TransactionEntry> transactions = new ArrayList<>();
+  private final CandleService candleService = new CandleServiceImpl(this::getTime);
+  private long time;
+  private long lastOrderId;
+  private String strategyName;
+
+  /**
+   * Creates the adapter.
+   *
+   * @param buyFee the fee for buy orders as a fraction of the order value, e.g. 0.0025 for 0.25%.
+   * @param sellFee the fee for sell orders as a fraction of the order value.
+   */
+  public ReplayExchangeAdapter(BigDecimal buyFee, BigDecimal sellFee) {
+    this.buyFee = buyFee;
+    this.sellFee = sellFee;
+  }
+
+  /**
+   * Adds a market to replay.
+   *
+   * @param marketId the market id, as used in the recorded market data.
+   * @param baseCurrency the base currency.
+   * @param counterCurrency the counter currency.
+   */
+  public void addMarket(String marketId, String baseCurrency, String counterCurrency) {
+    markets.put(marketId, new ReplayMarket(marketId, baseCurrency, counterCurrency));
+  }
+
+  /**
+   * Adds to the starting balance of a currency.
+   *
+   * @param currency the currency.
+   * @param amount the amount to add.
+   */
+  public void deposit(String currency, BigDecimal amount) {
+    balancesAvailable.merge(currency, amount, BigDecimal::add);
+  }
+
+  /**
+   * Returns the orders sent and the fills made so far, in the order they happened.
+   *
+   * @return the transactions.
+   */
+  public List<TransactionEntry> getTransactions() {
+    return Collections.unmodifiableList(transactions);
+  }
+
+  /**
+   * Returns the fees paid so far, by currency.
+   *
+   * @return the fees paid.
+   */
+  public Map<String, BigDecimal> getFeesPaid() {
+    return Collections.unmodifiableMap(feesPaid);
+  }
+
+  @Override
+  public void init(ExchangeConfig config) {
+    LOG.info(() -> "Backtest replay needs no Exchange config - ignoring: " + config);
+  }
+
+  @Override
+  public String getImplName() {
+    return IMPL_NAME;
+  }
+
+  // --------------------------------------------------------------------------
+  // Replay
+  // --------------------------------------------------------------------------
+
+  long getTime() {
+    return time;
+  }
+
+  void setTime(long time) {
+    this.time = time;
+  }
+
+  void setStrategyName(String strategyName) {
+    this.strategyName = strategyName;
+  }
+
+  /*
+   * Events for markets that are not being replayed are skipped, so 1 recording of many markets
+   * can be used to backtest a few of them.
+   */
+  void onMarketData(MarketDataEvent event) {
+    time = event.getTimestamp();
+    final ReplayMarket market = markets.get(event.getMarketId());
+    if (market == null) {
+      return;
+    }
+    if (event.getType() == MarketDataEvent.Type.ORDER_BOOK) {
+      market.setOrderBook(event);
+      if (!market.openOrders.isEmpty()) {
+        fillRestingOrders(market);
+      }
+    } else {
+      market.lastPrice = event.getPrice();
+      candleService.onTrade(IMPL_NAME, event.getMarketId(), event.getPrice(), event.getQuantity());
+      if (!market.openOrders.isEmpty()) {
+        fillRestingOrders(market, event.getPrice(), event.getQuantity());
+      }
+    }
+  }
+
+  boolean hasMarketDataForAllMarkets() {
+    for (final ReplayMarket market : markets.values()) {
+      if (market.orderBook == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Currencies with no market to price them in the valuation currency are left out.
+   */
+  BigDecimal getTotalValue(String valuationCurrency) {
+    final Map<String, BigDecimal> totals = new HashMap<>(balancesAvailable);
+    balancesOnHold.forEach((currency, amount) -> totals.merge(currency, amount, BigDecimal::add));
+    BigDecimal totalValue = BigDecimal.ZERO;
+    for (final Map.Entry<String, BigDecimal> balance : totals.entrySet()) {
+      final BigDecimal price = getValuationPrice(balance.getKey(), valuationCurrency);
+      if (price != null) {
+        totalValue = totalValue.add(balance.getValue().multiply(price));
+      }
+    }
+    return totalValue;
+  }
+
+  private BigDecimal getValuationPrice(String currency, String valuationCurrency) {
+    if (currency.equals(valuationCurrency)) {
+      return BigDecimal.ONE;
+    }
+    for (final ReplayMarket market : markets.values()) {
+      final BigDecimal price = market.getLatestPrice();
+      if (price == null || price.signum() == 0) {
+        continue;
+      }
+      if (market.baseCurrency.equals(currency)
+          && market.counterCurrency.equals(valuationCurrency)) {
+        return price;
+      } else if (market.baseCurrency.equals(valuationCurrency)
+          && market.counterCurrency.equals(currency)) {
+        return BigDecimal.ONE.divide(price, MathContext.DECIMAL64);
+      }
+    }
+    return null;
+  }
+
+  // --------------------------------------------------------------------------
+  // Trading API
+  // --------------------------------------------------------------------------
+
+  @Override
+  public MarketOrderBook getMarketOrders(String marketId) throws TradingApiException {
+    final MarketDataEvent orderBook = getMarket(marketId).orderBook;
+    if (orderBook == null) {
+      throw new TradingApiException("No order book has been replayed yet for market: " + marketId);
+    }
+    return new MarketOrderBookImpl(
+        marketId, orderBook.getSellOrders(), orderBook.getBuyOrders());
+  }
+
+  @Override
+  public List<OpenOrder> getYourOpenOrders(String marketId) throws TradingApiException {
+    final List<OpenOrder> openOrders = new ArrayList<>();
+    for (final ReplayOrder order : getMarket(marketId).openOrders.values()) {
+      openOrders.add(
+          new OpenOrderImpl(
+              order.id,
+              new Date(order.creationTime),
+              marketId,
+              order.type,
+              order.price,
+              order.quantity,
+              order.originalQuantity,
+              order.price.multiply(order.quantity)));
+    }
+    return openOrders;
+  }
+
+  @Override
+  public String createOrder(
+      String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price)
+      throws TradingApiException {
+    final ReplayMarket market = getMarket(marketId);
+    if (quantity.signum() <= 0 || price.signum() <= 0) {
+      throw new TradingApiException(
+          "Order quantity and price must be positive: quantity=" + quantity + " price=" + price);
+    }
+    final ReplayOrder order =
+        new ReplayOrder(
+            Long.toString(++lastOrderId), orderType, price, quantity, time, strategyName);
+    final String heldCurrency = getHeldCurrency(market, order);
+    final BigDecimal heldAmount = getHeldAmount(order, quantity);
+    final BigDecimal available = balancesAvailable.getOrDefault(heldCurrency, BigDecimal.ZERO);
+    if (available.compareTo(heldAmount) < 0) {
+      throw new TradingApiException(
+          "Insufficient funds to place order: "
+              + orderType
+              + " "
+              + quantity
+              + " at "
+              + price
+              + " needs "
+              + heldAmount
+              + " "
+              + heldCurrency
+              + " but only "
+              + available
+              + " is available.");
+    }
+    balancesAvailable.put(heldCurrency, available.subtract(heldAmount));
+    balancesOnHold.merge(heldCurrency, heldAmount, BigDecimal::add);
+    record(order, TransactionEntry.Status.SENT, marketId, quantity, price);
+
+    takeLiquidity(market, order, true);
+    if (order.quantity.signum() > 0) {
+      market.openOrders.put(order.id, order);
+    }
+    return order.id;
+  }
+
+  @Override
+  public boolean cancelOrder(String orderId, String marketId) throws TradingApiException {
+    final ReplayMarket market = getMarket(marketId);
+    final ReplayOrder order = market.openOrders.remove(orderId);
+    if (order == null) {
+      return false;
+    }
+    final String heldCurrency = getHeldCurrency(market, order);
+    final BigDecimal heldAmount = getHeldAmount(order, order.quantity);
+    balancesOnHold.merge(heldCurrency, heldAmount.negate(), BigDecimal::add);
+    balancesAvailable.merge(heldCurrency, heldAmount, BigDecimal::add);
+    return true;
+  }
+
+  @Override
+  public BigDecimal getLatestMarketPrice(String marketId) throws TradingApiException {
+    final BigDecimal latestPrice = getMarket(marketId).getLatestPrice();
+    if (latestPrice == null) {
+      throw new TradingApiException("No market data has been replayed yet for market: " + marketId);
+    }
+    return latestPrice;
+  }
+
+  @Override
+  public List<Candle> getCandles(String marketId, CandleInterval interval, int count) {
+    return candleService.getCandles(IMPL_NAME, marketId, interval, count);
+  }
+
+  @Override
+  public BalanceInfo getBalanceInfo() {
+    return new BalanceInfoImpl(new HashMap<>(balancesAvailable), new HashMap<>(balancesOnHold));
+  }
+
+  @Override
+  public BigDecimal getPercentageOfBuyOrderTakenForExchangeFee(String marketId) {
+    return buyFee;
+  }
+
+  @Override
+  public BigDecimal getPercentageOfSellOrderTakenForExchangeFee(String marketId) {
+    return sellFee;
+  }
+
+  // --------------------------------------------------------------------------
+  // Fills
+  // --------------------------------------------------------------------------
+
+  /*
+   * A later snapshot that crosses a resting order fills it at the order's own price.
+   */
+  private void fillRestingOrders(ReplayMarket market) {
+    final Iterator<ReplayOrder> orders = market.openOrders.values().iterator();
+    while (orders.hasNext()) {
+      final ReplayOrder order = orders.next();
+      takeLiquidity(market, order, false);
+      if (order.quantity.signum() == 0) {
+        orders.remove();
+      }
+    }
+  }
+
+  private void fillRestingOrders(
+      ReplayMarket market, BigDecimal tradePrice, BigDecimal tradeQuantity) {
+    BigDecimal remaining = tradeQuantity;
+    final Iterator<ReplayOrder> orders = market.openOrders.values().iterator();
+    while (orders.hasNext() && remaining.signum() > 0) {
+      final ReplayOrder order = orders.next();
+      final int comparison = tradePrice.compareTo(order.price);
+      if (order.type == OrderType.BUY ? comparison <= 0 : comparison >= 0) {
+        final BigDecimal fillQuantity = order.quantity.min(remaining);
+        fill(market, order, fillQuantity, order.price);
+        remaining = remaining.subtract(fillQuantity);
+        if (order.quantity.signum() == 0) {
+          orders.remove();
+        }
+      }
+    }
+  }
+
+  /*
+   * Fills the order against the recorded levels it crosses, as deep as its price allows. A new
+   * order takes the levels' prices; a resting order that the book has moved through gets its own.
+   */
+  private void takeLiquidity(ReplayMarket market, ReplayOrder order, boolean isTaker) {
+    if (market.orderBook == null) {
+      return;
+    }
+    final List<MarketOrder> levels =
+        order.type == OrderType.BUY
+            ? market.orderBook.getSellOrders()
+            : market.orderBook.getBuyOrders();
+    final Map<BigDecimal, BigDecimal> taken =
+        order.type == OrderType.BUY ? market.takenAsks : market.takenBids;
+    for (final MarketOrder level : levels) {
+      if (order.quantity.signum() == 0) {
+        break;
+      }
+      final int comparison = level.getPrice().compareTo(order.price);
+      if (order.type == OrderType.BUY ? comparison > 0 : comparison < 0) {
+        break;
+      }
+      final BigDecimal levelAvailable =
+          level.getQuantity().subtract(taken.getOrDefault(level.getPrice(), BigDecimal.ZERO));
+      if (levelAvailable.signum() <= 0) {
+        continue;
+      }
+      final BigDecimal fillQuantity = order.quantity.min(levelAvailable);
+      taken.merge(level.getPrice(), fillQuantity, BigDecimal::add);
+      fill(market, order, fillQuantity, isTaker ? level.getPrice() : order.price);
+    }
+  }
+
+  private void fill(
+      ReplayMarket market, ReplayOrder order, BigDecimal quantity, BigDecimal fillPrice) {
+    final BigDecimal value = fillPrice.multiply(quantity);
+    final BigDecimal heldAmount = getHeldAmount(order, quantity);
+    if (order.type == OrderType.BUY) {
+      final BigDecimal fee = value.multiply(buyFee);
+      balancesOnHold.merge(market.counterCurrency, heldAmount.negate(), BigDecimal::add);
+      balancesAvailable.merge(
+          market.counterCurrency, heldAmount.subtract(value).subtract(fee), BigDecimal::add);
+      balancesAvailable.merge(market.baseCurrency, quantity, BigDecimal::add);
+      feesPaid.merge(market.counterCurrency, fee, BigDecimal::add);
+    } else {
+      final BigDecimal fee = value.multiply(sellFee);
+      balancesOnHold.merge(market.baseCurrency, heldAmount.negate(), BigDecimal::add);
+      balancesAvailable.merge(market.counterCurrency, value.subtract(fee), BigDecimal::add);
+      feesPaid.merge(market.counterCurrency, fee, BigDecimal::add);
+    }
+    order.quantity = order.quantity.subtract(quantity);
+    market.lastPrice = fillPrice;
+    record(order, TransactionEntry.Status.FILLED, market.marketId, quantity, fillPrice);
+  }
+
+  private void record(
+      ReplayOrder order,
+      TransactionEntry.Status status,
+      String marketId,
+      BigDecimal quantity,
+      BigDecimal price) {
+    transactions.add(
+        new TransactionEntry(
+            order.id,
+            order.type.getStringValue(),
+            status,
+            marketId,
+            quantity,
+            price,
+            order.strategyName,
+            IMPL_NAME,
+            new Date(time)));
+  }
+
+  private static String getHeldCurrency(ReplayMarket market, ReplayOrder order) {
+    return order.type == OrderType.BUY ? market.counterCurrency : market.baseCurrency;
+  }
+
+  /*
+   * Buy orders hold the value at the order's price plus the fee, so a fill at a better price
+   * releases the difference.
+   */
+  private BigDecimal getHeldAmount(ReplayOrder order, BigDecimal quantity) {
+    return order.type == OrderType.BUY
+        ? order.price.multiply(quantity).multiply(BigDecimal.ONE.add(buyFee))
+        : quantity;
+  }
+
+  private ReplayMarket getMarket(String marketId) throws TradingApiException {
+    final ReplayMarket market = markets.get(marketId);
+    if (market == null) {
+      throw new TradingApiException("Market is not being replayed: " + marketId);
+    }
+    return market;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("markets", markets.keySet())
+        .add("buyFee", buyFee)
+        .add("sellFee", sellFee)
+        .add("time", time)
+        .add("balancesAvailable", balancesAvailable)
+        .add("balancesOnHold", balancesOnHold)
+        .toString();
+  }
+
+  /*
+   * A market's latest snapshot and trade price, the liquidity the bot has taken from the snapshot,
+   * and the bot's resting orders in time priority.
+   */
+  private static final class ReplayMarket {
+
+    private final String marketId;
+    private final String baseCurrency;
+    private final String counterCurrency;
+    private final Map<String, ReplayOrder> openOrders = new LinkedHashMap<>();
+    private final Map<BigDecimal, BigDecimal> takenBids = new HashMap<>();
+    private final Map<BigDecimal, BigDecimal> takenAsks = new HashMap<>();
+    private MarketDataEvent orderBook;
+    private BigDecimal lastPrice;
+
+    private ReplayMarket(String marketId, String baseCurrency, String counterCurrency) {
+      this.marketId = marketId;
+      this.baseCurrency = baseCurrency;
+      this.counterCurrency = counterCurrency;
+    }
+
+    private void setOrderBook(MarketDataEvent orderBook) {
+      this.orderBook = orderBook;
+      takenBids.clear();
+      takenAsks.clear();
+    }
+
+    /*
+     * The last trade price, or the best bid if nothing has traded yet.
+     */
+    private BigDecimal getLatestPrice() {
+      if (lastPrice != null) {
+        return lastPrice;
+      }
+      if (orderBook == null || orderBook.getBuyOrders().isEmpty()) {
+        return null;
+      }
+      return orderBook.getBuyOrders().get(0).getPrice();
+    }
+  }
+
+  private static final class ReplayOrder {
+
+    private final String id;
+    private final OrderType type;
+    private final BigDecimal price;
+    private final BigDecimal originalQuantity;
+    private final long creationTime;
+    private final String strategyName;
+    private BigDecimal quantity;
+
+    private ReplayOrder(
+        String id,
+        OrderType type,
+        BigDecimal price,
+        BigDecimal quantity,
+        long creationTime,
+        String strategyName) {
+      this.id = id;
+      this.type = type;
+      this.price = price;
+      this.originalQuantity = quantity;
+      this.quantity = quantity;
+      this.creationTime = creationTime;
+      this.strategyName = strategyName;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.google.common.base.MoreObjects;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * The result of 1 backtest in a {@link ParameterSweep}.
+ *
+ * @author gazbert
+ */
+public final class SweepResult {
+
+  /*
+   * Best first: highest profit, then lowest drawdown, then highest fill rate. Failed backtests
+   * come last.
+   */
+  static final Comparator<SweepResult> RANKING =
+      Comparator.comparing(SweepResult::isFailed)
+          .thenComparing(
+              SweepResult::getReport,
+              Comparator.nullsLast(
+                  Comparator.comparing(BacktestReport::getProfit)
+                      .reversed()
+                      .thenComparing(BacktestReport::getMaxDrawdownPercentage)
+                      .thenComparing(
+                          BacktestReport::getFillRate, Comparator.reverseOrder())));
+
+  private final Map<String, String> configItems;
+  private final BacktestReport report;
+  private final String failureReason;
+
+  private SweepResult(
+      Map<String, String> configItems, BacktestReport report, String failureReason) {
+    this.configItems = Collections.unmodifiableMap(configItems);
+    this.report = report;
+    this.failureReason = failureReason;
+  }
+
+  static SweepResult completed(Map<String, String> configItems, BacktestReport report) {
+    return new SweepResult(configItems, report, null);
+  }
+
+  static SweepResult failed(Map<String, String> configItems, String failureReason) {
+    return new SweepResult(configItems, null, failureReason);
+  }
+
+  /**
+   * Returns the config items the backtest was run with.
+   *
+   * @return the config items.
+   */
+  public Map<String, String> getConfigItems() {
+    return configItems;
+  }
+
+  /**
+   * Returns the backtest report.
+   *
+   * @return the report, or null if the backtest failed.
+   */
+  public BacktestReport getReport() {
+    return report;
+  }
+
+  /**
+   * Returns why the backtest failed, e.g. the strategy threw a StrategyException.
+   *
+   * @return the reason, or null if the backtest completed.
+   */
+  public String getFailureReason() {
+    return failureReason;
+  }
+
+  public boolean isFailed() {
+    return report == null;
+  }
+
+  @Override
+  public String toString() {
+    final MoreObjects.ToStringHelper toStringHelper =
+        MoreObjects.toStringHelper(this).add("configItems", configItems);
+    if (isFailed()) {
+      return toStringHelper.add("failureReason", failureReason).toString();
+    }
+    return toStringHelper
+        .add("profit", report.getProfit())
+        .add("maxDrawdownPercentage", report.getMaxDrawdownPercentage())
+        .add("fillRate", report.getFillRate())
+        .toString();
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.gazbert.bxbot.core.backtest;
+
+import com.gazbert.bxbot.core.marketdata.TickCursor;
+import com.gazbert.bxbot.core.marketdata.TickStore;
+import com.gazbert.bxbot.core.marketdata.TickVisitor;
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.google.common.base.MoreObjects;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Market data recorded in a {@link TickStore}, e.g. by the {@link
+ * com.gazbert.bxbot.core.marketdata.MarketDataRecorder}, replayed for a backtest.
+ *
+ * <p>Each source reads the markets' records with a {@link TickCursor} per market, and merges them
+ * in time order as they are read, so a long time range is replayed without loading it into memory.
+ * Top of book records are replayed as order book snapshots with 1 level on each side; a quantity
+ * that was not recorded is 0. Depth snapshots are replayed as order book snapshots, and trades as
+ * trades.
+ *
+ * <p>This class is thread safe, so the backtests in a {@link ParameterSweep} can replay the same
+ * store at the same time. Each source it opens is not.
+ *
+ * @author gazbert
+ */
+public final class TickStoreMarketData implements RecordedMarketData {
+
+  private final TickStore tickStore;
+  private final List<String> marketIds;
+  private final long fromTimestamp;
+  private final long toTimestamp;
+
+  /**
+   * Creates the market data.
+   *
+   * @param tickStore the store the market data was recorded in.
+   * @param marketIds the markets to replay.
+   * @param fromTimestamp the start of the time range in millis since the epoch, inclusive.
+   * @param toTimestamp the end of the time range in millis since the epoch, inclusive.
+   */
+  public TickStoreMarketData(
+      TickStore tickStore, List<String> marketIds, long fromTimestamp, long toTimestamp) {
+    if (marketIds.isEmpty()) {
+      throw new IllegalArgumentException("At least 1 market must be replayed");
+    }
+    if (fromTimestamp > toTimestamp) {
+      throw new IllegalArgumentException(
+          "Time range is empty: " + fromTimestamp + " to " + toTimestamp);
+    }
+    this.tickStore = tickStore;
+    this.marketIds = Collections.unmodifiableList(new ArrayList<>(marketIds));
+    this.fromTimestamp = fromTimestamp;
+    this.toTimestamp = toTimestamp;
+  }
+
+  @Override
+  public MarketDataSource open() throws IOException {
+    final List<MarketReplay> markets = new ArrayList<>(marketIds.size());
+    for (final String marketId : marketIds) {
+      markets.add(
+          new MarketReplay(marketId, tickStore.openCursor(marketId, fromTimestamp, toTimestamp)));
+    }
+    return new MergedSource(markets);
+  }
+
+  public List<String> getMarketIds() {
+    return marketIds;
+  }
+
+  public long getFromTimestamp() {
+    return fromTimestamp;
+  }
+
+  public long getToTimestamp() {
+    return toTimestamp;
+  }
+
+  private static List<MarketOrder> toMarketOrders(
+      OrderType orderType, long[] prices, long[] quantities, int count) {
+    final List<MarketOrder> marketOrders = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      marketOrders.add(toMarketOrder(orderType, prices[i], quantities[i]));
+    }
+    return marketOrders;
+  }
+
+  private static MarketOrder toMarketOrder(OrderType orderType, long price, long quantity) {
+    final BigDecimal levelPrice = TickStore.fromFixedPoint(price);
+    final BigDecimal levelQuantity = TickStore.fromFixedPoint(quantity);
+    return new MarketOrderImpl(
+        orderType, levelPrice, levelQuantity, levelPrice.multiply(levelQuantity));
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("tickStore", tickStore)
+        .add("marketIds", marketIds)
+        .add("fromTimestamp", fromTimestamp)
+        .add("toTimestamp", toTimestamp)
+        .toString();
+  }
+
+  /*
+   * Replays the earliest of the markets' next events each time. There are only a handful of
+   * markets, so a linear search beats a priority queue.
+   */
+  private static final class MergedSource implements MarketDataSource {
+
+    private final List<MarketReplay> markets;
+
+    MergedSource(List<MarketReplay> markets) {
+      this.markets = markets;
+    }
+
+    @Override
+    public MarketDataEvent next() throws IOException {
+      MarketReplay earliest = null;
+      for (final MarketReplay market : markets) {
+        final MarketDataEvent event = market.peek();
+        if (event != null
+            && (earliest == null || event.getTimestamp() < earliest.peek().getTimestamp())) {
+          earliest = market;
+        }
+      }
+      return earliest == null ? null : earliest.take();
+    }
+
+    @Override
+    public void close() {
+      // Nothing to release: the segments are mapped read only, and unmapped once unreachable.
+    }
+  }
+
+  /*
+   * The next event of 1 market, converted from the record its cursor visits.
+   */
+  private static final class MarketReplay implements TickVisitor {
+
+    private final String marketId;
+    private final TickCursor cursor;
+    private MarketDataEvent nextEvent;
+    private boolean nextEventRead;
+
+    MarketReplay(String marketId, TickCursor cursor) {
+      this.marketId = marketId;
+      this.cursor = cursor;
+    }
+
+    MarketDataEvent peek() throws IOException {
+      if (!nextEventRead) {
+        nextEvent = null;
+        cursor.next(this);
+        nextEventRead = true;
+      }
+      return nextEvent;
+    }
+
+    MarketDataEvent take() throws IOException {
+      final MarketDataEvent event = peek();
+      nextEventRead = false;
+      return event;
+    }
+
+    @Override
+    public void onTopOfBook(
+        long timestamp, long bidPrice, long bidQuantity, long askPrice, long askQuantity) {
+      nextEvent =
+          MarketDataEvent.orderBook(
+              timestamp,
+              marketId,
+              Collections.singletonList(toMarketOrder(OrderType.BUY, bidPrice, bidQuantity)),
+              Collections.singletonList(toMarketOrder(OrderType.SELL, askPrice, askQuantity)));
+    }
+
+    @Override
+    public void onDepth(
+        long timestamp,
+        long[] bidPrices,
+        long[] bidQuantities,
+        int bidCount,
+        long[] askPrices,
+        long[] askQuantities,
+        int askCount) {
+      nextEvent =
+          MarketDataEvent.orderBook(
+              timestamp,
+              marketId,
+              toMarketOrders(OrderType.BUY, bidPrices, bidQuantities, bidCount),
+              toMarketOrders(OrderType.SELL, askPrices, askQuantities, askCount));
+    }
+
+    @Override
+    public void onTrade(long timestamp, OrderType type, long price, long quantity) {
+      nextEvent =
+          MarketDataEvent.trade(
+              timestamp,
+              marketId,
+              TickStore.fromFixedPoint(price),
+              TickStore.fromFixedPoint(quantity));
+    }
+  }
+}
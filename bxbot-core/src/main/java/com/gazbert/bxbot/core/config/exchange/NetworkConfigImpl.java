@@ -37,6 +37,8 @@ import java.util.List;
 public class NetworkConfigImpl implements NetworkConfig {
 
   private Integer connectionTimeout;
+  private Integer connectTimeout;
+  private Integer readTimeout;
   private List<Integer> nonFatalErrorCodes;
   private List<String> nonFatalErrorMessages;
 
@@ -54,6 +56,24 @@ public class NetworkConfigImpl implements NetworkConfig {
     this.connectionTimeout = connectionTimeout;
   }
 
+  @Override
+  public Integer getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public void setConnectTimeout(Integer connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  @Override
+  public Integer getReadTimeout() {
+    return readTimeout;
+  }
+
+  public void setReadTimeout(Integer readTimeout) {
+    this.readTimeout = readTimeout;
+  }
+
   @Override
   public List<Integer> getNonFatalErrorCodes() {
     return nonFatalErrorCodes;
@@ -76,6 +96,8 @@ public class NetworkConfigImpl implements NetworkConfig {
   public String toString() {
     return MoreObjects.toStringHelper(this)
                .add("connectionTimeout", connectionTimeout)
+               .add("connectTimeout", connectTimeout)
+               .add("readTimeout", readTimeout)
                .add("nonFatalErrorCodes", nonFatalErrorCodes)
                .add("nonFatalErrorMessages", nonFatalErrorMessages)
                .toString();
@@ -51,15 +51,18 @@ public class TradingStrategiesBuilder {
   private static final Logger LOG = LogManager.getLogger();
   private TradingStrategyFactory tradingStrategyFactory;
 
-  // Set logic only as crude mechanism for checking for duplicate Markets.
-  private final Set<Market> loadedMarkets = new HashSet<>();
+  // Set logic only as crude mechanism for checking for duplicate Markets on each exchange.
+  private final Map<ExchangeAdapter, Set<Market>> loadedMarkets = new HashMap<>();
 
   @Autowired
   public void setTradingStrategyFactory(TradingStrategyFactory tradingStrategyFactory) {
     this.tradingStrategyFactory = tradingStrategyFactory;
   }
 
-  /** Builds the Trading Strategy execution list. */
+  /**
+   * Builds the Trading Strategy execution list. Called once per exchange if the bot trades on more
+   * than 1 exchange: the same market can be traded on different exchanges, but only once on each.
+   */
   public List<TradingStrategy> buildStrategies(
       List<StrategyConfig> strategies,
       List<MarketConfig> markets,
@@ -82,7 +85,7 @@ public class TradingStrategiesBuilder {
   /** Load a single strategy given the exchange adapter and market. */
   private TradingStrategy loadStrategy(ExchangeAdapter exchangeAdapter,
        Map<String, StrategyConfig> tradingStrategyConfigs, MarketConfig market) {
-    final Market tradingMarket = getTradingMarket(market);
+    final Market tradingMarket = getTradingMarket(exchangeAdapter, market);
     if (tradingMarket == null) {
       return null;
     }
@@ -139,7 +142,7 @@ public class TradingStrategiesBuilder {
     }
   }
 
-  private Market getTradingMarket(MarketConfig market) {
+  private Market getTradingMarket(ExchangeAdapter exchangeAdapter, MarketConfig market) {
     final String marketName = market.getName();
     if (!market.isEnabled()) {
       LOG.info(() -> marketName
@@ -150,7 +153,9 @@ public class TradingStrategiesBuilder {
     final Market tradingMarket =
         new MarketImpl(
             marketName, market.getId(), market.getBaseCurrency(), market.getCounterCurrency());
-    final boolean wasAdded = loadedMarkets.add(tradingMarket);
+    final boolean wasAdded =
+        loadedMarkets.computeIfAbsent(exchangeAdapter, adapter -> new HashSet<>())
+            .add(tradingMarket);
     if (!wasAdded) {
       final String errorMsg = "Found duplicate Market! Market details: " + market;
       LOG.fatal(() -> errorMsg);
@@ -0,0 +1,683 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.engine;
+
+import com.gazbert.bxbot.exchange.api.AsyncExchangeAdapter;
+import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
+import com.gazbert.bxbot.exchange.api.ExchangeConfig;
+import com.gazbert.bxbot.trading.api.AsyncTradingApi;
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleApi;
+import com.gazbert.bxbot.trading.api.CandleInterval;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.MarketDataListener;
+import com.gazbert.bxbot.trading.api.MarketMetadata;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderRequest;
+import com.gazbert.bxbot.trading.api.OrderResult;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.StreamingTradingApi;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Wraps the Exchange Adapter the Trading Strategies are given and caches the exchange data they
+ * read for the duration of a trade cycle.
+ *
+ * <p>The open orders are cached per market, and the Balance Info is cached for all markets. The
+ * first call in a trade cycle goes to the exchange; every other call for the same data in that
+ * cycle gets the snapshot, or waits for the request already in flight. The Trading Engine starts a
+ * new snapshot at the beginning of every trade cycle.
+ *
+ * <p>The public market data - the Market Order Book, Ticker and latest price - is cached per
+ * market in the same way. If a market data freshness window is set, it is kept for that long
+ * instead, across trade cycles, so the public API is called at most once per market per window
+ * however many strategies, or event-driven executions, read it. Concurrent callers always share the
+ * request in flight.
+ *
+ * <p>The first time open orders are asked for in a trade cycle, the open orders for all the
+ * markets the bot trades on are fetched in 1 batch using {@link
+ * ExchangeAdapter#getYourOpenOrdersForMarkets(Collection)}. Adapters for exchanges with a bulk
+ * endpoint make just the 1 call to the exchange. The other strategies then get the snapshot.
+ *
+ * <p>Placing or cancelling an order on a market throws away the cached open orders for that market
+ * and the cached Balance Info, so a strategy always sees its own changes. If that happens while a
+ * batch of open orders is being fetched, the batch's now stale orders for the market are not
+ * cached. The batch order calls go straight to the Exchange Adapter, so exchanges with native
+ * batch endpoints are used.
+ *
+ * <p>The asynchronous Trading API is provided too, and shares the same snapshot. If the Exchange
+ * Adapter is not an {@link AsyncExchangeAdapter}, its blocking calls are run on a thread pool.
+ *
+ * <p>If the Exchange Adapter streams market data, and the Trading Engine has subscribed to a
+ * market, the Market Order Book and Ticker are read from the adapter's local copy instead. These
+ * are not cached: the latest streamed state is always returned. Until the
+ * stream has the data, e.g. while it is reconnecting, the exchange is called as usual.
+ *
+ * <p>Market data listeners can be set to be told about every Market Order Book, Ticker and latest
+ * price fetched from the exchange, e.g. to record them. Reads from the cache or the stream are not
+ * passed on.
+ *
+ * <p>The strategies' candles are provided by the {@link CandleApi} the Trading Engine sets.
+ *
+ * <p>All other calls go straight through to the Exchange Adapter.
+ *
+ * @author gazbert
+ */
+class CycleSnapshotExchangeAdapter implements AsyncExchangeAdapter, CandleApi {
+
+  /** Told about the orders the Trading Strategies place and cancel. */
+  interface OrderListener {
+
+    /**
+     * Called after an order has been placed.
+     *
+     * @param marketId the id of the market.
+     * @param orderId the id of the new order.
+     */
+    void orderCreated(String marketId, String orderId);
+
+    /**
+     * Called after an order has been cancelled.
+     *
+     * @param marketId the id of the market.
+     * @param orderId the id of the cancelled order.
+     */
+    void orderCancelled(String marketId, String orderId);
+  }
+
+  private static final String BALANCE_INFO_KEY = "*";
+
+  private final ExchangeAdapter exchangeAdapter;
+  private final AsyncTradingApi asyncExchangeAdapter;
+  private final AsyncTradingApi asyncSnapshot;
+  private final StreamingTradingApi marketDataStream;
+  private final SingleFlightCache<MarketOrderBook> marketOrderBooks;
+  private final SingleFlightCache<Ticker> tickers;
+  private final SingleFlightCache<BigDecimal> latestMarketPrices;
+  private volatile List<String> marketIds = Collections.emptyList();
+  private volatile CycleSnapshot snapshot = new CycleSnapshot(0);
+  private volatile OrderListener orderListener;
+  private volatile MarketDataListener<MarketOrderBook> orderBookListener;
+  private volatile MarketDataListener<Ticker> tickerListener;
+  private volatile MarketDataListener<BigDecimal> latestMarketPriceListener;
+  private volatile CandleApi candleApi;
+
+  CycleSnapshotExchangeAdapter(ExchangeAdapter exchangeAdapter) {
+    this(exchangeAdapter, System::nanoTime);
+  }
+
+  CycleSnapshotExchangeAdapter(ExchangeAdapter exchangeAdapter, LongSupplier nanoClock) {
+    this.exchangeAdapter = exchangeAdapter;
+    this.asyncExchangeAdapter = AsyncTradingApi.from(exchangeAdapter);
+    this.asyncSnapshot = AsyncTradingApi.bridge(this);
+    this.marketDataStream =
+        exchangeAdapter instanceof StreamingTradingApi
+            ? (StreamingTradingApi) exchangeAdapter
+            : null;
+    this.marketOrderBooks = new SingleFlightCache<>(nanoClock);
+    this.tickers = new SingleFlightCache<>(nanoClock);
+    this.latestMarketPrices = new SingleFlightCache<>(nanoClock);
+  }
+
+  /**
+   * Throws away the current snapshot and starts a new one.
+   *
+   * @return the new trade cycle number.
+   */
+  long startNewCycle() {
+    if (!marketOrderBooks.hasFreshnessWindow()) {
+      marketOrderBooks.clear();
+      tickers.clear();
+      latestMarketPrices.clear();
+    }
+    snapshot = new CycleSnapshot(snapshot.cycleNumber + 1);
+    return snapshot.cycleNumber;
+  }
+
+  /**
+   * Sets how long the Market Order Book, Ticker and latest price are shared for.
+   *
+   * @param freshnessMillis the freshness window in millis; 0 shares them for the trade cycle.
+   */
+  void setMarketDataFreshnessMillis(long freshnessMillis) {
+    marketOrderBooks.setFreshnessMillis(freshnessMillis);
+    tickers.setFreshnessMillis(freshnessMillis);
+    latestMarketPrices.setFreshnessMillis(freshnessMillis);
+  }
+
+  /**
+   * Sets the markets the bot trades on. Their open orders are fetched together once per cycle.
+   *
+   * @param marketIds the ids of the markets.
+   */
+  void setMarketIds(List<String> marketIds) {
+    this.marketIds = Collections.unmodifiableList(new ArrayList<>(marketIds));
+  }
+
+  /**
+   * Sets the listener told about the orders the Trading Strategies place and cancel.
+   *
+   * @param orderListener the listener.
+   */
+  void setOrderListener(OrderListener orderListener) {
+    this.orderListener = orderListener;
+  }
+
+  /**
+   * Sets the listeners told about the Market Order Books, Tickers and latest prices fetched from
+   * the exchange. Any of them can be null.
+   *
+   * @param orderBookListener the order book listener.
+   * @param tickerListener the ticker listener.
+   * @param latestMarketPriceListener the latest price listener.
+   */
+  void setMarketDataListeners(
+      MarketDataListener<MarketOrderBook> orderBookListener,
+      MarketDataListener<Ticker> tickerListener,
+      MarketDataListener<BigDecimal> latestMarketPriceListener) {
+    this.orderBookListener = orderBookListener;
+    this.tickerListener = tickerListener;
+    this.latestMarketPriceListener = latestMarketPriceListener;
+  }
+
+  /**
+   * Sets where the candles for the exchange's markets are read from.
+   *
+   * @param candleApi the candle API.
+   */
+  void setCandleApi(CandleApi candleApi) {
+    this.candleApi = candleApi;
+  }
+
+  /**
+   * Returns the markets the bot trades on.
+   *
+   * @return the ids of the markets.
+   */
+  List<String> getMarketIds() {
+    return marketIds;
+  }
+
+  @Override
+  public void init(ExchangeConfig config) {
+    exchangeAdapter.init(config);
+  }
+
+  @Override
+  public String getImplName() {
+    return exchangeAdapter.getImplName();
+  }
+
+  @Override
+  public String getVersion() {
+    return exchangeAdapter.getVersion();
+  }
+
+  @Override
+  public MarketOrderBook getMarketOrders(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    final MarketOrderBook streamed = getStreamedMarketOrders(marketId);
+    if (streamed != null) {
+      return streamed;
+    }
+    return AsyncTradingApi.join(
+        marketOrderBooks.get(
+            marketId,
+            () ->
+                fetched(
+                    marketId,
+                    callNow(() -> exchangeAdapter.getMarketOrders(marketId)),
+                    orderBookListener)));
+  }
+
+  @Override
+  public CompletableFuture<MarketOrderBook> getMarketOrdersAsync(String marketId) {
+    final MarketOrderBook streamed = getStreamedMarketOrders(marketId);
+    if (streamed != null) {
+      return CompletableFuture.completedFuture(streamed);
+    }
+    return marketOrderBooks.get(
+        marketId,
+        () ->
+            fetched(
+                marketId, asyncExchangeAdapter.getMarketOrdersAsync(marketId), orderBookListener));
+  }
+
+  @Override
+  public List<OpenOrder> getYourOpenOrders(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    final CycleSnapshot current = snapshot;
+    if (!current.openOrders.containsKey(marketId) && marketIds.contains(marketId)) {
+      fetchOpenOrdersForAllMarkets(current);
+    }
+    return AsyncTradingApi.join(
+        fromSnapshot(
+            current.openOrders,
+            marketId,
+            () -> callNow(() -> exchangeAdapter.getYourOpenOrders(marketId))));
+  }
+
+  /*
+   * The open orders batch fetch is blocking, so it is run on a pool thread unless the snapshot
+   * already has them.
+   */
+  @Override
+  public CompletableFuture<List<OpenOrder>> getYourOpenOrdersAsync(String marketId) {
+    final CompletableFuture<List<OpenOrder>> openOrders = snapshot.openOrders.get(marketId);
+    return openOrders != null ? openOrders : asyncSnapshot.getYourOpenOrdersAsync(marketId);
+  }
+
+  @Override
+  public Map<String, List<OpenOrder>> getYourOpenOrdersForMarkets(Collection<String> marketIds)
+      throws ExchangeNetworkException, TradingApiException {
+    final CycleSnapshot current = snapshot;
+    final long evictionsBeforeFetch = current.evictions.get();
+    final Map<String, List<OpenOrder>> openOrders =
+        exchangeAdapter.getYourOpenOrdersForMarkets(marketIds);
+    putAllOpenOrders(current, openOrders, evictionsBeforeFetch);
+    return openOrders;
+  }
+
+  /*
+   * Only the 1st request in a cycle fetches the open orders in bulk; concurrent strategies wait for
+   * it. After that, a market evicted by an order being placed is fetched on its own.
+   */
+  private void fetchOpenOrdersForAllMarkets(CycleSnapshot current)
+      throws ExchangeNetworkException, TradingApiException {
+    synchronized (current) {
+      if (!current.openOrdersFetched) {
+        final long evictionsBeforeFetch = current.evictions.get();
+        putAllOpenOrders(
+            current, exchangeAdapter.getYourOpenOrdersForMarkets(marketIds), evictionsBeforeFetch);
+        current.openOrdersFetched = true;
+      }
+    }
+  }
+
+  /*
+   * Markets evicted after the fetch started are skipped: an order placed or cancelled while the
+   * fetch was in flight may be missing from what it returned.
+   */
+  private static void putAllOpenOrders(
+      CycleSnapshot current, Map<String, List<OpenOrder>> openOrders, long evictionsBeforeFetch) {
+    for (final Map.Entry<String, List<OpenOrder>> marketOpenOrders : openOrders.entrySet()) {
+      if (marketOpenOrders.getValue() != null) {
+        current.putOpenOrders(
+            marketOpenOrders.getKey(), marketOpenOrders.getValue(), evictionsBeforeFetch);
+      }
+    }
+  }
+
+  @Override
+  public BigDecimal getLatestMarketPrice(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    return AsyncTradingApi.join(
+        latestMarketPrices.get(
+            marketId,
+            () ->
+                fetched(
+                    marketId,
+                    callNow(() -> exchangeAdapter.getLatestMarketPrice(marketId)),
+                    latestMarketPriceListener)));
+  }
+
+  @Override
+  public CompletableFuture<BigDecimal> getLatestMarketPriceAsync(String marketId) {
+    return latestMarketPrices.get(
+        marketId,
+        () ->
+            fetched(
+                marketId,
+                asyncExchangeAdapter.getLatestMarketPriceAsync(marketId),
+                latestMarketPriceListener));
+  }
+
+  @Override
+  public List<Candle> getCandles(String marketId, CandleInterval interval, int count) {
+    final CandleApi candles = candleApi;
+    return candles == null
+        ? Collections.emptyList()
+        : candles.getCandles(marketId, interval, count);
+  }
+
+  @Override
+  public BalanceInfo getBalanceInfo() throws ExchangeNetworkException, TradingApiException {
+    return AsyncTradingApi.join(
+        fromSnapshot(
+            snapshot.balanceInfo,
+            BALANCE_INFO_KEY,
+            () -> callNow(exchangeAdapter::getBalanceInfo)));
+  }
+
+  @Override
+  public CompletableFuture<BalanceInfo> getBalanceInfoAsync() {
+    return fromSnapshot(
+        snapshot.balanceInfo, BALANCE_INFO_KEY, asyncExchangeAdapter::getBalanceInfoAsync);
+  }
+
+  @Override
+  public String createOrder(
+      String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price)
+      throws ExchangeNetworkException, TradingApiException {
+    try {
+      final String orderId = exchangeAdapter.createOrder(marketId, orderType, quantity, price);
+      orderCreated(marketId, orderId);
+      return orderId;
+    } finally {
+      snapshot.evictAccountData(marketId);
+    }
+  }
+
+  @Override
+  public CompletableFuture<String> createOrderAsync(
+      String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price) {
+    final CycleSnapshot current = snapshot;
+    return asyncExchangeAdapter
+        .createOrderAsync(marketId, orderType, quantity, price)
+        .whenComplete(
+            (orderId, failure) -> {
+              current.evictAccountData(marketId);
+              if (failure == null) {
+                orderCreated(marketId, orderId);
+              }
+            });
+  }
+
+  @Override
+  public boolean cancelOrder(String orderId, String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    try {
+      final boolean cancelled = exchangeAdapter.cancelOrder(orderId, marketId);
+      if (cancelled) {
+        orderCancelled(marketId, orderId);
+      }
+      return cancelled;
+    } finally {
+      snapshot.evictAccountData(marketId);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Boolean> cancelOrderAsync(String orderId, String marketId) {
+    final CycleSnapshot current = snapshot;
+    return asyncExchangeAdapter
+        .cancelOrderAsync(orderId, marketId)
+        .whenComplete(
+            (cancelled, failure) -> {
+              current.evictAccountData(marketId);
+              if (Boolean.TRUE.equals(cancelled)) {
+                orderCancelled(marketId, orderId);
+              }
+            });
+  }
+
+  @Override
+  public List<OrderResult> createOrders(List<OrderRequest> orderRequests)
+      throws ExchangeNetworkException, TradingApiException {
+    try {
+      final List<OrderResult> orderResults = exchangeAdapter.createOrders(orderRequests);
+      for (int i = 0; i < orderResults.size(); i++) {
+        if (orderResults.get(i).isSuccess()) {
+          orderCreated(orderRequests.get(i).getMarketId(), orderResults.get(i).getOrderId());
+        }
+      }
+      return orderResults;
+    } finally {
+      for (final OrderRequest orderRequest : orderRequests) {
+        snapshot.evictAccountData(orderRequest.getMarketId());
+      }
+    }
+  }
+
+  @Override
+  public List<OrderResult> cancelOrders(List<String> orderIds, String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    try {
+      return ordersCancelled(marketId, exchangeAdapter.cancelOrders(orderIds, marketId));
+    } finally {
+      snapshot.evictAccountData(marketId);
+    }
+  }
+
+  @Override
+  public List<OrderResult> cancelAllOrders(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    try {
+      return ordersCancelled(marketId, exchangeAdapter.cancelAllOrders(marketId));
+    } finally {
+      snapshot.evictAccountData(marketId);
+    }
+  }
+
+  private List<OrderResult> ordersCancelled(String marketId, List<OrderResult> orderResults) {
+    for (final OrderResult orderResult : orderResults) {
+      if (orderResult.isSuccess()) {
+        orderCancelled(marketId, orderResult.getOrderId());
+      }
+    }
+    return orderResults;
+  }
+
+  @Override
+  public BigDecimal getPercentageOfBuyOrderTakenForExchangeFee(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return exchangeAdapter.getPercentageOfBuyOrderTakenForExchangeFee(marketId);
+  }
+
+  @Override
+  public BigDecimal getPercentageOfSellOrderTakenForExchangeFee(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return exchangeAdapter.getPercentageOfSellOrderTakenForExchangeFee(marketId);
+  }
+
+  @Override
+  public MarketMetadata getMarketMetadata(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return exchangeAdapter.getMarketMetadata(marketId);
+  }
+
+  @Override
+  public BigDecimal roundValue(BigDecimal value) {
+    return exchangeAdapter.roundValue(value);
+  }
+
+  @Override
+  public BigDecimal roundPrice(String marketId, BigDecimal price) {
+    return exchangeAdapter.roundPrice(marketId, price);
+  }
+
+  @Override
+  public BigDecimal roundQuantity(String marketId, BigDecimal quantity) {
+    return exchangeAdapter.roundQuantity(marketId, quantity);
+  }
+
+  @Override
+  public Ticker getTicker(String marketId) throws TradingApiException, ExchangeNetworkException {
+    final Ticker streamed = getStreamedTicker(marketId);
+    if (streamed != null) {
+      return streamed;
+    }
+    return AsyncTradingApi.join(
+        tickers.get(
+            marketId,
+            () ->
+                fetched(
+                    marketId, callNow(() -> exchangeAdapter.getTicker(marketId)), tickerListener)));
+  }
+
+  @Override
+  public CompletableFuture<Ticker> getTickerAsync(String marketId) {
+    final Ticker streamed = getStreamedTicker(marketId);
+    return streamed != null
+        ? CompletableFuture.completedFuture(streamed)
+        : tickers.get(
+            marketId,
+            () -> fetched(marketId, asyncExchangeAdapter.getTickerAsync(marketId), tickerListener));
+  }
+
+  private void orderCreated(String marketId, String orderId) {
+    final OrderListener listener = orderListener;
+    if (listener != null) {
+      listener.orderCreated(marketId, orderId);
+    }
+  }
+
+  private void orderCancelled(String marketId, String orderId) {
+    final OrderListener listener = orderListener;
+    if (listener != null) {
+      listener.orderCancelled(marketId, orderId);
+    }
+  }
+
+  /*
+   * Tells the listener about the market data once it has been fetched, and returns the fetch.
+   */
+  private static <T> CompletableFuture<T> fetched(
+      String marketId, CompletableFuture<T> fetch, MarketDataListener<T> listener) {
+    if (listener != null) {
+      fetch.thenAccept(update -> listener.onUpdate(marketId, update));
+    }
+    return fetch;
+  }
+
+  private MarketOrderBook getStreamedMarketOrders(String marketId) {
+    return marketDataStream == null ? null : marketDataStream.getLatestMarketOrders(marketId);
+  }
+
+  private Ticker getStreamedTicker(String marketId) {
+    return marketDataStream == null ? null : marketDataStream.getLatestTicker(marketId);
+  }
+
+  /*
+   * Returns the snapshot's future for the given key. If there is none, the fetch is started and
+   * its future is put in the snapshot, so concurrent callers share the 1 request. A failed fetch
+   * is taken out of the snapshot again, so the next call retries it.
+   */
+  private static <T> CompletableFuture<T> fromSnapshot(
+      Map<String, CompletableFuture<T>> cache,
+      String key,
+      Supplier<CompletableFuture<T>> fetch) {
+    final CompletableFuture<T> cached = cache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    final CompletableFuture<T> alreadyFetching = cache.putIfAbsent(key, result);
+    if (alreadyFetching != null) {
+      return alreadyFetching;
+    }
+    fetch
+        .get()
+        .whenComplete(
+            (value, failure) -> {
+              if (failure != null) {
+                cache.remove(key, result);
+                result.completeExceptionally(failure);
+              } else {
+                result.complete(value);
+              }
+            });
+    return result;
+  }
+
+  /*
+   * Makes a blocking call on the calling thread and returns its outcome as a completed future.
+   */
+  private static <T> CompletableFuture<T> callNow(TradingApiCall<T> tradingApiCall) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      future.complete(tradingApiCall.call());
+    } catch (ExchangeNetworkException | TradingApiException | RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /*
+   * A blocking Trading API call.
+   */
+  @FunctionalInterface
+  private interface TradingApiCall<T> {
+    T call() throws ExchangeNetworkException, TradingApiException;
+  }
+
+  /*
+   * The exchange data fetched in a single trade cycle.
+   *
+   * Every eviction is numbered, and each market remembers the number of its last one, so a batch
+   * fetch can tell which markets were evicted while it was in flight. The check and the put are
+   * done inside the market's compute, so they cannot interleave with an eviction of that market.
+   */
+  private static final class CycleSnapshot {
+
+    private final long cycleNumber;
+    private final Map<String, CompletableFuture<List<OpenOrder>>> openOrders =
+        new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<BalanceInfo>> balanceInfo =
+        new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+    private final Map<String, Long> lastEvictions = new ConcurrentHashMap<>();
+    private boolean openOrdersFetched;
+
+    private CycleSnapshot(long cycleNumber) {
+      this.cycleNumber = cycleNumber;
+    }
+
+    private void putOpenOrders(
+        String marketId, List<OpenOrder> marketOpenOrders, long evictionsBeforeFetch) {
+      lastEvictions.compute(
+          marketId,
+          (market, lastEviction) -> {
+            if (lastEviction == null || lastEviction <= evictionsBeforeFetch) {
+              openOrders.put(market, CompletableFuture.completedFuture(marketOpenOrders));
+            }
+            return lastEviction;
+          });
+    }
+
+    private void evictAccountData(String marketId) {
+      lastEvictions.compute(
+          marketId,
+          (market, lastEviction) -> {
+            openOrders.remove(market);
+            return evictions.incrementAndGet();
+          });
+      balanceInfo.clear();
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.engine;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Shares the result of a read-only exchange call between all the callers asking for the same key.
+ *
+ * <p>The first caller starts the fetch; every caller that asks for the key while the fetch is in
+ * flight gets the same future, so only 1 request goes to the exchange. Once the fetch completes,
+ * its result is handed out until it is older than the freshness window; the next call after that
+ * fetches it again. A freshness window of 0 keeps results until the cache is cleared.
+ *
+ * <p>A failed fetch is taken out of the cache, so the next call retries it.
+ *
+ * @param <T> the type of the cached result.
+ * @author gazbert
+ */
+final class SingleFlightCache<T> {
+
+  private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>();
+  private final LongSupplier nanoClock;
+  private volatile long freshnessNanos;
+
+  SingleFlightCache(LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Sets how long a completed result is handed out for.
+   *
+   * @param freshnessMillis the freshness window in millis; 0 keeps results until cleared.
+   */
+  void setFreshnessMillis(long freshnessMillis) {
+    if (freshnessMillis < 0) {
+      throw new IllegalArgumentException(
+          "Freshness window must be 0 or more millis: " + freshnessMillis);
+    }
+    this.freshnessNanos = TimeUnit.MILLISECONDS.toNanos(freshnessMillis);
+  }
+
+  /**
+   * Returns true if completed results expire after a freshness window.
+   *
+   * @return true if there is a freshness window, false if results are kept until cleared.
+   */
+  boolean hasFreshnessWindow() {
+    return freshnessNanos > 0;
+  }
+
+  /**
+   * Returns the cached or in-flight result for the key, or starts the fetch if there is none, or
+   * the cached result has gone stale.
+   *
+   * @param key the key, e.g. the market id.
+   * @param fetch starts the fetch.
+   * @return the shared result.
+   */
+  CompletableFuture<T> get(String key, Supplier<CompletableFuture<T>> fetch) {
+    while (true) {
+      final Entry<T> cached = entries.get(key);
+      if (cached != null && isFresh(cached)) {
+        return cached.result;
+      }
+      final Entry<T> entry = new Entry<>();
+      final boolean claimed =
+          cached == null
+              ? entries.putIfAbsent(key, entry) == null
+              : entries.replace(key, cached, entry);
+      if (claimed) {
+        startFetch(key, entry, fetch);
+        return entry.result;
+      }
+      // another caller got in first - use its entry
+    }
+  }
+
+  /** Throws away all the cached results. Fetches in flight still complete for their callers. */
+  void clear() {
+    entries.clear();
+  }
+
+  private void startFetch(String key, Entry<T> entry, Supplier<CompletableFuture<T>> fetch) {
+    final CompletableFuture<T> fetched;
+    try {
+      fetched = fetch.get();
+    } catch (RuntimeException e) {
+      entries.remove(key, entry);
+      entry.result.completeExceptionally(e);
+      return;
+    }
+    fetched.whenComplete(
+        (value, failure) -> {
+          if (failure != null) {
+            entries.remove(key, entry);
+            entry.result.completeExceptionally(failure);
+          } else {
+            entry.completedAtNanos = nanoClock.getAsLong();
+            entry.completed = true;
+            entry.result.complete(value);
+          }
+        });
+  }
+
+  private boolean isFresh(Entry<T> entry) {
+    if (!entry.completed) {
+      return true; // still in flight
+    }
+    final long window = freshnessNanos;
+    return window <= 0 || nanoClock.getAsLong() - entry.completedAtNanos < window;
+  }
+
+  /*
+   * A fetch, and when it completed.
+   */
+  private static final class Entry<T> {
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private volatile long completedAtNanos;
+    private volatile boolean completed;
+  }
+}
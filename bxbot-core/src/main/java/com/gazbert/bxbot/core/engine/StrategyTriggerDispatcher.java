@@ -0,0 +1,514 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.gazbert.bxbot.core.engine;
+
+import com.gazbert.bxbot.exchange.api.StreamingExchangeAdapter;
+import com.gazbert.bxbot.strategy.api.EventDrivenTradingStrategy;
+import com.gazbert.bxbot.strategy.api.StrategyTrigger;
+import com.gazbert.bxbot.strategy.api.TradingStrategy;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.TradingApi;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decides when the Trading Strategies are executed in event driven mode.
+ *
+ * <p>Each {@link EventDrivenTradingStrategy} declares its {@link StrategyTrigger}s. Strategies that
+ * do not implement it get a timer set to the trade cycle interval, so they run as before.
+ *
+ * <ul>
+ *   <li>Timers fire on a scheduler thread.
+ *   <li>Best price and price move triggers are evaluated on every order book update when the
+ *       Exchange Adapter streams the market. Otherwise, the order book is fetched every poll
+ *       interval.
+ *   <li>Order fill triggers compare the open orders fetched every poll interval with the orders
+ *       the bot has seen, placed and cancelled.
+ * </ul>
+ *
+ * <p>A fired strategy is marked as pending. The Trading Engine waits in {@link #awaitTrigger()},
+ * then starts a trade cycle, calls {@link #pollIfDue(Map)}, and executes the strategies from
+ * {@link #takeFiredStrategies()}. Triggers are coalesced: a strategy that fires again while it is
+ * pending, or while the engine is executing it, is executed once more - not once per trigger. So
+ * however fast the market data arrives, the engine has at most 1 execution of each strategy
+ * queued.
+ *
+ * <p>An optional coalescing window makes the engine wait a little after the first trigger fires,
+ * so a burst of updates across markets is handled in 1 trade cycle.
+ *
+ * <p>The strategies are registered per exchange, because a market id is only unique on its
+ * exchange: the same market can be traded on more than 1 exchange.
+ *
+ * @author gazbert
+ */
+class StrategyTriggerDispatcher {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final BigDecimal ONE_HUNDRED = new BigDecimal("100");
+  private static final BigDecimal TWO = new BigDecimal("2");
+
+  private final long pollIntervalNanos;
+  private final long coalescingNanos;
+  private final Map<String, ExchangeTriggers> exchangeTriggers = new LinkedHashMap<>();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition fired = lock.newCondition();
+  private final Set<TradingStrategy> pendingStrategies = new LinkedHashSet<>();
+  private long nextPollNanos;
+
+  private final AtomicLong firedCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private ScheduledExecutorService timerScheduler;
+
+  /**
+   * Creates the dispatcher.
+   *
+   * @param tradingStrategiesByExchange the strategies to execute, keyed by the name of the
+   *     exchange they trade on.
+   * @param pollIntervalMillis how often to poll for the market data the exchange does not stream,
+   *     and the timer interval for strategies without triggers.
+   * @param coalescingMillis how long to wait after the first trigger fires before executing.
+   */
+  StrategyTriggerDispatcher(
+      Map<String, List<TradingStrategy>> tradingStrategiesByExchange,
+      long pollIntervalMillis,
+      long coalescingMillis) {
+    this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMillis);
+    this.coalescingNanos = TimeUnit.MILLISECONDS.toNanos(coalescingMillis);
+    for (final Map.Entry<String, List<TradingStrategy>> exchangeStrategies :
+        tradingStrategiesByExchange.entrySet()) {
+      final ExchangeTriggers triggersForExchange =
+          new ExchangeTriggers(exchangeStrategies.getKey());
+      exchangeTriggers.put(exchangeStrategies.getKey(), triggersForExchange);
+      for (final TradingStrategy tradingStrategy : exchangeStrategies.getValue()) {
+        final Collection<StrategyTrigger> triggers =
+            tradingStrategy instanceof EventDrivenTradingStrategy
+                ? ((EventDrivenTradingStrategy) tradingStrategy).getTriggers()
+                : Collections.singletonList(StrategyTrigger.onTimer(pollIntervalMillis));
+        for (final StrategyTrigger trigger : triggers) {
+          triggersForExchange.register(tradingStrategy, trigger);
+        }
+        LOG.info(
+            () ->
+                "Trading Strategy "
+                    + tradingStrategy.getClass().getSimpleName()
+                    + " will be executed on triggers: "
+                    + triggers);
+      }
+    }
+  }
+
+  /**
+   * Starts the timers, and subscribes to the order books for the price triggers on the exchanges
+   * whose Exchange Adapters stream market data. Markets that cannot be streamed are polled.
+   *
+   * @param streamingExchangeAdapters the adapters to stream from, keyed by exchange name. The
+   *     markets on the other exchanges are polled.
+   */
+  void start(Map<String, StreamingExchangeAdapter> streamingExchangeAdapters) {
+    for (final ExchangeTriggers triggers : exchangeTriggers.values()) {
+      final StreamingExchangeAdapter streamingExchangeAdapter =
+          streamingExchangeAdapters.get(triggers.exchangeName);
+      if (streamingExchangeAdapter != null) {
+        triggers.subscribe(streamingExchangeAdapter);
+      }
+    }
+
+    timerScheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("bxbot-strategy-trigger-%d")
+                .setDaemon(true)
+                .build());
+    for (final ExchangeTriggers triggers : exchangeTriggers.values()) {
+      for (final Registration registration : triggers.registrations) {
+        if (registration.trigger.getType() == StrategyTrigger.Type.TIMER) {
+          final long interval = registration.trigger.getIntervalMillis();
+          timerScheduler.scheduleAtFixedRate(
+              () -> fire(registration.tradingStrategy), interval, interval, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+
+    // The first trade cycle polls straight away to seed the prices and open orders.
+    nextPollNanos = System.nanoTime();
+  }
+
+  /** Stops the timers. */
+  void stop() {
+    if (timerScheduler != null) {
+      timerScheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Waits until a trigger fires or a poll is due. If a coalescing window is set, waits that much
+   * longer after the first trigger fires.
+   *
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  void awaitTrigger() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (pendingStrategies.isEmpty()) {
+        final long untilPoll = nextPollNanos - System.nanoTime();
+        if (untilPoll <= 0) {
+          return;
+        }
+        fired.awaitNanos(untilPoll);
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (coalescingNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(coalescingNanos);
+    }
+  }
+
+  /**
+   * Polls the market data that is not streamed, if a poll is due, and fires the triggers. Called
+   * by the engine at the start of a trade cycle.
+   *
+   * <p>A network error polling 1 market does not stop the others being polled: the failed market
+   * is skipped until the next poll, and the strategies of the healthy markets still fire.
+   *
+   * @param tradingApis the Trading APIs to poll, i.e. the trade cycle snapshots, keyed by exchange
+   *     name.
+   * @throws ExchangeNetworkException if a network error occurs polling every market.
+   * @throws TradingApiException if an exchange returns an error.
+   */
+  void pollIfDue(Map<String, ? extends TradingApi> tradingApis)
+      throws ExchangeNetworkException, TradingApiException {
+    final long now = System.nanoTime();
+    if (now - nextPollNanos < 0) {
+      return;
+    }
+    nextPollNanos = now + pollIntervalNanos;
+
+    ExchangeNetworkException networkError = null;
+    int polledCount = 0;
+    for (final ExchangeTriggers triggers : exchangeTriggers.values()) {
+      final TradingApi tradingApi = tradingApis.get(triggers.exchangeName);
+      for (final String marketId : triggers.polledMarketIds) {
+        try {
+          triggers.onOrderBook(marketId, tradingApi.getMarketOrders(marketId));
+          polledCount++;
+        } catch (ExchangeNetworkException e) {
+          networkError = skipMarket(triggers.exchangeName, marketId, e);
+        }
+      }
+      for (final String marketId : triggers.orderFillMarketIds) {
+        try {
+          triggers.checkForFills(marketId, tradingApi.getYourOpenOrders(marketId));
+          polledCount++;
+        } catch (ExchangeNetworkException e) {
+          networkError = skipMarket(triggers.exchangeName, marketId, e);
+        }
+      }
+    }
+    if (networkError != null && polledCount == 0) {
+      throw networkError;
+    }
+  }
+
+  private static ExchangeNetworkException skipMarket(
+      String exchangeName, String marketId, ExchangeNetworkException e) {
+    LOG.warn(
+        () ->
+            "Failed to poll market "
+                + marketId
+                + " on "
+                + exchangeName
+                + " - skipping it until next poll. Cause: "
+                + e.getMessage());
+    return e;
+  }
+
+  /**
+   * Returns the listener for the orders the bot places and cancels on an exchange, so order fill
+   * triggers are not fired by the bot's own cancels.
+   *
+   * @param exchangeName the name of the exchange.
+   * @return the order listener.
+   */
+  CycleSnapshotExchangeAdapter.OrderListener getOrderListener(String exchangeName) {
+    return exchangeTriggers.get(exchangeName);
+  }
+
+  /**
+   * Returns the strategies that have fired since the last call, in the order they fired, and
+   * clears them.
+   *
+   * @return the strategies to execute.
+   */
+  List<TradingStrategy> takeFiredStrategies() {
+    lock.lock();
+    try {
+      final List<TradingStrategy> strategies = new ArrayList<>(pendingStrategies);
+      pendingStrategies.clear();
+      return strategies;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  long getFiredCount() {
+    return firedCount.get();
+  }
+
+  long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  private void fire(TradingStrategy tradingStrategy) {
+    lock.lock();
+    try {
+      firedCount.incrementAndGet();
+      if (!pendingStrategies.add(tradingStrategy)) {
+        coalescedCount.incrementAndGet();
+      }
+      fired.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static BigDecimal getBestPrice(List<MarketOrder> marketOrders) {
+    return marketOrders == null || marketOrders.isEmpty() ? null : marketOrders.get(0).getPrice();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("pollIntervalMillis", TimeUnit.NANOSECONDS.toMillis(pollIntervalNanos))
+        .add("coalescingMillis", TimeUnit.NANOSECONDS.toMillis(coalescingNanos))
+        .add("exchangeTriggers", exchangeTriggers.values())
+        .add("firedCount", firedCount.get())
+        .add("coalescedCount", coalescedCount.get())
+        .toString();
+  }
+
+  /*
+   * The triggers of the strategies trading on 1 exchange. Streamed order books arrive on the
+   * stream's thread and polled ones on the engine thread, so the state is guarded by this object's
+   * monitor.
+   */
+  private final class ExchangeTriggers implements CycleSnapshotExchangeAdapter.OrderListener {
+
+    private final String exchangeName;
+    private final List<Registration> registrations = new ArrayList<>();
+    private final Set<String> polledMarketIds = new LinkedHashSet<>();
+    private final Set<String> orderFillMarketIds = new LinkedHashSet<>();
+    private final Map<String, Set<String>> knownOrderIds = new HashMap<>();
+    private final Set<String> cancelledOrderIds = new HashSet<>();
+
+    private ExchangeTriggers(String exchangeName) {
+      this.exchangeName = exchangeName;
+    }
+
+    private void register(TradingStrategy tradingStrategy, StrategyTrigger trigger) {
+      registrations.add(new Registration(tradingStrategy, trigger));
+      if (trigger.getType() == StrategyTrigger.Type.ORDER_FILL) {
+        orderFillMarketIds.add(trigger.getMarketId());
+      } else if (trigger.getType() != StrategyTrigger.Type.TIMER) {
+        polledMarketIds.add(trigger.getMarketId());
+      }
+    }
+
+    private void subscribe(StreamingExchangeAdapter streamingExchangeAdapter) {
+      for (final String marketId : new ArrayList<>(polledMarketIds)) {
+        try {
+          streamingExchangeAdapter.subscribeToOrderBook(marketId, this::onOrderBook);
+          polledMarketIds.remove(marketId);
+        } catch (ExchangeNetworkException | TradingApiException e) {
+          LOG.warn(
+              "Failed to subscribe to order book for market: "
+                  + marketId
+                  + " on "
+                  + exchangeName
+                  + ". Polling.",
+              e);
+        }
+      }
+    }
+
+    @Override
+    public synchronized void orderCreated(String marketId, String orderId) {
+      if (orderId != null && orderFillMarketIds.contains(marketId)) {
+        knownOrderIds.computeIfAbsent(marketId, id -> new HashSet<>()).add(orderId);
+      }
+    }
+
+    @Override
+    public synchronized void orderCancelled(String marketId, String orderId) {
+      if (orderFillMarketIds.contains(marketId)) {
+        cancelledOrderIds.add(orderId);
+      }
+    }
+
+    private synchronized void onOrderBook(String marketId, MarketOrderBook marketOrderBook) {
+      final BigDecimal bestBid = getBestPrice(marketOrderBook.getBuyOrders());
+      final BigDecimal bestAsk = getBestPrice(marketOrderBook.getSellOrders());
+      for (final Registration registration : registrations) {
+        if (marketId.equals(registration.trigger.getMarketId())
+            && registration.onBestPrices(bestBid, bestAsk)) {
+          fire(registration.tradingStrategy);
+        }
+      }
+    }
+
+    /*
+     * An order is filled if it was open, or the bot placed it, and it is no longer open - unless
+     * the bot cancelled it.
+     */
+    private synchronized void checkForFills(String marketId, List<OpenOrder> openOrders) {
+      final Set<String> openOrderIds = new HashSet<>();
+      for (final OpenOrder openOrder : openOrders) {
+        openOrderIds.add(openOrder.getId());
+      }
+      final Set<String> known = knownOrderIds.computeIfAbsent(marketId, id -> new HashSet<>());
+      boolean filled = false;
+      for (final String orderId : known) {
+        if (!openOrderIds.contains(orderId) && !cancelledOrderIds.remove(orderId)) {
+          LOG.info(
+              () ->
+                  "Order "
+                      + orderId
+                      + " on market "
+                      + marketId
+                      + " on "
+                      + exchangeName
+                      + " has been filled.");
+          filled = true;
+        }
+      }
+      known.clear();
+      known.addAll(openOrderIds);
+      cancelledOrderIds.retainAll(openOrderIds);
+
+      if (filled) {
+        for (final Registration registration : registrations) {
+          if (registration.trigger.getType() == StrategyTrigger.Type.ORDER_FILL
+              && marketId.equals(registration.trigger.getMarketId())) {
+            fire(registration.tradingStrategy);
+          }
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("exchangeName", exchangeName)
+          .add("polledMarketIds", polledMarketIds)
+          .add("orderFillMarketIds", orderFillMarketIds)
+          .toString();
+    }
+  }
+
+  /*
+   * A strategy's trigger and the prices it last saw. Only touched under its exchange's monitor.
+   */
+  private static final class Registration {
+
+    private final TradingStrategy tradingStrategy;
+    private final StrategyTrigger trigger;
+    private BigDecimal lastBestBid;
+    private BigDecimal lastBestAsk;
+    private BigDecimal referenceMidPrice;
+
+    private Registration(TradingStrategy tradingStrategy, StrategyTrigger trigger) {
+      this.tradingStrategy = tradingStrategy;
+      this.trigger = trigger;
+    }
+
+    /*
+     * Returns true if the trigger fires for the new best prices.
+     */
+    private boolean onBestPrices(BigDecimal bestBid, BigDecimal bestAsk) {
+      switch (trigger.getType()) {
+        case BEST_PRICE_CHANGE:
+          final boolean changed =
+              !isEqual(bestBid, lastBestBid) || !isEqual(bestAsk, lastBestAsk);
+          lastBestBid = bestBid;
+          lastBestAsk = bestAsk;
+          return changed;
+
+        case PRICE_MOVE:
+          if (bestBid == null || bestAsk == null) {
+            return false;
+          }
+          final BigDecimal midPrice = bestBid.add(bestAsk).divide(TWO, MathContext.DECIMAL64);
+          if (referenceMidPrice == null) {
+            referenceMidPrice = midPrice;
+            return false;
+          }
+          final BigDecimal movePercentage =
+              midPrice
+                  .subtract(referenceMidPrice)
+                  .abs()
+                  .multiply(ONE_HUNDRED)
+                  .divide(referenceMidPrice, MathContext.DECIMAL64);
+          if (movePercentage.compareTo(trigger.getPercentage()) >= 0) {
+            referenceMidPrice = midPrice;
+            return true;
+          }
+          return false;
+
+        default:
+          return false;
+      }
+    }
+
+    private static boolean isEqual(BigDecimal price, BigDecimal otherPrice) {
+      return Objects.equals(price, otherPrice)
+          || (price != null && otherPrice != null && price.compareTo(otherPrice) == 0);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.engine;
+
+import com.google.common.base.MoreObjects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Schedules the Trading Engine's trade cycles at a fixed rate.
+ *
+ * <p>Cycle start times are laid out on a fixed grid of {@code startTime + n * period}, so the time
+ * taken to execute a cycle does not push the next one back and the engine does not drift. If a
+ * cycle overruns its period, the missed ticks are coalesced: the next cycle starts straight away
+ * and the schedule then carries on from the next tick on the grid. Cycles never overlap.
+ *
+ * <p>The scheduler records the start jitter (how late a cycle started relative to its tick), the
+ * execution time of each cycle, and the number of overruns and missed ticks.
+ *
+ * <p>It is only used by the engine thread, but the metrics can be read from any thread.
+ *
+ * @author gazbert
+ */
+class TradeCycleScheduler {
+
+  private final long periodNanos;
+  private final LongSupplier nanoClock;
+
+  private long scheduledStartNanos;
+  private long cycleStartNanos;
+
+  private volatile long cycleCount;
+  private volatile long overrunCount;
+  private volatile long missedTickCount;
+  private volatile long lastStartJitterNanos;
+  private volatile long maxStartJitterNanos;
+  private volatile long lastExecutionTimeNanos;
+  private volatile long maxExecutionTimeNanos;
+  private volatile long totalExecutionTimeNanos;
+
+  TradeCycleScheduler(long periodMillis) {
+    this(periodMillis, System::nanoTime);
+  }
+
+  TradeCycleScheduler(long periodMillis, LongSupplier nanoClock) {
+    if (periodMillis <= 0) {
+      throw new IllegalArgumentException(
+          "Trade cycle period must be more than 0 millis: " + periodMillis);
+    }
+    this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+    this.nanoClock = nanoClock;
+    this.scheduledStartNanos = nanoClock.getAsLong();
+  }
+
+  /** Marks the start of a trade cycle and records how late it started against its tick. */
+  void cycleStarted() {
+    cycleStartNanos = nanoClock.getAsLong();
+    final long jitter = Math.max(0, cycleStartNanos - scheduledStartNanos);
+    lastStartJitterNanos = jitter;
+    if (jitter > maxStartJitterNanos) {
+      maxStartJitterNanos = jitter;
+    }
+  }
+
+  /**
+   * Marks the end of a trade cycle, records its execution time, and works out when the next cycle
+   * should start.
+   *
+   * @return the time in nanos to wait before starting the next cycle; 0 if the cycle overran.
+   */
+  long cycleCompleted() {
+    final long now = nanoClock.getAsLong();
+    final long executionTime = now - cycleStartNanos;
+    lastExecutionTimeNanos = executionTime;
+    totalExecutionTimeNanos += executionTime;
+    if (executionTime > maxExecutionTimeNanos) {
+      maxExecutionTimeNanos = executionTime;
+    }
+    cycleCount++;
+
+    scheduledStartNanos += periodNanos;
+    if (now - scheduledStartNanos > 0) {
+      // Overrun: coalesce the missed ticks into 1 cycle that starts now.
+      final long missedTicks = (now - scheduledStartNanos) / periodNanos;
+      scheduledStartNanos += missedTicks * periodNanos;
+      missedTickCount += missedTicks;
+      overrunCount++;
+      return 0;
+    }
+    return scheduledStartNanos - now;
+  }
+
+  long getPeriodMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(periodNanos);
+  }
+
+  long getCycleCount() {
+    return cycleCount;
+  }
+
+  long getOverrunCount() {
+    return overrunCount;
+  }
+
+  long getMissedTickCount() {
+    return missedTickCount;
+  }
+
+  long getLastStartJitterNanos() {
+    return lastStartJitterNanos;
+  }
+
+  long getMaxStartJitterNanos() {
+    return maxStartJitterNanos;
+  }
+
+  long getLastExecutionTimeNanos() {
+    return lastExecutionTimeNanos;
+  }
+
+  long getMaxExecutionTimeNanos() {
+    return maxExecutionTimeNanos;
+  }
+
+  long getMeanExecutionTimeNanos() {
+    final long cycles = cycleCount;
+    return cycles == 0 ? 0 : totalExecutionTimeNanos / cycles;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("periodMillis", getPeriodMillis())
+        .add("cycleCount", cycleCount)
+        .add("overrunCount", overrunCount)
+        .add("missedTickCount", missedTickCount)
+        .add("lastStartJitterMillis", TimeUnit.NANOSECONDS.toMillis(lastStartJitterNanos))
+        .add("maxStartJitterMillis", TimeUnit.NANOSECONDS.toMillis(maxStartJitterNanos))
+        .add("lastExecutionTimeMillis", TimeUnit.NANOSECONDS.toMillis(lastExecutionTimeNanos))
+        .add("maxExecutionTimeMillis", TimeUnit.NANOSECONDS.toMillis(maxExecutionTimeNanos))
+        .add("meanExecutionTimeMillis", TimeUnit.NANOSECONDS.toMillis(getMeanExecutionTimeNanos()))
+        .toString();
+  }
+}
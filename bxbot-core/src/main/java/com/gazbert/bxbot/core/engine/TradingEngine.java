@@ -28,6 +28,8 @@ import com.gazbert.bxbot.core.config.exchange.ExchangeConfigImpl;
 import com.gazbert.bxbot.core.config.strategy.TradingStrategiesBuilder;
 import com.gazbert.bxbot.core.mail.EmailAlertMessageBuilder;
 import com.gazbert.bxbot.core.mail.EmailAlerter;
+import com.gazbert.bxbot.core.marketdata.MarketDataRecorder;
+import com.gazbert.bxbot.core.marketdata.TickStore;
 import com.gazbert.bxbot.core.util.ConfigurableComponentFactory;
 import com.gazbert.bxbot.core.util.EmergencyStopChecker;
 import com.gazbert.bxbot.domain.engine.EngineConfig;
@@ -35,16 +37,37 @@ import com.gazbert.bxbot.domain.exchange.ExchangeConfig;
 import com.gazbert.bxbot.domain.market.MarketConfig;
 import com.gazbert.bxbot.domain.strategy.StrategyConfig;
 import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
+import com.gazbert.bxbot.exchange.api.StreamingExchangeAdapter;
 import com.gazbert.bxbot.services.config.EngineConfigService;
 import com.gazbert.bxbot.services.config.ExchangeConfigService;
 import com.gazbert.bxbot.services.config.MarketConfigService;
 import com.gazbert.bxbot.services.config.StrategyConfigService;
+import com.gazbert.bxbot.services.runtime.CandleService;
 import com.gazbert.bxbot.strategy.api.StrategyException;
 import com.gazbert.bxbot.strategy.api.TradingStrategy;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
 import com.gazbert.bxbot.trading.api.TradingApiException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -61,14 +84,58 @@ import org.springframework.stereotype.Component;
  * <p>The only time the bot does not fail hard and fast is for network issues connecting to the
  * exchange - it logs the error and retries at next trade cycle.
  *
- * <p>To keep things simple:
+ * <p>Trade cycles are scheduled at a fixed rate, so the time taken to execute a cycle does not
+ * delay the start of the next one. If a cycle overruns the trade cycle interval, the missed cycles
+ * are coalesced into 1 that starts straight away. The interval can be set in seconds or, for
+ * sub-second cycles, milliseconds.
  *
- * <ul>
- *   <li>The engine is single threaded.
- *   <li>The engine only supports trading on 1 exchange per instance of the bot, i.e. 1 Exchange
- *       Adapter per process.
- *   <li>The engine only supports 1 Trading Strategy per Market.
- * </ul>
+ * <p>The Trading Strategies are given a view of the Exchange Adapter that caches the order books,
+ * open orders, latest prices and balances for the duration of a trade cycle, so strategies do not
+ * fetch the same data from the exchange more than once per cycle. The balances fetched for the
+ * Emergency Stop check are shared with the strategies, and the open orders for all markets are
+ * fetched together the first time any strategy asks for them. The view also provides the
+ * asynchronous Trading API, so requests can be fanned out across markets without blocking a thread
+ * per request.
+ *
+ * <p>If streamingMarketData is enabled in the engine.yaml config and the Exchange Adapter supports
+ * it, the engine subscribes to the order book for every enabled market at startup. The strategies
+ * then read the adapter's local copy of the order book instead of fetching it every trade cycle.
+ * The adapters' market data streams are closed when the engine shuts down.
+ *
+ * <p>By default, the engine executes the Trading Strategies one after another on the engine thread.
+ * If concurrentStrategyExecution is enabled in the engine.yaml config, each market's strategy is
+ * executed on a worker from a bounded thread pool and must complete within the configured
+ * strategyExecutionTimeout. The trade cycle then takes as long as the slowest market, not the sum
+ * of them all. A strategy is never executed by more than 1 thread at a time.
+ *
+ * <p>If eventDrivenExecution is enabled in the engine.yaml config, a trade cycle only starts when
+ * a strategy's triggers fire, e.g. the best price changes or an order is filled, and only the
+ * triggered strategies are executed. Strategies are not queued more than once however many
+ * triggers fire. The trade cycle interval is then the interval at which market data that is not
+ * streamed is polled, and the Emergency Stop check runs at least that often.
+ *
+ * <p>The Exchange Adapters short-circuit the endpoints that keep failing with network errors, so
+ * a flaky market fails fast for its strategy while the healthy markets keep trading at full speed.
+ * If a network error reaches the engine itself, e.g. from the Emergency Stop check, the engine
+ * backs off before the next trade cycle, for up to the trade cycle interval.
+ *
+ * <p>The engine can trade on more than 1 exchange per instance of the bot. An Exchange Adapter is
+ * loaded for the exchange in the exchange.yaml config and for each of its additionalExchanges, and
+ * each market in the markets.yaml config is traded on the exchange it names - or the main exchange
+ * if it names none. The exchanges share the engine thread, the strategy thread pool and the
+ * Emergency Stop check, which sums the balance across all the exchanges. So a strategy on 1
+ * exchange can be triggered alongside, and act on the same trade cycle as, a strategy on another.
+ *
+ * <p>If marketDataRecordingDirectory is set in the engine.yaml config, the order books and tickers
+ * fetched from the exchanges, and the streamed order books and trades, are recorded to a {@link
+ * TickStore} per exchange. Recording runs on its own thread, so it does not slow the trade cycle.
+ *
+ * <p>The streamed trades, and the tickers and latest prices fetched from the exchanges, are folded
+ * into OHLCV candles by the {@link CandleService} as they arrive. The strategies read them through
+ * the Trading API they are given.
+ *
+ * <p>To keep things simple, the engine only supports 1 Trading Strategy per Market on each
+ * exchange.
  *
  * @author gazbert
  */
@@ -81,6 +148,12 @@ public class TradingEngine {
   private static final String CRITICAL_EMAIL_ALERT_SUBJECT = "CRITICAL Alert message from BX-bot";
   private static final String DETAILS_ERROR_MSG_LABEL = " Details: ";
   private static final String CAUSE_ERROR_MSG_LABEL = " Cause: ";
+  private static final String STRATEGY_THREAD_NAME_FORMAT = "bxbot-strategy-%d";
+  private static final long INITIAL_NETWORK_ERROR_BACKOFF_MILLIS = 1000;
+  private static final int MAX_NETWORK_ERROR_BACKOFF_DOUBLINGS = 20;
+  private static final int MARKET_DATA_SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final int MARKET_DATA_DEPTH_LEVELS = 20;
+  private static final int MARKET_DATA_QUEUE_CAPACITY = 65536;
 
   private static final Object IS_RUNNING_MONITOR = new Object();
   private Thread engineThread;
@@ -90,7 +163,15 @@ public class TradingEngine {
   private final EmailAlerter emailAlerter;
   private List<TradingStrategy> tradingStrategies;
   private EngineConfig engineConfig;
-  private ExchangeAdapter exchangeAdapter;
+  private Map<String, ExchangeAdapter> exchangeAdapters;
+  private Map<String, CycleSnapshotExchangeAdapter> cycleSnapshotExchangeAdapters;
+  private Map<String, List<TradingStrategy>> tradingStrategiesByExchange;
+  private ExecutorService strategyExecutor;
+  private TradeCycleScheduler tradeCycleScheduler;
+  private StrategyTriggerDispatcher strategyTriggerDispatcher;
+  private MarketDataRecorder marketDataRecorder;
+  private int consecutiveNetworkErrors;
+  private final Set<TradingStrategy> runningStrategies = ConcurrentHashMap.newKeySet();
 
   private final ExchangeConfigService exchangeConfigService;
   private final EngineConfigService engineConfigService;
@@ -98,6 +179,7 @@ public class TradingEngine {
   private final MarketConfigService marketConfigService;
 
   private final TradingStrategiesBuilder tradingStrategiesBuilder;
+  private final CandleService candleService;
 
   /** Creates the Trading Engine. */
   @Autowired
@@ -107,7 +189,8 @@ public class TradingEngine {
       StrategyConfigService strategyConfigService,
       MarketConfigService marketConfigService,
       EmailAlerter emailAlerter,
-      TradingStrategiesBuilder tradingStrategiesBuilder) {
+      TradingStrategiesBuilder tradingStrategiesBuilder,
+      CandleService candleService) {
 
     this.exchangeConfigService = exchangeConfigService;
     this.engineConfigService = engineConfigService;
@@ -115,6 +198,7 @@ public class TradingEngine {
     this.marketConfigService = marketConfigService;
     this.emailAlerter = emailAlerter;
     this.tradingStrategiesBuilder = tradingStrategiesBuilder;
+    this.candleService = candleService;
   }
 
   /** Starts the bot. */
@@ -138,9 +222,23 @@ public class TradingEngine {
   private void init() {
     LOG.info(() -> "Initialising Trading Engine...");
     // the sequence order of these methods is significant - don't change it.
-    exchangeAdapter = loadExchangeAdapter();
+    exchangeAdapters = loadExchangeAdapters();
+    cycleSnapshotExchangeAdapters = new LinkedHashMap<>();
+    exchangeAdapters.forEach(
+        (exchangeName, exchangeAdapter) ->
+            cycleSnapshotExchangeAdapters.put(
+                exchangeName, new CycleSnapshotExchangeAdapter(exchangeAdapter)));
     engineConfig = loadEngineConfig();
+    for (final CycleSnapshotExchangeAdapter cycleSnapshot :
+        cycleSnapshotExchangeAdapters.values()) {
+      cycleSnapshot.setMarketDataFreshnessMillis(engineConfig.getMarketDataFreshnessMillis());
+    }
+    marketDataRecorder = createMarketDataRecorder();
+    listenToMarketData();
     tradingStrategies = loadTradingStrategies();
+    strategyExecutor = createStrategyExecutor();
+    subscribeToMarketData();
+    strategyTriggerDispatcher = createStrategyTriggerDispatcher();
   }
 
   /*
@@ -150,23 +248,38 @@ public class TradingEngine {
    */
   private void runMainControlLoop() {
     LOG.info(() -> "Starting Trading Engine for " + engineConfig.getBotId() + " ...");
+    tradeCycleScheduler = new TradeCycleScheduler(getTradeCycleIntervalMillis());
     while (keepAlive) {
       try {
-        LOG.info(() -> "*** Starting next trade cycle... ***");
+        if (strategyTriggerDispatcher != null) {
+          strategyTriggerDispatcher.awaitTrigger();
+        }
+        tradeCycleScheduler.cycleStarted();
+        final long tradeCycle = startNewCycle();
+        LOG.info(() -> "*** Starting trade cycle " + tradeCycle + "... ***");
 
         // Emergency Stop Check MUST run at start of every trade cycle.
         if (isEmergencyStopLimitBreached()) {
           break;
         }
 
-        for (final TradingStrategy tradingStrategy : tradingStrategies) {
-          LOG.info(
-              () ->
-                  "Executing Trading Strategy ---> " + tradingStrategy.getClass().getSimpleName());
-          tradingStrategy.execute();
+        final List<TradingStrategy> strategiesToExecute = getStrategiesToExecute();
+        if (strategyExecutor == null) {
+          executeTradingStrategies(strategiesToExecute);
+        } else {
+          executeTradingStrategiesConcurrently(strategiesToExecute);
         }
 
-        sleepUntilNextTradingCycle();
+        consecutiveNetworkErrors = 0;
+        if (strategyTriggerDispatcher == null) {
+          sleepUntilNextTradingCycle();
+        } else {
+          tradeCycleScheduler.cycleCompleted();
+        }
+
+      } catch (InterruptedException e) {
+        LOG.warn(() -> "Control Loop thread interrupted when waiting for strategy triggers");
+        Thread.currentThread().interrupt();
 
       } catch (ExchangeNetworkException e) {
         handleExchangeNetworkException(e);
@@ -184,6 +297,24 @@ public class TradingEngine {
 
     // We've broken out of the control loop due to error or admin shutdown request
     LOG.fatal(() -> "BX-bot " + engineConfig.getBotId() + " is shutting down NOW!");
+    if (strategyExecutor != null) {
+      strategyExecutor.shutdownNow();
+    }
+    if (strategyTriggerDispatcher != null) {
+      strategyTriggerDispatcher.stop();
+    }
+    if (marketDataRecorder != null) {
+      try {
+        marketDataRecorder.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to stop market data recorder", e);
+      }
+    }
+    for (final ExchangeAdapter exchangeAdapter : exchangeAdapters.values()) {
+      if (exchangeAdapter instanceof StreamingExchangeAdapter) {
+        ((StreamingExchangeAdapter) exchangeAdapter).closeMarketDataStream();
+      }
+    }
     synchronized (IS_RUNNING_MONITOR) {
       isRunning = false;
     }
@@ -206,14 +337,138 @@ public class TradingEngine {
     return isRunning;
   }
 
+  /*
+   * In event driven mode, only the strategies whose triggers have fired are executed. The poll
+   * runs against the trade cycle snapshot, so the strategies get the same data.
+   */
+  private List<TradingStrategy> getStrategiesToExecute()
+      throws ExchangeNetworkException, TradingApiException {
+    if (strategyTriggerDispatcher == null) {
+      return tradingStrategies;
+    }
+    strategyTriggerDispatcher.pollIfDue(cycleSnapshotExchangeAdapters);
+    final List<TradingStrategy> firedStrategies = strategyTriggerDispatcher.takeFiredStrategies();
+    LOG.info(
+        () ->
+            firedStrategies.size()
+                + " Trading Strategies triggered. "
+                + strategyTriggerDispatcher);
+    return firedStrategies;
+  }
+
+  private void executeTradingStrategies(List<TradingStrategy> strategiesToExecute)
+      throws StrategyException {
+    for (final TradingStrategy tradingStrategy : strategiesToExecute) {
+      LOG.info(
+          () -> "Executing Trading Strategy ---> " + tradingStrategy.getClass().getSimpleName());
+      tradingStrategy.execute();
+    }
+  }
+
+  /*
+   * Submits each market's strategy to the worker pool and waits for them all, up to the strategy
+   * execution timeout. A strategy still running from a previous cycle is skipped so it never has
+   * more than 1 thread in it. Strategies that blow the timeout are cancelled and retried next
+   * cycle. If any strategy failed, the failure is re-thrown to the main control loop once all the
+   * others have finished, so the existing error policy applies.
+   */
+  private void executeTradingStrategiesConcurrently(List<TradingStrategy> strategiesToExecute)
+      throws StrategyException {
+    final List<StrategyExecution> executions = new ArrayList<>();
+    for (final TradingStrategy tradingStrategy : strategiesToExecute) {
+      if (!runningStrategies.add(tradingStrategy)) {
+        LOG.warn(
+            () ->
+                "Skipping Trading Strategy "
+                    + tradingStrategy.getClass().getSimpleName()
+                    + " - it is still running from previous trade cycle.");
+        continue;
+      }
+      LOG.info(
+          () -> "Submitting Trading Strategy ---> " + tradingStrategy.getClass().getSimpleName());
+      final StrategyExecution execution = new StrategyExecution(tradingStrategy);
+      execution.future = strategyExecutor.submit(execution);
+      executions.add(execution);
+    }
+
+    final long deadline =
+        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getStrategyExecutionTimeoutMillis());
+    Throwable strategyFailure = null;
+    for (final StrategyExecution execution : executions) {
+      try {
+        execution.future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+      } catch (TimeoutException e) {
+        execution.cancel();
+        LOG.warn(
+            () ->
+                "Trading Strategy "
+                    + execution.tradingStrategy.getClass().getSimpleName()
+                    + " did not complete within "
+                    + getStrategyExecutionTimeoutMillis()
+                    + "ms - cancelled it. It will be executed again at next trade cycle.");
+
+      } catch (ExecutionException e) {
+        if (strategyFailure == null) {
+          strategyFailure = e.getCause();
+        }
+
+      } catch (InterruptedException e) {
+        LOG.warn(() -> "Control Loop thread interrupted when waiting for Trading Strategies");
+        executions.forEach(StrategyExecution::cancel);
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+
+    if (strategyFailure instanceof StrategyException) {
+      throw (StrategyException) strategyFailure;
+    } else if (strategyFailure instanceof RuntimeException) {
+      throw (RuntimeException) strategyFailure;
+    } else if (strategyFailure instanceof Error) {
+      throw (Error) strategyFailure;
+    }
+  }
+
+  private long getStrategyExecutionTimeoutMillis() {
+    return engineConfig.getStrategyExecutionTimeout() > 0
+        ? TimeUnit.SECONDS.toMillis(engineConfig.getStrategyExecutionTimeout())
+        : getTradeCycleIntervalMillis();
+  }
+
+  /*
+   * The tradeCycleIntervalMillis takes precedence over the tradeCycleInterval if it is set.
+   */
+  private long getTradeCycleIntervalMillis() {
+    return engineConfig.getTradeCycleIntervalMillis() > 0
+        ? engineConfig.getTradeCycleIntervalMillis()
+        : TimeUnit.SECONDS.toMillis(engineConfig.getTradeCycleInterval());
+  }
+
   private void sleepUntilNextTradingCycle() {
+    final long sleepNanos = tradeCycleScheduler.cycleCompleted();
+    if (sleepNanos == 0) {
+      LOG.warn(
+          () ->
+              "*** Trade cycle took "
+                  + TimeUnit.NANOSECONDS.toMillis(
+                      tradeCycleScheduler.getLastExecutionTimeNanos())
+                  + "ms and overran the "
+                  + tradeCycleScheduler.getPeriodMillis()
+                  + "ms trade cycle interval - starting next trade cycle now. "
+                  + tradeCycleScheduler
+                  + " ***");
+      return;
+    }
     LOG.info(
         () ->
             "*** Sleeping "
-                + engineConfig.getTradeCycleInterval()
-                + "s til next trade cycle... ***");
+                + TimeUnit.NANOSECONDS.toMillis(sleepNanos)
+                + "ms til next trade cycle... "
+                + tradeCycleScheduler
+                + " ***");
     try {
-      Thread.sleep(engineConfig.getTradeCycleInterval() * 1000L);
+      TimeUnit.NANOSECONDS.sleep(sleepNanos);
     } catch (InterruptedException e) {
       LOG.warn(() -> "Control Loop thread interrupted when sleeping before next trade cycle");
       Thread.currentThread().interrupt();
@@ -222,24 +477,37 @@ public class TradingEngine {
 
   /*
    * We have a network connection issue reported by Exchange Adapter when called directly from
-   * Trading Engine. Current policy is to log it and sleep until next trade cycle.
+   * Trading Engine. Current policy is to log it and back off before the next trade cycle: the
+   * first wait is up to 1 second, doubling each time the error happens again, up to the trade
+   * cycle interval. The wait is jittered between half and all of the backed off time.
    */
   private void handleExchangeNetworkException(ExchangeNetworkException e) {
+    consecutiveNetworkErrors++;
+    final long backoffMillis = getNetworkErrorBackoffMillis();
     final String errorMessage =
         "A network error has occurred in Exchange Adapter! "
             + "BX-bot will try again in "
-            + engineConfig.getTradeCycleInterval()
-            + "s...";
+            + backoffMillis
+            + "ms...";
     LOG.error(() -> errorMessage, e);
-
+    tradeCycleScheduler.cycleCompleted();
     try {
-      Thread.sleep(engineConfig.getTradeCycleInterval() * 1000L);
-    } catch (InterruptedException e1) {
-      LOG.warn(() -> "Control Loop thread interrupted when sleeping before next trade cycle");
+      TimeUnit.MILLISECONDS.sleep(backoffMillis);
+    } catch (InterruptedException ie) {
+      LOG.warn(() -> "Control Loop thread interrupted when backing off after network error");
       Thread.currentThread().interrupt();
     }
   }
 
+  private long getNetworkErrorBackoffMillis() {
+    final long maxMillis = getTradeCycleIntervalMillis();
+    final long initialMillis = Math.min(INITIAL_NETWORK_ERROR_BACKOFF_MILLIS, maxMillis);
+    final int doublings =
+        Math.min(consecutiveNetworkErrors - 1, MAX_NETWORK_ERROR_BACKOFF_DOUBLINGS);
+    final long backoffMillis = Math.min(maxMillis, initialMillis << doublings);
+    return backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+  }
+
   /*
    * A serious issue has occurred in the Exchange Adapter.
    * Current policy is to log it, send email alert if required, and shutdown bot.
@@ -258,7 +526,7 @@ public class TradingEngine {
             e,
             engineConfig.getBotId(),
             engineConfig.getBotName(),
-            exchangeAdapter.getClass().getName()));
+            getExchangeAdapterNames()));
     keepAlive = false;
   }
 
@@ -280,7 +548,7 @@ public class TradingEngine {
             e,
             engineConfig.getBotId(),
             engineConfig.getBotName(),
-            exchangeAdapter.getClass().getName()));
+            getExchangeAdapterNames()));
     keepAlive = false;
   }
 
@@ -303,7 +571,7 @@ public class TradingEngine {
             e,
             engineConfig.getBotId(),
             engineConfig.getBotName(),
-            exchangeAdapter.getClass().getName()));
+            getExchangeAdapterNames()));
     keepAlive = false;
   }
 
@@ -313,21 +581,221 @@ public class TradingEngine {
       return false; // by-pass the emergency stop check
     }
     return EmergencyStopChecker.isEmergencyStopLimitBreached(
-        exchangeAdapter, engineConfig, emailAlerter);
+        new ArrayList<>(cycleSnapshotExchangeAdapters.values()),
+        getExchangeAdapterNames(),
+        engineConfig,
+        emailAlerter);
   }
 
-  private ExchangeAdapter loadExchangeAdapter() {
-    final ExchangeConfig exchangeConfig = exchangeConfigService.getExchangeConfig();
-    LOG.info(() -> "Fetched Exchange config from repository: " + exchangeConfig);
+  /*
+   * Every exchange starts a new trade cycle together, so the strategies on all of them see the
+   * same cycle. The first exchange's count is returned - they all count up in step.
+   */
+  private long startNewCycle() {
+    long tradeCycle = 0;
+    for (final CycleSnapshotExchangeAdapter cycleSnapshot :
+        cycleSnapshotExchangeAdapters.values()) {
+      final long exchangeTradeCycle = cycleSnapshot.startNewCycle();
+      if (tradeCycle == 0) {
+        tradeCycle = exchangeTradeCycle;
+      }
+    }
+    return tradeCycle;
+  }
+
+  private String getExchangeAdapterNames() {
+    return exchangeAdapters.values().stream()
+        .map(exchangeAdapter -> exchangeAdapter.getClass().getName())
+        .collect(Collectors.joining(", "));
+  }
+
+  private ExecutorService createStrategyExecutor() {
+    if (!engineConfig.isConcurrentStrategyExecution()) {
+      LOG.info(() -> "Trading Strategies will be executed sequentially.");
+      return null;
+    }
+    final int poolSize =
+        engineConfig.getStrategyThreadPoolSize() > 0
+            ? Math.min(engineConfig.getStrategyThreadPoolSize(), tradingStrategies.size())
+            : tradingStrategies.size();
+    LOG.info(
+        () ->
+            "Trading Strategies will be executed concurrently using "
+                + poolSize
+                + " threads and a "
+                + getStrategyExecutionTimeoutMillis()
+                + "ms timeout.");
+    return Executors.newFixedThreadPool(
+        Math.max(poolSize, 1),
+        new ThreadFactoryBuilder()
+            .setNameFormat(STRATEGY_THREAD_NAME_FORMAT)
+            .setDaemon(true)
+            .build());
+  }
+
+  /*
+   * A failed subscription is not fatal: the strategies fall back to fetching the market data from
+   * the exchange every trade cycle.
+   */
+  private void subscribeToMarketData() {
+    if (!engineConfig.isStreamingMarketData()) {
+      return;
+    }
+    for (final Map.Entry<String, ExchangeAdapter> exchange : exchangeAdapters.entrySet()) {
+      final ExchangeAdapter exchangeAdapter = exchange.getValue();
+      if (!(exchangeAdapter instanceof StreamingExchangeAdapter)) {
+        LOG.warn(
+            () ->
+                "streamingMarketData is enabled but "
+                    + exchangeAdapter.getImplName()
+                    + " does not support streaming market data. Market data will be fetched"
+                    + " every trade cycle.");
+        continue;
+      }
+      final StreamingExchangeAdapter streamingExchangeAdapter =
+          (StreamingExchangeAdapter) exchangeAdapter;
+      final String exchangeName = exchange.getKey();
+      for (final String marketId :
+          cycleSnapshotExchangeAdapters.get(exchangeName).getMarketIds()) {
+        try {
+          streamingExchangeAdapter.subscribeToOrderBook(
+              marketId,
+              marketDataRecorder == null
+                  ? (id, marketOrderBook) -> {}
+                  : (id, marketOrderBook) ->
+                      marketDataRecorder.recordOrderBook(exchangeName, marketOrderBook));
+          LOG.info(() -> "Streaming order book for market: " + marketId + " on " + exchangeName);
+        } catch (ExchangeNetworkException | TradingApiException e) {
+          LOG.warn(
+              "Failed to subscribe to order book for market: "
+                  + marketId
+                  + " on "
+                  + exchangeName
+                  + ". Market data will be fetched every trade cycle.",
+              e);
+        }
+        subscribeToTrades(streamingExchangeAdapter, exchangeName, marketId);
+      }
+    }
+  }
+
+  /*
+   * Trades are only seen on the stream, so they are only folded into the candles, and recorded,
+   * if market data is streamed.
+   */
+  private void subscribeToTrades(
+      StreamingExchangeAdapter streamingExchangeAdapter, String exchangeName, String marketId) {
+    try {
+      streamingExchangeAdapter.subscribeToTrades(
+          marketId,
+          (id, trade) -> {
+            candleService.onTrade(exchangeName, id, trade.getPrice(), trade.getQuantity());
+            if (marketDataRecorder != null) {
+              marketDataRecorder.recordTrade(exchangeName, id, trade);
+            }
+          });
+    } catch (ExchangeNetworkException | TradingApiException e) {
+      LOG.warn(
+          "Failed to subscribe to trades for market: "
+              + marketId
+              + " on "
+              + exchangeName
+              + ". Trades will not be in the candles or recorded.",
+          e);
+    }
+  }
+
+  private MarketDataRecorder createMarketDataRecorder() {
+    final String directory = engineConfig.getMarketDataRecordingDirectory();
+    if (directory == null || directory.trim().isEmpty()) {
+      return null;
+    }
+    final MarketDataRecorder recorder =
+        new MarketDataRecorder(
+            Paths.get(directory.trim()),
+            MARKET_DATA_SEGMENT_SIZE,
+            MARKET_DATA_DEPTH_LEVELS,
+            MARKET_DATA_QUEUE_CAPACITY);
+    LOG.info(() -> "Recording market data to: " + directory);
+    return recorder;
+  }
+
+  /*
+   * The market data fetched from the exchanges is folded into the candles, and recorded if
+   * recording is enabled.
+   */
+  private void listenToMarketData() {
+    final MarketDataRecorder recorder = marketDataRecorder;
+    cycleSnapshotExchangeAdapters.forEach(
+        (exchangeName, cycleSnapshot) -> {
+          cycleSnapshot.setMarketDataListeners(
+              recorder == null
+                  ? null
+                  : (marketId, marketOrderBook) ->
+                      recorder.recordOrderBook(exchangeName, marketOrderBook),
+              (marketId, ticker) -> {
+                candleService.onPrice(exchangeName, marketId, ticker.getLast());
+                if (recorder != null) {
+                  recorder.recordTicker(exchangeName, marketId, ticker);
+                }
+              },
+              (marketId, price) -> candleService.onPrice(exchangeName, marketId, price));
+          cycleSnapshot.setCandleApi(candleService.getCandleApi(exchangeName));
+        });
+  }
+
+  private StrategyTriggerDispatcher createStrategyTriggerDispatcher() {
+    if (!engineConfig.isEventDrivenExecution()) {
+      return null;
+    }
+    final StrategyTriggerDispatcher dispatcher =
+        new StrategyTriggerDispatcher(
+            tradingStrategiesByExchange,
+            getTradeCycleIntervalMillis(),
+            engineConfig.getEventCoalescingMillis());
+    final Map<String, StreamingExchangeAdapter> streamingExchangeAdapters = new HashMap<>();
+    exchangeAdapters.forEach(
+        (exchangeName, exchangeAdapter) -> {
+          cycleSnapshotExchangeAdapters
+              .get(exchangeName)
+              .setOrderListener(dispatcher.getOrderListener(exchangeName));
+          if (engineConfig.isStreamingMarketData()
+              && exchangeAdapter instanceof StreamingExchangeAdapter) {
+            streamingExchangeAdapters.put(
+                exchangeName, (StreamingExchangeAdapter) exchangeAdapter);
+          }
+        });
+    dispatcher.start(streamingExchangeAdapters);
+    LOG.info(() -> "Trading Strategies will be executed when their triggers fire: " + dispatcher);
+    return dispatcher;
+  }
+
+  /*
+   * The main exchange comes first, so it is the one the markets that do not name an exchange are
+   * traded on.
+   */
+  private Map<String, ExchangeAdapter> loadExchangeAdapters() {
+    final List<ExchangeConfig> exchangeConfigs = exchangeConfigService.getAllExchangeConfig();
+    final Map<String, ExchangeAdapter> adapters = new LinkedHashMap<>();
+    for (final ExchangeConfig exchangeConfig : exchangeConfigs) {
+      LOG.info(() -> "Fetched Exchange config from repository: " + exchangeConfig);
+      if (adapters.containsKey(exchangeConfig.getName())) {
+        final String errorMsg =
+            "Found duplicate Exchange name! Exchange details: " + exchangeConfig;
+        LOG.fatal(() -> errorMsg);
+        throw new IllegalArgumentException(errorMsg);
+      }
 
-    final ExchangeAdapter adapter =
-        ConfigurableComponentFactory.createComponent(exchangeConfig.getAdapter());
-    LOG.info(() -> "Trading Engine will use Exchange Adapter for: " + adapter.getImplName());
+      final ExchangeAdapter adapter =
+          ConfigurableComponentFactory.createComponent(exchangeConfig.getAdapter());
+      LOG.info(() -> "Trading Engine will use Exchange Adapter for: " + adapter.getImplName());
 
-    final ExchangeConfigImpl exchangeApiConfig =
-        ExchangeApiConfigBuilder.buildConfig(exchangeConfig);
-    adapter.init(exchangeApiConfig);
-    return adapter;
+      final ExchangeConfigImpl exchangeApiConfig =
+          ExchangeApiConfigBuilder.buildConfig(exchangeConfig);
+      adapter.init(exchangeApiConfig);
+      adapters.put(exchangeConfig.getName(), adapter);
+    }
+    return adapters;
   }
 
   private EngineConfig loadEngineConfig() {
@@ -341,6 +809,76 @@ public class TradingEngine {
     LOG.info(() -> "Fetched Strategy config from repository: " + strategies);
     final List<MarketConfig> markets = marketConfigService.getAllMarketConfig();
     LOG.info(() -> "Fetched Markets config from repository: " + markets);
-    return tradingStrategiesBuilder.buildStrategies(strategies, markets, exchangeAdapter);
+
+    final Map<String, List<MarketConfig>> marketsByExchange = new LinkedHashMap<>();
+    exchangeAdapters.keySet()
+        .forEach(exchangeName -> marketsByExchange.put(exchangeName, new ArrayList<>()));
+    final String mainExchangeName = exchangeAdapters.keySet().iterator().next();
+    for (final MarketConfig market : markets) {
+      final String exchangeName =
+          market.getExchange() == null ? mainExchangeName : market.getExchange();
+      final List<MarketConfig> exchangeMarkets = marketsByExchange.get(exchangeName);
+      if (exchangeMarkets == null) {
+        final String errorMsg =
+            "Market is bound to an Exchange that is not configured! Market details: " + market;
+        LOG.fatal(() -> errorMsg);
+        throw new IllegalArgumentException(errorMsg);
+      }
+      exchangeMarkets.add(market);
+    }
+
+    tradingStrategiesByExchange = new LinkedHashMap<>();
+    final List<TradingStrategy> allTradingStrategies = new ArrayList<>();
+    for (final Map.Entry<String, List<MarketConfig>> exchangeMarkets :
+        marketsByExchange.entrySet()) {
+      final CycleSnapshotExchangeAdapter cycleSnapshot =
+          cycleSnapshotExchangeAdapters.get(exchangeMarkets.getKey());
+      cycleSnapshot.setMarketIds(
+          exchangeMarkets.getValue().stream()
+              .filter(MarketConfig::isEnabled)
+              .map(MarketConfig::getId)
+              .collect(Collectors.toList()));
+      final List<TradingStrategy> exchangeStrategies =
+          tradingStrategiesBuilder.buildStrategies(
+              strategies, exchangeMarkets.getValue(), cycleSnapshot);
+      tradingStrategiesByExchange.put(exchangeMarkets.getKey(), exchangeStrategies);
+      allTradingStrategies.addAll(exchangeStrategies);
+    }
+    return allTradingStrategies;
+  }
+
+  /*
+   * A single execution of a Trading Strategy on the worker pool. Whoever claims it first - the
+   * worker or a cancel - owns it, so a strategy that was cancelled before it started is never
+   * left marked as running.
+   */
+  private final class StrategyExecution implements Callable<Void> {
+
+    private final TradingStrategy tradingStrategy;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private Future<Void> future;
+
+    private StrategyExecution(TradingStrategy tradingStrategy) {
+      this.tradingStrategy = tradingStrategy;
+    }
+
+    @Override
+    public Void call() throws StrategyException {
+      if (claimed.compareAndSet(false, true)) {
+        try {
+          tradingStrategy.execute();
+        } finally {
+          runningStrategies.remove(tradingStrategy);
+        }
+      }
+      return null;
+    }
+
+    private void cancel() {
+      if (claimed.compareAndSet(false, true)) {
+        runningStrategies.remove(tradingStrategy);
+      }
+      future.cancel(true);
+    }
   }
 }
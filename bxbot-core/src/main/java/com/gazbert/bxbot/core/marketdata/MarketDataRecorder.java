@@ -0,0 +1,279 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.marketdata;
+
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.MarketTrade;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.google.common.base.MoreObjects;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Records the market data the bot receives in a {@link TickStore} per exchange.
+ *
+ * <p>Recording must not slow the trade cycle, so the record methods only stamp the update with the
+ * time and put it on a bounded queue; they never block. A background thread converts the updates
+ * and appends them to the store. If the queue is full, the update is dropped and counted. If the
+ * store cannot be written to, e.g. because the disk is full, the error is logged and recording
+ * stops; trading carries on.
+ *
+ * <p>The record methods are thread safe.
+ *
+ * @author gazbert
+ */
+public final class MarketDataRecorder implements Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final String THREAD_NAME = "bxbot-market-data-recorder";
+  private static final long POLL_MILLIS = 100;
+  private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final int depthLevels;
+  private final LongSupplier clock;
+  private final BlockingQueue<Observation> queue;
+  private final Map<String, TickStore> tickStores = new HashMap<>();
+  private final AtomicLong recordedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final Thread writerThread;
+  private volatile boolean running = true;
+  private volatile boolean failed;
+
+  /**
+   * Starts the recorder.
+   *
+   * @param directory the directory to record to. Each exchange has a tick store in a
+   *     subdirectory.
+   * @param segmentSize the size of each segment file in bytes.
+   * @param depthLevels the most order book levels to record on each side.
+   * @param queueCapacity the most updates waiting to be written before updates are dropped.
+   */
+  public MarketDataRecorder(Path directory, int segmentSize, int depthLevels, int queueCapacity) {
+    this(directory, segmentSize, depthLevels, queueCapacity, System::currentTimeMillis);
+  }
+
+  MarketDataRecorder(
+      Path directory, int segmentSize, int depthLevels, int queueCapacity, LongSupplier clock) {
+    TickStore.checkSegmentSize(segmentSize);
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.depthLevels = depthLevels;
+    this.clock = clock;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    writerThread = new Thread(this::writeUpdates, THREAD_NAME);
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Records an order book as a depth snapshot.
+   *
+   * @param exchangeName the name of the exchange.
+   * @param marketOrderBook the order book.
+   */
+  public void recordOrderBook(String exchangeName, MarketOrderBook marketOrderBook) {
+    record(exchangeName, marketOrderBook.getMarketId(), marketOrderBook);
+  }
+
+  /**
+   * Records a ticker's best bid and ask as top of book.
+   *
+   * @param exchangeName the name of the exchange.
+   * @param marketId the market id.
+   * @param ticker the ticker.
+   */
+  public void recordTicker(String exchangeName, String marketId, Ticker ticker) {
+    record(exchangeName, marketId, ticker);
+  }
+
+  /**
+   * Records a trade.
+   *
+   * @param exchangeName the name of the exchange.
+   * @param marketId the market id.
+   * @param trade the trade.
+   */
+  public void recordTrade(String exchangeName, String marketId, MarketTrade trade) {
+    record(exchangeName, marketId, trade);
+  }
+
+  /**
+   * Returns the number of updates written to the tick stores.
+   *
+   * @return the recorded count.
+   */
+  public long getRecordedCount() {
+    return recordedCount.get();
+  }
+
+  /**
+   * Returns the number of updates dropped because the queue was full or recording had failed.
+   *
+   * @return the dropped count.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Returns the tick store directory for an exchange, e.g. to scan it with a {@link TickStore}.
+   *
+   * @param exchangeName the name of the exchange.
+   * @return the directory.
+   */
+  public Path getTickStoreDirectory(String exchangeName) {
+    return directory.resolve(TickStore.toFileName(exchangeName));
+  }
+
+  /**
+   * Writes the updates already queued, then stops the recorder and closes the tick stores.
+   *
+   * @throws IOException if interrupted while waiting for the writer thread.
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    try {
+      writerThread.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted waiting for market data recorder to stop", e);
+    }
+  }
+
+  private void record(String exchangeName, String marketId, Object update) {
+    if (!running || failed) {
+      droppedCount.incrementAndGet();
+      return;
+    }
+    if (!queue.offer(new Observation(exchangeName, marketId, clock.getAsLong(), update))) {
+      droppedCount.incrementAndGet();
+    }
+  }
+
+  private void writeUpdates() {
+    try {
+      while (running || !queue.isEmpty()) {
+        final Observation observation = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (observation != null && !failed) {
+          write(observation);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      tickStores.values().forEach(TickStore::close);
+      LOG.info(() -> "Market data recorder stopped: " + this);
+    }
+  }
+
+  private void write(Observation observation) {
+    try {
+      final TickStore tickStore =
+          tickStores.computeIfAbsent(
+              observation.exchangeName,
+              exchangeName -> new TickStore(getTickStoreDirectory(exchangeName), segmentSize));
+      if (observation.update instanceof MarketOrderBook) {
+        final MarketOrderBook marketOrderBook = (MarketOrderBook) observation.update;
+        tickStore.appendDepth(
+            observation.marketId,
+            observation.timestamp,
+            marketOrderBook.getBuyOrders(),
+            marketOrderBook.getSellOrders(),
+            depthLevels);
+      } else if (observation.update instanceof Ticker) {
+        final Ticker ticker = (Ticker) observation.update;
+        if (ticker.getBid() == null || ticker.getAsk() == null) {
+          return;
+        }
+        tickStore.appendTopOfBook(
+            observation.marketId,
+            observation.timestamp,
+            ticker.getBid(),
+            null,
+            ticker.getAsk(),
+            null);
+      } else {
+        final MarketTrade trade = (MarketTrade) observation.update;
+        tickStore.appendTrade(
+            observation.marketId,
+            observation.timestamp,
+            trade.getType(),
+            trade.getPrice(),
+            trade.getQuantity());
+      }
+      recordedCount.incrementAndGet();
+
+    } catch (IOException e) {
+      failed = true;
+      LOG.error("Failed to record market data. Recording has stopped; trading carries on.", e);
+    } catch (RuntimeException e) {
+      droppedCount.incrementAndGet();
+      LOG.warn("Failed to record market data update: " + observation.update, e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("directory", directory)
+        .add("segmentSize", segmentSize)
+        .add("depthLevels", depthLevels)
+        .add("recordedCount", recordedCount)
+        .add("droppedCount", droppedCount)
+        .add("failed", failed)
+        .toString();
+  }
+
+  /*
+   * An update waiting to be written, stamped with the time it was received.
+   */
+  private static final class Observation {
+
+    private final String exchangeName;
+    private final String marketId;
+    private final long timestamp;
+    private final Object update;
+
+    Observation(String exchangeName, String marketId, long timestamp, Object update) {
+      this.exchangeName = exchangeName;
+      this.marketId = marketId;
+      this.timestamp = timestamp;
+      this.update = update;
+    }
+  }
+}
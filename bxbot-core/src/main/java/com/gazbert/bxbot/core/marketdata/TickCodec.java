@@ -0,0 +1,336 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.marketdata;
+
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes and decodes the records in a tick store segment.
+ *
+ * <p>A record is a type byte followed by varints. The timestamp is stored as the millis since the
+ * record before it, and each price as the difference from the last price of its kind - the best
+ * bid, best ask or last trade - so the small moves between ticks take 1 or 2 bytes. Quantities
+ * are stored as they are. The previous values are reset at the start of every segment, so each
+ * segment can be decoded on its own.
+ *
+ * <p>Encoding does not change the previous values until the record is committed, so a record that
+ * does not fit in a segment can be encoded again for the next one.
+ *
+ * <p>This class is not thread safe.
+ *
+ * @author gazbert
+ */
+final class TickCodec {
+
+  static final byte END = 0;
+  static final byte TOP_OF_BOOK = 1;
+  static final byte DEPTH = 2;
+  static final byte TRADE_BUY = 3;
+  static final byte TRADE_SELL = 4;
+  static final byte TRADE = 5;
+
+  private static final int MAX_VARINT_BYTES = 10;
+
+  private long lastTimestamp;
+  private long lastBidPrice;
+  private long lastAskPrice;
+  private long lastTradePrice;
+
+  // The values the record in the scratch buffer moves them to.
+  private long pendingTimestamp;
+  private long pendingBidPrice;
+  private long pendingAskPrice;
+  private long pendingTradePrice;
+
+  private byte[] scratch = new byte[64];
+  private int length;
+
+  private long[] bidPrices = new long[16];
+  private long[] bidQuantities = new long[16];
+  private long[] askPrices = new long[16];
+  private long[] askQuantities = new long[16];
+
+  void reset(long timestamp) {
+    lastTimestamp = timestamp;
+    lastBidPrice = 0;
+    lastAskPrice = 0;
+    lastTradePrice = 0;
+  }
+
+  long getLastTimestamp() {
+    return lastTimestamp;
+  }
+
+  // --------------------------------------------------------------------------
+  // Encoding
+  // --------------------------------------------------------------------------
+
+  byte[] getScratch() {
+    return scratch;
+  }
+
+  int encodeTopOfBook(
+      long timestamp, long bidPrice, long bidQuantity, long askPrice, long askQuantity) {
+    startRecord(TOP_OF_BOOK, timestamp, 4);
+    writeSigned(bidPrice - lastBidPrice);
+    writeUnsigned(bidQuantity);
+    writeSigned(askPrice - lastAskPrice);
+    writeUnsigned(askQuantity);
+    pendingBidPrice = bidPrice;
+    pendingAskPrice = askPrice;
+    return length;
+  }
+
+  int encodeDepth(
+      long timestamp,
+      long[] bidPrices,
+      long[] bidQuantities,
+      int bidCount,
+      long[] askPrices,
+      long[] askQuantities,
+      int askCount) {
+    startRecord(DEPTH, timestamp, 2 + 2 * (bidCount + askCount));
+    writeUnsigned(bidCount);
+    writeUnsigned(askCount);
+    long previousPrice = lastBidPrice;
+    for (int i = 0; i < bidCount; i++) {
+      writeSigned(bidPrices[i] - previousPrice);
+      writeUnsigned(bidQuantities[i]);
+      previousPrice = bidPrices[i];
+    }
+    previousPrice = lastAskPrice;
+    for (int i = 0; i < askCount; i++) {
+      writeSigned(askPrices[i] - previousPrice);
+      writeUnsigned(askQuantities[i]);
+      previousPrice = askPrices[i];
+    }
+    pendingBidPrice = bidCount > 0 ? bidPrices[0] : lastBidPrice;
+    pendingAskPrice = askCount > 0 ? askPrices[0] : lastAskPrice;
+    return length;
+  }
+
+  int encodeTrade(long timestamp, OrderType type, long price, long quantity) {
+    final byte recordType;
+    if (type == OrderType.BUY) {
+      recordType = TRADE_BUY;
+    } else if (type == OrderType.SELL) {
+      recordType = TRADE_SELL;
+    } else {
+      recordType = TRADE;
+    }
+    startRecord(recordType, timestamp, 2);
+    writeSigned(price - lastTradePrice);
+    writeUnsigned(quantity);
+    pendingTradePrice = price;
+    return length;
+  }
+
+  void commit() {
+    lastTimestamp = pendingTimestamp;
+    lastBidPrice = pendingBidPrice;
+    lastAskPrice = pendingAskPrice;
+    lastTradePrice = pendingTradePrice;
+  }
+
+  private void startRecord(byte type, long timestamp, int varints) {
+    final int maxLength = 1 + MAX_VARINT_BYTES * (varints + 1);
+    if (scratch.length < maxLength) {
+      scratch = new byte[Math.max(maxLength, scratch.length * 2)];
+    }
+    length = 0;
+    scratch[length++] = type;
+    writeUnsigned(timestamp - lastTimestamp);
+    pendingTimestamp = timestamp;
+    pendingBidPrice = lastBidPrice;
+    pendingAskPrice = lastAskPrice;
+    pendingTradePrice = lastTradePrice;
+  }
+
+  private void writeSigned(long value) {
+    writeUnsigned((value << 1) ^ (value >> 63));
+  }
+
+  private void writeUnsigned(long value) {
+    while ((value & ~0x7FL) != 0) {
+      scratch[length++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    scratch[length++] = (byte) value;
+  }
+
+  // --------------------------------------------------------------------------
+  // Decoding
+  // --------------------------------------------------------------------------
+
+  /**
+   * Decodes the record at the buffer's position, and moves past it.
+   *
+   * <p>A record that is cut short or not valid, e.g. because the bot crashed while writing it,
+   * is treated as the end of the segment.
+   *
+   * @param buffer the segment.
+   * @param fromTimestamp the visitor is only called for records at or after this time.
+   * @param toTimestamp the visitor is only called for records at or before this time.
+   * @param visitor the visitor, or null to skip the record.
+   * @return the record type, or {@link #END} if there are no more records. The position is not
+   *     moved at the end.
+   */
+  byte decode(ByteBuffer buffer, long fromTimestamp, long toTimestamp, TickVisitor visitor) {
+    final int start = buffer.position();
+    if (!buffer.hasRemaining()) {
+      return END;
+    }
+    final byte type = buffer.get();
+    try {
+      switch (type) {
+        case TOP_OF_BOOK:
+          decodeTopOfBook(buffer, fromTimestamp, toTimestamp, visitor);
+          return type;
+        case DEPTH:
+          decodeDepth(buffer, fromTimestamp, toTimestamp, visitor);
+          return type;
+        case TRADE_BUY:
+        case TRADE_SELL:
+        case TRADE:
+          decodeTrade(buffer, type, fromTimestamp, toTimestamp, visitor);
+          return type;
+        default:
+          buffer.position(start);
+          return END;
+      }
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      buffer.position(start);
+      return END;
+    }
+  }
+
+  private void decodeTopOfBook(
+      ByteBuffer buffer, long fromTimestamp, long toTimestamp, TickVisitor visitor) {
+    final long timestamp = lastTimestamp + readUnsigned(buffer);
+    final long bidPrice = lastBidPrice + readSigned(buffer);
+    final long bidQuantity = readUnsigned(buffer);
+    final long askPrice = lastAskPrice + readSigned(buffer);
+    final long askQuantity = readUnsigned(buffer);
+    lastTimestamp = timestamp;
+    lastBidPrice = bidPrice;
+    lastAskPrice = askPrice;
+    if (visitor != null && timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+      visitor.onTopOfBook(timestamp, bidPrice, bidQuantity, askPrice, askQuantity);
+    }
+  }
+
+  private void decodeDepth(
+      ByteBuffer buffer, long fromTimestamp, long toTimestamp, TickVisitor visitor) {
+    final long timestamp = lastTimestamp + readUnsigned(buffer);
+    final int bidCount = readCount(buffer);
+    final int askCount = readCount(buffer);
+    if (bidPrices.length < bidCount) {
+      bidPrices = Arrays.copyOf(bidPrices, bidCount);
+      bidQuantities = Arrays.copyOf(bidQuantities, bidCount);
+    }
+    if (askPrices.length < askCount) {
+      askPrices = Arrays.copyOf(askPrices, askCount);
+      askQuantities = Arrays.copyOf(askQuantities, askCount);
+    }
+    long price = lastBidPrice;
+    for (int i = 0; i < bidCount; i++) {
+      price += readSigned(buffer);
+      bidPrices[i] = price;
+      bidQuantities[i] = readUnsigned(buffer);
+    }
+    price = lastAskPrice;
+    for (int i = 0; i < askCount; i++) {
+      price += readSigned(buffer);
+      askPrices[i] = price;
+      askQuantities[i] = readUnsigned(buffer);
+    }
+    lastTimestamp = timestamp;
+    if (bidCount > 0) {
+      lastBidPrice = bidPrices[0];
+    }
+    if (askCount > 0) {
+      lastAskPrice = askPrices[0];
+    }
+    if (visitor != null && timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+      visitor.onDepth(
+          timestamp, bidPrices, bidQuantities, bidCount, askPrices, askQuantities, askCount);
+    }
+  }
+
+  private void decodeTrade(
+      ByteBuffer buffer,
+      byte type,
+      long fromTimestamp,
+      long toTimestamp,
+      TickVisitor visitor) {
+    final long timestamp = lastTimestamp + readUnsigned(buffer);
+    final long price = lastTradePrice + readSigned(buffer);
+    final long quantity = readUnsigned(buffer);
+    lastTimestamp = timestamp;
+    lastTradePrice = price;
+    if (visitor != null && timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+      final OrderType orderType;
+      if (type == TRADE_BUY) {
+        orderType = OrderType.BUY;
+      } else if (type == TRADE_SELL) {
+        orderType = OrderType.SELL;
+      } else {
+        orderType = null;
+      }
+      visitor.onTrade(timestamp, orderType, price, quantity);
+    }
+  }
+
+  /*
+   * A count bigger than the bytes left cannot be valid, so a torn record cannot make us allocate
+   * a huge array.
+   */
+  private static int readCount(ByteBuffer buffer) {
+    final long count = readUnsigned(buffer);
+    if (count > buffer.remaining()) {
+      throw new IllegalArgumentException("Level count is not valid: " + count);
+    }
+    return (int) count;
+  }
+
+  private static long readSigned(ByteBuffer buffer) {
+    final long value = readUnsigned(buffer);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static long readUnsigned(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Varint is too long");
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.marketdata;
+
+import com.google.common.base.MoreObjects;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a market's records in a {@link TickStore} between 2 times, 1 record at a time, oldest
+ * first. Unlike a scan, the caller asks for each record, so the records of several markets can be
+ * merged in time order.
+ *
+ * <p>Like a scan, a cursor only reads the segments that overlap the time range, and can be used
+ * while the store is written to, but may not see the latest records. A cursor is not thread safe,
+ * but any number of cursors can read the same store at the same time.
+ *
+ * @author gazbert
+ */
+public final class TickCursor {
+
+  private final Path directory;
+  private final List<Path> segments;
+  private final long fromTimestamp;
+  private final long toTimestamp;
+  private final TickCodec decoder = new TickCodec();
+  private int nextSegment;
+  private ByteBuffer segment;
+  private boolean finished;
+
+  TickCursor(Path directory, long fromTimestamp, long toTimestamp) throws IOException {
+    this.directory = directory;
+    this.segments =
+        Files.isDirectory(directory) ? TickLog.listSegments(directory) : Collections.emptyList();
+    this.fromTimestamp = fromTimestamp;
+    this.toTimestamp = toTimestamp;
+  }
+
+  /**
+   * Visits the next record in the time range.
+   *
+   * @param visitor the visitor.
+   * @return true if a record was visited, false if there are no more.
+   * @throws IOException if a segment cannot be read.
+   */
+  public boolean next(TickVisitor visitor) throws IOException {
+    while (!finished) {
+      if (segment == null && !openNextSegment()) {
+        finished = true;
+      } else if (decoder.decode(segment, fromTimestamp, toTimestamp, visitor) == TickCodec.END) {
+        segment = null;
+      } else if (decoder.getLastTimestamp() > toTimestamp) {
+        finished = true;
+      } else if (decoder.getLastTimestamp() >= fromTimestamp) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean openNextSegment() throws IOException {
+    while (nextSegment < segments.size()) {
+      final int index = nextSegment++;
+      if (TickLog.getFirstTimestamp(segments.get(index)) > toTimestamp) {
+        return false;
+      }
+      // The records in a segment are no later than the first record of the next one.
+      if (index + 1 < segments.size()
+          && TickLog.getFirstTimestamp(segments.get(index + 1)) < fromTimestamp) {
+        continue;
+      }
+      final ByteBuffer buffer = TickLog.map(segments.get(index), FileChannel.MapMode.READ_ONLY);
+      if (TickLog.hasValidHeader(buffer)) {
+        decoder.reset(buffer.getLong(16));
+        buffer.position(TickLog.HEADER_SIZE);
+        segment = buffer;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("directory", directory)
+        .add("fromTimestamp", fromTimestamp)
+        .add("toTimestamp", toTimestamp)
+        .add("finished", finished)
+        .toString();
+  }
+}
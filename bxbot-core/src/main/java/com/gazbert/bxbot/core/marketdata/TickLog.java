@@ -0,0 +1,295 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.marketdata;
+
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The segment files of 1 market in a {@link TickStore}.
+ *
+ * <p>Each segment is a file of a fixed size, mapped into memory, with a header followed by the
+ * records. It is named after its sequence number and the time of its first record, so a scan can
+ * skip the segments outside its time range without opening them. The unused end of a segment is
+ * zeros, which reads as the end of the records.
+ *
+ * <p>Writes are made crash safe like this:
+ *
+ * <ul>
+ *   <li>A new segment is created and sized as a temp file, and renamed once its header is on disk.
+ *       A segment file is never seen half created, and temp files left by a crash are deleted.
+ *   <li>A record's type byte is written after the rest of it, so a record cut short by a crash is
+ *       read as the end of the segment.
+ *   <li>On opening, writing carries on at the end of the last segment. If anything but zeros
+ *       follows its last record, e.g. the rest of a record cut short by a crash, the segment is
+ *       left as it is and a new one is started. Otherwise a shorter record written over those
+ *       bytes would leave some of them to be read as the next record.
+ *   <li>A segment is forced to disk before the next one is started.
+ * </ul>
+ *
+ * <p>Appending is not thread safe. Scans can be run from any thread while the log is written to.
+ *
+ * @author gazbert
+ */
+final class TickLog implements Closeable {
+
+  static final String SEGMENT_SUFFIX = ".ticks";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final int MAGIC = 0x4258544B; // BXTK
+  private static final int VERSION = 1;
+  static final int HEADER_SIZE = 32;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final TickCodec codec = new TickCodec();
+  private MappedByteBuffer segment;
+  private long nextSegmentNumber;
+
+  TickLog(Path directory, int segmentSize) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    Files.createDirectories(directory);
+    deleteTempFiles(directory);
+
+    final List<Path> segments = listSegments(directory);
+    if (!segments.isEmpty()) {
+      final Path lastSegment = segments.get(segments.size() - 1);
+      nextSegmentNumber = getSegmentNumber(lastSegment) + 1;
+      reopen(lastSegment);
+    }
+  }
+
+  void appendTopOfBook(
+      long timestamp, long bidPrice, long bidQuantity, long askPrice, long askQuantity)
+      throws IOException {
+    final long recordTimestamp = Math.max(timestamp, codec.getLastTimestamp());
+    int length =
+        codec.encodeTopOfBook(recordTimestamp, bidPrice, bidQuantity, askPrice, askQuantity);
+    if (needsNewSegment(length)) {
+      roll(recordTimestamp);
+      length = codec.encodeTopOfBook(recordTimestamp, bidPrice, bidQuantity, askPrice, askQuantity);
+    }
+    write(length);
+  }
+
+  void appendDepth(
+      long timestamp,
+      long[] bidPrices,
+      long[] bidQuantities,
+      int bidCount,
+      long[] askPrices,
+      long[] askQuantities,
+      int askCount)
+      throws IOException {
+    final long recordTimestamp = Math.max(timestamp, codec.getLastTimestamp());
+    int length =
+        codec.encodeDepth(
+            recordTimestamp,
+            bidPrices,
+            bidQuantities,
+            bidCount,
+            askPrices,
+            askQuantities,
+            askCount);
+    if (needsNewSegment(length)) {
+      roll(recordTimestamp);
+      length =
+          codec.encodeDepth(
+              recordTimestamp,
+              bidPrices,
+              bidQuantities,
+              bidCount,
+              askPrices,
+              askQuantities,
+              askCount);
+    }
+    write(length);
+  }
+
+  void appendTrade(long timestamp, OrderType type, long price, long quantity) throws IOException {
+    final long recordTimestamp = Math.max(timestamp, codec.getLastTimestamp());
+    int length = codec.encodeTrade(recordTimestamp, type, price, quantity);
+    if (needsNewSegment(length)) {
+      roll(recordTimestamp);
+      length = codec.encodeTrade(recordTimestamp, type, price, quantity);
+    }
+    write(length);
+  }
+
+  /** Forces the records written so far to disk. */
+  void force() {
+    if (segment != null) {
+      segment.force();
+    }
+  }
+
+  @Override
+  public void close() {
+    force();
+    segment = null;
+  }
+
+  /**
+   * Visits the records in a market's segments between 2 times.
+   *
+   * @param directory the market's directory.
+   * @param fromTimestamp the start of the time range, inclusive.
+   * @param toTimestamp the end of the time range, inclusive.
+   * @param visitor the visitor.
+   * @throws IOException if a segment cannot be read.
+   */
+  static void scan(Path directory, long fromTimestamp, long toTimestamp, TickVisitor visitor)
+      throws IOException {
+    final TickCursor cursor = new TickCursor(directory, fromTimestamp, toTimestamp);
+    while (cursor.next(visitor)) {
+      // visit every record
+    }
+  }
+
+  private boolean needsNewSegment(int length) {
+    return segment == null || length > segment.remaining();
+  }
+
+  private void write(int length) {
+    if (length > segment.remaining()) {
+      throw new IllegalArgumentException(
+          "Record of " + length + " bytes is too big for a segment of " + segmentSize + " bytes");
+    }
+    final byte[] record = codec.getScratch();
+    final int start = segment.position();
+    segment.position(start + 1);
+    segment.put(record, 1, length - 1);
+    segment.put(start, record[0]);
+    codec.commit();
+  }
+
+  private void roll(long firstTimestamp) throws IOException {
+    force();
+    final String name = String.format("%010d-%d", nextSegmentNumber++, firstTimestamp);
+    final Path tempFile = directory.resolve(name + TEMP_SUFFIX);
+    final Path segmentFile = directory.resolve(name + SEGMENT_SUFFIX);
+
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putInt(TickStore.SCALE).putInt(0);
+    header.putLong(firstTimestamp).putLong(0).flip();
+    try (FileChannel channel =
+        FileChannel.open(
+            tempFile,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      channel.write(header, 0);
+      channel.write(ByteBuffer.wrap(new byte[1]), segmentSize - 1L);
+      channel.force(true);
+    }
+    Files.move(tempFile, segmentFile, StandardCopyOption.ATOMIC_MOVE);
+
+    segment = map(segmentFile, FileChannel.MapMode.READ_WRITE);
+    segment.position(HEADER_SIZE);
+    codec.reset(firstTimestamp);
+  }
+
+  private void reopen(Path segmentFile) throws IOException {
+    final MappedByteBuffer buffer = map(segmentFile, FileChannel.MapMode.READ_WRITE);
+    if (!hasValidHeader(buffer)) {
+      return;
+    }
+    codec.reset(buffer.getLong(16));
+    buffer.position(HEADER_SIZE);
+    while (codec.decode(buffer, Long.MIN_VALUE, Long.MAX_VALUE, null) != TickCodec.END) {
+      // just find the end
+    }
+    if (!isZeroFrom(buffer, buffer.position())) {
+      return;
+    }
+    segment = buffer;
+  }
+
+  private static boolean isZeroFrom(ByteBuffer buffer, int index) {
+    for (int i = index; i < buffer.limit(); i++) {
+      if (buffer.get(i) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static boolean hasValidHeader(ByteBuffer buffer) {
+    return buffer.limit() >= HEADER_SIZE
+        && buffer.getInt(0) == MAGIC
+        && buffer.getInt(4) == VERSION
+        && buffer.getInt(8) == TickStore.SCALE;
+  }
+
+  static MappedByteBuffer map(Path file, FileChannel.MapMode mapMode) throws IOException {
+    final StandardOpenOption[] options =
+        mapMode == FileChannel.MapMode.READ_ONLY
+            ? new StandardOpenOption[] {StandardOpenOption.READ}
+            : new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE};
+    try (FileChannel channel = FileChannel.open(file, options)) {
+      return channel.map(mapMode, 0, channel.size());
+    }
+  }
+
+  static List<Path> listSegments(Path directory) throws IOException {
+    final List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      files.forEach(segments::add);
+    }
+    // The sequence number is zero padded, so the names sort in sequence order.
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private static void deleteTempFiles(Path directory) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+      for (final Path file : files) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private static long getSegmentNumber(Path segment) {
+    final String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.indexOf('-')));
+  }
+
+  static long getFirstTimestamp(Path segment) {
+    final String name = segment.getFileName().toString();
+    return Long.parseLong(
+        name.substring(name.indexOf('-') + 1, name.length() - SEGMENT_SUFFIX.length()));
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.marketdata;
+
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.google.common.base.MoreObjects;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An append-only store of market data: top of book, order book depth snapshots and trades, per
+ * market.
+ *
+ * <p>Each market has a directory of segment files that are mapped into memory, so appending a
+ * record is a copy into memory, and the OS writes it to disk. Prices and quantities are stored as
+ * fixed-point longs with {@link #SCALE} decimal places, and delta encoded, so a tick usually takes
+ * a few bytes. See {@link TickLog} for the file layout and how writes are made crash safe.
+ *
+ * <p>A time range scan only reads the segments that overlap the range.
+ *
+ * <p>Appending is not thread safe: a store should have 1 writer, e.g. the {@link
+ * MarketDataRecorder}. Scans can be run from any thread, including while the store is written to,
+ * but may not see the latest records.
+ *
+ * @author gazbert
+ */
+public final class TickStore implements Closeable {
+
+  /** The number of decimal places in the fixed-point prices and quantities. */
+  public static final int SCALE = 8;
+
+  private static final int MIN_SEGMENT_SIZE = 4096;
+  private static final Pattern UNSAFE_FILE_NAME_CHARS = Pattern.compile("[^A-Za-z0-9._-]");
+
+  private final Path directory;
+  private final int segmentSize;
+  private final Map<String, TickLog> tickLogs = new HashMap<>();
+
+  // Reused to convert the order book levels, so depth snapshots do not allocate.
+  private long[] bidPrices = new long[32];
+  private long[] bidQuantities = new long[32];
+  private long[] askPrices = new long[32];
+  private long[] askQuantities = new long[32];
+
+  /**
+   * Opens a tick store. Appending carries on from the end of the existing data.
+   *
+   * @param directory the directory to store the data in. It is created if it does not exist.
+   * @param segmentSize the size of each segment file in bytes.
+   */
+  public TickStore(Path directory, int segmentSize) {
+    checkSegmentSize(segmentSize);
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Converts a price or quantity to fixed-point, rounding to {@link #SCALE} decimal places.
+   *
+   * @param value the value.
+   * @return the fixed-point value.
+   * @throws ArithmeticException if the value is too big.
+   */
+  public static long toFixedPoint(BigDecimal value) {
+    return value.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+  }
+
+  /**
+   * Converts a fixed-point price or quantity back to a BigDecimal.
+   *
+   * @param value the fixed-point value.
+   * @return the value.
+   */
+  public static BigDecimal fromFixedPoint(long value) {
+    return BigDecimal.valueOf(value, SCALE);
+  }
+
+  /**
+   * Appends a top of book record.
+   *
+   * @param marketId the market id.
+   * @param timestamp the time, in millis since the epoch. If it is earlier than the market's last
+   *     record, the last record's time is used.
+   * @param bidPrice the best bid price.
+   * @param bidQuantity the quantity at the best bid, or null if not known.
+   * @param askPrice the best ask price.
+   * @param askQuantity the quantity at the best ask, or null if not known.
+   * @throws IOException if the record cannot be written.
+   */
+  public void appendTopOfBook(
+      String marketId,
+      long timestamp,
+      BigDecimal bidPrice,
+      BigDecimal bidQuantity,
+      BigDecimal askPrice,
+      BigDecimal askQuantity)
+      throws IOException {
+    getTickLog(marketId)
+        .appendTopOfBook(
+            timestamp,
+            toFixedPoint(bidPrice),
+            bidQuantity == null ? 0 : toFixedPoint(bidQuantity),
+            toFixedPoint(askPrice),
+            askQuantity == null ? 0 : toFixedPoint(askQuantity));
+  }
+
+  /**
+   * Appends an order book depth snapshot.
+   *
+   * @param marketId the market id.
+   * @param timestamp the time, in millis since the epoch. If it is earlier than the market's last
+   *     record, the last record's time is used.
+   * @param bids the bids, best first.
+   * @param asks the asks, best first.
+   * @param maxLevels the most levels to store on each side.
+   * @throws IOException if the record cannot be written.
+   */
+  public void appendDepth(
+      String marketId,
+      long timestamp,
+      List<MarketOrder> bids,
+      List<MarketOrder> asks,
+      int maxLevels)
+      throws IOException {
+    final int bidCount = Math.min(bids.size(), maxLevels);
+    final int askCount = Math.min(asks.size(), maxLevels);
+    if (bidPrices.length < bidCount) {
+      bidPrices = new long[bidCount];
+      bidQuantities = new long[bidCount];
+    }
+    if (askPrices.length < askCount) {
+      askPrices = new long[askCount];
+      askQuantities = new long[askCount];
+    }
+    for (int i = 0; i < bidCount; i++) {
+      bidPrices[i] = toFixedPoint(bids.get(i).getPrice());
+      bidQuantities[i] = toFixedPoint(bids.get(i).getQuantity());
+    }
+    for (int i = 0; i < askCount; i++) {
+      askPrices[i] = toFixedPoint(asks.get(i).getPrice());
+      askQuantities[i] = toFixedPoint(asks.get(i).getQuantity());
+    }
+    getTickLog(marketId)
+        .appendDepth(
+            timestamp, bidPrices, bidQuantities, bidCount, askPrices, askQuantities, askCount);
+  }
+
+  /**
+   * Appends a trade.
+   *
+   * @param marketId the market id.
+   * @param timestamp the time, in millis since the epoch. If it is earlier than the market's last
+   *     record, the last record's time is used.
+   * @param type the taker's side, or null if not known.
+   * @param price the trade price.
+   * @param quantity the quantity traded.
+   * @throws IOException if the record cannot be written.
+   */
+  public void appendTrade(
+      String marketId, long timestamp, OrderType type, BigDecimal price, BigDecimal quantity)
+      throws IOException {
+    getTickLog(marketId)
+        .appendTrade(timestamp, type, toFixedPoint(price), toFixedPoint(quantity));
+  }
+
+  /**
+   * Visits a market's records between 2 times, oldest first.
+   *
+   * @param marketId the market id.
+   * @param fromTimestamp the start of the time range in millis since the epoch, inclusive.
+   * @param toTimestamp the end of the time range in millis since the epoch, inclusive.
+   * @param visitor the visitor.
+   * @throws IOException if the data cannot be read.
+   */
+  public void scan(String marketId, long fromTimestamp, long toTimestamp, TickVisitor visitor)
+      throws IOException {
+    TickLog.scan(getMarketDirectory(marketId), fromTimestamp, toTimestamp, visitor);
+  }
+
+  /**
+   * Opens a cursor over a market's records between 2 times, oldest first.
+   *
+   * @param marketId the market id.
+   * @param fromTimestamp the start of the time range in millis since the epoch, inclusive.
+   * @param toTimestamp the end of the time range in millis since the epoch, inclusive.
+   * @return the cursor.
+   * @throws IOException if the data cannot be read.
+   */
+  public TickCursor openCursor(String marketId, long fromTimestamp, long toTimestamp)
+      throws IOException {
+    return new TickCursor(getMarketDirectory(marketId), fromTimestamp, toTimestamp);
+  }
+
+  /** Forces the records appended so far to disk. */
+  public void force() {
+    tickLogs.values().forEach(TickLog::force);
+  }
+
+  @Override
+  public void close() {
+    tickLogs.values().forEach(TickLog::close);
+    tickLogs.clear();
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  static void checkSegmentSize(int segmentSize) {
+    if (segmentSize < MIN_SEGMENT_SIZE) {
+      throw new IllegalArgumentException(
+          "Segment size must be at least " + MIN_SEGMENT_SIZE + " bytes: " + segmentSize);
+    }
+  }
+
+  /**
+   * Returns a name that is safe to use as a file name, for a market or exchange.
+   *
+   * @param name the name.
+   * @return the name with any characters that are not letters, digits, '.', '_' or '-' replaced.
+   */
+  static String toFileName(String name) {
+    return UNSAFE_FILE_NAME_CHARS.matcher(name).replaceAll("_");
+  }
+
+  private TickLog getTickLog(String marketId) throws IOException {
+    TickLog tickLog = tickLogs.get(marketId);
+    if (tickLog == null) {
+      tickLog = new TickLog(getMarketDirectory(marketId), segmentSize);
+      tickLogs.put(marketId, tickLog);
+    }
+    return tickLog;
+  }
+
+  private Path getMarketDirectory(String marketId) {
+    return directory.resolve(toFileName(marketId));
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("directory", directory)
+        .add("segmentSize", segmentSize)
+        .add("markets", tickLogs.keySet())
+        .toString();
+  }
+}
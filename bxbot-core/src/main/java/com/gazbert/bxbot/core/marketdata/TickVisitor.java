@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.marketdata;
+
+import com.gazbert.bxbot.trading.api.OrderType;
+
+/**
+ * Visits the records in a {@link TickStore} scan. Prices and quantities are fixed-point longs - see
+ * {@link TickStore#fromFixedPoint(long)}.
+ *
+ * <p>Only override the methods for the records you want.
+ *
+ * @author gazbert
+ */
+public interface TickVisitor {
+
+  /**
+   * Called for a top of book record, e.g. from a ticker.
+   *
+   * @param timestamp the time it was recorded, in millis since the epoch.
+   * @param bidPrice the best bid price.
+   * @param bidQuantity the quantity at the best bid, or 0 if it was not known.
+   * @param askPrice the best ask price.
+   * @param askQuantity the quantity at the best ask, or 0 if it was not known.
+   */
+  default void onTopOfBook(
+      long timestamp, long bidPrice, long bidQuantity, long askPrice, long askQuantity) {}
+
+  /**
+   * Called for an order book depth snapshot, best levels first. The arrays are reused for the
+   * next snapshot, so copy anything you want to keep.
+   *
+   * @param timestamp the time it was recorded, in millis since the epoch.
+   * @param bidPrices the bid prices.
+   * @param bidQuantities the bid quantities.
+   * @param bidCount the number of bid levels in the arrays.
+   * @param askPrices the ask prices.
+   * @param askQuantities the ask quantities.
+   * @param askCount the number of ask levels in the arrays.
+   */
+  default void onDepth(
+      long timestamp,
+      long[] bidPrices,
+      long[] bidQuantities,
+      int bidCount,
+      long[] askPrices,
+      long[] askQuantities,
+      int askCount) {}
+
+  /**
+   * Called for a trade.
+   *
+   * @param timestamp the time it was recorded, in millis since the epoch.
+   * @param type the taker's side, or null if the exchange did not say.
+   * @param price the trade price.
+   * @param quantity the quantity traded.
+   */
+  default void onTrade(long timestamp, OrderType type, long price, long quantity) {}
+}
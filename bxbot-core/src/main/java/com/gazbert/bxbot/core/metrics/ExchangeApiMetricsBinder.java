@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.metrics;
+
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.Endpoint;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.ErrorCategory;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.Phase;
+import com.gazbert.bxbot.exchanges.LatencyHistogram;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binds the Exchange Adapters' {@link ExchangeApiMetrics} to the Spring Boot Actuator metrics.
+ *
+ * <p>For each adapter, endpoint and HTTP method, every {@link Phase} of the API calls gets:
+ *
+ * <ul>
+ *   <li>a bxbot.exchange.api.latency timer, with the count and total time of the calls.
+ *   <li>a bxbot.exchange.api.latency.max gauge.
+ *   <li>bxbot.exchange.api.latency.percentile gauges for the 50th, 90th, 99th and 99.9th
+ *       percentiles, tagged with phi, e.g. 0.99.
+ * </ul>
+ *
+ * <p>Failed calls are counted by the bxbot.exchange.api.errors counter, tagged with the {@link
+ * ErrorCategory}. The timer counts all the calls since the bot started, but the percentiles and
+ * max only cover the calls in the last 2 minutes or so - see {@link LatencyHistogram}.
+ *
+ * @author gazbert
+ */
+@Component
+public class ExchangeApiMetricsBinder implements MeterBinder {
+
+  static final String LATENCY_METRIC = "bxbot.exchange.api.latency";
+  static final String ERRORS_METRIC = "bxbot.exchange.api.errors";
+
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+  private final ExchangeApiMetrics apiMetrics;
+
+  /** Creates the binder for the metrics all the Exchange Adapters record to. */
+  public ExchangeApiMetricsBinder() {
+    this(ExchangeApiMetrics.getInstance());
+  }
+
+  ExchangeApiMetricsBinder(ExchangeApiMetrics apiMetrics) {
+    this.apiMetrics = apiMetrics;
+  }
+
+  /*
+   * Endpoints are added to the metrics as they are first called, so the meters for new endpoints
+   * are registered by a listener. Registering a meter that is already registered is a no-op.
+   */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    apiMetrics.addEndpointListener(endpoint -> bindTo(registry, endpoint));
+    for (final Endpoint endpoint : apiMetrics.getEndpoints()) {
+      bindTo(registry, endpoint);
+    }
+  }
+
+  private static void bindTo(MeterRegistry registry, Endpoint endpoint) {
+    final Tags endpointTags =
+        Tags.of(
+            "adapter", endpoint.getAdapter(),
+            "endpoint", endpoint.getName(),
+            "method", endpoint.getHttpMethod());
+
+    for (final Phase phase : Phase.values()) {
+      final LatencyHistogram latency = endpoint.getLatency(phase);
+      final Tags tags = endpointTags.and("phase", phase.name().toLowerCase(Locale.ROOT));
+      FunctionTimer.builder(
+              LATENCY_METRIC,
+              latency,
+              LatencyHistogram::getCount,
+              histogram -> histogram.getTotalTime(TimeUnit.NANOSECONDS),
+              TimeUnit.NANOSECONDS)
+          .tags(tags)
+          .description("Exchange API call latency")
+          .register(registry);
+      TimeGauge.builder(
+              LATENCY_METRIC + ".max",
+              latency,
+              TimeUnit.NANOSECONDS,
+              histogram -> histogram.getMax(TimeUnit.NANOSECONDS))
+          .tags(tags)
+          .description("Longest exchange API call latency")
+          .register(registry);
+      for (final double percentile : PERCENTILES) {
+        TimeGauge.builder(
+                LATENCY_METRIC + ".percentile",
+                latency,
+                TimeUnit.NANOSECONDS,
+                histogram -> histogram.getValueAtPercentile(percentile, TimeUnit.NANOSECONDS))
+            .tags(tags.and("phi", Double.toString(percentile / 100)))
+            .description("Exchange API call latency percentile")
+            .register(registry);
+      }
+    }
+
+    for (final ErrorCategory category : ErrorCategory.values()) {
+      FunctionCounter.builder(ERRORS_METRIC, endpoint, e -> e.getErrorCount(category))
+          .tags(endpointTags.and("category", category.name().toLowerCase(Locale.ROOT)))
+          .description("Failed exchange API calls")
+          .register(registry);
+    }
+  }
+}
@@ -29,9 +29,13 @@ import com.gazbert.bxbot.domain.engine.EngineConfig;
 import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
 import com.gazbert.bxbot.trading.api.BalanceInfo;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.TradingApi;
 import com.gazbert.bxbot.trading.api.TradingApiException;
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -67,6 +71,9 @@ public class EmergencyStopChecker {
    *       this has happened.
    * </ul>
    *
+   * @param tradingApi the Trading API used to fetch the balances. The Trading Engine passes the
+   *     same trade cycle snapshot the Trading Strategies use, so the balances are only fetched once
+   *     per cycle.
    * @param exchangeAdapter the adapter used to connect to the exchange.
    * @param engineConfig the Trading Engine config.
    * @param emailAlerter the Email Alerter.
@@ -75,35 +82,75 @@ public class EmergencyStopChecker {
    * @throws ExchangeNetworkException if a temporary network exception has occurred.
    */
   public static boolean isEmergencyStopLimitBreached(
-      ExchangeAdapter exchangeAdapter, EngineConfig engineConfig, EmailAlerter emailAlerter)
+      TradingApi tradingApi,
+      ExchangeAdapter exchangeAdapter,
+      EngineConfig engineConfig,
+      EmailAlerter emailAlerter)
+      throws TradingApiException, ExchangeNetworkException {
+    return isEmergencyStopLimitBreached(
+        Collections.singletonList(tradingApi),
+        exchangeAdapter.getClass().getName(),
+        engineConfig,
+        emailAlerter);
+  }
+
+  /**
+   * Checks if the total Emergency Stop Currency wallet balance across all the exchanges the bot
+   * trades on has gone <strong>below</strong> the configured limit. An exchange without a wallet
+   * for the currency counts as 0, but at least 1 exchange must have one.
+   *
+   * @param tradingApis the Trading APIs used to fetch the balances, 1 per exchange.
+   * @param exchangeAdapterNames the names of the Exchange Adapters, for the Email Alert.
+   * @param engineConfig the Trading Engine config.
+   * @param emailAlerter the Email Alerter.
+   * @return true if the emergency stop limit has been breached, false otherwise.
+   * @throws TradingApiException if a serious error has occurred connecting to an exchange.
+   * @throws ExchangeNetworkException if a temporary network exception has occurred.
+   */
+  public static boolean isEmergencyStopLimitBreached(
+      List<? extends TradingApi> tradingApis,
+      String exchangeAdapterNames,
+      EngineConfig engineConfig,
+      EmailAlerter emailAlerter)
       throws TradingApiException, ExchangeNetworkException {
 
     boolean isEmergencyStopLimitBreached = true;
 
     LOG.info(() -> "Performing Emergency Stop check...");
 
-    BalanceInfo balanceInfo;
-    try {
-      balanceInfo = exchangeAdapter.getBalanceInfo();
-    } catch (TradingApiException e) {
-      final String errorMsg =
-          "Failed to get Balance info from exchange to perform Emergency Stop check - letting"
-              + " Trade Engine error policy decide what to do next...";
-      LOG.error(() -> errorMsg, e);
-      // re-throw to main loop - might only be connection issue and it will retry...
-      throw e;
+    BigDecimal totalBalance = null;
+    final List<Map<String, BigDecimal>> allBalancesAvailable = new ArrayList<>();
+    for (final TradingApi tradingApi : tradingApis) {
+      BalanceInfo balanceInfo;
+      try {
+        balanceInfo = tradingApi.getBalanceInfo();
+      } catch (TradingApiException e) {
+        final String errorMsg =
+            "Failed to get Balance info from exchange to perform Emergency Stop check - letting"
+                + " Trade Engine error policy decide what to do next...";
+        LOG.error(() -> errorMsg, e);
+        // re-throw to main loop - might only be connection issue and it will retry...
+        throw e;
+      }
+
+      final Map<String, BigDecimal> balancesAvailable = balanceInfo.getBalancesAvailable();
+      allBalancesAvailable.add(balancesAvailable);
+      final BigDecimal balance = balancesAvailable.get(engineConfig.getEmergencyStopCurrency());
+      if (balance != null) {
+        totalBalance = totalBalance == null ? balance : totalBalance.add(balance);
+      }
     }
 
-    final Map<String, BigDecimal> balancesAvailable = balanceInfo.getBalancesAvailable();
-    final BigDecimal currentBalance =
-        balancesAvailable.get(engineConfig.getEmergencyStopCurrency());
+    final BigDecimal currentBalance = totalBalance;
     if (currentBalance == null) {
       final String errorMsg =
           "Emergency stop check: Failed to get current Emergency Stop Currency balance as '"
               + engineConfig.getEmergencyStopCurrency()
               + "' key into Balances map "
               + "returned null. Balances returned: "
-              + balancesAvailable;
+              + (allBalancesAvailable.size() == 1
+                  ? allBalancesAvailable.get(0)
+                  : allBalancesAvailable);
       LOG.error(() -> errorMsg);
       throw new IllegalStateException(errorMsg);
     } else {
@@ -146,7 +193,7 @@ public class EmergencyStopChecker {
                 null,
                 engineConfig.getBotId(),
                 engineConfig.getBotName(),
-                exchangeAdapter.getClass().getName()));
+                exchangeAdapterNames));
       } else {
 
         isEmergencyStopLimitBreached = false;
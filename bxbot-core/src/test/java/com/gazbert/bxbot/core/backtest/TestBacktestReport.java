@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.gazbert.bxbot.domain.transaction.TransactionEntry;
+import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests the Backtest Report behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestBacktestReport {
+
+  private static final String MARKET_ID = "btcusd";
+  private static final String STRATEGY_NAME = "ScalpingStrategy";
+  private static final String EXCHANGE_NAME = "Backtest Replay";
+  private static final Date TIMESTAMP = new Date(1000L);
+
+  @Test
+  public void testOrderCountsAndVolumesAreBuiltFromTransactions() {
+    final List<TransactionEntry> transactions = new ArrayList<>();
+    transactions.add(transaction("1", "Buy", TransactionEntry.Status.SENT, "2", "100"));
+    transactions.add(transaction("1", "Buy", TransactionEntry.Status.FILLED, "1", "100"));
+    transactions.add(transaction("1", "Buy", TransactionEntry.Status.FILLED, "1", "101"));
+    transactions.add(transaction("2", "Sell", TransactionEntry.Status.SENT, "1", "110"));
+    transactions.add(transaction("3", "Sell", TransactionEntry.Status.SENT, "1", "120"));
+    transactions.add(transaction("3", "Sell", TransactionEntry.Status.FILLED, "1", "120"));
+
+    final BacktestReport report = createReport("1000", "1050", transactions);
+
+    assertEquals(3, report.getOrdersSent());
+    assertEquals(2, report.getOrdersFilled());
+    assertEquals(3, report.getFillCount());
+    assertEquals(
+        0,
+        new BigDecimal("2")
+            .divide(new BigDecimal("3"), MathContext.DECIMAL64)
+            .compareTo(report.getFillRate()));
+    assertEquals(0, new BigDecimal("201").compareTo(report.getBuyVolume()));
+    assertEquals(0, new BigDecimal("120").compareTo(report.getSellVolume()));
+    assertEquals(6, report.getTransactions().size());
+  }
+
+  @Test
+  public void testProfitAndReturnAreCalculated() {
+    final BacktestReport report = createReport("1000", "1050", new ArrayList<>());
+
+    assertEquals(0, new BigDecimal("50").compareTo(report.getProfit()));
+    assertEquals(0, new BigDecimal("5").compareTo(report.getReturnPercentage()));
+    assertEquals("USD", report.getValuationCurrency());
+    assertNotNull(report.toString());
+  }
+
+  @Test
+  public void testReturnIsZeroIfStartingValueIsZero() {
+    final BacktestReport report = createReport("0", "0", new ArrayList<>());
+    assertEquals(0, BigDecimal.ZERO.compareTo(report.getReturnPercentage()));
+    assertEquals(0, BigDecimal.ZERO.compareTo(report.getFillRate()));
+  }
+
+  private static BacktestReport createReport(
+      String startingValue, String endingValue, List<TransactionEntry> transactions) {
+    final BalanceInfo balanceInfo = new BalanceInfoImpl(new HashMap<>(), new HashMap<>());
+    return new BacktestReport(
+        1000L,
+        5000L,
+        10L,
+        4L,
+        "USD",
+        new BigDecimal(startingValue),
+        new BigDecimal(endingValue),
+        BigDecimal.ONE,
+        balanceInfo,
+        new HashMap<>(),
+        transactions);
+  }
+
+  private static TransactionEntry transaction(
+      String orderId, String type, TransactionEntry.Status status, String amount, String price) {
+    return new TransactionEntry(
+        orderId,
+        type,
+        status,
+        MARKET_ID,
+        new BigDecimal(amount),
+        new BigDecimal(price),
+        STRATEGY_NAME,
+        EXCHANGE_NAME,
+        TIMESTAMP);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.strategy.api.IStrategyConfigItems;
+import com.gazbert.bxbot.strategy.api.StrategyException;
+import com.gazbert.bxbot.strategy.api.TradingStrategy;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.Market;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.TradingApi;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Backtester behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestBacktester {
+
+  private static final String MARKET_ID = "btcusd";
+  private static final long TRADE_CYCLE_INTERVAL = 1000L;
+
+  private static final String MARKET_DATA =
+      "1000,btcusd,T,100,1\n"
+          + "1200,btcusd,B,99:1,101:1\n"
+          + "2500,btcusd,B,99:1,101:1\n"
+          + "2600,btcusd,T,99,1\n"
+          + "4100,btcusd,B,89:1,91:1\n"
+          + "4200,btcusd,T,90,1\n";
+
+  private ReplayExchangeAdapter exchangeAdapter;
+
+  @Before
+  public void setUp() {
+    exchangeAdapter = new ReplayExchangeAdapter(BigDecimal.ZERO, BigDecimal.ZERO);
+    exchangeAdapter.addMarket(MARKET_ID, "BTC", "USD");
+    exchangeAdapter.deposit("USD", new BigDecimal("1000"));
+  }
+
+  @Test
+  public void testTradeCyclesRunOnVirtualClockOnceAllMarketsHaveData() throws Exception {
+    final CycleRecordingStrategy strategy = new CycleRecordingStrategy(exchangeAdapter);
+    final BacktestReport report = runBacktest(strategy);
+
+    // The 2000 cycle sees the 1200 book; the 3000 and 4000 cycles see the 2500 book; the 1000
+    // trade alone leaves no book for the first cycle.
+    assertEquals(3, report.getTradeCycleCount());
+    assertEquals(6, report.getEventCount());
+    assertEquals(1000L, report.getStartTime());
+    assertEquals(4200L, report.getEndTime());
+    final List<Long> expectedCycleTimes = new ArrayList<>();
+    expectedCycleTimes.add(2000L);
+    expectedCycleTimes.add(3000L);
+    expectedCycleTimes.add(4000L);
+    assertEquals(expectedCycleTimes, strategy.cycleTimes);
+  }
+
+  @Test
+  public void testReportIsBuiltFromFillsAndValues() throws Exception {
+    final BacktestReport report = runBacktest(new BuyOnceStrategy(exchangeAdapter));
+
+    // Bought 1 BTC @ 101 on the 2000 cycle; it is worth 99 at the 3000 cycle and 90 at the end.
+    assertEquals(1, report.getOrdersSent());
+    assertEquals(1, report.getOrdersFilled());
+    assertEquals(0, new BigDecimal("101").compareTo(report.getBuyVolume()));
+    assertEquals(0, new BigDecimal("1000").compareTo(report.getStartingValue()));
+    assertEquals(0, new BigDecimal("989").compareTo(report.getEndingValue()));
+    assertEquals(0, new BigDecimal("-11").compareTo(report.getProfit()));
+    assertEquals(0, new BigDecimal("-1.1").compareTo(report.getReturnPercentage()));
+    assertEquals(0, new BigDecimal("0.2").compareTo(report.getMaxDrawdownPercentage()));
+    assertEquals(
+        0, BigDecimal.ONE.compareTo(report.getBalanceInfo().getBalancesAvailable().get("BTC")));
+  }
+
+  @Test
+  public void testEmptyMarketDataGivesEmptyReport() throws Exception {
+    final BacktestReport report =
+        new Backtester(exchangeAdapter, TRADE_CYCLE_INTERVAL, "USD")
+            .run(
+                Collections.singletonList(new CycleRecordingStrategy(exchangeAdapter)),
+                new HistoricalMarketDataReader(new StringReader("")));
+    assertEquals(0, report.getEventCount());
+    assertEquals(0, report.getTradeCycleCount());
+    assertTrue(report.getTransactions().isEmpty());
+  }
+
+  @Test(expected = StrategyException.class)
+  public void testStrategyExceptionStopsBacktest() throws Exception {
+    runBacktest(
+        new CycleRecordingStrategy(exchangeAdapter) {
+          @Override
+          public void execute() throws StrategyException {
+            throw new StrategyException("Bad strategy");
+          }
+        });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTradeCycleIntervalMustBePositive() {
+    new Backtester(exchangeAdapter, 0, "USD");
+  }
+
+  private BacktestReport runBacktest(TradingStrategy strategy) throws Exception {
+    return new Backtester(exchangeAdapter, TRADE_CYCLE_INTERVAL, "USD")
+        .run(
+            Collections.singletonList(strategy),
+            new HistoricalMarketDataReader(new StringReader(MARKET_DATA)));
+  }
+
+  /** Records the virtual time of each trade cycle. */
+  private static class CycleRecordingStrategy implements TradingStrategy {
+
+    final List<Long> cycleTimes = new ArrayList<>();
+    final ReplayExchangeAdapter exchangeAdapter;
+
+    CycleRecordingStrategy(ReplayExchangeAdapter exchangeAdapter) {
+      this.exchangeAdapter = exchangeAdapter;
+    }
+
+    @Override
+    public void init(TradingApi tradingApi, Market market, IStrategyConfigItems config) {
+      // no config needed
+    }
+
+    @Override
+    public void execute() throws StrategyException {
+      cycleTimes.add(exchangeAdapter.getTime());
+    }
+  }
+
+  /** Buys 1 BTC at the best ask on the first trade cycle. */
+  private static class BuyOnceStrategy implements TradingStrategy {
+
+    private final TradingApi tradingApi;
+    private boolean bought;
+
+    BuyOnceStrategy(TradingApi tradingApi) {
+      this.tradingApi = tradingApi;
+    }
+
+    @Override
+    public void init(TradingApi tradingApi, Market market, IStrategyConfigItems config) {
+      // no config needed
+    }
+
+    @Override
+    public void execute() throws StrategyException {
+      if (bought) {
+        return;
+      }
+      try {
+        final BigDecimal bestAsk =
+            tradingApi.getMarketOrders(MARKET_ID).getSellOrders().get(0).getPrice();
+        tradingApi.createOrder(MARKET_ID, OrderType.BUY, BigDecimal.ONE, bestAsk);
+        bought = true;
+      } catch (TradingApiException | ExchangeNetworkException e) {
+        throw new StrategyException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Test;
+
+/**
+ * Tests the Historical Market Data Reader behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestHistoricalMarketDataReader {
+
+  private static final String ORDER_BOOK_LINE =
+      "1577836800000,btcusd,B,7200.10:0.5;7200.00:1.2,7201.30:0.4;7202.00:2.0";
+  private static final String TRADE_LINE = "1577836800150,btcusd,T,7201.30,0.01";
+
+  @Test
+  public void testOrderBookAndTradeEventsAreRead() throws Exception {
+    final HistoricalMarketDataReader reader =
+        new HistoricalMarketDataReader(new StringReader(ORDER_BOOK_LINE + "\n" + TRADE_LINE));
+
+    final MarketDataEvent orderBook = reader.next();
+    assertEquals(MarketDataEvent.Type.ORDER_BOOK, orderBook.getType());
+    assertEquals(1577836800000L, orderBook.getTimestamp());
+    assertEquals("btcusd", orderBook.getMarketId());
+
+    final List<MarketOrder> bids = orderBook.getBuyOrders();
+    assertEquals(2, bids.size());
+    assertEquals(OrderType.BUY, bids.get(0).getType());
+    assertEquals(0, new BigDecimal("7200.10").compareTo(bids.get(0).getPrice()));
+    assertEquals(0, new BigDecimal("0.5").compareTo(bids.get(0).getQuantity()));
+    assertEquals(0, new BigDecimal("1.2").compareTo(bids.get(1).getQuantity()));
+
+    final List<MarketOrder> asks = orderBook.getSellOrders();
+    assertEquals(2, asks.size());
+    assertEquals(OrderType.SELL, asks.get(0).getType());
+    assertEquals(0, new BigDecimal("7201.30").compareTo(asks.get(0).getPrice()));
+    assertEquals(0, new BigDecimal("2.0").compareTo(asks.get(1).getQuantity()));
+
+    final MarketDataEvent trade = reader.next();
+    assertEquals(MarketDataEvent.Type.TRADE, trade.getType());
+    assertEquals(1577836800150L, trade.getTimestamp());
+    assertEquals(0, new BigDecimal("7201.30").compareTo(trade.getPrice()));
+    assertEquals(0, new BigDecimal("0.01").compareTo(trade.getQuantity()));
+
+    assertNull(reader.next());
+    reader.close();
+  }
+
+  @Test
+  public void testBlankLinesAndCommentsAreSkipped() throws Exception {
+    final HistoricalMarketDataReader reader =
+        new HistoricalMarketDataReader(
+            new StringReader("# recorded from Bitstamp\n\n" + TRADE_LINE + "\n\n"));
+
+    assertEquals(MarketDataEvent.Type.TRADE, reader.next().getType());
+    assertNull(reader.next());
+  }
+
+  @Test
+  public void testEmptySideOfOrderBookIsRead() throws Exception {
+    final HistoricalMarketDataReader reader =
+        new HistoricalMarketDataReader(
+            new StringReader("1577836800000,btcusd,B,,7201.30:0.4"));
+
+    final MarketDataEvent orderBook = reader.next();
+    assertTrue(orderBook.getBuyOrders().isEmpty());
+    assertEquals(1, orderBook.getSellOrders().size());
+  }
+
+  @Test
+  public void testInvalidLineIsRejectedWithLineNumber() throws Exception {
+    final HistoricalMarketDataReader reader =
+        new HistoricalMarketDataReader(
+            new StringReader(TRADE_LINE + "\n1577836800200,btcusd,X,7201.30,0.01"));
+    reader.next();
+    try {
+      reader.next();
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("line 2"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLineWithTooFewFieldsIsRejected() throws Exception {
+    new HistoricalMarketDataReader(new StringReader("1577836800000,btcusd,T,7201.30")).next();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEventsOutOfTimeOrderAreRejected() throws Exception {
+    final HistoricalMarketDataReader reader =
+        new HistoricalMarketDataReader(
+            new StringReader(TRADE_LINE + "\n1577836800100,btcusd,T,7201.30,0.01"));
+    reader.next();
+    reader.next();
+  }
+
+  @Test
+  public void testGzipFileIsDecompressed() throws Exception {
+    final Path file = Files.createTempFile("bxbot-backtest", ".csv.gz");
+    try {
+      try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file));
+          Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+        writer.write(ORDER_BOOK_LINE + "\n" + TRADE_LINE + "\n");
+      }
+      try (HistoricalMarketDataReader reader = new HistoricalMarketDataReader(file)) {
+        assertEquals(MarketDataEvent.Type.ORDER_BOOK, reader.next().getType());
+        assertEquals(MarketDataEvent.Type.TRADE, reader.next().getType());
+        assertNull(reader.next());
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import org.junit.Test;
+
+/**
+ * Tests the Parameter Range behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestParameterRange {
+
+  private static final String CONFIG_ITEM_KEY = "percent-change-threshold";
+
+  @Test
+  public void testListedValuesAreKept() {
+    final ParameterRange parameterRange = ParameterRange.of(CONFIG_ITEM_KEY, "1", "2", "5");
+    assertEquals(CONFIG_ITEM_KEY, parameterRange.getConfigItemKey());
+    assertEquals(Arrays.asList("1", "2", "5"), parameterRange.getValues());
+  }
+
+  @Test
+  public void testSteppedValuesIncludeBothEnds() {
+    final ParameterRange parameterRange =
+        ParameterRange.steps(
+            CONFIG_ITEM_KEY, new BigDecimal("0.5"), new BigDecimal("2"), new BigDecimal("0.5"));
+    assertEquals(Arrays.asList("0.5", "1.0", "1.5", "2.0"), parameterRange.getValues());
+  }
+
+  @Test
+  public void testLastValueIsSkippedIfNotWholeNumberOfSteps() {
+    final ParameterRange parameterRange =
+        ParameterRange.steps(
+            CONFIG_ITEM_KEY, BigDecimal.ONE, new BigDecimal("6"), new BigDecimal("2"));
+    assertEquals(Arrays.asList("1", "3", "5"), parameterRange.getValues());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStepMustBePositive() {
+    ParameterRange.steps(CONFIG_ITEM_KEY, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ZERO);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRangeMustNotBeEmpty() {
+    ParameterRange.steps(CONFIG_ITEM_KEY, BigDecimal.TEN, BigDecimal.ONE, BigDecimal.ONE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testListedValuesMustNotBeEmpty() {
+    ParameterRange.of(CONFIG_ITEM_KEY);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.strategy.api.IStrategyConfigItems;
+import com.gazbert.bxbot.strategy.api.StrategyException;
+import com.gazbert.bxbot.strategy.api.TradingStrategy;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.Market;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.TradingApi;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Parameter Sweep behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestParameterSweep {
+
+  private static final String MARKET_ID = "btcusd";
+  private static final String STRATEGY_ID = "buy-once-strategy";
+  private static final String BUY_QUANTITY = "buy-quantity";
+  private static final String LABEL = "label";
+  private static final String MARKET_NAME = "market-name";
+
+  // Bought at the 101 ask on the 2000 cycle; worth 110 at the end.
+  private static final String MARKET_DATA =
+      "1000,btcusd,B,99:5,101:5\n2500,btcusd,B,99:5,101:5\n3000,btcusd,T,110,1\n";
+
+  private Path marketDataFile;
+  private ParsedMarketData marketData;
+
+  @Before
+  public void setUp() throws Exception {
+    marketDataFile = Files.createTempFile("bxbot-backtest", ".csv");
+    Files.write(marketDataFile, MARKET_DATA.getBytes(StandardCharsets.UTF_8));
+    marketData = new ParsedMarketData(marketDataFile);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(marketDataFile);
+  }
+
+  @Test
+  public void testEveryCombinationIsBacktestedAndRanked() throws Exception {
+    final List<SweepResult> results =
+        new ParameterSweep(new BuyOnceBacktestFactory(), 1000L, "USD", 4)
+            .run(
+                STRATEGY_ID,
+                Collections.singletonMap(MARKET_NAME, "BTC/USD"),
+                Arrays.asList(
+                    ParameterRange.of(BUY_QUANTITY, "1", "2", "-1"),
+                    ParameterRange.of(LABEL, "a", "b")),
+                marketData);
+
+    assertEquals(6, results.size());
+    final Set<String> combinations = new HashSet<>();
+    for (final SweepResult result : results) {
+      final Map<String, String> configItems = result.getConfigItems();
+      assertEquals("BTC/USD", configItems.get(MARKET_NAME));
+      combinations.add(configItems.get(BUY_QUANTITY) + configItems.get(LABEL));
+    }
+    assertEquals(6, combinations.size());
+
+    assertEquals("2", results.get(0).getConfigItems().get(BUY_QUANTITY));
+    assertEquals("2", results.get(1).getConfigItems().get(BUY_QUANTITY));
+    assertEquals(0, new BigDecimal("18").compareTo(results.get(0).getReport().getProfit()));
+    assertEquals("1", results.get(2).getConfigItems().get(BUY_QUANTITY));
+    assertEquals(0, new BigDecimal("9").compareTo(results.get(2).getReport().getProfit()));
+    assertFalse(results.get(3).isFailed());
+
+    assertTrue(results.get(4).isFailed());
+    assertTrue(results.get(5).isFailed());
+    assertNull(results.get(5).getReport());
+    assertEquals("-1", results.get(5).getConfigItems().get(BUY_QUANTITY));
+    assertTrue(results.get(5).getFailureReason().contains("StrategyException"));
+  }
+
+  @Test
+  public void testNoRangesRunsOneBacktest() throws Exception {
+    final List<SweepResult> results =
+        new ParameterSweep(new BuyOnceBacktestFactory(), 1000L, "USD", 1)
+            .run(
+                STRATEGY_ID,
+                Collections.singletonMap(BUY_QUANTITY, "1"),
+                Collections.emptyList(),
+                marketData);
+    assertEquals(1, results.size());
+    assertEquals(1, results.get(0).getReport().getOrdersFilled());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParallelismMustBePositive() {
+    new ParameterSweep(new BuyOnceBacktestFactory(), 1000L, "USD", 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTradeCycleIntervalMustBePositive() {
+    new ParameterSweep(new BuyOnceBacktestFactory(), 0, "USD", 1);
+  }
+
+  /** Creates an exchange with 1000 USD and a strategy that buys once. */
+  private static class BuyOnceBacktestFactory implements BacktestFactory {
+
+    @Override
+    public ReplayExchangeAdapter createExchangeAdapter() {
+      final ReplayExchangeAdapter exchangeAdapter =
+          new ReplayExchangeAdapter(BigDecimal.ZERO, BigDecimal.ZERO);
+      exchangeAdapter.addMarket(MARKET_ID, "BTC", "USD");
+      exchangeAdapter.deposit("USD", new BigDecimal("1000"));
+      return exchangeAdapter;
+    }
+
+    @Override
+    public List<TradingStrategy> createTradingStrategies(
+        ReplayExchangeAdapter exchangeAdapter, IStrategyConfigItems config) {
+      final TradingStrategy strategy = new BuyOnceStrategy();
+      strategy.init(exchangeAdapter, null, config);
+      return Collections.singletonList(strategy);
+    }
+  }
+
+  /** Buys the configured quantity at the best ask on the first trade cycle. */
+  private static class BuyOnceStrategy implements TradingStrategy {
+
+    private TradingApi tradingApi;
+    private BigDecimal buyQuantity;
+    private boolean bought;
+
+    @Override
+    public void init(TradingApi tradingApi, Market market, IStrategyConfigItems config) {
+      this.tradingApi = tradingApi;
+      buyQuantity = new BigDecimal(config.getConfigItem(BUY_QUANTITY));
+    }
+
+    @Override
+    public void execute() throws StrategyException {
+      if (bought) {
+        return;
+      }
+      try {
+        final BigDecimal bestAsk =
+            tradingApi.getMarketOrders(MARKET_ID).getSellOrders().get(0).getPrice();
+        tradingApi.createOrder(MARKET_ID, OrderType.BUY, buyQuantity, bestAsk);
+        bought = true;
+      } catch (TradingApiException | ExchangeNetworkException e) {
+        throw new StrategyException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Parsed Market Data behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestParsedMarketData {
+
+  private static final String MARKET_DATA =
+      "1000,btcusd,B,99:1,101:1\n1500,btcusd,T,100,0.5\n2000,btcusd,T,100.5,0.2\n";
+
+  private Path marketDataFile;
+
+  @Before
+  public void setUp() throws Exception {
+    marketDataFile = Files.createTempFile("bxbot-backtest", ".csv");
+    Files.write(marketDataFile, MARKET_DATA.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(marketDataFile);
+  }
+
+  @Test
+  public void testSourcesReplayFromStartIndependently() throws Exception {
+    final ParsedMarketData marketData = new ParsedMarketData(marketDataFile);
+    assertEquals(3, marketData.getEventCount());
+
+    final MarketDataSource firstSource = marketData.open();
+    assertEquals(1000L, firstSource.next().getTimestamp());
+    assertEquals(1500L, firstSource.next().getTimestamp());
+
+    final MarketDataSource secondSource = marketData.open();
+    assertEquals(1000L, secondSource.next().getTimestamp());
+
+    assertEquals(2000L, firstSource.next().getTimestamp());
+    assertNull(firstSource.next());
+    assertEquals(1500L, secondSource.next().getTimestamp());
+  }
+
+  @Test
+  public void testFileIsParsedOnceAndEventsAreShared() throws Exception {
+    final ParsedMarketData marketData = new ParsedMarketData(marketDataFile);
+    final MarketDataEvent orderBook = marketData.open().next();
+    Files.delete(marketDataFile);
+
+    assertSame(orderBook, marketData.open().next());
+    assertEquals(1, orderBook.getBuyOrders().size());
+    assertEquals(0, new BigDecimal("101").compareTo(orderBook.getSellOrders().get(0).getPrice()));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSharedOrderBookLevelsCannotBeChanged() throws Exception {
+    new ParsedMarketData(marketDataFile).open().next().getBuyOrders().clear();
+  }
+
+  @Test
+  public void testGzipFileIsParsed() throws Exception {
+    final Path gzipFile = Files.createTempFile("bxbot-backtest", ".csv.gz");
+    try {
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipFile))) {
+        out.write(MARKET_DATA.getBytes(StandardCharsets.UTF_8));
+      }
+      assertEquals(3, new ParsedMarketData(gzipFile).getEventCount());
+    } finally {
+      Files.deleteIfExists(gzipFile);
+    }
+  }
+
+  @Test
+  public void testEmptyFileHasNoEvents() throws Exception {
+    Files.write(marketDataFile, new byte[0]);
+    assertNull(new ParsedMarketData(marketDataFile).open().next());
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.backtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.domain.transaction.TransactionEntry;
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleInterval;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Replay Exchange Adapter behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestReplayExchangeAdapter {
+
+  private static final String MARKET_ID = "btcusd";
+  private static final String STRATEGY_NAME = "ScalpingStrategy";
+  private static final BigDecimal BUY_FEE = new BigDecimal("0.002");
+  private static final BigDecimal SELL_FEE = new BigDecimal("0.001");
+
+  private ReplayExchangeAdapter exchangeAdapter;
+
+  @Before
+  public void setUp() {
+    exchangeAdapter = new ReplayExchangeAdapter(BUY_FEE, SELL_FEE);
+    exchangeAdapter.addMarket(MARKET_ID, "BTC", "USD");
+    exchangeAdapter.deposit("USD", new BigDecimal("10000"));
+    exchangeAdapter.deposit("BTC", new BigDecimal("1"));
+    exchangeAdapter.setStrategyName(STRATEGY_NAME);
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.orderBook(1000L, MARKET_ID, "99:1;98:2", "101:1;102:2"));
+  }
+
+  @Test
+  public void testRecordedOrderBookIsReturned() throws Exception {
+    final MarketOrderBook orderBook = exchangeAdapter.getMarketOrders(MARKET_ID);
+    assertEquals(MARKET_ID, orderBook.getMarketId());
+    assertEquals(2, orderBook.getBuyOrders().size());
+    assertEquals(0, new BigDecimal("99").compareTo(orderBook.getBuyOrders().get(0).getPrice()));
+    assertEquals(0, new BigDecimal("101").compareTo(orderBook.getSellOrders().get(0).getPrice()));
+    assertEquals(
+        0, new BigDecimal("99").compareTo(exchangeAdapter.getLatestMarketPrice(MARKET_ID)));
+  }
+
+  @Test
+  public void testLatestMarketPriceIsLastTradePrice() throws Exception {
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.trade(1100L, MARKET_ID, new BigDecimal("100.5"), BigDecimal.ONE));
+    assertEquals(
+        0, new BigDecimal("100.5").compareTo(exchangeAdapter.getLatestMarketPrice(MARKET_ID)));
+    assertEquals(1100L, exchangeAdapter.getTime());
+  }
+
+  @Test
+  public void testRecordedTradesAreFoldedIntoCandlesOnReplayClock() {
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.trade(61000L, MARKET_ID, new BigDecimal("100"), BigDecimal.ONE));
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.trade(61500L, MARKET_ID, new BigDecimal("102"), BigDecimal.TEN));
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.trade(125000L, MARKET_ID, new BigDecimal("99"), BigDecimal.ONE));
+
+    final List<Candle> candles =
+        exchangeAdapter.getCandles(MARKET_ID, CandleInterval.ONE_MINUTE, 10);
+    assertEquals(2, candles.size());
+    assertEquals(60000L, candles.get(0).getOpenTime());
+    assertEquals(100, candles.get(0).getOpen(), 0);
+    assertEquals(102, candles.get(0).getHigh(), 0);
+    assertEquals(102, candles.get(0).getClose(), 0);
+    assertEquals(11, candles.get(0).getVolume(), 0);
+    assertEquals(120000L, candles.get(1).getOpenTime());
+    assertEquals(99, candles.get(1).getClose(), 0);
+    assertTrue(exchangeAdapter.getCandles("ltcusd", CandleInterval.ONE_MINUTE, 10).isEmpty());
+  }
+
+  @Test
+  public void testBuyOrderCrossingBookIsFilledAtBookPrices() throws Exception {
+    exchangeAdapter.createOrder(
+        MARKET_ID, OrderType.BUY, new BigDecimal("2"), new BigDecimal("102"));
+
+    // 1 @ 101 + 1 @ 102 = 203, plus 0.2% fee = 0.406
+    final BalanceInfo balanceInfo = exchangeAdapter.getBalanceInfo();
+    assertEquals(
+        0, new BigDecimal("9796.594").compareTo(balanceInfo.getBalancesAvailable().get("USD")));
+    assertEquals(0, new BigDecimal("3").compareTo(balanceInfo.getBalancesAvailable().get("BTC")));
+    assertEquals(0, BigDecimal.ZERO.compareTo(balanceInfo.getBalancesOnHold().get("USD")));
+    assertTrue(exchangeAdapter.getYourOpenOrders(MARKET_ID).isEmpty());
+    assertEquals(
+        0, new BigDecimal("0.406").compareTo(exchangeAdapter.getFeesPaid().get("USD")));
+
+    final List<TransactionEntry> transactions = exchangeAdapter.getTransactions();
+    assertEquals(3, transactions.size());
+    assertEquals(TransactionEntry.Status.SENT.toString(), transactions.get(0).getStatus());
+    assertEquals(TransactionEntry.Status.FILLED.toString(), transactions.get(1).getStatus());
+    assertEquals(101.0, transactions.get(1).getPrice(), 0);
+    assertEquals(102.0, transactions.get(2).getPrice(), 0);
+    assertEquals("Buy", transactions.get(1).getType());
+    assertEquals(STRATEGY_NAME, transactions.get(1).getStrategy());
+    assertEquals(1000L, transactions.get(1).getTimestamp().getTime());
+  }
+
+  @Test
+  public void testRemainderOfCrossingOrderRests() throws Exception {
+    exchangeAdapter.deposit("BTC", BigDecimal.ONE);
+    final String orderId =
+        exchangeAdapter.createOrder(
+            MARKET_ID, OrderType.SELL, new BigDecimal("2"), new BigDecimal("99"));
+
+    final List<OpenOrder> openOrders = exchangeAdapter.getYourOpenOrders(MARKET_ID);
+    assertEquals(1, openOrders.size());
+    assertEquals(orderId, openOrders.get(0).getId());
+    assertEquals(0, BigDecimal.ONE.compareTo(openOrders.get(0).getQuantity()));
+
+    // 1 @ 99, less 0.1% fee
+    final BalanceInfo balanceInfo = exchangeAdapter.getBalanceInfo();
+    assertEquals(
+        0, new BigDecimal("10098.901").compareTo(balanceInfo.getBalancesAvailable().get("USD")));
+    assertEquals(0, BigDecimal.ZERO.compareTo(balanceInfo.getBalancesAvailable().get("BTC")));
+    assertEquals(0, BigDecimal.ONE.compareTo(balanceInfo.getBalancesOnHold().get("BTC")));
+  }
+
+  @Test
+  public void testLiquidityTakenIsNotOfferedAgainUntilNextSnapshot() throws Exception {
+    exchangeAdapter.createOrder(MARKET_ID, OrderType.BUY, BigDecimal.ONE, new BigDecimal("101"));
+    exchangeAdapter.createOrder(MARKET_ID, OrderType.BUY, BigDecimal.ONE, new BigDecimal("101"));
+    assertEquals(1, exchangeAdapter.getYourOpenOrders(MARKET_ID).size());
+
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.orderBook(2000L, MARKET_ID, "99:1", "101:1;102:2"));
+    assertTrue(exchangeAdapter.getYourOpenOrders(MARKET_ID).isEmpty());
+    assertEquals(2000L, exchangeAdapter.getTransactions().get(3).getTimestamp().getTime());
+  }
+
+  @Test
+  public void testRestingOrderIsFilledByTradeAtItsPrice() throws Exception {
+    exchangeAdapter.createOrder(
+        MARKET_ID, OrderType.BUY, new BigDecimal("2"), new BigDecimal("100"));
+    assertEquals(1, exchangeAdapter.getYourOpenOrders(MARKET_ID).size());
+
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.trade(1500L, MARKET_ID, new BigDecimal("100.5"), BigDecimal.TEN));
+    assertEquals(1, exchangeAdapter.getTransactions().size());
+
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.trade(1600L, MARKET_ID, new BigDecimal("99.5"), new BigDecimal("0.5")));
+    assertEquals(2, exchangeAdapter.getTransactions().size());
+    final TransactionEntry fill = exchangeAdapter.getTransactions().get(1);
+    assertEquals(100.0, fill.getPrice(), 0);
+    assertEquals(0.5, fill.getAmount(), 0);
+    assertEquals(
+        0,
+        new BigDecimal("1.5")
+            .compareTo(exchangeAdapter.getYourOpenOrders(MARKET_ID).get(0).getQuantity()));
+
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.trade(1700L, MARKET_ID, new BigDecimal("100"), BigDecimal.TEN));
+    assertTrue(exchangeAdapter.getYourOpenOrders(MARKET_ID).isEmpty());
+
+    // 2 @ 100 plus 0.2% fee
+    final BalanceInfo balanceInfo = exchangeAdapter.getBalanceInfo();
+    assertEquals(
+        0, new BigDecimal("9799.6").compareTo(balanceInfo.getBalancesAvailable().get("USD")));
+    assertEquals(0, new BigDecimal("3").compareTo(balanceInfo.getBalancesAvailable().get("BTC")));
+  }
+
+  @Test
+  public void testRestingOrderIsFilledAtItsPriceWhenSnapshotCrossesIt() throws Exception {
+    exchangeAdapter.createOrder(MARKET_ID, OrderType.SELL, BigDecimal.ONE, new BigDecimal("100"));
+
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.orderBook(2000L, MARKET_ID, "100.5:0.4;100:5", "101:1"));
+
+    final List<TransactionEntry> transactions = exchangeAdapter.getTransactions();
+    assertEquals(3, transactions.size());
+    assertEquals(100.0, transactions.get(1).getPrice(), 0);
+    assertEquals(0.4, transactions.get(1).getAmount(), 0);
+    assertEquals(0.6, transactions.get(2).getAmount(), 0);
+    assertTrue(exchangeAdapter.getYourOpenOrders(MARKET_ID).isEmpty());
+  }
+
+  @Test
+  public void testCancelReleasesHeldFunds() throws Exception {
+    final String orderId =
+        exchangeAdapter.createOrder(MARKET_ID, OrderType.BUY, BigDecimal.ONE, new BigDecimal("50"));
+    assertEquals(
+        0,
+        new BigDecimal("50.1")
+            .compareTo(exchangeAdapter.getBalanceInfo().getBalancesOnHold().get("USD")));
+
+    assertTrue(exchangeAdapter.cancelOrder(orderId, MARKET_ID));
+    assertFalse(exchangeAdapter.cancelOrder(orderId, MARKET_ID));
+
+    final BalanceInfo balanceInfo = exchangeAdapter.getBalanceInfo();
+    assertEquals(
+        0, new BigDecimal("10000").compareTo(balanceInfo.getBalancesAvailable().get("USD")));
+    assertEquals(0, BigDecimal.ZERO.compareTo(balanceInfo.getBalancesOnHold().get("USD")));
+    assertTrue(exchangeAdapter.getYourOpenOrders(MARKET_ID).isEmpty());
+  }
+
+  @Test(expected = TradingApiException.class)
+  public void testOrderIsRejectedIfFundsAreInsufficient() throws Exception {
+    exchangeAdapter.createOrder(
+        MARKET_ID, OrderType.SELL, new BigDecimal("1.5"), new BigDecimal("200"));
+  }
+
+  @Test(expected = TradingApiException.class)
+  public void testOrderIsRejectedIfQuantityIsNotPositive() throws Exception {
+    exchangeAdapter.createOrder(MARKET_ID, OrderType.BUY, BigDecimal.ZERO, new BigDecimal("100"));
+  }
+
+  @Test(expected = TradingApiException.class)
+  public void testUnknownMarketIsRejected() throws Exception {
+    exchangeAdapter.getMarketOrders("ltcusd");
+  }
+
+  @Test
+  public void testEventsForOtherMarketsAreSkipped() throws Exception {
+    exchangeAdapter.onMarketData(
+        MarketDataEvent.trade(1500L, "ltcusd", new BigDecimal("50"), BigDecimal.ONE));
+    assertEquals(1500L, exchangeAdapter.getTime());
+    assertEquals(
+        0, new BigDecimal("99").compareTo(exchangeAdapter.getLatestMarketPrice(MARKET_ID)));
+  }
+
+  @Test
+  public void testMarketDataIsNeededForAllMarkets() {
+    exchangeAdapter.addMarket("ethusd", "ETH", "USD");
+    assertFalse(exchangeAdapter.hasMarketDataForAllMarkets());
+    exchangeAdapter.onMarketData(MarketDataEvent.orderBook(2000L, "ethusd", "200:1", "201:1"));
+    assertTrue(exchangeAdapter.hasMarketDataForAllMarkets());
+  }
+
+  @Test
+  public void testTotalValueIsInValuationCurrency() {
+    exchangeAdapter.deposit("XRP", BigDecimal.TEN);
+    assertEquals(0, new BigDecimal("10099").compareTo(exchangeAdapter.getTotalValue("USD")));
+    assertNull(exchangeAdapter.getFeesPaid().get("USD"));
+  }
+}
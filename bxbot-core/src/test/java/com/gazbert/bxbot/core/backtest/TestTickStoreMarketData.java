@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.gazbert.bxbot.core.backtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.gazbert.bxbot.core.marketdata.TickStore;
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Tick Store Market Data behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestTickStoreMarketData {
+
+  private Path directory;
+  private TickStore tickStore;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("bxbot-tick-store");
+    tickStore = new TickStore(directory, 4096);
+
+    tickStore.appendTopOfBook(
+        "btcusd", 1000L, new BigDecimal("99"), BigDecimal.ONE, new BigDecimal("101"), null);
+    tickStore.appendTrade(
+        "ethusd", 1100L, OrderType.BUY, new BigDecimal("200"), new BigDecimal("0.5"));
+    tickStore.appendDepth(
+        "ethusd",
+        1200L,
+        levels(OrderType.BUY, "199", "1", "198", "2"),
+        levels(OrderType.SELL, "201", "3"),
+        10);
+    tickStore.appendTrade("btcusd", 1300L, OrderType.SELL, new BigDecimal("99"), BigDecimal.ONE);
+    tickStore.force();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    tickStore.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  @Test
+  public void testMarketsAreMergedInTimeOrder() throws Exception {
+    final TickStoreMarketData marketData =
+        new TickStoreMarketData(tickStore, Arrays.asList("btcusd", "ethusd"), 0L, Long.MAX_VALUE);
+
+    try (MarketDataSource source = marketData.open()) {
+      final MarketDataEvent topOfBook = source.next();
+      assertEquals(MarketDataEvent.Type.ORDER_BOOK, topOfBook.getType());
+      assertEquals("btcusd", topOfBook.getMarketId());
+      assertEquals(1000L, topOfBook.getTimestamp());
+      assertLevel(topOfBook.getBuyOrders().get(0), "99", "1");
+      assertLevel(topOfBook.getSellOrders().get(0), "101", "0");
+
+      final MarketDataEvent ethTrade = source.next();
+      assertEquals(MarketDataEvent.Type.TRADE, ethTrade.getType());
+      assertEquals("ethusd", ethTrade.getMarketId());
+      assertEquals(0, new BigDecimal("200").compareTo(ethTrade.getPrice()));
+      assertEquals(0, new BigDecimal("0.5").compareTo(ethTrade.getQuantity()));
+
+      final MarketDataEvent depth = source.next();
+      assertEquals(1200L, depth.getTimestamp());
+      assertEquals(2, depth.getBuyOrders().size());
+      assertLevel(depth.getBuyOrders().get(1), "198", "2");
+      assertEquals(1, depth.getSellOrders().size());
+      assertLevel(depth.getSellOrders().get(0), "201", "3");
+
+      assertEquals(1300L, source.next().getTimestamp());
+      assertNull(source.next());
+    }
+  }
+
+  @Test
+  public void testSourcesReplayTheTimeRangeIndependently() throws Exception {
+    final TickStoreMarketData marketData =
+        new TickStoreMarketData(tickStore, Arrays.asList("ethusd", "btcusd"), 1100L, 1250L);
+
+    final MarketDataSource first = marketData.open();
+    assertEquals(1100L, first.next().getTimestamp());
+    final MarketDataSource second = marketData.open();
+    assertEquals(1100L, second.next().getTimestamp());
+    assertEquals(1200L, first.next().getTimestamp());
+    assertNull(first.next());
+    assertEquals(1200L, second.next().getTimestamp());
+    assertNull(second.next());
+  }
+
+  @Test
+  public void testBacktestReplaysTheStore() throws Exception {
+    final ReplayExchangeAdapter exchangeAdapter =
+        new ReplayExchangeAdapter(BigDecimal.ZERO, BigDecimal.ZERO);
+    exchangeAdapter.addMarket("btcusd", "BTC", "USD");
+    exchangeAdapter.addMarket("ethusd", "ETH", "USD");
+    final TickStoreMarketData marketData =
+        new TickStoreMarketData(tickStore, Arrays.asList("btcusd", "ethusd"), 0L, Long.MAX_VALUE);
+
+    try (MarketDataSource source = marketData.open()) {
+      final BacktestReport report =
+          new Backtester(exchangeAdapter, 100L, "USD").run(Collections.emptyList(), source);
+      assertEquals(4, report.getEventCount());
+      assertEquals(1000L, report.getStartTime());
+      assertEquals(1300L, report.getEndTime());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAtLeastOneMarketMustBeReplayed() {
+    new TickStoreMarketData(tickStore, Collections.emptyList(), 0L, 1L);
+  }
+
+  private static void assertLevel(MarketOrder level, String price, String quantity) {
+    assertEquals(0, new BigDecimal(price).compareTo(level.getPrice()));
+    assertEquals(0, new BigDecimal(quantity).compareTo(level.getQuantity()));
+  }
+
+  private static List<MarketOrder> levels(OrderType type, String... pricesAndQuantities) {
+    final MarketOrder[] levels = new MarketOrder[pricesAndQuantities.length / 2];
+    for (int i = 0; i < levels.length; i++) {
+      final BigDecimal price = new BigDecimal(pricesAndQuantities[2 * i]);
+      final BigDecimal quantity = new BigDecimal(pricesAndQuantities[2 * i + 1]);
+      levels[i] = new MarketOrderImpl(type, price, quantity, price.multiply(quantity));
+    }
+    return Arrays.asList(levels);
+  }
+}
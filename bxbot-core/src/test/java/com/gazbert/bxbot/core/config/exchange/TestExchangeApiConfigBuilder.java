@@ -49,6 +49,8 @@ public class TestExchangeApiConfigBuilder {
   private static final String SECRET_FEE_CONFIG_ITEM_VALUE = "secret-key";
 
   private static final Integer CONNECTION_TIMEOUT = 30;
+  private static final Integer CONNECT_TIMEOUT = 5;
+  private static final Integer READ_TIMEOUT = 10;
   private static final List<Integer> NON_FATAL_ERROR_CODES = Arrays.asList(502, 503);
   private static final List<String> NON_FATAL_ERROR_MESSAGES =
       Arrays.asList("Connection refused", "Remote host closed connection during handshake");
@@ -73,6 +75,9 @@ public class TestExchangeApiConfigBuilder {
 
     assertThat(exchangeApiConfig.getNetworkConfig().getConnectionTimeout())
         .isEqualTo(CONNECTION_TIMEOUT);
+    assertThat(exchangeApiConfig.getNetworkConfig().getConnectTimeout())
+        .isEqualTo(CONNECT_TIMEOUT);
+    assertThat(exchangeApiConfig.getNetworkConfig().getReadTimeout()).isEqualTo(READ_TIMEOUT);
     assertThat(exchangeApiConfig.getNetworkConfig().getNonFatalErrorCodes())
         .isEqualTo(NON_FATAL_ERROR_CODES);
     assertThat(exchangeApiConfig.getNetworkConfig().getNonFatalErrorMessages())
@@ -131,6 +136,8 @@ public class TestExchangeApiConfigBuilder {
   private static NetworkConfig buildNetworkConfig() {
     final NetworkConfig networkConfig = new NetworkConfig();
     networkConfig.setConnectionTimeout(CONNECTION_TIMEOUT);
+    networkConfig.setConnectTimeout(CONNECT_TIMEOUT);
+    networkConfig.setReadTimeout(READ_TIMEOUT);
     networkConfig.setNonFatalErrorCodes(NON_FATAL_ERROR_CODES);
     networkConfig.setNonFatalErrorMessages(NON_FATAL_ERROR_MESSAGES);
     return networkConfig;
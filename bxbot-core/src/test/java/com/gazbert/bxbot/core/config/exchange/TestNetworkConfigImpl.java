@@ -39,6 +39,8 @@ import org.junit.Test;
 public class TestNetworkConfigImpl {
 
   private static final Integer CONNECTION_TIMEOUT = 30;
+  private static final Integer CONNECT_TIMEOUT = 5;
+  private static final Integer READ_TIMEOUT = 10;
   private static final List<Integer> NON_FATAL_ERROR_CODES = Arrays.asList(502, 503, 504);
   private static final List<String> NON_FATAL_ERROR_MESSAGES =
       Arrays.asList(
@@ -51,6 +53,8 @@ public class TestNetworkConfigImpl {
 
     final NetworkConfigImpl networkConfig = new NetworkConfigImpl();
     assertNull(networkConfig.getConnectionTimeout());
+    assertNull(networkConfig.getConnectTimeout());
+    assertNull(networkConfig.getReadTimeout());
     assertTrue(networkConfig.getNonFatalErrorCodes().isEmpty());
     assertTrue(networkConfig.getNonFatalErrorMessages().isEmpty());
   }
@@ -63,6 +67,12 @@ public class TestNetworkConfigImpl {
     networkConfig.setConnectionTimeout(CONNECTION_TIMEOUT);
     assertEquals(CONNECTION_TIMEOUT, networkConfig.getConnectionTimeout());
 
+    networkConfig.setConnectTimeout(CONNECT_TIMEOUT);
+    assertEquals(CONNECT_TIMEOUT, networkConfig.getConnectTimeout());
+
+    networkConfig.setReadTimeout(READ_TIMEOUT);
+    assertEquals(READ_TIMEOUT, networkConfig.getReadTimeout());
+
     networkConfig.setNonFatalErrorCodes(NON_FATAL_ERROR_CODES);
     assertEquals(NON_FATAL_ERROR_CODES, networkConfig.getNonFatalErrorCodes());
 
@@ -111,6 +111,37 @@ public class TestTradingStrategiesBuilder {
         someStrategiesConfig(), someMarketsConfigWithDuplicateMarket(), exchangeAdapter);
   }
 
+  @Test
+  public void testBuildingStrategiesForSameMarketOnDifferentExchangesSuccessfully() {
+    final ExchangeAdapter exchangeAdapter = EasyMock.createMock(ExchangeAdapter.class);
+    final ExchangeAdapter otherExchangeAdapter = EasyMock.createMock(ExchangeAdapter.class);
+    final TradingStrategyFactory tradingStrategyFactory = new TradingStrategyFactory();
+    final TradingStrategiesBuilder tradingStrategiesBuilder = new TradingStrategiesBuilder();
+    tradingStrategiesBuilder.setTradingStrategyFactory(tradingStrategyFactory);
+
+    final List<TradingStrategy> strategies =
+        tradingStrategiesBuilder.buildStrategies(
+            someStrategiesConfig(), someMarketsConfig(), exchangeAdapter);
+    final List<TradingStrategy> otherStrategies =
+        tradingStrategiesBuilder.buildStrategies(
+            someStrategiesConfig(), someMarketsConfig(), otherExchangeAdapter);
+
+    assertThat(strategies.size()).isEqualTo(2);
+    assertThat(otherStrategies.size()).isEqualTo(2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBuildingStrategiesFailsDuplicateMarketOnSameExchange() {
+    final ExchangeAdapter exchangeAdapter = EasyMock.createMock(ExchangeAdapter.class);
+    final TradingStrategyFactory tradingStrategyFactory = new TradingStrategyFactory();
+    final TradingStrategiesBuilder tradingStrategiesBuilder = new TradingStrategiesBuilder();
+    tradingStrategiesBuilder.setTradingStrategyFactory(tradingStrategyFactory);
+    tradingStrategiesBuilder.buildStrategies(
+        someStrategiesConfig(), someMarketsConfig(), exchangeAdapter);
+    tradingStrategiesBuilder.buildStrategies(
+        someStrategiesConfig(), someMarketsConfig(), exchangeAdapter);
+  }
+
   private static List<StrategyConfig> someStrategiesConfig() {
     final Map<String, String> configItems = new HashMap<>();
     configItems.put(STRATEGY_1_CONFIG_ITEM_NAME, STRATEGY_1_CONFIG_ITEM_VALUE);
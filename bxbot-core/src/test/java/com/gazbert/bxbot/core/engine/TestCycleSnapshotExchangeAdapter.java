@@ -0,0 +1,569 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.engine;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.makeThreadSafe;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
+import com.gazbert.bxbot.exchange.api.StreamingExchangeAdapter;
+import com.gazbert.bxbot.trading.api.AsyncTradingApi;
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleInterval;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderRequest;
+import com.gazbert.bxbot.trading.api.OrderResult;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Cycle Snapshot Exchange Adapter behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestCycleSnapshotExchangeAdapter {
+
+  private static final String MARKET_ID = "btcusd";
+  private static final String OTHER_MARKET_ID = "ltcusd";
+  private static final String ORDER_ID = "45345346";
+  private static final BigDecimal PRICE = new BigDecimal("9123.45");
+  private static final BigDecimal QUANTITY = new BigDecimal("0.5");
+
+  private ExchangeAdapter exchangeAdapter;
+  private MarketOrderBook marketOrderBook;
+  private BalanceInfo balanceInfo;
+  private List<OpenOrder> openOrders;
+
+  @Before
+  public void setUp() {
+    exchangeAdapter = createMock(ExchangeAdapter.class);
+    marketOrderBook = createMock(MarketOrderBook.class);
+    balanceInfo = createMock(BalanceInfo.class);
+    openOrders = Collections.singletonList(createMock(OpenOrder.class));
+  }
+
+  @Test
+  public void testExchangeDataIsFetchedOncePerTradeCycle() throws Exception {
+    expect(exchangeAdapter.getMarketOrders(MARKET_ID)).andReturn(marketOrderBook).times(2);
+    expect(exchangeAdapter.getYourOpenOrders(MARKET_ID)).andReturn(openOrders).times(2);
+    expect(exchangeAdapter.getLatestMarketPrice(MARKET_ID)).andReturn(PRICE).times(2);
+    expect(exchangeAdapter.getBalanceInfo()).andReturn(balanceInfo).times(2);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+
+    assertEquals(1, snapshotAdapter.startNewCycle());
+    for (int i = 0; i < 3; i++) {
+      assertSame(marketOrderBook, snapshotAdapter.getMarketOrders(MARKET_ID));
+      assertSame(openOrders, snapshotAdapter.getYourOpenOrders(MARKET_ID));
+      assertSame(PRICE, snapshotAdapter.getLatestMarketPrice(MARKET_ID));
+      assertSame(balanceInfo, snapshotAdapter.getBalanceInfo());
+    }
+
+    assertEquals(2, snapshotAdapter.startNewCycle());
+    for (int i = 0; i < 3; i++) {
+      assertSame(marketOrderBook, snapshotAdapter.getMarketOrders(MARKET_ID));
+      assertSame(openOrders, snapshotAdapter.getYourOpenOrders(MARKET_ID));
+      assertSame(PRICE, snapshotAdapter.getLatestMarketPrice(MARKET_ID));
+      assertSame(balanceInfo, snapshotAdapter.getBalanceInfo());
+    }
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testOpenOrdersForAllMarketsAreFetchedInOneBatchPerTradeCycle() throws Exception {
+    final List<String> marketIds = Arrays.asList(MARKET_ID, OTHER_MARKET_ID);
+    final Map<String, List<OpenOrder>> allOpenOrders = new HashMap<>();
+    allOpenOrders.put(MARKET_ID, openOrders);
+    allOpenOrders.put(OTHER_MARKET_ID, Collections.emptyList());
+
+    expect(exchangeAdapter.getYourOpenOrdersForMarkets(marketIds)).andReturn(allOpenOrders);
+    expect(exchangeAdapter.createOrder(MARKET_ID, OrderType.SELL, QUANTITY, PRICE))
+        .andReturn(ORDER_ID);
+    // only the market the order was placed on is fetched again
+    expect(exchangeAdapter.getYourOpenOrders(MARKET_ID)).andReturn(openOrders);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.setMarketIds(marketIds);
+    snapshotAdapter.startNewCycle();
+
+    assertSame(openOrders, snapshotAdapter.getYourOpenOrders(MARKET_ID));
+    assertTrue(snapshotAdapter.getYourOpenOrders(OTHER_MARKET_ID).isEmpty());
+
+    snapshotAdapter.createOrder(MARKET_ID, OrderType.SELL, QUANTITY, PRICE);
+    assertSame(openOrders, snapshotAdapter.getYourOpenOrders(MARKET_ID));
+    assertTrue(snapshotAdapter.getYourOpenOrders(OTHER_MARKET_ID).isEmpty());
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testOrderPlacedDuringBatchFetchIsNotOverwrittenByStaleOpenOrders() throws Exception {
+    final List<String> marketIds = Arrays.asList(MARKET_ID, OTHER_MARKET_ID);
+    final List<OpenOrder> staleOpenOrders = Collections.emptyList();
+    final Map<String, List<OpenOrder>> allOpenOrders = new HashMap<>();
+    allOpenOrders.put(MARKET_ID, staleOpenOrders);
+    allOpenOrders.put(OTHER_MARKET_ID, Collections.emptyList());
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.setMarketIds(marketIds);
+
+    // another strategy places an order while the batch is in flight
+    expect(exchangeAdapter.getYourOpenOrdersForMarkets(marketIds))
+        .andAnswer(
+            () -> {
+              final Thread placeOrder =
+                  new Thread(
+                      () -> {
+                        try {
+                          snapshotAdapter.createOrder(MARKET_ID, OrderType.SELL, QUANTITY, PRICE);
+                        } catch (ExchangeNetworkException | TradingApiException e) {
+                          throw new IllegalStateException(e);
+                        }
+                      });
+              placeOrder.start();
+              placeOrder.join();
+              return allOpenOrders;
+            });
+    expect(exchangeAdapter.createOrder(MARKET_ID, OrderType.SELL, QUANTITY, PRICE))
+        .andReturn(ORDER_ID);
+    // the batch's orders for the market predate the order, so they are fetched again
+    expect(exchangeAdapter.getYourOpenOrders(MARKET_ID)).andReturn(openOrders);
+    // a thread safe mock would block the order until the batch it is waiting in returns
+    makeThreadSafe(exchangeAdapter, false);
+    replay(exchangeAdapter);
+
+    snapshotAdapter.startNewCycle();
+
+    assertSame(openOrders, snapshotAdapter.getYourOpenOrders(MARKET_ID));
+    assertSame(openOrders, snapshotAdapter.getYourOpenOrders(MARKET_ID));
+    assertTrue(snapshotAdapter.getYourOpenOrders(OTHER_MARKET_ID).isEmpty());
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testPlacingOrderEvictsOpenOrdersAndBalanceButNotOrderBook() throws Exception {
+    expect(exchangeAdapter.getMarketOrders(MARKET_ID)).andReturn(marketOrderBook);
+    expect(exchangeAdapter.getYourOpenOrders(MARKET_ID)).andReturn(openOrders).times(2);
+    expect(exchangeAdapter.getBalanceInfo()).andReturn(balanceInfo).times(2);
+    expect(exchangeAdapter.createOrder(MARKET_ID, OrderType.BUY, QUANTITY, PRICE))
+        .andReturn(ORDER_ID);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.startNewCycle();
+
+    snapshotAdapter.getMarketOrders(MARKET_ID);
+    snapshotAdapter.getYourOpenOrders(MARKET_ID);
+    snapshotAdapter.getBalanceInfo();
+
+    assertEquals(
+        ORDER_ID, snapshotAdapter.createOrder(MARKET_ID, OrderType.BUY, QUANTITY, PRICE));
+
+    snapshotAdapter.getMarketOrders(MARKET_ID);
+    snapshotAdapter.getYourOpenOrders(MARKET_ID);
+    snapshotAdapter.getBalanceInfo();
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testCancellingOrderEvictsOpenOrdersAndBalance() throws Exception {
+    expect(exchangeAdapter.getYourOpenOrders(MARKET_ID)).andReturn(openOrders).times(2);
+    expect(exchangeAdapter.getBalanceInfo()).andReturn(balanceInfo).times(2);
+    expect(exchangeAdapter.cancelOrder(ORDER_ID, MARKET_ID)).andReturn(true);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.startNewCycle();
+
+    snapshotAdapter.getYourOpenOrders(MARKET_ID);
+    snapshotAdapter.getBalanceInfo();
+
+    snapshotAdapter.cancelOrder(ORDER_ID, MARKET_ID);
+
+    snapshotAdapter.getYourOpenOrders(MARKET_ID);
+    snapshotAdapter.getBalanceInfo();
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testAsyncAndBlockingCallsShareTradeCycleSnapshot() throws Exception {
+    expect(exchangeAdapter.getMarketOrders(MARKET_ID)).andReturn(marketOrderBook);
+    expect(exchangeAdapter.getBalanceInfo()).andReturn(balanceInfo);
+    expect(exchangeAdapter.getLatestMarketPrice(MARKET_ID)).andReturn(PRICE);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.startNewCycle();
+
+    assertSame(
+        marketOrderBook, AsyncTradingApi.join(snapshotAdapter.getMarketOrdersAsync(MARKET_ID)));
+    assertSame(marketOrderBook, snapshotAdapter.getMarketOrders(MARKET_ID));
+
+    assertSame(balanceInfo, snapshotAdapter.getBalanceInfo());
+    assertSame(balanceInfo, AsyncTradingApi.join(snapshotAdapter.getBalanceInfoAsync()));
+
+    assertSame(
+        PRICE, AsyncTradingApi.join(snapshotAdapter.getLatestMarketPriceAsync(MARKET_ID)));
+    assertSame(
+        PRICE, AsyncTradingApi.join(snapshotAdapter.getLatestMarketPriceAsync(MARKET_ID)));
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testAsyncOpenOrdersAreFetchedInOneBatchPerTradeCycle() throws Exception {
+    final List<String> marketIds = Arrays.asList(MARKET_ID, OTHER_MARKET_ID);
+    final Map<String, List<OpenOrder>> allOpenOrders = new HashMap<>();
+    allOpenOrders.put(MARKET_ID, openOrders);
+    allOpenOrders.put(OTHER_MARKET_ID, Collections.emptyList());
+
+    expect(exchangeAdapter.getYourOpenOrdersForMarkets(marketIds)).andReturn(allOpenOrders);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.setMarketIds(marketIds);
+    snapshotAdapter.startNewCycle();
+
+    assertSame(
+        openOrders, AsyncTradingApi.join(snapshotAdapter.getYourOpenOrdersAsync(MARKET_ID)));
+    assertTrue(
+        AsyncTradingApi.join(snapshotAdapter.getYourOpenOrdersAsync(OTHER_MARKET_ID)).isEmpty());
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testPlacingOrderAsyncEvictsOpenOrdersAndBalance() throws Exception {
+    expect(exchangeAdapter.getYourOpenOrders(MARKET_ID)).andReturn(openOrders).times(2);
+    expect(exchangeAdapter.getBalanceInfo()).andReturn(balanceInfo).times(2);
+    expect(exchangeAdapter.createOrder(MARKET_ID, OrderType.BUY, QUANTITY, PRICE))
+        .andReturn(ORDER_ID);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.startNewCycle();
+
+    snapshotAdapter.getYourOpenOrders(MARKET_ID);
+    snapshotAdapter.getBalanceInfo();
+
+    assertEquals(
+        ORDER_ID,
+        AsyncTradingApi.join(
+            snapshotAdapter.createOrderAsync(MARKET_ID, OrderType.BUY, QUANTITY, PRICE)));
+
+    snapshotAdapter.getYourOpenOrders(MARKET_ID);
+    snapshotAdapter.getBalanceInfo();
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testFailedFetchIsNotCached() throws Exception {
+    final ExchangeNetworkException networkException = new ExchangeNetworkException("timeout");
+    expect(exchangeAdapter.getMarketOrders(MARKET_ID)).andThrow(networkException);
+    expect(exchangeAdapter.getMarketOrders(MARKET_ID)).andReturn(marketOrderBook);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.startNewCycle();
+
+    try {
+      snapshotAdapter.getMarketOrders(MARKET_ID);
+      fail("Expected ExchangeNetworkException");
+    } catch (ExchangeNetworkException e) {
+      assertSame(networkException, e);
+    }
+    assertSame(marketOrderBook, snapshotAdapter.getMarketOrders(MARKET_ID));
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testTickerIsFetchedOncePerTradeCycle() throws Exception {
+    final Ticker ticker = createMock(Ticker.class);
+    expect(exchangeAdapter.getTicker(MARKET_ID)).andReturn(ticker).times(2);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+
+    snapshotAdapter.startNewCycle();
+    assertSame(ticker, snapshotAdapter.getTicker(MARKET_ID));
+    assertSame(ticker, AsyncTradingApi.join(snapshotAdapter.getTickerAsync(MARKET_ID)));
+
+    snapshotAdapter.startNewCycle();
+    assertSame(ticker, snapshotAdapter.getTicker(MARKET_ID));
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testMarketDataListenersAreToldAboutEachFetchButNotCachedReads() throws Exception {
+    final Ticker ticker = createMock(Ticker.class);
+    expect(exchangeAdapter.getMarketOrders(MARKET_ID)).andReturn(marketOrderBook).times(2);
+    expect(exchangeAdapter.getTicker(MARKET_ID)).andReturn(ticker);
+    expect(exchangeAdapter.getLatestMarketPrice(MARKET_ID)).andReturn(PRICE);
+    replay(exchangeAdapter);
+
+    final List<Object> updates = new ArrayList<>();
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.setMarketDataListeners(
+        (marketId, update) -> updates.add(marketId + ":" + update),
+        (marketId, update) -> updates.add(marketId + ":" + update),
+        (marketId, update) -> updates.add(marketId + ":" + update));
+
+    snapshotAdapter.startNewCycle();
+    snapshotAdapter.getMarketOrders(MARKET_ID);
+    AsyncTradingApi.join(snapshotAdapter.getMarketOrdersAsync(MARKET_ID));
+    snapshotAdapter.getTicker(MARKET_ID);
+    snapshotAdapter.getTicker(MARKET_ID);
+    snapshotAdapter.getLatestMarketPrice(MARKET_ID);
+    AsyncTradingApi.join(snapshotAdapter.getLatestMarketPriceAsync(MARKET_ID));
+
+    snapshotAdapter.startNewCycle();
+    snapshotAdapter.getMarketOrders(MARKET_ID);
+
+    assertEquals(
+        Arrays.asList(
+            MARKET_ID + ":" + marketOrderBook,
+            MARKET_ID + ":" + ticker,
+            MARKET_ID + ":" + PRICE,
+            MARKET_ID + ":" + marketOrderBook),
+        updates);
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testCandlesAreReadFromCandleApi() {
+    replay(exchangeAdapter);
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    assertTrue(snapshotAdapter.getCandles(MARKET_ID, CandleInterval.ONE_MINUTE, 10).isEmpty());
+
+    final List<Candle> candles = Collections.singletonList(new Candle(60000L, 1, 2, 0.5, 1.5, 3));
+    snapshotAdapter.setCandleApi(
+        (marketId, interval, count) ->
+            MARKET_ID.equals(marketId) && interval == CandleInterval.ONE_MINUTE && count == 10
+                ? candles
+                : Collections.emptyList());
+    assertSame(candles, snapshotAdapter.getCandles(MARKET_ID, CandleInterval.ONE_MINUTE, 10));
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testMarketDataIsSharedAcrossTradeCyclesForFreshnessWindow() throws Exception {
+    final long[] now = {0};
+    expect(exchangeAdapter.getMarketOrders(MARKET_ID)).andReturn(marketOrderBook).times(2);
+    expect(exchangeAdapter.getLatestMarketPrice(MARKET_ID)).andReturn(PRICE).times(2);
+    expect(exchangeAdapter.getBalanceInfo()).andReturn(balanceInfo).times(3);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter, () -> now[0]);
+    snapshotAdapter.setMarketDataFreshnessMillis(1000);
+
+    // within the window, only account data is fetched again in a new cycle
+    for (int cycle = 0; cycle < 2; cycle++) {
+      snapshotAdapter.startNewCycle();
+      assertSame(marketOrderBook, snapshotAdapter.getMarketOrders(MARKET_ID));
+      assertSame(PRICE, snapshotAdapter.getLatestMarketPrice(MARKET_ID));
+      assertSame(balanceInfo, snapshotAdapter.getBalanceInfo());
+      now[0] += TimeUnit.MILLISECONDS.toNanos(400);
+    }
+
+    now[0] += TimeUnit.MILLISECONDS.toNanos(200);
+    snapshotAdapter.startNewCycle();
+    assertSame(marketOrderBook, snapshotAdapter.getMarketOrders(MARKET_ID));
+    assertSame(PRICE, snapshotAdapter.getLatestMarketPrice(MARKET_ID));
+    assertSame(balanceInfo, snapshotAdapter.getBalanceInfo());
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testOtherCallsGoStraightToExchangeAdapter() throws Exception {
+    expect(exchangeAdapter.getImplName()).andReturn("Dummy Exchange Adapter");
+    expect(exchangeAdapter.getPercentageOfBuyOrderTakenForExchangeFee(MARKET_ID))
+        .andReturn(new BigDecimal("0.0025"));
+    expect(exchangeAdapter.roundValue(PRICE)).andReturn(PRICE);
+    replay(exchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+
+    assertEquals("Dummy Exchange Adapter", snapshotAdapter.getImplName());
+    assertEquals(
+        new BigDecimal("0.0025"),
+        snapshotAdapter.getPercentageOfBuyOrderTakenForExchangeFee(MARKET_ID));
+    assertEquals(PRICE, snapshotAdapter.roundValue(PRICE));
+
+    verify(exchangeAdapter);
+  }
+
+  @Test
+  public void testStreamedMarketDataIsReadFromLocalCopy() throws Exception {
+    final StreamingExchangeAdapter streamingExchangeAdapter =
+        createMock(StreamingExchangeAdapter.class);
+    final Ticker ticker = createMock(Ticker.class);
+    expect(streamingExchangeAdapter.getLatestMarketOrders(MARKET_ID))
+        .andReturn(marketOrderBook)
+        .times(2);
+    expect(streamingExchangeAdapter.getLatestTicker(MARKET_ID)).andReturn(ticker).times(2);
+    replay(streamingExchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(streamingExchangeAdapter);
+    snapshotAdapter.startNewCycle();
+
+    assertSame(marketOrderBook, snapshotAdapter.getMarketOrders(MARKET_ID));
+    assertSame(marketOrderBook, snapshotAdapter.getMarketOrdersAsync(MARKET_ID).get());
+    assertSame(ticker, snapshotAdapter.getTicker(MARKET_ID));
+    assertSame(ticker, snapshotAdapter.getTickerAsync(MARKET_ID).get());
+
+    verify(streamingExchangeAdapter);
+  }
+
+  @Test
+  public void testMarketDataIsFetchedWhenStreamHasNoLocalCopy() throws Exception {
+    final StreamingExchangeAdapter streamingExchangeAdapter =
+        createMock(StreamingExchangeAdapter.class);
+    final Ticker ticker = createMock(Ticker.class);
+    expect(streamingExchangeAdapter.getLatestMarketOrders(MARKET_ID)).andReturn(null).times(2);
+    expect(streamingExchangeAdapter.getMarketOrders(MARKET_ID)).andReturn(marketOrderBook);
+    expect(streamingExchangeAdapter.getLatestTicker(MARKET_ID)).andReturn(null);
+    expect(streamingExchangeAdapter.getTicker(MARKET_ID)).andReturn(ticker);
+    replay(streamingExchangeAdapter);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(streamingExchangeAdapter);
+    snapshotAdapter.startNewCycle();
+
+    assertSame(marketOrderBook, snapshotAdapter.getMarketOrders(MARKET_ID));
+    assertSame(marketOrderBook, snapshotAdapter.getMarketOrders(MARKET_ID));
+    assertSame(ticker, snapshotAdapter.getTicker(MARKET_ID));
+
+    verify(streamingExchangeAdapter);
+  }
+
+  @Test
+  public void testOrderListenerIsToldAboutPlacedAndCancelledOrders() throws Exception {
+    expect(exchangeAdapter.createOrder(MARKET_ID, OrderType.BUY, QUANTITY, PRICE))
+        .andReturn(ORDER_ID);
+    expect(exchangeAdapter.cancelOrder(ORDER_ID, MARKET_ID)).andReturn(true);
+    expect(exchangeAdapter.cancelOrder(ORDER_ID, OTHER_MARKET_ID)).andReturn(false);
+    final CycleSnapshotExchangeAdapter.OrderListener orderListener =
+        createMock(CycleSnapshotExchangeAdapter.OrderListener.class);
+    orderListener.orderCreated(MARKET_ID, ORDER_ID);
+    orderListener.orderCancelled(MARKET_ID, ORDER_ID);
+    replay(exchangeAdapter, orderListener);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.setOrderListener(orderListener);
+    snapshotAdapter.startNewCycle();
+
+    assertEquals(ORDER_ID, snapshotAdapter.createOrder(MARKET_ID, OrderType.BUY, QUANTITY, PRICE));
+    assertTrue(snapshotAdapter.cancelOrder(ORDER_ID, MARKET_ID));
+    // failed cancels are not reported
+    assertFalse(snapshotAdapter.cancelOrder(ORDER_ID, OTHER_MARKET_ID));
+
+    verify(exchangeAdapter, orderListener);
+  }
+
+  @Test
+  public void testBatchOrdersGoToExchangeAdapterAndTellOrderListener() throws Exception {
+    final List<OrderRequest> orderRequests =
+        Arrays.asList(
+            new OrderRequest(MARKET_ID, OrderType.BUY, QUANTITY, PRICE),
+            new OrderRequest(OTHER_MARKET_ID, OrderType.SELL, QUANTITY, PRICE));
+    final TradingApiException failure = new TradingApiException("Insufficient funds");
+    expect(exchangeAdapter.getYourOpenOrders(MARKET_ID)).andReturn(openOrders).times(2);
+    expect(exchangeAdapter.createOrders(orderRequests))
+        .andReturn(
+            Arrays.asList(OrderResult.succeeded(ORDER_ID), OrderResult.failed(null, failure)));
+    expect(exchangeAdapter.cancelAllOrders(MARKET_ID))
+        .andReturn(
+            Arrays.asList(OrderResult.succeeded(ORDER_ID), OrderResult.failed("123", null)));
+    final CycleSnapshotExchangeAdapter.OrderListener orderListener =
+        createMock(CycleSnapshotExchangeAdapter.OrderListener.class);
+    orderListener.orderCreated(MARKET_ID, ORDER_ID);
+    orderListener.orderCancelled(MARKET_ID, ORDER_ID);
+    replay(exchangeAdapter, orderListener);
+
+    final CycleSnapshotExchangeAdapter snapshotAdapter =
+        new CycleSnapshotExchangeAdapter(exchangeAdapter);
+    snapshotAdapter.setOrderListener(orderListener);
+    snapshotAdapter.startNewCycle();
+
+    snapshotAdapter.getYourOpenOrders(MARKET_ID);
+    final List<OrderResult> created = snapshotAdapter.createOrders(orderRequests);
+    assertTrue(created.get(0).isSuccess());
+    assertSame(failure, created.get(1).getFailure());
+    // the batch evicted the open orders
+    snapshotAdapter.getYourOpenOrders(MARKET_ID);
+
+    assertEquals(2, snapshotAdapter.cancelAllOrders(MARKET_ID).size());
+
+    verify(exchangeAdapter, orderListener);
+  }
+}
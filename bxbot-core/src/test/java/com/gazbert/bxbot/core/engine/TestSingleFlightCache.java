@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Single Flight Cache behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestSingleFlightCache {
+
+  private static final String KEY = "btcusd";
+
+  private long now;
+  private AtomicInteger fetchCount;
+  private SingleFlightCache<String> cache;
+
+  @Before
+  public void setUp() {
+    now = 0;
+    fetchCount = new AtomicInteger();
+    cache = new SingleFlightCache<>(() -> now);
+  }
+
+  @Test
+  public void testCallersShareFetchInFlight() {
+    final CompletableFuture<String> inFlight = new CompletableFuture<>();
+    final CompletableFuture<String> first = cache.get(KEY, fetch(inFlight));
+    final CompletableFuture<String> second = cache.get(KEY, fetch(inFlight));
+    assertSame(first, second);
+    assertFalse(first.isDone());
+
+    inFlight.complete("book");
+    assertEquals("book", second.join());
+    assertEquals(1, fetchCount.get());
+  }
+
+  @Test
+  public void testResultIsKeptUntilClearedWhenThereIsNoFreshnessWindow() {
+    assertFalse(cache.hasFreshnessWindow());
+    cache.get(KEY, fetch(CompletableFuture.completedFuture("book")));
+    now += TimeUnit.HOURS.toNanos(1);
+    assertEquals("book", cache.get(KEY, fetch(CompletableFuture.completedFuture("new"))).join());
+
+    cache.clear();
+    assertEquals("new", cache.get(KEY, fetch(CompletableFuture.completedFuture("new"))).join());
+    assertEquals(2, fetchCount.get());
+  }
+
+  @Test
+  public void testResultIsFetchedAgainOnceFreshnessWindowHasPassed() {
+    cache.setFreshnessMillis(500);
+    assertTrue(cache.hasFreshnessWindow());
+
+    cache.get(KEY, fetch(CompletableFuture.completedFuture("book")));
+    now += TimeUnit.MILLISECONDS.toNanos(499);
+    assertEquals("book", cache.get(KEY, fetch(CompletableFuture.completedFuture("new"))).join());
+    assertEquals(1, fetchCount.get());
+
+    now += TimeUnit.MILLISECONDS.toNanos(1);
+    assertEquals("new", cache.get(KEY, fetch(CompletableFuture.completedFuture("new"))).join());
+    assertEquals(2, fetchCount.get());
+  }
+
+  @Test
+  public void testFreshnessWindowStartsWhenFetchCompletes() {
+    cache.setFreshnessMillis(500);
+    final CompletableFuture<String> inFlight = new CompletableFuture<>();
+    cache.get(KEY, fetch(inFlight));
+
+    now += TimeUnit.SECONDS.toNanos(2);
+    inFlight.complete("book");
+    now += TimeUnit.MILLISECONDS.toNanos(100);
+    assertEquals("book", cache.get(KEY, fetch(CompletableFuture.completedFuture("new"))).join());
+    assertEquals(1, fetchCount.get());
+  }
+
+  @Test
+  public void testFailedFetchIsNotCached() {
+    final CompletableFuture<String> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException("timeout"));
+    assertTrue(cache.get(KEY, fetch(failed)).isCompletedExceptionally());
+
+    assertEquals("book", cache.get(KEY, fetch(CompletableFuture.completedFuture("book"))).join());
+    assertEquals(2, fetchCount.get());
+  }
+
+  @Test
+  public void testFetchThatThrowsIsNotCached() {
+    final CompletableFuture<String> result =
+        cache.get(
+            KEY,
+            () -> {
+              throw new IllegalStateException("boom");
+            });
+    assertTrue(result.isCompletedExceptionally());
+
+    assertEquals("book", cache.get(KEY, fetch(CompletableFuture.completedFuture("book"))).join());
+  }
+
+  @Test
+  public void testKeysAreCachedSeparately() {
+    cache.get(KEY, fetch(CompletableFuture.completedFuture("btc book")));
+    assertEquals(
+        "ltc book",
+        cache.get("ltcusd", fetch(CompletableFuture.completedFuture("ltc book"))).join());
+    assertEquals(2, fetchCount.get());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeFreshnessWindowIsRejected() {
+    cache.setFreshnessMillis(-1);
+  }
+
+  private Supplier<CompletableFuture<String>> fetch(CompletableFuture<String> result) {
+    return () -> {
+      fetchCount.incrementAndGet();
+      return result;
+    };
+  }
+}
@@ -0,0 +1,398 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.engine;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.exchange.api.StreamingExchangeAdapter;
+import com.gazbert.bxbot.strategy.api.EventDrivenTradingStrategy;
+import com.gazbert.bxbot.strategy.api.StrategyTrigger;
+import com.gazbert.bxbot.strategy.api.TradingStrategy;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.MarketDataListener;
+import com.gazbert.bxbot.trading.api.MarketDataSubscription;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.TradingApi;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.easymock.Capture;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the Strategy Trigger Dispatcher fires and coalesces triggers as expected.
+ *
+ * @author gazbert
+ */
+public class TestStrategyTriggerDispatcher {
+
+  private static final String EXCHANGE_NAME = "Bitstamp";
+  private static final String OTHER_EXCHANGE_NAME = "Kraken";
+  private static final String MARKET_ID = "btcusd";
+  private static final String OTHER_MARKET_ID = "ethusd";
+  private static final long LONG_POLL_INTERVAL = 60000;
+  private static final long POLL_INTERVAL = 1;
+  private static final long TIMER_INTERVAL = 10;
+
+  private StrategyTriggerDispatcher dispatcher;
+
+  @After
+  public void tearDown() {
+    if (dispatcher != null) {
+      dispatcher.stop();
+    }
+  }
+
+  @Test
+  public void testStrategyWithoutTriggersIsExecutedEveryTradeCycleInterval() throws Exception {
+    final TradingStrategy strategy = createMock(TradingStrategy.class);
+    replay(strategy);
+
+    dispatcher =
+        new StrategyTriggerDispatcher(onExchange(strategy), TIMER_INTERVAL, 0);
+    dispatcher.start(Collections.emptyMap());
+
+    // the first poll is due straight away, but the timer has not fired yet
+    dispatcher.awaitTrigger();
+    assertTrue(dispatcher.takeFiredStrategies().isEmpty());
+
+    dispatcher.awaitTrigger();
+    Thread.sleep(TIMER_INTERVAL * 2);
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+    verify(strategy);
+  }
+
+  @Test
+  public void testRepeatedTriggersAreCoalescedIntoOneExecution() throws Exception {
+    final EventDrivenTradingStrategy strategy =
+        createStrategy(StrategyTrigger.onTimer(1), StrategyTrigger.onTimer(2));
+
+    dispatcher =
+        new StrategyTriggerDispatcher(onExchange(strategy), LONG_POLL_INTERVAL, 0);
+    dispatcher.start(Collections.emptyMap());
+    Thread.sleep(TIMER_INTERVAL * 5);
+    dispatcher.stop();
+
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+    assertTrue(dispatcher.getFiredCount() > 1);
+    assertEquals(dispatcher.getFiredCount() - 1, dispatcher.getCoalescedCount());
+    verify(strategy);
+  }
+
+  @Test
+  public void testBestPriceChangeTriggerFiresOnPolledOrderBook() throws Exception {
+    final EventDrivenTradingStrategy strategy =
+        createStrategy(StrategyTrigger.onBestPriceChange(MARKET_ID));
+    final TradingApi tradingApi = createMock(TradingApi.class);
+    expect(tradingApi.getMarketOrders(MARKET_ID))
+        .andReturn(createOrderBook("100.0", "101.0"));
+    expect(tradingApi.getMarketOrders(MARKET_ID))
+        .andReturn(createOrderBook("100.00", "101.00"));
+    expect(tradingApi.getMarketOrders(MARKET_ID))
+        .andReturn(createOrderBook("100.0", "100.5"));
+    replay(tradingApi);
+
+    dispatcher =
+        new StrategyTriggerDispatcher(onExchange(strategy), POLL_INTERVAL, 0);
+    dispatcher.start(Collections.emptyMap());
+
+    poll(tradingApi);
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+
+    // same prices, different scale
+    poll(tradingApi);
+    assertTrue(dispatcher.takeFiredStrategies().isEmpty());
+
+    poll(tradingApi);
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+    verify(strategy, tradingApi);
+  }
+
+  @Test
+  public void testPriceMoveTriggerFiresWhenMidPriceMovesByPercentage() throws Exception {
+    final EventDrivenTradingStrategy strategy =
+        createStrategy(StrategyTrigger.onPriceMove(MARKET_ID, new BigDecimal("1")));
+    final TradingApi tradingApi = createMock(TradingApi.class);
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("99", "101"));
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("99.5", "101.5"));
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("100", "102"));
+    // the move is measured from the price the trigger last fired at
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("100.5", "102.5"));
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("98.98", "101"));
+    replay(tradingApi);
+
+    dispatcher =
+        new StrategyTriggerDispatcher(onExchange(strategy), POLL_INTERVAL, 0);
+    dispatcher.start(Collections.emptyMap());
+
+    poll(tradingApi);
+    assertTrue(dispatcher.takeFiredStrategies().isEmpty());
+    poll(tradingApi);
+    assertTrue(dispatcher.takeFiredStrategies().isEmpty());
+    poll(tradingApi);
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+    poll(tradingApi);
+    assertTrue(dispatcher.takeFiredStrategies().isEmpty());
+    poll(tradingApi);
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+    verify(strategy, tradingApi);
+  }
+
+  @Test
+  public void testOrderFillTriggerFiresWhenOrderIsNoLongerOpen() throws Exception {
+    final EventDrivenTradingStrategy strategy =
+        createStrategy(StrategyTrigger.onOrderFill(MARKET_ID));
+    final TradingApi tradingApi = createMock(TradingApi.class);
+    expect(tradingApi.getYourOpenOrders(MARKET_ID)).andReturn(createOpenOrders("1", "2"));
+    expect(tradingApi.getYourOpenOrders(MARKET_ID)).andReturn(createOpenOrders("1", "3"));
+    expect(tradingApi.getYourOpenOrders(MARKET_ID)).andReturn(createOpenOrders("1"));
+    replay(tradingApi);
+
+    dispatcher =
+        new StrategyTriggerDispatcher(onExchange(strategy), POLL_INTERVAL, 0);
+    dispatcher.start(Collections.emptyMap());
+
+    poll(tradingApi);
+    assertTrue(dispatcher.takeFiredStrategies().isEmpty());
+
+    // order 2 was cancelled by the bot, so it is not a fill
+    dispatcher.getOrderListener(EXCHANGE_NAME).orderCancelled(MARKET_ID, "2");
+    dispatcher.getOrderListener(EXCHANGE_NAME).orderCreated(MARKET_ID, "3");
+    poll(tradingApi);
+    assertTrue(dispatcher.takeFiredStrategies().isEmpty());
+
+    poll(tradingApi);
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+    verify(strategy, tradingApi);
+  }
+
+  @Test
+  public void testOrderFillTriggerFiresForOrderFilledBeforeItWasSeenOpen() throws Exception {
+    final EventDrivenTradingStrategy strategy =
+        createStrategy(StrategyTrigger.onOrderFill(MARKET_ID));
+    final TradingApi tradingApi = createMock(TradingApi.class);
+    expect(tradingApi.getYourOpenOrders(MARKET_ID)).andReturn(createOpenOrders());
+    expect(tradingApi.getYourOpenOrders(MARKET_ID)).andReturn(createOpenOrders());
+    replay(tradingApi);
+
+    dispatcher =
+        new StrategyTriggerDispatcher(onExchange(strategy), POLL_INTERVAL, 0);
+    dispatcher.start(Collections.emptyMap());
+
+    poll(tradingApi);
+    dispatcher.getOrderListener(EXCHANGE_NAME).orderCreated(MARKET_ID, "1");
+    poll(tradingApi);
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+    verify(strategy, tradingApi);
+  }
+
+  @Test
+  public void testPriceTriggersUseStreamedOrderBookInsteadOfPolling() throws Exception {
+    final EventDrivenTradingStrategy strategy =
+        createStrategy(StrategyTrigger.onBestPriceChange(MARKET_ID));
+    final StreamingExchangeAdapter exchangeAdapter =
+        createMock(StreamingExchangeAdapter.class);
+    final Capture<MarketDataListener<MarketOrderBook>> listener = newCapture();
+    expect(exchangeAdapter.subscribeToOrderBook(eq(MARKET_ID), capture(listener)))
+        .andReturn(createMock(MarketDataSubscription.class));
+    final TradingApi tradingApi = createMock(TradingApi.class);
+    replay(exchangeAdapter, tradingApi);
+
+    dispatcher =
+        new StrategyTriggerDispatcher(onExchange(strategy), POLL_INTERVAL, 0);
+    dispatcher.start(Collections.singletonMap(EXCHANGE_NAME, exchangeAdapter));
+
+    poll(tradingApi);
+    assertTrue(dispatcher.takeFiredStrategies().isEmpty());
+
+    listener.getValue().onUpdate(MARKET_ID, createOrderBook("100", "101"));
+    listener.getValue().onUpdate(MARKET_ID, createOrderBook("100", "102"));
+    dispatcher.awaitTrigger();
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+    assertEquals(2, dispatcher.getFiredCount());
+    assertEquals(1, dispatcher.getCoalescedCount());
+    verify(strategy, exchangeAdapter, tradingApi);
+  }
+
+  @Test
+  public void testMarketIsPolledIfOrderBookSubscriptionFails() throws Exception {
+    final EventDrivenTradingStrategy strategy =
+        createStrategy(StrategyTrigger.onBestPriceChange(MARKET_ID));
+    final StreamingExchangeAdapter exchangeAdapter =
+        createMock(StreamingExchangeAdapter.class);
+    expect(exchangeAdapter.subscribeToOrderBook(eq(MARKET_ID), anyObject()))
+        .andThrow(new TradingApiException("Not supported"));
+    final TradingApi tradingApi = createMock(TradingApi.class);
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("100", "101"));
+    replay(exchangeAdapter, tradingApi);
+
+    dispatcher =
+        new StrategyTriggerDispatcher(onExchange(strategy), POLL_INTERVAL, 0);
+    dispatcher.start(Collections.singletonMap(EXCHANGE_NAME, exchangeAdapter));
+
+    poll(tradingApi);
+    assertEquals(Collections.singletonList(strategy), dispatcher.takeFiredStrategies());
+    verify(strategy, exchangeAdapter, tradingApi);
+  }
+
+  @Test
+  public void testNetworkErrorPollingOneMarketDoesNotStopTheOthers() throws Exception {
+    final EventDrivenTradingStrategy failingStrategy =
+        createStrategy(StrategyTrigger.onBestPriceChange(MARKET_ID));
+    final EventDrivenTradingStrategy healthyStrategy =
+        createStrategy(StrategyTrigger.onBestPriceChange(OTHER_MARKET_ID));
+    final TradingApi tradingApi = createMock(TradingApi.class);
+    expect(tradingApi.getMarketOrders(MARKET_ID))
+        .andThrow(new ExchangeNetworkException("Circuit breaker is open"));
+    expect(tradingApi.getMarketOrders(OTHER_MARKET_ID)).andReturn(createOrderBook("10", "11"));
+    replay(tradingApi);
+
+    dispatcher =
+        new StrategyTriggerDispatcher(
+            onExchange(failingStrategy, healthyStrategy), POLL_INTERVAL, 0);
+    dispatcher.start(Collections.emptyMap());
+
+    poll(tradingApi);
+    assertEquals(Collections.singletonList(healthyStrategy), dispatcher.takeFiredStrategies());
+    verify(failingStrategy, healthyStrategy, tradingApi);
+  }
+
+  @Test(expected = ExchangeNetworkException.class)
+  public void testNetworkErrorIsThrownIfEveryMarketFailsToPoll() throws Exception {
+    final EventDrivenTradingStrategy strategy =
+        createStrategy(
+            StrategyTrigger.onBestPriceChange(MARKET_ID), StrategyTrigger.onOrderFill(MARKET_ID));
+    final TradingApi tradingApi = createMock(TradingApi.class);
+    expect(tradingApi.getMarketOrders(MARKET_ID))
+        .andThrow(new ExchangeNetworkException("Read timed out"));
+    expect(tradingApi.getYourOpenOrders(MARKET_ID))
+        .andThrow(new ExchangeNetworkException("Read timed out"));
+    replay(tradingApi);
+
+    dispatcher =
+        new StrategyTriggerDispatcher(onExchange(strategy), POLL_INTERVAL, 0);
+    dispatcher.start(Collections.emptyMap());
+
+    poll(tradingApi);
+  }
+
+  @Test
+  public void testSameMarketOnTwoExchangesIsTriggeredPerExchange() throws Exception {
+    final EventDrivenTradingStrategy strategy =
+        createStrategy(StrategyTrigger.onBestPriceChange(MARKET_ID));
+    final EventDrivenTradingStrategy otherStrategy =
+        createStrategy(StrategyTrigger.onBestPriceChange(MARKET_ID));
+    final TradingApi tradingApi = createMock(TradingApi.class);
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("100", "101"));
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("100", "101"));
+    final TradingApi otherTradingApi = createMock(TradingApi.class);
+    expect(otherTradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("99", "102"));
+    expect(otherTradingApi.getMarketOrders(MARKET_ID)).andReturn(createOrderBook("99", "101"));
+    replay(tradingApi, otherTradingApi);
+
+    final Map<String, List<TradingStrategy>> strategiesByExchange = new LinkedHashMap<>();
+    strategiesByExchange.put(EXCHANGE_NAME, Collections.singletonList(strategy));
+    strategiesByExchange.put(OTHER_EXCHANGE_NAME, Collections.singletonList(otherStrategy));
+    final Map<String, TradingApi> tradingApis = new LinkedHashMap<>();
+    tradingApis.put(EXCHANGE_NAME, tradingApi);
+    tradingApis.put(OTHER_EXCHANGE_NAME, otherTradingApi);
+
+    dispatcher = new StrategyTriggerDispatcher(strategiesByExchange, POLL_INTERVAL, 0);
+    dispatcher.start(Collections.emptyMap());
+
+    dispatcher.awaitTrigger();
+    dispatcher.pollIfDue(tradingApis);
+    assertEquals(Arrays.asList(strategy, otherStrategy), dispatcher.takeFiredStrategies());
+
+    // only the other exchange's prices have changed
+    dispatcher.awaitTrigger();
+    dispatcher.pollIfDue(tradingApis);
+    assertEquals(Collections.singletonList(otherStrategy), dispatcher.takeFiredStrategies());
+    verify(strategy, otherStrategy, tradingApi, otherTradingApi);
+  }
+
+  // --------------------------------------------------------------------------
+  // Util methods
+  // --------------------------------------------------------------------------
+
+  private void poll(TradingApi tradingApi) throws Exception {
+    dispatcher.awaitTrigger();
+    dispatcher.pollIfDue(Collections.singletonMap(EXCHANGE_NAME, tradingApi));
+  }
+
+  private static Map<String, List<TradingStrategy>> onExchange(TradingStrategy... strategies) {
+    return Collections.singletonMap(EXCHANGE_NAME, Arrays.asList(strategies));
+  }
+
+  private static EventDrivenTradingStrategy createStrategy(StrategyTrigger... triggers) {
+    final EventDrivenTradingStrategy strategy = createMock(EventDrivenTradingStrategy.class);
+    expect(strategy.getTriggers()).andReturn(Arrays.asList(triggers));
+    replay(strategy);
+    return strategy;
+  }
+
+  private static MarketOrderBook createOrderBook(String bestBid, String bestAsk) {
+    final MarketOrder buyOrder = createMock(MarketOrder.class);
+    expect(buyOrder.getPrice()).andReturn(new BigDecimal(bestBid)).anyTimes();
+    final MarketOrder sellOrder = createMock(MarketOrder.class);
+    expect(sellOrder.getPrice()).andReturn(new BigDecimal(bestAsk)).anyTimes();
+    final MarketOrderBook marketOrderBook = createMock(MarketOrderBook.class);
+    expect(marketOrderBook.getBuyOrders())
+        .andReturn(Collections.singletonList(buyOrder))
+        .anyTimes();
+    expect(marketOrderBook.getSellOrders())
+        .andReturn(Collections.singletonList(sellOrder))
+        .anyTimes();
+    replay(buyOrder, sellOrder, marketOrderBook);
+    return marketOrderBook;
+  }
+
+  private static List<OpenOrder> createOpenOrders(String... orderIds) {
+    final List<OpenOrder> openOrders = new ArrayList<>();
+    for (final String orderId : orderIds) {
+      final OpenOrder openOrder = createMock(OpenOrder.class);
+      expect(openOrder.getId()).andReturn(orderId).anyTimes();
+      replay(openOrder);
+      openOrders.add(openOrder);
+    }
+    return openOrders;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Trade Cycle Scheduler behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestTradeCycleScheduler {
+
+  private static final long PERIOD_MILLIS = 250;
+
+  private long now;
+  private TradeCycleScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    now = 0;
+    scheduler = new TradeCycleScheduler(PERIOD_MILLIS, () -> now);
+  }
+
+  @Test
+  public void testNextCycleIsScheduledAtFixedRateRegardlessOfExecutionTime() {
+    scheduler.cycleStarted();
+    advanceMillis(100);
+    assertEquals(millis(150), scheduler.cycleCompleted());
+
+    advanceMillis(150);
+    scheduler.cycleStarted();
+    advanceMillis(200);
+    assertEquals(millis(50), scheduler.cycleCompleted());
+
+    assertEquals(2, scheduler.getCycleCount());
+    assertEquals(0, scheduler.getOverrunCount());
+    assertEquals(0, scheduler.getMissedTickCount());
+    assertEquals(millis(200), scheduler.getLastExecutionTimeNanos());
+    assertEquals(millis(200), scheduler.getMaxExecutionTimeNanos());
+    assertEquals(millis(150), scheduler.getMeanExecutionTimeNanos());
+  }
+
+  @Test
+  public void testStartJitterIsRecorded() {
+    scheduler.cycleStarted();
+    advanceMillis(100);
+    final long sleepNanos = scheduler.cycleCompleted();
+
+    now += sleepNanos + millis(7);
+    scheduler.cycleStarted();
+    assertEquals(millis(7), scheduler.getLastStartJitterNanos());
+    assertEquals(millis(7), scheduler.getMaxStartJitterNanos());
+
+    advanceMillis(10);
+    now += scheduler.cycleCompleted() + millis(2);
+    scheduler.cycleStarted();
+    assertEquals(millis(2), scheduler.getLastStartJitterNanos());
+    assertEquals(millis(7), scheduler.getMaxStartJitterNanos());
+  }
+
+  @Test
+  public void testOverrunStartsNextCycleNowAndCoalescesMissedTicks() {
+    scheduler.cycleStarted();
+    advanceMillis(600); // overruns tick at 250 and misses tick at 500
+    assertEquals(0, scheduler.cycleCompleted());
+    assertEquals(1, scheduler.getOverrunCount());
+    assertEquals(1, scheduler.getMissedTickCount());
+
+    // late cycle starts now, 100ms after its 500ms tick, and then we're back on the grid
+    scheduler.cycleStarted();
+    assertEquals(millis(100), scheduler.getLastStartJitterNanos());
+    advanceMillis(50);
+    assertEquals(millis(100), scheduler.cycleCompleted());
+    assertEquals(1, scheduler.getOverrunCount());
+  }
+
+  @Test
+  public void testOverrunWithinOnePeriodDoesNotMissAnyTicks() {
+    scheduler.cycleStarted();
+    advanceMillis(300);
+    assertEquals(0, scheduler.cycleCompleted());
+    assertEquals(1, scheduler.getOverrunCount());
+    assertEquals(0, scheduler.getMissedTickCount());
+
+    scheduler.cycleStarted();
+    advanceMillis(100);
+    assertEquals(millis(100), scheduler.cycleCompleted());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPeriodMustBePositive() {
+    new TradeCycleScheduler(0, () -> now);
+  }
+
+  private void advanceMillis(long millis) {
+    now += millis(millis);
+  }
+
+  private static long millis(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+}
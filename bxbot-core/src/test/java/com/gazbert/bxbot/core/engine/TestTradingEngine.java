@@ -30,6 +30,7 @@ import static org.easymock.EasyMock.contains;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
 import static org.junit.Assert.assertFalse;
 
 import com.gazbert.bxbot.core.config.strategy.TradingStrategiesBuilder;
@@ -46,6 +47,7 @@ import com.gazbert.bxbot.services.config.EngineConfigService;
 import com.gazbert.bxbot.services.config.ExchangeConfigService;
 import com.gazbert.bxbot.services.config.MarketConfigService;
 import com.gazbert.bxbot.services.config.StrategyConfigService;
+import com.gazbert.bxbot.services.runtime.impl.CandleServiceImpl;
 import com.gazbert.bxbot.strategy.api.IStrategyConfigItems;
 import com.gazbert.bxbot.strategy.api.StrategyException;
 import com.gazbert.bxbot.strategy.api.TradingStrategy;
@@ -57,6 +59,7 @@ import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -106,6 +109,7 @@ public class TestTradingEngine {
   private static final String EXCHANGE_ADAPTER_IMPL_CLASS =
       "com.my.adapters.DummyBitstampExchangeAdapter";
   private static final String EXCHANGE_NAME = "Bitstamp";
+  private static final String UNKNOWN_EXCHANGE_NAME = "Kraken";
   private static final Integer EXCHANGE_ADAPTER_NETWORK_TIMEOUT = Integer.valueOf("30");
   private static final List<Integer> EXCHANGE_ADAPTER_NONFATAL_ERROR_CODES =
       Arrays.asList(502, 503, 504);
@@ -123,6 +127,7 @@ public class TestTradingEngine {
   private static final BigDecimal ENGINE_EMERGENCY_STOP_BALANCE = new BigDecimal("0.5");
   private static final int ENGINE_TRADE_CYCLE_INTERVAL =
       1; // unrealistic, but 1 second speeds up tests ;-)
+  private static final int ENGINE_STRATEGY_THREAD_POOL_SIZE = 2;
 
   private static final String STRATEGY_ID = "MyMacdStrategy_v3";
   private static final String STRATEGY_NAME = "MACD Shorting algo";
@@ -184,7 +189,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
     assertFalse(tradingEngine.isRunning());
 
     PowerMock.verifyAll();
@@ -223,7 +229,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
     tradingEngine.start();
 
     await().until(engineStateChanged(tradingEngine, EngineState.SHUTDOWN));
@@ -250,7 +257,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
 
     final Executor executor = Executors.newSingleThreadExecutor();
     executor.execute(tradingEngine::start);
@@ -296,7 +304,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
 
     final Executor executor = Executors.newSingleThreadExecutor();
     executor.execute(tradingEngine::start);
@@ -351,7 +360,112 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
+
+    tradingEngine.start();
+
+    await().until(engineStateChanged(tradingEngine, EngineState.SHUTDOWN));
+    assertFalse(tradingEngine.isRunning());
+
+    PowerMock.verifyAll();
+  }
+
+  /*
+   * Tests the engine starts up and executes trade cycles successfully when the strategies are
+   * executed concurrently. Scenario is at least one successful trade cycle and then we shut it
+   * down.
+   */
+  @Test
+  public void testEngineExecutesTradeCyclesConcurrentlyAndCanBeShutdownSuccessfully()
+      throws Exception {
+    setupExchangeAdapterConfigExpectations();
+    setupEngineConfigForConcurrentStrategyExecutionExpectations();
+    setupStrategyAndMarketConfigExpectations();
+
+    final Map<String, BigDecimal> balancesAvailable = new HashMap<>();
+    // balance limit NOT breached for BTC
+    balancesAvailable.put(ENGINE_EMERGENCY_STOP_CURRENCY, new BigDecimal("0.5"));
+
+    // expect BalanceInfo to be fetched using Trading API
+    final BalanceInfo balanceInfo = PowerMock.createMock(BalanceInfo.class);
+    expect(exchangeAdapter.getBalanceInfo()).andReturn(balanceInfo).atLeastOnce();
+    expect(balanceInfo.getBalancesAvailable()).andReturn(balancesAvailable).atLeastOnce();
+
+    // expect Trading Strategy to be invoked
+    tradingStrategy.execute();
+    expectLastCall().atLeastOnce();
+
+    PowerMock.replayAll();
+
+    final TradingEngine tradingEngine =
+        new TradingEngine(
+            exchangeConfigService,
+            engineConfigService,
+            strategyConfigService,
+            marketConfigService,
+            emailAlerter,
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
+
+    final Executor executor = Executors.newSingleThreadExecutor();
+    executor.execute(tradingEngine::start);
+
+    await().until(engineStateChanged(tradingEngine, EngineState.RUNNING));
+    assertTrue(tradingEngine.isRunning());
+
+    tradingEngine.shutdown();
+
+    await().until(engineStateChanged(tradingEngine, EngineState.SHUTDOWN));
+    assertFalse(tradingEngine.isRunning());
+
+    PowerMock.verifyAll();
+  }
+
+  /*
+   * Tests the engine starts up, executes 1 trade cycle successfully, but then receives
+   * StrategyException from a Trading Strategy running on a worker thread - we expect the engine
+   * to shutdown.
+   */
+  @Test
+  public void testEngineShutsDownWhenItReceivesStrategyExceptionFromConcurrentTradingStrategy()
+      throws Exception {
+    setupExchangeAdapterConfigExpectations();
+    setupEngineConfigForConcurrentStrategyExecutionExpectations();
+    setupStrategyAndMarketConfigExpectations();
+
+    final String exceptionErrorMsg = "Eeek! My strat just broke on a worker. Please shutdown!";
+    final Map<String, BigDecimal> balancesAvailable = new HashMap<>();
+    // balance limit NOT breached for BTC
+    balancesAvailable.put(ENGINE_EMERGENCY_STOP_CURRENCY, new BigDecimal("0.5"));
+    final BalanceInfo balanceInfo = PowerMock.createMock(BalanceInfo.class);
+
+    // expect 1st trade cycle to be successful
+    expect(exchangeAdapter.getBalanceInfo()).andReturn(balanceInfo);
+    expect(balanceInfo.getBalancesAvailable()).andReturn(balancesAvailable);
+    tradingStrategy.execute();
+
+    // expect StrategyException in 2nd trade cycle
+    expect(exchangeAdapter.getBalanceInfo()).andReturn(balanceInfo);
+    expect(balanceInfo.getBalancesAvailable()).andReturn(balancesAvailable);
+    tradingStrategy.execute();
+    expectLastCall().andThrow(new StrategyException(exceptionErrorMsg));
+
+    // expect Email Alert to be sent
+    emailAlerter.sendMessage(
+        eq(CRITICAL_EMAIL_ALERT_SUBJECT),
+        contains("A FATAL error has occurred in Trading Strategy! Details: " + exceptionErrorMsg));
+    PowerMock.replayAll();
+
+    final TradingEngine tradingEngine =
+        new TradingEngine(
+            exchangeConfigService,
+            engineConfigService,
+            strategyConfigService,
+            marketConfigService,
+            emailAlerter,
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
 
     tradingEngine.start();
 
@@ -404,7 +518,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
 
     tradingEngine.start();
 
@@ -457,7 +572,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
 
     tradingEngine.start();
 
@@ -507,7 +623,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
 
     tradingEngine.start();
 
@@ -560,7 +677,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
 
     final Executor executor = Executors.newSingleThreadExecutor();
     executor.execute(tradingEngine::start);
@@ -611,7 +729,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
     final Executor executor = Executors.newSingleThreadExecutor();
     executor.execute(tradingEngine::start);
 
@@ -624,6 +743,35 @@ public class TestTradingEngine {
     PowerMock.verifyAll();
   }
 
+  /*
+   * Tests the engine cannot be started if a market is bound to an exchange that is not configured.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEngineCannotBeStartedWithMarketOnUnknownExchange() throws Exception {
+    setupExchangeAdapterConfigExpectations();
+    setupEngineConfigExpectations();
+    final MarketConfig marketConfig = allTheMarketsConfig().get(0);
+    marketConfig.setExchange(UNKNOWN_EXCHANGE_NAME);
+    expect(strategyConfigService.getAllStrategyConfig()).andReturn(allTheStrategiesConfig());
+    expect(marketConfigService.getAllMarketConfig())
+        .andReturn(Collections.singletonList(marketConfig));
+
+    PowerMock.replayAll();
+
+    final TradingEngine tradingEngine =
+        new TradingEngine(
+            exchangeConfigService,
+            engineConfigService,
+            strategyConfigService,
+            marketConfigService,
+            emailAlerter,
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
+    tradingEngine.start();
+
+    PowerMock.verifyAll();
+  }
+
   @Test
   public void testEngineShutsDownWhenBalancesCannotBeFetchedFromExchange() throws Exception {
     setupConfigLoadingExpectations();
@@ -654,7 +802,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
     tradingEngine.start();
 
     await().until(engineStateChanged(tradingEngine, EngineState.SHUTDOWN));
@@ -691,7 +840,8 @@ public class TestTradingEngine {
             strategyConfigService,
             marketConfigService,
             emailAlerter,
-            tradingStrategiesBuilder);
+            tradingStrategiesBuilder,
+            new CandleServiceImpl());
 
     final Executor executor = Executors.newSingleThreadExecutor();
     executor.execute(tradingEngine::start);
@@ -712,7 +862,8 @@ public class TestTradingEngine {
   // --------------------------------------------------------------------------
 
   private void setupExchangeAdapterConfigExpectations() {
-    expect(exchangeConfigService.getExchangeConfig()).andReturn(someExchangeConfig());
+    expect(exchangeConfigService.getAllExchangeConfig())
+        .andReturn(Collections.singletonList(someExchangeConfig()));
     expect(ConfigurableComponentFactory.createComponent(EXCHANGE_ADAPTER_IMPL_CLASS))
         .andReturn(exchangeAdapter);
     expect(exchangeAdapter.getImplName()).andReturn(EXCHANGE_NAME).anyTimes();
@@ -722,7 +873,8 @@ public class TestTradingEngine {
   private void setupExchangeAdapterConfigWithNoNetworkConfigExpectations() {
     final com.gazbert.bxbot.domain.exchange.ExchangeConfig exchangeConfig =
         someExchangeConfigWithoutNetworkConfig();
-    expect(exchangeConfigService.getExchangeConfig()).andReturn(exchangeConfig);
+    expect(exchangeConfigService.getAllExchangeConfig())
+        .andReturn(Collections.singletonList(exchangeConfig));
     expect(ConfigurableComponentFactory.createComponent(EXCHANGE_ADAPTER_IMPL_CLASS))
         .andReturn(exchangeAdapter);
     expect(exchangeAdapter.getImplName()).andReturn(EXCHANGE_NAME).anyTimes();
@@ -738,13 +890,19 @@ public class TestTradingEngine {
         .andReturn(someEngineConfigForNoEmergencyStopCheck());
   }
 
+  private void setupEngineConfigForConcurrentStrategyExecutionExpectations() {
+    expect(engineConfigService.getEngineConfig())
+        .andReturn(someEngineConfigForConcurrentStrategyExecution());
+  }
+
   private void setupStrategyAndMarketConfigExpectations() {
     expect(strategyConfigService.getAllStrategyConfig()).andReturn(allTheStrategiesConfig());
     expect(marketConfigService.getAllMarketConfig()).andReturn(allTheMarketsConfig());
     expect(ConfigurableComponentFactory.createComponent(STRATEGY_IMPL_CLASS))
         .andReturn(tradingStrategy);
+    // strategies are given the trade cycle snapshot view of the Exchange Adapter
     tradingStrategy.init(
-        eq(exchangeAdapter),
+        isA(CycleSnapshotExchangeAdapter.class),
         anyObject(Market.class),
         anyObject(IStrategyConfigItems.class));
   }
@@ -829,6 +987,13 @@ public class TestTradingEngine {
     return engineConfig;
   }
 
+  private static EngineConfig someEngineConfigForConcurrentStrategyExecution() {
+    final EngineConfig engineConfig = someEngineConfig();
+    engineConfig.setConcurrentStrategyExecution(true);
+    engineConfig.setStrategyThreadPoolSize(ENGINE_STRATEGY_THREAD_POOL_SIZE);
+    return engineConfig;
+  }
+
   private static List<StrategyConfig> allTheStrategiesConfig() {
     final Map<String, String> configItems = new HashMap<>();
     configItems.put(STRATEGY_CONFIG_ITEM_NAME, STRATEGY_CONFIG_ITEM_VALUE);
@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.marketdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderBookImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketTradeImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.TickerImpl;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Market Data Recorder behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestMarketDataRecorder {
+
+  private static final String EXCHANGE_NAME = "Bitstamp";
+  private static final String MARKET_ID = "btcusd";
+  private static final int SEGMENT_SIZE = 4096;
+  private static final long NOW = 1_600_000_000_000L;
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("bxbot-market-data-recorder");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Collections.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  @Test
+  public void testUpdatesAreWrittenToTickStoreOfExchange() throws Exception {
+    final MarketDataRecorder recorder =
+        new MarketDataRecorder(directory, SEGMENT_SIZE, 1, 16, () -> NOW);
+
+    final List<MarketOrder> buyOrders = new ArrayList<>();
+    buyOrders.add(order(OrderType.BUY, "7200.1", "0.5"));
+    buyOrders.add(order(OrderType.BUY, "7200.0", "1"));
+    final List<MarketOrder> sellOrders = new ArrayList<>();
+    sellOrders.add(order(OrderType.SELL, "7201.3", "0.4"));
+    recorder.recordOrderBook(
+        EXCHANGE_NAME, new MarketOrderBookImpl(MARKET_ID, sellOrders, buyOrders));
+    recorder.recordTicker(
+        EXCHANGE_NAME,
+        MARKET_ID,
+        new TickerImpl(
+            null, new BigDecimal("7200.1"), new BigDecimal("7201.3"), null, null, null, null,
+            null, null));
+    recorder.recordTrade(
+        EXCHANGE_NAME,
+        MARKET_ID,
+        new MarketTradeImpl(
+            "42", OrderType.BUY, new BigDecimal("7201.3"), new BigDecimal("0.1"), 1L));
+    recorder.close();
+
+    assertEquals(3, recorder.getRecordedCount());
+    assertEquals(0, recorder.getDroppedCount());
+    assertEquals(directory.resolve(EXCHANGE_NAME), recorder.getTickStoreDirectory(EXCHANGE_NAME));
+
+    final List<String> records = new ArrayList<>();
+    try (TickStore tickStore =
+        new TickStore(recorder.getTickStoreDirectory(EXCHANGE_NAME), SEGMENT_SIZE)) {
+      tickStore.scan(
+          MARKET_ID,
+          Long.MIN_VALUE,
+          Long.MAX_VALUE,
+          new TickVisitor() {
+            @Override
+            public void onTopOfBook(
+                long timestamp, long bidPrice, long bidQuantity, long askPrice, long askQuantity) {
+              records.add("top " + timestamp + " " + bidPrice + " " + askPrice);
+            }
+
+            @Override
+            public void onDepth(
+                long timestamp,
+                long[] bidPrices,
+                long[] bidQuantities,
+                int bidCount,
+                long[] askPrices,
+                long[] askQuantities,
+                int askCount) {
+              records.add("depth " + timestamp + " " + bidCount + " " + askCount);
+            }
+
+            @Override
+            public void onTrade(long timestamp, OrderType type, long price, long quantity) {
+              records.add("trade " + timestamp + " " + type + " " + price + " " + quantity);
+            }
+          });
+    }
+
+    // The depth is capped at one level a side and updates are stamped when received.
+    assertEquals(
+        List.of(
+            "depth " + NOW + " 1 1",
+            "top " + NOW + " 720010000000 720130000000",
+            "trade " + NOW + " BUY 720130000000 10000000"),
+        records);
+  }
+
+  @Test
+  public void testTickerWithoutBidAndAskIsNotRecorded() throws Exception {
+    final MarketDataRecorder recorder =
+        new MarketDataRecorder(directory, SEGMENT_SIZE, 1, 16, () -> NOW);
+    recorder.recordTicker(
+        EXCHANGE_NAME,
+        MARKET_ID,
+        new TickerImpl(BigDecimal.TEN, null, null, null, null, null, null, null, null));
+    recorder.close();
+
+    assertEquals(0, recorder.getRecordedCount());
+  }
+
+  @Test
+  public void testUpdatesAreDroppedOnceClosed() throws Exception {
+    final MarketDataRecorder recorder =
+        new MarketDataRecorder(directory, SEGMENT_SIZE, 1, 16, () -> NOW);
+    recorder.close();
+
+    recorder.recordTrade(
+        EXCHANGE_NAME,
+        MARKET_ID,
+        new MarketTradeImpl("1", OrderType.SELL, BigDecimal.ONE, BigDecimal.ONE, 1L));
+
+    assertEquals(0, recorder.getRecordedCount());
+    assertEquals(1, recorder.getDroppedCount());
+  }
+
+  @Test
+  public void testExchangeNameIsMadeSafeForFileSystem() throws Exception {
+    final MarketDataRecorder recorder =
+        new MarketDataRecorder(directory, SEGMENT_SIZE, 1, 16, () -> NOW);
+    recorder.close();
+
+    assertTrue(recorder.getTickStoreDirectory("../Kraken EU").endsWith(".._Kraken_EU"));
+  }
+
+  private static MarketOrder order(OrderType type, String price, String quantity) {
+    final BigDecimal orderPrice = new BigDecimal(price);
+    final BigDecimal orderQuantity = new BigDecimal(quantity);
+    return new MarketOrderImpl(type, orderPrice, orderQuantity, orderPrice.multiply(orderQuantity));
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.marketdata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Tick Store behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestTickStore {
+
+  private static final String MARKET_ID = "btcusd";
+  private static final int SEGMENT_SIZE = 4096;
+
+  private Path directory;
+  private TickStore tickStore;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("bxbot-tick-store");
+    tickStore = new TickStore(directory, SEGMENT_SIZE);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    tickStore.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  @Test
+  public void testFixedPointConversion() {
+    assertEquals(720012345678L, TickStore.toFixedPoint(new BigDecimal("7200.12345678")));
+    assertEquals(50000000L, TickStore.toFixedPoint(new BigDecimal("0.5")));
+    assertEquals(2L, TickStore.toFixedPoint(new BigDecimal("0.000000015")));
+    assertEquals(
+        0, new BigDecimal("7200.12345678").compareTo(TickStore.fromFixedPoint(720012345678L)));
+  }
+
+  @Test
+  public void testRecordsAreReadBackInOrder() throws Exception {
+    tickStore.appendTopOfBook(
+        MARKET_ID,
+        1000L,
+        new BigDecimal("7200.10"),
+        new BigDecimal("0.5"),
+        new BigDecimal("7201.30"),
+        null);
+    tickStore.appendDepth(
+        MARKET_ID,
+        1100L,
+        levels(OrderType.BUY, "7200.10", "0.5", "7200.00", "1.2", "7199.5", "3"),
+        levels(OrderType.SELL, "7201.30", "0.4", "7202.00", "2.0"),
+        2);
+    tickStore.appendTrade(
+        MARKET_ID, 1200L, OrderType.SELL, new BigDecimal("7200.10"), new BigDecimal("0.01"));
+    tickStore.appendTrade(MARKET_ID, 1300L, null, new BigDecimal("7199.9"), BigDecimal.ONE);
+
+    final RecordingVisitor visitor = scan(Long.MIN_VALUE, Long.MAX_VALUE);
+    assertEquals(
+        Arrays.asList(
+            "top 1000 720010000000 50000000 720130000000 0",
+            "depth 1100 [720010000000, 720000000000] [50000000, 120000000]"
+                + " [720130000000, 720200000000] [40000000, 200000000]",
+            "trade 1200 SELL 720010000000 1000000",
+            "trade 1300 null 719990000000 100000000"),
+        visitor.records);
+  }
+
+  @Test
+  public void testMarketsAreStoredSeparately() throws Exception {
+    tickStore.appendTrade(MARKET_ID, 1000L, OrderType.BUY, BigDecimal.TEN, BigDecimal.ONE);
+    tickStore.appendTrade("eth/usd", 1000L, OrderType.BUY, BigDecimal.ONE, BigDecimal.ONE);
+
+    assertEquals(1, scan(Long.MIN_VALUE, Long.MAX_VALUE).records.size());
+    final RecordingVisitor visitor = new RecordingVisitor();
+    tickStore.scan("eth/usd", Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    assertEquals(Arrays.asList("trade 1000 BUY 100000000 100000000"), visitor.records);
+    assertTrue(Files.isDirectory(directory.resolve("eth_usd")));
+  }
+
+  @Test
+  public void testEarlierTimestampIsMovedToLastRecordTime() throws Exception {
+    tickStore.appendTrade(MARKET_ID, 2000L, OrderType.BUY, BigDecimal.TEN, BigDecimal.ONE);
+    tickStore.appendTrade(MARKET_ID, 1500L, OrderType.BUY, BigDecimal.TEN, BigDecimal.ONE);
+
+    final RecordingVisitor visitor = scan(Long.MIN_VALUE, Long.MAX_VALUE);
+    assertTrue(visitor.records.get(1).startsWith("trade 2000 "));
+  }
+
+  @Test
+  public void testSegmentsAreRolledAndScannedByTimeRange() throws Exception {
+    for (int i = 0; i < 2000; i++) {
+      tickStore.appendTrade(
+          MARKET_ID,
+          1000L + i,
+          OrderType.BUY,
+          new BigDecimal("7200").add(BigDecimal.valueOf(i % 7)),
+          new BigDecimal("0.01"));
+    }
+    assertTrue(listSegments().size() > 1);
+
+    assertEquals(2000, scan(Long.MIN_VALUE, Long.MAX_VALUE).records.size());
+
+    final RecordingVisitor visitor = scan(2500L, 2599L);
+    assertEquals(100, visitor.records.size());
+    assertTrue(visitor.records.get(0).startsWith("trade 2500 BUY 720200000000 "));
+    assertTrue(visitor.records.get(99).startsWith("trade 2599 BUY 720300000000 "));
+
+    assertTrue(scan(5000L, 6000L).records.isEmpty());
+  }
+
+  @Test
+  public void testCursorVisitsRecordsInTimeRangeOneAtATime() throws Exception {
+    for (int i = 0; i < 2000; i++) {
+      tickStore.appendTrade(MARKET_ID, 1000L + i, OrderType.BUY, BigDecimal.TEN, BigDecimal.ONE);
+    }
+
+    final TickCursor cursor = tickStore.openCursor(MARKET_ID, 2500L, 2502L);
+    final RecordingVisitor visitor = new RecordingVisitor();
+    assertTrue(cursor.next(visitor));
+    assertEquals(1, visitor.records.size());
+    assertTrue(visitor.records.get(0).startsWith("trade 2500 "));
+    assertTrue(cursor.next(visitor));
+    assertTrue(cursor.next(visitor));
+    assertTrue(visitor.records.get(2).startsWith("trade 2502 "));
+    assertFalse(cursor.next(visitor));
+    assertFalse(cursor.next(visitor));
+    assertEquals(3, visitor.records.size());
+
+    assertFalse(tickStore.openCursor("ltcusd", 0L, Long.MAX_VALUE).next(visitor));
+  }
+
+  @Test
+  public void testAppendingCarriesOnAfterReopen() throws Exception {
+    tickStore.appendTrade(MARKET_ID, 1000L, OrderType.BUY, BigDecimal.TEN, BigDecimal.ONE);
+    tickStore.close();
+
+    tickStore = new TickStore(directory, SEGMENT_SIZE);
+    tickStore.appendTrade(MARKET_ID, 1100L, OrderType.SELL, new BigDecimal("11"), BigDecimal.ONE);
+
+    assertEquals(1, listSegments().size());
+    assertEquals(
+        Arrays.asList(
+            "trade 1000 BUY 1000000000 100000000", "trade 1100 SELL 1100000000 100000000"),
+        scan(Long.MIN_VALUE, Long.MAX_VALUE).records);
+  }
+
+  @Test
+  public void testRecordCutShortIsIgnoredAndNewSegmentStartedAfterCrash() throws Exception {
+    tickStore.appendTrade(MARKET_ID, 1000L, OrderType.BUY, BigDecimal.TEN, BigDecimal.ONE);
+    tickStore.close();
+
+    // A crash part way through writing the next record: some of it is there but not its type byte.
+    final Path segment = listSegments().get(0);
+    final int end = TickLog.HEADER_SIZE + findEnd(segment);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {TickCodec.END, 0x64, (byte) 0x81, 0x01}), end);
+    }
+    Files.createFile(segment.resolveSibling("0000000001-1050.tmp"));
+
+    tickStore = new TickStore(directory, SEGMENT_SIZE);
+    tickStore.appendTrade(MARKET_ID, 1100L, OrderType.SELL, new BigDecimal("11"), BigDecimal.ONE);
+
+    assertEquals(2, listSegments().size());
+    assertFalse(Files.exists(segment.resolveSibling("0000000001-1050.tmp")));
+    assertEquals(
+        Arrays.asList(
+            "trade 1000 BUY 1000000000 100000000", "trade 1100 SELL 1100000000 100000000"),
+        scan(Long.MIN_VALUE, Long.MAX_VALUE).records);
+  }
+
+  @Test
+  public void testScanOfUnknownMarketFindsNothing() throws Exception {
+    final RecordingVisitor visitor = new RecordingVisitor();
+    tickStore.scan("ltcusd", Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    assertTrue(visitor.records.isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSegmentSizeMustNotBeTooSmall() {
+    new TickStore(directory, 100);
+  }
+
+  @Test
+  public void testDepthArraysAreReused() throws Exception {
+    tickStore.appendDepth(
+        MARKET_ID, 1000L, levels(OrderType.BUY, "1", "1"), levels(OrderType.SELL, "2", "1"), 10);
+    tickStore.appendDepth(
+        MARKET_ID, 1001L, levels(OrderType.BUY, "1.5", "1"), new ArrayList<>(), 10);
+
+    final List<long[]> bidArrays = new ArrayList<>();
+    tickStore.scan(
+        MARKET_ID,
+        Long.MIN_VALUE,
+        Long.MAX_VALUE,
+        new TickVisitor() {
+          @Override
+          public void onDepth(
+              long timestamp,
+              long[] bidPrices,
+              long[] bidQuantities,
+              int bidCount,
+              long[] askPrices,
+              long[] askQuantities,
+              int askCount) {
+            bidArrays.add(bidPrices);
+            if (timestamp == 1001L) {
+              assertEquals(0, askCount);
+              assertArrayEquals(new long[] {150000000L}, Arrays.copyOf(bidPrices, bidCount));
+            }
+          }
+        });
+    assertEquals(2, bidArrays.size());
+    assertTrue(bidArrays.get(0) == bidArrays.get(1));
+  }
+
+  private RecordingVisitor scan(long fromTimestamp, long toTimestamp) throws IOException {
+    final RecordingVisitor visitor = new RecordingVisitor();
+    tickStore.scan(MARKET_ID, fromTimestamp, toTimestamp, visitor);
+    return visitor;
+  }
+
+  private List<Path> listSegments() throws IOException {
+    final List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(directory.resolve(MARKET_ID), "*.ticks")) {
+      files.forEach(segments::add);
+    }
+    segments.sort(Comparator.naturalOrder());
+    return segments;
+  }
+
+  private static int findEnd(Path segment) throws IOException {
+    final byte[] bytes = Files.readAllBytes(segment);
+    int end = bytes.length;
+    while (end > TickLog.HEADER_SIZE && bytes[end - 1] == 0) {
+      end--;
+    }
+    return end - TickLog.HEADER_SIZE;
+  }
+
+  private static List<MarketOrder> levels(OrderType type, String... pricesAndQuantities) {
+    final List<MarketOrder> levels = new ArrayList<>();
+    for (int i = 0; i < pricesAndQuantities.length; i += 2) {
+      final BigDecimal price = new BigDecimal(pricesAndQuantities[i]);
+      final BigDecimal quantity = new BigDecimal(pricesAndQuantities[i + 1]);
+      levels.add(new MarketOrderImpl(type, price, quantity, price.multiply(quantity)));
+    }
+    return levels;
+  }
+
+  /** Records what it visits as strings. */
+  private static class RecordingVisitor implements TickVisitor {
+
+    final List<String> records = new ArrayList<>();
+
+    @Override
+    public void onTopOfBook(
+        long timestamp, long bidPrice, long bidQuantity, long askPrice, long askQuantity) {
+      records.add(
+          "top " + timestamp + " " + bidPrice + " " + bidQuantity + " " + askPrice + " "
+              + askQuantity);
+    }
+
+    @Override
+    public void onDepth(
+        long timestamp,
+        long[] bidPrices,
+        long[] bidQuantities,
+        int bidCount,
+        long[] askPrices,
+        long[] askQuantities,
+        int askCount) {
+      records.add(
+          "depth "
+              + timestamp
+              + " "
+              + Arrays.toString(Arrays.copyOf(bidPrices, bidCount))
+              + " "
+              + Arrays.toString(Arrays.copyOf(bidQuantities, bidCount))
+              + " "
+              + Arrays.toString(Arrays.copyOf(askPrices, askCount))
+              + " "
+              + Arrays.toString(Arrays.copyOf(askQuantities, askCount)));
+    }
+
+    @Override
+    public void onTrade(long timestamp, OrderType type, long price, long quantity) {
+      records.add("trade " + timestamp + " " + type + " " + price + " " + quantity);
+    }
+  }
+}
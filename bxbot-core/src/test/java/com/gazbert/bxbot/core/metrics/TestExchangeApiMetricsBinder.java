@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.Endpoint;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.ErrorCategory;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.Phase;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Exchange API Metrics Binder registers the expected meters.
+ *
+ * @author gazbert
+ */
+public class TestExchangeApiMetricsBinder {
+
+  private static final String ADAPTER = "KrakenExchangeAdapter";
+  private static final String DEPTH = "/0/public/Depth";
+  private static final String ADD_ORDER = "/0/private/AddOrder";
+
+  private ExchangeApiMetrics apiMetrics;
+  private MeterRegistry registry;
+
+  @Before
+  public void setUp() {
+    apiMetrics = new ExchangeApiMetrics();
+    registry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  public void testLatenciesAreExposedForEndpointsCalledBeforeBinding() {
+    final Endpoint endpoint = apiMetrics.getEndpoint(ADAPTER, DEPTH, "GET");
+    endpoint.record(Phase.TOTAL, TimeUnit.MILLISECONDS.toNanos(2));
+    endpoint.record(Phase.TOTAL, TimeUnit.MILLISECONDS.toNanos(4));
+
+    new ExchangeApiMetricsBinder(apiMetrics).bindTo(registry);
+
+    final FunctionTimer timer =
+        registry
+            .get(ExchangeApiMetricsBinder.LATENCY_METRIC)
+            .tags("adapter", ADAPTER, "endpoint", DEPTH, "method", "GET", "phase", "total")
+            .functionTimer();
+    assertEquals(2, timer.count(), 0);
+    assertEquals(6, timer.totalTime(TimeUnit.MILLISECONDS), 0.001);
+    assertEquals(
+        4,
+        registry
+            .get(ExchangeApiMetricsBinder.LATENCY_METRIC + ".max")
+            .tags("endpoint", DEPTH, "phase", "total")
+            .timeGauge()
+            .value(TimeUnit.MILLISECONDS),
+        0.001);
+    assertEquals(
+        4,
+        registry
+            .get(ExchangeApiMetricsBinder.LATENCY_METRIC + ".percentile")
+            .tags("endpoint", DEPTH, "phase", "total", "phi", "0.99")
+            .timeGauge()
+            .value(TimeUnit.MILLISECONDS),
+        4 * 0.035);
+  }
+
+  @Test
+  public void testErrorsAreExposedForEndpointsCalledAfterBinding() {
+    new ExchangeApiMetricsBinder(apiMetrics).bindTo(registry);
+
+    final Endpoint endpoint = apiMetrics.getEndpoint(ADAPTER, ADD_ORDER, "POST");
+    endpoint.recordError(ErrorCategory.TIMEOUT);
+    endpoint.recordError(ErrorCategory.TIMEOUT);
+    endpoint.recordError(ErrorCategory.SERVER_ERROR);
+
+    assertEquals(
+        2,
+        registry
+            .get(ExchangeApiMetricsBinder.ERRORS_METRIC)
+            .tags("endpoint", ADD_ORDER, "method", "POST", "category", "timeout")
+            .functionCounter()
+            .count(),
+        0);
+    assertEquals(
+        0,
+        registry
+            .get(ExchangeApiMetricsBinder.ERRORS_METRIC)
+            .tags("endpoint", ADD_ORDER, "category", "fatal")
+            .functionCounter()
+            .count(),
+        0);
+    assertEquals(
+        0,
+        registry
+            .get(ExchangeApiMetricsBinder.LATENCY_METRIC)
+            .tags("endpoint", ADD_ORDER, "phase", "time_to_first_byte")
+            .functionTimer()
+            .count(),
+        0);
+  }
+}
@@ -51,6 +51,29 @@ public class EngineConfig {
   @Min(value = 1, message = "Trace Cycle Interval must be more than 1 second")
   private int tradeCycleInterval;
 
+  @Min(value = 0, message = "Trade Cycle Interval Millis must be 0 or more milliseconds")
+  private int tradeCycleIntervalMillis;
+
+  private boolean concurrentStrategyExecution;
+
+  @Min(value = 0, message = "Strategy Thread Pool Size must be 0 or more")
+  private int strategyThreadPoolSize;
+
+  @Min(value = 0, message = "Strategy Execution Timeout must be 0 or more seconds")
+  private int strategyExecutionTimeout;
+
+  private boolean streamingMarketData;
+
+  private boolean eventDrivenExecution;
+
+  @Min(value = 0, message = "Event Coalescing Millis must be 0 or more milliseconds")
+  private int eventCoalescingMillis;
+
+  @Min(value = 0, message = "Market Data Freshness Millis must be 0 or more milliseconds")
+  private int marketDataFreshnessMillis;
+
+  private String marketDataRecordingDirectory;
+
   // Required by ConfigurableComponentFactory
   public EngineConfig() {
   }
@@ -110,6 +133,78 @@ public class EngineConfig {
     this.tradeCycleInterval = tradeCycleInterval;
   }
 
+  public int getTradeCycleIntervalMillis() {
+    return tradeCycleIntervalMillis;
+  }
+
+  public void setTradeCycleIntervalMillis(int tradeCycleIntervalMillis) {
+    this.tradeCycleIntervalMillis = tradeCycleIntervalMillis;
+  }
+
+  public boolean isConcurrentStrategyExecution() {
+    return concurrentStrategyExecution;
+  }
+
+  public void setConcurrentStrategyExecution(boolean concurrentStrategyExecution) {
+    this.concurrentStrategyExecution = concurrentStrategyExecution;
+  }
+
+  public int getStrategyThreadPoolSize() {
+    return strategyThreadPoolSize;
+  }
+
+  public void setStrategyThreadPoolSize(int strategyThreadPoolSize) {
+    this.strategyThreadPoolSize = strategyThreadPoolSize;
+  }
+
+  public int getStrategyExecutionTimeout() {
+    return strategyExecutionTimeout;
+  }
+
+  public void setStrategyExecutionTimeout(int strategyExecutionTimeout) {
+    this.strategyExecutionTimeout = strategyExecutionTimeout;
+  }
+
+  public boolean isStreamingMarketData() {
+    return streamingMarketData;
+  }
+
+  public void setStreamingMarketData(boolean streamingMarketData) {
+    this.streamingMarketData = streamingMarketData;
+  }
+
+  public boolean isEventDrivenExecution() {
+    return eventDrivenExecution;
+  }
+
+  public void setEventDrivenExecution(boolean eventDrivenExecution) {
+    this.eventDrivenExecution = eventDrivenExecution;
+  }
+
+  public int getEventCoalescingMillis() {
+    return eventCoalescingMillis;
+  }
+
+  public void setEventCoalescingMillis(int eventCoalescingMillis) {
+    this.eventCoalescingMillis = eventCoalescingMillis;
+  }
+
+  public int getMarketDataFreshnessMillis() {
+    return marketDataFreshnessMillis;
+  }
+
+  public void setMarketDataFreshnessMillis(int marketDataFreshnessMillis) {
+    this.marketDataFreshnessMillis = marketDataFreshnessMillis;
+  }
+
+  public String getMarketDataRecordingDirectory() {
+    return marketDataRecordingDirectory;
+  }
+
+  public void setMarketDataRecordingDirectory(String marketDataRecordingDirectory) {
+    this.marketDataRecordingDirectory = marketDataRecordingDirectory;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -135,6 +230,15 @@ public class EngineConfig {
         .add("emergencyStopCurrency", emergencyStopCurrency)
         .add("emergencyStopBalance", emergencyStopBalance)
         .add("tradeCycleInterval", tradeCycleInterval)
+        .add("tradeCycleIntervalMillis", tradeCycleIntervalMillis)
+        .add("concurrentStrategyExecution", concurrentStrategyExecution)
+        .add("strategyThreadPoolSize", strategyThreadPoolSize)
+        .add("strategyExecutionTimeout", strategyExecutionTimeout)
+        .add("streamingMarketData", streamingMarketData)
+        .add("eventDrivenExecution", eventDrivenExecution)
+        .add("eventCoalescingMillis", eventCoalescingMillis)
+        .add("marketDataFreshnessMillis", marketDataFreshnessMillis)
+        .add("marketDataRecordingDirectory", marketDataRecordingDirectory)
         .toString();
   }
 }
@@ -38,6 +38,12 @@ public class NetworkConfig {
   @Min(message = "Connection must be more than 1 second", value = 1)
   private Integer connectionTimeout;
 
+  @Min(message = "Connect Timeout must be more than 1 second", value = 1)
+  private Integer connectTimeout;
+
+  @Min(message = "Read Timeout must be more than 1 second", value = 1)
+  private Integer readTimeout;
+
   private List<Integer> nonFatalErrorCodes;
   private List<String> nonFatalErrorMessages;
 
@@ -54,6 +60,22 @@ public class NetworkConfig {
     this.connectionTimeout = connectionTimeout;
   }
 
+  public Integer getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public void setConnectTimeout(Integer connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  public Integer getReadTimeout() {
+    return readTimeout;
+  }
+
+  public void setReadTimeout(Integer readTimeout) {
+    this.readTimeout = readTimeout;
+  }
+
   public List<Integer> getNonFatalErrorCodes() {
     return nonFatalErrorCodes;
   }
@@ -74,6 +96,8 @@ public class NetworkConfig {
   public String toString() {
     return MoreObjects.toStringHelper(this)
         .add("connectionTimeout", connectionTimeout)
+        .add("connectTimeout", connectTimeout)
+        .add("readTimeout", readTimeout)
         .add("nonFatalErrorCodes", nonFatalErrorCodes)
         .add("nonFatalErrorMessages", nonFatalErrorMessages)
         .toString();
@@ -44,6 +44,7 @@ public class MarketConfig {
   private String counterCurrency;
   private boolean enabled;
   private String tradingStrategyId;
+  private String exchange;
 
   // Required by ConfigurableComponentFactory
   public MarketConfig() {
@@ -57,6 +58,7 @@ public class MarketConfig {
     this.counterCurrency = other.counterCurrency;
     this.enabled = other.enabled;
     this.tradingStrategyId = other.tradingStrategyId;
+    this.exchange = other.exchange;
   }
 
   /** Creates a new MarketConfig. */
@@ -124,6 +126,24 @@ public class MarketConfig {
     this.tradingStrategyId = tradingStrategyId;
   }
 
+  /**
+   * Returns the name of the exchange the market is traded on.
+   *
+   * @return the exchange name, or null for the main exchange in the exchange config.
+   */
+  public String getExchange() {
+    return exchange;
+  }
+
+  public void setExchange(String exchange) {
+    this.exchange = exchange;
+  }
+
+  /*
+   * The exchange is compared as configured: a null exchange is not resolved to the main exchange
+   * here because the market config does not know its name. The repository and Trading Engine
+   * resolve it before matching markets.
+   */
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -133,12 +153,12 @@ public class MarketConfig {
       return false;
     }
     MarketConfig that = (MarketConfig) o;
-    return Objects.equal(id, that.id);
+    return Objects.equal(id, that.id) && Objects.equal(exchange, that.exchange);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(id);
+    return Objects.hashCode(id, exchange);
   }
 
   @Override
@@ -150,6 +170,7 @@ public class MarketConfig {
         .add("counterCurrency", counterCurrency)
         .add("enabled", enabled)
         .add("tradingStrategyId", tradingStrategyId)
+        .add("exchange", exchange)
         .toString();
   }
 }
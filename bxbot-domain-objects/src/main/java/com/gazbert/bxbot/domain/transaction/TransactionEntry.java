@@ -128,6 +128,14 @@ public class TransactionEntry {
             strategy, exchangeApi);
   }
 
+  /** a transaction made at the given time, e.g. on the virtual clock of a backtest. */
+  public TransactionEntry(String orderId, String type, Status status,
+                          String market, BigDecimal amount, BigDecimal price,
+                          String strategy, String exchangeApi, Date timestamp) {
+    this(orderId, type, status, market, amount, price, strategy, exchangeApi);
+    this.timestamp = new Date(timestamp.getTime());
+  }
+
   public Long getId() {
     return id;
   }
@@ -24,8 +24,10 @@
 package com.gazbert.bxbot.domain.engine;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.math.BigDecimal;
 import org.junit.Test;
@@ -42,6 +44,12 @@ public class TestEngineConfig {
   private static final String EMERGENCY_STOP_CURRENCY = "BTC";
   private static final BigDecimal EMERGENCY_STOP_BALANCE = new BigDecimal("1.5");
   private static final int TRADE_CYCLE_INTERVAL = 30;
+  private static final int TRADE_CYCLE_INTERVAL_MILLIS = 250;
+  private static final int STRATEGY_THREAD_POOL_SIZE = 4;
+  private static final int STRATEGY_EXECUTION_TIMEOUT = 20;
+  private static final int EVENT_COALESCING_MILLIS = 50;
+  private static final int MARKET_DATA_FRESHNESS_MILLIS = 500;
+  private static final String MARKET_DATA_RECORDING_DIRECTORY = "./market-data";
 
   @Test
   public void testInitialisationWorksAsExpected() {
@@ -68,6 +76,15 @@ public class TestEngineConfig {
     assertNull(engineConfig.getEmergencyStopCurrency());
     assertNull(engineConfig.getEmergencyStopBalance());
     assertEquals(0, engineConfig.getTradeCycleInterval());
+    assertEquals(0, engineConfig.getTradeCycleIntervalMillis());
+    assertFalse(engineConfig.isConcurrentStrategyExecution());
+    assertEquals(0, engineConfig.getStrategyThreadPoolSize());
+    assertEquals(0, engineConfig.getStrategyExecutionTimeout());
+    assertFalse(engineConfig.isStreamingMarketData());
+    assertFalse(engineConfig.isEventDrivenExecution());
+    assertEquals(0, engineConfig.getEventCoalescingMillis());
+    assertEquals(0, engineConfig.getMarketDataFreshnessMillis());
+    assertNull(engineConfig.getMarketDataRecordingDirectory());
 
     engineConfig.setBotId(BOT_ID);
     assertEquals(BOT_ID, engineConfig.getBotId());
@@ -83,6 +100,34 @@ public class TestEngineConfig {
 
     engineConfig.setTradeCycleInterval(TRADE_CYCLE_INTERVAL);
     assertEquals(TRADE_CYCLE_INTERVAL, engineConfig.getTradeCycleInterval());
+
+    engineConfig.setTradeCycleIntervalMillis(TRADE_CYCLE_INTERVAL_MILLIS);
+    assertEquals(TRADE_CYCLE_INTERVAL_MILLIS, engineConfig.getTradeCycleIntervalMillis());
+
+    engineConfig.setConcurrentStrategyExecution(true);
+    assertTrue(engineConfig.isConcurrentStrategyExecution());
+
+    engineConfig.setStrategyThreadPoolSize(STRATEGY_THREAD_POOL_SIZE);
+    assertEquals(STRATEGY_THREAD_POOL_SIZE, engineConfig.getStrategyThreadPoolSize());
+
+    engineConfig.setStrategyExecutionTimeout(STRATEGY_EXECUTION_TIMEOUT);
+    assertEquals(STRATEGY_EXECUTION_TIMEOUT, engineConfig.getStrategyExecutionTimeout());
+
+    engineConfig.setStreamingMarketData(true);
+    assertTrue(engineConfig.isStreamingMarketData());
+
+    engineConfig.setEventDrivenExecution(true);
+    assertTrue(engineConfig.isEventDrivenExecution());
+
+    engineConfig.setEventCoalescingMillis(EVENT_COALESCING_MILLIS);
+    assertEquals(EVENT_COALESCING_MILLIS, engineConfig.getEventCoalescingMillis());
+
+    engineConfig.setMarketDataFreshnessMillis(MARKET_DATA_FRESHNESS_MILLIS);
+    assertEquals(MARKET_DATA_FRESHNESS_MILLIS, engineConfig.getMarketDataFreshnessMillis());
+
+    engineConfig.setMarketDataRecordingDirectory(MARKET_DATA_RECORDING_DIRECTORY);
+    assertEquals(
+        MARKET_DATA_RECORDING_DIRECTORY, engineConfig.getMarketDataRecordingDirectory());
   }
 
   @Test
@@ -159,7 +204,11 @@ public class TestEngineConfig {
 
     assertEquals(
         "EngineConfig{botId=avro-707_1, botName=Avro 707, emergencyStopCurrency=BTC, "
-            + "emergencyStopBalance=1.5, tradeCycleInterval=30}",
+            + "emergencyStopBalance=1.5, tradeCycleInterval=30, tradeCycleIntervalMillis=0, "
+            + "concurrentStrategyExecution=false, strategyThreadPoolSize=0, "
+            + "strategyExecutionTimeout=0, streamingMarketData=false, "
+            + "eventDrivenExecution=false, eventCoalescingMillis=0, "
+            + "marketDataFreshnessMillis=0, marketDataRecordingDirectory=null}",
         engineConfig.toString());
   }
 }
@@ -85,8 +85,9 @@ public class TestExchangeConfig {
     assertEquals(
         "ExchangeConfig{name=Bitstamp, "
             + "adapter=com.gazbert.bxbot.exchanges.TestExchangeAdapter, "
-            + "networkConfig=NetworkConfig{connectionTimeout=null, nonFatalErrorCodes=[], "
-            + "nonFatalErrorMessages=[]}, otherConfig={}}",
+            + "networkConfig=NetworkConfig{connectionTimeout=null, connectTimeout=null, "
+            + "readTimeout=null, nonFatalErrorCodes=[], nonFatalErrorMessages=[]}, "
+            + "otherConfig={}}",
         exchangeConfig.toString());
   }
 }
@@ -39,6 +39,8 @@ import org.junit.Test;
 public class TestNetworkConfig {
 
   private static final Integer CONNECTION_TIMEOUT = 30;
+  private static final Integer CONNECT_TIMEOUT = 5;
+  private static final Integer READ_TIMEOUT = 10;
   private static final List<Integer> NON_FATAL_ERROR_CODES = Arrays.asList(502, 503, 504);
   private static final List<String> NON_FATAL_ERROR_MESSAGES =
       Arrays.asList(
@@ -50,6 +52,8 @@ public class TestNetworkConfig {
   public void testInitialisationWorksAsExpected() {
     final NetworkConfig networkConfig = new NetworkConfig();
     assertNull(networkConfig.getConnectionTimeout());
+    assertNull(networkConfig.getConnectTimeout());
+    assertNull(networkConfig.getReadTimeout());
     assertTrue(networkConfig.getNonFatalErrorCodes().isEmpty());
     assertTrue(networkConfig.getNonFatalErrorMessages().isEmpty());
   }
@@ -61,6 +65,12 @@ public class TestNetworkConfig {
     networkConfig.setConnectionTimeout(CONNECTION_TIMEOUT);
     assertEquals(CONNECTION_TIMEOUT, networkConfig.getConnectionTimeout());
 
+    networkConfig.setConnectTimeout(CONNECT_TIMEOUT);
+    assertEquals(CONNECT_TIMEOUT, networkConfig.getConnectTimeout());
+
+    networkConfig.setReadTimeout(READ_TIMEOUT);
+    assertEquals(READ_TIMEOUT, networkConfig.getReadTimeout());
+
     networkConfig.setNonFatalErrorCodes(NON_FATAL_ERROR_CODES);
     assertEquals(NON_FATAL_ERROR_CODES, networkConfig.getNonFatalErrorCodes());
 
@@ -76,7 +86,8 @@ public class TestNetworkConfig {
     networkConfig.setNonFatalErrorMessages(NON_FATAL_ERROR_MESSAGES);
 
     assertEquals(
-        "NetworkConfig{connectionTimeout=30, nonFatalErrorCodes=[502, 503, 504],"
+        "NetworkConfig{connectionTimeout=30, connectTimeout=null, readTimeout=null,"
+            + " nonFatalErrorCodes=[502, 503, 504],"
             + " nonFatalErrorMessages=[Connection refused, Connection reset, "
             + "Remote host closed connection during handshake]}",
         networkConfig.toString());
@@ -43,6 +43,7 @@ public class TestMarketConfig {
   private static final String COUNTER_CURRENCY = "USD";
   private static final boolean IS_ENABLED = true;
   private static final String TRADING_STRATEGY = "macd_trend_follower";
+  private static final String EXCHANGE = "Gemini";
 
   @Test
   public void testInitialisationWorksAsExpected() {
@@ -66,6 +67,7 @@ public class TestMarketConfig {
     assertNull(marketConfig.getCounterCurrency());
     assertFalse(marketConfig.isEnabled());
     assertNull(marketConfig.getTradingStrategyId());
+    assertNull(marketConfig.getExchange());
 
     marketConfig.setId(ID);
     assertEquals(ID, marketConfig.getId());
@@ -84,15 +86,20 @@ public class TestMarketConfig {
 
     marketConfig.setTradingStrategyId(TRADING_STRATEGY);
     assertEquals(TRADING_STRATEGY, marketConfig.getTradingStrategyId());
+
+    marketConfig.setExchange(EXCHANGE);
+    assertEquals(EXCHANGE, marketConfig.getExchange());
   }
 
   @Test
   public void testCloningWorksAsExpected() {
     final MarketConfig marketConfig =
         new MarketConfig(ID, NAME, BASE_CURRENCY, COUNTER_CURRENCY, IS_ENABLED, TRADING_STRATEGY);
+    marketConfig.setExchange(EXCHANGE);
     final MarketConfig clonedMarketConfig = new MarketConfig(marketConfig);
 
     assertEquals(clonedMarketConfig, marketConfig);
+    assertEquals(EXCHANGE, clonedMarketConfig.getExchange());
   }
 
   @Test
@@ -106,9 +113,14 @@ public class TestMarketConfig {
         new MarketConfig(
             ID, "different-name", BASE_CURRENCY, COUNTER_CURRENCY, IS_ENABLED, TRADING_STRATEGY);
 
+    final MarketConfig market4 =
+        new MarketConfig(ID, NAME, BASE_CURRENCY, COUNTER_CURRENCY, IS_ENABLED, TRADING_STRATEGY);
+    market4.setExchange(EXCHANGE);
+
     assertEquals(market1, market1);
     assertNotEquals(market1, market2);
     assertEquals(market1, market3);
+    assertNotEquals(market1, market4);
   }
 
   @Test
@@ -134,7 +146,8 @@ public class TestMarketConfig {
 
     assertEquals(
         "MarketConfig{id=gemini_usd/btc, name=BTC/USD, baseCurrency=BTC,"
-            + " counterCurrency=USD, enabled=true, tradingStrategyId=macd_trend_follower}",
+            + " counterCurrency=USD, enabled=true, tradingStrategyId=macd_trend_follower,"
+            + " exchange=null}",
         market1.toString());
   }
 }
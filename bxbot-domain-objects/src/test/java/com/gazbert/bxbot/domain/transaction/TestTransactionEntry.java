@@ -6,6 +6,7 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.math.BigDecimal;
 import java.util.Date;
 import org.junit.Test;
 
@@ -30,6 +31,17 @@ public class TestTransactionEntry {
     assertEquals("bitstamp Api", entry.getExchangeApi());
   }
 
+  @Test
+  public void testInitialisationWithTimestampWorksAsExpected() {
+    final Date timestamp = new Date(1607872141600L);
+    final TransactionEntry entry = new TransactionEntry("42", "BUY", SENT,
+            "Jack Bauer", new BigDecimal("0.2"), new BigDecimal("345"), "some strategy",
+            "bitstamp Api", timestamp);
+
+    assertEquals(69.0, entry.getValue(), 0.001);
+    assertEquals(timestamp, entry.getTimestamp());
+  }
+
   @Test
   public void testToStringWorksAsExpected() {
     final TransactionEntry entry = new TransactionEntry("42", "BUY", SENT,
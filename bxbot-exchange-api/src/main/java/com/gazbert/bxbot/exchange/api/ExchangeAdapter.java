@@ -29,8 +29,10 @@ import com.gazbert.bxbot.trading.api.TradingApi;
  * All Exchange Adapters must implement this interface. It's main purpose is for the Trading Engine
  * to pass the adapter its configuration on startup.
  *
- * <p>The Trading Engine will send only 1 thread through the Exchange Adapter code at a time - you
- * do not have to code for concurrency.
+ * <p>By default, the Trading Engine will send only 1 thread through the Exchange Adapter code at a
+ * time - you do not have to code for concurrency. If concurrentStrategyExecution is enabled in the
+ * engine.yaml config, the Trading Strategies for different markets call the adapter from different
+ * threads at the same time; adapters used in that mode must be thread-safe.
  *
  * @author gazbert
  * @since 1.0
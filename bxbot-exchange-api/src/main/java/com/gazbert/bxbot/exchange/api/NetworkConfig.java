@@ -53,4 +53,18 @@ public interface NetworkConfig {
    * @return the connection timeout value if present, null otherwise.
    */
   Integer getConnectionTimeout();
+
+  /**
+   * Fetches (optional) socket connect timeout value. If not set, the connection timeout is used.
+   *
+   * @return the connect timeout value if present, null otherwise.
+   */
+  Integer getConnectTimeout();
+
+  /**
+   * Fetches (optional) socket read timeout value. If not set, the connection timeout is used.
+   *
+   * @return the read timeout value if present, null otherwise.
+   */
+  Integer getReadTimeout();
 }
@@ -0,0 +1,47 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchange.api;
+
+import com.gazbert.bxbot.trading.api.StreamingTradingApi;
+
+/**
+ * An Exchange Adapter that can also stream market data from the exchange.
+ *
+ * <p>If streamingMarketData is enabled in the engine.yaml config, the Trading Engine subscribes to
+ * the order book of every enabled market when it starts up. The Trading Strategies are then given
+ * the latest streamed order book instead of one fetched from the exchange every trade cycle.
+ *
+ * <p>Updates arrive on the adapter's own threads, so implementations must be thread-safe.
+ *
+ * @author gazbert
+ * @since 1.4
+ */
+public interface StreamingExchangeAdapter extends ExchangeAdapter, StreamingTradingApi {
+
+  /**
+   * Closes the market data stream. All subscriptions are dropped and the stream does not
+   * reconnect. Called by the Trading Engine when it shuts down.
+   */
+  void closeMarketDataStream();
+}
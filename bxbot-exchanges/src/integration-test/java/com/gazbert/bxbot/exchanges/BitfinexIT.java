@@ -80,14 +80,15 @@ public class BitfinexIT {
 
     networkConfig = createMock(NetworkConfig.class);
     expect(networkConfig.getConnectionTimeout()).andReturn(30);
+    expect(networkConfig.getConnectTimeout()).andReturn(null);
+    expect(networkConfig.getReadTimeout()).andReturn(null);
     expect(networkConfig.getNonFatalErrorCodes()).andReturn(nonFatalNetworkErrorCodes);
     expect(networkConfig.getNonFatalErrorMessages()).andReturn(nonFatalNetworkErrorMessages);
 
     exchangeConfig = createMock(ExchangeConfig.class);
     expect(exchangeConfig.getAuthenticationConfig()).andReturn(authenticationConfig);
     expect(exchangeConfig.getNetworkConfig()).andReturn(networkConfig);
-
-    // no other config for this adapter
+    expect(exchangeConfig.getOtherConfig()).andReturn(null);
   }
 
   @Test
@@ -80,12 +80,17 @@ public class GeminiIT {
 
     networkConfig = createMock(NetworkConfig.class);
     expect(networkConfig.getConnectionTimeout()).andReturn(30);
+    expect(networkConfig.getConnectTimeout()).andReturn(null);
+    expect(networkConfig.getReadTimeout()).andReturn(null);
     expect(networkConfig.getNonFatalErrorCodes()).andReturn(nonFatalNetworkErrorCodes);
     expect(networkConfig.getNonFatalErrorMessages()).andReturn(nonFatalNetworkErrorMessages);
 
     otherConfig = createMock(OtherConfig.class);
     expect(otherConfig.getItem("buy-fee")).andReturn("0.25");
     expect(otherConfig.getItem("sell-fee")).andReturn("0.25");
+    expect(otherConfig.getItem("rate-limits")).andReturn(null);
+    expect(otherConfig.getItem("rate-limit-weights")).andReturn(null);
+    expect(otherConfig.getItem("nonce-file")).andReturn(null);
 
     exchangeConfig = createMock(ExchangeConfig.class);
     expect(exchangeConfig.getAuthenticationConfig()).andReturn(authenticationConfig);
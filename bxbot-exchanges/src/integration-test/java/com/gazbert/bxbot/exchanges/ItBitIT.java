@@ -83,6 +83,8 @@ public class ItBitIT {
 
     networkConfig = createMock(NetworkConfig.class);
     expect(networkConfig.getConnectionTimeout()).andReturn(30);
+    expect(networkConfig.getConnectTimeout()).andReturn(null);
+    expect(networkConfig.getReadTimeout()).andReturn(null);
     expect(networkConfig.getNonFatalErrorCodes()).andReturn(nonFatalNetworkErrorCodes);
     expect(networkConfig.getNonFatalErrorMessages()).andReturn(nonFatalNetworkErrorMessages);
 
@@ -90,6 +92,9 @@ public class ItBitIT {
     expect(otherConfig.getItem("buy-fee")).andReturn("0.25");
     expect(otherConfig.getItem("sell-fee")).andReturn("0.25");
     expect(otherConfig.getItem("keep-alive-during-maintenance")).andReturn("false");
+    expect(otherConfig.getItem("rate-limits")).andReturn(null);
+    expect(otherConfig.getItem("rate-limit-weights")).andReturn(null);
+    expect(otherConfig.getItem("nonce-file")).andReturn(null);
 
     exchangeConfig = createMock(ExchangeConfig.class);
     expect(exchangeConfig.getAuthenticationConfig()).andReturn(authenticationConfig);
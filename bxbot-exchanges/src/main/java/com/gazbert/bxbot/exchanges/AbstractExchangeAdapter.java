@@ -27,30 +27,43 @@ import com.gazbert.bxbot.exchange.api.AuthenticationConfig;
 import com.gazbert.bxbot.exchange.api.ExchangeConfig;
 import com.gazbert.bxbot.exchange.api.NetworkConfig;
 import com.gazbert.bxbot.exchange.api.OtherConfig;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.ErrorCategory;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.Phase;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.OpenOrder;
 import com.gazbert.bxbot.trading.api.TradingApiException;
 import com.google.common.base.MoreObjects;
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -64,6 +77,9 @@ import org.apache.logging.log4j.Logger;
  */
 abstract class AbstractExchangeAdapter {
 
+  /** The most circuit breakers an adapter keeps. */
+  static final int MAX_CIRCUIT_BREAKERS = 512;
+
   private static final Logger LOG = LogManager.getLogger();
   private static final String EXCHANGE_CONFIG_FILE = "config/exchange.yaml";
 
@@ -73,6 +89,10 @@ abstract class AbstractExchangeAdapter {
       "Failed to connect to Exchange due to socket timeout.";
   private static final String IO_5XX_TIMEOUT_ERROR_MSG =
       "Failed to connect to Exchange due to 5xx timeout.";
+  private static final String CIRCUIT_OPEN_ERROR_MSG =
+      "Not sending request - circuit breaker is open after repeated network errors for ";
+  private static final String RATE_LIMITED_ERROR_MSG =
+      "Exchange rejected the request because requests are being rate limited.";
   private static final String AUTHENTICATION_CONFIG_MISSING =
       "authenticationConfig is missing in exchange.yaml file.";
   private static final String NETWORK_CONFIG_MISSING =
@@ -83,13 +103,41 @@ abstract class AbstractExchangeAdapter {
       " cannot be null or zero length! " + "HINT: is the value set in the ";
 
   private static final String CONNECTION_TIMEOUT_PROPERTY_NAME = "connection-timeout";
+  private static final String CONNECT_TIMEOUT_PROPERTY_NAME = "connect-timeout";
+  private static final String READ_TIMEOUT_PROPERTY_NAME = "read-timeout";
+  private static final String USER_AGENT_HEADER = "User-Agent";
+  private static final String USER_AGENT =
+      "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) "
+          + "Chrome/74.0.3729.169 Safari/537.36";
   private static final String NON_FATAL_ERROR_CODES_PROPERTY_NAME = "non-fatal-error-codes";
   private static final String NON_FATAL_ERROR_MESSAGES_PROPERTY_NAME = "non-fatal-error-messages";
+  private static final String ORDER_BOOK_DEPTH_PROPERTY_NAME = "order-book-depth";
+  private static final String RATE_LIMITS_PROPERTY_NAME = "rate-limits";
+  private static final String RATE_LIMIT_WEIGHTS_PROPERTY_NAME = "rate-limit-weights";
+  private static final String NONCE_FILE_PROPERTY_NAME = "nonce-file";
+  private static final String CIRCUIT_BREAKER_PROPERTY_NAME = "circuit-breaker";
+  private static final String MARKET_METADATA_REFRESH_PROPERTY_NAME =
+      "market-metadata-refresh-minutes";
+  private static final String MARKET_METADATA_TTL_PROPERTY_NAME = "market-metadata-ttl-minutes";
+
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final String RATE_LIMIT_MESSAGE = "rate limit";
+  private static final int MAX_RATE_LIMIT_MESSAGE_LENGTH = 512;
+  private static final int MAX_ENDPOINT_SEGMENT_LENGTH = 8;
+  private static final String NONCE_ERROR_MESSAGE = "nonce";
+  private static final int MAX_NONCE_ATTEMPTS = 3;
 
   private final Set<Integer> nonFatalNetworkErrorCodes;
   private final Set<String> nonFatalNetworkErrorMessages;
 
-  private int connectionTimeout;
+  private int connectTimeout;
+  private int readTimeout;
+  private volatile ExchangeHttpTransport httpTransport;
+  private volatile ExchangeRateLimiter rateLimiter;
+  private volatile ExchangeApiMetrics apiMetrics = ExchangeApiMetrics.getInstance();
+  private volatile ExchangeCircuitBreaker.Config circuitBreakerConfig;
+  private final Map<String, ExchangeCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+  private final Map<String, Double> requestWeights = new LinkedHashMap<>();
   private DecimalFormatSymbols decimalFormatSymbols;
 
   /**
@@ -97,7 +145,8 @@ abstract class AbstractExchangeAdapter {
    * symbol.
    */
   AbstractExchangeAdapter() {
-    connectionTimeout = 30;
+    connectTimeout = 30;
+    readTimeout = 30;
     nonFatalNetworkErrorCodes = new HashSet<>();
     nonFatalNetworkErrorMessages = new HashSet<>();
 
@@ -107,14 +156,48 @@ abstract class AbstractExchangeAdapter {
     decimalFormatSymbols.setDecimalSeparator('.');
   }
 
+  /**
+   * Makes a request to the Exchange and returns a successful response without reading its body.
+   * The body is read from the network as the caller parses it with {@link
+   * ExchangeHttpResponse#getPayloadReader()}, so large responses, e.g. deep order books, are not
+   * held in memory as a String first.
+   *
+   * <p>The caller must close the response when it is done with it.
+   *
+   * @param url the URL to invoke.
+   * @param postData optional post data to send. This can be null.
+   * @param httpMethod the HTTP method to use, e.g. GET, POST, DELETE
+   * @param requestHeaders optional request headers to send to the Exchange.
+   * @return the response from the Exchange.
+   * @throws ExchangeNetworkException if a network error occurred trying to connect to the exchange.
+   *     This exception allows for recovery from temporary network issues.
+   * @throws TradingApiException if the API call failed for any reason other than a network error.
+   *     This means something really bad as happened.
+   */
+  ExchangeHttpResponse streamNetworkRequest(
+      URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+      throws TradingApiException, ExchangeNetworkException {
+    return sendNetworkRequest(url, httpMethod, postData, requestHeaders, true);
+  }
+
   /**
    * Makes a request to the Exchange.
    *
+   * <p>Requests are sent using the adapter's {@link ExchangeHttpTransport}, which keeps the
+   * connections to the exchange open and reuses them. If rate limits are configured, the request
+   * waits until it is within them. The request is timed, and any error counted, in the {@link
+   * ExchangeApiMetrics}.
+   *
+   * <p>If circuit breakers are configured, each endpoint has an {@link ExchangeCircuitBreaker}, and
+   * so does each market of an endpoint that takes the market in its query string. After repeated
+   * network errors calling an endpoint, requests to it fail fast with an ExchangeNetworkException,
+   * without being sent, until the breaker lets a probe request through. Requests to other
+   * endpoints, e.g. the order books of other markets, are not held up.
+   *
    * @param url the URL to invoke.
    * @param postData optional post data to send. This can be null.
    * @param httpMethod the HTTP method to use, e.g. GET, POST, DELETE
-   * @param requestHeaders optional request headers to set on the {@link URLConnection} used to
-   *     invoke the Exchange.
+   * @param requestHeaders optional request headers to send to the Exchange.
    * @return the response from the Exchange.
    * @throws ExchangeNetworkException if a network error occurred trying to connect to the exchange.
    *     This exception allows for recovery from temporary network issues.
@@ -124,58 +207,114 @@ abstract class AbstractExchangeAdapter {
   ExchangeHttpResponse sendNetworkRequest(
       URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
       throws TradingApiException, ExchangeNetworkException {
+    return sendNetworkRequest(url, httpMethod, postData, requestHeaders, false);
+  }
 
-    HttpURLConnection exchangeConnection = null;
-    final StringBuilder exchangeResponse = new StringBuilder();
+  private ExchangeHttpResponse sendNetworkRequest(
+      URL url,
+      String httpMethod,
+      String postData,
+      Map<String, String> requestHeaders,
+      boolean streamed)
+      throws TradingApiException, ExchangeNetworkException {
 
+    final ExchangeApiMetrics.Endpoint endpoint =
+        apiMetrics.getEndpoint(getClass().getSimpleName(), getMetricsEndpointName(url), httpMethod);
+    final ExchangeCircuitBreaker circuitBreaker = getCircuitBreaker(url, httpMethod);
+    if (circuitBreaker != null) {
+      final long openNanos = circuitBreaker.tryAcquire();
+      if (openNanos > 0) {
+        endpoint.recordError(ErrorCategory.CIRCUIT_OPEN);
+        final String errorMsg =
+            CIRCUIT_OPEN_ERROR_MSG
+                + httpMethod
+                + " "
+                + endpoint.getName()
+                + ". Next attempt in "
+                + TimeUnit.NANOSECONDS.toMillis(openNanos)
+                + "ms.";
+        LOG.warn(errorMsg);
+        throw new ExchangeNetworkException(errorMsg);
+      }
+    }
+
+    final long startTime = System.nanoTime();
+    ErrorCategory error = ErrorCategory.FATAL;
+    boolean responded = false;
+    boolean networkError = false;
+    boolean bodyPending = false;
     try {
       LOG.debug(() -> "Using following URL for API call: " + url);
 
-      exchangeConnection = (HttpURLConnection) url.openConnection();
-      exchangeConnection.setUseCaches(false);
-      exchangeConnection.setDoOutput(true);
-      exchangeConnection.setRequestMethod(httpMethod); // GET|POST|DELETE
-
-      setRequestHeaders(exchangeConnection, requestHeaders);
-
-      // Add a timeout so we don't get blocked indefinitely; timeout on URLConnection is in millis.
-      final int timeoutInMillis = connectionTimeout * 1000;
-      exchangeConnection.setConnectTimeout(timeoutInMillis);
-      exchangeConnection.setReadTimeout(timeoutInMillis);
-
       if (httpMethod.equalsIgnoreCase("POST") && postData != null) {
         LOG.debug(() -> "Doing POST with request body: " + postData);
-        try (final OutputStreamWriter outputPostStream =
-            new OutputStreamWriter(exchangeConnection.getOutputStream(), StandardCharsets.UTF_8)) {
-          outputPostStream.write(postData);
-        }
       }
 
-      // Grab the response - we just block here as per Connection API
-      try (final BufferedReader responseInputStream =
-          new BufferedReader(
-              new InputStreamReader(exchangeConnection.getInputStream(), StandardCharsets.UTF_8))) {
+      final ExchangeRateLimiter limiter = rateLimiter;
+      final ExchangeRateLimiter.EndpointType endpointType =
+          limiter == null ? null : getEndpointType(url, httpMethod);
+      if (limiter != null) {
+        limiter.acquire(endpointType, getRequestWeight(url));
+        endpoint.record(Phase.RATE_LIMIT_WAIT, System.nanoTime() - startTime);
+      }
+
+      final ExchangeHttpTransport transport = getHttpTransport();
+      final Map<String, String> headers = createRequestHeaders(requestHeaders);
+      final ExchangeHttpResponse exchangeResponse =
+          streamed
+              ? transport.sendStreamed(url, httpMethod, postData, headers)
+              : transport.send(url, httpMethod, postData, headers);
+      responded = true;
+      LOG.debug(() -> "HTTP request metrics: " + transport.getRequestMetrics());
+      recordResponseTimes(endpoint, exchangeResponse);
 
-        // Read the JSON response lines into our response buffer
-        String responseLine;
-        while ((responseLine = responseInputStream.readLine()) != null) {
-          exchangeResponse.append(responseLine);
+      if (isRateLimited(exchangeResponse, streamed)) {
+        if (limiter != null) {
+          limiter.onRateLimited(endpointType);
         }
+        if (exchangeResponse.getStatusCode() == HTTP_TOO_MANY_REQUESTS) {
+          LOG.error(() -> RATE_LIMITED_ERROR_MSG + " Response: " + exchangeResponse);
+          error = ErrorCategory.RATE_LIMITED;
+          networkError = true;
+          throw new ExchangeNetworkException(RATE_LIMITED_ERROR_MSG);
+        }
+      } else if (limiter != null) {
+        limiter.onSuccess(endpointType);
+      }
 
-        return new ExchangeHttpResponse(
-            exchangeConnection.getResponseCode(),
-            exchangeConnection.getResponseMessage(),
-            exchangeResponse.toString());
+      if (exchangeResponse.getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+        final boolean serverError =
+            exchangeResponse.getStatusCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        if (nonFatalNetworkErrorCodes.contains(exchangeResponse.getStatusCode())) {
+          final String errorMsg = IO_5XX_TIMEOUT_ERROR_MSG;
+          LOG.error(() -> errorMsg + " Response: " + exchangeResponse);
+          error = serverError ? ErrorCategory.SERVER_ERROR : ErrorCategory.NON_FATAL;
+          networkError = true;
+          throw new ExchangeNetworkException(errorMsg);
+        }
+        // Game over!
+        error = serverError ? ErrorCategory.SERVER_ERROR : ErrorCategory.FATAL;
+        final String errorMsg = UNEXPECTED_IO_ERROR_MSG + " ErrorStream Response: "
+            + exchangeResponse.getPayload();
+        LOG.error(errorMsg);
+        throw new TradingApiException(errorMsg);
       }
+      error = null;
+      if (streamed && circuitBreaker != null) {
+        bodyPending = exchangeResponse.reportToCircuitBreakerOnClose(circuitBreaker);
+      }
+      return exchangeResponse;
 
     } catch (MalformedURLException e) {
       final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
       LOG.error(errorMsg, e);
       throw new TradingApiException(errorMsg, e);
 
-    } catch (SocketTimeoutException e) {
+    } catch (HttpTimeoutException | SocketTimeoutException e) {
       final String errorMsg = IO_SOCKET_TIMEOUT_ERROR_MSG;
       LOG.error(errorMsg, e);
+      error = ErrorCategory.TIMEOUT;
+      networkError = true;
       throw new ExchangeNetworkException(errorMsg, e);
 
     } catch (FileNotFoundException | UnknownHostException e) {
@@ -183,39 +322,400 @@ abstract class AbstractExchangeAdapter {
       // EC2 started throwing UnknownHostException for BTC-e, GDAX, as of 14 July 2016 :-/
       final String errorMsg = "Failed to connect to Exchange. It's dead Jim!";
       LOG.error(errorMsg, e);
+      error = ErrorCategory.NON_FATAL;
+      networkError = true;
       throw new ExchangeNetworkException(errorMsg, e);
 
     } catch (IOException e) {
-      try {
-        if (errorMessageIsRecoverableNetworkError(e)) {
-          final String errorMsg =
-              "Failed to connect to Exchange. SSL Connection was refused or reset by the server.";
-          LOG.error(errorMsg, e);
-          throw new ExchangeNetworkException(errorMsg, e);
+      if (errorMessageIsRecoverableNetworkError(e)) {
+        final String errorMsg =
+            "Failed to connect to Exchange. SSL Connection was refused or reset by the server.";
+        LOG.error(errorMsg, e);
+        error = ErrorCategory.NON_FATAL;
+        networkError = true;
+        throw new ExchangeNetworkException(errorMsg, e);
+      }
+      // Game over!
+      final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
+      LOG.error(errorMsg, e);
+      throw new TradingApiException(errorMsg, e);
 
-        } else if (errorCodeIsRecoverableNetworkError(exchangeConnection)) {
-          final String errorMsg = IO_5XX_TIMEOUT_ERROR_MSG;
-          LOG.error(errorMsg, e);
-          throw new ExchangeNetworkException(errorMsg, e);
+    } catch (InterruptedException e) {
+      final String errorMsg = "Interrupted while waiting for response from Exchange.";
+      LOG.warn(errorMsg);
+      Thread.currentThread().interrupt();
+      error = ErrorCategory.NON_FATAL;
+      throw new ExchangeNetworkException(errorMsg, e);
 
-        } else {
-          // Game over!
-          String errorMsg = extractIoErrorMessage(exchangeConnection);
-          LOG.error(errorMsg, e);
-          throw new TradingApiException(errorMsg, e);
+    } finally {
+      endpoint.record(Phase.TOTAL, System.nanoTime() - startTime);
+      if (error != null) {
+        endpoint.recordError(error);
+      }
+      if (circuitBreaker != null) {
+        // a streamed body is reported to the breaker when it has been read
+        if (networkError) {
+          circuitBreaker.onFailure();
+        } else if (!responded) {
+          circuitBreaker.onAbandoned();
+        } else if (!bodyPending) {
+          circuitBreaker.onSuccess();
         }
+      }
+    }
+  }
+
+  /*
+   * Breakers are kept per adapter, up to a limit. Once there are that many, requests to new
+   * endpoints are sent without a breaker, rather than sharing one that other endpoints can trip.
+   */
+  private ExchangeCircuitBreaker getCircuitBreaker(URL url, String httpMethod) {
+    final ExchangeCircuitBreaker.Config config = circuitBreakerConfig;
+    if (config == null) {
+      return null;
+    }
+    final String name = getCircuitBreakerName(url, httpMethod);
+    final ExchangeCircuitBreaker circuitBreaker = circuitBreakers.get(name);
+    if (circuitBreaker != null || circuitBreakers.size() >= MAX_CIRCUIT_BREAKERS) {
+      return circuitBreaker;
+    }
+    return circuitBreakers.computeIfAbsent(name, key -> new ExchangeCircuitBreaker(key, config));
+  }
 
-      } catch (IOException e1) {
-        final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
-        LOG.error(errorMsg, e1);
-        throw new TradingApiException(errorMsg, e1);
+  /**
+   * Returns the name of the circuit breaker for requests to a URL: the HTTP method, the endpoint
+   * name the metrics use, and the query string, with any value that looks like an id replaced by
+   * {id}. So markets that are passed in the query string, e.g. Kraken's {@code
+   * Depth?pair=XXBTZUSD}, have their own breakers, like markets that are passed in the path.
+   * Adapters that pass the market some other way should override this.
+   *
+   * @param url the URL of the request.
+   * @param httpMethod the HTTP method of the request.
+   * @return the circuit breaker name.
+   */
+  String getCircuitBreakerName(URL url, String httpMethod) {
+    final String name = httpMethod + " " + getMetricsEndpointName(url);
+    final String query = url.getQuery();
+    if (query == null || query.isEmpty()) {
+      return name;
+    }
+    final StringBuilder nameWithQuery = new StringBuilder(name.length() + query.length() + 1);
+    nameWithQuery.append(name).append('?');
+    int paramStart = 0;
+    while (paramStart <= query.length()) {
+      int paramEnd = query.indexOf('&', paramStart);
+      if (paramEnd < 0) {
+        paramEnd = query.length();
+      }
+      final int valueStart = query.indexOf('=', paramStart) + 1;
+      if (paramStart > 0) {
+        nameWithQuery.append('&');
+      }
+      if (valueStart > paramStart && valueStart <= paramEnd
+          && looksLikeId(query, valueStart, paramEnd)) {
+        nameWithQuery.append(query, paramStart, valueStart).append("{id}");
+      } else {
+        nameWithQuery.append(query, paramStart, paramEnd);
       }
+      paramStart = paramEnd + 1;
+    }
+    return nameWithQuery.toString();
+  }
 
-    } finally {
-      if (exchangeConnection != null) {
-        exchangeConnection.disconnect();
+  /*
+   * A streamed body is read, and parsed, after the response is returned, so it is timed when the
+   * caller closes the response.
+   */
+  private static void recordResponseTimes(
+      ExchangeApiMetrics.Endpoint endpoint, ExchangeHttpResponse response) {
+    if (response.getTimeToFirstByteNanos() >= 0) {
+      endpoint.record(Phase.TIME_TO_FIRST_BYTE, response.getTimeToFirstByteNanos());
+    }
+    if (response.getBodyReadNanos() >= 0) {
+      endpoint.record(Phase.BODY_READ, response.getBodyReadNanos());
+    } else {
+      response.recordBodyReadOnClose(endpoint.getLatency(Phase.BODY_READ));
+    }
+  }
+
+  /**
+   * Returns the name API calls to a URL are recorded under in the {@link ExchangeApiMetrics}: the
+   * URL path, with any path segment that looks like an id, e.g. an order id, replaced by {id}. A
+   * segment looks like an id if it is longer than 8 characters and contains a digit. Adapters
+   * that put other ids in their URL paths should override this.
+   *
+   * @param url the URL of the request.
+   * @return the endpoint name.
+   */
+  String getMetricsEndpointName(URL url) {
+    final String path = url.getPath();
+    if (path.isEmpty()) {
+      return "/";
+    }
+    final StringBuilder name = new StringBuilder(path.length());
+    int segmentStart = 0;
+    while (segmentStart <= path.length()) {
+      int segmentEnd = path.indexOf('/', segmentStart);
+      if (segmentEnd < 0) {
+        segmentEnd = path.length();
+      }
+      if (segmentStart > 0) {
+        name.append('/');
+      }
+      if (looksLikeId(path, segmentStart, segmentEnd)) {
+        name.append("{id}");
+      } else {
+        name.append(path, segmentStart, segmentEnd);
+      }
+      segmentStart = segmentEnd + 1;
+    }
+    return name.toString();
+  }
+
+  /**
+   * Sets the metrics the adapter records its API calls to. By default, this is {@link
+   * ExchangeApiMetrics#getInstance()}.
+   *
+   * @param apiMetrics the metrics.
+   */
+  void setApiMetrics(ExchangeApiMetrics apiMetrics) {
+    this.apiMetrics = apiMetrics;
+  }
+
+  private static boolean looksLikeId(String path, int start, int end) {
+    if (end - start <= MAX_ENDPOINT_SEGMENT_LENGTH) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (Character.isDigit(path.charAt(i))) {
+        return true;
       }
     }
+    return false;
+  }
+
+  /**
+   * Returns the HTTP transport, creating it the first time it is needed.
+   *
+   * @return the HTTP transport.
+   */
+  ExchangeHttpTransport getHttpTransport() {
+    ExchangeHttpTransport transport = httpTransport;
+    if (transport == null) {
+      synchronized (this) {
+        transport = httpTransport;
+        if (transport == null) {
+          transport = new JdkHttpClientTransport(connectTimeout, readTimeout);
+          httpTransport = transport;
+        }
+      }
+    }
+    return transport;
+  }
+
+  /**
+   * Returns the type of endpoint a request is for, so it can be rate limited with the other
+   * requests of its type. By default, GET requests are public and all other requests are private.
+   * Adapters that know which of their endpoints place and cancel orders should override this, so
+   * order requests get priority.
+   *
+   * @param url the URL of the request.
+   * @param httpMethod the HTTP method of the request.
+   * @return the endpoint type.
+   */
+  ExchangeRateLimiter.EndpointType getEndpointType(URL url, String httpMethod) {
+    return "GET".equalsIgnoreCase(httpMethod)
+        ? ExchangeRateLimiter.EndpointType.PUBLIC
+        : ExchangeRateLimiter.EndpointType.PRIVATE;
+  }
+
+  /**
+   * Returns the rate limit weight of a request: the weight of the first configured endpoint in
+   * the request's URL path, or 1.
+   *
+   * @param url the URL of the request.
+   * @return the weight.
+   */
+  double getRequestWeight(URL url) {
+    if (!requestWeights.isEmpty()) {
+      final String path = url.getPath();
+      for (final Map.Entry<String, Double> requestWeight : requestWeights.entrySet()) {
+        if (path.contains(requestWeight.getKey())) {
+          return requestWeight.getValue();
+        }
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * Sets the rate limits from the optional rate-limits and rate-limit-weights items in the other
+   * config. If rate-limits is not set, requests are not rate limited.
+   *
+   * <p>The rate-limits item is a comma separated list of {@code <bucket>=<rate>[:<burst>]} items,
+   * where the bucket is exchange, public, private, or order, the rate is in requests per second,
+   * and the burst is how many requests can be sent at once: see {@link ExchangeRateLimiter}. The
+   * rate-limit-weights item is a comma separated list of {@code <endpoint>=<weight>} items, for
+   * endpoints that count as more, or less, than 1 request.
+   *
+   * @param otherConfig the other config for the adapter. This can be null.
+   * @throws IllegalArgumentException if the rate limits are not valid.
+   */
+  void setRateLimitConfig(OtherConfig otherConfig) {
+    final String limits =
+        otherConfig == null ? null : otherConfig.getItem(RATE_LIMITS_PROPERTY_NAME);
+    final String weights =
+        otherConfig == null ? null : otherConfig.getItem(RATE_LIMIT_WEIGHTS_PROPERTY_NAME);
+
+    requestWeights.clear();
+    if (weights != null && !weights.trim().isEmpty()) {
+      for (final String weight : weights.split(",")) {
+        final String[] endpointAndWeight = weight.split("=");
+        try {
+          if (endpointAndWeight.length != 2 || endpointAndWeight[0].trim().isEmpty()) {
+            throw new NumberFormatException("Missing endpoint or weight");
+          }
+          final double requestWeight = Double.parseDouble(endpointAndWeight[1].trim());
+          if (!(requestWeight >= 0) || Double.isInfinite(requestWeight)) {
+            throw new NumberFormatException("Negative weight");
+          }
+          requestWeights.put(endpointAndWeight[0].trim(), requestWeight);
+        } catch (NumberFormatException e) {
+          final String errorMsg =
+              RATE_LIMIT_WEIGHTS_PROPERTY_NAME + " must be <endpoint>=<weight>: " + weight;
+          LOG.error(errorMsg);
+          throw new IllegalArgumentException(errorMsg, e);
+        }
+      }
+      LOG.info(() -> RATE_LIMIT_WEIGHTS_PROPERTY_NAME + ": " + requestWeights);
+    }
+
+    if (limits == null || limits.trim().isEmpty()) {
+      rateLimiter = null;
+      return;
+    }
+    try {
+      rateLimiter = new ExchangeRateLimiter(limits);
+      LOG.info(() -> RATE_LIMITS_PROPERTY_NAME + ": " + rateLimiter);
+    } catch (IllegalArgumentException e) {
+      final String errorMsg = RATE_LIMITS_PROPERTY_NAME + " is not valid: " + e.getMessage();
+      LOG.error(errorMsg);
+      throw new IllegalArgumentException(errorMsg, e);
+    }
+  }
+
+  /**
+   * Sets the circuit breaker config from the optional circuit-breaker item in the other config. If
+   * it is not set, there are no breakers.
+   *
+   * <p>The circuit-breaker item is on, to use the {@link ExchangeCircuitBreaker.Config#DEFAULT}
+   * settings, off, or a comma separated list of {@code <setting>=<value>} items, where the setting
+   * is failure-threshold, open-millis, or max-open-millis: see {@link ExchangeCircuitBreaker}.
+   *
+   * @param otherConfig the other config for the adapter. This can be null.
+   * @throws IllegalArgumentException if the circuit breaker config is not valid.
+   */
+  void setCircuitBreakerConfig(OtherConfig otherConfig) {
+    final String config =
+        otherConfig == null ? null : otherConfig.getItem(CIRCUIT_BREAKER_PROPERTY_NAME);
+    circuitBreakers.clear();
+    if (config == null || config.trim().isEmpty()) {
+      circuitBreakerConfig = null;
+      return;
+    }
+    try {
+      circuitBreakerConfig = ExchangeCircuitBreaker.Config.parse(config);
+      LOG.info(() -> CIRCUIT_BREAKER_PROPERTY_NAME + ": " + circuitBreakerConfig);
+    } catch (IllegalArgumentException e) {
+      final String errorMsg = CIRCUIT_BREAKER_PROPERTY_NAME + " is not valid: " + e.getMessage();
+      LOG.error(errorMsg);
+      throw new IllegalArgumentException(errorMsg, e);
+    }
+  }
+
+  /**
+   * Returns the circuit breakers that have been created, by endpoint.
+   *
+   * @return the circuit breakers.
+   */
+  Map<String, ExchangeCircuitBreaker> getCircuitBreakers() {
+    return Collections.unmodifiableMap(circuitBreakers);
+  }
+
+  /**
+   * Creates the service that hands out the nonces for authenticated requests. If the optional
+   * nonce-file item is set in the other config, the nonce high-water mark is kept in that file, so
+   * nonces never go backwards when the bot is restarted.
+   *
+   * @param otherConfig the other config for the adapter. This can be null.
+   * @return the nonce service.
+   * @throws IllegalStateException if the nonce file cannot be read or written.
+   */
+  NonceService createNonceService(OtherConfig otherConfig) {
+    final String nonceFile =
+        otherConfig == null ? null : otherConfig.getItem(NONCE_FILE_PROPERTY_NAME);
+    if (nonceFile == null || nonceFile.trim().isEmpty()) {
+      return new NonceService();
+    }
+    try {
+      final NonceService nonceService = new NonceService(Paths.get(nonceFile.trim()));
+      LOG.info(() -> NONCE_FILE_PROPERTY_NAME + ": " + nonceFile + " " + nonceService);
+      return nonceService;
+    } catch (IOException | InvalidPathException e) {
+      final String errorMsg = "Failed to open " + NONCE_FILE_PROPERTY_NAME + ": " + nonceFile;
+      LOG.error(errorMsg, e);
+      throw new IllegalStateException(errorMsg, e);
+    }
+  }
+
+  /**
+   * Returns true if an authenticated request should be signed again with a new nonce and resent,
+   * because the exchange rejected its nonce. Authenticated requests are sent in parallel, so a
+   * request can reach the exchange after one with a bigger nonce; exchanges that require nonces to
+   * arrive in order reject it, without acting on it.
+   *
+   * @param e the error the request failed with.
+   * @param attempt how many times the request has been sent.
+   * @return true if the request should be resent.
+   */
+  static boolean shouldResendWithNewNonce(TradingApiException e, int attempt) {
+    if (attempt >= MAX_NONCE_ATTEMPTS) {
+      return false;
+    }
+    final String message = e.getMessage();
+    final boolean nonceRejected =
+        message != null && message.toLowerCase(Locale.ROOT).contains(NONCE_ERROR_MESSAGE);
+    if (nonceRejected) {
+      LOG.warn(() -> "Exchange rejected the request nonce. Resending. Attempt: " + attempt);
+    }
+    return nonceRejected;
+  }
+
+  /**
+   * Returns the rate limiter.
+   *
+   * @return the rate limiter, or null if requests are not rate limited.
+   */
+  ExchangeRateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Returns the connect timeout in seconds from the network config.
+   *
+   * @return the connect timeout in seconds.
+   */
+  int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  /**
+   * Sets the HTTP transport. By default, the adapter uses a pooled JDK HttpClient transport.
+   *
+   * @param httpTransport the HTTP transport.
+   */
+  void setHttpTransport(ExchangeHttpTransport httpTransport) {
+    this.httpTransport = httpTransport;
   }
 
   /**
@@ -233,7 +733,7 @@ abstract class AbstractExchangeAdapter {
       throw new IllegalArgumentException(errorMsg);
     }
 
-    connectionTimeout = networkConfig.getConnectionTimeout();
+    final int connectionTimeout = networkConfig.getConnectionTimeout();
     if (connectionTimeout == 0) {
       final String errorMsg =
           CONNECTION_TIMEOUT_PROPERTY_NAME + " cannot be 0 value." + exchangeConfig;
@@ -242,6 +742,13 @@ abstract class AbstractExchangeAdapter {
     }
     LOG.info(() -> CONNECTION_TIMEOUT_PROPERTY_NAME + ": " + connectionTimeout);
 
+    // The connect and read timeouts are optional and default to the connection timeout.
+    connectTimeout = getTimeout(networkConfig.getConnectTimeout(), connectionTimeout);
+    LOG.info(() -> CONNECT_TIMEOUT_PROPERTY_NAME + ": " + connectTimeout);
+    readTimeout = getTimeout(networkConfig.getReadTimeout(), connectionTimeout);
+    LOG.info(() -> READ_TIMEOUT_PROPERTY_NAME + ": " + readTimeout);
+    httpTransport = null; // re-created with the new timeouts on next request
+
     final List<Integer> nonFatalErrorCodesFromConfig = networkConfig.getNonFatalErrorCodes();
     if (nonFatalErrorCodesFromConfig != null) {
       nonFatalNetworkErrorCodes.addAll(nonFatalErrorCodesFromConfig);
@@ -290,6 +797,96 @@ abstract class AbstractExchangeAdapter {
     return otherConfig;
   }
 
+  /**
+   * Returns the number of price levels to read from each side of the order book. This is the
+   * optional order-book-depth item in the other config. If it is not set, or is 0, the whole
+   * order book is read.
+   *
+   * @param otherConfig the other config for the adapter. This can be null.
+   * @return the order book depth.
+   * @throws IllegalArgumentException if the order book depth is not a positive number.
+   */
+  int getOrderBookDepth(OtherConfig otherConfig) {
+    final String depthInConfig =
+        otherConfig == null ? null : otherConfig.getItem(ORDER_BOOK_DEPTH_PROPERTY_NAME);
+    if (depthInConfig == null || depthInConfig.isEmpty()) {
+      return OrderBookJsonReader.FULL_DEPTH;
+    }
+    try {
+      final int depth = Integer.parseInt(depthInConfig.trim());
+      if (depth < 0) {
+        throw new NumberFormatException("Negative depth");
+      }
+      LOG.info(() -> ORDER_BOOK_DEPTH_PROPERTY_NAME + ": " + depth);
+      return depth == 0 ? OrderBookJsonReader.FULL_DEPTH : depth;
+    } catch (NumberFormatException e) {
+      final String errorMsg =
+          ORDER_BOOK_DEPTH_PROPERTY_NAME + " must be a positive number: " + depthInConfig;
+      LOG.error(errorMsg);
+      throw new IllegalArgumentException(errorMsg, e);
+    }
+  }
+
+  /**
+   * Creates the cache for the market metadata, i.e. the fees and trading rules, the adapter fetches
+   * from the exchange. The optional market-metadata-refresh-minutes and
+   * market-metadata-ttl-minutes items in the other config set how old the metadata gets before it
+   * is fetched again in the background, and before it is evicted: see {@link
+   * MarketMetadataCache}. If they are not set, they are 1 hour and 1 day.
+   *
+   * @param otherConfig the other config for the adapter. This can be null.
+   * @param loader fetches the metadata for a market from the exchange.
+   * @return the cache.
+   * @throws IllegalArgumentException if the refresh interval or time to live is not valid.
+   */
+  MarketMetadataCache createMarketMetadataCache(
+      OtherConfig otherConfig, MarketMetadataCache.Loader loader) {
+    final long refreshMinutes =
+        getMinutes(
+            otherConfig,
+            MARKET_METADATA_REFRESH_PROPERTY_NAME,
+            MarketMetadataCache.DEFAULT_REFRESH_MINUTES);
+    final long ttlMinutes =
+        getMinutes(
+            otherConfig,
+            MARKET_METADATA_TTL_PROPERTY_NAME,
+            Math.max(MarketMetadataCache.DEFAULT_TTL_MINUTES, refreshMinutes));
+    try {
+      final MarketMetadataCache cache =
+          new MarketMetadataCache(loader, refreshMinutes, ttlMinutes);
+      LOG.info(() -> "Market metadata cache: " + cache);
+      return cache;
+    } catch (IllegalArgumentException e) {
+      final String errorMsg =
+          MARKET_METADATA_TTL_PROPERTY_NAME
+              + " must be at least "
+              + MARKET_METADATA_REFRESH_PROPERTY_NAME
+              + ": "
+              + ttlMinutes;
+      LOG.error(errorMsg);
+      throw new IllegalArgumentException(errorMsg, e);
+    }
+  }
+
+  private static long getMinutes(OtherConfig otherConfig, String itemName, long defaultMinutes) {
+    final String minutesInConfig = otherConfig == null ? null : otherConfig.getItem(itemName);
+    if (minutesInConfig == null || minutesInConfig.trim().isEmpty()) {
+      return defaultMinutes;
+    }
+    try {
+      final long minutes = Long.parseLong(minutesInConfig.trim());
+      if (minutes <= 0) {
+        throw new NumberFormatException("Not positive");
+      }
+      LOG.info(() -> itemName + ": " + minutes);
+      return minutes;
+    } catch (NumberFormatException e) {
+      final String errorMsg = itemName + " must be a positive number: " + minutesInConfig;
+      LOG.error(errorMsg);
+      throw new IllegalArgumentException(errorMsg, e);
+    }
+  }
+
   /**
    * Fetches an authentication item value from the adapter config.
    *
@@ -340,6 +937,38 @@ abstract class AbstractExchangeAdapter {
     return sortedQueryString.toString();
   }
 
+  /**
+   * Creates an empty list of open orders for each market. Used by adapters that fetch the open
+   * orders for all markets in 1 call.
+   *
+   * @param marketIds the ids of the markets.
+   * @return the (empty) open orders keyed by market id.
+   */
+  Map<String, List<OpenOrder>> createOpenOrdersByMarketId(Collection<String> marketIds) {
+    final Map<String, List<OpenOrder>> openOrdersByMarketId = new LinkedHashMap<>();
+    for (final String marketId : marketIds) {
+      openOrdersByMarketId.put(marketId, new ArrayList<>());
+    }
+    return openOrdersByMarketId;
+  }
+
+  /**
+   * Finds the market id the bot uses for a market id returned by the exchange. The match ignores
+   * case because exchanges don't always return the id in the case it was sent.
+   *
+   * @param marketIds the ids of the markets the bot is interested in.
+   * @param exchangeMarketId the market id returned by the exchange.
+   * @return the matching market id, or null if the bot is not interested in the market.
+   */
+  String findMarketId(Collection<String> marketIds, String exchangeMarketId) {
+    for (final String marketId : marketIds) {
+      if (marketId.equalsIgnoreCase(exchangeMarketId)) {
+        return marketId;
+      }
+    }
+    return null;
+  }
+
   /**
    * Returns the decimal format symbols for using with BigDecimals with the exchanges. Specifically,
    * the decimal point symbol is set to a '.'
@@ -350,12 +979,28 @@ abstract class AbstractExchangeAdapter {
     return decimalFormatSymbols;
   }
 
-  /** Wrapper for holding Exchange HTTP response. */
-  static class ExchangeHttpResponse {
+  /**
+   * Wrapper for holding Exchange HTTP response.
+   *
+   * <p>A streamed response holds the body as it arrives from the network. It is read into the
+   * payload the first time {@link #getPayload()} is called, or parsed as it is read using {@link
+   * #getPayloadReader()}. Streamed responses must be closed.
+   */
+  static class ExchangeHttpResponse implements Closeable {
+
+    private static final Logger LOG = LogManager.getLogger();
 
     private final int statusCode;
     private final String reasonPhrase;
-    private final String payload;
+    private String payload;
+    private InputStream payloadStream;
+    private boolean payloadStreamed;
+    private long timeToFirstByteNanos = -1;
+    private long bodyReadNanos = -1;
+    private long headersReceivedAt;
+    private LatencyHistogram bodyReadLatency;
+    private ExchangeCircuitBreaker circuitBreaker;
+    private boolean bodyReadFailed;
 
     ExchangeHttpResponse(int statusCode, String reasonPhrase, String payload) {
       this.statusCode = statusCode;
@@ -363,6 +1008,12 @@ abstract class AbstractExchangeAdapter {
       this.payload = payload;
     }
 
+    ExchangeHttpResponse(int statusCode, String reasonPhrase, InputStream payloadStream) {
+      this.statusCode = statusCode;
+      this.reasonPhrase = reasonPhrase;
+      this.payloadStream = payloadStream;
+    }
+
     String getReasonPhrase() {
       return reasonPhrase;
     }
@@ -371,16 +1022,167 @@ abstract class AbstractExchangeAdapter {
       return statusCode;
     }
 
+    /**
+     * Sets how long the response took. Called by the transport.
+     *
+     * @param sentAt the {@link System#nanoTime()} the request was sent.
+     * @param headersReceivedAt the {@link System#nanoTime()} the response headers arrived.
+     * @param bodyReadAt the {@link System#nanoTime()} the body had been read, or 0 if the body is
+     *     streamed.
+     */
+    void setTimes(long sentAt, long headersReceivedAt, long bodyReadAt) {
+      this.timeToFirstByteNanos = headersReceivedAt - sentAt;
+      this.headersReceivedAt = headersReceivedAt;
+      this.bodyReadNanos = bodyReadAt == 0 ? -1 : bodyReadAt - headersReceivedAt;
+    }
+
+    long getTimeToFirstByteNanos() {
+      return timeToFirstByteNanos;
+    }
+
+    long getBodyReadNanos() {
+      return bodyReadNanos;
+    }
+
+    /*
+     * A streamed body's read time is recorded when the response is closed.
+     */
+    void recordBodyReadOnClose(LatencyHistogram latency) {
+      if (headersReceivedAt != 0) {
+        bodyReadLatency = latency;
+      }
+    }
+
+    /*
+     * A streamed body can fail as it is read, after the response has been returned, so the breaker
+     * is told how the request went when the response is closed.
+     */
+    boolean reportToCircuitBreakerOnClose(ExchangeCircuitBreaker breaker) {
+      if (payloadStream == null || payloadStreamed) {
+        return false;
+      }
+      circuitBreaker = breaker;
+      payloadStream = new FailureRecordingInputStream(payloadStream);
+      return true;
+    }
+
+    /**
+     * Returns the response body. A streamed body is read in full the first time this is called.
+     *
+     * @return the response body, or null if it has already been read by the payload reader.
+     * @throws UncheckedIOException if the streamed body could not be read.
+     */
     String getPayload() {
+      if (payloadStream != null && !payloadStreamed) {
+        final InputStream in = takePayloadStream();
+        try {
+          payload = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } finally {
+          closePayloadStream(in);
+        }
+      }
       return payload;
     }
 
+    /**
+     * Returns a reader for the response body. A streamed body is read from the network as the
+     * reader is read, and can only be read once.
+     *
+     * @return the reader.
+     */
+    Reader getPayloadReader() {
+      if (payloadStream != null && !payloadStreamed) {
+        payloadStreamed = true;
+        return new InputStreamReader(payloadStream, StandardCharsets.UTF_8);
+      }
+      return new StringReader(payload == null ? "" : payload);
+    }
+
+    /**
+     * Releases a streamed body. Any of the body that has not been read is drained, so the
+     * connection can be reused for the next request.
+     */
+    @Override
+    public void close() {
+      if (bodyReadLatency != null) {
+        bodyReadLatency.record(System.nanoTime() - headersReceivedAt);
+        bodyReadLatency = null;
+      }
+      if (payloadStream != null) {
+        final InputStream in = takePayloadStream();
+        try {
+          in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+          LOG.debug(() -> "Failed to drain response body", e);
+        } finally {
+          closePayloadStream(in);
+        }
+      }
+      if (circuitBreaker != null) {
+        if (bodyReadFailed) {
+          circuitBreaker.onFailure();
+        } else {
+          circuitBreaker.onSuccess();
+        }
+        circuitBreaker = null;
+      }
+    }
+
+    /** Records whether reading the streamed body failed. */
+    /*
+     * The streamed body is taken before it is read or drained, so it is only read once. It is
+     * closed explicitly: try-with-resources would add a null check on a stream that is known to
+     * be there.
+     */
+    private InputStream takePayloadStream() {
+      final InputStream in = payloadStream;
+      payloadStream = null;
+      return in;
+    }
+
+    private static void closePayloadStream(InputStream in) {
+      try {
+        in.close();
+      } catch (IOException e) {
+        LOG.debug(() -> "Failed to close response body", e);
+      }
+    }
+
+    private final class FailureRecordingInputStream extends FilterInputStream {
+
+      FailureRecordingInputStream(InputStream in) {
+        super(in);
+      }
+
+      @Override
+      public int read() throws IOException {
+        try {
+          return super.read();
+        } catch (IOException e) {
+          bodyReadFailed = true;
+          throw e;
+        }
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        try {
+          return super.read(b, off, len);
+        } catch (IOException e) {
+          bodyReadFailed = true;
+          throw e;
+        }
+      }
+    }
+
     @Override
     public String toString() {
       return MoreObjects.toStringHelper(this)
           .add("statusCode", statusCode)
           .add("reasonPhrase", reasonPhrase)
-          .add("payload", payload)
+          .add("payload", payloadStream == null ? payload : "(streamed)")
           .toString();
     }
   }
@@ -389,52 +1191,62 @@ abstract class AbstractExchangeAdapter {
   //  Util methods
   // --------------------------------------------------------------------------
 
-  private void setRequestHeaders(
-      HttpURLConnection exchangeConnection, Map<String, String> requestHeaders) {
+  private Map<String, String> createRequestHeaders(Map<String, String> requestHeaders) {
+    final Map<String, String> headers = new LinkedHashMap<>();
+
     // Er, perhaps, we need to be a bit more stealthy here...
     // This was needed for some exchanges back in the day!
-    exchangeConnection.setRequestProperty(
-        "User-Agent",
-        "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) "
-            + "Chrome/74.0.3729.169 Safari/537.36");
+    headers.put(USER_AGENT_HEADER, USER_AGENT);
 
     if (requestHeaders != null) {
       for (final Map.Entry<String, String> requestHeader : requestHeaders.entrySet()) {
-        exchangeConnection.setRequestProperty(requestHeader.getKey(), requestHeader.getValue());
+        headers.put(requestHeader.getKey(), requestHeader.getValue());
         LOG.debug(() -> "Setting following request header: " + requestHeader);
       }
     }
+    return headers;
   }
 
+  /*
+   * The HTTP client often wraps the socket error, so we check the causes too.
+   */
   private boolean errorMessageIsRecoverableNetworkError(Exception e) {
-    return e.getMessage() != null && nonFatalNetworkErrorMessages.contains(e.getMessage());
-  }
-
-  private boolean errorCodeIsRecoverableNetworkError(HttpURLConnection exchangeConnection)
-      throws IOException {
-    return (exchangeConnection != null
-        && nonFatalNetworkErrorCodes.contains(exchangeConnection.getResponseCode()));
+    Throwable error = e;
+    while (error != null) {
+      if (error.getMessage() != null
+          && nonFatalNetworkErrorMessages.contains(error.getMessage())) {
+        return true;
+      }
+      error = error.getCause();
+    }
+    return false;
   }
 
-  private String extractIoErrorMessage(HttpURLConnection exchangeConnection) throws IOException {
-    String errorMsg = UNEXPECTED_IO_ERROR_MSG;
-    // Check for any clue in the response...
-    if (exchangeConnection != null) {
-      final InputStream rawErrorStream = exchangeConnection.getErrorStream();
-      if (rawErrorStream != null) {
-        try (final BufferedReader errorInputStream =
-            new BufferedReader(new InputStreamReader(rawErrorStream, StandardCharsets.UTF_8))) {
-
-          final StringBuilder errorResponse = new StringBuilder();
-          String errorLine;
-          while ((errorLine = errorInputStream.readLine()) != null) {
-            errorResponse.append(errorLine);
-          }
-          errorMsg += " ErrorStream Response: " + errorResponse;
-        }
+  /*
+   * A 429, or a short error message that mentions the rate limit, e.g. Kraken's
+   * "EAPI:Rate limit exceeded". Streamed bodies are not checked: they have not been read yet.
+   */
+  private static boolean isRateLimited(ExchangeHttpResponse response, boolean streamed) {
+    if (response.getStatusCode() == HTTP_TOO_MANY_REQUESTS) {
+      return true;
+    }
+    if (streamed && response.getStatusCode() < HttpURLConnection.HTTP_BAD_REQUEST) {
+      return false;
+    }
+    final String payload = response.getPayload();
+    if (payload == null || payload.length() > MAX_RATE_LIMIT_MESSAGE_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i <= payload.length() - RATE_LIMIT_MESSAGE.length(); i++) {
+      if (payload.regionMatches(true, i, RATE_LIMIT_MESSAGE, 0, RATE_LIMIT_MESSAGE.length())) {
+        return true;
       }
     }
-    return errorMsg;
+    return false;
+  }
+
+  private static int getTimeout(Integer timeout, int defaultTimeout) {
+    return timeout == null || timeout == 0 ? defaultTimeout : timeout;
   }
 
   private static String assertItemExists(String itemName, String itemValue) {
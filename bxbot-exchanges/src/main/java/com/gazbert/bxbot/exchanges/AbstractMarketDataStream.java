@@ -0,0 +1,718 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.MarketDataListener;
+import com.gazbert.bxbot.trading.api.MarketDataSubscription;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.MarketTrade;
+import com.gazbert.bxbot.trading.api.StreamingTradingApi;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Base class for streaming market data from an exchange over a WebSocket.
+ *
+ * <p>The stream keeps 1 WebSocket connection open to the exchange and shares it across all the
+ * markets and listeners. It connects when the first subscription is made. Subclasses turn
+ * subscriptions into the exchange's subscribe messages, and the exchange's messages into updates
+ * to the {@link LocalOrderBook}, tickers and trades.
+ *
+ * <p>Each subscription maps to 1 or more exchange topics, e.g. a ticker might need both the order
+ * book and trades topics. Topics are reference counted per market, so the exchange is only sent a
+ * subscribe message for the first subscription that needs a topic, and an unsubscribe message when
+ * the last one is cancelled.
+ *
+ * <p>If the connection is lost, the local order books and tickers are thrown away and the stream
+ * reconnects after a delay and subscribes to all the topics again. A connection that has not
+ * received a message for the stale timeout is treated as lost: it may be half-open, or the
+ * exchange may have stopped sending. While the stream is stale, the latest order book and ticker
+ * are not handed out, so callers fall back to the REST API.
+ *
+ * <p>The streams of all the exchanges the bot trades on share 1 HTTP client per connect timeout
+ * and 1 reconnect thread, so adding an exchange does not add a thread pool. The reconnect thread
+ * also runs the stale checks.
+ *
+ * @author gazbert
+ */
+abstract class AbstractMarketDataStream implements StreamingTradingApi {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final String CONNECTION_FAILED_ERROR_MSG =
+      "Failed to connect to Exchange market data stream.";
+  private static final String SEND_FAILED_ERROR_MSG =
+      "Failed to send message to Exchange market data stream.";
+
+  /** How long the stream can go without a message before it is stale, by default. */
+  static final long DEFAULT_STALE_TIMEOUT_MILLIS = 60000;
+
+  private static final ScheduledExecutorService RECONNECT_SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("bxbot-market-data-reconnect")
+              .setDaemon(true)
+              .build());
+
+  /** The market data a listener can subscribe to. */
+  enum MarketDataChannel {
+    ORDER_BOOK,
+    TICKER,
+    TRADES
+  }
+
+  private final URI uri;
+  private final int connectTimeout;
+  private final long reconnectDelayMillis;
+  private final HttpClient httpClient;
+  private final Map<String, MarketStream> marketStreams = new ConcurrentHashMap<>();
+  private final Map<String, String> marketIdsByExchangeMarketId = new ConcurrentHashMap<>();
+  private final Object subscriptionLock = new Object();
+  private final Object connectionLock = new Object();
+  private WebSocket webSocket;
+  private ScheduledFuture<?> staleCheck;
+  private volatile long staleTimeoutMillis = DEFAULT_STALE_TIMEOUT_MILLIS;
+  private volatile long lastMessageNanos;
+  private volatile boolean closed;
+
+  /**
+   * Creates the market data stream.
+   *
+   * @param uri the URI of the exchange's WebSocket API.
+   * @param connectTimeout the connect timeout in seconds. Also used as the send timeout.
+   * @param reconnectDelayMillis how long to wait before reconnecting after the connection is lost.
+   */
+  AbstractMarketDataStream(URI uri, int connectTimeout, long reconnectDelayMillis) {
+    this.uri = uri;
+    this.connectTimeout = connectTimeout;
+    this.reconnectDelayMillis = reconnectDelayMillis;
+    httpClient = JdkHttpClientTransport.getSharedHttpClient(connectTimeout);
+  }
+
+  // --------------------------------------------------------------------------
+  // Exchange specific protocol.
+  // --------------------------------------------------------------------------
+
+  /**
+   * Returns the exchange topics a channel needs.
+   *
+   * @param channel the channel.
+   * @return the exchange topics.
+   */
+  abstract List<String> getTopics(MarketDataChannel channel);
+
+  /**
+   * Creates the message to send to the exchange to subscribe to, or unsubscribe from, a topic.
+   *
+   * @param exchangeMarketId the exchange's id for the market.
+   * @param topic the exchange topic.
+   * @param subscribe true to subscribe, false to unsubscribe.
+   * @return the message.
+   */
+  abstract String createSubscriptionMessage(
+      String exchangeMarketId, String topic, boolean subscribe);
+
+  /**
+   * Handles a message received from the exchange.
+   *
+   * @param message the message.
+   */
+  abstract void onMessage(String message);
+
+  /**
+   * Called after the exchange has been sent the subscribe message for a topic, including when
+   * subscribing again after a reconnect. It is called without the subscription lock held, so it
+   * can fetch a starting snapshot over the REST API without holding up other subscriptions or
+   * the reconnect thread. Does nothing by default.
+   *
+   * @param marketId the id of the market.
+   * @param topic the exchange topic.
+   * @throws ExchangeNetworkException if a network error occurred.
+   * @throws TradingApiException if anything else went wrong.
+   */
+  void onTopicSubscribed(String marketId, String topic)
+      throws ExchangeNetworkException, TradingApiException {
+    // no-op by default
+  }
+
+  /**
+   * Returns the exchange's id for a market. By default, this is the same as the bot's market id.
+   *
+   * @param marketId the bot's market id.
+   * @return the exchange's market id.
+   */
+  String toExchangeMarketId(String marketId) {
+    return marketId;
+  }
+
+  // --------------------------------------------------------------------------
+  // Streaming Trading API.
+  // --------------------------------------------------------------------------
+
+  @Override
+  public MarketDataSubscription subscribeToOrderBook(
+      String marketId, MarketDataListener<MarketOrderBook> listener)
+      throws ExchangeNetworkException, TradingApiException {
+    return subscribe(marketId, MarketDataChannel.ORDER_BOOK, listener);
+  }
+
+  @Override
+  public MarketDataSubscription subscribeToTicker(
+      String marketId, MarketDataListener<Ticker> listener)
+      throws ExchangeNetworkException, TradingApiException {
+    return subscribe(marketId, MarketDataChannel.TICKER, listener);
+  }
+
+  @Override
+  public MarketDataSubscription subscribeToTrades(
+      String marketId, MarketDataListener<MarketTrade> listener)
+      throws ExchangeNetworkException, TradingApiException {
+    return subscribe(marketId, MarketDataChannel.TRADES, listener);
+  }
+
+  @Override
+  public MarketOrderBook getLatestMarketOrders(String marketId) {
+    final MarketStream marketStream = marketStreams.get(marketId);
+    if (marketStream == null
+        || !marketStream.hasListeners(MarketDataChannel.ORDER_BOOK)
+        || isStale()) {
+      return null;
+    }
+    return marketStream.orderBook.getMarketOrderBook();
+  }
+
+  @Override
+  public Ticker getLatestTicker(String marketId) {
+    final MarketStream marketStream = marketStreams.get(marketId);
+    if (marketStream == null || !marketStream.hasListeners(MarketDataChannel.TICKER) || isStale()) {
+      return null;
+    }
+    return marketStream.ticker;
+  }
+
+  /** Closes the stream. All subscriptions are dropped and the stream does not reconnect. */
+  void close() {
+    closed = true;
+    final WebSocket current;
+    synchronized (connectionLock) {
+      current = webSocket;
+      webSocket = null;
+      if (staleCheck != null) {
+        staleCheck.cancel(false);
+        staleCheck = null;
+      }
+    }
+    if (current != null) {
+      current.abort();
+    }
+    marketStreams.clear();
+  }
+
+  // --------------------------------------------------------------------------
+  // Helpers for subclasses handling exchange messages.
+  // --------------------------------------------------------------------------
+
+  /**
+   * Finds the bot's market id for a market id sent by the exchange.
+   *
+   * @param exchangeMarketId the exchange's market id.
+   * @return the bot's market id, or null if the bot has not subscribed to the market.
+   */
+  String findMarketId(String exchangeMarketId) {
+    if (exchangeMarketId == null) {
+      return null;
+    }
+    final String marketId = marketIdsByExchangeMarketId.get(exchangeMarketId);
+    if (marketId != null) {
+      return marketId;
+    }
+    for (final Map.Entry<String, String> market : marketIdsByExchangeMarketId.entrySet()) {
+      if (market.getKey().equalsIgnoreCase(exchangeMarketId)) {
+        return market.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the local order book for a market.
+   *
+   * @param marketId the id of the market.
+   * @return the local order book, or null if the bot has not subscribed to the market.
+   */
+  LocalOrderBook getLocalOrderBook(String marketId) {
+    final MarketStream marketStream = marketStreams.get(marketId);
+    return marketStream == null ? null : marketStream.orderBook;
+  }
+
+  /**
+   * Checks if there are any listeners for a channel.
+   *
+   * @param marketId the id of the market.
+   * @param channel the channel.
+   * @return true if there are listeners, false otherwise.
+   */
+  boolean isSubscribed(String marketId, MarketDataChannel channel) {
+    final MarketStream marketStream = marketStreams.get(marketId);
+    return marketStream != null && marketStream.hasListeners(channel);
+  }
+
+  /**
+   * Sends the latest order book to the order book listeners. Called after the local order book
+   * has been updated.
+   *
+   * @param marketId the id of the market.
+   */
+  void orderBookUpdated(String marketId) {
+    final MarketStream marketStream = marketStreams.get(marketId);
+    if (marketStream != null && marketStream.hasListeners(MarketDataChannel.ORDER_BOOK)) {
+      final MarketOrderBook marketOrderBook = marketStream.orderBook.getMarketOrderBook();
+      if (marketOrderBook != null) {
+        notifyListeners(marketStream, MarketDataChannel.ORDER_BOOK, marketOrderBook);
+      }
+    }
+  }
+
+  /**
+   * Stores the latest ticker and sends it to the ticker listeners.
+   *
+   * @param marketId the id of the market.
+   * @param ticker the ticker.
+   */
+  void tickerUpdated(String marketId, Ticker ticker) {
+    final MarketStream marketStream = marketStreams.get(marketId);
+    if (marketStream != null) {
+      marketStream.ticker = ticker;
+      notifyListeners(marketStream, MarketDataChannel.TICKER, ticker);
+    }
+  }
+
+  /**
+   * Sends a trade to the trade listeners.
+   *
+   * @param marketId the id of the market.
+   * @param trade the trade.
+   */
+  void tradeReceived(String marketId, MarketTrade trade) {
+    final MarketStream marketStream = marketStreams.get(marketId);
+    if (marketStream != null) {
+      notifyListeners(marketStream, MarketDataChannel.TRADES, trade);
+    }
+  }
+
+  /**
+   * Sets how long the stream can go without a message before it is stale. Used for testing.
+   *
+   * @param staleTimeoutMillis the stale timeout in millis.
+   */
+  void setStaleTimeoutMillis(long staleTimeoutMillis) {
+    this.staleTimeoutMillis = staleTimeoutMillis;
+  }
+
+  /**
+   * Drops the connection and reconnects after the reconnect delay. Also used to resync the local
+   * order books when a subclass finds one has drifted from the exchange's.
+   */
+  void reconnect() {
+    final WebSocket current;
+    synchronized (connectionLock) {
+      current = webSocket;
+    }
+    if (current != null) {
+      current.abort();
+      connectionLost(current);
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  // Subscriptions and connection management.
+  // --------------------------------------------------------------------------
+
+  private <T> MarketDataSubscription subscribe(
+      String marketId, MarketDataChannel channel, MarketDataListener<T> listener)
+      throws ExchangeNetworkException, TradingApiException {
+    final MarketStream marketStream;
+    final List<String> newTopics = new ArrayList<>();
+    synchronized (subscriptionLock) {
+      marketStream = marketStreams.computeIfAbsent(marketId, MarketStream::new);
+      marketIdsByExchangeMarketId.put(toExchangeMarketId(marketId), marketId);
+      connect();
+
+      final List<MarketDataListener<?>> listeners = marketStream.listeners.get(channel);
+      listeners.add(listener);
+      if (listeners.size() == 1) {
+        final List<String> subscribedTopics = new ArrayList<>();
+        try {
+          for (final String topic : getTopics(channel)) {
+            if (subscribeToTopic(marketStream, topic)) {
+              newTopics.add(topic);
+            }
+            subscribedTopics.add(topic);
+          }
+        } catch (ExchangeNetworkException | RuntimeException e) {
+          listeners.remove(listener);
+          for (final String topic : subscribedTopics) {
+            unsubscribeFromTopic(marketStream, topic);
+          }
+          throw e;
+        }
+      }
+    }
+
+    try {
+      for (final String topic : newTopics) {
+        onTopicSubscribed(marketId, topic);
+      }
+    } catch (ExchangeNetworkException | TradingApiException | RuntimeException e) {
+      unsubscribe(marketStream, channel, listener);
+      throw e;
+    }
+    LOG.info(() -> "Subscribed to " + channel + " for market " + marketId);
+    return new Subscription(marketStream, channel, listener);
+  }
+
+  private void unsubscribe(
+      MarketStream marketStream, MarketDataChannel channel, MarketDataListener<?> listener) {
+    synchronized (subscriptionLock) {
+      final List<MarketDataListener<?>> listeners = marketStream.listeners.get(channel);
+      if (listeners.remove(listener) && listeners.isEmpty()) {
+        for (final String topic : getTopics(channel)) {
+          unsubscribeFromTopic(marketStream, topic);
+        }
+        LOG.info(() -> "Unsubscribed from " + channel + " for market " + marketStream.marketId);
+      }
+    }
+  }
+
+  /*
+   * Returns true if the exchange was sent the subscribe message, i.e. this is the first
+   * subscription that needs the topic.
+   */
+  private boolean subscribeToTopic(MarketStream marketStream, String topic)
+      throws ExchangeNetworkException {
+    final int count = marketStream.topicCounts.merge(topic, 1, Integer::sum);
+    if (count > 1) {
+      return false;
+    }
+    try {
+      send(createSubscriptionMessage(toExchangeMarketId(marketStream.marketId), topic, true));
+    } catch (ExchangeNetworkException | RuntimeException e) {
+      marketStream.topicCounts.remove(topic);
+      throw e;
+    }
+    return true;
+  }
+
+  private void unsubscribeFromTopic(MarketStream marketStream, String topic) {
+    final int count = marketStream.topicCounts.merge(topic, -1, Integer::sum);
+    if (count > 0) {
+      return;
+    }
+    marketStream.topicCounts.remove(topic);
+    if (getTopics(MarketDataChannel.ORDER_BOOK).contains(topic)) {
+      marketStream.orderBook.reset();
+    }
+    try {
+      send(createSubscriptionMessage(toExchangeMarketId(marketStream.marketId), topic, false));
+    } catch (ExchangeNetworkException e) {
+      LOG.warn(() -> "Failed to unsubscribe from " + topic + " for " + marketStream.marketId, e);
+    }
+  }
+
+  private void connect() throws ExchangeNetworkException {
+    synchronized (connectionLock) {
+      if (webSocket != null) {
+        return;
+      }
+      LOG.info(() -> "Connecting to Exchange market data stream: " + uri);
+      try {
+        webSocket =
+            httpClient
+                .newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(connectTimeout))
+                .buildAsync(uri, new StreamListener())
+                .get(connectTimeout, TimeUnit.SECONDS);
+        lastMessageNanos = System.nanoTime();
+        if (staleCheck == null) {
+          final long checkIntervalMillis = Math.max(staleTimeoutMillis / 2, 1);
+          staleCheck =
+              RECONNECT_SCHEDULER.scheduleWithFixedDelay(
+                  this::checkStale,
+                  checkIntervalMillis,
+                  checkIntervalMillis,
+                  TimeUnit.MILLISECONDS);
+        }
+      } catch (ExecutionException | TimeoutException e) {
+        LOG.error(CONNECTION_FAILED_ERROR_MSG, e);
+        throw new ExchangeNetworkException(CONNECTION_FAILED_ERROR_MSG, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ExchangeNetworkException(CONNECTION_FAILED_ERROR_MSG, e);
+      }
+    }
+  }
+
+  /*
+   * The WebSocket only allows 1 outstanding send, so sends are serialized.
+   */
+  private void send(String message) throws ExchangeNetworkException {
+    synchronized (connectionLock) {
+      if (webSocket == null) {
+        throw new ExchangeNetworkException(SEND_FAILED_ERROR_MSG + " Not connected.");
+      }
+      LOG.debug(() -> "Sending market data stream message: " + message);
+      try {
+        webSocket.sendText(message, true).get(connectTimeout, TimeUnit.SECONDS);
+      } catch (ExecutionException | TimeoutException e) {
+        LOG.error(SEND_FAILED_ERROR_MSG, e);
+        throw new ExchangeNetworkException(SEND_FAILED_ERROR_MSG, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ExchangeNetworkException(SEND_FAILED_ERROR_MSG, e);
+      }
+    }
+  }
+
+  private void connectionLost(WebSocket lostWebSocket) {
+    synchronized (connectionLock) {
+      if (webSocket != lostWebSocket) {
+        return; // already handled
+      }
+      webSocket = null;
+    }
+    for (final MarketStream marketStream : marketStreams.values()) {
+      marketStream.orderBook.reset();
+      marketStream.ticker = null;
+    }
+    if (!closed) {
+      LOG.warn(
+          () ->
+              "Lost connection to Exchange market data stream. Reconnecting in "
+                  + reconnectDelayMillis
+                  + "ms...");
+      scheduleReconnect();
+    }
+  }
+
+  private void scheduleReconnect() {
+    if (closed) {
+      LOG.debug(() -> "Market data stream is closed - not reconnecting.");
+      return;
+    }
+    RECONNECT_SCHEDULER.schedule(this::resubscribe, reconnectDelayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void resubscribe() {
+    final List<Map.Entry<String, String>> subscribedTopics = new ArrayList<>();
+    try {
+      synchronized (subscriptionLock) {
+        if (closed) {
+          return;
+        }
+        connect();
+        for (final MarketStream marketStream : marketStreams.values()) {
+          for (final String topic : new ArrayList<>(marketStream.topicCounts.keySet())) {
+            send(
+                createSubscriptionMessage(
+                    toExchangeMarketId(marketStream.marketId), topic, true));
+            subscribedTopics.add(
+                new AbstractMap.SimpleImmutableEntry<>(marketStream.marketId, topic));
+          }
+        }
+      }
+      for (final Map.Entry<String, String> subscribedTopic : subscribedTopics) {
+        onTopicSubscribed(subscribedTopic.getKey(), subscribedTopic.getValue());
+      }
+      LOG.info(() -> "Reconnected to Exchange market data stream: " + uri);
+    } catch (ExchangeNetworkException | TradingApiException | RuntimeException e) {
+      LOG.error("Failed to reconnect to Exchange market data stream.", e);
+      final WebSocket current;
+      synchronized (connectionLock) {
+        current = webSocket;
+      }
+      if (current != null) {
+        current.abort();
+        connectionLost(current);
+      } else {
+        scheduleReconnect();
+      }
+    }
+  }
+
+  private boolean isStale() {
+    return System.nanoTime() - lastMessageNanos
+        > TimeUnit.MILLISECONDS.toNanos(staleTimeoutMillis);
+  }
+
+  /*
+   * Only a connection that has topics subscribed is expected to receive messages.
+   */
+  private void checkStale() {
+    if (closed || !isStale()) {
+      return;
+    }
+    synchronized (subscriptionLock) {
+      boolean subscribed = false;
+      for (final MarketStream marketStream : marketStreams.values()) {
+        subscribed |= !marketStream.topicCounts.isEmpty();
+      }
+      if (!subscribed) {
+        return;
+      }
+    }
+    LOG.warn(
+        () ->
+            "No message from Exchange market data stream for "
+                + staleTimeoutMillis
+                + "ms. Reconnecting...");
+    reconnect();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> void notifyListeners(
+      MarketStream marketStream, MarketDataChannel channel, T update) {
+    for (final MarketDataListener<?> listener : marketStream.listeners.get(channel)) {
+      try {
+        ((MarketDataListener<T>) listener).onUpdate(marketStream.marketId, update);
+      } catch (RuntimeException e) {
+        LOG.error("Market data listener failed for " + marketStream.marketId, e);
+      }
+    }
+  }
+
+  /*
+   * The subscriptions and streamed state for 1 market.
+   */
+  private static final class MarketStream {
+
+    private final String marketId;
+    private final LocalOrderBook orderBook;
+    private final Map<MarketDataChannel, List<MarketDataListener<?>>> listeners =
+        new EnumMap<>(MarketDataChannel.class);
+    private final Map<String, Integer> topicCounts = new HashMap<>();
+    private volatile Ticker ticker;
+
+    private MarketStream(String marketId) {
+      this.marketId = marketId;
+      orderBook = new LocalOrderBook(marketId);
+      for (final MarketDataChannel channel : MarketDataChannel.values()) {
+        listeners.put(channel, new CopyOnWriteArrayList<>());
+      }
+    }
+
+    private boolean hasListeners(MarketDataChannel channel) {
+      return !listeners.get(channel).isEmpty();
+    }
+  }
+
+  /*
+   * A listener's subscription to a channel.
+   */
+  private final class Subscription implements MarketDataSubscription {
+
+    private final MarketStream marketStream;
+    private final MarketDataChannel channel;
+    private final MarketDataListener<?> listener;
+
+    private Subscription(
+        MarketStream marketStream, MarketDataChannel channel, MarketDataListener<?> listener) {
+      this.marketStream = marketStream;
+      this.channel = channel;
+      this.listener = listener;
+    }
+
+    @Override
+    public String getMarketId() {
+      return marketStream.marketId;
+    }
+
+    @Override
+    public void cancel() {
+      unsubscribe(marketStream, channel, listener);
+    }
+  }
+
+  /*
+   * Receives the WebSocket events. Text messages can arrive in parts; they are put back together
+   * before being handed to the subclass.
+   */
+  private final class StreamListener implements WebSocket.Listener {
+
+    private final StringBuilder messageParts = new StringBuilder();
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+      lastMessageNanos = System.nanoTime();
+      messageParts.append(data);
+      if (last) {
+        final String message = messageParts.toString();
+        messageParts.setLength(0);
+        LOG.debug(() -> "Market data stream message: " + message);
+        try {
+          onMessage(message);
+        } catch (RuntimeException e) {
+          LOG.error("Failed to handle market data stream message: " + message, e);
+        }
+      }
+      webSocket.request(1);
+      return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+      LOG.warn(() -> "Exchange closed market data stream: " + statusCode + " " + reason);
+      connectionLost(webSocket);
+      return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+      LOG.error("Exchange market data stream failed.", error);
+      connectionLost(webSocket);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.exchange.api.StreamingExchangeAdapter;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.MarketDataListener;
+import com.gazbert.bxbot.trading.api.MarketDataSubscription;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.MarketTrade;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+
+/**
+ * Base class for Exchange Adapters that stream market data over a WebSocket connection.
+ *
+ * <p>The market data stream is created the first time it is needed, after the adapter has been
+ * initialised, and it connects to the exchange on the first subscription.
+ *
+ * @author gazbert
+ * @since 1.4
+ */
+abstract class AbstractStreamingExchangeAdapter extends AbstractAsyncExchangeAdapter
+    implements StreamingExchangeAdapter {
+
+  static final long RECONNECT_DELAY_MILLIS = 5000;
+
+  private volatile AbstractMarketDataStream marketDataStream;
+
+  /**
+   * Creates the market data stream for the exchange.
+   *
+   * @return the market data stream.
+   */
+  abstract AbstractMarketDataStream createMarketDataStream();
+
+  /**
+   * Returns the market data stream, creating it the first time it is needed.
+   *
+   * @return the market data stream.
+   */
+  AbstractMarketDataStream getMarketDataStream() {
+    AbstractMarketDataStream stream = marketDataStream;
+    if (stream == null) {
+      synchronized (this) {
+        stream = marketDataStream;
+        if (stream == null) {
+          stream = createMarketDataStream();
+          marketDataStream = stream;
+        }
+      }
+    }
+    return stream;
+  }
+
+  /**
+   * Sets the market data stream. Used for testing against a local WebSocket server.
+   *
+   * @param marketDataStream the market data stream.
+   */
+  void setMarketDataStream(AbstractMarketDataStream marketDataStream) {
+    this.marketDataStream = marketDataStream;
+  }
+
+  @Override
+  public MarketDataSubscription subscribeToOrderBook(
+      String marketId, MarketDataListener<MarketOrderBook> listener)
+      throws ExchangeNetworkException, TradingApiException {
+    return getMarketDataStream().subscribeToOrderBook(marketId, listener);
+  }
+
+  @Override
+  public MarketDataSubscription subscribeToTicker(
+      String marketId, MarketDataListener<Ticker> listener)
+      throws ExchangeNetworkException, TradingApiException {
+    return getMarketDataStream().subscribeToTicker(marketId, listener);
+  }
+
+  @Override
+  public MarketDataSubscription subscribeToTrades(
+      String marketId, MarketDataListener<MarketTrade> listener)
+      throws ExchangeNetworkException, TradingApiException {
+    return getMarketDataStream().subscribeToTrades(marketId, listener);
+  }
+
+  @Override
+  public MarketOrderBook getLatestMarketOrders(String marketId) {
+    final AbstractMarketDataStream stream = marketDataStream;
+    return stream == null ? null : stream.getLatestMarketOrders(marketId);
+  }
+
+  @Override
+  public Ticker getLatestTicker(String marketId) {
+    final AbstractMarketDataStream stream = marketDataStream;
+    return stream == null ? null : stream.getLatestTicker(marketId);
+  }
+
+  @Override
+  public void closeMarketDataStream() {
+    final AbstractMarketDataStream stream = marketDataStream;
+    if (stream != null) {
+      stream.close();
+    }
+  }
+}
@@ -24,18 +24,18 @@
 package com.gazbert.bxbot.exchanges;
 
 import com.gazbert.bxbot.exchange.api.AuthenticationConfig;
-import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
 import com.gazbert.bxbot.exchange.api.ExchangeConfig;
+import com.gazbert.bxbot.exchange.api.OtherConfig;
 import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
-import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderBookImpl;
-import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
 import com.gazbert.bxbot.exchanges.trading.api.impl.OpenOrderImpl;
 import com.gazbert.bxbot.exchanges.trading.api.impl.TickerImpl;
 import com.gazbert.bxbot.trading.api.BalanceInfo;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
-import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketMetadata;
 import com.gazbert.bxbot.trading.api.MarketOrderBook;
 import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderRequest;
+import com.gazbert.bxbot.trading.api.OrderResult;
 import com.gazbert.bxbot.trading.api.OrderType;
 import com.gazbert.bxbot.trading.api.Ticker;
 import com.gazbert.bxbot.trading.api.TradingApi;
@@ -44,6 +44,9 @@ import com.google.common.base.MoreObjects;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.MalformedURLException;
@@ -55,13 +58,12 @@ import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.xml.bind.DatatypeConverter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -79,6 +81,9 @@ import org.apache.logging.log4j.Logger;
  * 'deposit' (liquidity SWAPs) accounts. Furthermore, the adapter does not support sending 'hidden'
  * orders.
  *
+ * <p>Batches of orders are placed and cancelled in 1 API call using the exchange's 'multi'
+ * endpoints.
+ *
  * <p>There are different exchange fees for Takers and Makers - see <a
  * href="https://www.bitfinex.com/pages/fees">here.</a> This adapter will use the <em>Taker</em>
  * fees to keep things simple for now.
@@ -94,8 +99,7 @@ import org.apache.logging.log4j.Logger;
  * @author gazbert
  * @since 1.0
  */
-public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
-    implements ExchangeAdapter {
+public final class BitfinexExchangeAdapter extends AbstractAsyncExchangeAdapter {
 
   private static final Logger LOG = LogManager.getLogger();
 
@@ -108,6 +112,8 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
       "Unexpected error has occurred in Bitfinex Exchange Adapter. ";
   private static final String UNEXPECTED_IO_ERROR_MSG =
       "Failed to connect to Exchange due to unexpected IO error.";
+  private static final String FAILED_TO_GET_MARKET_ORDERS =
+      "Failed to get Market Order Book from exchange. Details: ";
 
   private static final String ID = "id";
   private static final String EXCHANGE = "exchange";
@@ -127,12 +133,15 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
   private static final String KEY_PROPERTY_NAME = "key";
   private static final String SECRET_PROPERTY_NAME = "secret";
 
-  private String key = "";
-  private String secret = "";
+  private volatile String key = "";
+  private volatile String secret = "";
+
+  private volatile RequestSigner requestSigner;
+  private volatile boolean initializedMacAuthentication = false;
+  private volatile NonceService nonceService;
 
-  private Mac mac;
-  private boolean initializedMacAuthentication = false;
-  private long nonce = 0;
+  private int orderBookDepth = OrderBookJsonReader.FULL_DEPTH;
+  private MarketMetadataCache marketMetadataCache;
 
   private Gson gson;
 
@@ -141,8 +150,13 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
     LOG.info(() -> "About to initialise Bitfinex ExchangeConfig: " + config);
     setAuthenticationConfig(config);
     setNetworkConfig(config);
+    final OtherConfig otherConfig = config.getOtherConfig();
+    orderBookDepth = getOrderBookDepth(otherConfig);
+    setRateLimitConfig(otherConfig);
+    setCircuitBreakerConfig(otherConfig);
+    marketMetadataCache = createMarketMetadataCache(otherConfig, this::loadMarketMetadata);
+    nonceService = createNonceService(otherConfig);
 
-    nonce = System.currentTimeMillis() / 1000;
     initSecureMessageLayer();
     initGson();
   }
@@ -152,43 +166,39 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
   // See https://www.bitfinex.com/pages/api
   // --------------------------------------------------------------------------
 
+  /*
+   * The order book is read as it streams in, straight into a price level order book. Each level
+   * is an object: {"price":"574.61","amount":"0.14","timestamp":"1472506127.0"}
+   */
   @Override
   public MarketOrderBook getMarketOrders(String marketId)
       throws TradingApiException, ExchangeNetworkException {
     try {
-      final ExchangeHttpResponse response = sendPublicRequestToExchange("book/" + marketId);
-      LOG.debug(() -> "Market Orders response: " + response);
-
-      final BitfinexOrderBook orderBook =
-          gson.fromJson(response.getPayload(), BitfinexOrderBook.class);
-
-      final List<MarketOrder> buyOrders = new ArrayList<>();
-      for (BitfinexMarketOrder bitfinexBuyOrder : orderBook.bids) {
-        final MarketOrder buyOrder =
-            new MarketOrderImpl(
-                OrderType.BUY,
-                bitfinexBuyOrder.price,
-                bitfinexBuyOrder.amount,
-                bitfinexBuyOrder.price.multiply(bitfinexBuyOrder.amount));
-        buyOrders.add(buyOrder);
+      final ExchangeHttpResponse response = streamPublicRequestToExchange("book/" + marketId);
+      try {
+        LOG.debug(() -> "Market Orders response: " + response);
+
+        // Not closed here: closing the response drains what is left so the connection is reused.
+        final JsonReader reader = new JsonReader(response.getPayloadReader());
+        return new OrderBookJsonReader(orderBookDepth)
+            .readOrderBook(reader, marketId)
+            .asMarketOrderBook();
+      } finally {
+        response.close();
       }
 
-      final List<MarketOrder> sellOrders = new ArrayList<>();
-      for (BitfinexMarketOrder bitfinexSellOrder : orderBook.asks) {
-        final MarketOrder sellOrder =
-            new MarketOrderImpl(
-                OrderType.SELL,
-                bitfinexSellOrder.price,
-                bitfinexSellOrder.amount,
-                bitfinexSellOrder.price.multiply(bitfinexSellOrder.amount));
-        sellOrders.add(sellOrder);
-      }
-
-      return new MarketOrderBookImpl(marketId, sellOrders, buyOrders);
-
     } catch (ExchangeNetworkException | TradingApiException e) {
       throw e;
 
+    } catch (MalformedJsonException e) {
+      LOG.error(UNEXPECTED_ERROR_MSG, e);
+      throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
+
+    } catch (IOException e) {
+      final String errorMsg = FAILED_TO_GET_MARKET_ORDERS + e.getMessage();
+      LOG.error(errorMsg, e);
+      throw new ExchangeNetworkException(errorMsg, e);
+
     } catch (Exception e) {
       LOG.error(UNEXPECTED_ERROR_MSG, e);
       throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
@@ -198,6 +208,15 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
   @Override
   public List<OpenOrder> getYourOpenOrders(String marketId)
       throws TradingApiException, ExchangeNetworkException {
+    return getYourOpenOrdersForMarkets(Collections.singletonList(marketId)).get(marketId);
+  }
+
+  /*
+   * Bitfinex returns the open orders for all markets in 1 call.
+   */
+  @Override
+  public Map<String, List<OpenOrder>> getYourOpenOrdersForMarkets(Collection<String> marketIds)
+      throws TradingApiException, ExchangeNetworkException {
     try {
       final ExchangeHttpResponse response = sendAuthenticatedRequestToExchange("orders", null);
       LOG.debug(() -> "Open Orders response: " + response);
@@ -205,10 +224,11 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
       final BitfinexOpenOrders bitfinexOpenOrders =
           gson.fromJson(response.getPayload(), BitfinexOpenOrders.class);
 
-      final List<OpenOrder> ordersToReturn = new ArrayList<>();
+      final Map<String, List<OpenOrder>> ordersToReturn = createOpenOrdersByMarketId(marketIds);
       for (final BitfinexOpenOrder bitfinexOpenOrder : bitfinexOpenOrders) {
 
-        if (!marketId.equalsIgnoreCase(bitfinexOpenOrder.symbol)) {
+        final String marketId = findMarketId(marketIds, bitfinexOpenOrder.symbol);
+        if (marketId == null) {
           continue;
         }
 
@@ -243,7 +263,7 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
                     bitfinexOpenOrder.originalAmount) // total - not provided by finex :-(
                 );
 
-        ordersToReturn.add(order);
+        ordersToReturn.get(marketId).add(order);
       }
       return ordersToReturn;
 
@@ -263,43 +283,7 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
     try {
       final Map<String, Object> params = createRequestParamMap();
 
-      params.put(SYMBOL, marketId);
-
-      // note we need to limit amount and price to 8 decimal places else exchange will barf
-      params.put(
-          AMOUNT, new DecimalFormat("#.########", getDecimalFormatSymbols()).format(quantity));
-      params.put(PRICE, new DecimalFormat("#.########", getDecimalFormatSymbols()).format(price));
-
-      params.put(EXCHANGE, "bitfinex");
-
-      if (orderType == OrderType.BUY) {
-        params.put("side", "buy");
-      } else if (orderType == OrderType.SELL) {
-        params.put("side", "sell");
-      } else {
-        final String errorMsg =
-            "Invalid order type: "
-                + orderType
-                + " - Can only be "
-                + OrderType.BUY.getStringValue()
-                + " or "
-                + OrderType.SELL.getStringValue();
-        LOG.error(errorMsg);
-        throw new IllegalArgumentException(errorMsg);
-      }
-
-      // 'type' is either "market" / "limit" / "stop" / "trailing-stop" / "fill-or-kill" / "exchange
-      // market" /
-      // "exchange limit" / "exchange stop" / "exchange trailing-stop" / "exchange fill-or-kill".
-      // (type starting by "exchange " are exchange orders, others are margin trading orders)
-
-      // this adapter only supports 'exchange limit orders'
-      params.put("type", "exchange limit");
-
-      // This adapter does not currently support hidden orders.
-      // Exchange API notes: "true if the order should be hidden. Default is false."
-      // If you try and set "is_hidden" to false, the exchange barfs and sends a 401 back. Nice.
-      // params.put("is_hidden", "false");
+      putOrderParams(params, marketId, orderType, quantity, price);
 
       final ExchangeHttpResponse response = sendAuthenticatedRequestToExchange("order/new", params);
       LOG.debug(() -> "Create Order response: " + response);
@@ -324,6 +308,54 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
     }
   }
 
+  /*
+   * Puts the params for a new order. Used for single and batch orders.
+   */
+  private void putOrderParams(
+      Map<String, Object> params,
+      String marketId,
+      OrderType orderType,
+      BigDecimal quantity,
+      BigDecimal price) {
+    params.put(SYMBOL, marketId);
+
+    // note we need to limit amount and price to 8 decimal places else exchange will barf
+    params.put(
+        AMOUNT, new DecimalFormat("#.########", getDecimalFormatSymbols()).format(quantity));
+    params.put(PRICE, new DecimalFormat("#.########", getDecimalFormatSymbols()).format(price));
+
+    params.put(EXCHANGE, "bitfinex");
+
+    if (orderType == OrderType.BUY) {
+      params.put("side", "buy");
+    } else if (orderType == OrderType.SELL) {
+      params.put("side", "sell");
+    } else {
+      final String errorMsg =
+          "Invalid order type: "
+              + orderType
+              + " - Can only be "
+              + OrderType.BUY.getStringValue()
+              + " or "
+              + OrderType.SELL.getStringValue();
+      LOG.error(errorMsg);
+      throw new IllegalArgumentException(errorMsg);
+    }
+
+    // 'type' is either "market" / "limit" / "stop" / "trailing-stop" / "fill-or-kill" / "exchange
+    // market" /
+    // "exchange limit" / "exchange stop" / "exchange trailing-stop" / "exchange fill-or-kill".
+    // (type starting by "exchange " are exchange orders, others are margin trading orders)
+
+    // this adapter only supports 'exchange limit orders'
+    params.put("type", "exchange limit");
+
+    // This adapter does not currently support hidden orders.
+    // Exchange API notes: "true if the order should be hidden. Default is false."
+    // If you try and set "is_hidden" to false, the exchange barfs and sends a 401 back. Nice.
+    // params.put("is_hidden", "false");
+  }
+
   /*
    * marketId is not needed for cancelling orders on this exchange.
    */
@@ -344,7 +376,8 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
       return true;
 
     } catch (ExchangeNetworkException | TradingApiException e) {
-      if (e.getCause() != null && e.getCause().getMessage().contains("400")) {
+      final Throwable cause = e.getCause();
+      if (cause != null && cause.getMessage() != null && cause.getMessage().contains("400")) {
         final String errorMsg =
             "Failed to cancel order on exchange. Did not recognise Order Id: " + orderId;
         LOG.error(errorMsg, e);
@@ -359,6 +392,126 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
     }
   }
 
+  /*
+   * Places the orders using the exchange's 'order/new/multi' endpoint, so the whole batch is 1 API
+   * call. The exchange returns the new orders in the order they were sent.
+   */
+  @Override
+  public List<OrderResult> createOrders(List<OrderRequest> orderRequests)
+      throws TradingApiException, ExchangeNetworkException {
+    if (orderRequests.isEmpty()) {
+      return new ArrayList<>();
+    }
+    try {
+      final List<Map<String, Object>> orders = new ArrayList<>(orderRequests.size());
+      for (final OrderRequest orderRequest : orderRequests) {
+        final Map<String, Object> order = new HashMap<>();
+        putOrderParams(
+            order,
+            orderRequest.getMarketId(),
+            orderRequest.getOrderType(),
+            orderRequest.getQuantity(),
+            orderRequest.getPrice());
+        orders.add(order);
+      }
+      final Map<String, Object> params = createRequestParamMap();
+      params.put("orders", orders);
+
+      final ExchangeHttpResponse response =
+          sendAuthenticatedRequestToExchange("order/new/multi", params);
+      LOG.debug(() -> "Create Orders response: " + response);
+
+      final BitfinexNewOrderMultiResponse createOrdersResponse =
+          gson.fromJson(response.getPayload(), BitfinexNewOrderMultiResponse.class);
+      if (createOrdersResponse.orderIds == null) {
+        final String errorMsg = "Failed to place orders on exchange. Error response: " + response;
+        LOG.error(errorMsg);
+        throw new TradingApiException(errorMsg);
+      }
+
+      final List<OrderResult> orderResults = new ArrayList<>(orderRequests.size());
+      for (int i = 0; i < orderRequests.size(); i++) {
+        final long id =
+            i < createOrdersResponse.orderIds.size() ? createOrdersResponse.orderIds.get(i).id : 0;
+        if (id == 0) {
+          orderResults.add(
+              OrderResult.failed(
+                  null,
+                  new TradingApiException(
+                      "Failed to place order on exchange: "
+                          + orderRequests.get(i)
+                          + " Error response: "
+                          + response)));
+        } else {
+          orderResults.add(OrderResult.succeeded(Long.toString(id)));
+        }
+      }
+      return orderResults;
+
+    } catch (ExchangeNetworkException | TradingApiException e) {
+      throw e;
+
+    } catch (Exception e) {
+      LOG.error(UNEXPECTED_ERROR_MSG, e);
+      throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
+    }
+  }
+
+  /*
+   * Cancels the orders using the exchange's 'order/cancel/multi' endpoint, so the whole batch is 1
+   * API call. The exchange does not say which orders it cancelled, so they all succeed or fail
+   * together. marketId is not needed for cancelling orders on this exchange.
+   */
+  @Override
+  public List<OrderResult> cancelOrders(List<String> orderIds, String marketIdNotNeeded)
+      throws TradingApiException, ExchangeNetworkException {
+    if (orderIds.isEmpty()) {
+      return new ArrayList<>();
+    }
+    try {
+      final List<Long> exchangeOrderIds = new ArrayList<>(orderIds.size());
+      for (final String orderId : orderIds) {
+        exchangeOrderIds.add(Long.parseLong(orderId));
+      }
+      final Map<String, Object> params = createRequestParamMap();
+      params.put("order_ids", exchangeOrderIds);
+
+      final ExchangeHttpResponse response =
+          sendAuthenticatedRequestToExchange("order/cancel/multi", params);
+      LOG.debug(() -> "Cancel Orders response: " + response);
+
+      final BitfinexCancelOrderMultiResponse cancelOrdersResponse =
+          gson.fromJson(response.getPayload(), BitfinexCancelOrderMultiResponse.class);
+      final List<OrderResult> orderResults = new ArrayList<>(orderIds.size());
+      for (final String orderId : orderIds) {
+        orderResults.add(
+            cancelOrdersResponse.result != null
+                ? OrderResult.succeeded(orderId)
+                : OrderResult.failed(orderId, null));
+      }
+      return orderResults;
+
+    } catch (ExchangeNetworkException | TradingApiException e) {
+      final Throwable cause = e.getCause();
+      if (cause != null && cause.getMessage() != null && cause.getMessage().contains("400")) {
+        final String errorMsg =
+            "Failed to cancel orders on exchange. Did not recognise Order Ids: " + orderIds;
+        LOG.error(errorMsg, e);
+        final List<OrderResult> orderResults = new ArrayList<>(orderIds.size());
+        for (final String orderId : orderIds) {
+          orderResults.add(OrderResult.failed(orderId, e));
+        }
+        return orderResults;
+      } else {
+        throw e;
+      }
+
+    } catch (Exception e) {
+      LOG.error(UNEXPECTED_ERROR_MSG, e);
+      throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
+    }
+  }
+
   @Override
   public BigDecimal getLatestMarketPrice(String marketId)
       throws TradingApiException, ExchangeNetworkException {
@@ -421,35 +574,31 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
   @Override
   public BigDecimal getPercentageOfBuyOrderTakenForExchangeFee(String marketId)
       throws TradingApiException, ExchangeNetworkException {
-    try {
-      final ExchangeHttpResponse response =
-          sendAuthenticatedRequestToExchange("account_infos", null);
-      LOG.debug(() -> "Buy Fee response: " + response);
-
-      // Nightmare to adapt! Just take the top-level taker fees.
-      final BitfinexAccountInfos bitfinexAccountInfos =
-          gson.fromJson(response.getPayload(), BitfinexAccountInfos.class);
-      final BigDecimal fee = bitfinexAccountInfos.get(0).takerFees;
-
-      // adapt the % into BigDecimal format
-      return fee.divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
-
-    } catch (ExchangeNetworkException | TradingApiException e) {
-      throw e;
-
-    } catch (Exception e) {
-      LOG.error(UNEXPECTED_ERROR_MSG, e);
-      throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
-    }
+    return marketMetadataCache.get(marketId).getBuyFeePercentage();
   }
 
   @Override
   public BigDecimal getPercentageOfSellOrderTakenForExchangeFee(String marketId)
       throws TradingApiException, ExchangeNetworkException {
+    return marketMetadataCache.get(marketId).getSellFeePercentage();
+  }
+
+  /*
+   * The fees are cached: see MarketMetadataCache. Bitfinex gives its price precision in significant
+   * digits, not decimal places, so there is no tick or lot size.
+   */
+  @Override
+  public MarketMetadata getMarketMetadata(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return marketMetadataCache.get(marketId);
+  }
+
+  private MarketMetadata loadMarketMetadata(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
     try {
       final ExchangeHttpResponse response =
           sendAuthenticatedRequestToExchange("account_infos", null);
-      LOG.debug(() -> "Sell Fee response: " + response);
+      LOG.debug(() -> "Fee response: " + response);
 
       // Nightmare to adapt! Just take the top-level taker fees.
       final BitfinexAccountInfos bitfinexAccountInfos =
@@ -457,7 +606,8 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
       final BigDecimal fee = bitfinexAccountInfos.get(0).takerFees;
 
       // adapt the % into BigDecimal format
-      return fee.divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
+      final BigDecimal feePercentage = fee.divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
+      return new MarketMetadata(marketId, feePercentage, feePercentage, null, null);
 
     } catch (ExchangeNetworkException | TradingApiException e) {
       throw e;
@@ -508,35 +658,6 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
   //  See https://www.bitfinex.com/pages/api
   // --------------------------------------------------------------------------
 
-  /** GSON class for a market Order Book. */
-  private static class BitfinexOrderBook {
-
-    BitfinexMarketOrder[] bids;
-    BitfinexMarketOrder[] asks;
-
-    @Override
-    public String toString() {
-      return MoreObjects.toStringHelper(this).add("bids", bids).add("asks", asks).toString();
-    }
-  }
-
-  /** GSON class for a Market Order. */
-  private static class BitfinexMarketOrder {
-
-    BigDecimal price;
-    BigDecimal amount;
-    String timestamp;
-
-    @Override
-    public String toString() {
-      return MoreObjects.toStringHelper(this)
-          .add(PRICE, price)
-          .add(AMOUNT, amount)
-          .add(TIMESTAMP, timestamp)
-          .toString();
-    }
-  }
-
   /** GSON class for receiving your open orders in 'orders' API call response. */
   private static class BitfinexOpenOrders extends ArrayList<BitfinexOpenOrder> {
     private static final long serialVersionUID = 5516523641153401953L;
@@ -831,6 +952,34 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
     }
   }
 
+  /** GSON class for Bitfinex 'order/new/multi' response. */
+  private static class BitfinexNewOrderMultiResponse {
+
+    @SerializedName("order_ids")
+    List<BitfinexNewOrderResponse> orderIds;
+
+    String status;
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("orderIds", orderIds)
+          .add("status", status)
+          .toString();
+    }
+  }
+
+  /** GSON class for Bitfinex 'order/cancel/multi' response. */
+  private static class BitfinexCancelOrderMultiResponse {
+
+    String result; // e.g. "Orders cancelled"
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("result", result).toString();
+    }
+  }
+
   /** GSON class for Bitfinex 'order/cancel' response. */
   private static class BitfinexCancelOrderResponse {
 
@@ -893,6 +1042,18 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
   //  Transport layer methods
   // --------------------------------------------------------------------------
 
+  /*
+   * order/new and order/cancel place and cancel orders; the other POSTs are account data.
+   */
+  @Override
+  ExchangeRateLimiter.EndpointType getEndpointType(URL url, String httpMethod) {
+    final String path = url.getPath();
+    if (path.endsWith("/order/new") || path.endsWith("/order/cancel")) {
+      return ExchangeRateLimiter.EndpointType.ORDER;
+    }
+    return super.getEndpointType(url, httpMethod);
+  }
+
   private ExchangeHttpResponse sendPublicRequestToExchange(String apiMethod)
       throws ExchangeNetworkException, TradingApiException {
     try {
@@ -906,6 +1067,23 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
     }
   }
 
+  /*
+   * Makes a public API call and returns the response without reading its body. The caller must
+   * close the response.
+   */
+  private ExchangeHttpResponse streamPublicRequestToExchange(String apiMethod)
+      throws ExchangeNetworkException, TradingApiException {
+    try {
+      final URL url = new URL(PUBLIC_API_BASE_URL + apiMethod);
+      return makeStreamedNetworkRequest(url, "GET", null, createHeaderParamMap());
+
+    } catch (MalformedURLException e) {
+      final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
+      LOG.error(errorMsg, e);
+      throw new TradingApiException(errorMsg, e);
+    }
+  }
+
   /*
    * Makes an authenticated API call to the Bitfinex exchange.
    *
@@ -948,42 +1126,47 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
         params = createRequestParamMap();
       }
 
-      // nonce is required by Bitfinex in every request
-      params.put("nonce", Long.toString(nonce));
-      nonce++; // increment ready for next call.
-
-      // must include the method in request param too
-      params.put("request", "/" + BITFINEX_API_VERSION + "/" + apiMethod);
-
-      // JSON-ify the param dictionary
-      final String paramsInJson = gson.toJson(params);
-
-      // Need to base64 encode payload as per API
-      final String base64payload =
-          DatatypeConverter.printBase64Binary(paramsInJson.getBytes(StandardCharsets.UTF_8));
-
-      // Request headers required by Exchange
-      final Map<String, String> requestHeaders = createHeaderParamMap();
-      requestHeaders.put("X-BFX-APIKEY", key);
-      requestHeaders.put("X-BFX-PAYLOAD", base64payload);
-
-      // Add the signature
-      mac.reset(); // force reset
-      mac.update(base64payload.getBytes(StandardCharsets.UTF_8));
-
-      /*
-       * signature = HMAC-SHA384(payload, api-secret) as hexadecimal - MUST be in LOWERCASE else
-       * signature fails. See:
-       * http://bitcoin.stackexchange.com/questions/25835/bitfinex-api-call-returns-400-bad-request
-       */
-      final String signature = toHex(mac.doFinal()).toLowerCase();
-      requestHeaders.put("X-BFX-SIGNATURE", signature);
-
-      // payload is JSON for this exchange
-      requestHeaders.put("Content-Type", "application/json");
-
-      final URL url = new URL(AUTHENTICATED_API_URL + apiMethod);
-      return makeNetworkRequest(url, "POST", paramsInJson, requestHeaders);
+      // Bitfinex rejects a nonce smaller than the last one it saw, so a request that loses the
+      // race to the exchange is signed again with a new nonce.
+      for (int attempt = 1; ; attempt++) {
+        // nonce is required by Bitfinex in every request
+        params.put("nonce", Long.toString(nonceService.next()));
+
+        // must include the method in request param too
+        params.put("request", "/" + BITFINEX_API_VERSION + "/" + apiMethod);
+
+        // JSON-ify the param dictionary
+        final String paramsInJson = gson.toJson(params);
+
+        // Need to base64 encode payload as per API
+        final String base64payload = requestSigner.toBase64(paramsInJson);
+
+        // Request headers required by Exchange
+        final Map<String, String> requestHeaders = createHeaderParamMap();
+        requestHeaders.put("X-BFX-APIKEY", key);
+        requestHeaders.put("X-BFX-PAYLOAD", base64payload);
+
+        // Add the signature
+        /*
+         * signature = HMAC-SHA384(payload, api-secret) as hexadecimal - MUST be in LOWERCASE else
+         * signature fails. See:
+         * http://bitcoin.stackexchange.com/questions/25835/bitfinex-api-call-returns-400-bad-request
+         */
+        final String signature = requestSigner.signToHex(base64payload, false);
+        requestHeaders.put("X-BFX-SIGNATURE", signature);
+
+        // payload is JSON for this exchange
+        requestHeaders.put("Content-Type", "application/json");
+
+        final URL url = new URL(AUTHENTICATED_API_URL + apiMethod);
+        try {
+          return makeNetworkRequest(url, "POST", paramsInJson, requestHeaders);
+        } catch (TradingApiException e) {
+          if (!shouldResendWithNewNonce(e, attempt)) {
+            throw e;
+          }
+        }
+      }
 
     } catch (MalformedURLException e) {
       final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
@@ -992,14 +1175,6 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
     }
   }
 
-  private String toHex(byte[] byteArrayToConvert) {
-    final StringBuilder hexString = new StringBuilder();
-    for (final byte aByte : byteArrayToConvert) {
-      hexString.append(String.format("%02x", aByte & 0xff));
-    }
-    return hexString.toString();
-  }
-
   /*
    * Initialises the secure messaging layer.
    * Sets up the MAC to safeguard the data we send to the exchange.
@@ -1008,10 +1183,8 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
    */
   private void initSecureMessageLayer() {
     try {
-      final SecretKeySpec keyspec =
-          new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA384");
-      mac = Mac.getInstance("HmacSHA384");
-      mac.init(keyspec);
+      requestSigner =
+          RequestSigner.forHmac("HmacSHA384", secret.getBytes(StandardCharsets.UTF_8));
       initializedMacAuthentication = true;
     } catch (NoSuchAlgorithmException e) {
       final String errorMsg = "Failed to setup MAC security. HINT: Is HMAC-SHA384 installed?";
@@ -1065,4 +1238,13 @@ public final class BitfinexExchangeAdapter extends AbstractExchangeAdapter
       throws TradingApiException, ExchangeNetworkException {
     return super.sendNetworkRequest(url, httpMethod, postData, requestHeaders);
   }
+
+  /*
+   * Hack for unit-testing transport layer.
+   */
+  private ExchangeHttpResponse makeStreamedNetworkRequest(
+      URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+      throws TradingApiException, ExchangeNetworkException {
+    return super.streamNetworkRequest(url, httpMethod, postData, requestHeaders);
+  }
 }
@@ -26,16 +26,14 @@ package com.gazbert.bxbot.exchanges;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.gazbert.bxbot.exchange.api.AuthenticationConfig;
-import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
 import com.gazbert.bxbot.exchange.api.ExchangeConfig;
+import com.gazbert.bxbot.exchange.api.OtherConfig;
 import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
-import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderBookImpl;
-import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
 import com.gazbert.bxbot.exchanges.trading.api.impl.OpenOrderImpl;
 import com.gazbert.bxbot.exchanges.trading.api.impl.TickerImpl;
 import com.gazbert.bxbot.trading.api.BalanceInfo;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
-import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketMetadata;
 import com.gazbert.bxbot.trading.api.MarketOrderBook;
 import com.gazbert.bxbot.trading.api.OpenOrder;
 import com.gazbert.bxbot.trading.api.OrderType;
@@ -50,11 +48,15 @@ import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
@@ -69,8 +71,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -113,10 +113,17 @@ import org.apache.logging.log4j.Logger;
  *  - My starting balance on 12/25/2020 is $1005. 896.35 in USD and 0.00451180 BTC ($112.795)
  *  </pre>
  *
+ * <p>Market data can also be streamed using the Bitstamp WebSocket API: see {@link
+ * com.gazbert.bxbot.trading.api.StreamingTradingApi}. The order book is mirrored locally from the
+ * order book changes, starting from the order book fetched using the REST API.
+ *
+ * <p>The optional api-base-url other config item sends the REST API calls somewhere other than
+ * Bitstamp, e.g. to a {@link SimulatedExchangeServer} for load testing.
+ *
  * @author gazbert
  * @since 1.0
  */
-public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements ExchangeAdapter {
+public class BitstampExchangeAdapter extends AbstractStreamingExchangeAdapter {
 
   private static final Logger LOG = LogManager.getLogger();
 
@@ -129,21 +136,29 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
       "Unexpected error has occurred in Bitstamp Exchange Adapter. ";
   private static final String UNEXPECTED_IO_ERROR_MSG =
       "Failed to connect to Exchange due to unexpected IO error.";
+  private static final String FAILED_TO_GET_MARKET_ORDERS =
+      "Failed to get Market Order Book from exchange. Details: ";
 
   private static final String AMOUNT = "amount";
   private static final String BALANCE = "balance";
+  private static final String TRADING_PAIRS_INFO = "trading-pairs-info/";
   private static final String PRICE = "price";
 
   private static final String CLIENT_ID_PROPERTY_NAME = "client-id";
   private static final String KEY_PROPERTY_NAME = "key";
   private static final String SECRET_PROPERTY_NAME = "secret";
+  private static final String API_BASE_URL_PROPERTY_NAME = "api-base-url";
 
   //private String clientId = "";
-  private String apiKey = "";
-  private String apiSecret = "";
+  private volatile String apiKey = "";
+  private volatile String apiSecret = "";
 
-  private Mac mac;
-  private boolean initializedMacAuthentication = false;
+  private volatile RequestSigner requestSigner;
+  private volatile boolean initializedMacAuthentication = false;
+
+  private int orderBookDepth = OrderBookJsonReader.FULL_DEPTH;
+  private String apiBaseUrl = API_BASE_URL;
+  private MarketMetadataCache marketMetadataCache;
 
   private Gson gson;
 
@@ -152,6 +167,12 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
     LOG.info(() -> "About to initialise Bitstamp ExchangeConfig: " + config);
     setAuthenticationConfig(config);
     setNetworkConfig(config);
+    final OtherConfig otherConfig = config.getOtherConfig();
+    orderBookDepth = getOrderBookDepth(otherConfig);
+    setRateLimitConfig(otherConfig);
+    setCircuitBreakerConfig(otherConfig);
+    setApiBaseUrl(otherConfig);
+    marketMetadataCache = createMarketMetadataCache(otherConfig, this::loadMarketMetadata);
     initSecureMessageLayer();
     initGson();
   }
@@ -161,45 +182,45 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
   // See https://www.bitstamp.net/api/
   // --------------------------------------------------------------------------
 
+  /*
+   * The order book is read as it streams in, straight into a price level order book. JSON looks
+   * like:
+   *
+   * {
+   *   "timestamp": "1400943488",
+   *   "bids": [["521.86", "0.00017398"], ["519.58", "0.25100000"], ["0.01", "38820.00000000"]],
+   *   "asks": [["521.88", "10.00000000"], ["522.00", "310.24504478"], ["522.13", "0.02852084"]]
+   * }
+   */
   @Override
   public MarketOrderBook getMarketOrders(String marketId)
       throws TradingApiException, ExchangeNetworkException {
     try {
-      final ExchangeHttpResponse response = sendPublicRequestToExchange("order_book/" + marketId);
-      LOG.debug(() -> "Market Orders response: " + response);
-
-      final BitstampOrderBook bitstampOrderBook =
-          gson.fromJson(response.getPayload(), BitstampOrderBook.class);
-
-      final List<MarketOrder> buyOrders = new ArrayList<>();
-      final List<List<BigDecimal>> bitstampBuyOrders = bitstampOrderBook.bids;
-      for (final List<BigDecimal> order : bitstampBuyOrders) {
-        final MarketOrder buyOrder =
-            new MarketOrderImpl(
-                OrderType.BUY,
-                order.get(0), // price
-                order.get(1), // quantity
-                order.get(0).multiply(order.get(1)));
-        buyOrders.add(buyOrder);
+      final ExchangeHttpResponse response = streamPublicRequestToExchange("order_book/" + marketId);
+      try {
+        LOG.debug(() -> "Market Orders response: " + response);
+
+        // Not closed here: closing the response drains what is left so the connection is reused.
+        final JsonReader reader = new JsonReader(response.getPayloadReader());
+        return new OrderBookJsonReader(orderBookDepth)
+            .readOrderBook(reader, marketId)
+            .asMarketOrderBook();
+      } finally {
+        response.close();
       }
 
-      final List<MarketOrder> sellOrders = new ArrayList<>();
-      final List<List<BigDecimal>> bitstampSellOrders = bitstampOrderBook.asks;
-      for (final List<BigDecimal> order : bitstampSellOrders) {
-        final MarketOrder sellOrder =
-            new MarketOrderImpl(
-                OrderType.SELL,
-                order.get(0), // price
-                order.get(1), // quantity
-                order.get(0).multiply(order.get(1)));
-        sellOrders.add(sellOrder);
-      }
-
-      return new MarketOrderBookImpl(marketId, sellOrders, buyOrders);
-
     } catch (ExchangeNetworkException | TradingApiException e) {
       throw e;
 
+    } catch (MalformedJsonException e) {
+      LOG.error(UNEXPECTED_ERROR_MSG, e);
+      throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
+
+    } catch (IOException e) {
+      final String errorMsg = FAILED_TO_GET_MARKET_ORDERS + e.getMessage();
+      LOG.error(errorMsg, e);
+      throw new ExchangeNetworkException(errorMsg, e);
+
     } catch (Exception e) {
       LOG.error(UNEXPECTED_ERROR_MSG, e);
       throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
@@ -398,69 +419,77 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
   @Override
   public BigDecimal getPercentageOfBuyOrderTakenForExchangeFee(String marketId)
       throws TradingApiException, ExchangeNetworkException {
-    try {
-      final ExchangeHttpResponse response = sendAuthenticatedRequestToExchange(BALANCE, null);
-      LOG.debug(() -> "Buy Fee response: " + response);
-
-      final BitstampBalance balances = gson.fromJson(response.getPayload(), BitstampBalance.class);
+    return marketMetadataCache.get(marketId).getBuyFeePercentage();
+  }
 
-      // Ouch!
-      final Class<?> clazz = balances.getClass();
-      final Field[] fields = clazz.getDeclaredFields();
-      for (final Field field : fields) {
-        if (field.getName().startsWith(marketId)) {
-          final BigDecimal fee = (BigDecimal) field.get(balances);
-          // adapt the % into BigDecimal format
-          return fee.divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
-        }
-      }
+  @Override
+  public BigDecimal getPercentageOfSellOrderTakenForExchangeFee(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return marketMetadataCache.get(marketId).getSellFeePercentage();
+  }
 
-      final String errorMsg =
-          "Unable to map marketId to currency balances returned from the Exchange. "
-              + "MarketId: "
-              + marketId
-              + " BitstampBalances: "
-              + balances;
-      LOG.error(errorMsg);
-      throw new IllegalArgumentException(errorMsg);
+  /*
+   * The fees and decimal places are cached: see MarketMetadataCache.
+   */
+  @Override
+  public MarketMetadata getMarketMetadata(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return marketMetadataCache.get(marketId);
+  }
 
-    } catch (ExchangeNetworkException | TradingApiException e) {
-      throw e;
+  @Override
+  public BigDecimal roundPrice(String marketId, BigDecimal price) {
+    final MarketMetadata metadata = marketMetadataCache.getIfPresent(marketId);
+    return metadata == null ? roundValue(price) : metadata.roundPrice(price);
+  }
 
-    } catch (Exception e) {
-      LOG.error(UNEXPECTED_ERROR_MSG, e);
-      throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
-    }
+  @Override
+  public BigDecimal roundQuantity(String marketId, BigDecimal quantity) {
+    final MarketMetadata metadata = marketMetadataCache.getIfPresent(marketId);
+    return metadata == null ? roundValue(quantity) : metadata.roundQuantity(quantity);
   }
 
   @Override
-  public BigDecimal getPercentageOfSellOrderTakenForExchangeFee(String marketId)
+  AbstractMarketDataStream createMarketDataStream() {
+    return new BitstampMarketDataStream(
+        URI.create(BitstampMarketDataStream.WEBSOCKET_URI),
+        getConnectTimeout(),
+        RECONNECT_DELAY_MILLIS,
+        this);
+  }
+
+  /*
+   * Bitstamp has the same fee for buy and sell orders. The fee is in the balance response, and the
+   * decimal places are in the trading pairs info response. JSON looks like:
+   *
+   * [{"base_decimals": 8, "minimum_order": "5.0 USD", "name": "BTC/USD", "counter_decimals": 2,
+   *   "trading": "Enabled", "url_symbol": "btcusd", "description": "Bitcoin / U.S. dollar"}]
+   */
+  private MarketMetadata loadMarketMetadata(String marketId)
       throws TradingApiException, ExchangeNetworkException {
     try {
-      final ExchangeHttpResponse response = sendAuthenticatedRequestToExchange(BALANCE, null);
-      LOG.debug(() -> "Sell Fee response: " + response);
-
-      final BitstampBalance balances = gson.fromJson(response.getPayload(), BitstampBalance.class);
-
-      // Ouch!
-      final Class<?> clazz = balances.getClass();
-      final Field[] fields = clazz.getDeclaredFields();
-      for (final Field field : fields) {
-        if (field.getName().startsWith(marketId) && field.getName().endsWith("Fee")) {
-          final BigDecimal fee = (BigDecimal) field.get(balances);
-          // adapt the % into BigDecimal format
-          return fee.divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
+      final ExchangeHttpResponse balanceResponse =
+          sendAuthenticatedRequestToExchange(BALANCE, null);
+      LOG.debug(() -> "Fee response: " + balanceResponse);
+      final BigDecimal fee = getFee(marketId, balanceResponse);
+
+      final ExchangeHttpResponse pairsResponse =
+          sendPublicRequestToExchange(TRADING_PAIRS_INFO);
+      LOG.debug(() -> "Trading pairs info response: " + pairsResponse);
+      final BitstampTradingPairInfo[] pairs =
+          gson.fromJson(pairsResponse.getPayload(), BitstampTradingPairInfo[].class);
+      for (final BitstampTradingPairInfo pair : pairs) {
+        if (marketId.equals(pair.urlSymbol)) {
+          return new MarketMetadata(
+              marketId,
+              fee,
+              fee,
+              BigDecimal.ONE.movePointLeft(pair.counterDecimals),
+              BigDecimal.ONE.movePointLeft(pair.baseDecimals));
         }
       }
-
-      final String errorMsg =
-          "Unable to map marketId to currency balances returned from the Exchange. "
-              + "MarketId: "
-              + marketId
-              + " BitstampBalances: "
-              + balances;
-      LOG.error(errorMsg);
-      throw new IllegalArgumentException(errorMsg);
+      LOG.warn(() -> "No trading pair info for " + marketId + " - using default decimals");
+      return new MarketMetadata(marketId, fee, fee, null, null);
 
     } catch (ExchangeNetworkException | TradingApiException e) {
       throw e;
@@ -471,6 +500,31 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
     }
   }
 
+  private BigDecimal getFee(String marketId, ExchangeHttpResponse response)
+      throws IllegalAccessException {
+    final BitstampBalance balances = gson.fromJson(response.getPayload(), BitstampBalance.class);
+
+    // Ouch!
+    final Class<?> clazz = balances.getClass();
+    final Field[] fields = clazz.getDeclaredFields();
+    for (final Field field : fields) {
+      if (field.getName().startsWith(marketId) && field.getName().endsWith("Fee")) {
+        final BigDecimal fee = (BigDecimal) field.get(balances);
+        // adapt the % into BigDecimal format
+        return fee.divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
+      }
+    }
+
+    final String errorMsg =
+        "Unable to map marketId to currency balances returned from the Exchange. "
+            + "MarketId: "
+            + marketId
+            + " BitstampBalances: "
+            + balances;
+    LOG.error(errorMsg);
+    throw new IllegalArgumentException(errorMsg);
+  }
+
   @Override
   public String getImplName() {
     return "Bitstamp HTTP API v2";
@@ -620,33 +674,24 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
     }
   }
 
-  /**
-   * GSON class for holding Bitstamp Order Book response from order_book API call.
-   *
-   * <p>JSON looks like:
-   *
-   * <pre>
-   * {
-   *   "timestamp": "1400943488",
-   *   "bids": [["521.86", "0.00017398"], ["519.58", "0.25100000"], ["0.01", "38820.00000000"]],
-   *   "asks": [["521.88", "10.00000000"], ["522.00", "310.24504478"], ["522.13", "0.02852084"]]
-   * }
-   * </pre>
-   *
-   * <p>Each is a list of open orders and each order is represented as a list of price and amount.
-   */
-  private static class BitstampOrderBook {
+  /** GSON class for a Bitstamp trading pair in the trading pairs info response. */
+  private static class BitstampTradingPairInfo {
 
-    long timestamp; // unix timestamp
-    List<List<BigDecimal>> bids;
-    List<List<BigDecimal>> asks;
+    @SerializedName("url_symbol")
+    String urlSymbol;
+
+    @SerializedName("base_decimals")
+    int baseDecimals;
+
+    @SerializedName("counter_decimals")
+    int counterDecimals;
 
     @Override
     public String toString() {
       return MoreObjects.toStringHelper(this)
-          .add("timestamp", timestamp)
-          .add("bids", bids)
-          .add("asks", asks)
+          .add("urlSymbol", urlSymbol)
+          .add("baseDecimals", baseDecimals)
+          .add("counterDecimals", counterDecimals)
           .toString();
     }
   }
@@ -761,10 +806,24 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
   //  Transport layer methods
   // --------------------------------------------------------------------------
 
+  /*
+   * buy, sell, and cancel_order place and cancel orders; the other POSTs are account data.
+   */
+  @Override
+  ExchangeRateLimiter.EndpointType getEndpointType(URL url, String httpMethod) {
+    final String path = url.getPath();
+    if (path.startsWith(API_PATH + "buy/")
+        || path.startsWith(API_PATH + "sell/")
+        || path.startsWith(API_PATH + "cancel_order")) {
+      return ExchangeRateLimiter.EndpointType.ORDER;
+    }
+    return super.getEndpointType(url, httpMethod);
+  }
+
   private ExchangeHttpResponse sendPublicRequestToExchange(String apiMethod)
       throws ExchangeNetworkException, TradingApiException {
     try {
-      final URL url = new URL(API_BASE_URL + apiMethod);
+      final URL url = new URL(apiBaseUrl + apiMethod);
       return makeNetworkRequest(url, "GET", null, createHeaderParamMap());
 
     } catch (MalformedURLException e) {
@@ -774,6 +833,23 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
     }
   }
 
+  /*
+   * Makes a public API call and returns the response without reading its body. The caller must
+   * close the response.
+   */
+  private ExchangeHttpResponse streamPublicRequestToExchange(String apiMethod)
+      throws ExchangeNetworkException, TradingApiException {
+    try {
+      final URL url = new URL(apiBaseUrl + apiMethod);
+      return makeStreamedNetworkRequest(url, "GET", null, createHeaderParamMap());
+
+    } catch (MalformedURLException e) {
+      final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
+      LOG.error(errorMsg, e);
+      throw new TradingApiException(errorMsg, e);
+    }
+  }
+
   /**
    * Adapted based on new instructions at https://www.bitstamp.net/api/
    */
@@ -795,7 +871,7 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
       final Map<String, String> requestHeaders = makeRequestHeaders(apiMethod, nonce, postData);
 
       // MUST have the trailing slash else exchange barfs...
-      final URL url = new URL(API_BASE_URL + apiMethod + "/");
+      final URL url = new URL(apiBaseUrl + apiMethod + "/");
 
       return makeNetworkRequest(url, "POST", postData, requestHeaders);
 
@@ -844,17 +920,11 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
             + VERSION
             + postData;
 
-    String encodedSignature;
-    try {
-      /*
-       * Signature is a HMAC-SHA256 encoded message containing signature
-       * This code must be converted to it's hexadecimal representation (64 uppercase characters).
-       */
-      byte[] rawHmac = mac.doFinal(signature.getBytes(UTF_8));
-      encodedSignature = toHex(rawHmac).toUpperCase();
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
+    /*
+     * Signature is a HMAC-SHA256 encoded message containing signature
+     * This code must be converted to it's hexadecimal representation (64 uppercase characters).
+     */
+    final String encodedSignature = requestSigner.signToHex(signature, true);
 
     // Request headers required by Exchange
     final Map<String, String> requestHeaders = createHeaderParamMap();
@@ -867,14 +937,6 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
     return requestHeaders;
   }
 
-  private String toHex(byte[] byteArrayToConvert) {
-    final StringBuilder hexString = new StringBuilder();
-    for (final byte aByte : byteArrayToConvert) {
-      hexString.append(String.format("%02x", aByte & 0xff));
-    }
-    return hexString.toString();
-  }
-
   /*
    * Initialises the secure messaging layer.
    * Sets up the MAC to safeguard the data we send to the exchange.
@@ -883,10 +945,7 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
    */
   private void initSecureMessageLayer() {
     try {
-      final SecretKeySpec keyspec =
-          new SecretKeySpec(apiSecret.getBytes(UTF_8), "HmacSHA256");
-      mac = Mac.getInstance("HmacSHA256");
-      mac.init(keyspec);
+      requestSigner = RequestSigner.forHmac("HmacSHA256", apiSecret.getBytes(UTF_8));
       initializedMacAuthentication = true;
     } catch (NoSuchAlgorithmException e) {
       final String errorMsg = "Failed to setup MAC security. HINT: Is HMAC-SHA256 installed?";
@@ -910,6 +969,18 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
     apiSecret = getAuthenticationConfigItem(authenticationConfig, SECRET_PROPERTY_NAME);
   }
 
+  private void setApiBaseUrl(OtherConfig otherConfig) {
+    final String baseUrlInConfig =
+        otherConfig == null ? null : otherConfig.getItem(API_BASE_URL_PROPERTY_NAME);
+    if (baseUrlInConfig == null || baseUrlInConfig.trim().isEmpty()) {
+      apiBaseUrl = API_BASE_URL;
+    } else {
+      final String baseUrl = baseUrlInConfig.trim();
+      apiBaseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+      LOG.info(() -> API_BASE_URL_PROPERTY_NAME + ": " + apiBaseUrl);
+    }
+  }
+
   // --------------------------------------------------------------------------
   //  Util methods
   // --------------------------------------------------------------------------
@@ -942,4 +1013,13 @@ public class BitstampExchangeAdapter extends AbstractExchangeAdapter implements
       throws TradingApiException, ExchangeNetworkException {
     return super.sendNetworkRequest(url, httpMethod, postData, requestHeaders);
   }
+
+  /*
+   * Hack for unit-testing transport layer.
+   */
+  private ExchangeHttpResponse makeStreamedNetworkRequest(
+      URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+      throws TradingApiException, ExchangeNetworkException {
+    return super.streamNetworkRequest(url, httpMethod, postData, requestHeaders);
+  }
 }
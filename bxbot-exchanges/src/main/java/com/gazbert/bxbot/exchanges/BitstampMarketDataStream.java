@@ -0,0 +1,218 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketTradeImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.TickerImpl;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.TradingApi;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Streams market data from the Bitstamp <a href="https://www.bitstamp.net/websocket/v2/">WebSocket
+ * API v2</a>.
+ *
+ * <p>The order book is mirrored from the diff_order_book channel. Bitstamp only streams the
+ * changes, so the starting order book is fetched using the REST API; changes received while it is
+ * being fetched are replayed on top of it.
+ *
+ * <p>Bitstamp has no ticker channel. The ticker is built from the best bid and ask in the local
+ * order book and the price of the last trade from the live_trades channel; the other ticker
+ * values are null.
+ *
+ * @author gazbert
+ */
+final class BitstampMarketDataStream extends AbstractMarketDataStream {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  static final String WEBSOCKET_URI = "wss://ws.bitstamp.net";
+
+  private static final String ORDER_BOOK_TOPIC = "diff_order_book_";
+  private static final String TRADES_TOPIC = "live_trades_";
+  private static final String EVENT = "event";
+  private static final String CHANNEL = "channel";
+  private static final String DATA = "data";
+
+  private final TradingApi tradingApi;
+  private final Map<String, BigDecimal> lastTradePrices = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the stream.
+   *
+   * @param uri the URI of the WebSocket API.
+   * @param connectTimeout the connect timeout in seconds.
+   * @param reconnectDelayMillis how long to wait before reconnecting after the connection is lost.
+   * @param tradingApi the REST API used to fetch the starting order book.
+   */
+  BitstampMarketDataStream(
+      URI uri, int connectTimeout, long reconnectDelayMillis, TradingApi tradingApi) {
+    super(uri, connectTimeout, reconnectDelayMillis);
+    this.tradingApi = tradingApi;
+  }
+
+  @Override
+  List<String> getTopics(MarketDataChannel channel) {
+    switch (channel) {
+      case ORDER_BOOK:
+        return Collections.singletonList(ORDER_BOOK_TOPIC);
+      case TRADES:
+        return Collections.singletonList(TRADES_TOPIC);
+      default:
+        return Arrays.asList(ORDER_BOOK_TOPIC, TRADES_TOPIC);
+    }
+  }
+
+  @Override
+  String createSubscriptionMessage(String exchangeMarketId, String topic, boolean subscribe) {
+    final JsonObject data = new JsonObject();
+    data.addProperty(CHANNEL, topic + exchangeMarketId);
+    final JsonObject message = new JsonObject();
+    message.addProperty(EVENT, subscribe ? "bts:subscribe" : "bts:unsubscribe");
+    message.add(DATA, data);
+    return message.toString();
+  }
+
+  /*
+   * Changes that arrived before the fetch started are already in the REST order book; the ones
+   * that arrive while it is in flight are buffered and replayed on top of it.
+   */
+  @Override
+  void onTopicSubscribed(String marketId, String topic)
+      throws ExchangeNetworkException, TradingApiException {
+    if (!ORDER_BOOK_TOPIC.equals(topic)) {
+      return;
+    }
+    final LocalOrderBook orderBook = getLocalOrderBook(marketId);
+    orderBook.bufferUpdates();
+    try {
+      orderBook.applySnapshot(tradingApi.getMarketOrders(marketId));
+    } catch (ExchangeNetworkException | TradingApiException | RuntimeException e) {
+      orderBook.reset();
+      throw e;
+    }
+    orderBookUpdated(marketId);
+  }
+
+  @Override
+  void onMessage(String message) {
+    final JsonObject json = JsonParser.parseString(message).getAsJsonObject();
+    final String event = json.has(EVENT) ? json.get(EVENT).getAsString() : "";
+    final String channel = json.has(CHANNEL) ? json.get(CHANNEL).getAsString() : "";
+
+    if ("bts:request_reconnect".equals(event)) {
+      LOG.info(() -> "Bitstamp requested a reconnect of the market data stream.");
+      reconnect();
+
+    } else if ("data".equals(event) && channel.startsWith(ORDER_BOOK_TOPIC)) {
+      final String marketId = findMarketId(channel.substring(ORDER_BOOK_TOPIC.length()));
+      if (marketId != null) {
+        applyOrderBookChanges(marketId, json.getAsJsonObject(DATA));
+      }
+
+    } else if ("trade".equals(event) && channel.startsWith(TRADES_TOPIC)) {
+      final String marketId = findMarketId(channel.substring(TRADES_TOPIC.length()));
+      if (marketId != null) {
+        applyTrade(marketId, json.getAsJsonObject(DATA));
+      }
+
+    } else if ("bts:error".equals(event)) {
+      LOG.error(() -> "Bitstamp market data stream error: " + message);
+    }
+  }
+
+  private void applyOrderBookChanges(String marketId, JsonObject changes) {
+    final LocalOrderBook orderBook = getLocalOrderBook(marketId);
+    applyPriceLevels(orderBook, OrderType.BUY, changes.getAsJsonArray("bids"));
+    applyPriceLevels(orderBook, OrderType.SELL, changes.getAsJsonArray("asks"));
+    orderBookUpdated(marketId);
+    updateTicker(marketId);
+  }
+
+  private static void applyPriceLevels(
+      LocalOrderBook orderBook, OrderType side, JsonArray priceLevels) {
+    if (priceLevels == null) {
+      return;
+    }
+    for (final JsonElement priceLevel : priceLevels) {
+      final JsonArray level = priceLevel.getAsJsonArray();
+      orderBook.update(side, level.get(0).getAsBigDecimal(), level.get(1).getAsBigDecimal());
+    }
+  }
+
+  private void applyTrade(String marketId, JsonObject trade) {
+    final BigDecimal price = getDecimal(trade, "price");
+    lastTradePrices.put(marketId, price);
+    tradeReceived(
+        marketId,
+        new MarketTradeImpl(
+            trade.get("id").getAsString(),
+            trade.get("type").getAsInt() == 0 ? OrderType.BUY : OrderType.SELL,
+            price,
+            getDecimal(trade, "amount"),
+            trade.get("timestamp").getAsLong() * 1000));
+    updateTicker(marketId);
+  }
+
+  /*
+   * Prefer the string values - the numeric ones are doubles.
+   */
+  private static BigDecimal getDecimal(JsonObject json, String name) {
+    final JsonElement value = json.has(name + "_str") ? json.get(name + "_str") : json.get(name);
+    return value.getAsBigDecimal();
+  }
+
+  private void updateTicker(String marketId) {
+    if (!isSubscribed(marketId, MarketDataChannel.TICKER)) {
+      return;
+    }
+    final LocalOrderBook orderBook = getLocalOrderBook(marketId);
+    tickerUpdated(
+        marketId,
+        new TickerImpl(
+            lastTradePrices.get(marketId),
+            orderBook.getBestBid(),
+            orderBook.getBestAsk(),
+            null,
+            null,
+            null,
+            null,
+            null,
+            System.currentTimeMillis()));
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.google.common.base.MoreObjects;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Latency histograms and error counters for the Exchange Adapters' REST API calls, per adapter,
+ * endpoint and HTTP method.
+ *
+ * <p>Each call to {@link AbstractExchangeAdapter#sendNetworkRequest} is timed in phases: see
+ * {@link Phase}. Failed calls are counted by {@link ErrorCategory}. The metrics are always on:
+ * recording is lock-free, and costs far less than the network call it times.
+ *
+ * <p>The adapters all record to {@link #getInstance()}. The bot's Spring Boot Actuator metrics
+ * are bound to it, so the metrics can be read from the actuator metrics endpoint, or pushed to a
+ * monitoring system by a Micrometer registry.
+ *
+ * @author gazbert
+ */
+public final class ExchangeApiMetrics {
+
+  /**
+   * The number of endpoints tracked. Calls to further endpoints are recorded as the {@link
+   * #OTHER_ENDPOINT}, so a stray id in a URL can't make the metrics grow without bound.
+   */
+  static final int MAX_ENDPOINTS = 256;
+
+  static final String OTHER_ENDPOINT = "other";
+
+  private static final ExchangeApiMetrics INSTANCE = new ExchangeApiMetrics();
+
+  /** The phases of an API call that are timed. */
+  public enum Phase {
+
+    /** Time spent waiting for the client side rate limiter. */
+    RATE_LIMIT_WAIT,
+
+    /**
+     * Time from sending the request to receiving the response headers. The JDK HTTP client does
+     * not report connection set up separately: for requests that open a new pooled connection, it
+     * includes the TCP connect and TLS handshake.
+     */
+    TIME_TO_FIRST_BYTE,
+
+    /**
+     * Time to read the response body. For streamed responses, e.g. order books, the body is parsed
+     * as it is read, so this is the time to read and parse it.
+     */
+    BODY_READ,
+
+    /** The whole call, from before the rate limiter to the response or error being returned. */
+    TOTAL
+  }
+
+  /** The categories of failed API calls. Each failed call is counted in 1 category. */
+  public enum ErrorCategory {
+
+    /** The connect or read timed out. */
+    TIMEOUT,
+
+    /** The exchange responded with a 5xx status. */
+    SERVER_ERROR,
+
+    /** The exchange responded with a 429, or said the rate limit was exceeded. */
+    RATE_LIMITED,
+
+    /** Any other error the bot can recover from, e.g. a configured non-fatal status code. */
+    NON_FATAL,
+
+    /** The request was not sent because the endpoint's circuit breaker was open. */
+    CIRCUIT_OPEN,
+
+    /** Errors the bot can't recover from. */
+    FATAL
+  }
+
+  private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+  private final List<Consumer<Endpoint>> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates metrics that are separate from the ones the Exchange Adapters record to. Used for
+   * testing.
+   */
+  public ExchangeApiMetrics() {
+  }
+
+  /**
+   * Returns the metrics all the Exchange Adapters record to.
+   *
+   * @return the metrics.
+   */
+  public static ExchangeApiMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the endpoints that have been called so far.
+   *
+   * @return the endpoints.
+   */
+  public Collection<Endpoint> getEndpoints() {
+    return new ArrayList<>(endpoints.values());
+  }
+
+  /**
+   * Adds a listener that is called when an endpoint is called for the first time. To see every
+   * endpoint, add the listener before reading {@link #getEndpoints()}.
+   *
+   * @param listener the listener.
+   */
+  public void addEndpointListener(Consumer<Endpoint> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Returns the metrics for an endpoint, creating them the first time the endpoint is called.
+   * Adapters that don't extend the inbuilt adapters can use this to record their API calls.
+   *
+   * @param adapter the name of the adapter.
+   * @param name the name of the endpoint.
+   * @param httpMethod the HTTP method.
+   * @return the endpoint metrics.
+   */
+  public Endpoint getEndpoint(String adapter, String name, String httpMethod) {
+    final String key = adapter + ' ' + httpMethod + ' ' + name;
+    final Endpoint endpoint = endpoints.get(key);
+    if (endpoint != null) {
+      return endpoint;
+    }
+    if (endpoints.size() >= MAX_ENDPOINTS && !OTHER_ENDPOINT.equals(name)) {
+      return getEndpoint(adapter, OTHER_ENDPOINT, httpMethod);
+    }
+    final Endpoint newEndpoint = new Endpoint(adapter, name, httpMethod);
+    final Endpoint existing = endpoints.putIfAbsent(key, newEndpoint);
+    if (existing != null) {
+      return existing;
+    }
+    for (final Consumer<Endpoint> listener : listeners) {
+      listener.accept(newEndpoint);
+    }
+    return newEndpoint;
+  }
+
+  /** The metrics for calls to 1 endpoint of an exchange's API. */
+  public static final class Endpoint {
+
+    private final String adapter;
+    private final String name;
+    private final String httpMethod;
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+    private final Map<ErrorCategory, LongAdder> errorCounts = new EnumMap<>(ErrorCategory.class);
+
+    Endpoint(String adapter, String name, String httpMethod) {
+      this.adapter = adapter;
+      this.name = name;
+      this.httpMethod = httpMethod;
+      for (final Phase phase : Phase.values()) {
+        latencies.put(phase, new LatencyHistogram());
+      }
+      for (final ErrorCategory category : ErrorCategory.values()) {
+        errorCounts.put(category, new LongAdder());
+      }
+    }
+
+    /**
+     * Records how long a phase of a call took.
+     *
+     * @param phase the phase.
+     * @param nanos the time taken in nanoseconds.
+     */
+    public void record(Phase phase, long nanos) {
+      latencies.get(phase).record(nanos);
+    }
+
+    /**
+     * Counts a failed call.
+     *
+     * @param category the error category.
+     */
+    public void recordError(ErrorCategory category) {
+      errorCounts.get(category).increment();
+    }
+
+    /**
+     * Returns the name of the adapter, e.g. KrakenExchangeAdapter.
+     *
+     * @return the adapter name.
+     */
+    public String getAdapter() {
+      return adapter;
+    }
+
+    /**
+     * Returns the name of the endpoint: the URL path, with any ids replaced by {id}.
+     *
+     * @return the endpoint name.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the HTTP method, e.g. GET.
+     *
+     * @return the HTTP method.
+     */
+    public String getHttpMethod() {
+      return httpMethod;
+    }
+
+    /**
+     * Returns the latency histogram for a phase of the calls.
+     *
+     * @param phase the phase.
+     * @return the histogram.
+     */
+    public LatencyHistogram getLatency(Phase phase) {
+      return latencies.get(phase);
+    }
+
+    /**
+     * Returns the number of failed calls in an error category.
+     *
+     * @param category the error category.
+     * @return the count.
+     */
+    public long getErrorCount(ErrorCategory category) {
+      return errorCounts.get(category).sum();
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("adapter", adapter)
+          .add("name", name)
+          .add("httpMethod", httpMethod)
+          .add("latencies", latencies)
+          .add("errorCounts", errorCounts)
+          .toString();
+    }
+  }
+}
@@ -0,0 +1,292 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.google.common.base.MoreObjects;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Circuit breaker for the requests an Exchange Adapter sends to 1 exchange endpoint.
+ *
+ * <p>The breaker starts closed, and every request is sent. When a number of requests in a row fail
+ * with a network error, the breaker opens: requests fail straight away, without being sent, so a
+ * flaky endpoint does not hold up the caller for a connect or read timeout on every call. After
+ * the open time, the breaker is half-open: 1 probe request is sent, and the others still fail
+ * fast. If the probe succeeds, the breaker closes. If it fails, the breaker opens again for twice
+ * as long, up to the max open time.
+ *
+ * <p>The open time is jittered: it is between half and all of the backed off time, so breakers
+ * that opened together, e.g. when the exchange went down, do not all probe at the same time.
+ *
+ * <p>The breakers are off unless they are configured. The config is {@code on}, to use the
+ * defaults, or a comma separated list of {@code <setting>=<value>} items, where the setting is
+ * failure-threshold, open-millis, or max-open-millis. For example, {@code failure-threshold=5,
+ * open-millis=1000, max-open-millis=60000}. Settings that are not set keep their default. A config
+ * of {@code off} turns the breakers off.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author gazbert
+ */
+final class ExchangeCircuitBreaker {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  /** The states of the breaker. */
+  enum State {
+    /** Requests are sent. */
+    CLOSED,
+    /** Requests fail fast. */
+    OPEN,
+    /** 1 probe request is sent; the others fail fast. */
+    HALF_OPEN
+  }
+
+  private final String name;
+  private final Config config;
+  private final LongSupplier nanoClock;
+  private final DoubleSupplier jitter;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private int openCount;
+  private long openUntilNanos;
+  private boolean probeInFlight;
+  private long rejectedCount;
+
+  /**
+   * Creates the breaker.
+   *
+   * @param name the name of the endpoint, for logging.
+   * @param config the breaker config.
+   */
+  ExchangeCircuitBreaker(String name, Config config) {
+    this(name, config, System::nanoTime, () -> ThreadLocalRandom.current().nextDouble());
+  }
+
+  ExchangeCircuitBreaker(
+      String name, Config config, LongSupplier nanoClock, DoubleSupplier jitter) {
+    this.name = name;
+    this.config = config;
+    this.nanoClock = nanoClock;
+    this.jitter = jitter;
+  }
+
+  /**
+   * Asks to send a request. If the breaker is half-open, the caller that gets the go-ahead sends
+   * the probe, and must report how it went.
+   *
+   * @return 0 if the request can be sent, otherwise how long in nanos until the breaker lets a
+   *     request through again.
+   */
+  synchronized long tryAcquire() {
+    if (state == State.CLOSED) {
+      return 0;
+    }
+    final long now = nanoClock.getAsLong();
+    if (state == State.OPEN && now - openUntilNanos >= 0) {
+      state = State.HALF_OPEN;
+    }
+    if (state == State.HALF_OPEN && !probeInFlight) {
+      probeInFlight = true;
+      LOG.info(() -> "Circuit breaker for " + name + " is sending a probe request");
+      return 0;
+    }
+    rejectedCount++;
+    return Math.max(1, openUntilNanos - now);
+  }
+
+  /** Reports that a request got a response from the exchange. */
+  synchronized void onSuccess() {
+    if (state != State.CLOSED) {
+      LOG.info(() -> "Circuit breaker for " + name + " is closed again");
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    openCount = 0;
+    probeInFlight = false;
+  }
+
+  /** Reports that a request failed with a network error. */
+  synchronized void onFailure() {
+    probeInFlight = false;
+    consecutiveFailures++;
+    if (state == State.CLOSED && consecutiveFailures < config.failureThreshold) {
+      return;
+    }
+    if (state == State.OPEN) {
+      return; // sent before the breaker opened
+    }
+    openCount++;
+    final long openNanos =
+        jitteredBackoffNanos(
+            config.openNanos, config.maxOpenNanos, openCount, jitter.getAsDouble());
+    openUntilNanos = nanoClock.getAsLong() + openNanos;
+    state = State.OPEN;
+    final int failures = consecutiveFailures;
+    LOG.warn(
+        () ->
+            "Circuit breaker for "
+                + name
+                + " is open for "
+                + TimeUnit.NANOSECONDS.toMillis(openNanos)
+                + "ms after "
+                + failures
+                + " failures in a row");
+  }
+
+  /**
+   * Reports that a request ended without a response or a network error, e.g. because the thread
+   * was interrupted. If it was the probe, the next request is sent as the probe instead.
+   */
+  synchronized void onAbandoned() {
+    probeInFlight = false;
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+  synchronized long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  /**
+   * Returns the exponentially backed off time for an attempt, jittered to between half and all of
+   * it.
+   *
+   * @param initialNanos the time for the first attempt.
+   * @param maxNanos the max time.
+   * @param attempt the attempt, starting at 1.
+   * @param jitter a random number from 0 to 1.
+   * @return the time in nanos.
+   */
+  static long jitteredBackoffNanos(long initialNanos, long maxNanos, int attempt, double jitter) {
+    final int doublings = Math.min(attempt - 1, Long.numberOfLeadingZeros(initialNanos) - 1);
+    final long backoffNanos = Math.min(maxNanos, initialNanos << Math.max(0, doublings));
+    return backoffNanos / 2 + (long) (backoffNanos / 2.0 * jitter);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("name", name)
+        .add("state", state)
+        .add("consecutiveFailures", consecutiveFailures)
+        .add("openCount", openCount)
+        .add("rejectedCount", rejectedCount)
+        .toString();
+  }
+
+  /** The breaker config, shared by all of an adapter's breakers. */
+  static final class Config {
+
+    /** The default settings: open after 5 failures, for 1 second, backing off to 1 minute. */
+    static final Config DEFAULT = new Config(5, 1000, 60_000);
+
+    private static final String ON = "on";
+    private static final String OFF = "off";
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long maxOpenNanos;
+
+    Config(int failureThreshold, long openMillis, long maxOpenMillis) {
+      if (failureThreshold < 1 || openMillis < 1 || maxOpenMillis < openMillis) {
+        throw new IllegalArgumentException(
+            "failure-threshold and open-millis must be more than 0, and max-open-millis at least"
+                + " open-millis");
+      }
+      this.failureThreshold = failureThreshold;
+      this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+      this.maxOpenNanos = TimeUnit.MILLISECONDS.toNanos(maxOpenMillis);
+    }
+
+    /**
+     * Parses the config.
+     *
+     * @param config the config, e.g. {@code failure-threshold=3, open-millis=500}, on, or off.
+     * @return the config, or null if the breakers are off.
+     * @throws IllegalArgumentException if the config cannot be parsed.
+     */
+    static Config parse(String config) {
+      if (OFF.equalsIgnoreCase(config.trim())) {
+        return null;
+      }
+      if (ON.equalsIgnoreCase(config.trim())) {
+        return DEFAULT;
+      }
+      int failureThreshold = DEFAULT.failureThreshold;
+      long openMillis = TimeUnit.NANOSECONDS.toMillis(DEFAULT.openNanos);
+      long maxOpenMillis = TimeUnit.NANOSECONDS.toMillis(DEFAULT.maxOpenNanos);
+      for (final String setting : config.split(",")) {
+        final String trimmed = setting.trim();
+        if (trimmed.isEmpty()) {
+          continue;
+        }
+        final String[] nameAndValue = trimmed.split("=");
+        if (nameAndValue.length != 2) {
+          throw new IllegalArgumentException("Circuit breaker setting must be <name>=<value>: "
+              + trimmed);
+        }
+        try {
+          final long value = Long.parseLong(nameAndValue[1].trim());
+          switch (nameAndValue[0].trim().toLowerCase(Locale.ROOT)) {
+            case "failure-threshold":
+              failureThreshold = (int) Math.min(Integer.MAX_VALUE, value);
+              break;
+            case "open-millis":
+              openMillis = value;
+              break;
+            case "max-open-millis":
+              maxOpenMillis = value;
+              break;
+            default:
+              throw new IllegalArgumentException(
+                  "Unknown circuit breaker setting: " + nameAndValue[0].trim());
+          }
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException(
+              "Circuit breaker setting must be a whole number: " + trimmed, e);
+        }
+      }
+      return new Config(failureThreshold, openMillis, maxOpenMillis);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("failureThreshold", failureThreshold)
+          .add("openMillis", TimeUnit.NANOSECONDS.toMillis(openNanos))
+          .add("maxOpenMillis", TimeUnit.NANOSECONDS.toMillis(maxOpenNanos))
+          .toString();
+    }
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.google.common.base.MoreObjects;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Client side rate limiter for the requests an Exchange Adapter sends to an exchange.
+ *
+ * <p>Requests are limited by token buckets: 1 for the whole exchange, and 1 for each {@link
+ * EndpointType}. A bucket holds up to its burst of tokens, and refills at its rate in tokens per
+ * second. A request takes its weight in tokens from the exchange bucket and from its endpoint type
+ * bucket, waiting until both have enough. Buckets that are not configured do not limit requests.
+ *
+ * <p>Order requests have priority: while an order request is waiting for tokens, market data and
+ * account requests wait behind it.
+ *
+ * <p>When the exchange says requests are being rate limited, the limiter backs off: it halves the
+ * rate of the buckets the request used and empties them. Each successful request then restores
+ * some of the configured rate, until it is back to what is configured.
+ *
+ * <p>The limits are configured as a comma separated list of {@code <bucket>=<rate>[:<burst>]}
+ * items, where the bucket is exchange, public, private, or order. For example, {@code
+ * exchange=10, public=1:2, private=0.33:15, order=1:60}. If the burst is not set, it is the rate,
+ * and at least 1 token.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author gazbert
+ */
+final class ExchangeRateLimiter {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  /** The types of endpoint requests are limited by. */
+  enum EndpointType {
+    /** Public market data, e.g. the order book or ticker. */
+    PUBLIC,
+    /** Authenticated account data, e.g. balances and open orders. */
+    PRIVATE,
+    /** Order placement and cancellation. */
+    ORDER
+  }
+
+  private static final String EXCHANGE_BUCKET = "exchange";
+  private static final double MIN_RATE_FRACTION = 1.0 / 16;
+  private static final double RECOVERY_FRACTION = 1.0 / 20;
+
+  private final LongSupplier nanoClock;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition tokensReturned = lock.newCondition();
+  private final TokenBucket exchangeBucket;
+  private final Map<EndpointType, TokenBucket> endpointBuckets = new EnumMap<>(EndpointType.class);
+  private int waitingOrderRequests;
+
+  /**
+   * Creates the rate limiter.
+   *
+   * @param limits the limits, e.g. {@code exchange=10, public=1:2, order=1:60}.
+   * @throws IllegalArgumentException if the limits cannot be parsed.
+   */
+  ExchangeRateLimiter(String limits) {
+    this(limits, System::nanoTime);
+  }
+
+  ExchangeRateLimiter(String limits, LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+    TokenBucket exchange = null;
+    for (final String limit : limits.split(",")) {
+      final String trimmed = limit.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      final int equals = trimmed.indexOf('=');
+      if (equals < 0) {
+        throw new IllegalArgumentException("Rate limit must be <bucket>=<rate>: " + trimmed);
+      }
+      final String bucketName = trimmed.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+      final TokenBucket bucket = parseBucket(trimmed.substring(equals + 1).trim());
+      if (EXCHANGE_BUCKET.equals(bucketName)) {
+        exchange = bucket;
+      } else {
+        try {
+          endpointBuckets.put(EndpointType.valueOf(bucketName.toUpperCase(Locale.ROOT)), bucket);
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException("Unknown rate limit bucket: " + bucketName, e);
+        }
+      }
+    }
+    exchangeBucket = exchange;
+  }
+
+  /**
+   * Waits until the request can be sent, then takes its weight in tokens.
+   *
+   * @param endpointType the type of endpoint the request is for.
+   * @param weight the weight of the request.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  void acquire(EndpointType endpointType, double weight) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      final boolean orderRequest = endpointType == EndpointType.ORDER;
+      if (orderRequest) {
+        waitingOrderRequests++;
+      }
+      try {
+        long waitNanos;
+        while ((waitNanos = tryAcquire(endpointType, weight)) > 0) {
+          LOG.debug(() -> "Rate limiting " + endpointType + " request");
+          tokensReturned.awaitNanos(waitNanos);
+        }
+      } finally {
+        if (orderRequest) {
+          waitingOrderRequests--;
+          tokensReturned.signalAll();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Takes the request's weight in tokens if the request can be sent now.
+   *
+   * @param endpointType the type of endpoint the request is for.
+   * @param weight the weight of the request.
+   * @return 0 if the tokens were taken, otherwise how long to wait in nanos before trying again.
+   */
+  long tryAcquire(EndpointType endpointType, double weight) {
+    lock.lock();
+    try {
+      final long now = nanoClock.getAsLong();
+      final TokenBucket endpointBucket = endpointBuckets.get(endpointType);
+      if (endpointType != EndpointType.ORDER && waitingOrderRequests > 0) {
+        // orders go first; wait for them to take their tokens
+        return Math.max(
+            nanosUntilAvailable(exchangeBucket, weight, now),
+            TimeUnit.MILLISECONDS.toNanos(1));
+      }
+      final long waitNanos =
+          Math.max(
+              nanosUntilAvailable(exchangeBucket, weight, now),
+              nanosUntilAvailable(endpointBucket, weight, now));
+      if (waitNanos > 0) {
+        return waitNanos;
+      }
+      take(exchangeBucket, weight);
+      take(endpointBucket, weight);
+      return 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Backs off after the exchange said a request was rate limited.
+   *
+   * @param endpointType the type of endpoint the request was for.
+   */
+  void onRateLimited(EndpointType endpointType) {
+    lock.lock();
+    try {
+      final long now = nanoClock.getAsLong();
+      for (final TokenBucket bucket : bucketsFor(endpointType)) {
+        bucket.backOff(now);
+      }
+      LOG.warn(
+          () -> "Exchange is rate limiting " + endpointType + " requests. Backing off: " + this);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Restores some of the configured rate after a request was not rate limited.
+   *
+   * @param endpointType the type of endpoint the request was for.
+   */
+  void onSuccess(EndpointType endpointType) {
+    lock.lock();
+    try {
+      final long now = nanoClock.getAsLong();
+      for (final TokenBucket bucket : bucketsFor(endpointType)) {
+        bucket.recover(now);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the current rate of a bucket in tokens per second.
+   *
+   * @param endpointType the endpoint type, or null for the exchange bucket.
+   * @return the rate, or null if the bucket is not configured.
+   */
+  Double getRate(EndpointType endpointType) {
+    lock.lock();
+    try {
+      final TokenBucket bucket =
+          endpointType == null ? exchangeBucket : endpointBuckets.get(endpointType);
+      return bucket == null ? null : bucket.rate;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private List<TokenBucket> bucketsFor(EndpointType endpointType) {
+    final List<TokenBucket> buckets = new ArrayList<>(2);
+    if (exchangeBucket != null) {
+      buckets.add(exchangeBucket);
+    }
+    final TokenBucket endpointBucket = endpointBuckets.get(endpointType);
+    if (endpointBucket != null) {
+      buckets.add(endpointBucket);
+    }
+    return buckets;
+  }
+
+  private static long nanosUntilAvailable(TokenBucket bucket, double weight, long now) {
+    return bucket == null ? 0 : bucket.nanosUntilAvailable(weight, now);
+  }
+
+  private static void take(TokenBucket bucket, double weight) {
+    if (bucket != null) {
+      bucket.tokens -= weight;
+    }
+  }
+
+  private TokenBucket parseBucket(String spec) {
+    try {
+      final int colon = spec.indexOf(':');
+      final double rate = Double.parseDouble(colon < 0 ? spec : spec.substring(0, colon).trim());
+      final double burst =
+          colon < 0 ? Math.max(rate, 1) : Double.parseDouble(spec.substring(colon + 1).trim());
+      if (!(rate > 0) || !(burst > 0) || Double.isInfinite(rate) || Double.isInfinite(burst)) {
+        throw new NumberFormatException("Rate and burst must be more than 0");
+      }
+      return new TokenBucket(rate, burst, nanoClock.getAsLong());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Rate limit must be <rate>[:<burst>]: " + spec, e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    lock.lock();
+    try {
+      return MoreObjects.toStringHelper(this)
+          .add("exchange", exchangeBucket)
+          .add("endpoints", endpointBuckets)
+          .add("waitingOrderRequests", waitingOrderRequests)
+          .toString();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /*
+   * Token bucket. Guarded by the limiter's lock.
+   */
+  private static final class TokenBucket {
+
+    private final double configuredRate;
+    private final double burst;
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+
+    private TokenBucket(double rate, double burst, long now) {
+      configuredRate = rate;
+      this.rate = rate;
+      this.burst = burst;
+      tokens = burst;
+      lastRefillNanos = now;
+    }
+
+    private void refill(long now) {
+      final long elapsedNanos = now - lastRefillNanos;
+      if (elapsedNanos > 0) {
+        tokens = Math.min(burst, tokens + rate * elapsedNanos / 1e9);
+        lastRefillNanos = now;
+      }
+    }
+
+    private long nanosUntilAvailable(double weight, long now) {
+      refill(now);
+      // a request heavier than the burst waits for a full bucket
+      final double needed = Math.min(weight, burst) - tokens;
+      return needed <= 0 ? 0 : Math.max(1, (long) Math.ceil(needed / rate * 1e9));
+    }
+
+    private void backOff(long now) {
+      refill(now);
+      rate = Math.max(configuredRate * MIN_RATE_FRACTION, rate / 2);
+      tokens = Math.min(tokens, 0);
+    }
+
+    private void recover(long now) {
+      if (rate < configuredRate) {
+        refill(now);
+        rate = Math.min(configuredRate, rate + configuredRate * RECOVERY_FRACTION);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("rate", rate)
+          .add("configuredRate", configuredRate)
+          .add("burst", burst)
+          .add("tokens", tokens)
+          .toString();
+    }
+  }
+}
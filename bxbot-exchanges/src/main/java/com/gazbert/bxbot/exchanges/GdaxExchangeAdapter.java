@@ -24,7 +24,6 @@
 package com.gazbert.bxbot.exchanges;
 
 import com.gazbert.bxbot.exchange.api.AuthenticationConfig;
-import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
 import com.gazbert.bxbot.exchange.api.ExchangeConfig;
 import com.gazbert.bxbot.exchange.api.OtherConfig;
 import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
@@ -37,6 +36,7 @@ import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
 import com.gazbert.bxbot.trading.api.MarketOrder;
 import com.gazbert.bxbot.trading.api.MarketOrderBook;
 import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderResult;
 import com.gazbert.bxbot.trading.api.OrderType;
 import com.gazbert.bxbot.trading.api.Ticker;
 import com.gazbert.bxbot.trading.api.TradingApi;
@@ -49,6 +49,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
@@ -58,12 +59,12 @@ import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import javax.xml.bind.DatatypeConverter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -106,13 +107,17 @@ import org.apache.logging.log4j.Logger;
  * occurs trying to connect to the exchange. A {@link TradingApiException} is thrown for
  * <em>all</em> other failures.
  *
+ * <p>Market data can also be streamed using the GDAX WebSocket feed: see {@link
+ * com.gazbert.bxbot.trading.api.StreamingTradingApi}. The order book is mirrored locally from the
+ * level2 channel.
+ *
  * @author gazbert
  * @since 1.0
  * @deprecated #120 : GDAX exchange has been superseded by Coinbase Pro: https://pro.coinbase.com/ -
  *     this adapter will be removed in next release.
  */
 @Deprecated(forRemoval = true)
-public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implements ExchangeAdapter {
+public final class GdaxExchangeAdapter extends AbstractStreamingExchangeAdapter {
 
   private static final Logger LOG = LogManager.getLogger();
 
@@ -137,12 +142,12 @@ public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implement
   private BigDecimal buyFeePercentage;
   private BigDecimal sellFeePercentage;
 
-  private String passphrase = "";
-  private String key = "";
-  private String secret = "";
+  private volatile String passphrase = "";
+  private volatile String key = "";
+  private volatile String secret = "";
 
-  private Mac mac;
-  private boolean initializedMacAuthentication = false;
+  private volatile RequestSigner requestSigner;
+  private volatile boolean initializedMacAuthentication = false;
 
   private Gson gson;
 
@@ -263,9 +268,55 @@ public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implement
     }
   }
 
+  /*
+   * GDAX cancels all open orders for a market in 1 call. It returns the ids of the cancelled
+   * orders.
+   */
+  @Override
+  public List<OrderResult> cancelAllOrders(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    try {
+      final ExchangeHttpResponse response =
+          sendAuthenticatedRequestToExchange("DELETE", "orders?product_id=" + marketId, null);
+
+      LOG.debug(() -> "Cancel All Orders response: " + response);
+
+      if (response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+        final String errorMsg = "Failed to cancel orders on exchange. Details: " + response;
+        LOG.error(errorMsg);
+        throw new TradingApiException(errorMsg);
+      }
+
+      final String[] cancelledOrderIds = gson.fromJson(response.getPayload(), String[].class);
+      final List<OrderResult> orderResults = new ArrayList<>();
+      if (cancelledOrderIds != null) {
+        for (final String orderId : cancelledOrderIds) {
+          orderResults.add(OrderResult.succeeded(orderId));
+        }
+      }
+      return orderResults;
+
+    } catch (ExchangeNetworkException | TradingApiException e) {
+      throw e;
+
+    } catch (Exception e) {
+      LOG.error(UNEXPECTED_ERROR_MSG, e);
+      throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
+    }
+  }
+
   @Override
   public List<OpenOrder> getYourOpenOrders(String marketId)
       throws TradingApiException, ExchangeNetworkException {
+    return getYourOpenOrdersForMarkets(Collections.singletonList(marketId)).get(marketId);
+  }
+
+  /*
+   * GDAX returns the open orders for all markets in 1 call.
+   */
+  @Override
+  public Map<String, List<OpenOrder>> getYourOpenOrdersForMarkets(Collection<String> marketIds)
+      throws TradingApiException, ExchangeNetworkException {
     try {
       // we use default request no-param call - only open or un-settled orders are returned.
       // As soon as an order is no longer open and settled, it will no longer appear in the default
@@ -277,10 +328,12 @@ public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implement
 
       if (response.getStatusCode() == HttpURLConnection.HTTP_OK) {
         final GdaxOrder[] gdaxOpenOrders = gson.fromJson(response.getPayload(), GdaxOrder[].class);
-        final List<OpenOrder> ordersToReturn = new ArrayList<>();
+        final Map<String, List<OpenOrder>> ordersToReturn =
+            createOpenOrdersByMarketId(marketIds);
         for (final GdaxOrder openOrder : gdaxOpenOrders) {
 
-          if (!marketId.equalsIgnoreCase(openOrder.productId)) {
+          final String marketId = findMarketId(marketIds, openOrder.productId);
+          if (marketId == null) {
             continue;
           }
 
@@ -311,7 +364,7 @@ public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implement
                   openOrder.price.multiply(openOrder.size) // total - not provided by GDAX
                   );
 
-          ordersToReturn.add(order);
+          ordersToReturn.get(marketId).add(order);
         }
         return ordersToReturn;
       } else {
@@ -467,6 +520,14 @@ public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implement
     return sellFeePercentage;
   }
 
+  @Override
+  AbstractMarketDataStream createMarketDataStream() {
+    return new GdaxMarketDataStream(
+        URI.create(GdaxMarketDataStream.WEBSOCKET_URI),
+        getConnectTimeout(),
+        RECONNECT_DELAY_MILLIS);
+  }
+
   @Override
   public String getImplName() {
     return "GDAX REST API v1";
@@ -700,6 +761,23 @@ public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implement
   //  Transport layer methods
   // --------------------------------------------------------------------------
 
+  /*
+   * Orders are placed with POST and cancelled with DELETE; orders and accounts are read with an
+   * authenticated GET.
+   */
+  @Override
+  ExchangeRateLimiter.EndpointType getEndpointType(URL url, String httpMethod) {
+    final String path = url.getPath();
+    if (path.startsWith("/orders")) {
+      return "GET".equalsIgnoreCase(httpMethod)
+          ? ExchangeRateLimiter.EndpointType.PRIVATE
+          : ExchangeRateLimiter.EndpointType.ORDER;
+    }
+    return path.startsWith("/accounts")
+        ? ExchangeRateLimiter.EndpointType.PRIVATE
+        : ExchangeRateLimiter.EndpointType.PUBLIC;
+  }
+
   private ExchangeHttpResponse sendPublicRequestToExchange(
       String apiMethod, Map<String, String> params)
       throws ExchangeNetworkException, TradingApiException {
@@ -845,9 +923,7 @@ public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implement
           timestamp + httpMethod.toUpperCase() + "/" + apiMethod + requestBody;
 
       // Sign the signature string and Base64 encode it
-      mac.reset();
-      mac.update(signatureBuilder.getBytes(StandardCharsets.UTF_8));
-      final String signature = DatatypeConverter.printBase64Binary(mac.doFinal());
+      final String signature = requestSigner.signToBase64(signatureBuilder);
 
       // Request headers required by Exchange
       final Map<String, String> requestHeaders = createHeaderParamMap();
@@ -878,9 +954,7 @@ public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implement
       // GDAX secret is in Base64 so we must decode it first.
       final byte[] decodedBase64Secret = DatatypeConverter.parseBase64Binary(secret);
 
-      final SecretKeySpec keyspec = new SecretKeySpec(decodedBase64Secret, "HmacSHA256");
-      mac = Mac.getInstance("HmacSHA256");
-      mac.init(keyspec);
+      requestSigner = RequestSigner.forHmac("HmacSHA256", decodedBase64Secret);
       initializedMacAuthentication = true;
     } catch (NoSuchAlgorithmException e) {
       final String errorMsg = "Failed to setup MAC security. HINT: Is HMAC-SHA256 installed?";
@@ -916,6 +990,9 @@ public final class GdaxExchangeAdapter extends AbstractExchangeAdapter implement
     sellFeePercentage =
         new BigDecimal(sellFeeInConfig).divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
     LOG.info(() -> "Sell fee % in BigDecimal format: " + sellFeePercentage);
+
+    setRateLimitConfig(otherConfig);
+    setCircuitBreakerConfig(otherConfig);
   }
 
   // --------------------------------------------------------------------------
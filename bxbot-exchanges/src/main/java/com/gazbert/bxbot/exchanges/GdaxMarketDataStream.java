@@ -0,0 +1,235 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketTradeImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.TickerImpl;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Streams market data from the GDAX <a href="https://docs.gdax.com/#websocket-feed">WebSocket
+ * feed</a>.
+ *
+ * <p>The order book is mirrored from the level2 channel: a snapshot followed by l2update changes.
+ * The ticker comes from the ticker channel and the trades from the matches channel.
+ *
+ * <p>The level2 messages carry no sequence number, but the matches do: trade ids are consecutive
+ * per product and sequence numbers only go up. A gap in the trade ids, or a sequence number that
+ * goes backwards, means messages have been dropped or reordered, so the stream reconnects to get a
+ * fresh snapshot.
+ *
+ * @author gazbert
+ */
+final class GdaxMarketDataStream extends AbstractMarketDataStream {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  static final String WEBSOCKET_URI = "wss://ws-feed.gdax.com";
+
+  private static final String ORDER_BOOK_TOPIC = "level2";
+  private static final String TICKER_TOPIC = "ticker";
+  private static final String TRADES_TOPIC = "matches";
+  private static final String PRODUCT_ID = "product_id";
+  private static final String TIME = "time";
+  private static final String TRADE_ID = "trade_id";
+  private static final String SEQUENCE = "sequence";
+
+  private final Map<String, Long> lastTradeIds = new ConcurrentHashMap<>();
+  private final Map<String, Long> lastSequences = new ConcurrentHashMap<>();
+
+  GdaxMarketDataStream(URI uri, int connectTimeout, long reconnectDelayMillis) {
+    super(uri, connectTimeout, reconnectDelayMillis);
+  }
+
+  @Override
+  List<String> getTopics(MarketDataChannel channel) {
+    switch (channel) {
+      case ORDER_BOOK:
+        return Collections.singletonList(ORDER_BOOK_TOPIC);
+      case TICKER:
+        return Collections.singletonList(TICKER_TOPIC);
+      default:
+        return Collections.singletonList(TRADES_TOPIC);
+    }
+  }
+
+  @Override
+  String createSubscriptionMessage(String exchangeMarketId, String topic, boolean subscribe) {
+    final JsonArray productIds = new JsonArray();
+    productIds.add(exchangeMarketId);
+    final JsonArray channels = new JsonArray();
+    channels.add(topic);
+    final JsonObject message = new JsonObject();
+    message.addProperty("type", subscribe ? "subscribe" : "unsubscribe");
+    message.add("product_ids", productIds);
+    message.add("channels", channels);
+    return message.toString();
+  }
+
+  @Override
+  void onMessage(String message) {
+    final JsonObject json = JsonParser.parseString(message).getAsJsonObject();
+    final String type = json.get("type").getAsString();
+    if ("error".equals(type)) {
+      LOG.error(() -> "GDAX market data stream error: " + message);
+      return;
+    }
+    final String marketId =
+        json.has(PRODUCT_ID) ? findMarketId(json.get(PRODUCT_ID).getAsString()) : null;
+    if (marketId == null) {
+      return;
+    }
+
+    switch (type) {
+      case "snapshot":
+        applySnapshot(marketId, json);
+        break;
+      case "l2update":
+        applyChanges(marketId, json.getAsJsonArray("changes"));
+        break;
+      case "ticker":
+        tickerUpdated(
+            marketId,
+            new TickerImpl(
+                getDecimal(json, "price"),
+                getDecimal(json, "best_bid"),
+                getDecimal(json, "best_ask"),
+                getDecimal(json, "low_24h"),
+                getDecimal(json, "high_24h"),
+                getDecimal(json, "open_24h"),
+                getDecimal(json, "volume_24h"),
+                null,
+                getTimestamp(json)));
+        break;
+      case "match":
+      case "last_match":
+        if (!isInSequence(marketId, json, "last_match".equals(type))) {
+          reconnect();
+          return;
+        }
+        // The side is the maker's side; the trade type is the taker's.
+        tradeReceived(
+            marketId,
+            new MarketTradeImpl(
+                json.get(TRADE_ID).getAsString(),
+                "sell".equals(json.get("side").getAsString()) ? OrderType.BUY : OrderType.SELL,
+                getDecimal(json, "price"),
+                getDecimal(json, "size"),
+                getTimestamp(json)));
+        break;
+      default:
+        // subscriptions, heartbeat etc.
+        break;
+    }
+  }
+
+  /*
+   * The last match is sent when the matches channel is subscribed to, and starts the sequence.
+   */
+  private boolean isInSequence(String marketId, JsonObject match, boolean lastMatch) {
+    final long tradeId = match.get(TRADE_ID).getAsLong();
+    final Long lastTradeId = lastTradeIds.put(marketId, tradeId);
+    final Long sequence = match.has(SEQUENCE) ? match.get(SEQUENCE).getAsLong() : null;
+    final Long lastSequence = sequence == null ? null : lastSequences.put(marketId, sequence);
+    if (lastMatch) {
+      return true;
+    }
+    if (lastTradeId != null && tradeId != lastTradeId + 1) {
+      LOG.warn(
+          () ->
+              "GDAX market data stream missed trades for "
+                  + marketId
+                  + ": trade id "
+                  + tradeId
+                  + " followed "
+                  + lastTradeId
+                  + ". Resyncing...");
+      return false;
+    }
+    if (lastSequence != null && sequence < lastSequence) {
+      LOG.warn(
+          () ->
+              "GDAX market data stream out of sequence for "
+                  + marketId
+                  + ": sequence "
+                  + sequence
+                  + " followed "
+                  + lastSequence
+                  + ". Resyncing...");
+      return false;
+    }
+    return true;
+  }
+
+  private void applySnapshot(String marketId, JsonObject snapshot) {
+    final LocalOrderBook orderBook = getLocalOrderBook(marketId);
+    orderBook.reset();
+    for (final JsonElement bid : snapshot.getAsJsonArray("bids")) {
+      final JsonArray level = bid.getAsJsonArray();
+      orderBook.update(
+          OrderType.BUY, level.get(0).getAsBigDecimal(), level.get(1).getAsBigDecimal());
+    }
+    for (final JsonElement ask : snapshot.getAsJsonArray("asks")) {
+      final JsonArray level = ask.getAsJsonArray();
+      orderBook.update(
+          OrderType.SELL, level.get(0).getAsBigDecimal(), level.get(1).getAsBigDecimal());
+    }
+    orderBook.markReady();
+    orderBookUpdated(marketId);
+  }
+
+  private void applyChanges(String marketId, JsonArray changes) {
+    final LocalOrderBook orderBook = getLocalOrderBook(marketId);
+    for (final JsonElement change : changes) {
+      final JsonArray level = change.getAsJsonArray();
+      orderBook.update(
+          "buy".equals(level.get(0).getAsString()) ? OrderType.BUY : OrderType.SELL,
+          level.get(1).getAsBigDecimal(),
+          level.get(2).getAsBigDecimal());
+    }
+    orderBookUpdated(marketId);
+  }
+
+  private static BigDecimal getDecimal(JsonObject json, String name) {
+    final JsonElement value = json.get(name);
+    return value == null || value.isJsonNull() ? null : value.getAsBigDecimal();
+  }
+
+  private static Long getTimestamp(JsonObject json) {
+    return json.has(TIME) ? Instant.parse(json.get(TIME).getAsString()).toEpochMilli() : null;
+  }
+}
@@ -24,7 +24,6 @@
 package com.gazbert.bxbot.exchanges;
 
 import com.gazbert.bxbot.exchange.api.AuthenticationConfig;
-import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
 import com.gazbert.bxbot.exchange.api.ExchangeConfig;
 import com.gazbert.bxbot.exchange.api.OtherConfig;
 import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
@@ -54,13 +53,12 @@ import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.xml.bind.DatatypeConverter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -107,8 +105,7 @@ import org.apache.logging.log4j.Logger;
  * @author gazbert
  * @since 1.0
  */
-public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
-    implements ExchangeAdapter {
+public final class GeminiExchangeAdapter extends AbstractAsyncExchangeAdapter {
 
   private static final Logger LOG = LogManager.getLogger();
 
@@ -153,12 +150,12 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
   private BigDecimal buyFeePercentage;
   private BigDecimal sellFeePercentage;
 
-  private String key = "";
-  private String secret = "";
+  private volatile String key = "";
+  private volatile String secret = "";
 
-  private Mac mac;
-  private boolean initializedMacAuthentication = false;
-  private long nonce = 0;
+  private volatile RequestSigner requestSigner;
+  private volatile boolean initializedMacAuthentication = false;
+  private volatile NonceService nonceService;
 
   private Gson gson;
 
@@ -169,7 +166,6 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
     setNetworkConfig(config);
     setOtherConfig(config);
 
-    nonce = System.currentTimeMillis() / 1000;
     initSecureMessageLayer();
     initGson();
   }
@@ -274,7 +270,8 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
       return true;
 
     } catch (ExchangeNetworkException | TradingApiException e) {
-      if (e.getCause() != null && e.getCause().getMessage().contains("400")) {
+      final Throwable cause = e.getCause();
+      if (cause != null && cause.getMessage() != null && cause.getMessage().contains("400")) {
         final String errorMsg =
             "Failed to cancel order on exchange. Did not recognise Order Id: " + orderId;
         LOG.error(errorMsg, e);
@@ -292,6 +289,15 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
   @Override
   public List<OpenOrder> getYourOpenOrders(String marketId)
       throws TradingApiException, ExchangeNetworkException {
+    return getYourOpenOrdersForMarkets(Collections.singletonList(marketId)).get(marketId);
+  }
+
+  /*
+   * Gemini returns the open orders for all markets in 1 call.
+   */
+  @Override
+  public Map<String, List<OpenOrder>> getYourOpenOrdersForMarkets(Collection<String> marketIds)
+      throws TradingApiException, ExchangeNetworkException {
     try {
       final ExchangeHttpResponse response = sendAuthenticatedRequestToExchange("orders", null);
 
@@ -300,10 +306,11 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
       final GeminiOpenOrders geminiOpenOrders =
           gson.fromJson(response.getPayload(), GeminiOpenOrders.class);
 
-      final List<OpenOrder> ordersToReturn = new ArrayList<>();
+      final Map<String, List<OpenOrder>> ordersToReturn = createOpenOrdersByMarketId(marketIds);
       for (final GeminiOpenOrder geminiOpenOrder : geminiOpenOrders) {
 
-        if (!marketId.equalsIgnoreCase(geminiOpenOrder.symbol)) {
+        final String marketId = findMarketId(marketIds, geminiOpenOrder.symbol);
+        if (marketId == null) {
           continue;
         }
 
@@ -334,7 +341,7 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
                     geminiOpenOrder.originalAmount) // total - not provided by Gemini :-(
                 );
 
-        ordersToReturn.add(order);
+        ordersToReturn.get(marketId).add(order);
       }
       return ordersToReturn;
 
@@ -639,6 +646,18 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
   //  Transport layer
   // --------------------------------------------------------------------------
 
+  /*
+   * order/new and order/cancel place and cancel orders; the other POSTs are account data.
+   */
+  @Override
+  ExchangeRateLimiter.EndpointType getEndpointType(URL url, String httpMethod) {
+    final String path = url.getPath();
+    if (path.endsWith("/order/new") || path.endsWith("/order/cancel")) {
+      return ExchangeRateLimiter.EndpointType.ORDER;
+    }
+    return super.getEndpointType(url, httpMethod);
+  }
+
   private ExchangeHttpResponse sendPublicRequestToExchange(String apiMethod)
       throws ExchangeNetworkException, TradingApiException {
     try {
@@ -712,33 +731,39 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
       // Add the API call method
       params.put("request", "/" + GEMINI_API_VERSION + "/" + apiMethod);
 
-      // nonce is required by Gemini in every request
-      params.put("nonce", Long.toString(nonce));
-      nonce++;
-
-      // JSON-ify the param dictionary
-      final String paramsInJson = gson.toJson(params);
-
-      // Need to base64 encode payload as per API
-      final String base64payload =
-          DatatypeConverter.printBase64Binary(paramsInJson.getBytes(StandardCharsets.UTF_8));
-
-      // Create the signature
-      mac.reset(); // force reset
-      mac.update(base64payload.getBytes(StandardCharsets.UTF_8));
-      final String signature = toHex(mac.doFinal()).toLowerCase();
-
-      // Request headers required by Exchange
-      final Map<String, String> requestHeaders = createHeaderParamMap();
-      requestHeaders.put("X-GEMINI-APIKEY", key);
-      requestHeaders.put("X-GEMINI-PAYLOAD", base64payload);
-      requestHeaders.put("X-GEMINI-SIGNATURE", signature);
-
-      // payload is JSON for this exchange
-      requestHeaders.put("Content-Type", "application/json");
-
-      final URL url = new URL(AUTHENTICATED_API_URL + apiMethod);
-      return makeNetworkRequest(url, "POST", paramsInJson, requestHeaders);
+      // Gemini rejects a nonce that has not increased since the last one it saw, so a request
+      // that loses the race to the exchange is signed again with a new nonce.
+      for (int attempt = 1; ; attempt++) {
+        // nonce is required by Gemini in every request
+        params.put("nonce", Long.toString(nonceService.next()));
+
+        // JSON-ify the param dictionary
+        final String paramsInJson = gson.toJson(params);
+
+        // Need to base64 encode payload as per API
+        final String base64payload = requestSigner.toBase64(paramsInJson);
+
+        // Create the signature
+        final String signature = requestSigner.signToHex(base64payload, false);
+
+        // Request headers required by Exchange
+        final Map<String, String> requestHeaders = createHeaderParamMap();
+        requestHeaders.put("X-GEMINI-APIKEY", key);
+        requestHeaders.put("X-GEMINI-PAYLOAD", base64payload);
+        requestHeaders.put("X-GEMINI-SIGNATURE", signature);
+
+        // payload is JSON for this exchange
+        requestHeaders.put("Content-Type", "application/json");
+
+        final URL url = new URL(AUTHENTICATED_API_URL + apiMethod);
+        try {
+          return makeNetworkRequest(url, "POST", paramsInJson, requestHeaders);
+        } catch (TradingApiException e) {
+          if (!shouldResendWithNewNonce(e, attempt)) {
+            throw e;
+          }
+        }
+      }
 
     } catch (MalformedURLException e) {
       final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
@@ -747,14 +772,6 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
     }
   }
 
-  private String toHex(byte[] byteArrayToConvert) {
-    final StringBuilder hexString = new StringBuilder();
-    for (final byte aByte : byteArrayToConvert) {
-      hexString.append(String.format("%02x", aByte & 0xff));
-    }
-    return hexString.toString();
-  }
-
   /*
    * Initialises the secure messaging layer.
    * Sets up the MAC to safeguard the data we send to the exchange.
@@ -763,10 +780,8 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
    */
   private void initSecureMessageLayer() {
     try {
-      final SecretKeySpec keyspec =
-          new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA384");
-      mac = Mac.getInstance("HmacSHA384");
-      mac.init(keyspec);
+      requestSigner =
+          RequestSigner.forHmac("HmacSHA384", secret.getBytes(StandardCharsets.UTF_8));
       initializedMacAuthentication = true;
     } catch (NoSuchAlgorithmException e) {
       final String errorMsg = "Failed to setup MAC security. HINT: Is HMAC-SHA384 installed?";
@@ -801,6 +816,10 @@ public final class GeminiExchangeAdapter extends AbstractExchangeAdapter
     sellFeePercentage =
         new BigDecimal(sellFeeInConfig).divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
     LOG.info(() -> "Sell fee % in BigDecimal format: " + sellFeePercentage);
+
+    setRateLimitConfig(otherConfig);
+    setCircuitBreakerConfig(otherConfig);
+    nonceService = createNonceService(otherConfig);
   }
 
   // --------------------------------------------------------------------------
@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.google.common.base.MoreObjects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request metrics for an {@link ExchangeHttpTransport}.
+ *
+ * <p>It counts the requests in flight per host and their peak, the requests sent, the responses
+ * served over HTTP/2, failures and mean latency. These are counted by the transport as requests go
+ * through it; they are not the connection pool's state. The JDK HttpClient does not expose how
+ * many pooled connections are active or idle, and in-flight requests can share a connection over
+ * HTTP/2.
+ *
+ * @author gazbert
+ */
+final class HttpRequestMetrics {
+
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder failedRequestCount = new LongAdder();
+  private final LongAdder http2ResponseCount = new LongAdder();
+  private final LongAdder totalLatencyNanos = new LongAdder();
+  private final AtomicInteger inFlightRequests = new AtomicInteger();
+  private final AtomicInteger peakInFlightRequests = new AtomicInteger();
+  private final Map<String, AtomicInteger> inFlightRequestsByHost = new ConcurrentHashMap<>();
+
+  void requestStarted(String host) {
+    inFlightRequestsByHost.computeIfAbsent(host, h -> new AtomicInteger()).incrementAndGet();
+    peakInFlightRequests.accumulateAndGet(inFlightRequests.incrementAndGet(), Math::max);
+  }
+
+  void requestCompleted(String host, long latencyNanos, boolean overHttp2, boolean failed) {
+    inFlightRequestsByHost.get(host).decrementAndGet();
+    inFlightRequests.decrementAndGet();
+    requestCount.increment();
+    totalLatencyNanos.add(latencyNanos);
+    if (overHttp2) {
+      http2ResponseCount.increment();
+    }
+    if (failed) {
+      failedRequestCount.increment();
+    }
+  }
+
+  long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  long getFailedRequestCount() {
+    return failedRequestCount.sum();
+  }
+
+  long getHttp2ResponseCount() {
+    return http2ResponseCount.sum();
+  }
+
+  int getInFlightRequests() {
+    return inFlightRequests.get();
+  }
+
+  int getInFlightRequests(String host) {
+    final AtomicInteger inFlight = inFlightRequestsByHost.get(host);
+    return inFlight == null ? 0 : inFlight.get();
+  }
+
+  int getPeakInFlightRequests() {
+    return peakInFlightRequests.get();
+  }
+
+  long getMeanLatencyMillis() {
+    final long requests = requestCount.sum();
+    return requests == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.sum() / requests);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("requestCount", getRequestCount())
+        .add("failedRequestCount", getFailedRequestCount())
+        .add("http2ResponseCount", getHttp2ResponseCount())
+        .add("inFlightRequests", getInFlightRequests())
+        .add("peakInFlightRequests", getPeakInFlightRequests())
+        .add("inFlightRequestsByHost", inFlightRequestsByHost)
+        .add("meanLatencyMillis", getMeanLatencyMillis())
+        .toString();
+  }
+}
@@ -24,7 +24,6 @@
 package com.gazbert.bxbot.exchanges;
 
 import com.gazbert.bxbot.exchange.api.AuthenticationConfig;
-import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
 import com.gazbert.bxbot.exchange.api.ExchangeConfig;
 import com.gazbert.bxbot.exchange.api.OtherConfig;
 import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
@@ -53,7 +52,6 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.time.Instant;
@@ -62,9 +60,6 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.xml.bind.DatatypeConverter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -117,7 +112,7 @@ import org.apache.logging.log4j.Logger;
  * @author gazbert
  * @since 1.0
  */
-public final class ItBitExchangeAdapter extends AbstractExchangeAdapter implements ExchangeAdapter {
+public final class ItBitExchangeAdapter extends AbstractAsyncExchangeAdapter {
 
   private static final Logger LOG = LogManager.getLogger();
 
@@ -155,13 +150,13 @@ public final class ItBitExchangeAdapter extends AbstractExchangeAdapter implemen
   private String walletId;
   private boolean keepAliveDuringMaintenance;
 
-  private String userId = "";
-  private String key = "";
-  private String secret = "";
+  private volatile String userId = "";
+  private volatile String key = "";
+  private volatile String secret = "";
 
-  private Mac mac;
-  private boolean initializedMacAuthentication = false;
-  private long nonce = 0;
+  private volatile RequestSigner requestSigner;
+  private volatile boolean initializedMacAuthentication = false;
+  private volatile NonceService nonceService;
 
   private Gson gson;
 
@@ -172,7 +167,6 @@ public final class ItBitExchangeAdapter extends AbstractExchangeAdapter implemen
     setNetworkConfig(config);
     setOtherConfig(config);
 
-    nonce = System.currentTimeMillis() / 1000;
     initSecureMessageLayer();
     initGson();
   }
@@ -771,6 +765,21 @@ public final class ItBitExchangeAdapter extends AbstractExchangeAdapter implemen
   //  Transport layer
   // --------------------------------------------------------------------------
 
+  /*
+   * Orders are placed with POST and cancelled with DELETE; wallets and their orders are read with
+   * an authenticated GET.
+   */
+  @Override
+  ExchangeRateLimiter.EndpointType getEndpointType(URL url, String httpMethod) {
+    final String path = url.getPath();
+    if (path.contains("/" + WALLETS_RESOURCE)) {
+      return path.contains("/orders") && !"GET".equalsIgnoreCase(httpMethod)
+          ? ExchangeRateLimiter.EndpointType.ORDER
+          : ExchangeRateLimiter.EndpointType.PRIVATE;
+    }
+    return ExchangeRateLimiter.EndpointType.PUBLIC;
+  }
+
   private ExchangeHttpResponse sendPublicRequestToExchange(String apiMethod)
       throws ExchangeNetworkException, TradingApiException {
     try {
@@ -800,12 +809,6 @@ public final class ItBitExchangeAdapter extends AbstractExchangeAdapter implemen
     }
 
     try {
-      // Generate new UNIX time in secs
-      final String unixTime = Long.toString(System.currentTimeMillis());
-
-      // increment nonce for use in this call
-      nonce++;
-
       if (params == null) {
         // create empty map for non-param API calls
         params = createRequestParamMap();
@@ -877,64 +880,67 @@ public final class ItBitExchangeAdapter extends AbstractExchangeAdapter implemen
               "Don't know how to build secure [" + httpMethod + "] request!");
       }
 
-      // Add the nonce
-      signatureParamList.add(Long.toString(nonce));
-
-      // Add the UNIX time
-      signatureParamList.add(unixTime);
-
-      /*
-       * Convert that array to JSON, encoded as UTF-8. The resulting JSON should contain no
-       * spaces or other whitespace characters. For example, a valid JSON-encoded array might look
-       * like:
-       * '["GET","https://api.itbit.com/v1/wallets/7e037345-1288-4c39-12fe-d0f99a475a98","","5",
-       * "1405385860202"]'
-       */
-      final String signatureParamsInJson = gson.toJson(signatureParamList);
-      LOG.debug(() -> "Signature params in JSON: " + signatureParamsInJson);
-
-      // Prepend the string version of the nonce to the JSON-encoded array string
-      final String noncePrependedToJson = nonce + signatureParamsInJson;
-
-      // Construct the SHA-256 hash of the noncePrependedToJson. Call this the message hash.
-      final MessageDigest md = MessageDigest.getInstance("SHA-256");
-      md.update(noncePrependedToJson.getBytes(StandardCharsets.UTF_8));
-      final byte[] messageHash = md.digest();
-
-      // Prepend the UTF-8 encoded request URL to the message hash.
-      // Generate the SHA-512 HMAC of the prependRequestUrlToMsgHash using your API secret as the
-      // key.
-      mac.reset(); // force reset
-      mac.update(invocationUrl.getBytes(StandardCharsets.UTF_8));
-      mac.update(messageHash);
-
-      final String signature = DatatypeConverter.printBase64Binary(mac.doFinal());
-
-      // Request headers required by Exchange
-      final Map<String, String> requestHeaders = createHeaderParamMap();
-      requestHeaders.put("Content-Type", "application/json");
-
-      // Add Authorization header
-      // Generate the authorization header by concatenating the client key with a colon separator
-      // (‘:’)
-      // and the signature. The resulting string should look like "clientkey:signature".
-      requestHeaders.put("Authorization", key + ":" + signature);
-
-      requestHeaders.put("X-Auth-Timestamp", unixTime);
-      requestHeaders.put("X-Auth-Nonce", Long.toString(nonce));
-
-      final URL url = new URL(invocationUrl);
-      return makeNetworkRequest(url, httpMethod, requestBody, requestHeaders);
+      // itBit rejects a nonce that is not bigger than the last one it saw, so a request that
+      // loses the race to the exchange is signed again with a new nonce.
+      for (int attempt = 1; ; attempt++) {
+        // Generate new UNIX time in secs
+        final String unixTime = Long.toString(System.currentTimeMillis());
+
+        // get the next nonce for use in this call
+        final long nonce = nonceService.next();
+
+        // Add the nonce and the UNIX time
+        final List<String> signedParamList = new ArrayList<>(signatureParamList);
+        signedParamList.add(Long.toString(nonce));
+        signedParamList.add(unixTime);
+
+        /*
+         * Convert that array to JSON, encoded as UTF-8. The resulting JSON should contain no
+         * spaces or other whitespace characters. For example, a valid JSON-encoded array might look
+         * like:
+         * '["GET","https://api.itbit.com/v1/wallets/7e037345-1288-4c39-12fe-d0f99a475a98","","5",
+         * "1405385860202"]'
+         */
+        final String signatureParamsInJson = gson.toJson(signedParamList);
+        LOG.debug(() -> "Signature params in JSON: " + signatureParamsInJson);
+
+        // Prepend the string version of the nonce to the JSON-encoded array string
+        final String noncePrependedToJson = nonce + signatureParamsInJson;
+
+        // Construct the SHA-256 hash of the noncePrependedToJson. Call this the message hash.
+        // Prepend the UTF-8 encoded request URL to the message hash.
+        // Generate the SHA-512 HMAC of the prependRequestUrlToMsgHash using your API secret as the
+        // key.
+        final String signature =
+            requestSigner.signWithSha256ToBase64(invocationUrl, noncePrependedToJson);
+
+        // Request headers required by Exchange
+        final Map<String, String> requestHeaders = createHeaderParamMap();
+        requestHeaders.put("Content-Type", "application/json");
+
+        // Add Authorization header
+        // Generate the authorization header by concatenating the client key with a colon separator
+        // (‘:’)
+        // and the signature. The resulting string should look like "clientkey:signature".
+        requestHeaders.put("Authorization", key + ":" + signature);
+
+        requestHeaders.put("X-Auth-Timestamp", unixTime);
+        requestHeaders.put("X-Auth-Nonce", Long.toString(nonce));
+
+        final URL url = new URL(invocationUrl);
+        try {
+          return makeNetworkRequest(url, httpMethod, requestBody, requestHeaders);
+        } catch (TradingApiException e) {
+          if (!shouldResendWithNewNonce(e, attempt)) {
+            throw e;
+          }
+        }
+      }
 
     } catch (MalformedURLException e) {
       final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
       LOG.error(errorMsg, e);
       throw new TradingApiException(errorMsg, e);
-
-    } catch (NoSuchAlgorithmException e) {
-      final String errorMsg = "Failed to create SHA-256 digest when building message signature.";
-      LOG.error(errorMsg, e);
-      throw new TradingApiException(errorMsg, e);
     }
   }
 
@@ -946,10 +952,8 @@ public final class ItBitExchangeAdapter extends AbstractExchangeAdapter implemen
    */
   private void initSecureMessageLayer() {
     try {
-      final SecretKeySpec keyspec =
-          new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
-      mac = Mac.getInstance("HmacSHA512");
-      mac.init(keyspec);
+      requestSigner =
+          RequestSigner.forHmac("HmacSHA512", secret.getBytes(StandardCharsets.UTF_8));
       initializedMacAuthentication = true;
     } catch (NoSuchAlgorithmException e) {
       final String errorMsg = "Failed to setup MAC security. HINT: Is HMAC-SHA512 installed?";
@@ -994,6 +998,10 @@ public final class ItBitExchangeAdapter extends AbstractExchangeAdapter implemen
     } else {
       LOG.info(() -> KEEP_ALIVE_DURING_MAINTENANCE_PROPERTY_NAME + " is not set in exchange.yaml");
     }
+
+    setRateLimitConfig(otherConfig);
+    setCircuitBreakerConfig(otherConfig);
+    nonceService = createNonceService(otherConfig);
   }
 
   // --------------------------------------------------------------------------
@@ -0,0 +1,240 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.exchanges.AbstractExchangeAdapter.ExchangeHttpResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exchange HTTP transport built on the JDK {@link HttpClient}.
+ *
+ * <p>The client keeps a pool of connections per host and reuses them across requests, so the TCP
+ * connect and TLS handshake are only paid when a new connection is needed. It negotiates HTTP/2
+ * with exchanges that support it and falls back to HTTP/1.1 for those that don't. The pool can be
+ * tuned using the standard {@code jdk.httpclient.connectionPoolSize} and {@code
+ * jdk.httpclient.keepalive.timeout} system properties.
+ *
+ * <p>The connect timeout applies to opening a new connection. The read timeout is the time allowed
+ * to wait for the response headers once the request has been sent, and then for each read of the
+ * response body, so an exchange that stalls part way through a response fails fast.
+ *
+ * <p>The clients are shared by all the transports with the same connect timeout, so a bot trading
+ * on several exchanges runs 1 connection pool and 1 selector thread, not 1 per exchange.
+ *
+ * @author gazbert
+ */
+final class JdkHttpClientTransport implements ExchangeHttpTransport {
+
+  private static final String CONTENT_TYPE_HEADER = "Content-Type";
+  private static final String FORM_URL_ENCODED_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+  private static final Map<Integer, HttpClient> SHARED_HTTP_CLIENTS = new ConcurrentHashMap<>();
+
+  private final HttpClient httpClient;
+  private final Duration readTimeout;
+  private final HttpRequestMetrics metrics = new HttpRequestMetrics();
+
+  JdkHttpClientTransport(int connectTimeoutInSecs, int readTimeoutInSecs) {
+    readTimeout = Duration.ofSeconds(readTimeoutInSecs);
+    httpClient = getSharedHttpClient(connectTimeoutInSecs);
+  }
+
+  /**
+   * Returns the HTTP client shared by everything that uses the given connect timeout. It is
+   * created the first time it is asked for.
+   *
+   * @param connectTimeoutInSecs the connect timeout in seconds.
+   * @return the shared HTTP client.
+   */
+  static HttpClient getSharedHttpClient(int connectTimeoutInSecs) {
+    return SHARED_HTTP_CLIENTS.computeIfAbsent(
+        connectTimeoutInSecs,
+        timeout ->
+            HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(timeout))
+                .build());
+  }
+
+  @Override
+  public ExchangeHttpResponse send(
+      URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+      throws IOException, InterruptedException {
+
+    final HttpRequest request = createRequest(url, httpMethod, postData, requestHeaders);
+    final String host = url.getHost();
+    final long startTime = System.nanoTime();
+    boolean overHttp2 = false;
+    boolean failed = true;
+    metrics.requestStarted(host);
+    try {
+      final HttpResponse<InputStream> response =
+          httpClient.send(request, BodyHandlers.ofInputStream());
+      final long headersReceivedAt = System.nanoTime();
+      overHttp2 = response.version() == HttpClient.Version.HTTP_2;
+      final String body;
+      try (InputStream in = new ReadTimeoutInputStream(response.body(), readTimeout)) {
+        body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+      final ExchangeHttpResponse exchangeResponse =
+          new ExchangeHttpResponse(
+              response.statusCode(), getReasonPhrase(response.statusCode()), body);
+      exchangeResponse.setTimes(startTime, headersReceivedAt, System.nanoTime());
+      failed = false;
+      return exchangeResponse;
+    } finally {
+      metrics.requestCompleted(host, System.nanoTime() - startTime, overHttp2, failed);
+    }
+  }
+
+  /*
+   * The latency recorded in the metrics is the time to the response headers; the body is read
+   * afterwards by the caller, and timed when the caller closes the response. The read timeout
+   * still applies to each read the caller makes, so a stalled stream doesn't block the parser.
+   */
+  @Override
+  public ExchangeHttpResponse sendStreamed(
+      URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+      throws IOException, InterruptedException {
+
+    final HttpRequest request = createRequest(url, httpMethod, postData, requestHeaders);
+    final String host = url.getHost();
+    final long startTime = System.nanoTime();
+    boolean overHttp2 = false;
+    boolean failed = true;
+    metrics.requestStarted(host);
+    try {
+      final HttpResponse<InputStream> response =
+          httpClient.send(request, BodyHandlers.ofInputStream());
+      final long headersReceivedAt = System.nanoTime();
+      overHttp2 = response.version() == HttpClient.Version.HTTP_2;
+      final ExchangeHttpResponse exchangeResponse =
+          new ExchangeHttpResponse(
+              response.statusCode(),
+              getReasonPhrase(response.statusCode()),
+              new ReadTimeoutInputStream(response.body(), readTimeout));
+      if (response.statusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+        exchangeResponse.getPayload(); // read in full for the error report
+        exchangeResponse.setTimes(startTime, headersReceivedAt, System.nanoTime());
+      } else {
+        exchangeResponse.setTimes(startTime, headersReceivedAt, 0);
+      }
+      failed = false;
+      return exchangeResponse;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      metrics.requestCompleted(host, System.nanoTime() - startTime, overHttp2, failed);
+    }
+  }
+
+  @Override
+  public HttpRequestMetrics getRequestMetrics() {
+    return metrics;
+  }
+
+  private HttpRequest createRequest(
+      URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+      throws MalformedURLException {
+    final HttpRequest.Builder requestBuilder =
+        HttpRequest.newBuilder(toUri(url)).timeout(readTimeout);
+    for (final Map.Entry<String, String> requestHeader : requestHeaders.entrySet()) {
+      requestBuilder.setHeader(requestHeader.getKey(), requestHeader.getValue());
+    }
+
+    BodyPublisher body = BodyPublishers.noBody();
+    if (httpMethod.equalsIgnoreCase("POST") && postData != null) {
+      body = BodyPublishers.ofString(postData, StandardCharsets.UTF_8);
+      if (!containsHeader(requestHeaders, CONTENT_TYPE_HEADER)) {
+        // Same default as HttpURLConnection - some adapters rely on it.
+        requestBuilder.setHeader(CONTENT_TYPE_HEADER, FORM_URL_ENCODED_CONTENT_TYPE);
+      }
+    }
+    return requestBuilder.method(httpMethod.toUpperCase(Locale.ENGLISH), body).build();
+  }
+
+  private static URI toUri(URL url) throws MalformedURLException {
+    try {
+      return url.toURI();
+    } catch (URISyntaxException e) {
+      final MalformedURLException malformedUrlException = new MalformedURLException(e.getMessage());
+      malformedUrlException.initCause(e);
+      throw malformedUrlException;
+    }
+  }
+
+  private static boolean containsHeader(Map<String, String> requestHeaders, String headerName) {
+    return requestHeaders.keySet().stream().anyMatch(headerName::equalsIgnoreCase);
+  }
+
+  /*
+   * HTTP/2 has no reason phrase, so the client doesn't give us one. We fill in the common ones for
+   * the logs.
+   */
+  private static String getReasonPhrase(int statusCode) {
+    switch (statusCode) {
+      case 200:
+        return "OK";
+      case 400:
+        return "Bad Request";
+      case 401:
+        return "Unauthorized";
+      case 403:
+        return "Forbidden";
+      case 404:
+        return "Not Found";
+      case 429:
+        return "Too Many Requests";
+      case 500:
+        return "Internal Server Error";
+      case 502:
+        return "Bad Gateway";
+      case 503:
+        return "Service Unavailable";
+      case 504:
+        return "Gateway Timeout";
+      default:
+        return "";
+    }
+  }
+}
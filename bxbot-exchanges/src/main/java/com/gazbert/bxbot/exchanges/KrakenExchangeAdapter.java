@@ -24,17 +24,14 @@
 package com.gazbert.bxbot.exchanges;
 
 import com.gazbert.bxbot.exchange.api.AuthenticationConfig;
-import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
 import com.gazbert.bxbot.exchange.api.ExchangeConfig;
 import com.gazbert.bxbot.exchange.api.OtherConfig;
 import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
-import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderBookImpl;
-import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
 import com.gazbert.bxbot.exchanges.trading.api.impl.OpenOrderImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.PriceLevelOrderBook;
 import com.gazbert.bxbot.exchanges.trading.api.impl.TickerImpl;
 import com.gazbert.bxbot.trading.api.BalanceInfo;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
-import com.gazbert.bxbot.trading.api.MarketOrder;
 import com.gazbert.bxbot.trading.api.MarketOrderBook;
 import com.gazbert.bxbot.trading.api.OpenOrder;
 import com.gazbert.bxbot.trading.api.OrderType;
@@ -50,29 +47,32 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -122,11 +122,14 @@ import org.apache.logging.log4j.Logger;
  * occurs trying to connect to the exchange. A {@link TradingApiException} is thrown for
  * <em>all</em> other failures.
  *
+ * <p>Market data can also be streamed using the Kraken WebSocket API: see {@link
+ * com.gazbert.bxbot.trading.api.StreamingTradingApi}. The order book is mirrored locally from the
+ * book channel.
+ *
  * @author gazbert
  * @since 1.0
  */
-public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
-    implements ExchangeAdapter {
+public final class KrakenExchangeAdapter extends AbstractStreamingExchangeAdapter {
 
   private static final Logger LOG = LogManager.getLogger();
 
@@ -173,18 +176,19 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
 
   private static final int DECIMAL_ROUNDING_PRECISION = 1;
 
-  private long nonce = 0;
+  private volatile NonceService nonceService;
 
   private BigDecimal buyFeePercentage;
   private BigDecimal sellFeePercentage;
 
   private boolean keepAliveDuringMaintenance;
+  private int orderBookDepth = OrderBookJsonReader.FULL_DEPTH;
 
-  private String key = "";
-  private String secret = "";
+  private volatile String key = "";
+  private volatile String secret = "";
 
-  private Mac mac;
-  private boolean initializedMacAuthentication = false;
+  private volatile RequestSigner requestSigner;
+  private volatile boolean initializedMacAuthentication = false;
 
   private Gson gson;
 
@@ -195,7 +199,6 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
     setNetworkConfig(config);
     setOtherConfig(config);
 
-    nonce = System.currentTimeMillis() / 1000;
     initSecureMessageLayer();
     initGson();
   }
@@ -209,44 +212,38 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
   public MarketOrderBook getMarketOrders(String marketId)
       throws TradingApiException, ExchangeNetworkException {
 
-    ExchangeHttpResponse response;
-
     try {
       final Map<String, String> params = createRequestParamMap();
       params.put("pair", marketId);
 
-      response = sendPublicRequestToExchange("Depth", params);
-      LOG.debug(() -> "Market Orders response: " + response);
-
-      if (response.getStatusCode() == HttpURLConnection.HTTP_OK) {
-        final Type resultType =
-            new TypeToken<KrakenResponse<KrakenMarketOrderBookResult>>() {}.getType();
-        final KrakenResponse krakenResponse = gson.fromJson(response.getPayload(), resultType);
+      final ExchangeHttpResponse response = streamPublicRequestToExchange("Depth", params);
+      try {
+        LOG.debug(() -> "Market Orders response: " + response);
 
-        final List errors = krakenResponse.error;
-        if (errors == null || errors.isEmpty()) {
-          return adaptKrakenOrderBook(krakenResponse, marketId);
+        if (response.getStatusCode() == HttpURLConnection.HTTP_OK) {
+          return readKrakenOrderBook(response, marketId);
 
         } else {
-          if (isExchangeUndergoingMaintenance(response) && keepAliveDuringMaintenance) {
-            LOG.warn(() -> UNDER_MAINTENANCE_WARNING_MESSAGE);
-            throw new ExchangeNetworkException(UNDER_MAINTENANCE_WARNING_MESSAGE);
-          }
-
           final String errorMsg = FAILED_TO_GET_MARKET_ORDERS + response;
           LOG.error(errorMsg);
           throw new TradingApiException(errorMsg);
         }
-
-      } else {
-        final String errorMsg = FAILED_TO_GET_MARKET_ORDERS + response;
-        LOG.error(errorMsg);
-        throw new TradingApiException(errorMsg);
+      } finally {
+        response.close();
       }
 
     } catch (ExchangeNetworkException | TradingApiException e) {
       throw e;
 
+    } catch (MalformedJsonException e) {
+      LOG.error(UNEXPECTED_ERROR_MSG, e);
+      throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
+
+    } catch (IOException e) {
+      final String errorMsg = FAILED_TO_GET_MARKET_ORDERS + e.getMessage();
+      LOG.error(errorMsg, e);
+      throw new ExchangeNetworkException(errorMsg, e);
+
     } catch (Exception e) {
       LOG.error(UNEXPECTED_ERROR_MSG, e);
       throw new TradingApiException(UNEXPECTED_ERROR_MSG, e);
@@ -256,6 +253,15 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
   @Override
   public List<OpenOrder> getYourOpenOrders(String marketId)
       throws TradingApiException, ExchangeNetworkException {
+    return getYourOpenOrdersForMarkets(Collections.singletonList(marketId)).get(marketId);
+  }
+
+  /*
+   * Kraken returns the open orders for all markets in 1 call.
+   */
+  @Override
+  public Map<String, List<OpenOrder>> getYourOpenOrdersForMarkets(Collection<String> marketIds)
+      throws TradingApiException, ExchangeNetworkException {
 
     ExchangeHttpResponse response;
 
@@ -270,7 +276,7 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
 
         final List errors = krakenResponse.error;
         if (errors == null || errors.isEmpty()) {
-          return adaptKrakenOpenOrders(krakenResponse, marketId);
+          return adaptKrakenOpenOrders(krakenResponse, marketIds);
 
         } else {
           if (isExchangeUndergoingMaintenance(response) && keepAliveDuringMaintenance) {
@@ -535,6 +541,14 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
     return sellFeePercentage;
   }
 
+  @Override
+  AbstractMarketDataStream createMarketDataStream() {
+    return new KrakenMarketDataStream(
+        URI.create(KrakenMarketDataStream.WEBSOCKET_URI),
+        getConnectTimeout(),
+        RECONNECT_DELAY_MILLIS);
+  }
+
   @Override
   public String getImplName() {
     return "Kraken API v1";
@@ -635,12 +649,6 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
     }
   }
 
-  /** GSON class that wraps Depth API call result - the Market Order Book. */
-  private static class KrakenMarketOrderBookResult extends HashMap<String, KrakenOrderBook> {
-
-    private static final long serialVersionUID = -4913711010647027721L;
-  }
-
   /** GSON class that wraps a Balance API call result. */
   private static class KrakenBalanceResult extends HashMap<String, BigDecimal> {
 
@@ -768,27 +776,6 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
     }
   }
 
-  /** GSON class for a Market Order Book. */
-  private static class KrakenOrderBook {
-
-    List<KrakenMarketOrder> bids;
-    List<KrakenMarketOrder> asks;
-
-    @Override
-    public String toString() {
-      return MoreObjects.toStringHelper(this).add("bids", bids).add("asks", asks).toString();
-    }
-  }
-
-  /**
-   * GSON class for holding Market Orders. First element in array is price, second element is
-   * amount, 3rd is UNIX time.
-   */
-  private static class KrakenMarketOrder extends ArrayList<BigDecimal> {
-
-    private static final long serialVersionUID = -4959711260742077759L;
-  }
-
   /**
    * Custom GSON Deserializer for Ticker API call result.
    *
@@ -879,9 +866,39 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
   //  Transport layer methods
   // --------------------------------------------------------------------------
 
+  /*
+   * AddOrder and CancelOrder place and cancel orders; the rest of the private API is account data.
+   */
+  @Override
+  ExchangeRateLimiter.EndpointType getEndpointType(URL url, String httpMethod) {
+    final String path = url.getPath();
+    if (path.endsWith("/AddOrder") || path.endsWith("/CancelOrder")) {
+      return ExchangeRateLimiter.EndpointType.ORDER;
+    }
+    return path.contains(KRAKEN_PRIVATE_PATH)
+        ? ExchangeRateLimiter.EndpointType.PRIVATE
+        : ExchangeRateLimiter.EndpointType.PUBLIC;
+  }
+
   private ExchangeHttpResponse sendPublicRequestToExchange(
       String apiMethod, Map<String, String> params)
       throws ExchangeNetworkException, TradingApiException {
+    return makePublicRequestToExchange(apiMethod, params, false);
+  }
+
+  /*
+   * Makes a public API call and returns the response without reading its body. The caller must
+   * close the response.
+   */
+  private ExchangeHttpResponse streamPublicRequestToExchange(
+      String apiMethod, Map<String, String> params)
+      throws ExchangeNetworkException, TradingApiException {
+    return makePublicRequestToExchange(apiMethod, params, true);
+  }
+
+  private ExchangeHttpResponse makePublicRequestToExchange(
+      String apiMethod, Map<String, String> params, boolean streamed)
+      throws ExchangeNetworkException, TradingApiException {
 
     if (params == null) {
       params = createRequestParamMap(); // no params, so empty query string
@@ -907,7 +924,9 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
       }
 
       final URL url = new URL(PUBLIC_API_BASE_URL + apiMethod + queryString);
-      return makeNetworkRequest(url, "GET", null, requestHeaders);
+      return streamed
+          ? makeStreamedNetworkRequest(url, "GET", null, requestHeaders)
+          : makeNetworkRequest(url, "GET", null, requestHeaders);
 
     } catch (MalformedURLException e) {
       final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
@@ -932,6 +951,10 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
    * your account API settings page. The amount to set it to depends upon how you increment the
    * nonce. Depending on your connectivity, a setting that would accommodate 3-15 seconds of
    * network issues is suggested.
+   *
+   * Nonces come from the thread-safe nonce service, so authenticated requests are not serialized
+   * here. Concurrent requests can arrive out of order though: set the nonce window if the Trading
+   * Strategies make private calls in parallel.
    */
   private ExchangeHttpResponse sendAuthenticatedRequestToExchange(
       String apiMethod, Map<String, String> params)
@@ -952,7 +975,7 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
       // The nonce is required by Kraken in every request.
       // It MUST be incremented each time and the nonce param MUST match the value used in
       // signature.
-      nonce++;
+      final long nonce = nonceService.next();
       params.put("nonce", Long.toString(nonce));
 
       // Build the URL with query param args in it - yuk!
@@ -967,23 +990,13 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
       }
 
       // And now the tricky part... ;-o
-      final byte[] pathInBytes =
-          ("/" + KRAKEN_API_VERSION + KRAKEN_PRIVATE_PATH + apiMethod)
-              .getBytes(StandardCharsets.UTF_8);
+      final String path = "/" + KRAKEN_API_VERSION + KRAKEN_PRIVATE_PATH + apiMethod;
       final String noncePrependedToPostData = Long.toString(nonce) + postData;
 
-      // Create sha256 hash of nonce and post data:
-      final MessageDigest md = MessageDigest.getInstance("SHA-256");
-      md.update(noncePrependedToPostData.getBytes(StandardCharsets.UTF_8));
-      final byte[] messageHash = md.digest();
-
-      // Create hmac_sha512 digest of path and previous sha256 hash
-      mac.reset(); // force reset
-      mac.update(pathInBytes);
-      mac.update(messageHash);
-
+      // Create hmac_sha512 digest of path and sha256 hash of nonce and post data.
       // Signature in Base64
-      final String signature = Base64.getEncoder().encodeToString(mac.doFinal());
+      final String signature =
+          requestSigner.signWithSha256ToBase64(path, noncePrependedToPostData);
 
       // Request headers required by Exchange
       final Map<String, String> requestHeaders = createHeaderParamMap();
@@ -994,7 +1007,7 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
       final URL url = new URL(AUTHENTICATED_API_URL + apiMethod);
       return makeNetworkRequest(url, "POST", postData.toString(), requestHeaders);
 
-    } catch (MalformedURLException | NoSuchAlgorithmException e) {
+    } catch (MalformedURLException e) {
       final String errorMsg = UNEXPECTED_IO_ERROR_MSG;
       LOG.error(errorMsg, e);
       throw new TradingApiException(errorMsg, e);
@@ -1012,9 +1025,7 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
       // Kraken secret key is in Base64, so we need to decode it first
       final byte[] base64DecodedSecret = Base64.getDecoder().decode(secret);
 
-      final SecretKeySpec keyspec = new SecretKeySpec(base64DecodedSecret, "HmacSHA512");
-      mac = Mac.getInstance("HmacSHA512");
-      mac.init(keyspec);
+      requestSigner = RequestSigner.forHmac("HmacSHA512", base64DecodedSecret);
       initializedMacAuthentication = true;
     } catch (NoSuchAlgorithmException e) {
       final String errorMsg = "Failed to setup MAC security. HINT: Is HmacSHA512 installed?";
@@ -1058,15 +1069,20 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
     } else {
       LOG.info(() -> KEEP_ALIVE_DURING_MAINTENANCE_PROPERTY_NAME + " is not set in exchange.yaml");
     }
+
+    orderBookDepth = getOrderBookDepth(otherConfig);
+    setRateLimitConfig(otherConfig);
+    setCircuitBreakerConfig(otherConfig);
+    nonceService = createNonceService(otherConfig);
   }
 
   // --------------------------------------------------------------------------
   //  Util methods
   // --------------------------------------------------------------------------
 
-  private List<OpenOrder> adaptKrakenOpenOrders(KrakenResponse krakenResponse, String marketId)
-      throws TradingApiException {
-    final List<OpenOrder> openOrders = new ArrayList<>();
+  private Map<String, List<OpenOrder>> adaptKrakenOpenOrders(
+      KrakenResponse krakenResponse, Collection<String> marketIds) throws TradingApiException {
+    final Map<String, List<OpenOrder>> openOrders = createOpenOrdersByMarketId(marketIds);
 
     // Assume we'll always get something here if errors array is empty; else blow fast wih NPE
     final KrakenOpenOrderResult krakenOpenOrderResult =
@@ -1080,7 +1096,8 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
         final KrakenOpenOrder krakenOpenOrder = openOrder.getValue();
         final KrakenOpenOrderDescription krakenOpenOrderDescription = krakenOpenOrder.descr;
 
-        if (!marketId.equalsIgnoreCase(krakenOpenOrderDescription.pair)) {
+        final String marketId = findMarketId(marketIds, krakenOpenOrderDescription.pair);
+        if (marketId == null) {
           continue;
         }
 
@@ -1111,49 +1128,61 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
                 // always 0 :-(
                 krakenOpenOrderDescription.price.multiply(krakenOpenOrder.vol));
 
-        openOrders.add(order);
+        openOrders.get(marketId).add(order);
       }
     }
     return openOrders;
   }
 
-  private MarketOrderBookImpl adaptKrakenOrderBook(KrakenResponse krakenResponse, String marketId)
-      throws TradingApiException {
-
-    // Assume we'll always get something here if errors array is empty; else blow fast wih NPE
-    final KrakenMarketOrderBookResult krakenOrderBookResult =
-        (KrakenMarketOrderBookResult) krakenResponse.result;
-    final Optional<KrakenOrderBook> first = krakenOrderBookResult.values().stream().findFirst();
-    if (first.isPresent()) {
-      final KrakenOrderBook krakenOrderBook = first.get();
-
-      final List<MarketOrder> buyOrders = new ArrayList<>();
-      for (KrakenMarketOrder krakenBuyOrder : krakenOrderBook.bids) {
-        final MarketOrder buyOrder =
-            new MarketOrderImpl(
-                OrderType.BUY,
-                krakenBuyOrder.get(0),
-                krakenBuyOrder.get(1),
-                krakenBuyOrder.get(0).multiply(krakenBuyOrder.get(1)));
-        buyOrders.add(buyOrder);
+  /*
+   * Reads the Depth API call result as it streams in: {"error":[],"result":{"XXBTZUSD":{"asks":
+   * [[price, volume, timestamp], ...],"bids":[...]}}}
+   */
+  private MarketOrderBook readKrakenOrderBook(ExchangeHttpResponse response, String marketId)
+      throws IOException, ExchangeNetworkException, TradingApiException {
+
+    final List<String> errors = new ArrayList<>();
+    PriceLevelOrderBook orderBook = null;
+
+    // Not closed here: closing the response drains what is left so the connection is reused.
+    final JsonReader reader = new JsonReader(response.getPayloadReader());
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if ("error".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          errors.add(reader.nextString());
+        }
+        reader.endArray();
+      } else if ("result".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        reader.beginObject();
+        if (reader.hasNext()) {
+          reader.nextName(); // Kraken's name for the pair, e.g. XXBTZUSD
+          orderBook = new OrderBookJsonReader(orderBookDepth).readOrderBook(reader, marketId);
+        }
+        while (reader.hasNext()) {
+          reader.skipValue();
+        }
+        reader.endObject();
+      } else {
+        reader.skipValue();
       }
+    }
+    reader.endObject();
 
-      final List<MarketOrder> sellOrders = new ArrayList<>();
-      for (KrakenMarketOrder krakenSellOrder : krakenOrderBook.asks) {
-        final MarketOrder sellOrder =
-            new MarketOrderImpl(
-                OrderType.SELL,
-                krakenSellOrder.get(0),
-                krakenSellOrder.get(1),
-                krakenSellOrder.get(0).multiply(krakenSellOrder.get(1)));
-        sellOrders.add(sellOrder);
-      }
-      return new MarketOrderBookImpl(marketId, sellOrders, buyOrders);
-    } else {
-      final String errorMsg = FAILED_TO_GET_MARKET_ORDERS + krakenResponse;
-      LOG.error(errorMsg);
-      throw new TradingApiException(errorMsg);
+    if (errors.isEmpty() && orderBook != null) {
+      return orderBook.asMarketOrderBook();
+    }
+
+    if (errors.contains(EXCHANGE_UNDERGOING_MAINTENANCE_RESPONSE) && keepAliveDuringMaintenance) {
+      LOG.warn(() -> UNDER_MAINTENANCE_WARNING_MESSAGE);
+      throw new ExchangeNetworkException(UNDER_MAINTENANCE_WARNING_MESSAGE);
     }
+
+    final String errorMsg = FAILED_TO_GET_MARKET_ORDERS + "error=" + errors;
+    LOG.error(errorMsg);
+    throw new TradingApiException(errorMsg);
   }
 
   private boolean adaptKrakenCancelOrderResult(KrakenResponse krakenResponse) {
@@ -1246,4 +1275,13 @@ public final class KrakenExchangeAdapter extends AbstractExchangeAdapter
       throws TradingApiException, ExchangeNetworkException {
     return super.sendNetworkRequest(url, httpMethod, postData, requestHeaders);
   }
+
+  /*
+   * Hack for unit-testing transport layer.
+   */
+  private ExchangeHttpResponse makeStreamedNetworkRequest(
+      URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+      throws TradingApiException, ExchangeNetworkException {
+    return super.streamNetworkRequest(url, httpMethod, postData, requestHeaders);
+  }
 }
@@ -0,0 +1,285 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketTradeImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.TickerImpl;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Streams market data from the Kraken <a href="https://docs.kraken.com/websockets/">WebSocket
+ * API</a>.
+ *
+ * <p>The order book is mirrored from the book channel: a snapshot followed by changes. Kraken
+ * streams a fixed depth book, so levels that fall out of the depth are dropped locally. Each change
+ * carries a CRC32 checksum of the top 10 levels; if the local order book does not match it, the
+ * stream reconnects to get a fresh snapshot.
+ *
+ * <p>The WebSocket API names pairs differently to the REST API: XBTUSD is XBT/USD. Market ids made
+ * of two 3 letter asset codes are converted; any other market id is sent to the exchange as is.
+ *
+ * @author gazbert
+ */
+final class KrakenMarketDataStream extends AbstractMarketDataStream {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  static final String WEBSOCKET_URI = "wss://ws.kraken.com";
+
+  private static final int BOOK_DEPTH = 100;
+  private static final int CHECKSUM_DEPTH = 10;
+  private static final String ORDER_BOOK_TOPIC = "book";
+  private static final String TICKER_TOPIC = "ticker";
+  private static final String TRADES_TOPIC = "trade";
+
+  /*
+   * The decimal places Kraken formats each market's prices and quantities to, as seen in the
+   * last snapshot. The checksum is calculated over the formatted values.
+   */
+  private final Map<String, int[]> checksumScales = new ConcurrentHashMap<>();
+
+  KrakenMarketDataStream(URI uri, int connectTimeout, long reconnectDelayMillis) {
+    super(uri, connectTimeout, reconnectDelayMillis);
+  }
+
+  @Override
+  List<String> getTopics(MarketDataChannel channel) {
+    switch (channel) {
+      case ORDER_BOOK:
+        return Collections.singletonList(ORDER_BOOK_TOPIC);
+      case TICKER:
+        return Collections.singletonList(TICKER_TOPIC);
+      default:
+        return Collections.singletonList(TRADES_TOPIC);
+    }
+  }
+
+  @Override
+  String toExchangeMarketId(String marketId) {
+    if (marketId.length() == 6 && marketId.indexOf('/') < 0) {
+      return marketId.substring(0, 3) + "/" + marketId.substring(3);
+    }
+    return marketId;
+  }
+
+  @Override
+  String createSubscriptionMessage(String exchangeMarketId, String topic, boolean subscribe) {
+    final JsonArray pairs = new JsonArray();
+    pairs.add(exchangeMarketId);
+    final JsonObject subscription = new JsonObject();
+    subscription.addProperty("name", topic);
+    if (ORDER_BOOK_TOPIC.equals(topic)) {
+      subscription.addProperty("depth", BOOK_DEPTH);
+    }
+    final JsonObject message = new JsonObject();
+    message.addProperty("event", subscribe ? "subscribe" : "unsubscribe");
+    message.add("pair", pairs);
+    message.add("subscription", subscription);
+    return message.toString();
+  }
+
+  /*
+   * Data messages are arrays: [channelID, payload..., channelName, pair]. Everything else is an
+   * event object, e.g. heartbeat, systemStatus, subscriptionStatus.
+   */
+  @Override
+  void onMessage(String message) {
+    final JsonElement json = JsonParser.parseString(message);
+    if (!json.isJsonArray()) {
+      final JsonObject event = json.getAsJsonObject();
+      if (event.has("errorMessage")) {
+        LOG.error(() -> "Kraken market data stream error: " + message);
+      }
+      return;
+    }
+
+    final JsonArray data = json.getAsJsonArray();
+    final int size = data.size();
+    final String marketId = findMarketId(data.get(size - 1).getAsString());
+    if (marketId == null) {
+      return;
+    }
+    final String channelName = data.get(size - 2).getAsString();
+    if (channelName.startsWith(ORDER_BOOK_TOPIC)) {
+      applyOrderBook(marketId, data);
+    } else if (TICKER_TOPIC.equals(channelName)) {
+      applyTicker(marketId, data.get(1).getAsJsonObject());
+    } else if (TRADES_TOPIC.equals(channelName)) {
+      applyTrades(marketId, data.get(1).getAsJsonArray());
+    }
+  }
+
+  /*
+   * A snapshot has as/bs; a change has a and/or b, sometimes split across 2 payload objects.
+   */
+  private void applyOrderBook(String marketId, JsonArray data) {
+    final LocalOrderBook orderBook = getLocalOrderBook(marketId);
+    String checksum = null;
+    for (int i = 1; i < data.size() - 2; i++) {
+      final JsonObject payload = data.get(i).getAsJsonObject();
+      if (payload.has("as") || payload.has("bs")) {
+        orderBook.reset();
+        applyPriceLevels(orderBook, OrderType.SELL, payload.getAsJsonArray("as"));
+        applyPriceLevels(orderBook, OrderType.BUY, payload.getAsJsonArray("bs"));
+        orderBook.markReady();
+        rememberChecksumScales(marketId, payload);
+      } else {
+        applyPriceLevels(orderBook, OrderType.SELL, payload.getAsJsonArray("a"));
+        applyPriceLevels(orderBook, OrderType.BUY, payload.getAsJsonArray("b"));
+        if (payload.has("c")) {
+          checksum = payload.get("c").getAsString();
+        }
+      }
+    }
+    orderBook.truncate(BOOK_DEPTH);
+
+    if (checksum != null && !isChecksumValid(marketId, checksum, orderBook)) {
+      reconnect();
+      return;
+    }
+    orderBookUpdated(marketId);
+  }
+
+  private boolean isChecksumValid(String marketId, String checksum, LocalOrderBook orderBook) {
+    final String localChecksum = calculateChecksum(marketId, orderBook.getMarketOrderBook());
+    if (localChecksum == null || checksum.equals(localChecksum)) {
+      return true;
+    }
+    LOG.warn(
+        () ->
+            "Kraken order book checksum mismatch for "
+                + marketId
+                + ": expected "
+                + checksum
+                + " but was "
+                + localChecksum
+                + ". Resyncing...");
+    return false;
+  }
+
+  private void rememberChecksumScales(String marketId, JsonObject snapshot) {
+    JsonArray levels = snapshot.getAsJsonArray("as");
+    if (levels == null || levels.size() == 0) {
+      levels = snapshot.getAsJsonArray("bs");
+    }
+    if (levels != null && levels.size() > 0) {
+      final JsonArray level = levels.get(0).getAsJsonArray();
+      final int priceScale = level.get(0).getAsBigDecimal().scale();
+      final int quantityScale = level.get(1).getAsBigDecimal().scale();
+      checksumScales.put(marketId, new int[] {priceScale, quantityScale});
+    }
+  }
+
+  /*
+   * The checksum is the CRC32 of the top 10 asks, then the top 10 bids, each level's price then
+   * quantity with the decimal point and leading zeros removed. Returns null if there is nothing to
+   * check against yet.
+   */
+  private String calculateChecksum(String marketId, MarketOrderBook marketOrderBook) {
+    final int[] scales = checksumScales.get(marketId);
+    if (scales == null || marketOrderBook == null) {
+      return null;
+    }
+    final StringBuilder levels = new StringBuilder();
+    appendChecksumLevels(levels, marketOrderBook.getSellOrders(), scales);
+    appendChecksumLevels(levels, marketOrderBook.getBuyOrders(), scales);
+    final CRC32 crc = new CRC32();
+    crc.update(levels.toString().getBytes(StandardCharsets.US_ASCII));
+    return Long.toString(crc.getValue());
+  }
+
+  private static void appendChecksumLevels(
+      StringBuilder levels, List<MarketOrder> marketOrders, int[] scales) {
+    final int depth = Math.min(CHECKSUM_DEPTH, marketOrders.size());
+    for (int i = 0; i < depth; i++) {
+      final MarketOrder marketOrder = marketOrders.get(i);
+      levels.append(toChecksumDigits(marketOrder.getPrice(), scales[0]));
+      levels.append(toChecksumDigits(marketOrder.getQuantity(), scales[1]));
+    }
+  }
+
+  private static String toChecksumDigits(BigDecimal value, int scale) {
+    return value.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue().toString();
+  }
+
+  private static void applyPriceLevels(
+      LocalOrderBook orderBook, OrderType side, JsonArray priceLevels) {
+    if (priceLevels == null) {
+      return;
+    }
+    for (final JsonElement priceLevel : priceLevels) {
+      final JsonArray level = priceLevel.getAsJsonArray();
+      orderBook.update(side, level.get(0).getAsBigDecimal(), level.get(1).getAsBigDecimal());
+    }
+  }
+
+  /*
+   * Kraken sends [today, last 24 hours] for the daily values; the last 24 hours are used.
+   */
+  private void applyTicker(String marketId, JsonObject ticker) {
+    tickerUpdated(
+        marketId,
+        new TickerImpl(
+            ticker.getAsJsonArray("c").get(0).getAsBigDecimal(),
+            ticker.getAsJsonArray("b").get(0).getAsBigDecimal(),
+            ticker.getAsJsonArray("a").get(0).getAsBigDecimal(),
+            ticker.getAsJsonArray("l").get(1).getAsBigDecimal(),
+            ticker.getAsJsonArray("h").get(1).getAsBigDecimal(),
+            ticker.getAsJsonArray("o").get(1).getAsBigDecimal(),
+            ticker.getAsJsonArray("v").get(1).getAsBigDecimal(),
+            ticker.getAsJsonArray("p").get(1).getAsBigDecimal(),
+            System.currentTimeMillis()));
+  }
+
+  private void applyTrades(String marketId, JsonArray trades) {
+    for (final JsonElement tradeElement : trades) {
+      final JsonArray trade = tradeElement.getAsJsonArray();
+      tradeReceived(
+          marketId,
+          new MarketTradeImpl(
+              null,
+              "b".equals(trade.get(3).getAsString()) ? OrderType.BUY : OrderType.SELL,
+              trade.get(0).getAsBigDecimal(),
+              trade.get(1).getAsBigDecimal(),
+              new BigDecimal(trade.get(2).getAsString()).movePointRight(3).longValue()));
+    }
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.google.common.base.MoreObjects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A lock-free latency histogram with log-linear buckets.
+ *
+ * <p>Each power of 2 nanoseconds is split into 32 buckets, so a recorded latency is reported to
+ * within about 3% of its value. Latencies up to about 2 minutes get their own bucket; longer
+ * ones go in the last bucket, but the max is always exact. Recording a latency is a few atomic
+ * adds and never allocates, so histograms can be left on in production.
+ *
+ * <p>The count and total time cover all the latencies recorded since the histogram was created.
+ * The percentiles and the max only cover the recent ones, so they show how the exchange is doing
+ * now. The window, 2 minutes by default, is split into 3 slots. Each time a third of the window
+ * passes, the oldest slot is cleared and reused, so a latency counts for between 2/3 of the window
+ * and the whole window. A latency recorded while its slot is being cleared may be lost from the
+ * percentiles.
+ *
+ * @author gazbert
+ */
+public final class LatencyHistogram {
+
+  /** How long the percentiles and max cover, by default. */
+  static final long DEFAULT_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+  private static final int WINDOW_SLOTS = 3;
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 36;
+  private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+  private final LongSupplier clock;
+  private final long slotNanos;
+  private final WindowSlot[] slots = new WindowSlot[WINDOW_SLOTS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private volatile int currentSlot;
+  private volatile long currentSlotEndsAt;
+
+  /** Creates a histogram whose percentiles and max cover the last 2 minutes or so. */
+  public LatencyHistogram() {
+    this(DEFAULT_WINDOW_NANOS, System::nanoTime);
+  }
+
+  LatencyHistogram(long windowNanos, LongSupplier clock) {
+    if (windowNanos < WINDOW_SLOTS) {
+      throw new IllegalArgumentException("Window is too short: " + windowNanos + " nanos");
+    }
+    this.clock = clock;
+    this.slotNanos = windowNanos / WINDOW_SLOTS;
+    for (int i = 0; i < WINDOW_SLOTS; i++) {
+      slots[i] = new WindowSlot();
+    }
+    currentSlotEndsAt = clock.getAsLong() + slotNanos;
+  }
+
+  /**
+   * Records a latency. Negative latencies are recorded as 0.
+   *
+   * @param nanos the latency in nanoseconds.
+   */
+  void record(long nanos) {
+    final long value = Math.max(0, nanos);
+    rotate();
+    slots[currentSlot].record(value);
+    count.increment();
+    totalNanos.add(value);
+  }
+
+  /**
+   * Returns the number of latencies recorded since the histogram was created.
+   *
+   * @return the count.
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the sum of the latencies recorded since the histogram was created.
+   *
+   * @param unit the time unit to return the total in.
+   * @return the total.
+   */
+  public double getTotalTime(TimeUnit unit) {
+    return (double) totalNanos.sum() / unit.toNanos(1);
+  }
+
+  /**
+   * Returns the longest recent latency.
+   *
+   * @param unit the time unit to return the max in.
+   * @return the max, or 0 if nothing has been recorded recently.
+   */
+  public double getMax(TimeUnit unit) {
+    rotate();
+    return (double) getMaxNanos() / unit.toNanos(1);
+  }
+
+  /**
+   * Returns the latency that the given percentage of the recent latencies are at or below.
+   *
+   * @param percentile the percentile, between 0 and 100, e.g. 99.9
+   * @param unit the time unit to return the latency in.
+   * @return the latency at the percentile, or 0 if nothing has been recorded recently.
+   */
+  public double getValueAtPercentile(double percentile, TimeUnit unit) {
+    rotate();
+    return (double) getValueAtPercentileNanos(percentile) / unit.toNanos(1);
+  }
+
+  private long getMaxNanos() {
+    long max = 0;
+    for (final WindowSlot slot : slots) {
+      max = Math.max(max, slot.maxNanos.get());
+    }
+    return max;
+  }
+
+  private long getValueAtPercentileNanos(double percentile) {
+    final long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      for (final WindowSlot slot : slots) {
+        counts[i] += slot.bucketCounts.get(i);
+      }
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    final double fraction = Math.min(100, Math.max(0, percentile)) / 100;
+    final long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    final long max = getMaxNanos();
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(highestValueInBucket(i), max);
+      }
+    }
+    return max; // the last bucket holds everything too long to bucket
+  }
+
+  /*
+   * Moves on to the next slot, clearing it, once the current slot's time is up. The check is a
+   * volatile read, so only the rare rotation takes the lock.
+   */
+  private void rotate() {
+    final long now = clock.getAsLong();
+    if (now - currentSlotEndsAt < 0) {
+      return;
+    }
+    synchronized (this) {
+      for (int i = 0; i < WINDOW_SLOTS && now - currentSlotEndsAt >= 0; i++) {
+        final int nextSlot = (currentSlot + 1) % WINDOW_SLOTS;
+        slots[nextSlot].clear();
+        currentSlot = nextSlot;
+        currentSlotEndsAt += slotNanos;
+      }
+      if (now - currentSlotEndsAt >= 0) {
+        currentSlotEndsAt = now + slotNanos; // idle for longer than the window
+      }
+    }
+  }
+
+  static int bucketIndex(long nanos) {
+    if (nanos < SUB_BUCKET_COUNT) {
+      return (int) nanos;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKET_COUNT - 1;
+    }
+    final int shift = exponent - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKET_COUNT + (int) (nanos >>> shift) - SUB_BUCKET_COUNT;
+  }
+
+  static long highestValueInBucket(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    final int shift = index / SUB_BUCKET_COUNT - 1;
+    final long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /*
+   * The latencies recorded in 1 slot of the window.
+   */
+  private static final class WindowSlot {
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+      bucketCounts.incrementAndGet(bucketIndex(nanos));
+      if (nanos > maxNanos.get()) {
+        maxNanos.accumulateAndGet(nanos, Math::max);
+      }
+    }
+
+    void clear() {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        bucketCounts.set(i, 0);
+      }
+      maxNanos.set(0);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("count", getCount())
+        .add("p50Millis", getValueAtPercentile(50, TimeUnit.MILLISECONDS))
+        .add("p99Millis", getValueAtPercentile(99, TimeUnit.MILLISECONDS))
+        .add("maxMillis", getMax(TimeUnit.MILLISECONDS))
+        .toString();
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.PriceLevelOrderBook;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A local copy of an exchange's order book for 1 market, kept up to date from the incremental
+ * updates streamed by the exchange.
+ *
+ * <p>The price levels are held in a {@link PriceLevelOrderBook}. An update sets the quantity for a
+ * price level; a quantity of zero removes the level. Prices are compared by value, so "100.0" and
+ * "100.00" are the same level.
+ *
+ * <p>Some exchanges only stream updates, and the starting order book has to be fetched separately.
+ * Updates received while that fetch is in flight are buffered and replayed on top of it, so none
+ * are lost.
+ *
+ * <p>The order book is not ready to be read until it has a complete snapshot. The Market Order
+ * Book handed out is a read-only view of a copy of the price levels, and is reused until the next
+ * update.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author gazbert
+ */
+final class LocalOrderBook {
+
+  private final PriceLevelOrderBook priceLevels;
+  private final List<PriceLevelUpdate> bufferedUpdates = new ArrayList<>();
+  private boolean buffering;
+  private boolean ready;
+  private MarketOrderBook marketOrderBook;
+
+  LocalOrderBook(String marketId) {
+    priceLevels = new PriceLevelOrderBook(marketId);
+  }
+
+  /** Throws away all price levels. The order book is not ready until it gets a new snapshot. */
+  synchronized void reset() {
+    priceLevels.clear();
+    bufferedUpdates.clear();
+    buffering = false;
+    ready = false;
+    marketOrderBook = null;
+  }
+
+  /**
+   * Buffers the updates until {@link #applySnapshot(MarketOrderBook)} is called. Used while the
+   * starting order book is fetched from the exchange.
+   */
+  synchronized void bufferUpdates() {
+    buffering = true;
+  }
+
+  /**
+   * Sets the quantity for a price level.
+   *
+   * @param side {@link OrderType#BUY} for a bid, {@link OrderType#SELL} for an ask.
+   * @param price the price of the level.
+   * @param quantity the total quantity at the price. Zero removes the level.
+   */
+  synchronized void update(OrderType side, BigDecimal price, BigDecimal quantity) {
+    if (buffering) {
+      bufferedUpdates.add(new PriceLevelUpdate(side, price, quantity));
+      return;
+    }
+    priceLevels.update(side, price, quantity);
+    marketOrderBook = null;
+  }
+
+  /**
+   * Replaces the price levels with the given order book and replays any buffered updates on top of
+   * it. The order book is then ready.
+   *
+   * @param snapshot the order book fetched from the exchange.
+   */
+  synchronized void applySnapshot(MarketOrderBook snapshot) {
+    priceLevels.replace(snapshot);
+    buffering = false;
+    for (final PriceLevelUpdate bufferedUpdate : bufferedUpdates) {
+      update(bufferedUpdate.side, bufferedUpdate.price, bufferedUpdate.quantity);
+    }
+    bufferedUpdates.clear();
+    ready = true;
+    marketOrderBook = null;
+  }
+
+  /** Marks the order book as ready once a complete snapshot has been streamed into it. */
+  synchronized void markReady() {
+    ready = true;
+  }
+
+  /**
+   * Drops the price levels beyond the given depth on each side. Used for exchanges that stream a
+   * fixed depth book and expect the client to drop levels that fall out of it.
+   *
+   * @param depth the number of price levels to keep on each side.
+   */
+  synchronized void truncate(int depth) {
+    if (priceLevels.getDepth(OrderType.BUY) > depth
+        || priceLevels.getDepth(OrderType.SELL) > depth) {
+      priceLevels.truncate(depth);
+      marketOrderBook = null;
+    }
+  }
+
+  /**
+   * Returns the order book.
+   *
+   * @return the order book, or null if it is not ready.
+   */
+  synchronized MarketOrderBook getMarketOrderBook() {
+    if (!ready) {
+      return null;
+    }
+    if (marketOrderBook == null) {
+      marketOrderBook = priceLevels.copy().asMarketOrderBook();
+    }
+    return marketOrderBook;
+  }
+
+  /**
+   * Returns the highest bid price.
+   *
+   * @return the highest bid price, or null if there are no bids or the order book is not ready.
+   */
+  synchronized BigDecimal getBestBid() {
+    return ready ? priceLevels.getBestBid() : null;
+  }
+
+  /**
+   * Returns the lowest ask price.
+   *
+   * @return the lowest ask price, or null if there are no asks or the order book is not ready.
+   */
+  synchronized BigDecimal getBestAsk() {
+    return ready ? priceLevels.getBestAsk() : null;
+  }
+
+  /*
+   * An update received while the starting order book is being fetched.
+   */
+  private static final class PriceLevelUpdate {
+
+    private final OrderType side;
+    private final BigDecimal price;
+    private final BigDecimal quantity;
+
+    private PriceLevelUpdate(OrderType side, BigDecimal price, BigDecimal quantity) {
+      this.side = side;
+      this.price = price;
+      this.quantity = quantity;
+    }
+  }
+}
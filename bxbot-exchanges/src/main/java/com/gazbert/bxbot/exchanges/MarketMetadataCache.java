@@ -0,0 +1,248 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.MarketMetadata;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Caches the {@link MarketMetadata} an Exchange Adapter fetches from the exchange: the fees and
+ * trading rules that change maybe once a month, but that strategies can ask for every trade cycle.
+ *
+ * <p>The first request for a market fetches its metadata. Concurrent first requests for the
+ * same market wait for the 1 fetch; requests for other markets are not held up by it. After that,
+ * requests are answered from the cache. Once the metadata is older than the refresh interval, the
+ * next request still gets the cached copy, and the metadata is fetched again in the background.
+ * If the background refreshes keep failing, e.g. while the exchange is down, the metadata is
+ * evicted when it is older than the time to live, and the next request fetches it again.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author gazbert
+ */
+final class MarketMetadataCache {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  /** The default refresh interval: 1 hour. */
+  static final long DEFAULT_REFRESH_MINUTES = 60;
+
+  /** The default time to live: 1 day. */
+  static final long DEFAULT_TTL_MINUTES = 24 * 60;
+
+  private static final Executor REFRESH_EXECUTOR =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("bxbot-market-metadata-refresh")
+              .setDaemon(true)
+              .build());
+
+  /** Fetches the metadata for a market from the exchange. */
+  @FunctionalInterface
+  interface Loader {
+
+    /**
+     * Fetches the metadata for a market.
+     *
+     * @param marketId the id of the market.
+     * @return the market metadata.
+     * @throws ExchangeNetworkException if a network error occurs.
+     * @throws TradingApiException if the exchange returns an error.
+     */
+    MarketMetadata load(String marketId) throws ExchangeNetworkException, TradingApiException;
+  }
+
+  private final Loader loader;
+  private final long refreshNanos;
+  private final long ttlNanos;
+  private final Executor refreshExecutor;
+  private final LongSupplier nanoClock;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Map<String, Object> loadLocks = new ConcurrentHashMap<>();
+  private final Set<String> refreshingMarketIds = ConcurrentHashMap.newKeySet();
+  private final AtomicLong loadCount = new AtomicLong();
+  private final AtomicLong refreshFailureCount = new AtomicLong();
+
+  /**
+   * Creates the cache.
+   *
+   * @param loader fetches the metadata from the exchange.
+   * @param refreshMinutes how old the metadata can get before it is fetched again in the
+   *     background.
+   * @param ttlMinutes how old the metadata can get before it is evicted.
+   */
+  MarketMetadataCache(Loader loader, long refreshMinutes, long ttlMinutes) {
+    this(
+        loader,
+        TimeUnit.MINUTES.toNanos(refreshMinutes),
+        TimeUnit.MINUTES.toNanos(ttlMinutes),
+        REFRESH_EXECUTOR,
+        System::nanoTime);
+  }
+
+  MarketMetadataCache(
+      Loader loader,
+      long refreshNanos,
+      long ttlNanos,
+      Executor refreshExecutor,
+      LongSupplier nanoClock) {
+    if (refreshNanos <= 0 || ttlNanos < refreshNanos) {
+      throw new IllegalArgumentException(
+          "Refresh interval must be more than 0, and time to live at least the refresh interval");
+    }
+    this.loader = loader;
+    this.refreshNanos = refreshNanos;
+    this.ttlNanos = ttlNanos;
+    this.refreshExecutor = refreshExecutor;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Returns the metadata for a market, fetching it only if it is not cached.
+   *
+   * @param marketId the id of the market.
+   * @return the market metadata.
+   * @throws ExchangeNetworkException if the metadata is not cached and a network error occurs.
+   * @throws TradingApiException if the metadata is not cached and the exchange returns an error.
+   */
+  MarketMetadata get(String marketId) throws ExchangeNetworkException, TradingApiException {
+    final MarketMetadata cached = getIfPresent(marketId, false);
+    if (cached != null) {
+      return cached;
+    }
+    synchronized (loadLocks.computeIfAbsent(marketId, id -> new Object())) {
+      // another thread might have fetched it while this one waited
+      final MarketMetadata fetched = getIfPresent(marketId, false);
+      return fetched != null ? fetched : load(marketId);
+    }
+  }
+
+  /**
+   * Returns the metadata for a market if it is cached. It is never fetched on the caller's thread:
+   * if it is not cached, it is fetched in the background for next time.
+   *
+   * @param marketId the id of the market.
+   * @return the market metadata, or null if it is not cached.
+   */
+  MarketMetadata getIfPresent(String marketId) {
+    return getIfPresent(marketId, true);
+  }
+
+  private MarketMetadata getIfPresent(String marketId, boolean fetchIfMissing) {
+    final Entry entry = entries.get(marketId);
+    final long now = nanoClock.getAsLong();
+    if (entry != null && now - entry.loadedAtNanos >= ttlNanos) {
+      LOG.warn(() -> "Evicting expired market metadata: " + entry.metadata);
+      entries.remove(marketId, entry);
+    } else if (entry != null) {
+      if (now - entry.loadedAtNanos >= refreshNanos) {
+        refreshInBackground(marketId);
+      }
+      return entry.metadata;
+    }
+    if (fetchIfMissing) {
+      refreshInBackground(marketId);
+    }
+    return null;
+  }
+
+  long getLoadCount() {
+    return loadCount.get();
+  }
+
+  long getRefreshFailureCount() {
+    return refreshFailureCount.get();
+  }
+
+  private MarketMetadata load(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    final MarketMetadata metadata = loader.load(marketId);
+    loadCount.incrementAndGet();
+    entries.put(marketId, new Entry(metadata, nanoClock.getAsLong()));
+    LOG.info(() -> "Fetched market metadata: " + metadata);
+    return metadata;
+  }
+
+  private void refreshInBackground(String marketId) {
+    if (!refreshingMarketIds.add(marketId)) {
+      return;
+    }
+    try {
+      refreshExecutor.execute(
+          () -> {
+            try {
+              load(marketId);
+            } catch (ExchangeNetworkException | TradingApiException | RuntimeException e) {
+              refreshFailureCount.incrementAndGet();
+              LOG.warn(
+                  () ->
+                      "Failed to refresh market metadata for "
+                          + marketId
+                          + " - will try again at next request. Cause: "
+                          + e.getMessage());
+            } finally {
+              refreshingMarketIds.remove(marketId);
+            }
+          });
+    } catch (RuntimeException e) {
+      refreshingMarketIds.remove(marketId);
+      throw e;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("refreshMinutes", TimeUnit.NANOSECONDS.toMinutes(refreshNanos))
+        .add("ttlMinutes", TimeUnit.NANOSECONDS.toMinutes(ttlNanos))
+        .add("cachedMarkets", entries.keySet())
+        .add("loadCount", loadCount.get())
+        .add("refreshFailureCount", refreshFailureCount.get())
+        .toString();
+  }
+
+  private static final class Entry {
+
+    private final MarketMetadata metadata;
+    private final long loadedAtNanos;
+
+    private Entry(MarketMetadata metadata, long loadedAtNanos) {
+      this.metadata = metadata;
+      this.loadedAtNanos = loadedAtNanos;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.google.common.base.MoreObjects;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out the nonces an Exchange Adapter signs its authenticated requests with.
+ *
+ * <p>Nonces are strictly increasing, and never less than the time floor, which is the current
+ * time in seconds by default. They are handed out without locking, so several threads can sign
+ * requests at once.
+ *
+ * <p>If a file is given, a high-water mark is kept in it, so nonces keep increasing when the bot
+ * is restarted straight away, even if it handed out more than 1 nonce a second. The file is memory
+ * mapped and the mark is reserved in blocks, so the file is written to at most once per block of
+ * nonces: the nonces left in a block when the bot stops are skipped on restart.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author gazbert
+ */
+final class NonceService implements Closeable {
+
+  /** How many nonces the high-water mark is moved on by each time it is written. */
+  static final long RESERVATION_SIZE = 1000;
+
+  private final AtomicLong lastNonce = new AtomicLong();
+  private final LongSupplier timeFloor;
+  private final FileChannel highWaterMarkFile;
+  private final MappedByteBuffer highWaterMark;
+  private volatile long reservedUpTo;
+
+  /** Creates a nonce service that does not persist its high-water mark. */
+  NonceService() {
+    this(() -> System.currentTimeMillis() / 1000);
+  }
+
+  NonceService(LongSupplier timeFloor) {
+    this.timeFloor = timeFloor;
+    this.highWaterMarkFile = null;
+    this.highWaterMark = null;
+    this.reservedUpTo = Long.MAX_VALUE;
+  }
+
+  /**
+   * Creates a nonce service that persists its high-water mark in the given file.
+   *
+   * @param file the file; it is created if it does not exist.
+   * @throws IOException if the file cannot be read or written.
+   */
+  NonceService(Path file) throws IOException {
+    this(file, () -> System.currentTimeMillis() / 1000);
+  }
+
+  NonceService(Path file, LongSupplier timeFloor) throws IOException {
+    this.timeFloor = timeFloor;
+    this.highWaterMarkFile =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      this.highWaterMark = highWaterMarkFile.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+    } catch (IOException e) {
+      highWaterMarkFile.close();
+      throw e;
+    }
+    final long persisted = highWaterMark.getLong(0);
+    this.lastNonce.set(Math.max(persisted, 0));
+    this.reservedUpTo = lastNonce.get();
+  }
+
+  /**
+   * Returns the next nonce.
+   *
+   * @return a nonce bigger than all the nonces handed out before.
+   */
+  long next() {
+    while (true) {
+      final long last = lastNonce.get();
+      final long next = Math.max(last + 1, timeFloor.getAsLong());
+      if (lastNonce.compareAndSet(last, next)) {
+        if (next > reservedUpTo) {
+          reserve(next);
+        }
+        return next;
+      }
+    }
+  }
+
+  /*
+   * Moves the high-water mark on past the nonce before it is handed out. Only 1 thread in every
+   * block of nonces gets here.
+   */
+  private synchronized void reserve(long nonce) {
+    if (nonce > reservedUpTo) {
+      final long mark = nonce + RESERVATION_SIZE;
+      highWaterMark.putLong(0, mark);
+      reservedUpTo = mark;
+    }
+  }
+
+  /**
+   * Flushes the high-water mark to disk and closes the file, if there is one.
+   *
+   * @throws IOException if the file cannot be closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (highWaterMarkFile != null && highWaterMarkFile.isOpen()) {
+      highWaterMark.force();
+      highWaterMarkFile.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("lastNonce", lastNonce.get())
+        .add("persisted", highWaterMark != null)
+        .toString();
+  }
+}
@@ -24,7 +24,6 @@
 package com.gazbert.bxbot.exchanges;
 
 import com.gazbert.bxbot.exchange.api.AuthenticationConfig;
-import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
 import com.gazbert.bxbot.exchange.api.ExchangeConfig;
 import com.gazbert.bxbot.exchange.api.OtherConfig;
 import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
@@ -52,7 +51,6 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -96,8 +94,7 @@ import org.apache.logging.log4j.Logger;
  *     updating to use V3 API.
  */
 @Deprecated(forRemoval = true)
-public final class OkCoinExchangeAdapter extends AbstractExchangeAdapter
-    implements ExchangeAdapter {
+public final class OkCoinExchangeAdapter extends AbstractAsyncExchangeAdapter {
 
   private static final Logger LOG = LogManager.getLogger();
 
@@ -123,11 +120,11 @@ public final class OkCoinExchangeAdapter extends AbstractExchangeAdapter
   private BigDecimal buyFeePercentage;
   private BigDecimal sellFeePercentage;
 
-  private String key = "";
-  private String secret = "";
+  private volatile String key = "";
+  private volatile String secret = "";
 
-  private MessageDigest messageDigest;
-  private boolean initializedSecureMessagingLayer = false;
+  private volatile RequestSigner requestSigner;
+  private volatile boolean initializedSecureMessagingLayer = false;
 
   private Gson gson;
 
@@ -683,6 +680,18 @@ public final class OkCoinExchangeAdapter extends AbstractExchangeAdapter
   //  Transport layer methods
   // --------------------------------------------------------------------------
 
+  /*
+   * trade.do and cancel_order.do place and cancel orders; the other POSTs are account data.
+   */
+  @Override
+  ExchangeRateLimiter.EndpointType getEndpointType(URL url, String httpMethod) {
+    final String path = url.getPath();
+    if (path.endsWith("/trade.do") || path.endsWith("/cancel_order.do")) {
+      return ExchangeRateLimiter.EndpointType.ORDER;
+    }
+    return super.getEndpointType(url, httpMethod);
+  }
+
   private ExchangeHttpResponse sendPublicRequestToExchange(
       String apiMethod, Map<String, String> params)
       throws ExchangeNetworkException, TradingApiException {
@@ -803,23 +812,10 @@ public final class OkCoinExchangeAdapter extends AbstractExchangeAdapter
   }
 
   private String createMd5HashAndReturnAsUpperCaseString(String stringToHash) {
-    final char[] hexDigits = {
-      '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
-    };
     if (stringToHash == null || stringToHash.isEmpty()) {
       return "";
     }
-
-    messageDigest.update(stringToHash.getBytes(StandardCharsets.UTF_8));
-    final byte[] md5HashInBytes = messageDigest.digest();
-
-    final StringBuilder md5HashAsUpperCaseString = new StringBuilder();
-    for (final byte md5HashByte : md5HashInBytes) {
-      md5HashAsUpperCaseString
-          .append(hexDigits[(md5HashByte & 0xf0) >> 4])
-          .append(hexDigits[md5HashByte & 0xf]);
-    }
-    return md5HashAsUpperCaseString.toString();
+    return requestSigner.signToHex(stringToHash, true);
   }
 
   /*
@@ -830,7 +826,7 @@ public final class OkCoinExchangeAdapter extends AbstractExchangeAdapter
    */
   private void initSecureMessageLayer() {
     try {
-      messageDigest = MessageDigest.getInstance("MD5");
+      requestSigner = RequestSigner.forDigest("MD5");
       initializedSecureMessagingLayer = true;
     } catch (NoSuchAlgorithmException e) {
       final String errorMsg =
@@ -862,6 +858,9 @@ public final class OkCoinExchangeAdapter extends AbstractExchangeAdapter
     sellFeePercentage =
         new BigDecimal(sellFeeInConfig).divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
     LOG.info(() -> "Sell fee % in BigDecimal format: " + sellFeePercentage);
+
+    setRateLimitConfig(otherConfig);
+    setCircuitBreakerConfig(otherConfig);
   }
 
   // --------------------------------------------------------------------------
@@ -0,0 +1,227 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.PriceLevelOrderBook;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Reads an order book from an exchange's JSON response as the response streams in.
+ *
+ * <p>The price levels are parsed straight into a {@link PriceLevelOrderBook}: there are no
+ * intermediate GSON classes, BigDecimals or Market Orders per level. Each level can be an array
+ * with the price and quantity first, e.g. {@code ["6000.00", "0.5"]}, as Bitstamp and Kraken send
+ * them, or an object with price and amount fields, as Bitfinex sends them. Numbers can be JSON
+ * strings or numbers.
+ *
+ * <p>If a depth is set, only that many levels are read from each side of the book. The rest are
+ * skipped without being parsed.
+ *
+ * <p>This class is not thread-safe: it reuses its buffers between calls.
+ *
+ * @author gazbert
+ */
+final class OrderBookJsonReader {
+
+  /** Reads every price level in the book. */
+  static final int FULL_DEPTH = Integer.MAX_VALUE;
+
+  private static final String BIDS = "bids";
+  private static final String ASKS = "asks";
+  private static final String PRICE = "price";
+  private static final String AMOUNT = "amount";
+  private static final String QUANTITY = "quantity";
+  private static final String SIZE = "size";
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final int depth;
+  private long[] prices = new long[INITIAL_CAPACITY];
+  private long[] quantities = new long[INITIAL_CAPACITY];
+
+  /**
+   * Creates the reader.
+   *
+   * @param depth the number of price levels to read from each side of the book, or {@link
+   *     #FULL_DEPTH}.
+   */
+  OrderBookJsonReader(int depth) {
+    if (depth <= 0) {
+      throw new IllegalArgumentException("Depth must be more than 0: " + depth);
+    }
+    this.depth = depth;
+  }
+
+  int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Reads an object with bids and asks arrays. Any other fields are skipped.
+   *
+   * @param reader the reader, positioned at the start of the object.
+   * @param marketId the market id.
+   * @return the order book.
+   * @throws IOException if the JSON cannot be read.
+   */
+  PriceLevelOrderBook readOrderBook(JsonReader reader, String marketId) throws IOException {
+    final PriceLevelOrderBook orderBook = new PriceLevelOrderBook(marketId);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if (BIDS.equals(name)) {
+        readPriceLevels(reader, orderBook, OrderType.BUY);
+      } else if (ASKS.equals(name)) {
+        readPriceLevels(reader, orderBook, OrderType.SELL);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return orderBook;
+  }
+
+  /**
+   * Reads an array of price levels into 1 side of the order book, replacing what was there.
+   *
+   * @param reader the reader, positioned at the start of the array.
+   * @param orderBook the order book.
+   * @param side {@link OrderType#BUY} for the bids, {@link OrderType#SELL} for the asks.
+   * @throws IOException if the JSON cannot be read.
+   */
+  void readPriceLevels(JsonReader reader, PriceLevelOrderBook orderBook, OrderType side)
+      throws IOException {
+    int count = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (count == depth) {
+        reader.skipValue();
+        continue;
+      }
+      if (count == prices.length) {
+        prices = Arrays.copyOf(prices, count * 2);
+        quantities = Arrays.copyOf(quantities, count * 2);
+      }
+      if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+        readArrayPriceLevel(reader, orderBook, count);
+      } else {
+        readObjectPriceLevel(reader, orderBook, count);
+      }
+      count++;
+    }
+    reader.endArray();
+    orderBook.replace(side, prices, quantities, count);
+  }
+
+  /**
+   * Parses a decimal number into a long scaled by the given number of decimal places, without
+   * creating a BigDecimal for plain numbers like "6000.05".
+   *
+   * @param value the number.
+   * @param scale the number of decimal places.
+   * @return the scaled number.
+   * @throws NumberFormatException if the value is not a number.
+   * @throws ArithmeticException if the value has more decimal places than the scale, or is too
+   *     big.
+   */
+  static long parseScaled(String value, int scale) {
+    final int length = value.length();
+    int index = 0;
+    final boolean negative = length > 0 && value.charAt(0) == '-';
+    if (negative) {
+      index++;
+    }
+    long unscaled = 0;
+    int decimalPlaces = -1;
+    boolean hasDigits = false;
+    for (; index < length; index++) {
+      final char c = value.charAt(index);
+      if (c >= '0' && c <= '9') {
+        hasDigits = true;
+        if (decimalPlaces == scale) {
+          if (c != '0') {
+            throw new ArithmeticException("Rounding necessary: " + value);
+          }
+          continue;
+        }
+        if (decimalPlaces >= 0) {
+          decimalPlaces++;
+        }
+        unscaled = Math.addExact(Math.multiplyExact(unscaled, 10), c - '0');
+      } else if (c == '.' && decimalPlaces < 0) {
+        decimalPlaces = 0;
+      } else {
+        // exponents and anything unusual
+        return new BigDecimal(value).setScale(scale).unscaledValue().longValueExact();
+      }
+    }
+    if (!hasDigits) {
+      throw new NumberFormatException("Not a number: " + value);
+    }
+    for (int i = Math.max(decimalPlaces, 0); i < scale; i++) {
+      unscaled = Math.multiplyExact(unscaled, 10);
+    }
+    return negative ? -unscaled : unscaled;
+  }
+
+  private void readArrayPriceLevel(JsonReader reader, PriceLevelOrderBook orderBook, int index)
+      throws IOException {
+    reader.beginArray();
+    prices[index] = parseScaled(reader.nextString(), orderBook.getPriceScale());
+    quantities[index] = parseScaled(reader.nextString(), orderBook.getQuantityScale());
+    while (reader.hasNext()) {
+      reader.skipValue();
+    }
+    reader.endArray();
+  }
+
+  private void readObjectPriceLevel(JsonReader reader, PriceLevelOrderBook orderBook, int index)
+      throws IOException {
+    boolean hasPrice = false;
+    boolean hasQuantity = false;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if (PRICE.equals(name)) {
+        prices[index] = parseScaled(reader.nextString(), orderBook.getPriceScale());
+        hasPrice = true;
+      } else if (AMOUNT.equals(name) || QUANTITY.equals(name) || SIZE.equals(name)) {
+        quantities[index] = parseScaled(reader.nextString(), orderBook.getQuantityScale());
+        hasQuantity = true;
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (!hasPrice || !hasQuantity) {
+      throw new MalformedJsonException(
+          "Price level is missing its price or amount at " + reader.getPath());
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a read timeout on a response body, as {@link java.net.HttpURLConnection#setReadTimeout(int)}
+ * does: each read must return within the timeout.
+ *
+ * <p>The {@link java.net.http.HttpClient} request timeout stops applying once the response headers
+ * arrive, so a body that stalls would otherwise block the reader forever. A watchdog closes the
+ * stream if a read does not return in time, which aborts the exchange; the read then throws an
+ * {@link HttpTimeoutException} rather than returning a truncated body.
+ *
+ * @author gazbert
+ */
+final class ReadTimeoutInputStream extends FilterInputStream {
+
+  private static final ScheduledThreadPoolExecutor WATCHDOG = createWatchdog();
+
+  private final long timeoutNanos;
+  private volatile boolean timedOut;
+
+  ReadTimeoutInputStream(InputStream in, Duration timeout) {
+    super(in);
+    timeoutNanos = timeout.toNanos();
+  }
+
+  @Override
+  public int read() throws IOException {
+    final ScheduledFuture<?> watchdog = startWatchdog();
+    try {
+      return checkNotTimedOut(in.read());
+    } catch (IOException e) {
+      throw timedOut ? createTimeoutException() : e;
+    } finally {
+      watchdog.cancel(false);
+    }
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    final ScheduledFuture<?> watchdog = startWatchdog();
+    try {
+      return checkNotTimedOut(in.read(buffer, offset, length));
+    } catch (IOException e) {
+      throw timedOut ? createTimeoutException() : e;
+    } finally {
+      watchdog.cancel(false);
+    }
+  }
+
+  @Override
+  public long skip(long count) throws IOException {
+    final ScheduledFuture<?> watchdog = startWatchdog();
+    try {
+      final long skipped = in.skip(count);
+      checkNotTimedOut(0);
+      return skipped;
+    } catch (IOException e) {
+      throw timedOut ? createTimeoutException() : e;
+    } finally {
+      watchdog.cancel(false);
+    }
+  }
+
+  private ScheduledFuture<?> startWatchdog() throws IOException {
+    checkNotTimedOut(0);
+    return WATCHDOG.schedule(this::timeOut, timeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /*
+   * Closing the body stream wakes up a read blocked on it, and it may then return end of stream;
+   * the flag stops that being taken for the end of the body.
+   */
+  private int checkNotTimedOut(int result) throws HttpTimeoutException {
+    if (timedOut) {
+      throw createTimeoutException();
+    }
+    return result;
+  }
+
+  private void timeOut() {
+    timedOut = true;
+    try {
+      in.close();
+    } catch (IOException e) {
+      // we are giving up on the response anyway
+    }
+  }
+
+  private HttpTimeoutException createTimeoutException() {
+    return new HttpTimeoutException(
+        "Read timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms");
+  }
+
+  private static ScheduledThreadPoolExecutor createWatchdog() {
+    final ScheduledThreadPoolExecutor watchdog =
+        new ScheduledThreadPoolExecutor(
+            1,
+            new ThreadFactoryBuilder()
+                .setNameFormat("bxbot-http-read-timeout")
+                .setDaemon(true)
+                .build());
+    // Nearly every read returns in time, so don't leave the cancelled timeouts in the queue.
+    watchdog.setRemoveOnCancelPolicy(true);
+    return watchdog;
+  }
+}
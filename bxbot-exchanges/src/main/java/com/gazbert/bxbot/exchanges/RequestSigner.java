@@ -0,0 +1,363 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signs the authenticated requests an Exchange Adapter sends to an exchange.
+ *
+ * <p>A signer either computes an HMAC of the request with the API secret, e.g. HmacSHA256 or
+ * HmacSHA512, or a plain message digest of it, e.g. MD5, and encodes the result as hex or Base64.
+ *
+ * <p>{@link Mac} and {@link MessageDigest} are not thread-safe, so each thread that signs requests
+ * gets its own instances, along with its own buffers for the message bytes, the signature and the
+ * encoded text. These are reused for every request the thread signs: the only object created per
+ * request is the returned String.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author gazbert
+ */
+final class RequestSigner {
+
+  private static final String SHA_256 = "SHA-256";
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+
+  private static final byte[] LOWER_CASE_HEX_DIGITS = ascii("0123456789abcdef");
+  private static final byte[] UPPER_CASE_HEX_DIGITS = ascii("0123456789ABCDEF");
+  private static final byte[] BASE64_DIGITS =
+      ascii("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+
+  private final String algorithm;
+  private final SecretKeySpec key;
+  private final ThreadLocal<Scratch> scratch;
+
+  private RequestSigner(String algorithm, SecretKeySpec key) {
+    this.algorithm = algorithm;
+    this.key = key;
+    this.scratch = ThreadLocal.withInitial(this::createScratch);
+  }
+
+  /**
+   * Creates a signer that computes an HMAC of requests with the given secret.
+   *
+   * @param macAlgorithm the MAC algorithm, e.g. HmacSHA256.
+   * @param secret the API secret.
+   * @return the signer.
+   * @throws NoSuchAlgorithmException if the MAC algorithm is not installed.
+   * @throws InvalidKeyException if the secret cannot be used as a key for the MAC.
+   */
+  static RequestSigner forHmac(String macAlgorithm, byte[] secret)
+      throws NoSuchAlgorithmException, InvalidKeyException {
+    final SecretKeySpec key = new SecretKeySpec(secret, macAlgorithm);
+    Mac.getInstance(macAlgorithm).init(key); // fail fast if the secret is no good
+    return new RequestSigner(macAlgorithm, key);
+  }
+
+  /**
+   * Creates a signer that computes a message digest of requests.
+   *
+   * @param digestAlgorithm the digest algorithm, e.g. MD5.
+   * @return the signer.
+   * @throws NoSuchAlgorithmException if the digest algorithm is not installed.
+   */
+  static RequestSigner forDigest(String digestAlgorithm) throws NoSuchAlgorithmException {
+    MessageDigest.getInstance(digestAlgorithm); // fail fast if the algorithm is not installed
+    return new RequestSigner(digestAlgorithm, null);
+  }
+
+  /**
+   * Signs the UTF-8 bytes of a message.
+   *
+   * @param message the message.
+   * @param upperCase true for upper case hex digits, false for lower case.
+   * @return the signature as hex.
+   */
+  String signToHex(CharSequence message, boolean upperCase) {
+    final Scratch current = scratch.get();
+    final int signatureLength = current.sign(message);
+    final int length =
+        encodeHex(current.signature, signatureLength, current.text(signatureLength * 2), upperCase);
+    return new String(current.text, 0, length, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Signs the UTF-8 bytes of a message.
+   *
+   * @param message the message.
+   * @return the signature in Base64.
+   */
+  String signToBase64(CharSequence message) {
+    final Scratch current = scratch.get();
+    final int signatureLength = current.sign(message);
+    return current.toBase64(current.signature, signatureLength);
+  }
+
+  /**
+   * Signs the UTF-8 bytes of a prefix followed by the SHA-256 hash of the UTF-8 bytes of a
+   * message. Kraken and itBit sign requests like this.
+   *
+   * @param prefix the prefix, e.g. the request path.
+   * @param message the message to hash, e.g. the nonce and the request body.
+   * @return the signature in Base64.
+   */
+  String signWithSha256ToBase64(CharSequence prefix, CharSequence message) {
+    final Scratch current = scratch.get();
+    final int signatureLength = current.signWithSha256(prefix, message);
+    return current.toBase64(current.signature, signatureLength);
+  }
+
+  /**
+   * Encodes the UTF-8 bytes of a message in Base64, e.g. for a request payload header.
+   *
+   * @param message the message.
+   * @return the message in Base64.
+   */
+  String toBase64(CharSequence message) {
+    final Scratch current = scratch.get();
+    final int length = current.encodeUtf8(message);
+    return current.toBase64(current.bytes, length);
+  }
+
+  @Override
+  public String toString() {
+    return "RequestSigner{algorithm=" + algorithm + "}";
+  }
+
+  // --------------------------------------------------------------------------
+  //  Encoders
+  // --------------------------------------------------------------------------
+
+  /**
+   * Encodes bytes as ASCII hex into the given bytes, without creating any objects.
+   *
+   * @param src the bytes.
+   * @param length how many of the bytes to encode.
+   * @param dst where to put the hex; it must hold at least twice the length.
+   * @param upperCase true for upper case hex digits, false for lower case.
+   * @return the number of hex digits written.
+   */
+  static int encodeHex(byte[] src, int length, byte[] dst, boolean upperCase) {
+    final byte[] digits = upperCase ? UPPER_CASE_HEX_DIGITS : LOWER_CASE_HEX_DIGITS;
+    int pos = 0;
+    for (int i = 0; i < length; i++) {
+      dst[pos++] = digits[(src[i] >> 4) & 0xf];
+      dst[pos++] = digits[src[i] & 0xf];
+    }
+    return pos;
+  }
+
+  /**
+   * Returns the length of the padded Base64 encoding of the given number of bytes.
+   *
+   * @param length the number of bytes.
+   * @return the number of Base64 digits.
+   */
+  static int base64Length(int length) {
+    return (length + 2) / 3 * 4;
+  }
+
+  /**
+   * Encodes bytes as padded ASCII Base64 into the given bytes, without creating any objects.
+   *
+   * @param src the bytes.
+   * @param length how many of the bytes to encode.
+   * @param dst where to put the Base64; it must hold at least {@link #base64Length(int)} bytes.
+   * @return the number of Base64 digits written.
+   */
+  static int encodeBase64(byte[] src, int length, byte[] dst) {
+    int pos = 0;
+    int i = 0;
+    for (final int whole = length - length % 3; i < whole; i += 3) {
+      final int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+      dst[pos++] = BASE64_DIGITS[bits >>> 18];
+      dst[pos++] = BASE64_DIGITS[(bits >>> 12) & 0x3f];
+      dst[pos++] = BASE64_DIGITS[(bits >>> 6) & 0x3f];
+      dst[pos++] = BASE64_DIGITS[bits & 0x3f];
+    }
+    final int remaining = length - i;
+    if (remaining > 0) {
+      final int bits = (src[i] & 0xff) << 16 | (remaining == 2 ? (src[i + 1] & 0xff) << 8 : 0);
+      dst[pos++] = BASE64_DIGITS[bits >>> 18];
+      dst[pos++] = BASE64_DIGITS[(bits >>> 12) & 0x3f];
+      dst[pos++] = remaining == 2 ? BASE64_DIGITS[(bits >>> 6) & 0x3f] : (byte) '=';
+      dst[pos++] = (byte) '=';
+    }
+    return pos;
+  }
+
+  /**
+   * Encodes chars as UTF-8 into the given bytes, without creating any objects. Unpaired
+   * surrogates are encoded as '?', like {@link String#getBytes(java.nio.charset.Charset)} does.
+   *
+   * @param src the chars.
+   * @param dst where to put the UTF-8; it must hold at least 3 times the number of chars.
+   * @return the number of bytes written.
+   */
+  static int encodeUtf8(CharSequence src, byte[] dst) {
+    int pos = 0;
+    final int length = src.length();
+    int i = 0;
+    while (i < length && src.charAt(i) < 0x80) {
+      dst[pos++] = (byte) src.charAt(i++); // fast path for the usual ASCII request
+    }
+    for (; i < length; i++) {
+      final char c = src.charAt(i);
+      if (c < 0x80) {
+        dst[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        dst[pos++] = (byte) (0xc0 | c >> 6);
+        dst[pos++] = (byte) (0x80 | c & 0x3f);
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c)
+            && i + 1 < length
+            && Character.isLowSurrogate(src.charAt(i + 1))) {
+          final int codePoint = Character.toCodePoint(c, src.charAt(++i));
+          dst[pos++] = (byte) (0xf0 | codePoint >> 18);
+          dst[pos++] = (byte) (0x80 | (codePoint >> 12) & 0x3f);
+          dst[pos++] = (byte) (0x80 | (codePoint >> 6) & 0x3f);
+          dst[pos++] = (byte) (0x80 | codePoint & 0x3f);
+        } else {
+          dst[pos++] = '?';
+        }
+      } else {
+        dst[pos++] = (byte) (0xe0 | c >> 12);
+        dst[pos++] = (byte) (0x80 | (c >> 6) & 0x3f);
+        dst[pos++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+    return pos;
+  }
+
+  private static byte[] ascii(String digits) {
+    return digits.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  // --------------------------------------------------------------------------
+  //  Per-thread state
+  // --------------------------------------------------------------------------
+
+  private Scratch createScratch() {
+    try {
+      if (key == null) {
+        return new Scratch(null, MessageDigest.getInstance(algorithm));
+      }
+      final Mac mac = Mac.getInstance(algorithm);
+      mac.init(key);
+      return new Scratch(mac, null);
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      // checked when the signer was created
+      throw new IllegalStateException("Failed to create " + algorithm + " for request signing", e);
+    }
+  }
+
+  /*
+   * The MAC or digest, and the buffers, 1 thread signs requests with. The methods are not private:
+   * SpotBugs does not see the signer calling a nested class's private methods.
+   */
+  private static final class Scratch {
+
+    private final Mac mac;
+    private final MessageDigest digest;
+    private MessageDigest sha256;
+    private final byte[] signature;
+    private final byte[] messageHash = new byte[32];
+    private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] text = new byte[INITIAL_BUFFER_SIZE];
+
+    private Scratch(Mac mac, MessageDigest digest) {
+      this.mac = mac;
+      this.digest = digest;
+      this.signature = new byte[mac != null ? mac.getMacLength() : digest.getDigestLength()];
+    }
+
+    int sign(CharSequence message) {
+      final int length = encodeUtf8(message);
+      try {
+        if (mac != null) {
+          mac.update(bytes, 0, length);
+          mac.doFinal(signature, 0);
+        } else {
+          digest.update(bytes, 0, length);
+          digest.digest(signature, 0, signature.length);
+        }
+      } catch (ShortBufferException | DigestException e) {
+        throw new IllegalStateException("Signature buffer is too small", e); // sized for it
+      }
+      return signature.length;
+    }
+
+    int signWithSha256(CharSequence prefix, CharSequence message) {
+      if (mac == null) {
+        throw new IllegalStateException("Only an HMAC signer can sign with a SHA-256 hash");
+      }
+      try {
+        if (sha256 == null) {
+          sha256 = MessageDigest.getInstance(SHA_256);
+        }
+        int length = encodeUtf8(message);
+        sha256.update(bytes, 0, length);
+        sha256.digest(messageHash, 0, messageHash.length);
+
+        length = encodeUtf8(prefix);
+        mac.update(bytes, 0, length);
+        mac.update(messageHash);
+        mac.doFinal(signature, 0);
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("Failed to create " + SHA_256 + " digest", e);
+      } catch (ShortBufferException | DigestException e) {
+        throw new IllegalStateException("Signature buffer is too small", e); // sized for it
+      }
+      return signature.length;
+    }
+
+    int encodeUtf8(CharSequence message) {
+      final int maxLength = message.length() * 3;
+      if (bytes.length < maxLength) {
+        bytes = new byte[Math.max(maxLength, bytes.length * 2)];
+      }
+      return RequestSigner.encodeUtf8(message, bytes);
+    }
+
+    private byte[] text(int length) {
+      if (text.length < length) {
+        text = new byte[Math.max(length, text.length * 2)];
+      }
+      return text;
+    }
+
+    private String toBase64(byte[] src, int length) {
+      final int textLength = encodeBase64(src, length, text(base64Length(length)));
+      return new String(text, 0, textLength, StandardCharsets.US_ASCII);
+    }
+  }
+}
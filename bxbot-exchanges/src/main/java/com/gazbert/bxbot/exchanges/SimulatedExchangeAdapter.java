@@ -0,0 +1,225 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
+import com.gazbert.bxbot.exchange.api.ExchangeConfig;
+import com.gazbert.bxbot.exchange.api.OtherConfig;
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Exchange Adapter for a simulated exchange that runs inside the bot. It needs no network and no
+ * exchange account, so it can be used for load testing the engine and strategies at thousands of
+ * orders per second, and for 'dry testing' your algos against a market that fills your orders.
+ *
+ * <p>The exchange is a price-time priority {@link SimulatedMatchingEngine}. Other traders are
+ * simulated by a {@link SimulatedOrderFlow}: either a synthetic random walk, or orders replayed
+ * from a file. All the other config items are optional:
+ *
+ * <pre>
+ * markets: btcusd=BTC/USD@10000, ethusd=ETH/USD@300  # id=BASE/COUNTER@start price
+ * balances: BTC=100, USD=1000000, ETH=1000           # the bot's starting balances
+ * buy-fee: 0.25                                      # % of the order value
+ * sell-fee: 0.25
+ * order-flow-rate: 100                               # orders per second; 0 stops the flow
+ * order-flow-file: ./orders.csv                      # lines of market,BUY|SELL,price,qty
+ * random-seed: 42                                    # for a repeatable synthetic flow
+ * http-port: 8085                                    # also serve the exchange over HTTP
+ * </pre>
+ *
+ * <p>If http-port is set, the same matching engine is served using the Bitstamp REST API by a
+ * {@link SimulatedExchangeServer}, so a {@link BitstampExchangeAdapter} in another bot, or a load
+ * testing tool, can trade against it.
+ *
+ * <p>Unlike the other adapters, this adapter is thread safe.
+ *
+ * @author gazbert
+ */
+public final class SimulatedExchangeAdapter implements ExchangeAdapter {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final String MARKETS_PROPERTY_NAME = "markets";
+  private static final String BALANCES_PROPERTY_NAME = "balances";
+  private static final String BUY_FEE_PROPERTY_NAME = "buy-fee";
+  private static final String SELL_FEE_PROPERTY_NAME = "sell-fee";
+  private static final String ORDER_FLOW_RATE_PROPERTY_NAME = "order-flow-rate";
+  private static final String ORDER_FLOW_FILE_PROPERTY_NAME = "order-flow-file";
+  private static final String RANDOM_SEED_PROPERTY_NAME = "random-seed";
+  private static final String HTTP_PORT_PROPERTY_NAME = "http-port";
+
+  private static final String DEFAULT_ORDER_FLOW_RATE = "100";
+
+  /** Orders sent to each market at start up, so the bot does not start with an empty book. */
+  private static final int SEED_ORDERS_PER_MARKET = 100;
+
+  private volatile SimulatedMatchingEngine matchingEngine;
+  private SimulatedOrderFlow orderFlow;
+  private SimulatedExchangeServer server;
+
+  @Override
+  public synchronized void init(ExchangeConfig config) {
+    LOG.info(() -> "About to initialise Simulated ExchangeConfig: " + config);
+    final OtherConfig otherConfig = config.getOtherConfig();
+
+    final SimulatedMatchingEngine matchingEngine = new SimulatedMatchingEngine();
+    matchingEngine.addMarkets(
+        getItem(otherConfig, MARKETS_PROPERTY_NAME, SimulatedExchangeServer.DEFAULT_MARKETS));
+    matchingEngine.depositAll(
+        getItem(otherConfig, BALANCES_PROPERTY_NAME, SimulatedExchangeServer.DEFAULT_BALANCES));
+    matchingEngine.setFees(
+        getFee(otherConfig, BUY_FEE_PROPERTY_NAME), getFee(otherConfig, SELL_FEE_PROPERTY_NAME));
+
+    final String seed = getItem(otherConfig, RANDOM_SEED_PROPERTY_NAME, null);
+    final Random random = seed == null ? new Random() : new Random(Long.parseLong(seed.trim()));
+    final String orderFlowFile = getItem(otherConfig, ORDER_FLOW_FILE_PROPERTY_NAME, null);
+    final double ordersPerSecond =
+        Double.parseDouble(
+            getItem(otherConfig, ORDER_FLOW_RATE_PROPERTY_NAME, DEFAULT_ORDER_FLOW_RATE).trim());
+    try {
+      orderFlow =
+          new SimulatedOrderFlow(
+              matchingEngine,
+              orderFlowFile == null
+                  ? Collections.emptyList()
+                  : SimulatedOrderFlow.readOrders(Paths.get(orderFlowFile.trim())),
+              random);
+      orderFlow.step(SEED_ORDERS_PER_MARKET * matchingEngine.getMarketIds().size());
+      if (ordersPerSecond > 0) {
+        orderFlow.start(ordersPerSecond);
+      }
+
+      this.matchingEngine = matchingEngine;
+
+      final String httpPort = getItem(otherConfig, HTTP_PORT_PROPERTY_NAME, null);
+      if (httpPort != null) {
+        server = new SimulatedExchangeServer(matchingEngine, Integer.parseInt(httpPort.trim()));
+        server.start();
+      }
+
+    } catch (TradingApiException e) {
+      throw new IllegalStateException("Failed to start the simulated order flow", e);
+
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to start the simulated exchange", e);
+    }
+  }
+
+  @Override
+  public String getImplName() {
+    return "Simulated exchange - in-process matching engine";
+  }
+
+  @Override
+  public MarketOrderBook getMarketOrders(String marketId) throws TradingApiException {
+    return getMatchingEngine().getOrderBook(marketId, 0);
+  }
+
+  @Override
+  public List<OpenOrder> getYourOpenOrders(String marketId) throws TradingApiException {
+    return getMatchingEngine().getOpenOrders(SimulatedMatchingEngine.BOT_ACCOUNT, marketId);
+  }
+
+  @Override
+  public String createOrder(
+      String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price)
+      throws TradingApiException {
+    return getMatchingEngine()
+        .placeOrder(SimulatedMatchingEngine.BOT_ACCOUNT, marketId, orderType, quantity, price);
+  }
+
+  /* marketId is not needed for cancelling orders on this exchange. */
+  @Override
+  public boolean cancelOrder(String orderId, String marketIdNotNeeded) {
+    return getMatchingEngine().cancelOrder(SimulatedMatchingEngine.BOT_ACCOUNT, orderId);
+  }
+
+  @Override
+  public BigDecimal getLatestMarketPrice(String marketId) throws TradingApiException {
+    return getMatchingEngine().getLastPrice(marketId);
+  }
+
+  @Override
+  public BalanceInfo getBalanceInfo() {
+    return getMatchingEngine().getBalanceInfo();
+  }
+
+  @Override
+  public BigDecimal getPercentageOfBuyOrderTakenForExchangeFee(String marketId) {
+    return getMatchingEngine().getBuyFee();
+  }
+
+  @Override
+  public BigDecimal getPercentageOfSellOrderTakenForExchangeFee(String marketId) {
+    return getMatchingEngine().getSellFee();
+  }
+
+  @Override
+  public Ticker getTicker(String marketId) throws TradingApiException {
+    return getMatchingEngine().getTicker(marketId);
+  }
+
+  // --------------------------------------------------------------------------
+  //  Config methods
+  // --------------------------------------------------------------------------
+
+  private static String getItem(OtherConfig otherConfig, String itemName, String defaultValue) {
+    final String itemValue = otherConfig == null ? null : otherConfig.getItem(itemName);
+    if (itemValue == null || itemValue.trim().isEmpty()) {
+      return defaultValue;
+    }
+    LOG.info(() -> itemName + ": " + itemValue);
+    return itemValue;
+  }
+
+  private static BigDecimal getFee(OtherConfig otherConfig, String itemName) {
+    return new BigDecimal(getItem(otherConfig, itemName, "0").trim())
+        .divide(new BigDecimal("100"), 8, RoundingMode.HALF_UP);
+  }
+
+  private SimulatedMatchingEngine getMatchingEngine() {
+    final SimulatedMatchingEngine matchingEngine = this.matchingEngine;
+    if (matchingEngine == null) {
+      final String errorMsg = "Simulated exchange has not been initialized.";
+      LOG.error(errorMsg);
+      throw new IllegalStateException(errorMsg);
+    }
+    return matchingEngine;
+  }
+}
@@ -0,0 +1,392 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.MarketMetadata;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Serves a {@link SimulatedMatchingEngine} over HTTP using the Bitstamp v2 REST API wire format, so
+ * the {@link BitstampExchangeAdapter} can be load tested against it with no network.
+ *
+ * <p>Point the adapter at the server by setting its api-base-url other config item to {@code
+ * http://localhost:<port>/api/v2/}. The server supports the calls the adapter makes: order_book,
+ * ticker, open_orders, buy, sell, cancel_order and balance. The authentication headers are not
+ * checked; all private calls trade with the {@link SimulatedMatchingEngine#BOT_ACCOUNT}.
+ *
+ * <p>The server can also be run on its own:
+ *
+ * <pre>
+ * java -cp bxbot-exchanges.jar:... com.gazbert.bxbot.exchanges.SimulatedExchangeServer \
+ *     &lt;port&gt; [&lt;orders per second&gt;] [&lt;markets&gt;] [&lt;balances&gt;]
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class SimulatedExchangeServer implements Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  /** The path the API is served on. The same as Bitstamp's. */
+  static final String API_PATH = "/api/v2/";
+
+  static final String DEFAULT_MARKETS = "btcusd=BTC/USD@10000";
+  static final String DEFAULT_BALANCES = "BTC=100, USD=1000000";
+
+  private static final String AMOUNT = "amount";
+  private static final String PRICE = "price";
+  private static final DateTimeFormatter BITSTAMP_DATE_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final SimulatedMatchingEngine matchingEngine;
+  private final HttpServer httpServer;
+  private final ExecutorService executor;
+
+  /**
+   * Creates the server. It listens on the loopback address and is not started until {@link
+   * #start()} is called.
+   *
+   * @param matchingEngine the matching engine to serve.
+   * @param port the port to listen on, or 0 for any free port.
+   * @throws IOException if the port cannot be bound.
+   */
+  SimulatedExchangeServer(SimulatedMatchingEngine matchingEngine, int port) throws IOException {
+    this.matchingEngine = matchingEngine;
+    httpServer =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    executor =
+        Executors.newFixedThreadPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+            runnable -> {
+              final Thread thread =
+                  new Thread(
+                      runnable, "bxbot-simulated-exchange-" + THREAD_COUNT.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    httpServer.setExecutor(executor);
+    httpServer.createContext(API_PATH, this::handle);
+  }
+
+  /**
+   * Runs the server on its own, with a synthetic order flow.
+   *
+   * @param args the port, and optionally the orders per second, the markets, and the balances.
+   * @throws Exception if the server fails to start.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println(
+          "Usage: SimulatedExchangeServer <port> [<orders per second>] [<markets>] [<balances>]");
+      System.exit(1);
+    }
+    final SimulatedMatchingEngine matchingEngine = new SimulatedMatchingEngine();
+    matchingEngine.addMarkets(args.length > 2 ? args[2] : DEFAULT_MARKETS);
+    matchingEngine.depositAll(args.length > 3 ? args[3] : DEFAULT_BALANCES);
+
+    final SimulatedExchangeServer server =
+        new SimulatedExchangeServer(matchingEngine, Integer.parseInt(args[0]));
+    server.start();
+    final SimulatedOrderFlow orderFlow = new SimulatedOrderFlow(matchingEngine, new Random());
+    orderFlow.start(args.length > 1 ? Double.parseDouble(args[1]) : 100);
+    Thread.currentThread().join();
+  }
+
+  /** Starts serving requests. */
+  void start() {
+    httpServer.start();
+    LOG.info(() -> "Simulated exchange listening on " + getBaseUrl());
+  }
+
+  /**
+   * Returns the port the server is listening on.
+   *
+   * @return the port.
+   */
+  int getPort() {
+    return httpServer.getAddress().getPort();
+  }
+
+  /**
+   * Returns the URL to set as the Bitstamp adapter's api-base-url.
+   *
+   * @return the base URL of the API.
+   */
+  String getBaseUrl() {
+    return "http://localhost:" + getPort() + API_PATH;
+  }
+
+  /** Stops the server. */
+  @Override
+  public void close() {
+    httpServer.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      final String path = exchange.getRequestURI().getPath().substring(API_PATH.length());
+      final String[] segments = path.split("/");
+      final String method = segments[0];
+      final String marketId = segments.length > 1 ? segments[1] : null;
+      final Map<String, String> params = readParams(exchange);
+
+      final JsonElement response;
+      switch (method) {
+        case "order_book":
+          response = orderBook(matchingEngine.getOrderBook(marketId, 0));
+          break;
+        case "ticker":
+          response = ticker(matchingEngine.getTicker(marketId));
+          break;
+        case "open_orders":
+          response = openOrders(marketId);
+          break;
+        case "buy":
+          response = placeOrder(marketId, OrderType.BUY, params);
+          break;
+        case "sell":
+          response = placeOrder(marketId, OrderType.SELL, params);
+          break;
+        case "cancel_order":
+          response = cancelOrder(params.get("id"));
+          break;
+        case "balance":
+          response = balance();
+          break;
+        case "trading-pairs-info":
+          response = tradingPairsInfo();
+          break;
+        default:
+          send(exchange, 404, error("Unknown API method: " + path));
+          return;
+      }
+      send(exchange, 200, response);
+
+    } catch (TradingApiException | RuntimeException e) {
+      send(exchange, 400, error(e.getMessage()));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+    final Map<String, String> params = new HashMap<>();
+    final String body =
+        new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    for (final String param : body.split("&")) {
+      final int equals = param.indexOf('=');
+      if (equals > 0) {
+        params.put(
+            URLDecoder.decode(param.substring(0, equals), StandardCharsets.UTF_8),
+            URLDecoder.decode(param.substring(equals + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return params;
+  }
+
+  private static JsonObject orderBook(MarketOrderBook orderBook) {
+    final JsonObject response = new JsonObject();
+    response.addProperty("timestamp", Long.toString(System.currentTimeMillis() / 1000));
+    response.add("bids", priceLevels(orderBook.getBuyOrders()));
+    response.add("asks", priceLevels(orderBook.getSellOrders()));
+    return response;
+  }
+
+  private static JsonArray priceLevels(List<MarketOrder> marketOrders) {
+    final JsonArray levels = new JsonArray();
+    for (final MarketOrder marketOrder : marketOrders) {
+      final JsonArray level = new JsonArray();
+      level.add(marketOrder.getPrice().toPlainString());
+      level.add(marketOrder.getQuantity().toPlainString());
+      levels.add(level);
+    }
+    return levels;
+  }
+
+  private static JsonObject ticker(Ticker ticker) {
+    final JsonObject response = new JsonObject();
+    addDecimal(response, "last", ticker.getLast());
+    addDecimal(response, "bid", ticker.getBid());
+    addDecimal(response, "ask", ticker.getAsk());
+    addDecimal(response, "low", ticker.getLow());
+    addDecimal(response, "high", ticker.getHigh());
+    addDecimal(response, "open", ticker.getOpen());
+    addDecimal(response, "volume", ticker.getVolume());
+    addDecimal(response, "vwap", ticker.getVwap());
+    response.addProperty(
+        "timestamp",
+        Long.toString(
+            (ticker.getTimestamp() == null ? System.currentTimeMillis() : ticker.getTimestamp())
+                / 1000));
+    return response;
+  }
+
+  private JsonArray openOrders(String marketId) throws TradingApiException {
+    final JsonArray response = new JsonArray();
+    for (final OpenOrder openOrder :
+        matchingEngine.getOpenOrders(SimulatedMatchingEngine.BOT_ACCOUNT, marketId)) {
+      final JsonObject order = new JsonObject();
+      order.addProperty("id", openOrder.getId());
+      order.addProperty(
+          "datetime", BITSTAMP_DATE_FORMAT.format(openOrder.getCreationDate().toInstant()));
+      order.addProperty("type", openOrder.getType() == OrderType.BUY ? "0" : "1");
+      addDecimal(order, PRICE, openOrder.getPrice());
+      addDecimal(order, AMOUNT, openOrder.getQuantity());
+      response.add(order);
+    }
+    return response;
+  }
+
+  /*
+   * Like Bitstamp, a rejected order is a 200 response with an error status and reason.
+   */
+  private JsonObject placeOrder(String marketId, OrderType side, Map<String, String> params) {
+    try {
+      final BigDecimal quantity = new BigDecimal(params.get(AMOUNT));
+      final BigDecimal price = new BigDecimal(params.get(PRICE));
+      final String orderId =
+          matchingEngine.placeOrder(
+              SimulatedMatchingEngine.BOT_ACCOUNT, marketId, side, quantity, price);
+      final JsonObject response = new JsonObject();
+      response.addProperty("id", orderId);
+      response.addProperty("datetime", BITSTAMP_DATE_FORMAT.format(Instant.now()));
+      response.addProperty("type", side == OrderType.BUY ? "0" : "1");
+      addDecimal(response, PRICE, price);
+      addDecimal(response, AMOUNT, quantity);
+      return response;
+
+    } catch (TradingApiException | RuntimeException e) {
+      final JsonObject reason = new JsonObject();
+      final JsonArray messages = new JsonArray();
+      messages.add(String.valueOf(e.getMessage()));
+      reason.add("__all__", messages);
+      final JsonObject response = new JsonObject();
+      response.addProperty("status", "error");
+      response.add("reason", reason);
+      return response;
+    }
+  }
+
+  private JsonObject cancelOrder(String orderId) {
+    if (orderId != null
+        && matchingEngine.cancelOrder(SimulatedMatchingEngine.BOT_ACCOUNT, orderId)) {
+      final JsonObject response = new JsonObject();
+      response.addProperty("id", orderId);
+      return response;
+    }
+    return error("Order not found");
+  }
+
+  private JsonObject balance() {
+    final JsonObject response = new JsonObject();
+    final BalanceInfo balanceInfo = matchingEngine.getBalanceInfo();
+    for (final Map.Entry<String, BigDecimal> available :
+        balanceInfo.getBalancesAvailable().entrySet()) {
+      final String currency = available.getKey().toLowerCase(Locale.ROOT);
+      final BigDecimal reserved = balanceInfo.getBalancesOnHold().get(available.getKey());
+      addDecimal(response, currency + "_available", available.getValue());
+      addDecimal(response, currency + "_reserved", reserved);
+      addDecimal(response, currency + "_balance", available.getValue().add(reserved));
+    }
+    // Bitstamp has 1 fee per market, as a %; the taker fee is used for both sides.
+    final BigDecimal feePercentage = matchingEngine.getBuyFee().movePointRight(2);
+    for (final String marketId : matchingEngine.getMarketIds()) {
+      addDecimal(response, marketId + "_fee", feePercentage);
+    }
+    return response;
+  }
+
+  /*
+   * The matching engine accepts any precision, so every market trades to 8 decimal places.
+   */
+  private JsonArray tradingPairsInfo() {
+    final JsonArray response = new JsonArray();
+    for (final String marketId : matchingEngine.getMarketIds()) {
+      final JsonObject tradingPair = new JsonObject();
+      tradingPair.addProperty("url_symbol", marketId);
+      tradingPair.addProperty("base_decimals", MarketMetadata.DEFAULT_DECIMAL_PLACES);
+      tradingPair.addProperty("counter_decimals", MarketMetadata.DEFAULT_DECIMAL_PLACES);
+      tradingPair.addProperty("trading", "Enabled");
+      response.add(tradingPair);
+    }
+    return response;
+  }
+
+  private static JsonObject error(String message) {
+    final JsonObject response = new JsonObject();
+    response.addProperty("error", String.valueOf(message));
+    return response;
+  }
+
+  private static void addDecimal(JsonObject json, String name, BigDecimal value) {
+    if (value != null) {
+      json.addProperty(name, value.toPlainString());
+    }
+  }
+
+  private static void send(HttpExchange exchange, int statusCode, JsonElement response)
+      throws IOException {
+    final byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(statusCode, body.length);
+    try {
+      exchange.getResponseBody().write(body);
+    } finally {
+      exchange.close();
+    }
+  }
+}
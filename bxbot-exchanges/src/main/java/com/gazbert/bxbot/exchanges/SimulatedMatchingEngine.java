@@ -0,0 +1,620 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.BalanceInfoImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderBookImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.OpenOrderImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.TickerImpl;
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * An in-process exchange that matches limit orders with price-time priority.
+ *
+ * <p>Each market has its own order book. An order is matched against the best opposite price
+ * levels while the prices cross, trading at the resting order's price; within a price level the
+ * oldest order is filled first. Whatever is left rests on the book until it is filled or
+ * cancelled.
+ *
+ * <p>Orders belong to an account. The {@link #BOT_ACCOUNT} has balances: funds are reserved when
+ * its orders are placed, settled as they fill, and released when they are cancelled. Fees are
+ * taken from the bot's fills in the counter currency. The {@link #ORDER_FLOW_ACCOUNT} is used for
+ * the simulated order flow and has unlimited funds.
+ *
+ * <p>This class is thread-safe. Each market is locked on its own, so the markets can be traded in
+ * parallel.
+ *
+ * @author gazbert
+ */
+final class SimulatedMatchingEngine {
+
+  /** The account the bot trades with. */
+  static final String BOT_ACCOUNT = "bot";
+
+  /** The account the simulated order flow trades with. It has unlimited funds. */
+  static final String ORDER_FLOW_ACCOUNT = "order-flow";
+
+  private final Map<String, Market> markets = new ConcurrentHashMap<>();
+  private final Map<Long, Order> restingOrders = new ConcurrentHashMap<>();
+  private final Map<String, Balance> balances = new HashMap<>();
+  private final AtomicLong nextOrderId = new AtomicLong(1);
+  private final LongSupplier clock;
+  private volatile BigDecimal buyFee = BigDecimal.ZERO;
+  private volatile BigDecimal sellFee = BigDecimal.ZERO;
+
+  SimulatedMatchingEngine() {
+    this(System::currentTimeMillis);
+  }
+
+  SimulatedMatchingEngine(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Adds a market.
+   *
+   * @param marketId the id of the market.
+   * @param baseCurrency the currency being bought and sold, e.g. BTC.
+   * @param counterCurrency the currency the price is in, e.g. USD.
+   * @param startPrice the last price before any trades.
+   */
+  void addMarket(
+      String marketId, String baseCurrency, String counterCurrency, BigDecimal startPrice) {
+    markets.put(marketId, new Market(marketId, baseCurrency, counterCurrency, startPrice));
+  }
+
+  /**
+   * Adds the markets in a comma separated list of {@code <marketId>=<BASE>/<COUNTER>@<start
+   * price>} items, e.g. {@code btcusd=BTC/USD@10000}.
+   *
+   * @param markets the markets.
+   * @throws IllegalArgumentException if an item is not valid.
+   */
+  void addMarkets(String markets) {
+    for (final String market : markets.split(",")) {
+      final String[] idAndRest = market.split("=");
+      final String[] currenciesAndPrice = idAndRest.length == 2 ? idAndRest[1].split("@") : null;
+      final String[] currencies =
+          currenciesAndPrice != null && currenciesAndPrice.length == 2
+              ? currenciesAndPrice[0].split("/")
+              : null;
+      try {
+        if (currencies == null || currencies.length != 2 || idAndRest[0].trim().isEmpty()) {
+          throw new NumberFormatException("Missing market id, currencies or start price");
+        }
+        final BigDecimal startPrice = new BigDecimal(currenciesAndPrice[1].trim());
+        if (startPrice.signum() <= 0) {
+          throw new NumberFormatException("Start price must be positive");
+        }
+        addMarket(idAndRest[0].trim(), currencies[0].trim(), currencies[1].trim(), startPrice);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(
+            "Market must be <marketId>=<BASE>/<COUNTER>@<start price>: " + market, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the ids of the markets.
+   *
+   * @return the market ids.
+   */
+  Set<String> getMarketIds() {
+    return Collections.unmodifiableSet(markets.keySet());
+  }
+
+  /**
+   * Sets the fees taken from the bot's fills.
+   *
+   * @param buyFee the fraction of a buy taken as a fee, e.g. 0.0025.
+   * @param sellFee the fraction of a sell taken as a fee, e.g. 0.0025.
+   */
+  void setFees(BigDecimal buyFee, BigDecimal sellFee) {
+    this.buyFee = buyFee;
+    this.sellFee = sellFee;
+  }
+
+  BigDecimal getBuyFee() {
+    return buyFee;
+  }
+
+  BigDecimal getSellFee() {
+    return sellFee;
+  }
+
+  /**
+   * Adds funds to the bot's account.
+   *
+   * @param currency the currency, e.g. BTC.
+   * @param amount the amount to add.
+   */
+  void deposit(String currency, BigDecimal amount) {
+    synchronized (balances) {
+      final Balance balance = balances.computeIfAbsent(currency, c -> new Balance());
+      balance.available = balance.available.add(amount);
+    }
+  }
+
+  /**
+   * Adds the funds in a comma separated list of {@code <currency>=<amount>} items to the bot's
+   * account, e.g. {@code BTC=10, USD=100000}.
+   *
+   * @param amounts the funds.
+   * @throws IllegalArgumentException if an item is not valid.
+   */
+  void depositAll(String amounts) {
+    for (final String amount : amounts.split(",")) {
+      final String[] currencyAndAmount = amount.split("=");
+      try {
+        if (currencyAndAmount.length != 2 || currencyAndAmount[0].trim().isEmpty()) {
+          throw new NumberFormatException("Missing currency or amount");
+        }
+        deposit(currencyAndAmount[0].trim(), new BigDecimal(currencyAndAmount[1].trim()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Balance must be <currency>=<amount>: " + amount, e);
+      }
+    }
+  }
+
+  /**
+   * Places a limit order and matches it against the order book.
+   *
+   * @param account the account placing the order.
+   * @param marketId the id of the market.
+   * @param side {@link OrderType#BUY} or {@link OrderType#SELL}.
+   * @param quantity the amount of the base currency to buy or sell.
+   * @param price the limit price.
+   * @return the id of the order.
+   * @throws TradingApiException if the market is unknown, the quantity or price is not positive,
+   *     or the bot does not have the funds.
+   */
+  String placeOrder(
+      String account, String marketId, OrderType side, BigDecimal quantity, BigDecimal price)
+      throws TradingApiException {
+    final Market market = getMarket(marketId);
+    if (quantity == null || quantity.signum() <= 0 || price == null || price.signum() <= 0) {
+      throw new TradingApiException(
+          "Quantity and price must be positive. Quantity: " + quantity + " Price: " + price);
+    }
+    final Order order =
+        new Order(
+            nextOrderId.getAndIncrement(),
+            market,
+            account,
+            side,
+            quantity,
+            price,
+            buyFee,
+            clock.getAsLong());
+    synchronized (market) {
+      if (isBot(account)) {
+        reserve(market, order);
+      }
+      match(market, order);
+      if (order.remaining.signum() > 0) {
+        market.levels(side).computeIfAbsent(price, p -> new ArrayDeque<>()).addLast(order);
+        market.orders.put(order.id, order);
+        restingOrders.put(order.id, order);
+      }
+    }
+    return Long.toString(order.id);
+  }
+
+  /**
+   * Cancels an order that is still on the order book.
+   *
+   * @param account the account that placed the order.
+   * @param orderId the id of the order.
+   * @return true if the order was cancelled, false if it is not on the order book.
+   */
+  boolean cancelOrder(String account, String orderId) {
+    final Order order;
+    try {
+      order = restingOrders.get(Long.parseLong(orderId));
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    if (order == null || !order.account.equals(account)) {
+      return false;
+    }
+    final Market market = order.market;
+    synchronized (market) {
+      if (market.orders.remove(order.id) == null) {
+        return false; // filled while we waited for the lock
+      }
+      restingOrders.remove(order.id);
+      final NavigableMap<BigDecimal, ArrayDeque<Order>> levels = market.levels(order.side);
+      final ArrayDeque<Order> level = levels.get(order.price);
+      level.remove(order);
+      if (level.isEmpty()) {
+        levels.remove(order.price);
+      }
+      if (isBot(account)) {
+        release(market, order, order.remaining);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Returns the order book, with the orders at each price aggregated.
+   *
+   * @param marketId the id of the market.
+   * @param depth the number of price levels on each side, or 0 for all of them.
+   * @return the order book.
+   * @throws TradingApiException if the market is unknown.
+   */
+  MarketOrderBook getOrderBook(String marketId, int depth) throws TradingApiException {
+    final Market market = getMarket(marketId);
+    synchronized (market) {
+      return new MarketOrderBookImpl(
+          marketId,
+          aggregate(OrderType.SELL, market.asks, depth),
+          aggregate(OrderType.BUY, market.bids, depth));
+    }
+  }
+
+  /**
+   * Returns an account's orders that are still on the order book, oldest first.
+   *
+   * @param account the account.
+   * @param marketId the id of the market.
+   * @return the open orders.
+   * @throws TradingApiException if the market is unknown.
+   */
+  List<OpenOrder> getOpenOrders(String account, String marketId) throws TradingApiException {
+    final Market market = getMarket(marketId);
+    final List<OpenOrder> openOrders = new ArrayList<>();
+    synchronized (market) {
+      for (final Order order : market.orders.values()) {
+        if (order.account.equals(account)) {
+          openOrders.add(
+              new OpenOrderImpl(
+                  Long.toString(order.id),
+                  new Date(order.createdAt),
+                  marketId,
+                  order.side,
+                  order.price,
+                  order.remaining,
+                  order.quantity,
+                  order.price.multiply(order.remaining)));
+        }
+      }
+    }
+    return openOrders;
+  }
+
+  /**
+   * Returns the price of the last trade, or the start price if there have been no trades.
+   *
+   * @param marketId the id of the market.
+   * @return the last price.
+   * @throws TradingApiException if the market is unknown.
+   */
+  BigDecimal getLastPrice(String marketId) throws TradingApiException {
+    final Market market = getMarket(marketId);
+    synchronized (market) {
+      return market.last;
+    }
+  }
+
+  /**
+   * Returns the ticker for the trades since the market was added.
+   *
+   * @param marketId the id of the market.
+   * @return the ticker.
+   * @throws TradingApiException if the market is unknown.
+   */
+  Ticker getTicker(String marketId) throws TradingApiException {
+    final Market market = getMarket(marketId);
+    synchronized (market) {
+      return new TickerImpl(
+          market.last,
+          market.bids.isEmpty() ? null : market.bids.firstKey(),
+          market.asks.isEmpty() ? null : market.asks.firstKey(),
+          market.low,
+          market.high,
+          market.open,
+          market.volume,
+          market.volume.signum() == 0
+              ? market.last
+              : market.notional.divide(market.volume, MathContext.DECIMAL64),
+          market.lastTradeAt);
+    }
+  }
+
+  /**
+   * Returns the bot's balances.
+   *
+   * @return the available and reserved balances.
+   */
+  BalanceInfo getBalanceInfo() {
+    final Map<String, BigDecimal> available = new HashMap<>();
+    final Map<String, BigDecimal> reserved = new HashMap<>();
+    synchronized (balances) {
+      for (final Map.Entry<String, Balance> balance : balances.entrySet()) {
+        available.put(balance.getKey(), balance.getValue().available);
+        reserved.put(balance.getKey(), balance.getValue().reserved);
+      }
+    }
+    return new BalanceInfoImpl(available, reserved);
+  }
+
+  /**
+   * Returns the number of orders resting on all the order books.
+   *
+   * @return the number of resting orders.
+   */
+  int getRestingOrderCount() {
+    return restingOrders.size();
+  }
+
+  private Market getMarket(String marketId) throws TradingApiException {
+    final Market market = marketId == null ? null : markets.get(marketId);
+    if (market == null) {
+      throw new TradingApiException("Unknown market: " + marketId);
+    }
+    return market;
+  }
+
+  private void match(Market market, Order order) {
+    final NavigableMap<BigDecimal, ArrayDeque<Order>> opposite =
+        market.levels(order.side == OrderType.BUY ? OrderType.SELL : OrderType.BUY);
+    while (order.remaining.signum() > 0 && !opposite.isEmpty()) {
+      final Map.Entry<BigDecimal, ArrayDeque<Order>> best = opposite.firstEntry();
+      final int comparison = order.price.compareTo(best.getKey());
+      if (order.side == OrderType.BUY ? comparison < 0 : comparison > 0) {
+        return;
+      }
+      final ArrayDeque<Order> level = best.getValue();
+      final Order resting = level.peekFirst();
+      final BigDecimal quantity = order.remaining.min(resting.remaining);
+      trade(market, order, resting, quantity);
+      if (resting.remaining.signum() == 0) {
+        level.pollFirst();
+        market.orders.remove(resting.id);
+        restingOrders.remove(resting.id);
+        if (level.isEmpty()) {
+          opposite.pollFirstEntry();
+        }
+      }
+    }
+  }
+
+  private void trade(Market market, Order taker, Order maker, BigDecimal quantity) {
+    final BigDecimal price = maker.price;
+    taker.remaining = taker.remaining.subtract(quantity);
+    maker.remaining = maker.remaining.subtract(quantity);
+    if (isBot(taker.account)) {
+      settle(market, taker, quantity, price);
+    }
+    if (isBot(maker.account)) {
+      settle(market, maker, quantity, price);
+    }
+
+    market.last = price;
+    market.high = market.high == null ? price : market.high.max(price);
+    market.low = market.low == null ? price : market.low.min(price);
+    market.volume = market.volume.add(quantity);
+    market.notional = market.notional.add(price.multiply(quantity));
+    market.lastTradeAt = clock.getAsLong();
+  }
+
+  private static boolean isBot(String account) {
+    return BOT_ACCOUNT.equals(account);
+  }
+
+  /*
+   * A buy reserves the counter currency it could spend at its limit price, fee included; a sell
+   * reserves the base currency.
+   */
+  private void reserve(Market market, Order order) throws TradingApiException {
+    final String currency = reservedCurrency(market, order);
+    final BigDecimal amount = reservedAmount(order, order.quantity);
+    synchronized (balances) {
+      final Balance balance = balances.computeIfAbsent(currency, c -> new Balance());
+      if (balance.available.compareTo(amount) < 0) {
+        throw new TradingApiException(
+            "Insufficient funds. Need "
+                + amount
+                + " "
+                + currency
+                + " but only have "
+                + balance.available);
+      }
+      balance.available = balance.available.subtract(amount);
+      balance.reserved = balance.reserved.add(amount);
+    }
+  }
+
+  private void release(Market market, Order order, BigDecimal quantity) {
+    final String currency = reservedCurrency(market, order);
+    final BigDecimal amount = reservedAmount(order, quantity);
+    synchronized (balances) {
+      final Balance balance = balances.get(currency);
+      balance.reserved = balance.reserved.subtract(amount);
+      balance.available = balance.available.add(amount);
+    }
+  }
+
+  /*
+   * The reservation for the filled quantity is used up; a buy filled below its limit price gets
+   * the difference back.
+   */
+  private void settle(Market market, Order order, BigDecimal quantity, BigDecimal price) {
+    final BigDecimal notional = price.multiply(quantity);
+    synchronized (balances) {
+      final BigDecimal reservedAmount = reservedAmount(order, quantity);
+      final Balance reserved = balances.get(reservedCurrency(market, order));
+      reserved.reserved = reserved.reserved.subtract(reservedAmount);
+      if (order.side == OrderType.BUY) {
+        final BigDecimal cost = notional.add(notional.multiply(order.buyFee));
+        reserved.available = reserved.available.add(reservedAmount).subtract(cost);
+        final Balance base = balances.computeIfAbsent(market.baseCurrency, c -> new Balance());
+        base.available = base.available.add(quantity);
+      } else {
+        final Balance counter =
+            balances.computeIfAbsent(market.counterCurrency, c -> new Balance());
+        counter.available = counter.available.add(notional.subtract(notional.multiply(sellFee)));
+      }
+    }
+  }
+
+  private static String reservedCurrency(Market market, Order order) {
+    return order.side == OrderType.BUY ? market.counterCurrency : market.baseCurrency;
+  }
+
+  private static BigDecimal reservedAmount(Order order, BigDecimal quantity) {
+    if (order.side == OrderType.BUY) {
+      final BigDecimal notional = order.price.multiply(quantity);
+      return notional.add(notional.multiply(order.buyFee));
+    }
+    return quantity;
+  }
+
+  private static List<MarketOrder> aggregate(
+      OrderType side, NavigableMap<BigDecimal, ArrayDeque<Order>> levels, int depth) {
+    final List<MarketOrder> marketOrders = new ArrayList<>();
+    final Iterator<Map.Entry<BigDecimal, ArrayDeque<Order>>> iterator =
+        levels.entrySet().iterator();
+    while (iterator.hasNext() && (depth <= 0 || marketOrders.size() < depth)) {
+      final Map.Entry<BigDecimal, ArrayDeque<Order>> level = iterator.next();
+      BigDecimal quantity = BigDecimal.ZERO;
+      for (final Order order : level.getValue()) {
+        quantity = quantity.add(order.remaining);
+      }
+      marketOrders.add(
+          new MarketOrderImpl(side, level.getKey(), quantity, level.getKey().multiply(quantity)));
+    }
+    return marketOrders;
+  }
+
+  /*
+   * A market's order book and trade stats. Guarded by the market's lock.
+   */
+  private static final class Market {
+
+    private final String marketId;
+    private final String baseCurrency;
+    private final String counterCurrency;
+    private final NavigableMap<BigDecimal, ArrayDeque<Order>> bids =
+        new TreeMap<>(Comparator.reverseOrder());
+    private final NavigableMap<BigDecimal, ArrayDeque<Order>> asks = new TreeMap<>();
+    private final Map<Long, Order> orders = new LinkedHashMap<>();
+    private final BigDecimal open;
+    private BigDecimal last;
+    private BigDecimal high;
+    private BigDecimal low;
+    private BigDecimal volume = BigDecimal.ZERO;
+    private BigDecimal notional = BigDecimal.ZERO;
+    private Long lastTradeAt;
+
+    Market(String marketId, String baseCurrency, String counterCurrency, BigDecimal startPrice) {
+      this.marketId = marketId;
+      this.baseCurrency = baseCurrency;
+      this.counterCurrency = counterCurrency;
+      this.open = startPrice;
+      this.last = startPrice;
+    }
+
+    NavigableMap<BigDecimal, ArrayDeque<Order>> levels(OrderType side) {
+      return side == OrderType.BUY ? bids : asks;
+    }
+
+    @Override
+    public String toString() {
+      return marketId;
+    }
+  }
+
+  /*
+   * An order. The remaining quantity is guarded by the market's lock.
+   */
+  private static final class Order {
+
+    private final long id;
+    private final Market market;
+    private final String account;
+    private final OrderType side;
+    private final BigDecimal quantity;
+    private final BigDecimal price;
+    private final BigDecimal buyFee;
+    private final long createdAt;
+    private BigDecimal remaining;
+
+    Order(
+        long id,
+        Market market,
+        String account,
+        OrderType side,
+        BigDecimal quantity,
+        BigDecimal price,
+        BigDecimal buyFee,
+        long createdAt) {
+      this.id = id;
+      this.market = market;
+      this.account = account;
+      this.side = side;
+      this.quantity = quantity;
+      this.price = price;
+      this.buyFee = buyFee;
+      this.createdAt = createdAt;
+      this.remaining = quantity;
+    }
+  }
+
+  /*
+   * An amount of a currency. Guarded by the balances lock.
+   */
+  private static final class Balance {
+
+    private BigDecimal available = BigDecimal.ZERO;
+    private BigDecimal reserved = BigDecimal.ZERO;
+  }
+}
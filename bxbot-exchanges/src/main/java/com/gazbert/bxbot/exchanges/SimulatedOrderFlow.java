@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import com.gazbert.bxbot.trading.api.OrderRequest;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import com.google.common.base.MoreObjects;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Sends orders from other traders to a {@link SimulatedMatchingEngine}, so the bot has a moving
+ * market to trade against.
+ *
+ * <p>The orders are either synthetic or replayed from a file. Synthetic orders follow a random walk
+ * around each market's start price: most rest near the fair price, and some cross the spread and
+ * trade. Replayed orders are read from a file with 1 order per line, as {@code
+ * <marketId>,<BUY|SELL>,<price>,<quantity>}; blank lines and lines starting with # are skipped.
+ * The file is replayed from the start once it runs out.
+ *
+ * <p>Only the newest orders are kept on each order book; older ones are cancelled, so the order
+ * books stay a realistic size however long the flow runs.
+ *
+ * <p>Orders are sent on a single background thread, at a fixed rate, once {@link #start(double)}
+ * is called. {@link #step(int)} sends orders on the calling thread instead.
+ *
+ * @author gazbert
+ */
+final class SimulatedOrderFlow implements Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  /** The most orders from the flow kept on each order book. */
+  static final int MAX_RESTING_ORDERS_PER_MARKET = 200;
+
+  private static final long TICK_MILLIS = 10;
+  private static final double VOLATILITY = 0.0005;
+  private static final double SPREAD = 0.001;
+  private static final double MARKETABLE_ORDER_RATIO = 0.2;
+  private static final int QUANTITY_SCALE = 8;
+
+  private final SimulatedMatchingEngine matchingEngine;
+  private final List<String> marketIds;
+  private final List<OrderRequest> replayedOrders;
+  private final Random random;
+  private final Map<String, Double> fairPrices = new HashMap<>();
+  private final Map<String, Integer> priceScales = new HashMap<>();
+  private final Map<String, ArrayDeque<String>> restingOrderIds = new HashMap<>();
+  private final AtomicLong ordersSent = new AtomicLong();
+  private int nextReplayedOrder;
+  private int nextMarket;
+  private double owedOrders;
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates a synthetic order flow for all the markets in the matching engine.
+   *
+   * @param matchingEngine the matching engine.
+   * @param random the source of randomness. Seed it for a repeatable flow.
+   * @throws TradingApiException if a market is removed while the flow is being created.
+   */
+  SimulatedOrderFlow(SimulatedMatchingEngine matchingEngine, Random random)
+      throws TradingApiException {
+    this(matchingEngine, Collections.emptyList(), random);
+  }
+
+  /**
+   * Creates an order flow that replays the given orders.
+   *
+   * @param matchingEngine the matching engine.
+   * @param replayedOrders the orders to replay. If empty, synthetic orders are sent.
+   * @param random the source of randomness for synthetic orders.
+   * @throws TradingApiException if a market is removed while the flow is being created.
+   */
+  SimulatedOrderFlow(
+      SimulatedMatchingEngine matchingEngine, List<OrderRequest> replayedOrders, Random random)
+      throws TradingApiException {
+    this.matchingEngine = matchingEngine;
+    this.marketIds = new ArrayList<>(matchingEngine.getMarketIds());
+    Collections.sort(marketIds);
+    this.replayedOrders = new ArrayList<>(replayedOrders);
+    this.random = random;
+    for (final String marketId : marketIds) {
+      final BigDecimal lastPrice = matchingEngine.getLastPrice(marketId);
+      fairPrices.put(marketId, lastPrice.doubleValue());
+      priceScales.put(marketId, Math.max(2, lastPrice.stripTrailingZeros().scale()));
+      restingOrderIds.put(marketId, new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * Reads the orders to replay from a file.
+   *
+   * @param file the file.
+   * @return the orders.
+   * @throws IOException if the file cannot be read.
+   * @throws IllegalArgumentException if a line is not a valid order.
+   */
+  static List<OrderRequest> readOrders(Path file) throws IOException {
+    final List<OrderRequest> orders = new ArrayList<>();
+    for (final String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      final String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+      final String[] fields = trimmed.split(",");
+      try {
+        if (fields.length != 4) {
+          throw new IllegalArgumentException("Expected 4 fields");
+        }
+        orders.add(
+            new OrderRequest(
+                fields[0].trim(),
+                OrderType.valueOf(fields[1].trim().toUpperCase(Locale.ROOT)),
+                new BigDecimal(fields[3].trim()),
+                new BigDecimal(fields[2].trim())));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            "Order must be <marketId>,<BUY|SELL>,<price>,<quantity>: " + line, e);
+      }
+    }
+    return orders;
+  }
+
+  /**
+   * Starts sending orders on a background thread.
+   *
+   * @param ordersPerSecond the number of orders to send each second.
+   */
+  synchronized void start(double ordersPerSecond) {
+    if (scheduler != null || ordersPerSecond <= 0 || marketIds.isEmpty()) {
+      return;
+    }
+    final double ordersPerTick = ordersPerSecond * TICK_MILLIS / 1000;
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              final Thread thread = new Thread(runnable, "bxbot-simulated-order-flow");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleAtFixedRate(
+        () -> {
+          owedOrders += ordersPerTick;
+          final int orders = (int) owedOrders;
+          owedOrders -= orders;
+          step(orders);
+        },
+        0,
+        TICK_MILLIS,
+        TimeUnit.MILLISECONDS);
+    LOG.info(() -> "Started simulated order flow at " + ordersPerSecond + " orders/sec");
+  }
+
+  /**
+   * Sends orders on the calling thread.
+   *
+   * @param orders the number of orders to send.
+   */
+  synchronized void step(int orders) {
+    for (int i = 0; i < orders && !marketIds.isEmpty(); i++) {
+      final OrderRequest order = replayedOrders.isEmpty() ? nextSyntheticOrder() : nextReplayed();
+      try {
+        final String orderId =
+            matchingEngine.placeOrder(
+                SimulatedMatchingEngine.ORDER_FLOW_ACCOUNT,
+                order.getMarketId(),
+                order.getOrderType(),
+                order.getQuantity(),
+                order.getPrice());
+        ordersSent.incrementAndGet();
+        trimRestingOrders(order.getMarketId(), orderId);
+      } catch (TradingApiException e) {
+        LOG.warn(() -> "Simulated order rejected: " + order, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of orders sent so far.
+   *
+   * @return the number of orders sent.
+   */
+  long getOrdersSent() {
+    return ordersSent.get();
+  }
+
+  /** Stops sending orders. */
+  @Override
+  public synchronized void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  private OrderRequest nextReplayed() {
+    final OrderRequest order = replayedOrders.get(nextReplayedOrder);
+    nextReplayedOrder = (nextReplayedOrder + 1) % replayedOrders.size();
+    return order;
+  }
+
+  /*
+   * The fair price takes a random step, then the order is priced a random distance from it: on the
+   * passive side for a resting order, across it for a marketable one.
+   */
+  private OrderRequest nextSyntheticOrder() {
+    final String marketId = marketIds.get(nextMarket);
+    nextMarket = (nextMarket + 1) % marketIds.size();
+
+    final double fairPrice =
+        fairPrices.get(marketId) * Math.exp(random.nextGaussian() * VOLATILITY);
+    fairPrices.put(marketId, fairPrice);
+
+    final OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+    final double offset = Math.abs(random.nextGaussian()) * SPREAD;
+    final boolean marketable = random.nextDouble() < MARKETABLE_ORDER_RATIO;
+    final double direction = (side == OrderType.BUY) == marketable ? 1 : -1;
+    final BigDecimal price =
+        BigDecimal.valueOf(fairPrice * (1 + direction * offset))
+            .setScale(priceScales.get(marketId), RoundingMode.HALF_EVEN);
+    final BigDecimal quantity =
+        BigDecimal.valueOf(0.001 + random.nextDouble())
+            .setScale(QUANTITY_SCALE, RoundingMode.HALF_EVEN);
+    return new OrderRequest(
+        marketId, side, quantity, price.signum() > 0 ? price : BigDecimal.ONE.movePointLeft(8));
+  }
+
+  private void trimRestingOrders(String marketId, String orderId) {
+    final ArrayDeque<String> orderIds =
+        restingOrderIds.computeIfAbsent(marketId, m -> new ArrayDeque<>());
+    orderIds.addLast(orderId);
+    while (orderIds.size() > MAX_RESTING_ORDERS_PER_MARKET) {
+      matchingEngine.cancelOrder(SimulatedMatchingEngine.ORDER_FLOW_ACCOUNT, orderIds.pollFirst());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("marketIds", marketIds)
+        .add("replayedOrders", replayedOrders.size())
+        .add("ordersSent", ordersSent)
+        .toString();
+  }
+}
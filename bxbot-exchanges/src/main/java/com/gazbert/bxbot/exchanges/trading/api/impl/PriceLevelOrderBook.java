@@ -0,0 +1,528 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges.trading.api.impl;
+
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.google.common.base.MoreObjects;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An order book that can be used by Exchange Adapters to hold deep books, or keep a local copy of
+ * an exchange's order book up to date from incremental updates.
+ *
+ * <p>Each price level holds the total quantity at that price. Prices and quantities are stored as
+ * longs scaled by a fixed number of decimal places, in sorted primitive arrays - there are no
+ * objects per price level. Prices are compared by value, so "100.0" and "100.00" are the same
+ * level.
+ *
+ * <ul>
+ *   <li>The best bid and ask are read in O(1).
+ *   <li>A price level is found in O(log n). Updating the quantity of an existing level is O(log n).
+ *       Adding or removing a level also shifts the levels that are better priced than it, which is
+ *       cheap because most updates are close to the best price.
+ *   <li>A full snapshot replaces the book with {@link #replace(MarketOrderBook)}. Incremental
+ *       updates are applied with {@link #update(OrderType, BigDecimal, BigDecimal)}.
+ * </ul>
+ *
+ * <p>{@link #asMarketOrderBook()} gives a read-only {@link MarketOrderBook} view for the Trading
+ * API. Its Market Orders are only created when they are read, so a strategy that only looks at
+ * the top of a deep book does not pay for the rest of it.
+ *
+ * <p>This class is not thread-safe. Use {@link #copy()} to hand a snapshot to another thread.
+ *
+ * @author gazbert
+ */
+public final class PriceLevelOrderBook {
+
+  /** The default number of decimal places that prices and quantities are stored to. */
+  public static final int DEFAULT_SCALE = 8;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String marketId;
+  private final int priceScale;
+  private final int quantityScale;
+  private final PriceLevels bids;
+  private final PriceLevels asks;
+
+  /**
+   * Creates an empty order book that stores prices and quantities to {@link #DEFAULT_SCALE}
+   * decimal places.
+   *
+   * @param marketId the market id.
+   */
+  public PriceLevelOrderBook(String marketId) {
+    this(marketId, DEFAULT_SCALE, DEFAULT_SCALE);
+  }
+
+  /**
+   * Creates an empty order book.
+   *
+   * @param marketId the market id.
+   * @param priceScale the number of decimal places prices are stored to.
+   * @param quantityScale the number of decimal places quantities are stored to.
+   */
+  public PriceLevelOrderBook(String marketId, int priceScale, int quantityScale) {
+    if (priceScale < 0 || quantityScale < 0) {
+      throw new IllegalArgumentException(
+          "Scale cannot be negative: priceScale="
+              + priceScale
+              + ", quantityScale="
+              + quantityScale);
+    }
+    this.marketId = marketId;
+    this.priceScale = priceScale;
+    this.quantityScale = quantityScale;
+    bids = new PriceLevels(OrderType.BUY, INITIAL_CAPACITY);
+    asks = new PriceLevels(OrderType.SELL, INITIAL_CAPACITY);
+  }
+
+  private PriceLevelOrderBook(PriceLevelOrderBook other) {
+    marketId = other.marketId;
+    priceScale = other.priceScale;
+    quantityScale = other.quantityScale;
+    bids = new PriceLevels(other.bids);
+    asks = new PriceLevels(other.asks);
+  }
+
+  public String getMarketId() {
+    return marketId;
+  }
+
+  public int getPriceScale() {
+    return priceScale;
+  }
+
+  public int getQuantityScale() {
+    return quantityScale;
+  }
+
+  /**
+   * Sets the quantity for a price level.
+   *
+   * @param side {@link OrderType#BUY} for a bid, {@link OrderType#SELL} for an ask.
+   * @param price the price of the level.
+   * @param quantity the total quantity at the price. Zero removes the level.
+   * @throws IllegalArgumentException if the price or quantity has more decimal places than this
+   *     order book stores.
+   * @throws ArithmeticException if the price or quantity is too big.
+   */
+  public void update(OrderType side, BigDecimal price, BigDecimal quantity) {
+    update(side, toScaled(price, priceScale), toScaled(quantity, quantityScale));
+  }
+
+  /**
+   * Sets the quantity for a price level, using prices and quantities that are already scaled.
+   *
+   * @param side {@link OrderType#BUY} for a bid, {@link OrderType#SELL} for an ask.
+   * @param scaledPrice the price of the level, scaled by {@link #getPriceScale()}.
+   * @param scaledQuantity the total quantity at the price, scaled by {@link #getQuantityScale()}.
+   *     Zero removes the level.
+   */
+  public void update(OrderType side, long scaledPrice, long scaledQuantity) {
+    getPriceLevels(side).set(scaledPrice, scaledQuantity);
+  }
+
+  /**
+   * Replaces all the price levels with the given order book. Orders at the same price are added
+   * together.
+   *
+   * @param marketOrderBook the full order book, e.g. fetched from the exchange.
+   * @throws IllegalArgumentException if a price or quantity has more decimal places than this
+   *     order book stores.
+   * @throws ArithmeticException if a price or quantity is too big.
+   */
+  public void replace(MarketOrderBook marketOrderBook) {
+    clear();
+    addAll(bids, marketOrderBook.getBuyOrders());
+    addAll(asks, marketOrderBook.getSellOrders());
+  }
+
+  /**
+   * Replaces 1 side of the book with price levels that are already scaled, e.g. as they are read
+   * from an exchange's response. Levels that arrive best price first, as exchanges send them, are
+   * loaded without shifting the arrays. Levels at the same price are added together.
+   *
+   * @param side {@link OrderType#BUY} for the bids, {@link OrderType#SELL} for the asks.
+   * @param scaledPrices the prices, scaled by {@link #getPriceScale()}.
+   * @param scaledQuantities the quantities, scaled by {@link #getQuantityScale()}.
+   * @param count the number of price levels in the arrays.
+   */
+  public void replace(OrderType side, long[] scaledPrices, long[] scaledQuantities, int count) {
+    final PriceLevels levels = getPriceLevels(side);
+    levels.size = 0;
+    for (int i = count - 1; i >= 0; i--) {
+      levels.add(scaledPrices[i], scaledQuantities[i]);
+    }
+  }
+
+  /**
+   * Adds the quantity to a price level. Used to build the order book from an exchange's response.
+   *
+   * @param side {@link OrderType#BUY} for a bid, {@link OrderType#SELL} for an ask.
+   * @param price the price of the level.
+   * @param quantity the quantity to add at the price.
+   * @throws IllegalArgumentException if the price or quantity has more decimal places than this
+   *     order book stores.
+   * @throws ArithmeticException if the price or quantity is too big.
+   */
+  public void add(OrderType side, BigDecimal price, BigDecimal quantity) {
+    getPriceLevels(side).add(toScaled(price, priceScale), toScaled(quantity, quantityScale));
+  }
+
+  /** Removes all the price levels. */
+  public void clear() {
+    bids.size = 0;
+    asks.size = 0;
+  }
+
+  /**
+   * Drops the price levels beyond the given depth on each side.
+   *
+   * @param depth the number of price levels to keep on each side.
+   */
+  public void truncate(int depth) {
+    bids.truncate(depth);
+    asks.truncate(depth);
+  }
+
+  /**
+   * Returns the number of price levels on a side of the book.
+   *
+   * @param side {@link OrderType#BUY} for the bids, {@link OrderType#SELL} for the asks.
+   * @return the number of price levels.
+   */
+  public int getDepth(OrderType side) {
+    return getPriceLevels(side).size;
+  }
+
+  /**
+   * Returns the highest bid price.
+   *
+   * @return the highest bid price, or null if there are no bids.
+   */
+  public BigDecimal getBestBid() {
+    return getPrice(OrderType.BUY, 0);
+  }
+
+  /**
+   * Returns the lowest ask price.
+   *
+   * @return the lowest ask price, or null if there are no asks.
+   */
+  public BigDecimal getBestAsk() {
+    return getPrice(OrderType.SELL, 0);
+  }
+
+  /**
+   * Returns the price of a price level.
+   *
+   * @param side {@link OrderType#BUY} for the bids, {@link OrderType#SELL} for the asks.
+   * @param level the level, where 0 is the best price.
+   * @return the price, or null if the side does not have that many levels.
+   */
+  public BigDecimal getPrice(OrderType side, int level) {
+    final PriceLevels levels = getPriceLevels(side);
+    return level < levels.size ? BigDecimal.valueOf(levels.priceAt(level), priceScale) : null;
+  }
+
+  /**
+   * Returns the quantity at a price level.
+   *
+   * @param side {@link OrderType#BUY} for the bids, {@link OrderType#SELL} for the asks.
+   * @param level the level, where 0 is the best price.
+   * @return the quantity, or null if the side does not have that many levels.
+   */
+  public BigDecimal getQuantity(OrderType side, int level) {
+    final PriceLevels levels = getPriceLevels(side);
+    return level < levels.size ? BigDecimal.valueOf(levels.quantityAt(level), quantityScale) : null;
+  }
+
+  /**
+   * Returns the total quantity of the best price levels on a side of the book.
+   *
+   * @param side {@link OrderType#BUY} for the bids, {@link OrderType#SELL} for the asks.
+   * @param levels the number of price levels to add up, starting with the best price.
+   * @return the total quantity, which is zero if the side is empty.
+   */
+  public BigDecimal getCumulativeQuantity(OrderType side, int levels) {
+    final PriceLevels priceLevels = getPriceLevels(side);
+    final int count = Math.min(levels, priceLevels.size);
+    long total = 0;
+    for (int level = 0; level < count; level++) {
+      total = Math.addExact(total, priceLevels.quantityAt(level));
+    }
+    return BigDecimal.valueOf(total, quantityScale);
+  }
+
+  /**
+   * Returns the volume weighted average price an order of the given type and quantity would be
+   * filled at if it was matched against the book now. A BUY order is matched against the asks,
+   * and a SELL order against the bids.
+   *
+   * @param orderType the type of the order.
+   * @param quantity the quantity of the order.
+   * @return the average fill price, or null if the book does not have enough quantity to fill the
+   *     order.
+   * @throws IllegalArgumentException if the quantity is not more than zero.
+   */
+  public BigDecimal getVolumeWeightedAveragePrice(OrderType orderType, BigDecimal quantity) {
+    if (quantity.signum() <= 0) {
+      throw new IllegalArgumentException("Quantity must be more than 0: " + quantity);
+    }
+    final PriceLevels levels = orderType == OrderType.BUY ? asks : bids;
+    long remaining = toScaled(quantity, quantityScale);
+    BigDecimal cost = BigDecimal.ZERO;
+    for (int level = 0; level < levels.size && remaining > 0; level++) {
+      final long filled = Math.min(remaining, levels.quantityAt(level));
+      cost =
+          cost.add(
+              BigDecimal.valueOf(levels.priceAt(level), priceScale)
+                  .multiply(BigDecimal.valueOf(filled, quantityScale)));
+      remaining -= filled;
+    }
+    return remaining > 0 ? null : cost.divide(quantity, MathContext.DECIMAL64);
+  }
+
+  /**
+   * Returns a copy of this order book. Copying only copies the primitive arrays.
+   *
+   * @return the copy.
+   */
+  public PriceLevelOrderBook copy() {
+    return new PriceLevelOrderBook(this);
+  }
+
+  /**
+   * Returns a read-only Market Order Book view of this order book. The view is live: it reflects
+   * later updates to this order book, so pass it a {@link #copy()} if it is handed to another
+   * thread.
+   *
+   * @return the view.
+   */
+  public MarketOrderBook asMarketOrderBook() {
+    return new MarketOrderBookView();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("marketId", marketId)
+        .add("bidDepth", bids.size)
+        .add("askDepth", asks.size)
+        .add("bestBid", getBestBid())
+        .add("bestAsk", getBestAsk())
+        .toString();
+  }
+
+  private PriceLevels getPriceLevels(OrderType side) {
+    return side == OrderType.BUY ? bids : asks;
+  }
+
+  /*
+   * Orders are added worst price first, so a book that arrives best price first is appended to
+   * the end of the arrays instead of shifting them.
+   */
+  private void addAll(PriceLevels levels, List<MarketOrder> marketOrders) {
+    for (int i = marketOrders.size() - 1; i >= 0; i--) {
+      final MarketOrder marketOrder = marketOrders.get(i);
+      levels.add(
+          toScaled(marketOrder.getPrice(), priceScale),
+          toScaled(marketOrder.getQuantity(), quantityScale));
+    }
+  }
+
+  /*
+   * Values are not rounded: 2 prices that round to the same value would be merged into 1 level.
+   */
+  private static long toScaled(BigDecimal value, int scale) {
+    if (value.scale() > scale && value.stripTrailingZeros().scale() > scale) {
+      throw new IllegalArgumentException(
+          value.toPlainString()
+              + " has more decimal places than the order book stores: "
+              + scale
+              + ". Create the order book with a bigger scale.");
+    }
+    return value.setScale(scale).unscaledValue().longValueExact();
+  }
+
+  /*
+   * 1 side of the book. The levels are sorted by key in ascending order with the best price last,
+   * so the best price is read, and most updates are made, at the end of the arrays. The key is the
+   * price for bids, and the negated price for asks. The methods are not private: SpotBugs does not
+   * see the order book calling a nested class's private methods.
+   */
+  private static final class PriceLevels {
+
+    private final OrderType side;
+    private long[] keys;
+    private long[] quantities;
+    private int size;
+
+    private PriceLevels(OrderType side, int capacity) {
+      this.side = side;
+      keys = new long[capacity];
+      quantities = new long[capacity];
+    }
+
+    private PriceLevels(PriceLevels other) {
+      side = other.side;
+      size = other.size;
+      keys = Arrays.copyOf(other.keys, Math.max(size, 1));
+      quantities = Arrays.copyOf(other.quantities, Math.max(size, 1));
+    }
+
+    long toKey(long price) {
+      return side == OrderType.BUY ? price : -price;
+    }
+
+    long priceAt(int level) {
+      return toKey(keys[size - 1 - level]);
+    }
+
+    long quantityAt(int level) {
+      return quantities[size - 1 - level];
+    }
+
+    void set(long price, long quantity) {
+      final long key = toKey(price);
+      final int index = Arrays.binarySearch(keys, 0, size, key);
+      if (index >= 0) {
+        if (quantity == 0) {
+          remove(index);
+        } else {
+          quantities[index] = quantity;
+        }
+      } else if (quantity != 0) {
+        insert(-index - 1, key, quantity);
+      }
+    }
+
+    void add(long price, long quantity) {
+      final long key = toKey(price);
+      final int index = Arrays.binarySearch(keys, 0, size, key);
+      if (index >= 0) {
+        quantities[index] = Math.addExact(quantities[index], quantity);
+      } else if (quantity != 0) {
+        insert(-index - 1, key, quantity);
+      }
+    }
+
+    void insert(int index, long key, long quantity) {
+      if (size == keys.length) {
+        final int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+        keys = Arrays.copyOf(keys, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+      }
+      System.arraycopy(keys, index, keys, index + 1, size - index);
+      System.arraycopy(quantities, index, quantities, index + 1, size - index);
+      keys[index] = key;
+      quantities[index] = quantity;
+      size++;
+    }
+
+    void remove(int index) {
+      System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+      System.arraycopy(quantities, index + 1, quantities, index, size - index - 1);
+      size--;
+    }
+
+    void truncate(int depth) {
+      if (size > depth) {
+        final int dropped = size - depth;
+        System.arraycopy(keys, dropped, keys, 0, depth);
+        System.arraycopy(quantities, dropped, quantities, 0, depth);
+        size = depth;
+      }
+    }
+  }
+
+  /*
+   * Read-only view of the book. Market Orders are created as they are read.
+   */
+  private final class MarketOrderBookView implements MarketOrderBook {
+
+    private final List<MarketOrder> sellOrders = new MarketOrderList(OrderType.SELL);
+    private final List<MarketOrder> buyOrders = new MarketOrderList(OrderType.BUY);
+
+    @Override
+    public String getMarketId() {
+      return marketId;
+    }
+
+    @Override
+    public List<MarketOrder> getSellOrders() {
+      return sellOrders;
+    }
+
+    @Override
+    public List<MarketOrder> getBuyOrders() {
+      return buyOrders;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("marketId", marketId)
+          .add("sellOrders", sellOrders)
+          .add("buyOrders", buyOrders)
+          .toString();
+    }
+  }
+
+  /*
+   * The price levels on 1 side of the book, best price first.
+   */
+  private final class MarketOrderList extends AbstractList<MarketOrder> implements RandomAccess {
+
+    private final OrderType side;
+
+    private MarketOrderList(OrderType side) {
+      this.side = side;
+    }
+
+    @Override
+    public MarketOrder get(int index) {
+      final PriceLevels levels = getPriceLevels(side);
+      if (index < 0 || index >= levels.size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + levels.size);
+      }
+      final BigDecimal price = BigDecimal.valueOf(levels.priceAt(index), priceScale);
+      final BigDecimal quantity = BigDecimal.valueOf(levels.quantityAt(index), quantityScale);
+      return new MarketOrderImpl(side, price, quantity, price.multiply(quantity));
+    }
+
+    @Override
+    public int size() {
+      return getPriceLevels(side).size;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A minimal WebSocket server for testing the market data streams offline.
+ *
+ * <p>It accepts 1 client connection at a time, records the text messages the client sends, and
+ * sends text messages to the client. Only what the JDK WebSocket client needs is supported: no
+ * extensions and no fragmented server messages.
+ *
+ * @author gazbert
+ */
+final class LocalWebSocketServer implements Closeable {
+
+  private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+  private static final long TIMEOUT_SECONDS = 5;
+
+  private static final int OPCODE_CONTINUATION = 0x0;
+  private static final int OPCODE_TEXT = 0x1;
+  private static final int OPCODE_CLOSE = 0x8;
+  private static final int OPCODE_PING = 0x9;
+  private static final int OPCODE_PONG = 0xA;
+  private static final int GOING_AWAY = 1001;
+
+  private final ServerSocket serverSocket;
+  private final BlockingQueue<String> receivedMessages = new LinkedBlockingQueue<>();
+  private final BlockingQueue<Socket> connections = new LinkedBlockingQueue<>();
+  private volatile Socket client;
+  private volatile boolean closed;
+
+  /**
+   * Starts the server on a free loopback port.
+   *
+   * @throws IOException if the server cannot be started.
+   */
+  LocalWebSocketServer() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    final Thread thread = new Thread(this::serve, "local-websocket-server");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  URI getUri() {
+    final String host = serverSocket.getInetAddress().getHostAddress();
+    return URI.create("ws://" + host + ":" + serverSocket.getLocalPort());
+  }
+
+  /**
+   * Waits for the next client connection.
+   *
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  void awaitConnection() throws InterruptedException {
+    assertNotNull(
+        "Client did not connect", connections.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Waits for the next message from the client.
+   *
+   * @return the message.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  String awaitMessage() throws InterruptedException {
+    final String message = receivedMessages.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    assertNotNull("Client did not send a message", message);
+    return message;
+  }
+
+  /**
+   * Sends a text message to the client.
+   *
+   * @param message the message.
+   * @throws IOException if the message cannot be sent.
+   */
+  void send(String message) throws IOException {
+    writeFrame(client, OPCODE_TEXT, message.getBytes(UTF_8));
+  }
+
+  /**
+   * Closes the client connection the way an exchange does when it goes down for maintenance:
+   * a going away close frame, then the socket is closed without waiting for the client's reply.
+   *
+   * @throws IOException if the connection cannot be closed.
+   */
+  void dropConnection() throws IOException {
+    final Socket current = client;
+    writeFrame(current, OPCODE_CLOSE, new byte[] {(byte) (GOING_AWAY >>> 8), (byte) GOING_AWAY});
+    current.close();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    serverSocket.close();
+    final Socket current = client;
+    if (current != null) {
+      current.close();
+    }
+  }
+
+  private void serve() {
+    while (!closed) {
+      try (Socket socket = serverSocket.accept()) {
+        handshake(socket);
+        client = socket;
+        connections.add(socket);
+        readFrames(socket);
+      } catch (SocketException | EOFException e) {
+        // connection dropped or server closed
+      } catch (IOException e) {
+        if (!closed) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+
+  private static void handshake(Socket socket) throws IOException {
+    final InputStream in = socket.getInputStream();
+    String key = null;
+    String line;
+    while (!(line = readLine(in)).isEmpty()) {
+      final int colon = line.indexOf(':');
+      if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+        key = line.substring(colon + 1).trim();
+      }
+    }
+    final String response =
+        "HTTP/1.1 101 Switching Protocols\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Accept: "
+            + createAcceptKey(key)
+            + "\r\n\r\n";
+    final OutputStream out = socket.getOutputStream();
+    out.write(response.getBytes(UTF_8));
+    out.flush();
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b < 0) {
+        throw new EOFException();
+      }
+      if (b != '\r') {
+        line.write(b);
+      }
+    }
+    return line.toString(UTF_8);
+  }
+
+  private static String createAcceptKey(String key) {
+    try {
+      final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+      final byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(UTF_8));
+      return Base64.getEncoder().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /*
+   * Client frames are always masked.
+   */
+  private void readFrames(Socket socket) throws IOException {
+    final DataInputStream in = new DataInputStream(socket.getInputStream());
+    final ByteArrayOutputStream textMessage = new ByteArrayOutputStream();
+    while (true) {
+      final int first = in.readUnsignedByte();
+      final boolean fin = (first & 0x80) != 0;
+      final int opcode = first & 0x0F;
+      final int second = in.readUnsignedByte();
+      long length = second & 0x7F;
+      if (length == 126) {
+        length = in.readUnsignedShort();
+      } else if (length == 127) {
+        length = in.readLong();
+      }
+      final byte[] mask = new byte[4];
+      if ((second & 0x80) != 0) {
+        in.readFully(mask);
+      }
+      final byte[] payload = new byte[(int) length];
+      in.readFully(payload);
+      for (int i = 0; i < payload.length; i++) {
+        payload[i] ^= mask[i % 4];
+      }
+
+      switch (opcode) {
+        case OPCODE_TEXT:
+        case OPCODE_CONTINUATION:
+          textMessage.write(payload);
+          if (fin) {
+            receivedMessages.add(textMessage.toString(UTF_8));
+            textMessage.reset();
+          }
+          break;
+        case OPCODE_PING:
+          writeFrame(socket, OPCODE_PONG, payload);
+          break;
+        case OPCODE_CLOSE:
+          writeFrame(socket, OPCODE_CLOSE, payload);
+          return;
+        default:
+          break;
+      }
+    }
+  }
+
+  private static void writeFrame(Socket socket, int opcode, byte[] payload) throws IOException {
+    final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    frame.write(0x80 | opcode);
+    if (payload.length < 126) {
+      frame.write(payload.length);
+    } else if (payload.length <= 0xFFFF) {
+      frame.write(126);
+      frame.write(payload.length >>> 8);
+      frame.write(payload.length);
+    } else {
+      frame.write(127);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        frame.write((int) ((long) payload.length >>> shift));
+      }
+    }
+    frame.write(payload);
+    synchronized (socket) {
+      final OutputStream out = socket.getOutputStream();
+      out.write(frame.toByteArray());
+      out.flush();
+    }
+  }
+}
@@ -40,6 +40,8 @@ import com.gazbert.bxbot.trading.api.BalanceInfo;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
 import com.gazbert.bxbot.trading.api.MarketOrderBook;
 import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderRequest;
+import com.gazbert.bxbot.trading.api.OrderResult;
 import com.gazbert.bxbot.trading.api.OrderType;
 import com.gazbert.bxbot.trading.api.Ticker;
 import com.gazbert.bxbot.trading.api.TradingApiException;
@@ -96,6 +98,10 @@ public class TestBitfinexExchangeAdapter extends AbstractExchangeAdapterTest {
       "./src/test/exchange-data/bitfinex/order_new_sell.json";
   private static final String ORDER_CANCEL_JSON_RESPONSE =
       "./src/test/exchange-data/bitfinex/order_cancel.json";
+  private static final String ORDER_NEW_MULTI_JSON_RESPONSE =
+      "./src/test/exchange-data/bitfinex/order_new_multi.json";
+  private static final String ORDER_CANCEL_MULTI_JSON_RESPONSE =
+      "./src/test/exchange-data/bitfinex/order_cancel_multi.json";
 
   private static final String BOOK = "book";
   private static final String ORDERS = "orders";
@@ -104,6 +110,8 @@ public class TestBitfinexExchangeAdapter extends AbstractExchangeAdapterTest {
   private static final String ACCOUNT_INFOS = "account_infos";
   private static final String ORDER_NEW = "order/new";
   private static final String ORDER_CANCEL = "order/cancel";
+  private static final String ORDER_NEW_MULTI = "order/new/multi";
+  private static final String ORDER_CANCEL_MULTI = "order/cancel/multi";
 
   private static final String MARKET_ID = "btcusd";
   private static final BigDecimal BUY_ORDER_PRICE = new BigDecimal("200.18");
@@ -117,6 +125,8 @@ public class TestBitfinexExchangeAdapter extends AbstractExchangeAdapterTest {
       "sendAuthenticatedRequestToExchange";
   private static final String MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD =
       "sendPublicRequestToExchange";
+  private static final String MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD =
+      "streamPublicRequestToExchange";
   private static final String MOCKED_CREATE_REQUEST_HEADER_MAP_METHOD = "createHeaderParamMap";
   private static final String MOCKED_MAKE_NETWORK_REQUEST_METHOD = "makeNetworkRequest";
 
@@ -147,13 +157,15 @@ public class TestBitfinexExchangeAdapter extends AbstractExchangeAdapterTest {
 
     networkConfig = PowerMock.createMock(NetworkConfig.class);
     expect(networkConfig.getConnectionTimeout()).andReturn(30);
+    expect(networkConfig.getConnectTimeout()).andReturn(null);
+    expect(networkConfig.getReadTimeout()).andReturn(null);
     expect(networkConfig.getNonFatalErrorCodes()).andReturn(nonFatalNetworkErrorCodes);
     expect(networkConfig.getNonFatalErrorMessages()).andReturn(nonFatalNetworkErrorMessages);
 
     exchangeConfig = PowerMock.createMock(ExchangeConfig.class);
     expect(exchangeConfig.getAuthenticationConfig()).andReturn(authenticationConfig);
     expect(exchangeConfig.getNetworkConfig()).andReturn(networkConfig);
-    // optional config not needed for this adapter
+    expect(exchangeConfig.getOtherConfig()).andReturn(null);
   }
 
   // --------------------------------------------------------------------------
@@ -399,6 +411,144 @@ public class TestBitfinexExchangeAdapter extends AbstractExchangeAdapterTest {
     PowerMock.verifyAll();
   }
 
+  // --------------------------------------------------------------------------
+  //  Batch Order tests
+  // --------------------------------------------------------------------------
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCreateOrdersIsSuccessfulUsingOneApiCall() throws Exception {
+    final byte[] encoded = Files.readAllBytes(Paths.get(ORDER_NEW_MULTI_JSON_RESPONSE));
+    final AbstractExchangeAdapter.ExchangeHttpResponse exchangeResponse =
+        new AbstractExchangeAdapter.ExchangeHttpResponse(
+            200, "OK", new String(encoded, StandardCharsets.UTF_8));
+
+    final Map<String, Object> requestParamMap = PowerMock.createMock(Map.class);
+    expect(requestParamMap.put(eq("orders"), anyObject(List.class))).andReturn(null);
+
+    final BitfinexExchangeAdapter exchangeAdapter =
+        PowerMock.createPartialMockAndInvokeDefaultConstructor(
+            BitfinexExchangeAdapter.class,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD);
+
+    PowerMock.expectPrivate(exchangeAdapter, MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD)
+        .andReturn(requestParamMap);
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            eq(ORDER_NEW_MULTI),
+            eq(requestParamMap))
+        .andReturn(exchangeResponse);
+
+    PowerMock.replayAll();
+    exchangeAdapter.init(exchangeConfig);
+
+    final List<OrderResult> orderResults =
+        exchangeAdapter.createOrders(
+            Arrays.asList(
+                new OrderRequest(MARKET_ID, OrderType.BUY, BUY_ORDER_QUANTITY, BUY_ORDER_PRICE),
+                new OrderRequest(
+                    MARKET_ID, OrderType.SELL, SELL_ORDER_QUANTITY, SELL_ORDER_PRICE)));
+
+    assertEquals(2, orderResults.size());
+    assertTrue(orderResults.get(0).isSuccess());
+    assertEquals("425116925", orderResults.get(0).getOrderId());
+    assertTrue(orderResults.get(1).isSuccess());
+    assertEquals("425116926", orderResults.get(1).getOrderId());
+
+    PowerMock.verifyAll();
+  }
+
+  @Test(expected = ExchangeNetworkException.class)
+  public void testCreateOrdersHandlesExchangeNetworkException() throws Exception {
+    final BitfinexExchangeAdapter exchangeAdapter =
+        PowerMock.createPartialMockAndInvokeDefaultConstructor(
+            BitfinexExchangeAdapter.class, MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD);
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            eq(ORDER_NEW_MULTI),
+            anyObject(Map.class))
+        .andThrow(
+            new ExchangeNetworkException(
+                " When 1 person finds an error, it's a bug. When 2 people find the same error, "
+                    + "it's a pattern."));
+
+    PowerMock.replayAll();
+    exchangeAdapter.init(exchangeConfig);
+
+    exchangeAdapter.createOrders(
+        Arrays.asList(
+            new OrderRequest(MARKET_ID, OrderType.BUY, BUY_ORDER_QUANTITY, BUY_ORDER_PRICE)));
+    PowerMock.verifyAll();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCancelOrdersIsSuccessfulUsingOneApiCall() throws Exception {
+    final byte[] encoded = Files.readAllBytes(Paths.get(ORDER_CANCEL_MULTI_JSON_RESPONSE));
+    final AbstractExchangeAdapter.ExchangeHttpResponse exchangeResponse =
+        new AbstractExchangeAdapter.ExchangeHttpResponse(
+            200, "OK", new String(encoded, StandardCharsets.UTF_8));
+
+    final Map<String, Object> requestParamMap = PowerMock.createMock(Map.class);
+    expect(
+            requestParamMap.put(
+                "order_ids", Arrays.asList(Long.parseLong(ORDER_ID_TO_CANCEL), 426152652L)))
+        .andReturn(null);
+
+    final BitfinexExchangeAdapter exchangeAdapter =
+        PowerMock.createPartialMockAndInvokeDefaultConstructor(
+            BitfinexExchangeAdapter.class,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD);
+
+    PowerMock.expectPrivate(exchangeAdapter, MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD)
+        .andReturn(requestParamMap);
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            eq(ORDER_CANCEL_MULTI),
+            eq(requestParamMap))
+        .andReturn(exchangeResponse);
+
+    PowerMock.replayAll();
+    exchangeAdapter.init(exchangeConfig);
+
+    // marketId arg not needed for cancelling orders on this exchange.
+    final List<OrderResult> orderResults =
+        exchangeAdapter.cancelOrders(Arrays.asList(ORDER_ID_TO_CANCEL, "426152652"), null);
+
+    assertEquals(2, orderResults.size());
+    assertTrue(orderResults.get(0).isSuccess());
+    assertEquals(ORDER_ID_TO_CANCEL, orderResults.get(0).getOrderId());
+    assertTrue(orderResults.get(1).isSuccess());
+    assertEquals("426152652", orderResults.get(1).getOrderId());
+
+    PowerMock.verifyAll();
+  }
+
+  @Test(expected = TradingApiException.class)
+  public void testCancelOrdersHandlesFailureWithoutCauseMessage() throws Exception {
+    final BitfinexExchangeAdapter exchangeAdapter =
+        PowerMock.createPartialMockAndInvokeDefaultConstructor(
+            BitfinexExchangeAdapter.class, MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD);
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            eq(ORDER_CANCEL_MULTI),
+            anyObject(Map.class))
+        .andThrow(new TradingApiException("Cancel failed", new IllegalStateException()));
+
+    PowerMock.replayAll();
+    exchangeAdapter.init(exchangeConfig);
+
+    exchangeAdapter.cancelOrders(Arrays.asList(ORDER_ID_TO_CANCEL, "426152652"), null);
+
+    PowerMock.verifyAll();
+  }
+
   // --------------------------------------------------------------------------
   //  Get Market Orders tests
   // --------------------------------------------------------------------------
@@ -412,9 +562,11 @@ public class TestBitfinexExchangeAdapter extends AbstractExchangeAdapterTest {
 
     final BitfinexExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            BitfinexExchangeAdapter.class, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
+            BitfinexExchangeAdapter.class, MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
     PowerMock.expectPrivate(
-            exchangeAdapter, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD, BOOK + "/" + MARKET_ID)
+            exchangeAdapter,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            BOOK + "/" + MARKET_ID)
         .andReturn(exchangeResponse);
 
     PowerMock.replayAll();
@@ -452,9 +604,11 @@ public class TestBitfinexExchangeAdapter extends AbstractExchangeAdapterTest {
   public void testGettingMarketOrdersHandlesExchangeNetworkException() throws Exception {
     final BitfinexExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            BitfinexExchangeAdapter.class, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
+            BitfinexExchangeAdapter.class, MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
     PowerMock.expectPrivate(
-            exchangeAdapter, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD, BOOK + "/" + MARKET_ID)
+            exchangeAdapter,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            BOOK + "/" + MARKET_ID)
         .andThrow(
             new ExchangeNetworkException(
                 "There are three basic types, Mr. Pizer: the Wills, the Won'ts,"
@@ -472,9 +626,11 @@ public class TestBitfinexExchangeAdapter extends AbstractExchangeAdapterTest {
   public void testGettingMarketOrdersHandlesUnexpectedException() throws Exception {
     final BitfinexExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            BitfinexExchangeAdapter.class, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
+            BitfinexExchangeAdapter.class, MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
     PowerMock.expectPrivate(
-            exchangeAdapter, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD, BOOK + "/" + MARKET_ID)
+            exchangeAdapter,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            BOOK + "/" + MARKET_ID)
         .andThrow(new IllegalArgumentException("Deckard. B26354"));
 
     PowerMock.replayAll();
@@ -1327,4 +1483,65 @@ public class TestBitfinexExchangeAdapter extends AbstractExchangeAdapterTest {
 
     PowerMock.verifyAll();
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSendingAuthenticatedRequestToExchangeResendsRequestWithRejectedNonce()
+      throws Exception {
+    final byte[] encoded = Files.readAllBytes(Paths.get(ORDER_NEW_SELL_JSON_RESPONSE));
+    final AbstractExchangeAdapter.ExchangeHttpResponse exchangeResponse =
+        new AbstractExchangeAdapter.ExchangeHttpResponse(
+            200, "OK", new String(encoded, StandardCharsets.UTF_8));
+
+    final Map<String, Object> requestParamMap = PowerMock.createPartialMock(HashMap.class, "put");
+    expect(requestParamMap.put(anyString(), anyObject())).andStubReturn(null);
+
+    final Map<String, String> requestHeaderMap = PowerMock.createPartialMock(HashMap.class, "put");
+    expect(requestHeaderMap.put(anyString(), anyString())).andStubReturn(null);
+    PowerMock.replay(requestHeaderMap); // map needs to be in play early
+
+    final BitfinexExchangeAdapter exchangeAdapter =
+        PowerMock.createPartialMockAndInvokeDefaultConstructor(
+            BitfinexExchangeAdapter.class,
+            MOCKED_MAKE_NETWORK_REQUEST_METHOD,
+            MOCKED_CREATE_REQUEST_HEADER_MAP_METHOD,
+            MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD);
+    PowerMock.expectPrivate(exchangeAdapter, MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD)
+        .andReturn(requestParamMap);
+    PowerMock.expectPrivate(exchangeAdapter, MOCKED_CREATE_REQUEST_HEADER_MAP_METHOD)
+        .andReturn(requestHeaderMap)
+        .times(2);
+
+    // another request's bigger nonce got to the exchange first
+    final URL url = new URL(AUTHENTICATED_API_URL + ORDER_NEW);
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_MAKE_NETWORK_REQUEST_METHOD,
+            eq(url),
+            eq("POST"),
+            anyString(),
+            eq(requestHeaderMap))
+        .andThrow(
+            new TradingApiException(
+                "Failed to connect to Exchange. ErrorStream Response: "
+                    + "{\"message\":\"Nonce is too small.\"}"));
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_MAKE_NETWORK_REQUEST_METHOD,
+            eq(url),
+            eq("POST"),
+            anyString(),
+            eq(requestHeaderMap))
+        .andReturn(exchangeResponse);
+
+    PowerMock.replayAll();
+    exchangeAdapter.init(exchangeConfig);
+
+    final String orderId =
+        exchangeAdapter.createOrder(
+            MARKET_ID, OrderType.SELL, SELL_ORDER_QUANTITY, SELL_ORDER_PRICE);
+    assertEquals("425116929", orderId);
+
+    PowerMock.verifyAll();
+  }
 }
@@ -39,6 +39,7 @@ import com.gazbert.bxbot.exchange.api.ExchangeConfig;
 import com.gazbert.bxbot.exchange.api.NetworkConfig;
 import com.gazbert.bxbot.trading.api.BalanceInfo;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.MarketMetadata;
 import com.gazbert.bxbot.trading.api.MarketOrderBook;
 import com.gazbert.bxbot.trading.api.OpenOrder;
 import com.gazbert.bxbot.trading.api.OrderType;
@@ -93,6 +94,8 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
   private static final String SELL_JSON_RESPONSE = "./src/test/exchange-data/bitstamp/sell.json";
   private static final String CANCEL_ORDER_JSON_RESPONSE =
       "./src/test/exchange-data/bitstamp/cancel_order.json";
+  private static final String TRADING_PAIRS_INFO_JSON_RESPONSE =
+      "./src/test/exchange-data/bitstamp/trading_pairs_info.json";
 
   private static final String ORDER_BOOK = "order_book/";
   private static final String OPEN_ORDERS = "open_orders/";
@@ -101,6 +104,7 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
   private static final String BUY = "buy/";
   private static final String SELL = "sell/";
   private static final String CANCEL_ORDER = "cancel_order";
+  private static final String TRADING_PAIRS_INFO = "trading-pairs-info/";
 
   private static final String MARKET_ID = "btcusd";
   private static final BigDecimal BUY_ORDER_PRICE = new BigDecimal("200.18");
@@ -114,6 +118,8 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
       "sendAuthenticatedRequestToExchange";
   private static final String MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD =
       "sendPublicRequestToExchange";
+  private static final String MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD =
+      "streamPublicRequestToExchange";
   private static final String MOCKED_CREATE_REQUEST_HEADER_MAP_METHOD = "createHeaderParamMap";
   private static final String MOCKED_MAKE_NETWORK_REQUEST_METHOD = "makeNetworkRequest";
 
@@ -146,13 +152,15 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
 
     networkConfig = PowerMock.createMock(NetworkConfig.class);
     expect(networkConfig.getConnectionTimeout()).andReturn(30);
+    expect(networkConfig.getConnectTimeout()).andReturn(null);
+    expect(networkConfig.getReadTimeout()).andReturn(null);
     expect(networkConfig.getNonFatalErrorCodes()).andReturn(nonFatalNetworkErrorCodes);
     expect(networkConfig.getNonFatalErrorMessages()).andReturn(nonFatalNetworkErrorMessages);
 
     exchangeConfig = PowerMock.createMock(ExchangeConfig.class);
     expect(exchangeConfig.getAuthenticationConfig()).andReturn(authenticationConfig);
     expect(exchangeConfig.getNetworkConfig()).andReturn(networkConfig);
-    // optional config not needed for this adapter
+    expect(exchangeConfig.getOtherConfig()).andReturn(null);
   }
 
   // --------------------------------------------------------------------------
@@ -399,10 +407,10 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
 
     final BitstampExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            BitstampExchangeAdapter.class, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
+            BitstampExchangeAdapter.class, MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
     PowerMock.expectPrivate(
             exchangeAdapter,
-            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
             eq(ORDER_BOOK + MARKET_ID))
         .andReturn(exchangeResponse);
 
@@ -441,10 +449,10 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
   public void testGettingMarketOrdersHandlesExchangeNetworkException() throws Exception {
     final BitstampExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            BitstampExchangeAdapter.class, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
+            BitstampExchangeAdapter.class, MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
     PowerMock.expectPrivate(
             exchangeAdapter,
-            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
             eq(ORDER_BOOK + MARKET_ID))
         .andThrow(
             new ExchangeNetworkException(
@@ -461,10 +469,10 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
   public void testGettingMarketOrdersHandlesUnexpectedException() throws Exception {
     final BitstampExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            BitstampExchangeAdapter.class, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
+            BitstampExchangeAdapter.class, MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
     PowerMock.expectPrivate(
             exchangeAdapter,
-            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
             eq(ORDER_BOOK + MARKET_ID))
         .andThrow(
             new IllegalArgumentException(
@@ -727,20 +735,7 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
 
   @Test
   public void testGettingExchangeBuyingFeeSuccessfully() throws Exception {
-    final byte[] encoded = Files.readAllBytes(Paths.get(BALANCE_JSON_RESPONSE));
-    final AbstractExchangeAdapter.ExchangeHttpResponse exchangeResponse =
-        new AbstractExchangeAdapter.ExchangeHttpResponse(
-            200, "OK", new String(encoded, StandardCharsets.UTF_8));
-
-    final BitstampExchangeAdapter exchangeAdapter =
-        PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            BitstampExchangeAdapter.class, MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD);
-    PowerMock.expectPrivate(
-            exchangeAdapter,
-            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
-            eq(BALANCE),
-            eq(null))
-        .andReturn(exchangeResponse);
+    final BitstampExchangeAdapter exchangeAdapter = createMarketMetadataMockedAdapter();
 
     PowerMock.replayAll();
     exchangeAdapter.init(exchangeConfig);
@@ -749,6 +744,9 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
         exchangeAdapter.getPercentageOfBuyOrderTakenForExchangeFee(MARKET_ID);
     assertEquals(0, buyPercentageFee.compareTo(new BigDecimal("0.0025")));
 
+    // the fee is cached, so it is not fetched again
+    exchangeAdapter.getPercentageOfBuyOrderTakenForExchangeFee(MARKET_ID);
+
     PowerMock.verifyAll();
   }
 
@@ -794,26 +792,41 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
     PowerMock.verifyAll();
   }
 
+  // --------------------------------------------------------------------------
+  //  Get Market Metadata tests
+  // --------------------------------------------------------------------------
+
+  @Test
+  public void testGettingMarketMetadataAndRoundingSuccessfully() throws Exception {
+    final BitstampExchangeAdapter exchangeAdapter = createMarketMetadataMockedAdapter();
+
+    PowerMock.replayAll();
+    exchangeAdapter.init(exchangeConfig);
+
+    final MarketMetadata marketMetadata = exchangeAdapter.getMarketMetadata(MARKET_ID);
+    assertEquals(MARKET_ID, marketMetadata.getMarketId());
+    assertEquals(0, marketMetadata.getBuyFeePercentage().compareTo(new BigDecimal("0.0025")));
+    assertEquals(0, marketMetadata.getSellFeePercentage().compareTo(new BigDecimal("0.0025")));
+    assertEquals(0, marketMetadata.getTickSize().compareTo(new BigDecimal("0.01")));
+    assertEquals(0, marketMetadata.getLotSize().compareTo(new BigDecimal("0.00000001")));
+
+    assertEquals(
+        new BigDecimal("9876.54"),
+        exchangeAdapter.roundPrice(MARKET_ID, new BigDecimal("9876.54321")));
+    assertEquals(
+        new BigDecimal("0.12345678"),
+        exchangeAdapter.roundQuantity(MARKET_ID, new BigDecimal("0.123456789")));
+
+    PowerMock.verifyAll();
+  }
+
   // --------------------------------------------------------------------------
   //  Get Exchange Fees for Sell orders tests
   // --------------------------------------------------------------------------
 
   @Test
   public void testGettingExchangeSellingFeeSuccessfully() throws Exception {
-    final byte[] encoded = Files.readAllBytes(Paths.get(BALANCE_JSON_RESPONSE));
-    final AbstractExchangeAdapter.ExchangeHttpResponse exchangeResponse =
-        new AbstractExchangeAdapter.ExchangeHttpResponse(
-            200, "OK", new String(encoded, StandardCharsets.UTF_8));
-
-    final BitstampExchangeAdapter exchangeAdapter =
-        PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            BitstampExchangeAdapter.class, MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD);
-    PowerMock.expectPrivate(
-            exchangeAdapter,
-            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
-            eq(BALANCE),
-            eq(null))
-        .andReturn(exchangeResponse);
+    final BitstampExchangeAdapter exchangeAdapter = createMarketMetadataMockedAdapter();
 
     PowerMock.replayAll();
     exchangeAdapter.init(exchangeConfig);
@@ -822,6 +835,9 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
         exchangeAdapter.getPercentageOfSellOrderTakenForExchangeFee(MARKET_ID);
     assertEquals(0, sellPercentageFee.compareTo(new BigDecimal("0.0025")));
 
+    // the fee is cached, so it is not fetched again
+    exchangeAdapter.getPercentageOfSellOrderTakenForExchangeFee(MARKET_ID);
+
     PowerMock.verifyAll();
   }
 
@@ -1279,4 +1295,29 @@ public class TestBitstampExchangeAdapter extends AbstractExchangeAdapter {
             .andStubReturn(null);
     return requestHeaderMap;
   }
+
+  private BitstampExchangeAdapter createMarketMetadataMockedAdapter() throws Exception {
+    final byte[] balance = Files.readAllBytes(Paths.get(BALANCE_JSON_RESPONSE));
+    final byte[] tradingPairsInfo = Files.readAllBytes(Paths.get(TRADING_PAIRS_INFO_JSON_RESPONSE));
+
+    final BitstampExchangeAdapter exchangeAdapter =
+        PowerMock.createPartialMockAndInvokeDefaultConstructor(
+            BitstampExchangeAdapter.class,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            eq(BALANCE),
+            eq(null))
+        .andReturn(
+            new AbstractExchangeAdapter.ExchangeHttpResponse(
+                200, "OK", new String(balance, StandardCharsets.UTF_8)));
+    PowerMock.expectPrivate(
+            exchangeAdapter, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD, eq(TRADING_PAIRS_INFO))
+        .andReturn(
+            new AbstractExchangeAdapter.ExchangeHttpResponse(
+                200, "OK", new String(tradingPairsInfo, StandardCharsets.UTF_8)));
+    return exchangeAdapter;
+  }
 }
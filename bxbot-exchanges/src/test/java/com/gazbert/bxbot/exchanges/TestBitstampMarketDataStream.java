@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderBookImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
+import com.gazbert.bxbot.trading.api.MarketDataSubscription;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.MarketTrade;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApi;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Bitstamp market data stream against a local WebSocket server.
+ *
+ * @author gazbert
+ */
+public class TestBitstampMarketDataStream {
+
+  private static final String MARKET_ID = "btcusd";
+
+  private static final String SUBSCRIBE_ORDER_BOOK =
+      "{\"event\":\"bts:subscribe\",\"data\":{\"channel\":\"diff_order_book_btcusd\"}}";
+  private static final String SUBSCRIBE_TRADES =
+      "{\"event\":\"bts:subscribe\",\"data\":{\"channel\":\"live_trades_btcusd\"}}";
+  private static final String ORDER_BOOK_DIFF =
+      "{\"data\":{\"timestamp\":\"1585577291\",\"microtimestamp\":\"1585577291506451\","
+          + "\"bids\":[[\"6000.00\",\"0.00000000\"],[\"5999.50\",\"2.00000000\"]],"
+          + "\"asks\":[[\"6001.00\",\"0.50000000\"]]},"
+          + "\"channel\":\"diff_order_book_btcusd\",\"event\":\"data\"}";
+  private static final String TRADE =
+      "{\"data\":{\"id\":108478519,\"timestamp\":\"1585577292\",\"amount\":0.0125,"
+          + "\"amount_str\":\"0.01250000\",\"price\":6000.9,\"price_str\":\"6000.90\","
+          + "\"type\":1,\"microtimestamp\":\"1585577292178000\"},"
+          + "\"channel\":\"live_trades_btcusd\",\"event\":\"trade\"}";
+
+  private LocalWebSocketServer server;
+  private TradingApi tradingApi;
+  private BitstampMarketDataStream stream;
+
+  /** Start a local WebSocket server and point the stream at it. */
+  @Before
+  public void setupForEachTest() throws Exception {
+    server = new LocalWebSocketServer();
+    tradingApi = createMock(TradingApi.class);
+    stream = new BitstampMarketDataStream(server.getUri(), 5, 100, tradingApi);
+  }
+
+  /** Close the stream and the server. */
+  @After
+  public void tearDownAfterEachTest() throws Exception {
+    stream.close();
+    server.close();
+  }
+
+  @Test
+  public void testOrderBookIsMirroredFromRestSnapshotAndDiffs() throws Exception {
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createRestOrderBook());
+    replay(tradingApi);
+
+    final BlockingQueue<MarketOrderBook> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    assertEquals(SUBSCRIBE_ORDER_BOOK, server.awaitMessage());
+
+    MarketOrderBook orderBook = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(orderBook);
+    assertEquals(1, orderBook.getBuyOrders().size());
+    assertEquals(
+        0, orderBook.getBuyOrders().get(0).getPrice().compareTo(new BigDecimal("6000.00")));
+
+    server.send(ORDER_BOOK_DIFF);
+    orderBook = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(orderBook);
+    assertEquals(1, orderBook.getBuyOrders().size());
+    assertEquals(
+        0, orderBook.getBuyOrders().get(0).getPrice().compareTo(new BigDecimal("5999.50")));
+    assertEquals(2, orderBook.getSellOrders().size());
+    assertEquals(
+        0, orderBook.getSellOrders().get(0).getPrice().compareTo(new BigDecimal("6001.00")));
+    assertEquals(orderBook, stream.getLatestMarketOrders(MARKET_ID));
+
+    verify(tradingApi);
+  }
+
+  @Test
+  public void testTradesAreStreamedFromLiveTradesChannel() throws Exception {
+    replay(tradingApi);
+
+    final BlockingQueue<MarketTrade> trades = new LinkedBlockingQueue<>();
+    stream.subscribeToTrades(MARKET_ID, (marketId, trade) -> trades.add(trade));
+    server.awaitConnection();
+    assertEquals(SUBSCRIBE_TRADES, server.awaitMessage());
+
+    server.send(TRADE);
+    final MarketTrade trade = trades.poll(5, TimeUnit.SECONDS);
+    assertNotNull(trade);
+    assertEquals("108478519", trade.getId());
+    assertEquals(OrderType.SELL, trade.getType());
+    assertEquals(0, trade.getPrice().compareTo(new BigDecimal("6000.90")));
+    assertEquals(0, trade.getQuantity().compareTo(new BigDecimal("0.01250000")));
+    assertEquals(Long.valueOf(1585577292000L), trade.getTimestamp());
+
+    verify(tradingApi);
+  }
+
+  @Test
+  public void testTickerIsBuiltFromOrderBookAndLastTrade() throws Exception {
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createRestOrderBook());
+    replay(tradingApi);
+
+    final BlockingQueue<Ticker> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToTicker(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    assertEquals(SUBSCRIBE_ORDER_BOOK, server.awaitMessage());
+    assertEquals(SUBSCRIBE_TRADES, server.awaitMessage());
+    assertNull(stream.getLatestMarketOrders(MARKET_ID)); // no order book subscription
+
+    server.send(TRADE);
+    final Ticker ticker = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(ticker);
+    assertEquals(0, ticker.getLast().compareTo(new BigDecimal("6000.90")));
+    assertEquals(0, ticker.getBid().compareTo(new BigDecimal("6000.00")));
+    assertEquals(0, ticker.getAsk().compareTo(new BigDecimal("6002.00")));
+    assertNull(ticker.getVolume());
+    assertEquals(ticker, stream.getLatestTicker(MARKET_ID));
+
+    verify(tradingApi);
+  }
+
+  @Test
+  public void testStreamResubscribesWhenExchangeRequestsReconnect() throws Exception {
+    expect(tradingApi.getMarketOrders(MARKET_ID)).andReturn(createRestOrderBook()).times(2);
+    replay(tradingApi);
+
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> {});
+    server.awaitConnection();
+    assertEquals(SUBSCRIBE_ORDER_BOOK, server.awaitMessage());
+
+    server.send("{\"event\":\"bts:request_reconnect\",\"channel\":\"\",\"data\":\"\"}");
+    server.awaitConnection();
+    assertEquals(SUBSCRIBE_ORDER_BOOK, server.awaitMessage());
+
+    // The order book is fetched again after the subscribe message is sent.
+    for (int i = 0; i < 50 && stream.getLatestMarketOrders(MARKET_ID) == null; i++) {
+      Thread.sleep(100);
+    }
+    assertNotNull(stream.getLatestMarketOrders(MARKET_ID));
+    verify(tradingApi);
+  }
+
+  @Test
+  public void testOrderBookFetchDoesNotHoldUpOtherSubscriptions() throws Exception {
+    final CountDownLatch fetchStarted = new CountDownLatch(1);
+    final CountDownLatch fetchReleased = new CountDownLatch(1);
+    expect(tradingApi.getMarketOrders(MARKET_ID))
+        .andAnswer(
+            () -> {
+              fetchStarted.countDown();
+              assertTrue(fetchReleased.await(5, TimeUnit.SECONDS));
+              return createRestOrderBook();
+            });
+    replay(tradingApi);
+
+    final FutureTask<MarketDataSubscription> orderBookSubscription =
+        new FutureTask<>(() -> stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> {}));
+    new Thread(orderBookSubscription).start();
+    assertTrue(fetchStarted.await(5, TimeUnit.SECONDS));
+
+    stream.subscribeToTrades(MARKET_ID, (marketId, trade) -> {});
+    assertFalse(orderBookSubscription.isDone());
+
+    fetchReleased.countDown();
+    assertNotNull(orderBookSubscription.get(5, TimeUnit.SECONDS));
+    assertNotNull(stream.getLatestMarketOrders(MARKET_ID));
+    verify(tradingApi);
+  }
+
+  private static MarketOrderBook createRestOrderBook() {
+    return new MarketOrderBookImpl(
+        MARKET_ID,
+        Collections.singletonList(order(OrderType.SELL, "6002.00", "1.0")),
+        Collections.singletonList(order(OrderType.BUY, "6000.00", "1.0")));
+  }
+
+  private static MarketOrder order(OrderType type, String price, String quantity) {
+    final BigDecimal orderPrice = new BigDecimal(price);
+    final BigDecimal orderQuantity = new BigDecimal(quantity);
+    return new MarketOrderImpl(type, orderPrice, orderQuantity, orderPrice.multiply(orderQuantity));
+  }
+}
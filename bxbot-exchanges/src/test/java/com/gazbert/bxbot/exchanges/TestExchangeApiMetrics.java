@@ -0,0 +1,217 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.gazbert.bxbot.exchange.api.ExchangeConfig;
+import com.gazbert.bxbot.exchange.api.NetworkConfig;
+import com.gazbert.bxbot.exchanges.AbstractExchangeAdapter.ExchangeHttpResponse;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.Endpoint;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.ErrorCategory;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.Phase;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Exchange API Metrics are recorded as expected.
+ *
+ * @author gazbert
+ */
+public class TestExchangeApiMetrics {
+
+  private static final String ADAPTER = "TestAdapter";
+
+  private final Deque<Object> responses = new ArrayDeque<>();
+  private ExchangeApiMetrics apiMetrics;
+  private AbstractExchangeAdapter adapter;
+
+  /** Wire the metrics into an adapter with some mock exchange config. */
+  @Before
+  public void setUp() {
+    apiMetrics = new ExchangeApiMetrics();
+    adapter = new TestAdapter();
+    adapter.setApiMetrics(apiMetrics);
+    final NetworkConfig networkConfig = createNiceMock(NetworkConfig.class);
+    expect(networkConfig.getConnectionTimeout()).andStubReturn(30);
+    expect(networkConfig.getNonFatalErrorCodes()).andStubReturn(Collections.singletonList(503));
+    final ExchangeConfig exchangeConfig = createNiceMock(ExchangeConfig.class);
+    expect(exchangeConfig.getNetworkConfig()).andStubReturn(networkConfig);
+    replay(networkConfig, exchangeConfig);
+    adapter.setNetworkConfig(exchangeConfig);
+    adapter.setHttpTransport(
+        new ExchangeHttpTransport() {
+          private final HttpRequestMetrics metrics = new HttpRequestMetrics();
+
+          @Override
+          public ExchangeHttpResponse send(
+              URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+              throws IOException {
+            final Object response = responses.removeFirst();
+            if (response instanceof IOException) {
+              throw (IOException) response;
+            }
+            return (ExchangeHttpResponse) response;
+          }
+
+          @Override
+          public ExchangeHttpResponse sendStreamed(
+              URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+              throws IOException {
+            return send(url, httpMethod, postData, requestHeaders);
+          }
+
+          @Override
+          public HttpRequestMetrics getRequestMetrics() {
+            return metrics;
+          }
+        });
+  }
+
+  @Test
+  public void testPhasesAreRecordedPerEndpointAndMethod() throws Exception {
+    final ExchangeHttpResponse response = new ExchangeHttpResponse(200, "OK", "{}");
+    response.setTimes(1_000, 5_000_000, 6_000_000);
+    responses.add(response);
+
+    adapter.sendNetworkRequest(new URL("https://x.com/api/ticker"), "GET", null, new HashMap<>());
+
+    final Endpoint endpoint = apiMetrics.getEndpoint(ADAPTER, "/api/ticker", "GET");
+    assertEquals(1, apiMetrics.getEndpoints().size());
+    assertEquals(1, endpoint.getLatency(Phase.TOTAL).getCount());
+    assertEquals(1, endpoint.getLatency(Phase.TIME_TO_FIRST_BYTE).getCount());
+    assertEquals(
+        4.999,
+        endpoint.getLatency(Phase.TIME_TO_FIRST_BYTE).getMax(TimeUnit.MILLISECONDS),
+        0.0001);
+    assertEquals(1, endpoint.getLatency(Phase.BODY_READ).getMax(TimeUnit.MILLISECONDS), 0);
+    assertEquals(0, endpoint.getLatency(Phase.RATE_LIMIT_WAIT).getCount());
+    for (final ErrorCategory category : ErrorCategory.values()) {
+      assertEquals(0, endpoint.getErrorCount(category));
+    }
+  }
+
+  @Test
+  public void testStreamedBodyIsTimedWhenTheResponseIsClosed() throws Exception {
+    final ExchangeHttpResponse response =
+        new ExchangeHttpResponse(
+            200, "OK", new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+    response.setTimes(System.nanoTime(), System.nanoTime(), 0);
+    responses.add(response);
+
+    final ExchangeHttpResponse streamed =
+        adapter.streamNetworkRequest(
+            new URL("https://x.com/api/book"), "GET", null, new HashMap<>());
+    final LatencyHistogram bodyRead =
+        apiMetrics.getEndpoint(ADAPTER, "/api/book", "GET").getLatency(Phase.BODY_READ);
+    assertEquals(0, bodyRead.getCount());
+
+    streamed.close();
+    streamed.close();
+    assertEquals(1, bodyRead.getCount());
+  }
+
+  @Test
+  public void testErrorsAreCountedByCategory() throws Exception {
+    final URL url = new URL("https://x.com/api/orders");
+    responses.add(new ExchangeHttpResponse(503, "Service Unavailable", ""));
+    responses.add(new ExchangeHttpResponse(500, "Internal Server Error", ""));
+    responses.add(new ExchangeHttpResponse(429, "Too Many Requests", ""));
+    responses.add(new ExchangeHttpResponse(400, "Bad Request", ""));
+    responses.add(new SocketTimeoutException("Read timed out"));
+    responses.add(new IOException("Connection reset"));
+
+    final List<Class<?>> errors = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      try {
+        adapter.sendNetworkRequest(url, "POST", "", new HashMap<>());
+        fail("Expected an exception");
+      } catch (ExchangeNetworkException | TradingApiException e) {
+        errors.add(e.getClass());
+      }
+    }
+
+    assertEquals(ExchangeNetworkException.class, errors.get(0));
+    assertEquals(TradingApiException.class, errors.get(1));
+    final Endpoint endpoint = apiMetrics.getEndpoint(ADAPTER, "/api/orders", "POST");
+    assertEquals(2, endpoint.getErrorCount(ErrorCategory.SERVER_ERROR));
+    assertEquals(1, endpoint.getErrorCount(ErrorCategory.RATE_LIMITED));
+    assertEquals(1, endpoint.getErrorCount(ErrorCategory.TIMEOUT));
+    assertEquals(2, endpoint.getErrorCount(ErrorCategory.FATAL));
+    assertEquals(0, endpoint.getErrorCount(ErrorCategory.NON_FATAL));
+    assertEquals(6, endpoint.getLatency(Phase.TOTAL).getCount());
+  }
+
+  @Test
+  public void testIdsInThePathAreReplaced() throws Exception {
+    assertEquals(
+        "/orders/{id}",
+        adapter.getMetricsEndpointName(
+            new URL("https://x.com/orders/d0c5340b-6d6c-49d9-b567-48c4bfca13d2")));
+    assertEquals(
+        "/api/v2/order_book/btcusd/",
+        adapter.getMetricsEndpointName(new URL("https://x.com/api/v2/order_book/btcusd/")));
+    assertEquals(
+        "/0/public/Depth",
+        adapter.getMetricsEndpointName(new URL("https://x.com/0/public/Depth?pair=XXBTZUSD")));
+    assertEquals("/", adapter.getMetricsEndpointName(new URL("https://x.com")));
+  }
+
+  @Test
+  public void testEndpointsOverTheLimitAreRecordedAsOther() {
+    final List<Endpoint> seen = new ArrayList<>();
+    apiMetrics.addEndpointListener(seen::add);
+    for (int i = 0; i < ExchangeApiMetrics.MAX_ENDPOINTS; i++) {
+      apiMetrics.getEndpoint(ADAPTER, "/endpoint" + i, "GET");
+    }
+
+    final Endpoint other = apiMetrics.getEndpoint(ADAPTER, "/one-too-many", "GET");
+    assertEquals(ExchangeApiMetrics.OTHER_ENDPOINT, other.getName());
+    assertSame(other, apiMetrics.getEndpoint(ADAPTER, "/two-too-many", "GET"));
+    assertEquals(ExchangeApiMetrics.MAX_ENDPOINTS + 1, seen.size());
+  }
+
+  private static final class TestAdapter extends AbstractExchangeAdapter {
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.gazbert.bxbot.exchange.api.OtherConfig;
+import com.gazbert.bxbot.exchanges.AbstractExchangeAdapter.ExchangeHttpResponse;
+import com.gazbert.bxbot.exchanges.ExchangeApiMetrics.ErrorCategory;
+import com.gazbert.bxbot.exchanges.ExchangeCircuitBreaker.Config;
+import com.gazbert.bxbot.exchanges.ExchangeCircuitBreaker.State;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Exchange Circuit Breaker behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestExchangeCircuitBreaker {
+
+  private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final AtomicInteger requestsSent = new AtomicInteger();
+  private long now;
+  private ExchangeCircuitBreaker circuitBreaker;
+
+  /** Sets up a breaker driven by the test clock. */
+  @Before
+  public void setUp() {
+    now = 0;
+    circuitBreaker =
+        new ExchangeCircuitBreaker("GET /ticker", new Config(3, 1000, 4000), () -> now, () -> 1.0);
+  }
+
+  @Test
+  public void testBreakerOpensAfterTheFailureThreshold() {
+    for (int i = 0; i < 2; i++) {
+      assertEquals(0, circuitBreaker.tryAcquire());
+      circuitBreaker.onFailure();
+    }
+    assertEquals(State.CLOSED, circuitBreaker.getState());
+
+    assertEquals(0, circuitBreaker.tryAcquire());
+    circuitBreaker.onFailure();
+    assertEquals(State.OPEN, circuitBreaker.getState());
+    assertEquals(ONE_SECOND, circuitBreaker.tryAcquire());
+    now += ONE_SECOND / 4;
+    assertEquals(ONE_SECOND * 3 / 4, circuitBreaker.tryAcquire());
+    assertEquals(2, circuitBreaker.getRejectedCount());
+  }
+
+  @Test
+  public void testSuccessResetsTheFailureCount() {
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    circuitBreaker.onSuccess();
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    assertEquals(State.CLOSED, circuitBreaker.getState());
+  }
+
+  @Test
+  public void testHalfOpenBreakerLetsOneProbeThrough() {
+    openBreaker();
+    now += ONE_SECOND;
+
+    assertEquals(0, circuitBreaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+    assertTrue(circuitBreaker.tryAcquire() > 0);
+
+    circuitBreaker.onSuccess();
+    assertEquals(State.CLOSED, circuitBreaker.getState());
+    assertEquals(0, circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void testFailedProbesBackOffExponentiallyUpToTheMax() {
+    openBreaker();
+    final long[] expectedOpenNanos = {2 * ONE_SECOND, 4 * ONE_SECOND, 4 * ONE_SECOND};
+    for (final long openNanos : expectedOpenNanos) {
+      now += ONE_SECOND * 10;
+      assertEquals(0, circuitBreaker.tryAcquire());
+      circuitBreaker.onFailure();
+      assertEquals(State.OPEN, circuitBreaker.getState());
+      assertEquals(openNanos, circuitBreaker.tryAcquire());
+    }
+  }
+
+  @Test
+  public void testAbandonedProbeLetsTheNextRequestProbe() {
+    openBreaker();
+    now += ONE_SECOND;
+    assertEquals(0, circuitBreaker.tryAcquire());
+    circuitBreaker.onAbandoned();
+
+    assertEquals(0, circuitBreaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+  }
+
+  @Test
+  public void testBackoffIsJitteredBetweenHalfAndAllOfIt() {
+    assertEquals(500, ExchangeCircuitBreaker.jitteredBackoffNanos(1000, 60_000, 1, 0));
+    assertEquals(1000, ExchangeCircuitBreaker.jitteredBackoffNanos(1000, 60_000, 1, 1));
+    assertEquals(6000, ExchangeCircuitBreaker.jitteredBackoffNanos(1000, 60_000, 4, 0.5));
+    assertEquals(60_000, ExchangeCircuitBreaker.jitteredBackoffNanos(1000, 60_000, 100, 1));
+  }
+
+  @Test
+  public void testConfigIsParsed() {
+    final Config config = Config.parse("failure-threshold=2, open-millis=500");
+    final ExchangeCircuitBreaker breaker =
+        new ExchangeCircuitBreaker("GET /ticker", config, () -> now, () -> 1.0);
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(500), breaker.tryAcquire());
+    assertNull(Config.parse(" OFF "));
+    assertSame(Config.DEFAULT, Config.parse(" On "));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConfigWithUnknownSettingIsRejected() {
+    Config.parse("failures=2");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConfigWithMaxOpenTimeLessThanOpenTimeIsRejected() {
+    Config.parse("open-millis=5000, max-open-millis=1000");
+  }
+
+  @Test
+  public void testAdapterFailsFastOnlyForTheFailingEndpoint() throws Exception {
+    final ExchangeApiMetrics apiMetrics = new ExchangeApiMetrics();
+    final AbstractExchangeAdapter adapter =
+        createAdapter("failure-threshold=2, open-millis=60000");
+    adapter.setApiMetrics(apiMetrics);
+
+    sendFailingRequests(adapter, 4);
+    assertEquals(2, requestsSent.get());
+    assertEquals(
+        2,
+        apiMetrics
+            .getEndpoint(adapter.getClass().getSimpleName(), "/order_book/btcusd", "GET")
+            .getErrorCount(ErrorCategory.CIRCUIT_OPEN));
+    assertEquals(
+        State.OPEN, adapter.getCircuitBreakers().get("GET /order_book/btcusd").getState());
+
+    adapter.sendNetworkRequest(
+        new URL("https://x.com/order_book/ethusd"), "GET", null, new HashMap<>());
+    assertEquals(3, requestsSent.get());
+  }
+
+  @Test
+  public void testAdapterBreakersCanBeTurnedOff() throws Exception {
+    final AbstractExchangeAdapter adapter = createAdapter("off");
+    adapter.setApiMetrics(new ExchangeApiMetrics());
+
+    sendFailingRequests(adapter, 10);
+    assertEquals(10, requestsSent.get());
+    assertTrue(adapter.getCircuitBreakers().isEmpty());
+  }
+
+  @Test
+  public void testAdapterBreakersAreOffUnlessConfigured() throws Exception {
+    final AbstractExchangeAdapter adapter = createAdapter(null);
+    adapter.setApiMetrics(new ExchangeApiMetrics());
+
+    sendFailingRequests(adapter, 10);
+    assertEquals(10, requestsSent.get());
+    assertTrue(adapter.getCircuitBreakers().isEmpty());
+  }
+
+  @Test
+  public void testAdapterHasABreakerForEachMarketInTheQueryString() throws Exception {
+    final AbstractExchangeAdapter adapter =
+        createAdapter("failure-threshold=1, open-millis=60000");
+    adapter.setApiMetrics(new ExchangeApiMetrics());
+
+    final URL failingUrl = new URL("https://x.com/0/public/Depth?pair=btcusd");
+    for (int i = 0; i < 2; i++) {
+      try {
+        adapter.sendNetworkRequest(failingUrl, "GET", null, new HashMap<>());
+        fail("Expected an ExchangeNetworkException");
+      } catch (ExchangeNetworkException e) {
+        // expected
+      }
+    }
+    assertEquals(1, requestsSent.get());
+    assertEquals(
+        State.OPEN,
+        adapter.getCircuitBreakers().get("GET /0/public/Depth?pair=btcusd").getState());
+
+    adapter.sendNetworkRequest(
+        new URL("https://x.com/0/public/Depth?pair=ethusd"), "GET", null, new HashMap<>());
+    assertEquals(2, requestsSent.get());
+  }
+
+  @Test
+  public void testIdsInTheQueryStringAreReplacedInTheBreakerName() throws Exception {
+    final AbstractExchangeAdapter adapter = createAdapter("on");
+    assertEquals(
+        "GET /orders?product_id=BTC-USD&order_id={id}",
+        adapter.getCircuitBreakerName(
+            new URL("https://x.com/orders?product_id=BTC-USD&order_id=d0c5340b6d6c49d9"), "GET"));
+    assertEquals(
+        "POST /ticker.do?symbol=btc_usd&flag",
+        adapter.getCircuitBreakerName(
+            new URL("https://x.com/ticker.do?symbol=btc_usd&flag"), "POST"));
+  }
+
+  @Test
+  public void testAdapterKeepsABoundedNumberOfBreakers() throws Exception {
+    final AbstractExchangeAdapter adapter =
+        createAdapter("failure-threshold=1, open-millis=60000");
+    adapter.setApiMetrics(new ExchangeApiMetrics());
+    for (int i = 0; i < AbstractExchangeAdapter.MAX_CIRCUIT_BREAKERS + 10; i++) {
+      adapter.sendNetworkRequest(
+          new URL("https://x.com/ticker?pair=m" + i), "GET", null, new HashMap<>());
+    }
+    assertEquals(
+        AbstractExchangeAdapter.MAX_CIRCUIT_BREAKERS, adapter.getCircuitBreakers().size());
+
+    // endpoints over the limit have no breaker, rather than sharing one
+    sendFailingRequests(adapter, 3);
+    assertEquals(AbstractExchangeAdapter.MAX_CIRCUIT_BREAKERS + 13, requestsSent.get());
+  }
+
+  @Test
+  public void testStreamedBodyReadFailureIsCountedAsAFailure() throws Exception {
+    final AbstractExchangeAdapter adapter =
+        createAdapter("failure-threshold=1, open-millis=60000");
+    adapter.setApiMetrics(new ExchangeApiMetrics());
+    final URL url = new URL("https://x.com/order_book/ethusd");
+
+    try (ExchangeHttpResponse response =
+        adapter.streamNetworkRequest(url, "GET", null, new HashMap<>())) {
+      response.getPayloadReader().read();
+      fail("Expected an IOException");
+    } catch (SocketTimeoutException e) {
+      // expected
+    }
+
+    assertEquals(
+        State.OPEN, adapter.getCircuitBreakers().get("GET /order_book/ethusd").getState());
+  }
+
+  private AbstractExchangeAdapter createAdapter(String circuitBreakerConfig) {
+    final OtherConfig otherConfig = createNiceMock(OtherConfig.class);
+    expect(otherConfig.getItem("circuit-breaker")).andStubReturn(circuitBreakerConfig);
+    replay(otherConfig);
+
+    final AbstractExchangeAdapter adapter = new AbstractExchangeAdapter() {};
+    adapter.setCircuitBreakerConfig(otherConfig);
+    adapter.setHttpTransport(
+        new ExchangeHttpTransport() {
+          private final HttpRequestMetrics metrics = new HttpRequestMetrics();
+
+          @Override
+          public ExchangeHttpResponse send(
+              URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+              throws IOException {
+            requestsSent.incrementAndGet();
+            if (url.toString().contains("btcusd")) {
+              throw new SocketTimeoutException("Read timed out");
+            }
+            return new ExchangeHttpResponse(200, "OK", "{}");
+          }
+
+          @Override
+          public ExchangeHttpResponse sendStreamed(
+              URL url, String httpMethod, String postData, Map<String, String> requestHeaders)
+              throws IOException {
+            requestsSent.incrementAndGet();
+            final InputStream stalledBody =
+                new InputStream() {
+                  @Override
+                  public int read() throws IOException {
+                    throw new SocketTimeoutException("Read timed out");
+                  }
+                };
+            final ExchangeHttpResponse response = new ExchangeHttpResponse(200, "OK", stalledBody);
+            response.setTimes(1, 2, 0);
+            return response;
+          }
+
+          @Override
+          public HttpRequestMetrics getRequestMetrics() {
+            return metrics;
+          }
+        });
+    return adapter;
+  }
+
+  private static void sendFailingRequests(AbstractExchangeAdapter adapter, int count)
+      throws Exception {
+    final URL failingUrl = new URL("https://x.com/order_book/btcusd");
+    for (int i = 0; i < count; i++) {
+      try {
+        adapter.sendNetworkRequest(failingUrl, "GET", null, new HashMap<>());
+        fail("Expected an ExchangeNetworkException");
+      } catch (ExchangeNetworkException e) {
+        // expected
+      }
+    }
+  }
+
+  private void openBreaker() {
+    for (int i = 0; i < 3; i++) {
+      circuitBreaker.tryAcquire();
+      circuitBreaker.onFailure();
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.gazbert.bxbot.exchange.api.OtherConfig;
+import com.gazbert.bxbot.exchanges.AbstractExchangeAdapter.ExchangeHttpResponse;
+import com.gazbert.bxbot.exchanges.ExchangeRateLimiter.EndpointType;
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/**
+ * Tests the Exchange rate limiter behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestExchangeRateLimiter {
+
+  private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final AtomicLong clock = new AtomicLong();
+
+  @Test
+  public void testRequestsAreLimitedToTheBurstThenTheRate() {
+    final ExchangeRateLimiter limiter = new ExchangeRateLimiter("public=2:3", clock::get);
+
+    assertEquals(0, limiter.tryAcquire(EndpointType.PUBLIC, 1));
+    assertEquals(0, limiter.tryAcquire(EndpointType.PUBLIC, 1));
+    assertEquals(0, limiter.tryAcquire(EndpointType.PUBLIC, 1));
+    assertEquals(ONE_SECOND / 2, limiter.tryAcquire(EndpointType.PUBLIC, 1));
+
+    clock.addAndGet(ONE_SECOND / 2);
+    assertEquals(0, limiter.tryAcquire(EndpointType.PUBLIC, 1));
+  }
+
+  @Test
+  public void testEndpointTypesHaveTheirOwnBucketsAndShareTheExchangeBucket() {
+    final ExchangeRateLimiter limiter =
+        new ExchangeRateLimiter("exchange=10:3, public=1, order=1", clock::get);
+
+    assertEquals(0, limiter.tryAcquire(EndpointType.PUBLIC, 1));
+    assertTrue(limiter.tryAcquire(EndpointType.PUBLIC, 1) > 0);
+    assertEquals(0, limiter.tryAcquire(EndpointType.ORDER, 1));
+    assertEquals(0, limiter.tryAcquire(EndpointType.PRIVATE, 1));
+    // exchange bucket is now empty
+    assertEquals(ONE_SECOND / 10, limiter.tryAcquire(EndpointType.PRIVATE, 1));
+  }
+
+  @Test
+  public void testHeavyRequestsTakeTheirWeight() {
+    final ExchangeRateLimiter limiter = new ExchangeRateLimiter("private=1:4", clock::get);
+
+    assertEquals(0, limiter.tryAcquire(EndpointType.PRIVATE, 2));
+    assertEquals(0, limiter.tryAcquire(EndpointType.PRIVATE, 2));
+    assertEquals(2 * ONE_SECOND, limiter.tryAcquire(EndpointType.PRIVATE, 2));
+  }
+
+  @Test
+  public void testRateIsHalvedWhenRateLimitedAndRecoversOnSuccess() {
+    final ExchangeRateLimiter limiter = new ExchangeRateLimiter("exchange=4, order=2", clock::get);
+
+    limiter.onRateLimited(EndpointType.ORDER);
+    assertEquals(2.0, limiter.getRate(null), 0);
+    assertEquals(1.0, limiter.getRate(EndpointType.ORDER), 0);
+    assertEquals(ONE_SECOND / 2, limiter.tryAcquire(EndpointType.PUBLIC, 1));
+
+    for (int i = 0; i < 100; i++) {
+      limiter.onSuccess(EndpointType.ORDER);
+    }
+    assertEquals(4.0, limiter.getRate(null), 0);
+    assertEquals(2.0, limiter.getRate(EndpointType.ORDER), 0);
+    assertNull(limiter.getRate(EndpointType.PUBLIC));
+  }
+
+  @Test
+  public void testRateIsNotBackedOffBelowAFloor() {
+    final ExchangeRateLimiter limiter = new ExchangeRateLimiter("public=16", clock::get);
+    for (int i = 0; i < 10; i++) {
+      limiter.onRateLimited(EndpointType.PUBLIC);
+    }
+    assertEquals(1.0, limiter.getRate(EndpointType.PUBLIC), 0);
+  }
+
+  @Test
+  public void testOrderRequestsGoBeforeWaitingMarketDataRequests() throws Exception {
+    final ExchangeRateLimiter limiter = new ExchangeRateLimiter("exchange=20:1");
+    limiter.acquire(EndpointType.PUBLIC, 1); // empty the bucket
+
+    final CountDownLatch orderWaiting = new CountDownLatch(1);
+    final Deque<EndpointType> sent = new ArrayDeque<>();
+    final Thread orderThread =
+        new Thread(
+            () -> {
+              try {
+                orderWaiting.countDown();
+                limiter.acquire(EndpointType.ORDER, 1);
+                synchronized (sent) {
+                  sent.add(EndpointType.ORDER);
+                }
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    orderThread.start();
+    orderWaiting.await();
+    while (limiter.toString().contains("waitingOrderRequests=0")) {
+      Thread.yield();
+    }
+
+    limiter.acquire(EndpointType.PUBLIC, 1);
+    synchronized (sent) {
+      sent.add(EndpointType.PUBLIC);
+    }
+    orderThread.join(TimeUnit.SECONDS.toMillis(5));
+
+    assertEquals(EndpointType.ORDER, sent.pollFirst());
+    assertEquals(EndpointType.PUBLIC, sent.pollFirst());
+  }
+
+  @Test
+  public void testInvalidLimitsAreRejected() {
+    for (final String limits : new String[] {"public", "public=x", "public=0", "bogus=1"}) {
+      try {
+        new ExchangeRateLimiter(limits, clock::get);
+        fail("Expected IllegalArgumentException for " + limits);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testAdapterReadsLimitsAndWeightsFromOtherConfig() throws Exception {
+    final AbstractExchangeAdapter adapter = new AbstractExchangeAdapter() {};
+    adapter.setRateLimitConfig(otherConfig("public=1:2", "Ledgers=2, TradesHistory=3"));
+
+    assertEquals(1.0, adapter.getRateLimiter().getRate(EndpointType.PUBLIC), 0);
+    assertEquals(2.0, adapter.getRequestWeight(new URL("https://x.com/0/private/Ledgers")), 0);
+    assertEquals(1.0, adapter.getRequestWeight(new URL("https://x.com/0/private/Balance")), 0);
+
+    adapter.setRateLimitConfig(null);
+    assertNull(adapter.getRateLimiter());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAdapterRejectsInvalidWeights() {
+    new AbstractExchangeAdapter() {}.setRateLimitConfig(otherConfig("public=1", "Ledgers"));
+  }
+
+  @Test
+  public void testAdapterBacksOffAndRecoversWhenTooManyRequestsAreSent() throws Exception {
+    final AbstractExchangeAdapter adapter = new AbstractExchangeAdapter() {};
+    adapter.setRateLimitConfig(otherConfig("public=100", null));
+    final Deque<ExchangeHttpResponse> responses = new ArrayDeque<>();
+    adapter.setHttpTransport(
+        new ExchangeHttpTransport() {
+          private final HttpRequestMetrics metrics = new HttpRequestMetrics();
+
+          @Override
+          public ExchangeHttpResponse send(
+              URL url, String httpMethod, String postData, Map<String, String> requestHeaders) {
+            return responses.removeFirst();
+          }
+
+          @Override
+          public HttpRequestMetrics getRequestMetrics() {
+            return metrics;
+          }
+        });
+    final URL url = new URL("https://x.com/ticker");
+
+    responses.add(new ExchangeHttpResponse(429, "Too Many Requests", ""));
+    try {
+      adapter.sendNetworkRequest(url, "GET", null, new HashMap<>());
+      fail("Expected ExchangeNetworkException");
+    } catch (ExchangeNetworkException e) {
+      assertEquals(50.0, adapter.getRateLimiter().getRate(EndpointType.PUBLIC), 0);
+    }
+
+    responses.add(
+        new ExchangeHttpResponse(200, "OK", "{\"error\":[\"EAPI:Rate limit exceeded\"]}"));
+    adapter.sendNetworkRequest(url, "GET", null, new HashMap<>());
+    assertEquals(25.0, adapter.getRateLimiter().getRate(EndpointType.PUBLIC), 0);
+
+    responses.add(new ExchangeHttpResponse(200, "OK", "{\"result\":\"ok\"}"));
+    adapter.sendNetworkRequest(url, "GET", null, new HashMap<>());
+    assertEquals(30.0, adapter.getRateLimiter().getRate(EndpointType.PUBLIC), 0);
+  }
+
+  private static OtherConfig otherConfig(String limits, String weights) {
+    final Map<String, String> items = new HashMap<>();
+    items.put("rate-limits", limits);
+    items.put("rate-limit-weights", weights);
+    return items::get;
+  }
+}
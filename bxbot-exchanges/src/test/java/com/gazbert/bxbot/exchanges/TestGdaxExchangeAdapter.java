@@ -38,10 +38,12 @@ import com.gazbert.bxbot.exchange.api.ExchangeAdapter;
 import com.gazbert.bxbot.exchange.api.ExchangeConfig;
 import com.gazbert.bxbot.exchange.api.NetworkConfig;
 import com.gazbert.bxbot.exchange.api.OtherConfig;
+import com.gazbert.bxbot.exchanges.AbstractExchangeAdapter.ExchangeHttpResponse;
 import com.gazbert.bxbot.trading.api.BalanceInfo;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
 import com.gazbert.bxbot.trading.api.MarketOrderBook;
 import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderResult;
 import com.gazbert.bxbot.trading.api.OrderType;
 import com.gazbert.bxbot.trading.api.Ticker;
 import com.gazbert.bxbot.trading.api.TradingApiException;
@@ -54,11 +56,15 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -117,6 +123,7 @@ public class TestGdaxExchangeAdapter extends AbstractExchangeAdapterTest {
   private static final String TICKER = "products/" + MARKET_ID + "/ticker";
   private static final String NEW_ORDER = "orders";
   private static final String CANCEL_ORDER = "orders/" + ORDER_ID_TO_CANCEL;
+  private static final String CANCEL_ALL_ORDERS = "orders?product_id=" + MARKET_ID;
   private static final String STATS = "products/" + MARKET_ID + "/stats";
 
   private static final String MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD = "createRequestParamMap";
@@ -157,12 +164,17 @@ public class TestGdaxExchangeAdapter extends AbstractExchangeAdapterTest {
 
     networkConfig = PowerMock.createMock(NetworkConfig.class);
     expect(networkConfig.getConnectionTimeout()).andReturn(30);
+    expect(networkConfig.getConnectTimeout()).andReturn(null);
+    expect(networkConfig.getReadTimeout()).andReturn(null);
     expect(networkConfig.getNonFatalErrorCodes()).andReturn(nonFatalNetworkErrorCodes);
     expect(networkConfig.getNonFatalErrorMessages()).andReturn(nonFatalNetworkErrorMessages);
 
     otherConfig = PowerMock.createMock(OtherConfig.class);
     expect(otherConfig.getItem("buy-fee")).andReturn("0.25");
     expect(otherConfig.getItem("sell-fee")).andReturn("0.25");
+    expect(otherConfig.getItem("rate-limits")).andReturn(null);
+    expect(otherConfig.getItem("rate-limit-weights")).andReturn(null);
+    expect(otherConfig.getItem("circuit-breaker")).andReturn(null);
 
     exchangeConfig = PowerMock.createMock(ExchangeConfig.class);
     expect(exchangeConfig.getAuthenticationConfig()).andReturn(authenticationConfig);
@@ -404,6 +416,56 @@ public class TestGdaxExchangeAdapter extends AbstractExchangeAdapterTest {
     PowerMock.verifyAll();
   }
 
+  @Test
+  public void testCancelAllOrdersIsSuccessfulUsingOneApiCall() throws Exception {
+    final byte[] encoded = Files.readAllBytes(Paths.get(CANCEL_ORDER_JSON_RESPONSE));
+    final AbstractExchangeAdapter.ExchangeHttpResponse exchangeResponse =
+        new AbstractExchangeAdapter.ExchangeHttpResponse(
+            200, "OK", new String(encoded, StandardCharsets.UTF_8));
+
+    final GdaxExchangeAdapter exchangeAdapter =
+        PowerMock.createPartialMockAndInvokeDefaultConstructor(
+            GdaxExchangeAdapter.class, MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD);
+
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            eq("DELETE"),
+            eq(CANCEL_ALL_ORDERS),
+            eq(null))
+        .andReturn(exchangeResponse);
+
+    PowerMock.replayAll();
+    exchangeAdapter.init(exchangeConfig);
+
+    final List<OrderResult> orderResults = exchangeAdapter.cancelAllOrders(MARKET_ID);
+    assertEquals(1, orderResults.size());
+    assertTrue(orderResults.get(0).isSuccess());
+    assertEquals(ORDER_ID_TO_CANCEL, orderResults.get(0).getOrderId());
+    PowerMock.verifyAll();
+  }
+
+  @Test(expected = ExchangeNetworkException.class)
+  public void testCancelAllOrdersHandlesExchangeNetworkException() throws Exception {
+    final GdaxExchangeAdapter exchangeAdapter =
+        PowerMock.createPartialMockAndInvokeDefaultConstructor(
+            GdaxExchangeAdapter.class, MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD);
+
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            eq("DELETE"),
+            eq(CANCEL_ALL_ORDERS),
+            eq(null))
+        .andThrow(new ExchangeNetworkException("Connection reset"));
+
+    PowerMock.replayAll();
+    exchangeAdapter.init(exchangeConfig);
+
+    exchangeAdapter.cancelAllOrders(MARKET_ID);
+    PowerMock.verifyAll();
+  }
+
   // --------------------------------------------------------------------------
   //  Get Your Open Orders tests
   // --------------------------------------------------------------------------
@@ -984,6 +1046,54 @@ public class TestGdaxExchangeAdapter extends AbstractExchangeAdapterTest {
     PowerMock.verifyAll();
   }
 
+  @Test
+  public void testOrderRequestIsSentBeforeAccountRequestWaitingForRateLimit() throws Exception {
+    final byte[] accounts = Files.readAllBytes(Paths.get(ACCOUNTS_JSON_RESPONSE));
+    final byte[] newOrder = Files.readAllBytes(Paths.get(NEW_BUY_ORDER_JSON_RESPONSE));
+    final List<String> requestsSent = Collections.synchronizedList(new ArrayList<>());
+
+    PowerMock.replayAll();
+    final GdaxExchangeAdapter exchangeAdapter = new GdaxExchangeAdapter();
+    exchangeAdapter.init(exchangeConfig);
+    exchangeAdapter.setRateLimitConfig(item -> "rate-limits".equals(item) ? "exchange=2:1" : null);
+    exchangeAdapter.setHttpTransport(
+        new ExchangeHttpTransport() {
+          private final HttpRequestMetrics metrics = new HttpRequestMetrics();
+
+          @Override
+          public ExchangeHttpResponse send(
+              URL url, String httpMethod, String postData, Map<String, String> requestHeaders) {
+            requestsSent.add(httpMethod + " " + url.getPath());
+            final byte[] body = url.getPath().endsWith("/accounts") ? accounts : newOrder;
+            return new ExchangeHttpResponse(200, "OK", new String(body, StandardCharsets.UTF_8));
+          }
+
+          @Override
+          public HttpRequestMetrics getRequestMetrics() {
+            return metrics;
+          }
+        });
+
+    // Use up the only token, so the next requests must wait for the bucket to refill.
+    exchangeAdapter.getRateLimiter().acquire(ExchangeRateLimiter.EndpointType.PUBLIC, 1);
+
+    final FutureTask<BalanceInfo> balanceInfo = new FutureTask<>(exchangeAdapter::getBalanceInfo);
+    final Thread accountThread = new Thread(balanceInfo);
+    accountThread.start();
+    while (accountThread.getState() != Thread.State.TIMED_WAITING) {
+      Thread.yield();
+    }
+
+    final String orderId =
+        exchangeAdapter.createOrder(
+            MARKET_ID, OrderType.BUY, BUY_ORDER_QUANTITY, BUY_ORDER_PRICE);
+
+    assertNotNull(orderId);
+    assertNotNull(balanceInfo.get(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("POST /orders", "GET /accounts"), requestsSent);
+    PowerMock.verifyAll();
+  }
+
   // --------------------------------------------------------------------------
   //  Request sending tests
   //
@@ -0,0 +1,221 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.trading.api.MarketDataSubscription;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.MarketTrade;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.Ticker;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the GDAX market data stream against a local WebSocket server.
+ *
+ * @author gazbert
+ */
+public class TestGdaxMarketDataStream {
+
+  private static final String MARKET_ID = "BTC-USD";
+
+  private static final String SUBSCRIBE_ORDER_BOOK =
+      "{\"type\":\"subscribe\",\"product_ids\":[\"BTC-USD\"],\"channels\":[\"level2\"]}";
+  private static final String UNSUBSCRIBE_ORDER_BOOK =
+      "{\"type\":\"unsubscribe\",\"product_ids\":[\"BTC-USD\"],\"channels\":[\"level2\"]}";
+  private static final String SNAPSHOT =
+      "{\"type\":\"snapshot\",\"product_id\":\"BTC-USD\","
+          + "\"bids\":[[\"10101.10\",\"0.45054140\"],[\"10100.00\",\"1.0\"]],"
+          + "\"asks\":[[\"10102.55\",\"0.57753524\"]]}";
+  private static final String L2_UPDATE =
+      "{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"time\":\"2019-08-14T20:42:27.265Z\","
+          + "\"changes\":[[\"buy\",\"10101.10\",\"0\"],[\"sell\",\"10102.00\",\"2.5\"]]}";
+  private static final String TICKER =
+      "{\"type\":\"ticker\",\"product_id\":\"BTC-USD\",\"price\":\"333.99\","
+          + "\"open_24h\":\"0.00\",\"volume_24h\":\"1000.00\",\"low_24h\":\"0.00\","
+          + "\"high_24h\":\"400.00\",\"best_bid\":\"333.98\",\"best_ask\":\"333.99\","
+          + "\"side\":\"buy\",\"time\":\"2019-08-14T20:42:27.265Z\",\"trade_id\":4729088}";
+  private static final String MATCH =
+      "{\"type\":\"match\",\"trade_id\":10,\"side\":\"sell\",\"size\":\"5.23512\","
+          + "\"price\":\"400.23\",\"product_id\":\"BTC-USD\","
+          + "\"time\":\"2014-11-07T08:19:27.028Z\"}";
+
+  private LocalWebSocketServer server;
+  private GdaxMarketDataStream stream;
+
+  /** Start a local WebSocket server and point the stream at it. */
+  @Before
+  public void setupForEachTest() throws Exception {
+    server = new LocalWebSocketServer();
+    stream = new GdaxMarketDataStream(server.getUri(), 5, 100);
+  }
+
+  /** Close the stream and the server. */
+  @After
+  public void tearDownAfterEachTest() throws Exception {
+    stream.close();
+    server.close();
+  }
+
+  @Test
+  public void testOrderBookIsMirroredFromLevel2Channel() throws Exception {
+    final BlockingQueue<MarketOrderBook> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> updates.add(update));
+
+    server.awaitConnection();
+    assertEquals(SUBSCRIBE_ORDER_BOOK, server.awaitMessage());
+    assertNull(stream.getLatestMarketOrders(MARKET_ID));
+
+    server.send(SNAPSHOT);
+    MarketOrderBook orderBook = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(orderBook);
+    assertEquals(MARKET_ID, orderBook.getMarketId());
+    assertEquals(2, orderBook.getBuyOrders().size());
+    assertEquals(
+        0, orderBook.getBuyOrders().get(0).getPrice().compareTo(new BigDecimal("10101.10")));
+    assertEquals(
+        0, orderBook.getBuyOrders().get(0).getQuantity().compareTo(new BigDecimal("0.45054140")));
+    assertEquals(1, orderBook.getSellOrders().size());
+
+    server.send(L2_UPDATE);
+    orderBook = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(orderBook);
+    assertEquals(1, orderBook.getBuyOrders().size());
+    assertEquals(
+        0, orderBook.getBuyOrders().get(0).getPrice().compareTo(new BigDecimal("10100.00")));
+    assertEquals(2, orderBook.getSellOrders().size());
+    assertEquals(
+        0, orderBook.getSellOrders().get(0).getPrice().compareTo(new BigDecimal("10102.00")));
+    assertSame(orderBook, stream.getLatestMarketOrders(MARKET_ID));
+  }
+
+  @Test
+  public void testTickerIsStreamedFromTickerChannel() throws Exception {
+    final BlockingQueue<Ticker> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToTicker(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    assertEquals(
+        "{\"type\":\"subscribe\",\"product_ids\":[\"BTC-USD\"],\"channels\":[\"ticker\"]}",
+        server.awaitMessage());
+
+    server.send(TICKER);
+    final Ticker ticker = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(ticker);
+    assertEquals(0, ticker.getLast().compareTo(new BigDecimal("333.99")));
+    assertEquals(0, ticker.getBid().compareTo(new BigDecimal("333.98")));
+    assertEquals(0, ticker.getAsk().compareTo(new BigDecimal("333.99")));
+    assertEquals(0, ticker.getHigh().compareTo(new BigDecimal("400.00")));
+    assertEquals(0, ticker.getVolume().compareTo(new BigDecimal("1000.00")));
+    assertNull(ticker.getVwap());
+    assertEquals(Long.valueOf(1565815347265L), ticker.getTimestamp());
+    assertSame(ticker, stream.getLatestTicker(MARKET_ID));
+  }
+
+  @Test
+  public void testTradesAreStreamedFromMatchesChannel() throws Exception {
+    final BlockingQueue<MarketTrade> trades = new LinkedBlockingQueue<>();
+    stream.subscribeToTrades(MARKET_ID, (marketId, trade) -> trades.add(trade));
+    server.awaitConnection();
+    server.awaitMessage();
+
+    server.send(MATCH);
+    final MarketTrade trade = trades.poll(5, TimeUnit.SECONDS);
+    assertNotNull(trade);
+    assertEquals("10", trade.getId());
+    assertEquals(OrderType.BUY, trade.getType()); // maker was selling
+    assertEquals(0, trade.getPrice().compareTo(new BigDecimal("400.23")));
+    assertEquals(0, trade.getQuantity().compareTo(new BigDecimal("5.23512")));
+    assertEquals(Long.valueOf(1415348367028L), trade.getTimestamp());
+  }
+
+  @Test
+  public void testOrderBookIsResyncedWhenTradesAreMissed() throws Exception {
+    final BlockingQueue<MarketTrade> trades = new LinkedBlockingQueue<>();
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> {});
+    stream.subscribeToTrades(MARKET_ID, (marketId, trade) -> trades.add(trade));
+    server.awaitConnection();
+    assertEquals(SUBSCRIBE_ORDER_BOOK, server.awaitMessage());
+    server.awaitMessage();
+    server.send(SNAPSHOT);
+    server.send(MATCH);
+    assertNotNull(trades.poll(5, TimeUnit.SECONDS));
+
+    server.send(MATCH.replace("\"trade_id\":10", "\"trade_id\":12"));
+    server.awaitConnection();
+    final Set<String> resubscribed = new HashSet<>();
+    resubscribed.add(server.awaitMessage());
+    resubscribed.add(server.awaitMessage());
+    assertTrue(resubscribed.contains(SUBSCRIBE_ORDER_BOOK));
+    assertNull(trades.poll(200, TimeUnit.MILLISECONDS));
+    assertNull(stream.getLatestMarketOrders(MARKET_ID));
+  }
+
+  @Test
+  public void testTopicIsOnlyUnsubscribedWhenLastSubscriptionIsCancelled() throws Exception {
+    final MarketDataSubscription first = stream.subscribeToOrderBook(MARKET_ID, (id, book) -> {});
+    final MarketDataSubscription second = stream.subscribeToOrderBook(MARKET_ID, (id, book) -> {});
+    assertEquals(MARKET_ID, first.getMarketId());
+    server.awaitConnection();
+    assertEquals(SUBSCRIBE_ORDER_BOOK, server.awaitMessage());
+    server.send(SNAPSHOT);
+
+    first.cancel();
+    first.cancel(); // no-op
+    second.cancel();
+    assertEquals(UNSUBSCRIBE_ORDER_BOOK, server.awaitMessage());
+    assertNull(stream.getLatestMarketOrders(MARKET_ID));
+  }
+
+  @Test
+  public void testStreamResubscribesAfterConnectionIsLost() throws Exception {
+    final BlockingQueue<MarketOrderBook> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    server.awaitMessage();
+    server.send(SNAPSHOT);
+    assertNotNull(updates.poll(5, TimeUnit.SECONDS));
+
+    server.dropConnection();
+    server.awaitConnection();
+    assertEquals(SUBSCRIBE_ORDER_BOOK, server.awaitMessage());
+    assertNull(stream.getLatestMarketOrders(MARKET_ID));
+
+    server.send(SNAPSHOT);
+    assertNotNull(updates.poll(5, TimeUnit.SECONDS));
+    assertNotNull(stream.getLatestMarketOrders(MARKET_ID));
+  }
+}
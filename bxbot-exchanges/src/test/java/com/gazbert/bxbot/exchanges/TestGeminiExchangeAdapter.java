@@ -143,12 +143,18 @@ public class TestGeminiExchangeAdapter extends AbstractExchangeAdapterTest {
 
     networkConfig = PowerMock.createMock(NetworkConfig.class);
     expect(networkConfig.getConnectionTimeout()).andReturn(30);
+    expect(networkConfig.getConnectTimeout()).andReturn(null);
+    expect(networkConfig.getReadTimeout()).andReturn(null);
     expect(networkConfig.getNonFatalErrorCodes()).andReturn(nonFatalNetworkErrorCodes);
     expect(networkConfig.getNonFatalErrorMessages()).andReturn(nonFatalNetworkErrorMessages);
 
     final OtherConfig otherConfig = PowerMock.createMock(OtherConfig.class);
     expect(otherConfig.getItem("buy-fee")).andReturn("0.25");
     expect(otherConfig.getItem("sell-fee")).andReturn("0.25");
+    expect(otherConfig.getItem("rate-limits")).andReturn(null);
+    expect(otherConfig.getItem("rate-limit-weights")).andReturn(null);
+    expect(otherConfig.getItem("circuit-breaker")).andReturn(null);
+    expect(otherConfig.getItem("nonce-file")).andReturn(null);
 
     exchangeConfig = PowerMock.createMock(ExchangeConfig.class);
     expect(exchangeConfig.getAuthenticationConfig()).andReturn(authenticationConfig);
@@ -685,6 +691,40 @@ public class TestGeminiExchangeAdapter extends AbstractExchangeAdapterTest {
     PowerMock.verifyAll();
   }
 
+  @Test
+  public void testGettingYourOpenOrdersForMarketsInOneCallSuccessfully() throws Exception {
+    final byte[] encoded = Files.readAllBytes(Paths.get(ORDERS_JSON_RESPONSE));
+    final AbstractExchangeAdapter.ExchangeHttpResponse exchangeResponse =
+        new AbstractExchangeAdapter.ExchangeHttpResponse(
+            200, "OK", new String(encoded, StandardCharsets.UTF_8));
+
+    final GeminiExchangeAdapter exchangeAdapter =
+        PowerMock.createPartialMockAndInvokeDefaultConstructor(
+            GeminiExchangeAdapter.class, MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD);
+    PowerMock.expectPrivate(
+            exchangeAdapter,
+            MOCKED_SEND_AUTHENTICATED_REQUEST_TO_EXCHANGE_METHOD,
+            eq(ORDERS),
+            eq(null))
+        .andReturn(exchangeResponse);
+
+    PowerMock.replayAll();
+    exchangeAdapter.init(exchangeConfig);
+
+    final Map<String, List<OpenOrder>> openOrders =
+        exchangeAdapter.getYourOpenOrdersForMarkets(
+            Arrays.asList(ETH_BTC_MARKET_ID, BTC_USD_MARKET_ID, "ltcusd"));
+
+    assertEquals(3, openOrders.size());
+    assertEquals(2, openOrders.get(ETH_BTC_MARKET_ID).size());
+    assertEquals(ETH_BTC_MARKET_ID, openOrders.get(ETH_BTC_MARKET_ID).get(0).getMarketId());
+    assertEquals(1, openOrders.get(BTC_USD_MARKET_ID).size());
+    assertEquals(BTC_USD_MARKET_ID, openOrders.get(BTC_USD_MARKET_ID).get(0).getMarketId());
+    assertTrue(openOrders.get("ltcusd").isEmpty());
+
+    PowerMock.verifyAll();
+  }
+
   @Test(expected = ExchangeNetworkException.class)
   public void testGettingYourOpenOrdersHandlesExchangeNetworkException() throws Exception {
     final GeminiExchangeAdapter exchangeAdapter =
@@ -0,0 +1,298 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.exchanges.AbstractExchangeAdapter.ExchangeHttpResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the JDK HttpClient transport against a local HTTP server.
+ *
+ * @author gazbert
+ */
+public class TestJdkHttpClientTransport {
+
+  private static final String RESPONSE_BODY = "{\"result\":\"ok\"}";
+
+  private HttpServer server;
+  private final List<Integer> clientPorts = new ArrayList<>();
+  private final List<String> contentTypes = new ArrayList<>();
+  private final List<String> requestBodies = new ArrayList<>();
+  private final CountDownLatch stalledResponsesReleased = new CountDownLatch(1);
+
+  /**
+   * Start a local server that records what the transport sends.
+   */
+  @Before
+  public void setupForEachTest() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/ticker", exchange -> respond(exchange, 200, RESPONSE_BODY));
+    server.createContext("/order", exchange -> respond(exchange, 200, RESPONSE_BODY));
+    server.createContext("/broken", exchange -> respond(exchange, 503, "down for maintenance"));
+    server.createContext(
+        "/slow",
+        exchange -> {
+          try {
+            Thread.sleep(2500);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          respond(exchange, 200, RESPONSE_BODY);
+        });
+    server.createContext("/stalled", this::respondThenStall);
+    server.start();
+  }
+
+  /**
+   * Stop the local server.
+   */
+  @After
+  public void tearDownAfterEachTest() {
+    stalledResponsesReleased.countDown();
+    server.stop(0);
+  }
+
+  @Test
+  public void testConnectionIsReusedAcrossRequests() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 5);
+
+    for (int i = 0; i < 3; i++) {
+      final ExchangeHttpResponse response =
+          transport.send(url("/ticker"), "GET", null, new HashMap<>());
+      assertEquals(200, response.getStatusCode());
+      assertEquals("OK", response.getReasonPhrase());
+      assertEquals(RESPONSE_BODY, response.getPayload());
+    }
+
+    assertEquals(3, clientPorts.size());
+    assertEquals(clientPorts.get(0), clientPorts.get(1));
+    assertEquals(clientPorts.get(0), clientPorts.get(2));
+
+    final HttpRequestMetrics metrics = transport.getRequestMetrics();
+    assertEquals(3, metrics.getRequestCount());
+    assertEquals(0, metrics.getFailedRequestCount());
+    assertEquals(0, metrics.getInFlightRequests());
+    assertEquals(0, metrics.getInFlightRequests(server.getAddress().getHostString()));
+    assertEquals(1, metrics.getPeakInFlightRequests());
+  }
+
+  @Test
+  public void testConnectionPoolIsSharedByTransportsWithSameConnectTimeout() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 5);
+    final JdkHttpClientTransport otherTransport = new JdkHttpClientTransport(5, 10);
+
+    transport.send(url("/ticker"), "GET", null, new HashMap<>());
+    otherTransport.send(url("/ticker"), "GET", null, new HashMap<>());
+
+    assertEquals(2, clientPorts.size());
+    assertEquals(clientPorts.get(0), clientPorts.get(1));
+    assertSame(
+        JdkHttpClientTransport.getSharedHttpClient(5),
+        JdkHttpClientTransport.getSharedHttpClient(5));
+    assertNotSame(
+        JdkHttpClientTransport.getSharedHttpClient(5),
+        JdkHttpClientTransport.getSharedHttpClient(10));
+  }
+
+  @Test
+  public void testPostSendsBodyWithFormContentTypeByDefault() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 5);
+
+    transport.send(url("/order"), "POST", "pair=XBTUSD&type=buy", new HashMap<>());
+
+    final Map<String, String> jsonHeaders = new HashMap<>();
+    jsonHeaders.put("Content-Type", "application/json");
+    transport.send(url("/order"), "POST", "{\"pair\":\"XBTUSD\"}", jsonHeaders);
+
+    assertEquals("application/x-www-form-urlencoded", contentTypes.get(0));
+    assertEquals("pair=XBTUSD&type=buy", requestBodies.get(0));
+    assertEquals("application/json", contentTypes.get(1));
+    assertEquals("{\"pair\":\"XBTUSD\"}", requestBodies.get(1));
+  }
+
+  @Test
+  public void testGetDoesNotSendContentType() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 5);
+    transport.send(url("/ticker"), "GET", null, new HashMap<>());
+    assertNull(contentTypes.get(0));
+  }
+
+  @Test
+  public void testErrorResponsesAreReturnedNotThrown() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 5);
+
+    final ExchangeHttpResponse response =
+        transport.send(url("/broken"), "GET", null, new HashMap<>());
+
+    assertEquals(503, response.getStatusCode());
+    assertEquals("Service Unavailable", response.getReasonPhrase());
+    assertEquals("down for maintenance", response.getPayload());
+    assertEquals(0, transport.getRequestMetrics().getFailedRequestCount());
+  }
+
+  @Test
+  public void testStreamedResponseIsReadAsItArrivesAndConnectionIsReused() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 5);
+
+    try (ExchangeHttpResponse response =
+        transport.sendStreamed(url("/ticker"), "GET", null, new HashMap<>())) {
+      assertEquals(200, response.getStatusCode());
+      final char[] firstChar = new char[1];
+      assertEquals(1, response.getPayloadReader().read(firstChar));
+      assertEquals('{', firstChar[0]);
+    }
+    try (ExchangeHttpResponse response =
+        transport.sendStreamed(url("/ticker"), "GET", null, new HashMap<>())) {
+      assertEquals(RESPONSE_BODY, response.getPayload());
+    }
+
+    assertEquals(2, clientPorts.size());
+    assertEquals(clientPorts.get(0), clientPorts.get(1));
+    assertEquals(0, transport.getRequestMetrics().getInFlightRequests());
+  }
+
+  @Test
+  public void testStreamedErrorResponsesAreReadInFull() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 5);
+
+    final ExchangeHttpResponse response =
+        transport.sendStreamed(url("/broken"), "GET", null, new HashMap<>());
+
+    assertEquals(503, response.getStatusCode());
+    assertEquals("down for maintenance", response.getPayload());
+    assertTrue(response.toString().contains("down for maintenance"));
+  }
+
+  @Test
+  public void testReadTimeoutIsApplied() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 1);
+    try {
+      transport.send(url("/slow"), "GET", null, new HashMap<>());
+    } catch (HttpTimeoutException e) {
+      assertEquals(1, transport.getRequestMetrics().getFailedRequestCount());
+      assertEquals(0, transport.getRequestMetrics().getInFlightRequests());
+      return;
+    }
+    throw new AssertionError("Expected HttpTimeoutException");
+  }
+
+  @Test
+  public void testReadTimeoutIsAppliedToStalledBody() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 1);
+    final long startTime = System.nanoTime();
+    try {
+      transport.send(url("/stalled"), "GET", null, new HashMap<>());
+    } catch (HttpTimeoutException e) {
+      assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(5));
+      assertEquals(1, transport.getRequestMetrics().getFailedRequestCount());
+      assertEquals(0, transport.getRequestMetrics().getInFlightRequests());
+      return;
+    }
+    throw new AssertionError("Expected HttpTimeoutException");
+  }
+
+  @Test
+  public void testReadTimeoutIsAppliedToStalledStream() throws Exception {
+    final JdkHttpClientTransport transport = new JdkHttpClientTransport(5, 1);
+    try (ExchangeHttpResponse response =
+        transport.sendStreamed(url("/stalled"), "GET", null, new HashMap<>())) {
+      assertEquals(200, response.getStatusCode());
+      final long startTime = System.nanoTime();
+      final Reader reader = response.getPayloadReader();
+      final char[] buffer = new char[RESPONSE_BODY.length()];
+      try {
+        while (reader.read(buffer) != -1) {
+          // the parser reads on until the stream stalls
+        }
+      } catch (HttpTimeoutException e) {
+        assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(5));
+        return;
+      }
+    }
+    throw new AssertionError("Expected HttpTimeoutException");
+  }
+
+  private URL url(String path) throws Exception {
+    return new URL(
+        "http://"
+            + server.getAddress().getHostString()
+            + ":"
+            + server.getAddress().getPort()
+            + path);
+  }
+
+  /*
+   * Sends the headers and the first half of the body, then stalls until the test ends.
+   */
+  private void respondThenStall(HttpExchange exchange) throws IOException {
+    final byte[] responseBody = RESPONSE_BODY.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, responseBody.length);
+    try (OutputStream outputStream = exchange.getResponseBody()) {
+      outputStream.write(responseBody, 0, responseBody.length / 2);
+      outputStream.flush();
+      stalledResponsesReleased.await(30, TimeUnit.SECONDS);
+      outputStream.write(responseBody, responseBody.length / 2, responseBody.length / 2);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+    synchronized (this) {
+      clientPorts.add(exchange.getRemoteAddress().getPort());
+      contentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+      requestBodies.add(
+          new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+    }
+    final byte[] responseBody = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(statusCode, responseBody.length);
+    try (OutputStream outputStream = exchange.getResponseBody()) {
+      outputStream.write(responseBody);
+    }
+  }
+}
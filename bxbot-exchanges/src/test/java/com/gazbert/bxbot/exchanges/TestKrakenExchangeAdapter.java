@@ -127,6 +127,8 @@ public class TestKrakenExchangeAdapter extends AbstractExchangeAdapterTest {
       "sendAuthenticatedRequestToExchange";
   private static final String MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD =
       "sendPublicRequestToExchange";
+  private static final String MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD =
+      "streamPublicRequestToExchange";
   private static final String MOCKED_CREATE_REQUEST_HEADER_MAP_METHOD = "createHeaderParamMap";
   private static final String MOCKED_MAKE_NETWORK_REQUEST_METHOD = "makeNetworkRequest";
 
@@ -163,6 +165,8 @@ public class TestKrakenExchangeAdapter extends AbstractExchangeAdapterTest {
 
     networkConfig = PowerMock.createMock(NetworkConfig.class);
     expect(networkConfig.getConnectionTimeout()).andReturn(30);
+    expect(networkConfig.getConnectTimeout()).andReturn(null);
+    expect(networkConfig.getReadTimeout()).andReturn(null);
     expect(networkConfig.getNonFatalErrorCodes()).andReturn(nonFatalNetworkErrorCodes);
     expect(networkConfig.getNonFatalErrorMessages()).andReturn(nonFatalNetworkErrorMessages);
 
@@ -170,6 +174,11 @@ public class TestKrakenExchangeAdapter extends AbstractExchangeAdapterTest {
     expect(otherConfig.getItem("buy-fee")).andReturn("0.1");
     expect(otherConfig.getItem("sell-fee")).andReturn("0.2");
     expect(otherConfig.getItem("keep-alive-during-maintenance")).andReturn("false");
+    expect(otherConfig.getItem("order-book-depth")).andReturn(null);
+    expect(otherConfig.getItem("rate-limits")).andReturn(null);
+    expect(otherConfig.getItem("rate-limit-weights")).andReturn(null);
+    expect(otherConfig.getItem("circuit-breaker")).andReturn(null);
+    expect(otherConfig.getItem("nonce-file")).andReturn(null);
 
     exchangeConfig = PowerMock.createMock(ExchangeConfig.class);
     expect(exchangeConfig.getAuthenticationConfig()).andReturn(authenticationConfig);
@@ -199,14 +208,14 @@ public class TestKrakenExchangeAdapter extends AbstractExchangeAdapterTest {
     final KrakenExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
             KrakenExchangeAdapter.class,
-            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
             MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD);
 
     PowerMock.expectPrivate(exchangeAdapter, MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD)
         .andReturn(requestParamMap);
     PowerMock.expectPrivate(
             exchangeAdapter,
-            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
             eq(DEPTH),
             eq(requestParamMap))
         .andReturn(exchangeResponse);
@@ -256,14 +265,14 @@ public class TestKrakenExchangeAdapter extends AbstractExchangeAdapterTest {
     final KrakenExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
             KrakenExchangeAdapter.class,
-            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
             MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD);
 
     PowerMock.expectPrivate(exchangeAdapter, MOCKED_CREATE_REQUEST_PARAM_MAP_METHOD)
         .andReturn(requestParamMap);
     PowerMock.expectPrivate(
             exchangeAdapter,
-            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
             eq(DEPTH),
             eq(requestParamMap))
         .andReturn(exchangeResponse);
@@ -279,11 +288,11 @@ public class TestKrakenExchangeAdapter extends AbstractExchangeAdapterTest {
   public void testGettingMarketOrdersHandlesExchangeNetworkException() throws Exception {
     final KrakenExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            KrakenExchangeAdapter.class, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
+            KrakenExchangeAdapter.class, MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
 
     PowerMock.expectPrivate(
             exchangeAdapter,
-            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
             eq(DEPTH),
             anyObject(Map.class))
         .andThrow(
@@ -300,11 +309,11 @@ public class TestKrakenExchangeAdapter extends AbstractExchangeAdapterTest {
   public void testGettingMarketOrdersHandlesUnexpectedException() throws Exception {
     final KrakenExchangeAdapter exchangeAdapter =
         PowerMock.createPartialMockAndInvokeDefaultConstructor(
-            KrakenExchangeAdapter.class, MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
+            KrakenExchangeAdapter.class, MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD);
 
     PowerMock.expectPrivate(
             exchangeAdapter,
-            MOCKED_SEND_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
+            MOCKED_STREAM_PUBLIC_REQUEST_TO_EXCHANGE_METHOD,
             eq(DEPTH),
             anyObject(Map.class))
         .andThrow(
@@ -0,0 +1,240 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.MarketTrade;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.Ticker;
+import java.math.BigDecimal;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Kraken market data stream against a local WebSocket server.
+ *
+ * @author gazbert
+ */
+public class TestKrakenMarketDataStream {
+
+  private static final String MARKET_ID = "XBTUSD";
+
+  private static final String BOOK_SNAPSHOT =
+      "[0,{\"as\":[[\"5541.30000\",\"2.50700000\",\"1534614248.123678\"],"
+          + "[\"5541.80000\",\"0.33000000\",\"1534614098.345543\"]],"
+          + "\"bs\":[[\"5541.20000\",\"1.52900000\",\"1534614248.765567\"]]},"
+          + "\"book-100\",\"XBT/USD\"]";
+  private static final String BOOK_UPDATE =
+      "[0,{\"a\":[[\"5541.30000\",\"0.00000000\",\"1534614335.345903\"]]},"
+          + "{\"b\":[[\"5541.25000\",\"0.40100000\",\"1534614335.345903\"]]},"
+          + "\"book-100\",\"XBT/USD\"]";
+  private static final String BOOK_UPDATE_WITH_CHECKSUM =
+      "[0,{\"a\":[[\"5541.30000\",\"0.00000000\",\"1534614335.345903\"]]},"
+          + "{\"b\":[[\"5541.25000\",\"0.40100000\",\"1534614335.345903\"]],"
+          + "\"c\":\"3606797279\"},\"book-100\",\"XBT/USD\"]";
+  private static final String TICKER =
+      "[0,{\"a\":[\"5525.40000\",1,\"1.000\"],\"b\":[\"5525.10000\",1,\"1.000\"],"
+          + "\"c\":[\"5525.10000\",\"0.00398963\"],\"v\":[\"2634.11501494\",\"3591.17907851\"],"
+          + "\"p\":[\"5631.44067\",\"5653.78939\"],\"t\":[11493,16267],"
+          + "\"l\":[\"5505.00000\",\"5505.00000\"],\"h\":[\"5783.00000\",\"5783.00000\"],"
+          + "\"o\":[\"5760.70000\",\"5763.40000\"]},\"ticker\",\"XBT/USD\"]";
+  private static final String TRADES =
+      "[0,[[\"5541.20000\",\"0.15850568\",\"1534614057.321597\",\"s\",\"l\",\"\"],"
+          + "[\"6060.00000\",\"0.02455000\",\"1534614057.324998\",\"b\",\"l\",\"\"]],"
+          + "\"trade\",\"XBT/USD\"]";
+
+  private LocalWebSocketServer server;
+  private KrakenMarketDataStream stream;
+
+  /** Start a local WebSocket server and point the stream at it. */
+  @Before
+  public void setupForEachTest() throws Exception {
+    server = new LocalWebSocketServer();
+    stream = new KrakenMarketDataStream(server.getUri(), 5, 100);
+  }
+
+  /** Close the stream and the server. */
+  @After
+  public void tearDownAfterEachTest() throws Exception {
+    stream.close();
+    server.close();
+  }
+
+  @Test
+  public void testMarketIdsAreConvertedToWebSocketPairs() {
+    assertEquals("XBT/USD", stream.toExchangeMarketId("XBTUSD"));
+    assertEquals("XBT/USD", stream.toExchangeMarketId("XBT/USD"));
+    assertEquals("XXBTZUSD", stream.toExchangeMarketId("XXBTZUSD"));
+  }
+
+  @Test
+  public void testOrderBookIsMirroredFromBookChannel() throws Exception {
+    final BlockingQueue<MarketOrderBook> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    assertEquals(
+        "{\"event\":\"subscribe\",\"pair\":[\"XBT/USD\"],"
+            + "\"subscription\":{\"name\":\"book\",\"depth\":100}}",
+        server.awaitMessage());
+
+    server.send("{\"event\":\"heartbeat\"}");
+    server.send(BOOK_SNAPSHOT);
+    MarketOrderBook orderBook = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(orderBook);
+    assertEquals(MARKET_ID, orderBook.getMarketId());
+    assertEquals(2, orderBook.getSellOrders().size());
+    assertEquals(
+        0, orderBook.getSellOrders().get(0).getPrice().compareTo(new BigDecimal("5541.30000")));
+    assertEquals(1, orderBook.getBuyOrders().size());
+
+    server.send(BOOK_UPDATE);
+    orderBook = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(orderBook);
+    assertEquals(1, orderBook.getSellOrders().size());
+    assertEquals(
+        0, orderBook.getSellOrders().get(0).getPrice().compareTo(new BigDecimal("5541.80000")));
+    assertEquals(2, orderBook.getBuyOrders().size());
+    assertEquals(
+        0, orderBook.getBuyOrders().get(0).getPrice().compareTo(new BigDecimal("5541.25000")));
+    assertEquals(orderBook, stream.getLatestMarketOrders(MARKET_ID));
+  }
+
+  @Test
+  public void testOrderBookUpdateMatchingChecksumIsApplied() throws Exception {
+    final BlockingQueue<MarketOrderBook> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    server.awaitMessage();
+
+    server.send(BOOK_SNAPSHOT);
+    assertNotNull(updates.poll(5, TimeUnit.SECONDS));
+    server.send(BOOK_UPDATE_WITH_CHECKSUM);
+    final MarketOrderBook orderBook = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(orderBook);
+    assertEquals(2, orderBook.getBuyOrders().size());
+  }
+
+  @Test
+  public void testOrderBookIsResyncedWhenChecksumDoesNotMatch() throws Exception {
+    final BlockingQueue<MarketOrderBook> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    server.awaitMessage();
+
+    server.send(BOOK_SNAPSHOT);
+    assertNotNull(updates.poll(5, TimeUnit.SECONDS));
+    server.send(BOOK_UPDATE_WITH_CHECKSUM.replace("3606797279", "12345"));
+
+    server.awaitConnection();
+    assertEquals(
+        "{\"event\":\"subscribe\",\"pair\":[\"XBT/USD\"],"
+            + "\"subscription\":{\"name\":\"book\",\"depth\":100}}",
+        server.awaitMessage());
+    assertNull(updates.poll(200, TimeUnit.MILLISECONDS));
+    assertNull(stream.getLatestMarketOrders(MARKET_ID));
+  }
+
+  @Test
+  public void testStaleStreamIsNotReadAndReconnects() throws Exception {
+    stream.setStaleTimeoutMillis(500);
+    final BlockingQueue<MarketOrderBook> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    server.awaitMessage();
+
+    server.send(BOOK_SNAPSHOT);
+    assertNotNull(updates.poll(5, TimeUnit.SECONDS));
+    assertNotNull(stream.getLatestMarketOrders(MARKET_ID));
+
+    server.awaitConnection();
+    server.awaitMessage();
+    assertNull(stream.getLatestMarketOrders(MARKET_ID));
+  }
+
+  @Test
+  public void testTickerIsStreamedFromTickerChannel() throws Exception {
+    final BlockingQueue<Ticker> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToTicker(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    assertEquals(
+        "{\"event\":\"subscribe\",\"pair\":[\"XBT/USD\"],\"subscription\":{\"name\":\"ticker\"}}",
+        server.awaitMessage());
+
+    server.send(TICKER);
+    final Ticker ticker = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(ticker);
+    assertEquals(0, ticker.getLast().compareTo(new BigDecimal("5525.10000")));
+    assertEquals(0, ticker.getBid().compareTo(new BigDecimal("5525.10000")));
+    assertEquals(0, ticker.getAsk().compareTo(new BigDecimal("5525.40000")));
+    assertEquals(0, ticker.getLow().compareTo(new BigDecimal("5505.00000")));
+    assertEquals(0, ticker.getHigh().compareTo(new BigDecimal("5783.00000")));
+    assertEquals(0, ticker.getOpen().compareTo(new BigDecimal("5763.40000")));
+    assertEquals(0, ticker.getVolume().compareTo(new BigDecimal("3591.17907851")));
+    assertEquals(0, ticker.getVwap().compareTo(new BigDecimal("5653.78939")));
+  }
+
+  @Test
+  public void testTradesAreStreamedFromTradeChannel() throws Exception {
+    final BlockingQueue<MarketTrade> trades = new LinkedBlockingQueue<>();
+    stream.subscribeToTrades(MARKET_ID, (marketId, trade) -> trades.add(trade));
+    server.awaitConnection();
+    server.awaitMessage();
+
+    server.send(TRADES);
+    final MarketTrade sell = trades.poll(5, TimeUnit.SECONDS);
+    assertNotNull(sell);
+    assertNull(sell.getId());
+    assertEquals(OrderType.SELL, sell.getType());
+    assertEquals(0, sell.getPrice().compareTo(new BigDecimal("5541.20000")));
+    assertEquals(0, sell.getQuantity().compareTo(new BigDecimal("0.15850568")));
+    assertEquals(Long.valueOf(1534614057321L), sell.getTimestamp());
+
+    final MarketTrade buy = trades.poll(5, TimeUnit.SECONDS);
+    assertNotNull(buy);
+    assertEquals(OrderType.BUY, buy.getType());
+  }
+
+  @Test
+  public void testMessagesForOtherMarketsAreIgnored() throws Exception {
+    final BlockingQueue<MarketOrderBook> updates = new LinkedBlockingQueue<>();
+    stream.subscribeToOrderBook(MARKET_ID, (marketId, update) -> updates.add(update));
+    server.awaitConnection();
+    server.awaitMessage();
+
+    server.send(BOOK_SNAPSHOT.replace("XBT/USD", "ETH/USD"));
+    server.send(BOOK_SNAPSHOT);
+    final MarketOrderBook orderBook = updates.poll(5, TimeUnit.SECONDS);
+    assertNotNull(orderBook);
+    assertEquals(MARKET_ID, orderBook.getMarketId());
+    assertNull(updates.poll(200, TimeUnit.MILLISECONDS));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/**
+ * Tests the Latency Histogram behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestLatencyHistogram {
+
+  @Test
+  public void testEmptyHistogramReportsZero() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(99, TimeUnit.NANOSECONDS), 0);
+    assertEquals(0, histogram.getMax(TimeUnit.NANOSECONDS), 0);
+  }
+
+  @Test
+  public void testPercentilesAreWithinThePrecisionOfTheBuckets() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int millis = 1; millis <= 1000; millis++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500_500, histogram.getTotalTime(TimeUnit.MILLISECONDS), 0.001);
+    assertEquals(1000, histogram.getMax(TimeUnit.MILLISECONDS), 0);
+    assertEquals(500, histogram.getValueAtPercentile(50, TimeUnit.MILLISECONDS), 500 * 0.035);
+    assertEquals(990, histogram.getValueAtPercentile(99, TimeUnit.MILLISECONDS), 990 * 0.035);
+    assertEquals(1000, histogram.getValueAtPercentile(100, TimeUnit.MILLISECONDS), 0);
+    assertEquals(1, histogram.getValueAtPercentile(0, TimeUnit.MILLISECONDS), 0.035);
+  }
+
+  @Test
+  public void testPercentilesAndMaxOnlyCoverTheWindow() {
+    final AtomicLong clock = new AtomicLong();
+    final LatencyHistogram histogram = new LatencyHistogram(3000, clock::get);
+    histogram.record(TimeUnit.SECONDS.toNanos(5));
+
+    clock.set(1500); // the slow latency is still in the window
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(5, histogram.getMax(TimeUnit.SECONDS), 0);
+    assertEquals(5, histogram.getValueAtPercentile(99, TimeUnit.SECONDS), 5 * 0.035);
+
+    clock.set(3000); // its slot has been reused
+    assertEquals(10, histogram.getMax(TimeUnit.MILLISECONDS), 0);
+    assertEquals(10, histogram.getValueAtPercentile(99, TimeUnit.MILLISECONDS), 10 * 0.035);
+    assertEquals(2, histogram.getCount());
+    assertEquals(5010, histogram.getTotalTime(TimeUnit.MILLISECONDS), 0.001);
+
+    clock.set(1_000_000); // idle for longer than the window
+    assertEquals(0, histogram.getMax(TimeUnit.NANOSECONDS), 0);
+    assertEquals(0, histogram.getValueAtPercentile(50, TimeUnit.NANOSECONDS), 0);
+    histogram.record(7);
+    assertEquals(7, histogram.getMax(TimeUnit.NANOSECONDS), 0);
+    assertEquals(3, histogram.getCount());
+  }
+
+  @Test
+  public void testEveryValueIsInTheBucketThatCoversIt() {
+    final Random random = new Random(3);
+    for (int i = 0; i < 100_000; i++) {
+      final long nanos = random.nextLong() >>> (27 + random.nextInt(37)); // up to 137 secs
+      final int index = LatencyHistogram.bucketIndex(nanos);
+      assertTrue(nanos + " above bucket", nanos <= LatencyHistogram.highestValueInBucket(index));
+      if (index > 0) {
+        assertTrue(
+            nanos + " below bucket", nanos > LatencyHistogram.highestValueInBucket(index - 1));
+      }
+    }
+  }
+
+  @Test
+  public void testVeryLongLatenciesAreClampedButTheMaxIsExact() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(TimeUnit.HOURS.toNanos(2));
+    histogram.record(-5);
+
+    assertEquals(2, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(50, TimeUnit.NANOSECONDS), 0);
+    assertEquals(2, histogram.getMax(TimeUnit.HOURS), 0);
+    assertEquals(2, histogram.getValueAtPercentile(100, TimeUnit.HOURS), 0.001);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderBookImpl;
+import com.gazbert.bxbot.exchanges.trading.api.impl.MarketOrderImpl;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+/**
+ * Tests the local order book behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestLocalOrderBook {
+
+  private static final String MARKET_ID = "btcusd";
+
+  @Test
+  public void testOrderBookIsNotReadyUntilSnapshotIsReceived() {
+    final LocalOrderBook orderBook = new LocalOrderBook(MARKET_ID);
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), new BigDecimal("1"));
+    assertNull(orderBook.getMarketOrderBook());
+
+    orderBook.markReady();
+    final MarketOrderBook marketOrderBook = orderBook.getMarketOrderBook();
+    assertEquals(MARKET_ID, marketOrderBook.getMarketId());
+    assertEquals(1, marketOrderBook.getBuyOrders().size());
+    assertEquals(0, marketOrderBook.getSellOrders().size());
+  }
+
+  @Test
+  public void testPriceLevelsAreSortedBestFirst() {
+    final LocalOrderBook orderBook = new LocalOrderBook(MARKET_ID);
+    orderBook.update(OrderType.BUY, new BigDecimal("99"), new BigDecimal("1"));
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), new BigDecimal("2"));
+    orderBook.update(OrderType.SELL, new BigDecimal("102"), new BigDecimal("3"));
+    orderBook.update(OrderType.SELL, new BigDecimal("101"), new BigDecimal("4"));
+    orderBook.markReady();
+
+    final MarketOrderBook marketOrderBook = orderBook.getMarketOrderBook();
+    assertEquals(
+        0, marketOrderBook.getBuyOrders().get(0).getPrice().compareTo(new BigDecimal("100")));
+    assertEquals(
+        0, marketOrderBook.getBuyOrders().get(1).getPrice().compareTo(new BigDecimal("99")));
+    assertEquals(
+        0, marketOrderBook.getSellOrders().get(0).getPrice().compareTo(new BigDecimal("101")));
+    assertEquals(
+        0, marketOrderBook.getSellOrders().get(1).getPrice().compareTo(new BigDecimal("102")));
+    assertEquals(
+        0, marketOrderBook.getSellOrders().get(0).getQuantity().compareTo(new BigDecimal("4")));
+    assertEquals(
+        0, marketOrderBook.getSellOrders().get(0).getTotal().compareTo(new BigDecimal("404")));
+    assertEquals(0, orderBook.getBestBid().compareTo(new BigDecimal("100")));
+    assertEquals(0, orderBook.getBestAsk().compareTo(new BigDecimal("101")));
+  }
+
+  @Test
+  public void testZeroQuantityRemovesPriceLevel() {
+    final LocalOrderBook orderBook = new LocalOrderBook(MARKET_ID);
+    orderBook.update(OrderType.SELL, new BigDecimal("101.0"), new BigDecimal("1"));
+    orderBook.update(OrderType.SELL, new BigDecimal("102"), new BigDecimal("1"));
+    orderBook.markReady();
+
+    orderBook.update(OrderType.SELL, new BigDecimal("101.00"), BigDecimal.ZERO);
+    assertEquals(0, orderBook.getBestAsk().compareTo(new BigDecimal("102")));
+    assertEquals(1, orderBook.getMarketOrderBook().getSellOrders().size());
+  }
+
+  @Test
+  public void testMarketOrderBookIsReusedUntilNextUpdate() {
+    final LocalOrderBook orderBook = new LocalOrderBook(MARKET_ID);
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), new BigDecimal("1"));
+    orderBook.markReady();
+
+    final MarketOrderBook first = orderBook.getMarketOrderBook();
+    assertSame(first, orderBook.getMarketOrderBook());
+
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), new BigDecimal("2"));
+    final MarketOrderBook second = orderBook.getMarketOrderBook();
+    assertEquals(0, second.getBuyOrders().get(0).getQuantity().compareTo(new BigDecimal("2")));
+    assertEquals(0, first.getBuyOrders().get(0).getQuantity().compareTo(new BigDecimal("1")));
+  }
+
+  @Test
+  public void testBufferedUpdatesAreReplayedOnSnapshot() {
+    final LocalOrderBook orderBook = new LocalOrderBook(MARKET_ID);
+    orderBook.bufferUpdates();
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), BigDecimal.ZERO);
+    orderBook.update(OrderType.SELL, new BigDecimal("103"), new BigDecimal("5"));
+    assertNull(orderBook.getMarketOrderBook());
+
+    orderBook.applySnapshot(
+        new MarketOrderBookImpl(
+            MARKET_ID,
+            Collections.singletonList(order(OrderType.SELL, "101", "1")),
+            Arrays.asList(order(OrderType.BUY, "100", "1"), order(OrderType.BUY, "99", "1"))));
+
+    final MarketOrderBook marketOrderBook = orderBook.getMarketOrderBook();
+    assertEquals(1, marketOrderBook.getBuyOrders().size());
+    assertEquals(
+        0, marketOrderBook.getBuyOrders().get(0).getPrice().compareTo(new BigDecimal("99")));
+    assertEquals(2, marketOrderBook.getSellOrders().size());
+    assertEquals(
+        0, marketOrderBook.getSellOrders().get(1).getPrice().compareTo(new BigDecimal("103")));
+
+    // Updates after the snapshot are applied directly.
+    orderBook.update(OrderType.BUY, new BigDecimal("99.5"), new BigDecimal("1"));
+    assertEquals(0, orderBook.getBestBid().compareTo(new BigDecimal("99.5")));
+  }
+
+  @Test
+  public void testResetThrowsAwayPriceLevels() {
+    final LocalOrderBook orderBook = new LocalOrderBook(MARKET_ID);
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), new BigDecimal("1"));
+    orderBook.markReady();
+
+    orderBook.reset();
+    assertNull(orderBook.getMarketOrderBook());
+    assertNull(orderBook.getBestBid());
+  }
+
+  @Test
+  public void testTruncateDropsLevelsBeyondDepth() {
+    final LocalOrderBook orderBook = new LocalOrderBook(MARKET_ID);
+    for (int i = 1; i <= 5; i++) {
+      orderBook.update(OrderType.BUY, new BigDecimal(100 - i), BigDecimal.ONE);
+      orderBook.update(OrderType.SELL, new BigDecimal(100 + i), BigDecimal.ONE);
+    }
+    orderBook.markReady();
+
+    orderBook.truncate(2);
+    final MarketOrderBook marketOrderBook = orderBook.getMarketOrderBook();
+    assertEquals(2, marketOrderBook.getBuyOrders().size());
+    assertEquals(
+        0, marketOrderBook.getBuyOrders().get(1).getPrice().compareTo(new BigDecimal("98")));
+    assertEquals(2, marketOrderBook.getSellOrders().size());
+    assertEquals(
+        0, marketOrderBook.getSellOrders().get(1).getPrice().compareTo(new BigDecimal("102")));
+  }
+
+  private static MarketOrder order(OrderType type, String price, String quantity) {
+    final BigDecimal orderPrice = new BigDecimal(price);
+    final BigDecimal orderQuantity = new BigDecimal(quantity);
+    return new MarketOrderImpl(type, orderPrice, orderQuantity, orderPrice.multiply(orderQuantity));
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
+import com.gazbert.bxbot.trading.api.MarketMetadata;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Market Metadata Cache behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestMarketMetadataCache {
+
+  private static final String MARKET_ID = "btcusd";
+  private static final long REFRESH_NANOS = 1_000L;
+  private static final long TTL_NANOS = 10_000L;
+
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicInteger loads = new AtomicInteger();
+  private final List<Runnable> queuedRefreshes = new ArrayList<>();
+  private final Executor queuingExecutor = queuedRefreshes::add;
+
+  private boolean failLoads;
+  private MarketMetadataCache cache;
+
+  /** Sets up a cache driven by the test clock and executor. */
+  @Before
+  public void setup() {
+    cache =
+        new MarketMetadataCache(
+            this::loadMetadata, REFRESH_NANOS, TTL_NANOS, queuingExecutor, clock::get);
+  }
+
+  @Test
+  public void testFirstGetLoadsAndLaterGetsAreCached() throws Exception {
+    final MarketMetadata first = cache.get(MARKET_ID);
+    assertEquals(0, first.getBuyFeePercentage().compareTo(new BigDecimal("0.001")));
+
+    clock.set(REFRESH_NANOS - 1);
+    assertSame(first, cache.get(MARKET_ID));
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getLoadCount());
+    assertTrue(queuedRefreshes.isEmpty());
+  }
+
+  @Test
+  public void testStaleEntryIsReturnedAndRefreshedInBackground() throws Exception {
+    final MarketMetadata first = cache.get(MARKET_ID);
+
+    clock.set(REFRESH_NANOS);
+    assertSame(first, cache.get(MARKET_ID));
+    assertSame(first, cache.get(MARKET_ID));
+    assertEquals(1, queuedRefreshes.size()); // refreshes are de-duplicated
+
+    runQueuedRefreshes();
+    final MarketMetadata refreshed = cache.get(MARKET_ID);
+    assertEquals(0, refreshed.getBuyFeePercentage().compareTo(new BigDecimal("0.002")));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testFailedRefreshKeepsEntryUntilTtl() throws Exception {
+    final MarketMetadata first = cache.get(MARKET_ID);
+
+    failLoads = true;
+    clock.set(REFRESH_NANOS);
+    assertSame(first, cache.get(MARKET_ID));
+    runQueuedRefreshes();
+    assertEquals(1, cache.getRefreshFailureCount());
+    assertSame(first, cache.get(MARKET_ID));
+
+    clock.set(TTL_NANOS);
+    assertNull(cache.getIfPresent(MARKET_ID));
+  }
+
+  @Test(expected = ExchangeNetworkException.class)
+  public void testExpiredEntryIsLoadedAgainOnGet() throws Exception {
+    cache.get(MARKET_ID);
+
+    failLoads = true;
+    clock.set(TTL_NANOS);
+    cache.get(MARKET_ID);
+  }
+
+  @Test
+  public void testGetIfPresentNeverLoadsOnCallerThread() {
+    assertNull(cache.getIfPresent(MARKET_ID));
+    assertEquals(0, loads.get());
+    assertEquals(1, queuedRefreshes.size());
+
+    runQueuedRefreshes();
+    assertEquals(
+        0, cache.getIfPresent(MARKET_ID).getBuyFeePercentage().compareTo(new BigDecimal("0.001")));
+  }
+
+  @Test
+  public void testSlowLoadOnlyHoldsUpItsOwnMarket() throws Exception {
+    final CountDownLatch loadStarted = new CountDownLatch(1);
+    final CountDownLatch loadReleased = new CountDownLatch(1);
+    final MarketMetadataCache.Loader loader =
+        marketId -> {
+          if (MARKET_ID.equals(marketId)) {
+            loadStarted.countDown();
+            try {
+              assertTrue(loadReleased.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new IllegalStateException(e);
+            }
+          }
+          return loadMetadata(marketId);
+        };
+    cache = new MarketMetadataCache(loader, REFRESH_NANOS, TTL_NANOS, queuingExecutor, clock::get);
+
+    final FutureTask<MarketMetadata> slowGet = new FutureTask<>(() -> cache.get(MARKET_ID));
+    final FutureTask<MarketMetadata> waitingGet = new FutureTask<>(() -> cache.get(MARKET_ID));
+    new Thread(slowGet).start();
+    assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+    new Thread(waitingGet).start();
+
+    assertEquals("ethusd", cache.get("ethusd").getMarketId());
+    assertFalse(slowGet.isDone());
+
+    loadReleased.countDown();
+    assertSame(slowGet.get(5, TimeUnit.SECONDS), waitingGet.get(5, TimeUnit.SECONDS));
+    assertEquals(2, cache.getLoadCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTtlShorterThanRefreshIntervalIsRejected() {
+    new MarketMetadataCache(
+        this::loadMetadata, REFRESH_NANOS, REFRESH_NANOS - 1, queuingExecutor, clock::get);
+  }
+
+  private MarketMetadata loadMetadata(String marketId) throws ExchangeNetworkException {
+    if (failLoads) {
+      throw new ExchangeNetworkException("Exchange is down");
+    }
+    final BigDecimal fee =
+        new BigDecimal("0.001").multiply(new BigDecimal(loads.incrementAndGet()));
+    return new MarketMetadata(marketId, fee, fee, new BigDecimal("0.01"), null);
+  }
+
+  private void runQueuedRefreshes() {
+    final List<Runnable> refreshes = new ArrayList<>(queuedRefreshes);
+    queuedRefreshes.clear();
+    refreshes.forEach(Runnable::run);
+  }
+}
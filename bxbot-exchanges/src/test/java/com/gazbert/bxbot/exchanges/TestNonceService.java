@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Nonce Service behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestNonceService {
+
+  private static final long NOW = 1_600_000_000L;
+
+  private final AtomicLong clock = new AtomicLong(NOW);
+  private Path nonceFile;
+
+  @Before
+  public void setUp() throws IOException {
+    nonceFile = Files.createTempFile("bxbot-nonce", ".dat");
+    Files.delete(nonceFile);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(nonceFile);
+  }
+
+  @Test
+  public void testNoncesStartFromTheTimeFloorAndIncrease() {
+    final NonceService nonceService = new NonceService(clock::get);
+    assertEquals(NOW, nonceService.next());
+    assertEquals(NOW + 1, nonceService.next());
+    assertEquals(NOW + 2, nonceService.next());
+  }
+
+  @Test
+  public void testNoncesJumpToTheTimeFloorWhenTheClockPassesThem() {
+    final NonceService nonceService = new NonceService(clock::get);
+    nonceService.next();
+    clock.addAndGet(60);
+    assertEquals(NOW + 60, nonceService.next());
+  }
+
+  @Test
+  public void testNoncesNeverGoBackwardsWhenTheClockDoes() {
+    final NonceService nonceService = new NonceService(clock::get);
+    nonceService.next();
+    clock.addAndGet(-60);
+    assertEquals(NOW + 1, nonceService.next());
+  }
+
+  @Test
+  public void testNoncesKeepIncreasingAfterRestart() throws IOException {
+    long lastNonce = 0;
+    try (NonceService nonceService = new NonceService(nonceFile, clock::get)) {
+      for (int i = 0; i < 2500; i++) {
+        lastNonce = nonceService.next();
+      }
+    }
+
+    // restarted within the same second
+    try (NonceService nonceService = new NonceService(nonceFile, clock::get)) {
+      final long nonce = nonceService.next();
+      assertTrue(nonce > lastNonce);
+      assertTrue(nonce <= lastNonce + NonceService.RESERVATION_SIZE + 1);
+    }
+  }
+
+  @Test
+  public void testHighWaterMarkIsWrittenOncePerReservation() throws IOException {
+    try (NonceService nonceService = new NonceService(nonceFile, clock::get)) {
+      nonceService.next();
+      assertEquals(NOW + NonceService.RESERVATION_SIZE, readHighWaterMark());
+
+      for (int i = 0; i < NonceService.RESERVATION_SIZE; i++) {
+        nonceService.next();
+      }
+      assertEquals(NOW + NonceService.RESERVATION_SIZE, readHighWaterMark());
+
+      nonceService.next();
+      assertEquals(NOW + 2 * NonceService.RESERVATION_SIZE + 1, readHighWaterMark());
+    }
+  }
+
+  @Test
+  public void testConcurrentCallersGetUniqueIncreasingNonces() throws Exception {
+    final int threads = 4;
+    final int noncesPerThread = 5000;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try (NonceService nonceService = new NonceService(nonceFile, clock::get)) {
+      final List<Future<long[]>> results = new ArrayList<>();
+      for (int thread = 0; thread < threads; thread++) {
+        results.add(
+            executor.submit(
+                () -> {
+                  final long[] nonces = new long[noncesPerThread];
+                  for (int i = 0; i < noncesPerThread; i++) {
+                    nonces[i] = nonceService.next();
+                  }
+                  return nonces;
+                }));
+      }
+
+      final Set<Long> allNonces = new HashSet<>();
+      long biggestNonce = 0;
+      for (final Future<long[]> result : results) {
+        final long[] nonces = result.get();
+        for (int i = 0; i < nonces.length; i++) {
+          assertTrue(i == 0 || nonces[i] > nonces[i - 1]);
+          allNonces.add(nonces[i]);
+          biggestNonce = Math.max(biggestNonce, nonces[i]);
+        }
+      }
+      assertEquals(threads * noncesPerThread, allNonces.size());
+      assertTrue(readHighWaterMark() >= biggestNonce);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private long readHighWaterMark() throws IOException {
+    final byte[] bytes = Files.readAllBytes(nonceFile);
+    long mark = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      mark = mark << 8 | (bytes[i] & 0xff);
+    }
+    return mark;
+  }
+}
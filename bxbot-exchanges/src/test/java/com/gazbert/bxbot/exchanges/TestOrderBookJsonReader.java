@@ -0,0 +1,167 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.gazbert.bxbot.exchanges.trading.api.impl.PriceLevelOrderBook;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.junit.Test;
+
+/**
+ * Tests order books are read from exchange JSON responses as expected.
+ *
+ * @author gazbert
+ */
+public class TestOrderBookJsonReader {
+
+  private static final String BITSTAMP_ORDER_BOOK_JSON =
+      "./src/test/exchange-data/bitstamp/order_book.json";
+  private static final String BITFINEX_ORDER_BOOK_JSON =
+      "./src/test/exchange-data/bitfinex/book.json";
+  private static final String MARKET_ID = "btcusd";
+
+  @Test
+  public void testArrayPriceLevelsAreReadBestPriceFirst() throws Exception {
+    final PriceLevelOrderBook orderBook =
+        read(BITSTAMP_ORDER_BOOK_JSON, OrderBookJsonReader.FULL_DEPTH);
+
+    assertEquals(MARKET_ID, orderBook.getMarketId());
+    assertEquals(1268, orderBook.getDepth(OrderType.BUY));
+    assertEquals(1957, orderBook.getDepth(OrderType.SELL));
+    assertEquals(0, orderBook.getBestBid().compareTo(new BigDecimal("230.34")));
+    assertEquals(
+        0, orderBook.getQuantity(OrderType.BUY, 0).compareTo(new BigDecimal("7.22860000")));
+    assertEquals(0, orderBook.getBestAsk().compareTo(new BigDecimal("230.90")));
+    assertEquals(
+        0, orderBook.getQuantity(OrderType.SELL, 0).compareTo(new BigDecimal("0.62263188")));
+  }
+
+  @Test
+  public void testObjectPriceLevelsAreRead() throws Exception {
+    final PriceLevelOrderBook orderBook =
+        read(BITFINEX_ORDER_BOOK_JSON, OrderBookJsonReader.FULL_DEPTH);
+
+    assertEquals(906, orderBook.getDepth(OrderType.BUY));
+    assertEquals(984, orderBook.getDepth(OrderType.SELL));
+    assertEquals(0, orderBook.getBestBid().compareTo(new BigDecimal("239.43")));
+    assertEquals(0, orderBook.getQuantity(OrderType.BUY, 0).compareTo(new BigDecimal("5.0")));
+    assertEquals(0, orderBook.getBestAsk().compareTo(new BigDecimal("239.53")));
+    assertEquals(
+        0, orderBook.getQuantity(OrderType.SELL, 0).compareTo(new BigDecimal("6.35595596")));
+  }
+
+  @Test
+  public void testOnlyTheConfiguredDepthIsRead() throws Exception {
+    final PriceLevelOrderBook orderBook = read(BITSTAMP_ORDER_BOOK_JSON, 10);
+
+    assertEquals(10, orderBook.getDepth(OrderType.BUY));
+    assertEquals(10, orderBook.getDepth(OrderType.SELL));
+    assertEquals(0, orderBook.getBestBid().compareTo(new BigDecimal("230.34")));
+    assertEquals(0, orderBook.getBestAsk().compareTo(new BigDecimal("230.90")));
+  }
+
+  @Test
+  public void testNumbersAndExtraFieldsAreAccepted() throws Exception {
+    final String json =
+        "{\"timestamp\":\"1\",\"bids\":[[100.5,2,\"1534614248.1\"],[99,1e-2]],"
+            + "\"asks\":[{\"price\":101,\"size\":\"3\",\"count\":2}],\"extra\":{\"a\":[1]}}";
+    final PriceLevelOrderBook orderBook =
+        new OrderBookJsonReader(OrderBookJsonReader.FULL_DEPTH)
+            .readOrderBook(new JsonReader(new StringReader(json)), MARKET_ID);
+
+    assertEquals(2, orderBook.getDepth(OrderType.BUY));
+    assertEquals(0, orderBook.getBestBid().compareTo(new BigDecimal("100.5")));
+    assertEquals(0, orderBook.getQuantity(OrderType.BUY, 1).compareTo(new BigDecimal("0.01")));
+    assertEquals(0, orderBook.getBestAsk().compareTo(new BigDecimal("101")));
+    assertEquals(0, orderBook.getQuantity(OrderType.SELL, 0).compareTo(new BigDecimal("3")));
+  }
+
+  @Test
+  public void testReaderCanBeReused() throws Exception {
+    final OrderBookJsonReader reader = new OrderBookJsonReader(OrderBookJsonReader.FULL_DEPTH);
+    final PriceLevelOrderBook first =
+        reader.readOrderBook(
+            new JsonReader(new StringReader("{\"bids\":[[\"2\",\"1\"]],\"asks\":[]}")), MARKET_ID);
+    final PriceLevelOrderBook second =
+        reader.readOrderBook(
+            new JsonReader(new StringReader("{\"bids\":[],\"asks\":[[\"3\",\"1\"]]}")), MARKET_ID);
+
+    assertEquals(1, first.getDepth(OrderType.BUY));
+    assertEquals(0, first.getDepth(OrderType.SELL));
+    assertEquals(0, second.getDepth(OrderType.BUY));
+    assertNull(second.getBestBid());
+    assertEquals(0, second.getBestAsk().compareTo(new BigDecimal("3")));
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testPriceLevelWithoutAmountIsRejected() throws Exception {
+    new OrderBookJsonReader(OrderBookJsonReader.FULL_DEPTH)
+        .readOrderBook(
+            new JsonReader(new StringReader("{\"bids\":[{\"price\":\"1\"}]}")), MARKET_ID);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDepthMustBePositive() {
+    new OrderBookJsonReader(0);
+  }
+
+  @Test
+  public void testParsingScaledNumbers() {
+    assertEquals(600005000000L, OrderBookJsonReader.parseScaled("6000.05", 8));
+    assertEquals(600000000000L, OrderBookJsonReader.parseScaled("6000", 8));
+    assertEquals(50000000L, OrderBookJsonReader.parseScaled(".5", 8));
+    assertEquals(-150000000L, OrderBookJsonReader.parseScaled("-1.5", 8));
+    assertEquals(123L, OrderBookJsonReader.parseScaled("0.00000123000", 8));
+    assertEquals(250000000L, OrderBookJsonReader.parseScaled("2.5E0", 8));
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testParsingRejectsTooManyDecimalPlaces() {
+    OrderBookJsonReader.parseScaled("0.000000001", 8);
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testParsingRejectsOverflow() {
+    OrderBookJsonReader.parseScaled("999999999999999", 8);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testParsingRejectsNonNumbers() {
+    OrderBookJsonReader.parseScaled("-", 8);
+  }
+
+  private static PriceLevelOrderBook read(String file, int depth) throws Exception {
+    try (JsonReader reader = new JsonReader(Files.newBufferedReader(Paths.get(file)))) {
+      return new OrderBookJsonReader(depth).readOrderBook(reader, MARKET_ID);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+
+/**
+ * Tests the Request Signer behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestRequestSigner {
+
+  private static final byte[] SECRET = "my-api-secret".getBytes(StandardCharsets.UTF_8);
+  private static final String MESSAGE =
+      "nonce=1442080734391&type=buy&price=250.01&amount=1.5&pair=XXBTZUSD"
+          + "&note=\u00e9\u20ac\ud83d\ude00"; // 2, 3 and 4 byte UTF-8: e acute, euro, emoji
+
+  @Test
+  public void testHmacIsEncodedAsHex() throws Exception {
+    final RequestSigner signer = RequestSigner.forHmac("HmacSHA384", SECRET);
+    final byte[] expected = hmac("HmacSHA384", MESSAGE.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(toHex(expected), signer.signToHex(MESSAGE, false));
+    assertEquals(toHex(expected).toUpperCase(), signer.signToHex(MESSAGE, true));
+  }
+
+  @Test
+  public void testHmacIsEncodedAsBase64() throws Exception {
+    final RequestSigner signer = RequestSigner.forHmac("HmacSHA256", SECRET);
+    final byte[] expected = hmac("HmacSHA256", MESSAGE.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(Base64.getEncoder().encodeToString(expected), signer.signToBase64(MESSAGE));
+  }
+
+  @Test
+  public void testHmacOfPrefixAndSha256HashIsEncodedAsBase64() throws Exception {
+    final RequestSigner signer = RequestSigner.forHmac("HmacSHA512", SECRET);
+    final String path = "/0/private/AddOrder";
+
+    final byte[] messageHash =
+        MessageDigest.getInstance("SHA-256").digest(MESSAGE.getBytes(StandardCharsets.UTF_8));
+    final Mac mac = Mac.getInstance("HmacSHA512");
+    mac.init(new SecretKeySpec(SECRET, "HmacSHA512"));
+    mac.update(path.getBytes(StandardCharsets.UTF_8));
+    mac.update(messageHash);
+
+    assertEquals(
+        Base64.getEncoder().encodeToString(mac.doFinal()),
+        signer.signWithSha256ToBase64(path, MESSAGE));
+  }
+
+  @Test
+  public void testDigestIsEncodedAsHex() throws Exception {
+    final RequestSigner signer = RequestSigner.forDigest("MD5");
+    final byte[] expected =
+        MessageDigest.getInstance("MD5").digest(MESSAGE.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(toHex(expected).toUpperCase(), signer.signToHex(MESSAGE, true));
+  }
+
+  @Test
+  public void testSigningTheSameMessageAgainGivesTheSameSignature() throws Exception {
+    final RequestSigner signer = RequestSigner.forHmac("HmacSHA256", SECRET);
+    final String first = signer.signToBase64(MESSAGE);
+    signer.signToBase64("something else");
+    assertEquals(first, signer.signToBase64(MESSAGE));
+  }
+
+  @Test
+  public void testMessagesBiggerThanTheBuffersAreSigned() throws Exception {
+    final RequestSigner signer = RequestSigner.forHmac("HmacSHA256", SECRET);
+    final StringBuilder message = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      message.append(MESSAGE);
+    }
+    final String bigMessage = message.toString();
+    final byte[] bytes = bigMessage.getBytes(StandardCharsets.UTF_8);
+
+    assertEquals(toHex(hmac("HmacSHA256", bytes)), signer.signToHex(bigMessage, false));
+    assertEquals(Base64.getEncoder().encodeToString(bytes), signer.toBase64(bigMessage));
+  }
+
+  @Test
+  public void testBase64EncodingMatchesTheJdkForAllPaddings() throws Exception {
+    final RequestSigner signer = RequestSigner.forDigest("MD5");
+    for (final String message : new String[] {"", "a", "ab", "abc", "abcd", MESSAGE}) {
+      assertEquals(
+          Base64.getEncoder().encodeToString(message.getBytes(StandardCharsets.UTF_8)),
+          signer.toBase64(message));
+    }
+  }
+
+  @Test
+  public void testUtf8EncodingMatchesTheJdk() {
+    final String message = MESSAGE + "\ud800 unpaired \udc00 surrogates\ud800"; // lone surrogates
+    final byte[] dst = new byte[message.length() * 3];
+    final int length = RequestSigner.encodeUtf8(message, dst);
+
+    final byte[] expected = message.getBytes(StandardCharsets.UTF_8);
+    assertEquals(expected.length, length);
+    for (int i = 0; i < length; i++) {
+      assertEquals(expected[i], dst[i]);
+    }
+  }
+
+  @Test
+  public void testConcurrentSigningIsThreadSafe() throws Exception {
+    final RequestSigner signer = RequestSigner.forHmac("HmacSHA512", SECRET);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Boolean>> results = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        final int threadId = thread;
+        results.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 500; i++) {
+                    final String message = MESSAGE + threadId + i;
+                    final String expected =
+                        toHex(hmac("HmacSHA512", message.getBytes(StandardCharsets.UTF_8)));
+                    if (!expected.equals(signer.signToHex(message, false))) {
+                      return false;
+                    }
+                  }
+                  return true;
+                }));
+      }
+      for (final Future<Boolean> result : results) {
+        assertEquals(true, result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static byte[] hmac(String algorithm, byte[] message) throws Exception {
+    final Mac mac = Mac.getInstance(algorithm);
+    mac.init(new SecretKeySpec(SECRET, algorithm));
+    return mac.doFinal(message);
+  }
+
+  private static String toHex(byte[] bytes) {
+    final StringBuilder hex = new StringBuilder();
+    for (final byte aByte : bytes) {
+      hex.append(String.format("%02x", aByte & 0xff));
+    }
+    return hex.toString();
+  }
+}
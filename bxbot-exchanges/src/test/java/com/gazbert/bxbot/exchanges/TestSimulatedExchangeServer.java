@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.exchange.api.AuthenticationConfig;
+import com.gazbert.bxbot.exchange.api.ExchangeConfig;
+import com.gazbert.bxbot.exchange.api.NetworkConfig;
+import com.gazbert.bxbot.exchange.api.OtherConfig;
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Simulated Exchange Server by trading against it with the Bitstamp Exchange Adapter.
+ *
+ * @author gazbert
+ */
+public class TestSimulatedExchangeServer {
+
+  private static final String MARKET_ID = "btcusd";
+
+  private SimulatedMatchingEngine matchingEngine;
+  private SimulatedExchangeServer server;
+  private BitstampExchangeAdapter exchangeAdapter;
+
+  /** Start a simulated exchange and point a Bitstamp adapter at it. */
+  @Before
+  public void setUp() throws Exception {
+    matchingEngine = new SimulatedMatchingEngine();
+    matchingEngine.addMarkets(MARKET_ID + "=BTC/USD@10000");
+    matchingEngine.depositAll("BTC=10, USD=100000");
+    matchingEngine.setFees(new BigDecimal("0.005"), new BigDecimal("0.005"));
+    server = new SimulatedExchangeServer(matchingEngine, 0);
+    server.start();
+
+    final AuthenticationConfig authenticationConfig = createNiceMock(AuthenticationConfig.class);
+    expect(authenticationConfig.getItem("key")).andStubReturn("key");
+    expect(authenticationConfig.getItem("secret")).andStubReturn("secret");
+    final NetworkConfig networkConfig = createNiceMock(NetworkConfig.class);
+    expect(networkConfig.getConnectionTimeout()).andStubReturn(5);
+    final OtherConfig otherConfig = createNiceMock(OtherConfig.class);
+    expect(otherConfig.getItem("api-base-url")).andStubReturn(server.getBaseUrl());
+    final ExchangeConfig exchangeConfig = createNiceMock(ExchangeConfig.class);
+    expect(exchangeConfig.getAuthenticationConfig()).andStubReturn(authenticationConfig);
+    expect(exchangeConfig.getNetworkConfig()).andStubReturn(networkConfig);
+    expect(exchangeConfig.getOtherConfig()).andStubReturn(otherConfig);
+    replay(authenticationConfig, networkConfig, otherConfig, exchangeConfig);
+
+    exchangeAdapter = new BitstampExchangeAdapter();
+    exchangeAdapter.init(exchangeConfig);
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testMarketDataIsServedInTheBitstampFormat() throws Exception {
+    matchingEngine.placeOrder(
+        SimulatedMatchingEngine.ORDER_FLOW_ACCOUNT,
+        MARKET_ID,
+        OrderType.SELL,
+        new BigDecimal("1.5"),
+        new BigDecimal("10100"));
+
+    final MarketOrderBook orderBook = exchangeAdapter.getMarketOrders(MARKET_ID);
+    assertEquals(1, orderBook.getSellOrders().size());
+    final MarketOrder bestAsk = orderBook.getSellOrders().get(0);
+    assertEquals(0, bestAsk.getPrice().compareTo(new BigDecimal("10100")));
+    assertEquals(0, bestAsk.getQuantity().compareTo(new BigDecimal("1.5")));
+    assertTrue(orderBook.getBuyOrders().isEmpty());
+
+    final Ticker ticker = exchangeAdapter.getTicker(MARKET_ID);
+    assertEquals(0, ticker.getLast().compareTo(new BigDecimal("10000")));
+    assertEquals(0, ticker.getAsk().compareTo(new BigDecimal("10100")));
+    assertEquals(
+        0, exchangeAdapter.getLatestMarketPrice(MARKET_ID).compareTo(new BigDecimal("10000")));
+  }
+
+  @Test
+  public void testOrdersArePlacedListedAndCancelled() throws Exception {
+    final String orderId =
+        exchangeAdapter.createOrder(
+            MARKET_ID, OrderType.BUY, new BigDecimal("0.5"), new BigDecimal("9900"));
+
+    final List<OpenOrder> openOrders = exchangeAdapter.getYourOpenOrders(MARKET_ID);
+    assertEquals(1, openOrders.size());
+    assertEquals(orderId, openOrders.get(0).getId());
+    assertEquals(OrderType.BUY, openOrders.get(0).getType());
+    assertEquals(0, openOrders.get(0).getPrice().compareTo(new BigDecimal("9900")));
+
+    BalanceInfo balanceInfo = exchangeAdapter.getBalanceInfo();
+    assertEquals(
+        0, balanceInfo.getBalancesOnHold().get("USD").compareTo(new BigDecimal("4974.75")));
+
+    assertTrue(exchangeAdapter.cancelOrder(orderId, MARKET_ID));
+    assertFalse(exchangeAdapter.cancelOrder(orderId, MARKET_ID));
+    assertTrue(exchangeAdapter.getYourOpenOrders(MARKET_ID).isEmpty());
+
+    balanceInfo = exchangeAdapter.getBalanceInfo();
+    assertEquals(
+        0, balanceInfo.getBalancesAvailable().get("USD").compareTo(new BigDecimal("100000")));
+  }
+
+  @Test
+  public void testFeesAreServedAsPercentages() throws Exception {
+    assertEquals(
+        0,
+        exchangeAdapter
+            .getPercentageOfBuyOrderTakenForExchangeFee(MARKET_ID)
+            .compareTo(new BigDecimal("0.005")));
+  }
+
+  @Test(expected = TradingApiException.class)
+  public void testRejectedOrderIsReportedByTheAdapter() throws Exception {
+    exchangeAdapter.createOrder(
+        MARKET_ID, OrderType.SELL, new BigDecimal("11"), new BigDecimal("10000"));
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static com.gazbert.bxbot.exchanges.SimulatedMatchingEngine.BOT_ACCOUNT;
+import static com.gazbert.bxbot.exchanges.SimulatedMatchingEngine.ORDER_FLOW_ACCOUNT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.trading.api.BalanceInfo;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderType;
+import com.gazbert.bxbot.trading.api.Ticker;
+import com.gazbert.bxbot.trading.api.TradingApiException;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Simulated Matching Engine behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestSimulatedMatchingEngine {
+
+  private static final String MARKET_ID = "btcusd";
+  private static final long NOW = 1_600_000_000_000L;
+
+  private SimulatedMatchingEngine matchingEngine;
+
+  /** Sets up a matching engine with a funded test account. */
+  @Before
+  public void setUp() {
+    matchingEngine = new SimulatedMatchingEngine(() -> NOW);
+    matchingEngine.addMarkets(MARKET_ID + "=BTC/USD@10000");
+    matchingEngine.depositAll("BTC=10, USD=100000");
+  }
+
+  @Test
+  public void testOrdersAtTheSamePriceAreFilledOldestFirst() throws Exception {
+    final String first = placeFlowOrder(OrderType.SELL, "1", "10000");
+    final String second = placeFlowOrder(OrderType.SELL, "1", "10000");
+
+    matchingEngine.placeOrder(BOT_ACCOUNT, MARKET_ID, OrderType.BUY, bd("1.5"), bd("10000"));
+
+    final List<OpenOrder> openOrders = matchingEngine.getOpenOrders(ORDER_FLOW_ACCOUNT, MARKET_ID);
+    assertEquals(1, openOrders.size());
+    assertEquals(second, openOrders.get(0).getId());
+    assertEquals(0, openOrders.get(0).getQuantity().compareTo(bd("0.5")));
+    assertFalse(first.equals(openOrders.get(0).getId()));
+  }
+
+  @Test
+  public void testBetterPricesAreFilledFirstAtTheRestingPrice() throws Exception {
+    placeFlowOrder(OrderType.SELL, "1", "10100");
+    placeFlowOrder(OrderType.SELL, "1", "10050");
+
+    matchingEngine.placeOrder(BOT_ACCOUNT, MARKET_ID, OrderType.BUY, bd("1"), bd("10200"));
+
+    assertEquals(0, matchingEngine.getLastPrice(MARKET_ID).compareTo(bd("10050")));
+    final MarketOrderBook orderBook = matchingEngine.getOrderBook(MARKET_ID, 0);
+    assertEquals(1, orderBook.getSellOrders().size());
+    assertEquals(0, orderBook.getSellOrders().get(0).getPrice().compareTo(bd("10100")));
+    assertTrue(orderBook.getBuyOrders().isEmpty());
+
+    // The bot paid the resting price, not its limit price.
+    final BalanceInfo balanceInfo = matchingEngine.getBalanceInfo();
+    assertEquals(0, balanceInfo.getBalancesAvailable().get("USD").compareTo(bd("89950")));
+    assertEquals(0, balanceInfo.getBalancesOnHold().get("USD").compareTo(BigDecimal.ZERO));
+    assertEquals(0, balanceInfo.getBalancesAvailable().get("BTC").compareTo(bd("11")));
+  }
+
+  @Test
+  public void testOrderBookLevelsAreAggregatedAndLimitedToTheDepth() throws Exception {
+    placeFlowOrder(OrderType.BUY, "1", "9900");
+    placeFlowOrder(OrderType.BUY, "2", "9900");
+    placeFlowOrder(OrderType.BUY, "1", "9800");
+    placeFlowOrder(OrderType.SELL, "1", "10100");
+
+    final MarketOrderBook orderBook = matchingEngine.getOrderBook(MARKET_ID, 1);
+    assertEquals(1, orderBook.getBuyOrders().size());
+    assertEquals(0, orderBook.getBuyOrders().get(0).getPrice().compareTo(bd("9900")));
+    assertEquals(0, orderBook.getBuyOrders().get(0).getQuantity().compareTo(bd("3")));
+    assertEquals(1, orderBook.getSellOrders().size());
+    assertEquals(2, matchingEngine.getOrderBook(MARKET_ID, 0).getBuyOrders().size());
+  }
+
+  @Test
+  public void testRestingBotOrderIsFilledByTheOrderFlow() throws Exception {
+    matchingEngine.setFees(BigDecimal.ZERO, bd("0.01"));
+    final String orderId =
+        matchingEngine.placeOrder(BOT_ACCOUNT, MARKET_ID, OrderType.SELL, bd("2"), bd("10000"));
+    assertEquals(
+        0, matchingEngine.getBalanceInfo().getBalancesOnHold().get("BTC").compareTo(bd("2")));
+
+    placeFlowOrder(OrderType.BUY, "2", "10500");
+
+    assertTrue(matchingEngine.getOpenOrders(BOT_ACCOUNT, MARKET_ID).isEmpty());
+    assertFalse(matchingEngine.cancelOrder(BOT_ACCOUNT, orderId));
+    final BalanceInfo balanceInfo = matchingEngine.getBalanceInfo();
+    assertEquals(0, balanceInfo.getBalancesAvailable().get("BTC").compareTo(bd("8")));
+    assertEquals(0, balanceInfo.getBalancesOnHold().get("BTC").compareTo(BigDecimal.ZERO));
+    assertEquals(0, balanceInfo.getBalancesAvailable().get("USD").compareTo(bd("119800")));
+  }
+
+  @Test
+  public void testBuyFeeIsReservedAndCharged() throws Exception {
+    matchingEngine.setFees(bd("0.01"), BigDecimal.ZERO);
+    matchingEngine.placeOrder(BOT_ACCOUNT, MARKET_ID, OrderType.BUY, bd("1"), bd("10000"));
+    assertEquals(
+        0, matchingEngine.getBalanceInfo().getBalancesOnHold().get("USD").compareTo(bd("10100")));
+
+    placeFlowOrder(OrderType.SELL, "1", "10000");
+
+    final BalanceInfo balanceInfo = matchingEngine.getBalanceInfo();
+    assertEquals(0, balanceInfo.getBalancesAvailable().get("USD").compareTo(bd("89900")));
+    assertEquals(0, balanceInfo.getBalancesOnHold().get("USD").compareTo(BigDecimal.ZERO));
+  }
+
+  @Test
+  public void testCancelReleasesTheReservedFunds() throws Exception {
+    final String orderId =
+        matchingEngine.placeOrder(BOT_ACCOUNT, MARKET_ID, OrderType.BUY, bd("1"), bd("9000"));
+    assertEquals(1, matchingEngine.getOpenOrders(BOT_ACCOUNT, MARKET_ID).size());
+
+    assertFalse(matchingEngine.cancelOrder(ORDER_FLOW_ACCOUNT, orderId));
+    assertTrue(matchingEngine.cancelOrder(BOT_ACCOUNT, orderId));
+    assertFalse(matchingEngine.cancelOrder(BOT_ACCOUNT, orderId));
+    assertFalse(matchingEngine.cancelOrder(BOT_ACCOUNT, "not-an-id"));
+
+    assertTrue(matchingEngine.getOpenOrders(BOT_ACCOUNT, MARKET_ID).isEmpty());
+    assertEquals(0, matchingEngine.getRestingOrderCount());
+    final BalanceInfo balanceInfo = matchingEngine.getBalanceInfo();
+    assertEquals(0, balanceInfo.getBalancesAvailable().get("USD").compareTo(bd("100000")));
+    assertEquals(0, balanceInfo.getBalancesOnHold().get("USD").compareTo(BigDecimal.ZERO));
+  }
+
+  @Test(expected = TradingApiException.class)
+  public void testBotCannotSpendMoreThanItHas() throws Exception {
+    matchingEngine.placeOrder(BOT_ACCOUNT, MARKET_ID, OrderType.SELL, bd("10.1"), bd("10000"));
+  }
+
+  @Test(expected = TradingApiException.class)
+  public void testOrderForUnknownMarketIsRejected() throws Exception {
+    matchingEngine.placeOrder(BOT_ACCOUNT, "ethusd", OrderType.BUY, bd("1"), bd("300"));
+  }
+
+  @Test(expected = TradingApiException.class)
+  public void testOrderWithZeroQuantityIsRejected() throws Exception {
+    matchingEngine.placeOrder(BOT_ACCOUNT, MARKET_ID, OrderType.BUY, bd("0"), bd("10000"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadMarketConfigIsRejected() {
+    matchingEngine.addMarkets("ethusd=ETH-USD@300");
+  }
+
+  @Test
+  public void testTickerIsBuiltFromTheTrades() throws Exception {
+    Ticker ticker = matchingEngine.getTicker(MARKET_ID);
+    assertEquals(0, ticker.getLast().compareTo(bd("10000")));
+    assertNull(ticker.getBid());
+
+    placeFlowOrder(OrderType.SELL, "1", "10000");
+    placeFlowOrder(OrderType.SELL, "1", "10200");
+    placeFlowOrder(OrderType.BUY, "2", "10200");
+    placeFlowOrder(OrderType.BUY, "1", "9900");
+
+    ticker = matchingEngine.getTicker(MARKET_ID);
+    assertEquals(0, ticker.getLast().compareTo(bd("10200")));
+    assertEquals(0, ticker.getLow().compareTo(bd("10000")));
+    assertEquals(0, ticker.getHigh().compareTo(bd("10200")));
+    assertEquals(0, ticker.getVolume().compareTo(bd("2")));
+    assertEquals(0, ticker.getVwap().compareTo(bd("10100")));
+    assertEquals(0, ticker.getBid().compareTo(bd("9900")));
+    assertNull(ticker.getAsk());
+    assertEquals(Long.valueOf(NOW), ticker.getTimestamp());
+  }
+
+  private String placeFlowOrder(OrderType side, String quantity, String price)
+      throws TradingApiException {
+    return matchingEngine.placeOrder(ORDER_FLOW_ACCOUNT, MARKET_ID, side, bd(quantity), bd(price));
+  }
+
+  private static BigDecimal bd(String value) {
+    return new BigDecimal(value);
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OpenOrder;
+import com.gazbert.bxbot.trading.api.OrderRequest;
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Simulated Order Flow behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestSimulatedOrderFlow {
+
+  private static final String MARKET_ID = "btcusd";
+
+  private SimulatedMatchingEngine matchingEngine;
+
+  @Before
+  public void setUp() {
+    matchingEngine = new SimulatedMatchingEngine();
+    matchingEngine.addMarkets(MARKET_ID + "=BTC/USD@10000, ethusd=ETH/USD@300");
+  }
+
+  @Test
+  public void testSyntheticFlowBuildsATwoSidedBookAroundTheStartPrice() throws Exception {
+    final SimulatedOrderFlow orderFlow = new SimulatedOrderFlow(matchingEngine, new Random(42));
+    orderFlow.step(1000);
+
+    assertEquals(1000, orderFlow.getOrdersSent());
+    final MarketOrderBook orderBook = matchingEngine.getOrderBook(MARKET_ID, 0);
+    assertFalse(orderBook.getBuyOrders().isEmpty());
+    assertFalse(orderBook.getSellOrders().isEmpty());
+    final BigDecimal bestBid = orderBook.getBuyOrders().get(0).getPrice();
+    final BigDecimal bestAsk = orderBook.getSellOrders().get(0).getPrice();
+    assertTrue(bestBid.compareTo(bestAsk) < 0);
+    assertTrue(bestBid.compareTo(new BigDecimal("9000")) > 0);
+    assertTrue(bestAsk.compareTo(new BigDecimal("11000")) < 0);
+  }
+
+  @Test
+  public void testRestingOrdersAreCappedPerMarket() throws Exception {
+    final SimulatedOrderFlow orderFlow = new SimulatedOrderFlow(matchingEngine, new Random(1));
+    orderFlow.step(10 * SimulatedOrderFlow.MAX_RESTING_ORDERS_PER_MARKET);
+
+    final List<OpenOrder> openOrders =
+        matchingEngine.getOpenOrders(SimulatedMatchingEngine.ORDER_FLOW_ACCOUNT, MARKET_ID);
+    assertTrue(openOrders.size() <= SimulatedOrderFlow.MAX_RESTING_ORDERS_PER_MARKET);
+    assertTrue(
+        matchingEngine.getRestingOrderCount()
+            <= 2 * SimulatedOrderFlow.MAX_RESTING_ORDERS_PER_MARKET);
+  }
+
+  @Test
+  public void testSeededFlowIsRepeatable() throws Exception {
+    final SimulatedMatchingEngine otherEngine = new SimulatedMatchingEngine();
+    otherEngine.addMarkets(MARKET_ID + "=BTC/USD@10000, ethusd=ETH/USD@300");
+
+    new SimulatedOrderFlow(matchingEngine, new Random(7)).step(500);
+    new SimulatedOrderFlow(otherEngine, new Random(7)).step(500);
+
+    assertEquals(
+        0, matchingEngine.getLastPrice(MARKET_ID).compareTo(otherEngine.getLastPrice(MARKET_ID)));
+    assertEquals(
+        matchingEngine.getOrderBook(MARKET_ID, 0).toString(),
+        otherEngine.getOrderBook(MARKET_ID, 0).toString());
+  }
+
+  @Test
+  public void testReplayedOrdersAreSentInOrderAndLooped() throws Exception {
+    final Path file = Files.createTempFile("bxbot-orders", ".csv");
+    try {
+      Files.write(
+          file,
+          Arrays.asList(
+              "# market,side,price,quantity", "btcusd,SELL,10010,1", "", "btcusd,buy,10020,0.25"),
+          StandardCharsets.UTF_8);
+      final List<OrderRequest> orders = SimulatedOrderFlow.readOrders(file);
+      assertEquals(2, orders.size());
+      assertEquals(OrderType.BUY, orders.get(1).getOrderType());
+      assertEquals(0, orders.get(1).getQuantity().compareTo(new BigDecimal("0.25")));
+
+      final SimulatedOrderFlow orderFlow =
+          new SimulatedOrderFlow(matchingEngine, orders, new Random());
+      orderFlow.step(3);
+
+      assertEquals(0, matchingEngine.getLastPrice(MARKET_ID).compareTo(new BigDecimal("10010")));
+      final List<OpenOrder> openOrders =
+          matchingEngine.getOpenOrders(SimulatedMatchingEngine.ORDER_FLOW_ACCOUNT, MARKET_ID);
+      assertEquals(2, openOrders.size());
+      assertEquals(0, openOrders.get(0).getQuantity().compareTo(new BigDecimal("0.75")));
+      assertEquals(0, openOrders.get(1).getQuantity().compareTo(BigDecimal.ONE));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadReplayedOrderIsRejected() throws Exception {
+    final Path file = Files.createTempFile("bxbot-orders", ".csv");
+    try {
+      Files.write(file, Arrays.asList("btcusd,SELL,10010"), StandardCharsets.UTF_8);
+      SimulatedOrderFlow.readOrders(file);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testBackgroundFlowSendsOrdersUntilClosed() throws Exception {
+    final SimulatedOrderFlow orderFlow = new SimulatedOrderFlow(matchingEngine, new Random());
+    orderFlow.start(1000);
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (orderFlow.getOrdersSent() < 100 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    orderFlow.close();
+    assertTrue(orderFlow.getOrdersSent() >= 100);
+
+    final long ordersSent = orderFlow.getOrdersSent();
+    Thread.sleep(50);
+    assertEquals(ordersSent, orderFlow.getOrdersSent());
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges.trading.api.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.math.BigDecimal;
+import org.junit.Test;
+
+/**
+ * Tests the Market Trade impl behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestMarketTradeImpl {
+
+  private static final String ID = "84739532";
+  private static final BigDecimal PRICE = new BigDecimal("671.91");
+  private static final BigDecimal QUANTITY = new BigDecimal("0.01345453");
+  private static final Long TIMESTAMP = 1475920943L;
+
+  @Test
+  public void testMarketTradeIsInitialisedAsExpected() {
+    final MarketTradeImpl marketTrade =
+        new MarketTradeImpl(ID, OrderType.SELL, PRICE, QUANTITY, TIMESTAMP);
+
+    assertEquals(ID, marketTrade.getId());
+    assertEquals(OrderType.SELL, marketTrade.getType());
+    assertEquals(PRICE, marketTrade.getPrice());
+    assertEquals(QUANTITY, marketTrade.getQuantity());
+    assertEquals(TIMESTAMP, marketTrade.getTimestamp());
+  }
+
+  @Test
+  public void testSettersWorkAsExpected() {
+    final MarketTradeImpl marketTrade = new MarketTradeImpl(null, null, null, null, null);
+    assertNull(marketTrade.getId());
+    assertNull(marketTrade.getType());
+    assertNull(marketTrade.getPrice());
+    assertNull(marketTrade.getQuantity());
+    assertNull(marketTrade.getTimestamp());
+
+    marketTrade.setId(ID);
+    assertEquals(ID, marketTrade.getId());
+
+    marketTrade.setType(OrderType.BUY);
+    assertEquals(OrderType.BUY, marketTrade.getType());
+
+    marketTrade.setPrice(PRICE);
+    assertEquals(PRICE, marketTrade.getPrice());
+
+    marketTrade.setQuantity(QUANTITY);
+    assertEquals(QUANTITY, marketTrade.getQuantity());
+
+    marketTrade.setTimestamp(TIMESTAMP);
+    assertEquals(TIMESTAMP, marketTrade.getTimestamp());
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.exchanges.trading.api.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
+import com.gazbert.bxbot.trading.api.OrderType;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Price Level Order Book behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestPriceLevelOrderBook {
+
+  private static final String MARKET_ID = "BTC_USD";
+
+  private PriceLevelOrderBook orderBook;
+
+  @Before
+  public void setUp() {
+    orderBook = new PriceLevelOrderBook(MARKET_ID);
+  }
+
+  @Test
+  public void testPriceLevelsAreSortedBestFirst() {
+    orderBook.update(OrderType.BUY, new BigDecimal("99"), new BigDecimal("1"));
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), new BigDecimal("2"));
+    orderBook.update(OrderType.BUY, new BigDecimal("98.5"), new BigDecimal("3"));
+    orderBook.update(OrderType.SELL, new BigDecimal("102"), new BigDecimal("4"));
+    orderBook.update(OrderType.SELL, new BigDecimal("101"), new BigDecimal("5"));
+
+    assertEquals(3, orderBook.getDepth(OrderType.BUY));
+    assertEquals(2, orderBook.getDepth(OrderType.SELL));
+    assertEquals(0, orderBook.getBestBid().compareTo(new BigDecimal("100")));
+    assertEquals(0, orderBook.getBestAsk().compareTo(new BigDecimal("101")));
+    assertEquals(0, orderBook.getPrice(OrderType.BUY, 2).compareTo(new BigDecimal("98.5")));
+    assertEquals(0, orderBook.getQuantity(OrderType.BUY, 2).compareTo(new BigDecimal("3")));
+    assertEquals(0, orderBook.getPrice(OrderType.SELL, 1).compareTo(new BigDecimal("102")));
+    assertNull(orderBook.getPrice(OrderType.SELL, 2));
+    assertNull(orderBook.getQuantity(OrderType.SELL, 2));
+  }
+
+  @Test
+  public void testEmptyBookHasNoBestPrices() {
+    assertNull(orderBook.getBestBid());
+    assertNull(orderBook.getBestAsk());
+    assertEquals(0, orderBook.getDepth(OrderType.BUY));
+    assertEquals(0, orderBook.getCumulativeQuantity(OrderType.BUY, 10).signum());
+  }
+
+  @Test
+  public void testUpdateReplacesQuantityAndZeroQuantityRemovesLevel() {
+    orderBook.update(OrderType.SELL, new BigDecimal("101.0"), new BigDecimal("1"));
+    orderBook.update(OrderType.SELL, new BigDecimal("102"), new BigDecimal("1"));
+
+    // prices are compared by value
+    orderBook.update(OrderType.SELL, new BigDecimal("101.00"), new BigDecimal("7"));
+    assertEquals(2, orderBook.getDepth(OrderType.SELL));
+    assertEquals(0, orderBook.getQuantity(OrderType.SELL, 0).compareTo(new BigDecimal("7")));
+
+    orderBook.update(OrderType.SELL, new BigDecimal("101"), BigDecimal.ZERO);
+    assertEquals(1, orderBook.getDepth(OrderType.SELL));
+    assertEquals(0, orderBook.getBestAsk().compareTo(new BigDecimal("102")));
+
+    // removing a level that is not there does nothing
+    orderBook.update(OrderType.SELL, new BigDecimal("150"), BigDecimal.ZERO);
+    assertEquals(1, orderBook.getDepth(OrderType.SELL));
+  }
+
+  @Test
+  public void testScaledUpdatesUseTheBookScale() {
+    final PriceLevelOrderBook scaledOrderBook = new PriceLevelOrderBook(MARKET_ID, 2, 4);
+    scaledOrderBook.update(OrderType.BUY, 1234567L, 15000L);
+
+    assertEquals(new BigDecimal("12345.67"), scaledOrderBook.getBestBid());
+    assertEquals(new BigDecimal("1.5000"), scaledOrderBook.getQuantity(OrderType.BUY, 0));
+  }
+
+  @Test
+  public void testPriceWithMoreDecimalPlacesThanScaleIsRejected() {
+    try {
+      new PriceLevelOrderBook(MARKET_ID, 2, 8)
+          .update(OrderType.BUY, new BigDecimal("100.001"), BigDecimal.ONE);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals(
+          "100.001 has more decimal places than the order book stores: 2."
+              + " Create the order book with a bigger scale.",
+          e.getMessage());
+    }
+  }
+
+  @Test
+  public void testQuantityWithMoreDecimalPlacesThanDefaultScaleIsRejected() {
+    final PriceLevelOrderBook orderBook = new PriceLevelOrderBook(MARKET_ID);
+    try {
+      orderBook.add(OrderType.SELL, new BigDecimal("100.5"), new BigDecimal("0.123456789"));
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals(0, orderBook.getDepth(OrderType.SELL));
+    }
+  }
+
+  @Test
+  public void testTrailingZerosBeyondScaleAreAccepted() {
+    final PriceLevelOrderBook orderBook = new PriceLevelOrderBook(MARKET_ID);
+    orderBook.update(
+        OrderType.BUY, new BigDecimal("100.0000000000"), new BigDecimal("1.5000000000"));
+    assertEquals(0, orderBook.getBestBid().compareTo(new BigDecimal("100")));
+  }
+
+  @Test
+  public void testSnapshotReplacesAllLevelsAndAddsUpOrdersAtSamePrice() {
+    orderBook.update(OrderType.BUY, new BigDecimal("50"), new BigDecimal("1"));
+
+    final List<MarketOrder> buyOrders =
+        Arrays.asList(
+            createMarketOrder(OrderType.BUY, "100", "1"),
+            createMarketOrder(OrderType.BUY, "100.0", "0.5"),
+            createMarketOrder(OrderType.BUY, "99", "2"));
+    final List<MarketOrder> sellOrders =
+        Collections.singletonList(createMarketOrder(OrderType.SELL, "101", "3"));
+    orderBook.replace(new MarketOrderBookImpl(MARKET_ID, sellOrders, buyOrders));
+
+    assertEquals(2, orderBook.getDepth(OrderType.BUY));
+    assertEquals(0, orderBook.getBestBid().compareTo(new BigDecimal("100")));
+    assertEquals(0, orderBook.getQuantity(OrderType.BUY, 0).compareTo(new BigDecimal("1.5")));
+    assertEquals(0, orderBook.getBestAsk().compareTo(new BigDecimal("101")));
+  }
+
+  @Test
+  public void testTruncateDropsWorstLevels() {
+    for (int i = 0; i < 5; i++) {
+      orderBook.update(OrderType.BUY, new BigDecimal(100 - i), BigDecimal.ONE);
+      orderBook.update(OrderType.SELL, new BigDecimal(101 + i), BigDecimal.ONE);
+    }
+
+    orderBook.truncate(2);
+
+    assertEquals(2, orderBook.getDepth(OrderType.BUY));
+    assertEquals(2, orderBook.getDepth(OrderType.SELL));
+    assertEquals(0, orderBook.getPrice(OrderType.BUY, 1).compareTo(new BigDecimal("99")));
+    assertEquals(0, orderBook.getPrice(OrderType.SELL, 1).compareTo(new BigDecimal("102")));
+  }
+
+  @Test
+  public void testCumulativeQuantityAddsUpBestLevels() {
+    orderBook.update(OrderType.SELL, new BigDecimal("101"), new BigDecimal("1.5"));
+    orderBook.update(OrderType.SELL, new BigDecimal("102"), new BigDecimal("2"));
+    orderBook.update(OrderType.SELL, new BigDecimal("103"), new BigDecimal("4"));
+
+    assertEquals(
+        0, orderBook.getCumulativeQuantity(OrderType.SELL, 2).compareTo(new BigDecimal("3.5")));
+    assertEquals(
+        0, orderBook.getCumulativeQuantity(OrderType.SELL, 10).compareTo(new BigDecimal("7.5")));
+  }
+
+  @Test
+  public void testVolumeWeightedAveragePriceWalksTheOtherSideOfTheBook() {
+    orderBook.update(OrderType.SELL, new BigDecimal("101"), new BigDecimal("1"));
+    orderBook.update(OrderType.SELL, new BigDecimal("102"), new BigDecimal("2"));
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), new BigDecimal("1"));
+    orderBook.update(OrderType.BUY, new BigDecimal("99"), new BigDecimal("1"));
+
+    assertEquals(
+        0,
+        orderBook
+            .getVolumeWeightedAveragePrice(OrderType.BUY, new BigDecimal("0.5"))
+            .compareTo(new BigDecimal("101")));
+    assertEquals(
+        0,
+        orderBook
+            .getVolumeWeightedAveragePrice(OrderType.BUY, new BigDecimal("2"))
+            .compareTo(new BigDecimal("101.5")));
+    assertEquals(
+        0,
+        orderBook
+            .getVolumeWeightedAveragePrice(OrderType.SELL, new BigDecimal("2"))
+            .compareTo(new BigDecimal("99.5")));
+
+    // not enough liquidity
+    assertNull(orderBook.getVolumeWeightedAveragePrice(OrderType.BUY, new BigDecimal("3.1")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testVolumeWeightedAveragePriceNeedsPositiveQuantity() {
+    orderBook.getVolumeWeightedAveragePrice(OrderType.BUY, BigDecimal.ZERO);
+  }
+
+  @Test
+  public void testCopyIsNotChangedByLaterUpdates() {
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), new BigDecimal("1"));
+
+    final PriceLevelOrderBook copy = orderBook.copy();
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), BigDecimal.ZERO);
+    copy.update(OrderType.BUY, new BigDecimal("99"), new BigDecimal("1"));
+
+    assertEquals(0, orderBook.getDepth(OrderType.BUY));
+    assertEquals(2, copy.getDepth(OrderType.BUY));
+    assertEquals(0, copy.getBestBid().compareTo(new BigDecimal("100")));
+  }
+
+  @Test
+  public void testMarketOrderBookViewReadsThePriceLevels() {
+    orderBook.update(OrderType.BUY, new BigDecimal("100"), new BigDecimal("2"));
+    orderBook.update(OrderType.SELL, new BigDecimal("101"), new BigDecimal("3"));
+
+    final MarketOrderBook marketOrderBook = orderBook.asMarketOrderBook();
+    assertEquals(MARKET_ID, marketOrderBook.getMarketId());
+    assertEquals(1, marketOrderBook.getBuyOrders().size());
+
+    final MarketOrder sellOrder = marketOrderBook.getSellOrders().get(0);
+    assertSame(OrderType.SELL, sellOrder.getType());
+    assertEquals(0, sellOrder.getPrice().compareTo(new BigDecimal("101")));
+    assertEquals(0, sellOrder.getQuantity().compareTo(new BigDecimal("3")));
+    assertEquals(0, sellOrder.getTotal().compareTo(new BigDecimal("303")));
+    assertNotSame(sellOrder, marketOrderBook.getSellOrders().get(0));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testMarketOrderBookViewIsReadOnly() {
+    orderBook
+        .asMarketOrderBook()
+        .getBuyOrders()
+        .add(createMarketOrder(OrderType.BUY, "100", "1"));
+  }
+
+  @Test
+  public void testDeepBookStaysSortedWhenLevelsArriveInAnyOrder() {
+    final List<Integer> prices = new ArrayList<>();
+    for (int i = 1; i <= 1000; i++) {
+      prices.add(i);
+    }
+    Collections.shuffle(prices, new Random(42));
+    for (final int price : prices) {
+      orderBook.update(OrderType.BUY, new BigDecimal(price), BigDecimal.ONE);
+      orderBook.update(OrderType.SELL, new BigDecimal(price + 1000), BigDecimal.ONE);
+    }
+
+    final List<MarketOrder> buyOrders = orderBook.asMarketOrderBook().getBuyOrders();
+    final List<MarketOrder> sellOrders = orderBook.asMarketOrderBook().getSellOrders();
+    for (int level = 0; level < 1000; level++) {
+      assertEquals(0, buyOrders.get(level).getPrice().compareTo(new BigDecimal(1000 - level)));
+      assertEquals(0, sellOrders.get(level).getPrice().compareTo(new BigDecimal(1001 + level)));
+    }
+  }
+
+  // --------------------------------------------------------------------------
+  // Util methods
+  // --------------------------------------------------------------------------
+
+  private static MarketOrder createMarketOrder(OrderType type, String price, String quantity) {
+    final BigDecimal orderPrice = new BigDecimal(price);
+    final BigDecimal orderQuantity = new BigDecimal(quantity);
+    return new MarketOrderImpl(type, orderPrice, orderQuantity, orderPrice.multiply(orderQuantity));
+  }
+}
@@ -29,15 +29,18 @@ import java.util.List;
 /**
  * The Market configuration repository.
  *
+ * <p>The same market id can be configured once per exchange, so a Market config is identified by
+ * its id and exchange. A null exchange is the main exchange in the exchange config.
+ *
  * @author gazbert
  */
 public interface MarketConfigRepository {
 
   List<MarketConfig> findAll();
 
-  MarketConfig findById(String id);
+  MarketConfig findById(String id, String exchange);
 
   MarketConfig save(MarketConfig config);
 
-  MarketConfig delete(String id);
+  MarketConfig delete(String id, String exchange);
 }
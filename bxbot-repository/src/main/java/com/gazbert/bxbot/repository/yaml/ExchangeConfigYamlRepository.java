@@ -29,6 +29,8 @@ import com.gazbert.bxbot.datastore.yaml.ConfigurationManager;
 import com.gazbert.bxbot.datastore.yaml.exchange.ExchangeType;
 import com.gazbert.bxbot.domain.exchange.ExchangeConfig;
 import com.gazbert.bxbot.repository.ExchangeConfigRepository;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Repository;
@@ -52,11 +54,28 @@ public class ExchangeConfigYamlRepository implements ExchangeConfigRepository {
         .getExchange();
   }
 
+  @Override
+  public List<ExchangeConfig> findAll() {
+    LOG.info(() -> "Fetching all ExchangeConfig...");
+    final ExchangeType exchangeType =
+        ConfigurationManager.loadConfig(ExchangeType.class, EXCHANGE_CONFIG_YAML_FILENAME);
+    final List<ExchangeConfig> exchangeConfigs = new ArrayList<>();
+    exchangeConfigs.add(exchangeType.getExchange());
+    if (exchangeType.getAdditionalExchanges() != null) {
+      exchangeConfigs.addAll(exchangeType.getAdditionalExchanges());
+    }
+    return exchangeConfigs;
+  }
+
+  /*
+   * Only the main exchange is updated - the additional exchanges are kept as they are.
+   */
   @Override
   public ExchangeConfig save(ExchangeConfig config) {
     LOG.info(() -> "About to save ExchangeConfig: " + config);
 
-    final ExchangeType exchangeType = new ExchangeType();
+    final ExchangeType exchangeType =
+        ConfigurationManager.loadConfig(ExchangeType.class, EXCHANGE_CONFIG_YAML_FILENAME);
     exchangeType.setExchange(config);
     ConfigurationManager.saveConfig(
         ExchangeType.class, exchangeType, EXCHANGE_CONFIG_YAML_FILENAME);
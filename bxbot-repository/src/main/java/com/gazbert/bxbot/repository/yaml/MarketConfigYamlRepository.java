@@ -23,14 +23,17 @@
 
 package com.gazbert.bxbot.repository.yaml;
 
+import static com.gazbert.bxbot.datastore.yaml.FileLocations.EXCHANGE_CONFIG_YAML_FILENAME;
 import static com.gazbert.bxbot.datastore.yaml.FileLocations.MARKETS_CONFIG_YAML_FILENAME;
 
 import com.gazbert.bxbot.datastore.yaml.ConfigurationManager;
+import com.gazbert.bxbot.datastore.yaml.exchange.ExchangeType;
 import com.gazbert.bxbot.datastore.yaml.market.MarketsType;
 import com.gazbert.bxbot.domain.market.MarketConfig;
 import com.gazbert.bxbot.repository.MarketConfigRepository;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
@@ -58,15 +61,15 @@ public class MarketConfigYamlRepository implements MarketConfigRepository {
   }
 
   @Override
-  public MarketConfig findById(String id) {
-    LOG.info(() -> "Fetching Market config for id: " + id);
+  public MarketConfig findById(String id, String exchange) {
+    LOG.info(() -> "Fetching Market config for id: " + id + " exchange: " + exchange);
 
     final MarketsType marketsType =
         ConfigurationManager.loadConfig(MarketsType.class, MARKETS_CONFIG_YAML_FILENAME);
 
     return adaptInternalToExternalConfig(
         marketsType.getMarkets().stream()
-            .filter(item -> item.getId().equals(id))
+            .filter(item -> isMarket(item, id, exchange))
             .distinct()
             .collect(Collectors.toList()));
   }
@@ -78,7 +81,7 @@ public class MarketConfigYamlRepository implements MarketConfigRepository {
 
     final List<MarketConfig> marketConfigs =
         marketsType.getMarkets().stream()
-            .filter(item -> item.getId().equals(config.getId()))
+            .filter(item -> isMarket(item, config.getId(), config.getExchange()))
             .distinct()
             .collect(Collectors.toList());
 
@@ -98,7 +101,9 @@ public class MarketConfigYamlRepository implements MarketConfigRepository {
 
         return adaptInternalToExternalConfig(
             updatedInternalMarketsConfig.getMarkets().stream()
-                .filter(item -> item.getId().equals(newMarketConfig.getId()))
+                .filter(
+                    item ->
+                        isMarket(item, newMarketConfig.getId(), newMarketConfig.getExchange()))
                 .distinct()
                 .collect(Collectors.toList()));
       } else {
@@ -114,7 +119,8 @@ public class MarketConfigYamlRepository implements MarketConfigRepository {
 
       if (!marketConfigs.isEmpty()) {
 
-        marketsType.getMarkets().remove(marketConfigs.get(0)); // will only be 1 unique strat
+        // will only be 1 market with this id on this exchange
+        marketsType.getMarkets().remove(marketConfigs.get(0));
         marketsType.getMarkets().add(config);
         ConfigurationManager.saveConfig(
             MarketsType.class, marketsType, MARKETS_CONFIG_YAML_FILENAME);
@@ -124,13 +130,13 @@ public class MarketConfigYamlRepository implements MarketConfigRepository {
 
         return adaptInternalToExternalConfig(
             updatedMarketsType.getMarkets().stream()
-                .filter(item -> item.getId().equals(config.getId()))
+                .filter(item -> isMarket(item, config.getId(), config.getExchange()))
                 .distinct()
                 .collect(Collectors.toList()));
       } else {
         LOG.warn(
             () ->
-                "Trying to update MarketConfig but id does not exist MarketConfig: "
+                "Trying to update MarketConfig but id does not exist on exchange. MarketConfig: "
                     + config
                     + EXISTING_MARKET_CONFIG
                     + marketsType.getMarkets());
@@ -140,28 +146,31 @@ public class MarketConfigYamlRepository implements MarketConfigRepository {
   }
 
   @Override
-  public MarketConfig delete(String id) {
-    LOG.info(() -> "Deleting Market config for id: " + id);
+  public MarketConfig delete(String id, String exchange) {
+    LOG.info(() -> "Deleting Market config for id: " + id + " exchange: " + exchange);
 
     final MarketsType marketsType =
         ConfigurationManager.loadConfig(MarketsType.class, MARKETS_CONFIG_YAML_FILENAME);
 
     final List<MarketConfig> marketConfigs =
         marketsType.getMarkets().stream()
-            .filter(item -> item.getId().equals(id))
+            .filter(item -> isMarket(item, id, exchange))
             .distinct()
             .collect(Collectors.toList());
 
     if (!marketConfigs.isEmpty()) {
-      final MarketConfig marketToRemove = marketConfigs.get(0); // will only be 1 unique strat
+      // will only be 1 market with this id on this exchange
+      final MarketConfig marketToRemove = marketConfigs.get(0);
       marketsType.getMarkets().remove(marketToRemove);
       ConfigurationManager.saveConfig(MarketsType.class, marketsType, MARKETS_CONFIG_YAML_FILENAME);
       return adaptInternalToExternalConfig(Collections.singletonList(marketToRemove));
     } else {
       LOG.warn(
           () ->
-              "Trying to delete MarketConfig but id does not exist. MarketConfig id: "
+              "Trying to delete MarketConfig but id does not exist on exchange. MarketConfig id: "
                   + id
+                  + " exchange: "
+                  + exchange
                   + EXISTING_MARKET_CONFIG
                   + marketsType.getMarkets());
       return null;
@@ -175,7 +184,7 @@ public class MarketConfigYamlRepository implements MarketConfigRepository {
   private static MarketConfig adaptInternalToExternalConfig(
       List<MarketConfig> internalMarketConfigItems) {
     if (!internalMarketConfigItems.isEmpty()) {
-      // Should only ever be 1 unique Market id
+      // Should only ever be 1 Market with the id on the exchange
       return internalMarketConfigItems.get(0);
     }
     return null;
@@ -185,6 +194,33 @@ public class MarketConfigYamlRepository implements MarketConfigRepository {
   // Util methods
   // --------------------------------------------------------------------------
 
+  /*
+   * A market is identified by its id and exchange; the same id can be configured on several
+   * exchanges. A null exchange is the main exchange, which can also be named explicitly, so the
+   * main exchange's name is only looked up when just one side is null.
+   */
+  private static boolean isMarket(MarketConfig market, String id, String exchange) {
+    if (!market.getId().equals(id)) {
+      return false;
+    }
+    if (Objects.equals(market.getExchange(), exchange)) {
+      return true;
+    }
+    if (market.getExchange() != null && exchange != null) {
+      return false;
+    }
+    final String mainExchange = getMainExchangeName();
+    return Objects.equals(
+        market.getExchange() == null ? mainExchange : market.getExchange(),
+        exchange == null ? mainExchange : exchange);
+  }
+
+  private static String getMainExchangeName() {
+    return ConfigurationManager.loadConfig(ExchangeType.class, EXCHANGE_CONFIG_YAML_FILENAME)
+        .getExchange()
+        .getName();
+  }
+
   private String generateUuid() {
     return UUID.randomUUID().toString();
   }
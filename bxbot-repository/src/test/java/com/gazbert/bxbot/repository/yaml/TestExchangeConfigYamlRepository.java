@@ -35,6 +35,7 @@ import com.gazbert.bxbot.domain.exchange.ExchangeConfig;
 import com.gazbert.bxbot.domain.exchange.NetworkConfig;
 import com.gazbert.bxbot.repository.ExchangeConfigRepository;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +65,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 public class TestExchangeConfigYamlRepository {
 
   private static final String EXCHANGE_NAME = "Bitstamp";
+  private static final String ADDITIONAL_EXCHANGE_NAME = "Kraken";
   private static final String EXCHANGE_ADAPTER = "com.gazbert.bxbot.exchanges.TestExchangeAdapter";
 
   private static final String API_KEY_CONFIG_ITEM_KEY = "api-key";
@@ -124,15 +126,60 @@ public class TestExchangeConfigYamlRepository {
     PowerMock.verifyAll();
   }
 
+  @Test
+  public void whenFindAllCalledThenReturnMainExchangeConfigFollowedByAdditionalExchanges() {
+    final ExchangeType exchangeType = someInternalExchangeConfig();
+    final ExchangeConfig additionalExchangeConfig = new ExchangeConfig();
+    additionalExchangeConfig.setName(ADDITIONAL_EXCHANGE_NAME);
+    additionalExchangeConfig.setAdapter(EXCHANGE_ADAPTER);
+    exchangeType.setAdditionalExchanges(Collections.singletonList(additionalExchangeConfig));
+
+    expect(
+            ConfigurationManager.loadConfig(
+                eq(ExchangeType.class), eq(EXCHANGE_CONFIG_YAML_FILENAME)))
+        .andReturn(exchangeType);
+
+    PowerMock.replayAll();
+
+    final ExchangeConfigRepository exchangeConfigRepository = new ExchangeConfigYamlRepository();
+    final List<ExchangeConfig> exchangeConfigs = exchangeConfigRepository.findAll();
+
+    assertThat(exchangeConfigs.size()).isEqualTo(2);
+    assertThat(exchangeConfigs.get(0).getName()).isEqualTo(EXCHANGE_NAME);
+    assertThat(exchangeConfigs.get(1).getName()).isEqualTo(ADDITIONAL_EXCHANGE_NAME);
+
+    PowerMock.verifyAll();
+  }
+
+  @Test
+  public void whenFindAllCalledWithNoAdditionalExchangesThenReturnMainExchangeConfig() {
+    expect(
+            ConfigurationManager.loadConfig(
+                eq(ExchangeType.class), eq(EXCHANGE_CONFIG_YAML_FILENAME)))
+        .andReturn(someInternalExchangeConfig());
+
+    PowerMock.replayAll();
+
+    final ExchangeConfigRepository exchangeConfigRepository = new ExchangeConfigYamlRepository();
+    final List<ExchangeConfig> exchangeConfigs = exchangeConfigRepository.findAll();
+
+    assertThat(exchangeConfigs.size()).isEqualTo(1);
+    assertThat(exchangeConfigs.get(0).getName()).isEqualTo(EXCHANGE_NAME);
+
+    PowerMock.verifyAll();
+  }
+
   @Test
   public void whenSaveCalledThenExpectRepositoryToSaveItAndReturnSavedExchangeConfig() {
     ConfigurationManager.saveConfig(
         eq(ExchangeType.class), anyObject(ExchangeType.class), eq(EXCHANGE_CONFIG_YAML_FILENAME));
 
+    // loaded to keep the additional exchanges, then again to return the saved config
     expect(
             ConfigurationManager.loadConfig(
                 eq(ExchangeType.class), eq(EXCHANGE_CONFIG_YAML_FILENAME)))
-        .andReturn(someInternalExchangeConfig());
+        .andReturn(someInternalExchangeConfig())
+        .times(2);
 
     PowerMock.replayAll();
 
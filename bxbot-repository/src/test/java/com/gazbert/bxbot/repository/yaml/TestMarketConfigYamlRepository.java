@@ -23,17 +23,23 @@
 
 package com.gazbert.bxbot.repository.yaml;
 
+import static com.gazbert.bxbot.datastore.yaml.FileLocations.EXCHANGE_CONFIG_YAML_FILENAME;
 import static com.gazbert.bxbot.datastore.yaml.FileLocations.MARKETS_CONFIG_YAML_FILENAME;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 
 import com.gazbert.bxbot.datastore.yaml.ConfigurationManager;
+import com.gazbert.bxbot.datastore.yaml.exchange.ExchangeType;
 import com.gazbert.bxbot.datastore.yaml.market.MarketsType;
+import com.gazbert.bxbot.domain.exchange.ExchangeConfig;
 import com.gazbert.bxbot.domain.market.MarketConfig;
 import com.gazbert.bxbot.repository.MarketConfigRepository;
 import java.util.List;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -78,15 +84,33 @@ public class TestMarketConfigYamlRepository {
   private static final boolean MARKET_2_IS_ENABLED = false;
   private static final String MARKET_2_TRADING_STRATEGY_ID = "scalper";
 
+  private static final String MAIN_EXCHANGE = "Bitstamp";
+  private static final String OTHER_EXCHANGE = "Kraken";
+  private static final String OTHER_EXCHANGE_MARKET_1_NAME = "XBT/USD";
+
   private static final String NEW_MARKET_NAME = "BTC/ETH";
   private static final String NEW_MARKET_BASE_CURRENCY = "BTC";
   private static final String NEW_MARKET_COUNTER_CURRENCY = "ETH";
   private static final boolean NEW_MARKET_IS_ENABLED = false;
   private static final String NEW_MARKET_TRADING_STRATEGY_ID = "macd-jobby";
 
+  /**
+   * Mocks the config manager. The main exchange config is only loaded when a null exchange has to
+   * be matched against a named one.
+   */
   @Before
   public void setup() {
     PowerMock.mockStatic(ConfigurationManager.class);
+
+    final ExchangeConfig mainExchange = new ExchangeConfig();
+    mainExchange.setName(MAIN_EXCHANGE);
+    final ExchangeType exchangeType = new ExchangeType();
+    exchangeType.setExchange(mainExchange);
+    expect(
+            ConfigurationManager.loadConfig(
+                eq(ExchangeType.class), eq(EXCHANGE_CONFIG_YAML_FILENAME)))
+        .andReturn(exchangeType)
+        .anyTimes();
   }
 
   @Test
@@ -128,7 +152,7 @@ public class TestMarketConfigYamlRepository {
     PowerMock.replayAll();
 
     final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
-    final MarketConfig marketConfig = marketConfigRepository.findById(MARKET_1_ID);
+    final MarketConfig marketConfig = marketConfigRepository.findById(MARKET_1_ID, null);
 
     assertThat(marketConfig.getId()).isEqualTo(MARKET_1_ID);
     assertThat(marketConfig.getName()).isEqualTo(MARKET_1_NAME);
@@ -148,7 +172,7 @@ public class TestMarketConfigYamlRepository {
     PowerMock.replayAll();
 
     final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
-    final MarketConfig marketConfig = marketConfigRepository.findById(UNKNOWN_MARKET_ID);
+    final MarketConfig marketConfig = marketConfigRepository.findById(UNKNOWN_MARKET_ID, null);
 
     assertThat(marketConfig).isNull();
     PowerMock.verifyAll();
@@ -237,7 +261,7 @@ public class TestMarketConfigYamlRepository {
     PowerMock.replayAll();
 
     final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
-    final MarketConfig marketConfig = marketConfigRepository.delete(MARKET_1_ID);
+    final MarketConfig marketConfig = marketConfigRepository.delete(MARKET_1_ID, null);
 
     assertThat(marketConfig.getId()).isEqualTo(MARKET_1_ID);
     assertThat(marketConfig.getName()).isEqualTo(MARKET_1_NAME);
@@ -257,16 +281,185 @@ public class TestMarketConfigYamlRepository {
     PowerMock.replayAll();
 
     final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
-    final MarketConfig marketConfig = marketConfigRepository.delete(UNKNOWN_MARKET_ID);
+    final MarketConfig marketConfig = marketConfigRepository.delete(UNKNOWN_MARKET_ID, null);
 
     assertThat(marketConfig).isNull();
     PowerMock.verifyAll();
   }
 
+  @Test
+  public void whenFindByIdCalledWithIdOnTwoExchangesThenReturnMarketConfigForExchange() {
+    expect(ConfigurationManager.loadConfig(eq(MarketsType.class), eq(MARKETS_CONFIG_YAML_FILENAME)))
+        .andReturn(allTheInternalMarketsConfigOnTwoExchanges())
+        .times(2);
+
+    PowerMock.replayAll();
+
+    final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
+
+    final MarketConfig otherExchangeMarket =
+        marketConfigRepository.findById(MARKET_1_ID, OTHER_EXCHANGE);
+    assertThat(otherExchangeMarket.getExchange()).isEqualTo(OTHER_EXCHANGE);
+    assertThat(otherExchangeMarket.getName()).isEqualTo(OTHER_EXCHANGE_MARKET_1_NAME);
+
+    final MarketConfig mainExchangeMarket = marketConfigRepository.findById(MARKET_1_ID, null);
+    assertThat(mainExchangeMarket.getExchange()).isNull();
+    assertThat(mainExchangeMarket.getName()).isEqualTo(MARKET_1_NAME);
+
+    PowerMock.verifyAll();
+  }
+
+  @Test
+  public void whenSaveCalledWithIdOnTwoExchangesThenOnlyUpdateMarketConfigForExchange() {
+    expect(ConfigurationManager.loadConfig(eq(MarketsType.class), eq(MARKETS_CONFIG_YAML_FILENAME)))
+        .andReturn(allTheInternalMarketsConfigOnTwoExchanges());
+
+    final Capture<MarketsType> savedMarkets = EasyMock.newCapture();
+    ConfigurationManager.saveConfig(
+        eq(MarketsType.class), capture(savedMarkets), eq(MARKETS_CONFIG_YAML_FILENAME));
+
+    expect(ConfigurationManager.loadConfig(eq(MarketsType.class), eq(MARKETS_CONFIG_YAML_FILENAME)))
+        .andReturn(allTheInternalMarketsConfigOnTwoExchanges());
+
+    PowerMock.replayAll();
+
+    final MarketConfig updatedMarket = someExternalMarketConfig();
+    updatedMarket.setExchange(OTHER_EXCHANGE);
+    updatedMarket.setEnabled(false);
+
+    final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
+    final MarketConfig marketConfig = marketConfigRepository.save(updatedMarket);
+    assertThat(marketConfig.getExchange()).isEqualTo(OTHER_EXCHANGE);
+
+    final List<MarketConfig> markets = savedMarkets.getValue().getMarkets();
+    assertThat(markets.size()).isEqualTo(3);
+    assertThat(markets.get(0).getExchange()).isNull();
+    assertThat(markets.get(0).isEnabled()).isEqualTo(MARKET_1_IS_ENABLED);
+    assertThat(markets.get(2).getExchange()).isEqualTo(OTHER_EXCHANGE);
+    assertThat(markets.get(2).isEnabled()).isFalse();
+
+    PowerMock.verifyAll();
+  }
+
+  @Test
+  public void whenDeleteCalledWithIdOnTwoExchangesThenOnlyDeleteMarketConfigForExchange() {
+    expect(ConfigurationManager.loadConfig(eq(MarketsType.class), eq(MARKETS_CONFIG_YAML_FILENAME)))
+        .andReturn(allTheInternalMarketsConfigOnTwoExchanges());
+
+    final Capture<MarketsType> savedMarkets = EasyMock.newCapture();
+    ConfigurationManager.saveConfig(
+        eq(MarketsType.class), capture(savedMarkets), eq(MARKETS_CONFIG_YAML_FILENAME));
+
+    PowerMock.replayAll();
+
+    final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
+    final MarketConfig marketConfig = marketConfigRepository.delete(MARKET_1_ID, OTHER_EXCHANGE);
+
+    assertThat(marketConfig.getExchange()).isEqualTo(OTHER_EXCHANGE);
+    assertThat(marketConfig.getName()).isEqualTo(OTHER_EXCHANGE_MARKET_1_NAME);
+
+    final List<MarketConfig> markets = savedMarkets.getValue().getMarkets();
+    assertThat(markets.size()).isEqualTo(2);
+    assertThat(markets.get(0).getId()).isEqualTo(MARKET_1_ID);
+    assertThat(markets.get(0).getExchange()).isNull();
+    assertThat(markets.get(1).getId()).isEqualTo(MARKET_2_ID);
+
+    PowerMock.verifyAll();
+  }
+
+  @Test
+  public void whenFindByIdCalledWithMainExchangeNameThenReturnMarketConfigWithNoExchange() {
+    expect(ConfigurationManager.loadConfig(eq(MarketsType.class), eq(MARKETS_CONFIG_YAML_FILENAME)))
+        .andReturn(allTheInternalMarketsConfigOnTwoExchanges());
+
+    PowerMock.replayAll();
+
+    final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
+    final MarketConfig marketConfig = marketConfigRepository.findById(MARKET_1_ID, MAIN_EXCHANGE);
+
+    assertThat(marketConfig.getExchange()).isNull();
+    assertThat(marketConfig.getName()).isEqualTo(MARKET_1_NAME);
+
+    PowerMock.verifyAll();
+  }
+
+  @Test
+  public void whenFindByIdCalledWithNoExchangeThenReturnMarketConfigNamingMainExchange() {
+    final MarketsType marketsType = allTheInternalMarketsConfigOnTwoExchanges();
+    marketsType.getMarkets().get(0).setExchange(MAIN_EXCHANGE);
+    expect(ConfigurationManager.loadConfig(eq(MarketsType.class), eq(MARKETS_CONFIG_YAML_FILENAME)))
+        .andReturn(marketsType);
+
+    PowerMock.replayAll();
+
+    final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
+    final MarketConfig marketConfig = marketConfigRepository.findById(MARKET_1_ID, null);
+
+    assertThat(marketConfig.getExchange()).isEqualTo(MAIN_EXCHANGE);
+    assertThat(marketConfig.getName()).isEqualTo(MARKET_1_NAME);
+
+    PowerMock.verifyAll();
+  }
+
+  @Test
+  public void whenDeleteCalledWithMainExchangeNameThenOnlyDeleteMarketConfigWithNoExchange() {
+    expect(ConfigurationManager.loadConfig(eq(MarketsType.class), eq(MARKETS_CONFIG_YAML_FILENAME)))
+        .andReturn(allTheInternalMarketsConfigOnTwoExchanges());
+
+    final Capture<MarketsType> savedMarkets = EasyMock.newCapture();
+    ConfigurationManager.saveConfig(
+        eq(MarketsType.class), capture(savedMarkets), eq(MARKETS_CONFIG_YAML_FILENAME));
+
+    PowerMock.replayAll();
+
+    final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
+    final MarketConfig marketConfig = marketConfigRepository.delete(MARKET_1_ID, MAIN_EXCHANGE);
+
+    assertThat(marketConfig.getExchange()).isNull();
+    assertThat(marketConfig.getName()).isEqualTo(MARKET_1_NAME);
+
+    final List<MarketConfig> markets = savedMarkets.getValue().getMarkets();
+    assertThat(markets.size()).isEqualTo(2);
+    assertThat(markets.get(0).getId()).isEqualTo(MARKET_2_ID);
+    assertThat(markets.get(1).getExchange()).isEqualTo(OTHER_EXCHANGE);
+
+    PowerMock.verifyAll();
+  }
+
+  @Test
+  public void whenDeleteCalledWithIdOnlyOnOtherExchangeThenReturnEmptyMarket() {
+    final MarketsType marketsType = allTheInternalMarketsConfig();
+    marketsType.getMarkets().get(0).setExchange(OTHER_EXCHANGE);
+    expect(ConfigurationManager.loadConfig(eq(MarketsType.class), eq(MARKETS_CONFIG_YAML_FILENAME)))
+        .andReturn(marketsType);
+
+    PowerMock.replayAll();
+
+    final MarketConfigRepository marketConfigRepository = new MarketConfigYamlRepository();
+    assertThat(marketConfigRepository.delete(MARKET_1_ID, null)).isNull();
+
+    PowerMock.verifyAll();
+  }
+
   // --------------------------------------------------------------------------
   // Private utils
   // --------------------------------------------------------------------------
 
+  private static MarketsType allTheInternalMarketsConfigOnTwoExchanges() {
+    final MarketConfig otherExchangeMarket = new MarketConfig();
+    otherExchangeMarket.setId(MARKET_1_ID);
+    otherExchangeMarket.setName(OTHER_EXCHANGE_MARKET_1_NAME);
+    otherExchangeMarket.setEnabled(MARKET_1_IS_ENABLED);
+    otherExchangeMarket.setBaseCurrency(MARKET_1_BASE_CURRENCY);
+    otherExchangeMarket.setCounterCurrency(MARKET_1_COUNTER_CURRENCY);
+    otherExchangeMarket.setTradingStrategyId(MARKET_1_TRADING_STRATEGY_ID);
+    otherExchangeMarket.setExchange(OTHER_EXCHANGE);
+
+    final MarketsType marketsType = allTheInternalMarketsConfig();
+    marketsType.getMarkets().add(otherExchangeMarket);
+    return marketsType;
+  }
+
   private static MarketsType allTheInternalMarketsConfig() {
     final MarketConfig marketConfig1 = new MarketConfig();
     marketConfig1.setId(MARKET_1_ID);
@@ -43,6 +43,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import springfox.documentation.annotations.ApiIgnore;
 
@@ -87,16 +88,20 @@ public class MarketConfigController {
   }
 
   /**
-   * Returns the Market configuration for a given id.
+   * Returns the Market configuration for a given id and exchange.
    *
    * @param principal the authenticated user.
    * @param marketId the id of the Market to fetch.
+   * @param exchange the name of the exchange the Market is traded on. Leave it out for the main
+   *     exchange.
    * @return the Market configuration.
    */
   @PreAuthorize("hasRole('USER')")
   @GetMapping(value = MARKETS_RESOURCE_PATH + "/{marketId}")
   public ResponseEntity<MarketConfig> getMarket(
-      @ApiIgnore Principal principal, @PathVariable String marketId) {
+      @ApiIgnore Principal principal,
+      @PathVariable String marketId,
+      @RequestParam(required = false) String exchange) {
 
     LOG.info(
         () ->
@@ -107,7 +112,7 @@ public class MarketConfigController {
                 + " - getMarket() - caller: "
                 + principal.getName());
 
-    final MarketConfig marketConfig = marketConfigService.getMarketConfig(marketId);
+    final MarketConfig marketConfig = marketConfigService.getMarketConfig(marketId, exchange);
     return marketConfig == null
         ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
         : buildResponseEntity(marketConfig, HttpStatus.OK);
@@ -176,17 +181,21 @@ public class MarketConfigController {
   }
 
   /**
-   * Deletes a Market configuration for a given id.
+   * Deletes a Market configuration for a given id and exchange.
    *
    * @param principal the authenticated user.
    * @param marketId the id of the Market configuration to delete.
+   * @param exchange the name of the exchange the Market is traded on. Leave it out for the main
+   *     exchange.
    * @return 204 'No Content' HTTP status code if delete successful, 404 'Not Found' HTTP status
    *     code if Market config not found.
    */
   @PreAuthorize("hasRole('ADMIN')")
   @DeleteMapping(value = MARKETS_RESOURCE_PATH + "/{marketId}")
   public ResponseEntity<MarketConfig> deleteMarket(
-      @ApiIgnore Principal principal, @PathVariable String marketId) {
+      @ApiIgnore Principal principal,
+      @PathVariable String marketId,
+      @RequestParam(required = false) String exchange) {
 
     LOG.info(
         () ->
@@ -197,7 +206,7 @@ public class MarketConfigController {
                 + " - deleteMarket() - caller: "
                 + principal.getName());
 
-    final MarketConfig deletedConfig = marketConfigService.deleteMarketConfig(marketId);
+    final MarketConfig deletedConfig = marketConfigService.deleteMarketConfig(marketId, exchange);
     return deletedConfig == null
         ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
         : new ResponseEntity<>(HttpStatus.NO_CONTENT);
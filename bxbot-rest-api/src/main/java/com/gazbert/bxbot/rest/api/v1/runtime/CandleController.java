@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.rest.api.v1.runtime;
+
+import static com.gazbert.bxbot.rest.api.v1.EndpointLocations.RUNTIME_ENDPOINT_BASE_URI;
+
+import com.gazbert.bxbot.services.runtime.CandleService;
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleInterval;
+import io.swagger.annotations.Api;
+import java.security.Principal;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import springfox.documentation.annotations.ApiIgnore;
+
+/**
+ * Controller for directing Candle requests.
+ *
+ * <p>The candles are read from the ones the Trading Engine keeps up to date as prices arrive; no
+ * request is sent to the exchange.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+@Api(tags = {"Candles"})
+@RestController
+@RequestMapping(RUNTIME_ENDPOINT_BASE_URI)
+public class CandleController {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final String CANDLES_RESOURCE_PATH = "/candles";
+  private static final String DEFAULT_INTERVAL = "1m";
+  private static final String DEFAULT_COUNT = "100";
+
+  private final CandleService candleService;
+
+  @Autowired
+  public CandleController(CandleService candleService) {
+    this.candleService = candleService;
+  }
+
+  /**
+   * Returns the latest candles for a market.
+   *
+   * @param principal the authenticated user making the request.
+   * @param exchange the name of the exchange the market is traded on.
+   * @param marketId the id of the market.
+   * @param interval the candle interval: 1s, 1m, 5m or 1h. Defaults to 1m.
+   * @param count the most candles to return. Defaults to 100.
+   * @return 200 'OK' HTTP status code and the candles, oldest first, in the body. 400 'Bad Request'
+   *     HTTP status code if the interval or count is not valid.
+   */
+  @PreAuthorize("hasRole('USER')")
+  @GetMapping(value = CANDLES_RESOURCE_PATH + "/{exchange}/{marketId}")
+  public ResponseEntity<List<Candle>> getCandles(
+      @ApiIgnore Principal principal,
+      @PathVariable String exchange,
+      @PathVariable String marketId,
+      @RequestParam(defaultValue = DEFAULT_INTERVAL) String interval,
+      @RequestParam(defaultValue = DEFAULT_COUNT) int count) {
+
+    LOG.info(
+        () ->
+            "GET "
+                + CANDLES_RESOURCE_PATH
+                + "/"
+                + exchange
+                + "/"
+                + marketId
+                + "?interval="
+                + interval
+                + "&count="
+                + count
+                + " - getCandles() - caller: "
+                + principal.getName());
+
+    final CandleInterval candleInterval;
+    try {
+      candleInterval = CandleInterval.fromStringValue(interval);
+    } catch (IllegalArgumentException e) {
+      LOG.warn(() -> "Unknown candle interval: " + interval);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+    if (count < 1) {
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    final List<Candle> candles =
+        candleService.getCandles(exchange, marketId, candleInterval, count);
+    LOG.info(() -> "Response: " + candles.size() + " candles");
+    return new ResponseEntity<>(candles, null, HttpStatus.OK);
+  }
+}
@@ -3,8 +3,8 @@
  *
  * <h2>BX-bot Runtime REST API (v1)</h2>
  *
- * <p>This is version 1 of the REST API for restarting the bot, querying its status, and viewing the
- * logfile.
+ * <p>This is version 1 of the REST API for restarting the bot, querying its status, viewing the
+ * logfile, and reading the market candles.
  *
  * @author gazbert
  * @since 1.0
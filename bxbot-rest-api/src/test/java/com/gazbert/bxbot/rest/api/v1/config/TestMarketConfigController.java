@@ -142,7 +142,7 @@ public class TestMarketConfigController extends AbstractConfigControllerTest {
 
   @Test
   public void testGetMarketConfigWithValidToken() throws Exception {
-    given(marketConfigService.getMarketConfig(MARKET_1_ID)).willReturn(someMarketConfig());
+    given(marketConfigService.getMarketConfig(MARKET_1_ID, null)).willReturn(someMarketConfig());
 
     mockMvc
         .perform(
@@ -158,7 +158,24 @@ public class TestMarketConfigController extends AbstractConfigControllerTest {
         .andExpect(jsonPath("$.enabled").value(MARKET_1_ENABLED))
         .andExpect(jsonPath("$.tradingStrategyId").value(MARKET_1_STRATEGY_ID));
 
-    verify(marketConfigService, times(1)).getMarketConfig(MARKET_1_ID);
+    verify(marketConfigService, times(1)).getMarketConfig(MARKET_1_ID, null);
+  }
+
+  @Test
+  public void testGetMarketConfigForExchangeWithValidToken() throws Exception {
+    given(marketConfigService.getMarketConfig(MARKET_1_ID, "Kraken"))
+        .willReturn(someMarketConfig());
+
+    mockMvc
+        .perform(
+            get(MARKETS_CONFIG_ENDPOINT_URI + MARKET_1_ID)
+                .param("exchange", "Kraken")
+                .header(
+                    "Authorization", "Bearer " + getJwt(VALID_USER_NAME, VALID_USER_PASSWORD)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.id").value(MARKET_1_ID));
+
+    verify(marketConfigService, times(1)).getMarketConfig(MARKET_1_ID, "Kraken");
   }
 
   @Test
@@ -180,7 +197,7 @@ public class TestMarketConfigController extends AbstractConfigControllerTest {
 
   @Test
   public void testGetMarketConfigByIdWhenNotRecognized() throws Exception {
-    given(marketConfigService.getMarketConfig(UNKNOWN_MARKET_ID)).willReturn(null);
+    given(marketConfigService.getMarketConfig(UNKNOWN_MARKET_ID, null)).willReturn(null);
 
     mockMvc
         .perform(
@@ -285,7 +302,7 @@ public class TestMarketConfigController extends AbstractConfigControllerTest {
 
   @Test
   public void testDeleteMarketConfigWithAdminTokenAuthorized() throws Exception {
-    given(marketConfigService.deleteMarketConfig(MARKET_1_ID)).willReturn(someMarketConfig());
+    given(marketConfigService.deleteMarketConfig(MARKET_1_ID, null)).willReturn(someMarketConfig());
 
     mockMvc
         .perform(
@@ -294,12 +311,12 @@ public class TestMarketConfigController extends AbstractConfigControllerTest {
                     "Authorization", "Bearer " + getJwt(VALID_ADMIN_NAME, VALID_USER_PASSWORD)))
         .andExpect(status().isNoContent());
 
-    verify(marketConfigService, times(1)).deleteMarketConfig(MARKET_1_ID);
+    verify(marketConfigService, times(1)).deleteMarketConfig(MARKET_1_ID, null);
   }
 
   @Test
   public void testDeleteMarketConfigWithUserTokenForbidden() throws Exception {
-    given(marketConfigService.deleteMarketConfig(MARKET_1_ID)).willReturn(someMarketConfig());
+    given(marketConfigService.deleteMarketConfig(MARKET_1_ID, null)).willReturn(someMarketConfig());
 
     mockMvc
         .perform(
@@ -308,7 +325,7 @@ public class TestMarketConfigController extends AbstractConfigControllerTest {
                     "Authorization", "Bearer " + getJwt(VALID_ADMIN_NAME, VALID_ADMIN_PASSWORD)))
         .andExpect(status().isNoContent());
 
-    verify(marketConfigService, times(1)).deleteMarketConfig(MARKET_1_ID);
+    verify(marketConfigService, times(1)).deleteMarketConfig(MARKET_1_ID, null);
   }
 
   @Test
@@ -331,7 +348,7 @@ public class TestMarketConfigController extends AbstractConfigControllerTest {
 
   @Test
   public void testDeleteMarketConfigWhenIdNotRecognized() throws Exception {
-    given(marketConfigService.deleteMarketConfig(UNKNOWN_MARKET_ID)).willReturn(null);
+    given(marketConfigService.deleteMarketConfig(UNKNOWN_MARKET_ID, null)).willReturn(null);
 
     mockMvc
         .perform(
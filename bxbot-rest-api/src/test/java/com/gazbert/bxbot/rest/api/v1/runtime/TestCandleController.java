@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.rest.api.v1.runtime;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.gazbert.bxbot.core.engine.TradingEngine;
+import com.gazbert.bxbot.core.mail.EmailAlerter;
+import com.gazbert.bxbot.services.runtime.CandleService;
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleInterval;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.actuate.logging.LogFileWebEndpoint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.context.restart.RestartEndpoint;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+/**
+ * Tests the Candle controller behaviour.
+ *
+ * @author gazbert
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class TestCandleController extends AbstractRuntimeControllerTest {
+
+  private static final String EXCHANGE_NAME = "Bitstamp";
+  private static final String MARKET_ID = "btcusd";
+  private static final String CANDLES_ENDPOINT_URI =
+      RUNTIME_ENDPOINT_BASE_URI + "/candles/" + EXCHANGE_NAME + "/" + MARKET_ID;
+
+  private static final Candle CANDLE_1 = new Candle(1560000000000L, 8000, 8010, 7995, 8005, 1.5);
+  private static final Candle CANDLE_2 = new Candle(1560000300000L, 8005, 8020, 8001, 8019, 0.25);
+
+  @MockBean private CandleService candleService;
+
+  // Need these even though not used in the test directly because Spring loads it on startup...
+  @MockBean private TradingEngine tradingEngine;
+  @MockBean private EmailAlerter emailAlerter;
+  @MockBean private RestartEndpoint restartEndpoint;
+  @MockBean private LogFileWebEndpoint logFileWebEndpoint;
+  @MockBean private AuthenticationManager authenticationManager;
+
+  @Before
+  public void setupBeforeEachTest() {
+    mockMvc = MockMvcBuilders.webAppContextSetup(ctx).addFilter(springSecurityFilterChain).build();
+  }
+
+  @Test
+  public void testGetCandlesWithValidToken() throws Exception {
+    given(candleService.getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.FIVE_MINUTES, 2))
+        .willReturn(Arrays.asList(CANDLE_1, CANDLE_2));
+
+    mockMvc
+        .perform(
+            get(CANDLES_ENDPOINT_URI + "?interval=5m&count=2")
+                .header(
+                    "Authorization", "Bearer " + getJwt(VALID_USER_NAME, VALID_USER_PASSWORD)))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.[0].openTime").value(CANDLE_1.getOpenTime()))
+        .andExpect(jsonPath("$.[0].open").value(CANDLE_1.getOpen()))
+        .andExpect(jsonPath("$.[0].high").value(CANDLE_1.getHigh()))
+        .andExpect(jsonPath("$.[0].low").value(CANDLE_1.getLow()))
+        .andExpect(jsonPath("$.[0].close").value(CANDLE_1.getClose()))
+        .andExpect(jsonPath("$.[0].volume").value(CANDLE_1.getVolume()))
+        .andExpect(jsonPath("$.[1].openTime").value(CANDLE_2.getOpenTime()))
+        .andExpect(jsonPath("$.[1].close").value(CANDLE_2.getClose()));
+
+    verify(candleService, times(1))
+        .getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.FIVE_MINUTES, 2);
+  }
+
+  @Test
+  public void testGetCandlesUsesDefaultIntervalAndCount() throws Exception {
+    given(candleService.getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.ONE_MINUTE, 100))
+        .willReturn(Arrays.asList(CANDLE_1));
+
+    mockMvc
+        .perform(
+            get(CANDLES_ENDPOINT_URI)
+                .header(
+                    "Authorization", "Bearer " + getJwt(VALID_USER_NAME, VALID_USER_PASSWORD)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.[0].openTime").value(CANDLE_1.getOpenTime()));
+
+    verify(candleService, times(1))
+        .getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.ONE_MINUTE, 100);
+  }
+
+  @Test
+  public void testGetCandlesWithUnknownIntervalIsBadRequest() throws Exception {
+    mockMvc
+        .perform(
+            get(CANDLES_ENDPOINT_URI + "?interval=2m")
+                .header(
+                    "Authorization", "Bearer " + getJwt(VALID_USER_NAME, VALID_USER_PASSWORD)))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void testGetCandlesWithInvalidCountIsBadRequest() throws Exception {
+    mockMvc
+        .perform(
+            get(CANDLES_ENDPOINT_URI + "?count=0")
+                .header(
+                    "Authorization", "Bearer " + getJwt(VALID_USER_NAME, VALID_USER_PASSWORD)))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void testGetCandlesWhenUnauthorizedWithMissingToken() throws Exception {
+    mockMvc
+        .perform(get(CANDLES_ENDPOINT_URI).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isUnauthorized());
+  }
+}
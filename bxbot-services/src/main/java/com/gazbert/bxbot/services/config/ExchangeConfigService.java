@@ -24,6 +24,7 @@
 package com.gazbert.bxbot.services.config;
 
 import com.gazbert.bxbot.domain.exchange.ExchangeConfig;
+import java.util.List;
 
 /**
  * The Exchange configuration service.
@@ -34,5 +35,7 @@ public interface ExchangeConfigService {
 
   ExchangeConfig getExchangeConfig();
 
+  List<ExchangeConfig> getAllExchangeConfig();
+
   ExchangeConfig updateExchangeConfig(ExchangeConfig config);
 }
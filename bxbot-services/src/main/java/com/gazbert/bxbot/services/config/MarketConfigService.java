@@ -29,17 +29,20 @@ import java.util.List;
 /**
  * The Market configuration service.
  *
+ * <p>A Market config is identified by its id and exchange, as the same market id can be configured
+ * on several exchanges. A null exchange is the main exchange in the exchange config.
+ *
  * @author gazbert
  */
 public interface MarketConfigService {
 
   List<MarketConfig> getAllMarketConfig();
 
-  MarketConfig getMarketConfig(String id);
+  MarketConfig getMarketConfig(String id, String exchange);
 
   MarketConfig createMarketConfig(MarketConfig config);
 
   MarketConfig updateMarketConfig(MarketConfig config);
 
-  MarketConfig deleteMarketConfig(String id);
+  MarketConfig deleteMarketConfig(String id, String exchange);
 }
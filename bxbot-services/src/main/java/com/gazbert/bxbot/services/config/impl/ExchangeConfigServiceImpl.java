@@ -26,6 +26,7 @@ package com.gazbert.bxbot.services.config.impl;
 import com.gazbert.bxbot.domain.exchange.ExchangeConfig;
 import com.gazbert.bxbot.repository.ExchangeConfigRepository;
 import com.gazbert.bxbot.services.config.ExchangeConfigService;
+import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -58,6 +59,11 @@ public class ExchangeConfigServiceImpl implements ExchangeConfigService {
     return exchangeConfigRepository.get();
   }
 
+  @Override
+  public List<ExchangeConfig> getAllExchangeConfig() {
+    return exchangeConfigRepository.findAll();
+  }
+
   @Override
   public ExchangeConfig updateExchangeConfig(ExchangeConfig config) {
     LOG.info(() -> "About to update Exchange config: " + config);
@@ -60,9 +60,9 @@ public class MarketConfigServiceImpl implements MarketConfigService {
   }
 
   @Override
-  public MarketConfig getMarketConfig(String id) {
-    LOG.info(() -> "Fetching Market config for id: " + id);
-    return marketConfigRepository.findById(id);
+  public MarketConfig getMarketConfig(String id, String exchange) {
+    LOG.info(() -> "Fetching Market config for id: " + id + " exchange: " + exchange);
+    return marketConfigRepository.findById(id, exchange);
   }
 
   @Override
@@ -78,8 +78,8 @@ public class MarketConfigServiceImpl implements MarketConfigService {
   }
 
   @Override
-  public MarketConfig deleteMarketConfig(String id) {
-    LOG.info(() -> "About to delete Market config for id: " + id);
-    return marketConfigRepository.delete(id);
+  public MarketConfig deleteMarketConfig(String id, String exchange) {
+    LOG.info(() -> "About to delete Market config for id: " + id + " exchange: " + exchange);
+    return marketConfigRepository.delete(id, exchange);
   }
 }
@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.services.runtime;
+
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleApi;
+import com.gazbert.bxbot.trading.api.CandleInterval;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The Candle service. Builds OHLCV candles from the prices the Trading Engine sees for each market
+ * on each exchange.
+ *
+ * @author gazbert
+ */
+public interface CandleService {
+
+  /**
+   * Folds a trade into the candles of its market.
+   *
+   * @param exchangeName the name of the exchange.
+   * @param marketId the id of the market.
+   * @param price the trade price.
+   * @param quantity the quantity traded. This can be null.
+   */
+  void onTrade(String exchangeName, String marketId, BigDecimal price, BigDecimal quantity);
+
+  /**
+   * Folds the latest price of a market, e.g. the last price of a ticker, into its candles.
+   *
+   * @param exchangeName the name of the exchange.
+   * @param marketId the id of the market.
+   * @param price the latest price. This can be null.
+   */
+  void onPrice(String exchangeName, String marketId, BigDecimal price);
+
+  /**
+   * Returns the latest candles for a market.
+   *
+   * @param exchangeName the name of the exchange.
+   * @param marketId the id of the market.
+   * @param interval the candle interval.
+   * @param count the most candles to return.
+   * @return the candles, oldest first, or an empty list if no prices have been seen for the
+   *     market.
+   */
+  List<Candle> getCandles(String exchangeName, String marketId, CandleInterval interval, int count);
+
+  /**
+   * Returns the candles of an exchange as a {@link CandleApi}, for the strategies.
+   *
+   * @param exchangeName the name of the exchange.
+   * @return the candle API for the exchange.
+   */
+  CandleApi getCandleApi(String exchangeName);
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.services.runtime.impl;
+
+import com.gazbert.bxbot.trading.api.Candle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The candles of 1 interval for a market, held in a ring buffer of primitive arrays.
+ *
+ * <p>A price is folded into the candle of its interval in constant time, without allocating.
+ * Once the buffer is full, starting a new candle overwrites the oldest. A price for an interval
+ * before the current candle's is too late to be folded in, so it is ignored.
+ *
+ * <p>Not thread safe.
+ *
+ * @author gazbert
+ */
+final class CandleSeries {
+
+  private final long intervalMillis;
+  private final long[] openTimes;
+  private final double[] opens;
+  private final double[] highs;
+  private final double[] lows;
+  private final double[] closes;
+  private final double[] volumes;
+  private int latest = -1;
+  private int size;
+
+  CandleSeries(long intervalMillis, int capacity) {
+    this.intervalMillis = intervalMillis;
+    openTimes = new long[capacity];
+    opens = new double[capacity];
+    highs = new double[capacity];
+    lows = new double[capacity];
+    closes = new double[capacity];
+    volumes = new double[capacity];
+  }
+
+  void update(long timestamp, double price, double quantity) {
+    final long openTime = timestamp - Math.floorMod(timestamp, intervalMillis);
+    if (size > 0 && openTime <= openTimes[latest]) {
+      if (openTime == openTimes[latest]) {
+        highs[latest] = Math.max(highs[latest], price);
+        lows[latest] = Math.min(lows[latest], price);
+        closes[latest] = price;
+        volumes[latest] += quantity;
+      }
+      return;
+    }
+    latest = latest + 1 == openTimes.length ? 0 : latest + 1;
+    if (size < openTimes.length) {
+      size++;
+    }
+    openTimes[latest] = openTime;
+    opens[latest] = price;
+    highs[latest] = price;
+    lows[latest] = price;
+    closes[latest] = price;
+    volumes[latest] = quantity;
+  }
+
+  List<Candle> getCandles(int count) {
+    final int candleCount = Math.max(0, Math.min(count, size));
+    final List<Candle> candles = new ArrayList<>(candleCount);
+    for (int i = candleCount - 1; i >= 0; i--) {
+      final int index = Math.floorMod(latest - i, openTimes.length);
+      candles.add(
+          new Candle(
+              openTimes[index],
+              opens[index],
+              highs[index],
+              lows[index],
+              closes[index],
+              volumes[index]));
+    }
+    return candles;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.services.runtime.impl;
+
+import com.gazbert.bxbot.services.runtime.CandleService;
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleApi;
+import com.gazbert.bxbot.trading.api.CandleInterval;
+import com.google.common.base.MoreObjects;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Implementation of the Candle service. Builds OHLCV candles for every {@link CandleInterval}.
+ *
+ * <p>Each price is folded into the current candle of every interval as it arrives, in constant
+ * time. Trades add their quantity to the volume; tickers and latest prices only move the prices.
+ * Prices are stamped with the time they are received, so the candles of all the sources line up.
+ *
+ * <p>The candles are held in ring buffers of primitive arrays, {@value #CANDLES_PER_INTERVAL} per
+ * interval for each market, so the memory used per market is fixed: under 200KB. Reading them
+ * copies the latest candles out; nothing is recomputed and no request is sent to the exchange.
+ *
+ * <p>Thread safe: prices can be given from the stream threads while the strategies and the REST
+ * API read the candles.
+ *
+ * @author gazbert
+ */
+@Service("candleService")
+public class CandleServiceImpl implements CandleService {
+
+  /** The number of candles kept for each interval of each market. */
+  public static final int CANDLES_PER_INTERVAL = 1000;
+
+  private final int capacity;
+  private final LongSupplier clock;
+  private final Map<String, Map<String, MarketCandles>> candlesByExchange =
+      new ConcurrentHashMap<>();
+
+  /** Creates the candle service. */
+  public CandleServiceImpl() {
+    this(System::currentTimeMillis);
+  }
+
+  /**
+   * Creates a candle service that stamps prices with the time on a given clock, e.g. the clock of
+   * a backtest.
+   *
+   * @param clock the clock, in milliseconds since the epoch.
+   */
+  public CandleServiceImpl(LongSupplier clock) {
+    this(CANDLES_PER_INTERVAL, clock);
+  }
+
+  CandleServiceImpl(int capacity, LongSupplier clock) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Candle capacity must be at least 1: " + capacity);
+    }
+    this.capacity = capacity;
+    this.clock = clock;
+  }
+
+  @Override
+  public void onTrade(String exchangeName, String marketId, BigDecimal price, BigDecimal quantity) {
+    if (price == null) {
+      return;
+    }
+    getMarketCandles(exchangeName, marketId)
+        .update(
+            clock.getAsLong(),
+            price.doubleValue(),
+            quantity == null ? 0 : quantity.doubleValue());
+  }
+
+  @Override
+  public void onPrice(String exchangeName, String marketId, BigDecimal price) {
+    onTrade(exchangeName, marketId, price, null);
+  }
+
+  @Override
+  public List<Candle> getCandles(
+      String exchangeName, String marketId, CandleInterval interval, int count) {
+    final Map<String, MarketCandles> exchangeCandles = candlesByExchange.get(exchangeName);
+    final MarketCandles marketCandles =
+        exchangeCandles == null ? null : exchangeCandles.get(marketId);
+    return marketCandles == null
+        ? Collections.emptyList()
+        : marketCandles.getCandles(interval, count);
+  }
+
+  @Override
+  public CandleApi getCandleApi(String exchangeName) {
+    return (marketId, interval, count) -> getCandles(exchangeName, marketId, interval, count);
+  }
+
+  /*
+   * Looks the market up without allocating; only the first price for a market creates its
+   * candles.
+   */
+  private MarketCandles getMarketCandles(String exchangeName, String marketId) {
+    Map<String, MarketCandles> exchangeCandles = candlesByExchange.get(exchangeName);
+    if (exchangeCandles == null) {
+      exchangeCandles =
+          candlesByExchange.computeIfAbsent(exchangeName, name -> new ConcurrentHashMap<>());
+    }
+    final MarketCandles marketCandles = exchangeCandles.get(marketId);
+    return marketCandles != null
+        ? marketCandles
+        : exchangeCandles.computeIfAbsent(marketId, id -> new MarketCandles(capacity));
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("capacity", capacity)
+        .add("exchanges", candlesByExchange.keySet())
+        .toString();
+  }
+
+  /*
+   * The candles of every interval for a market. Updated and read under its lock, which is only
+   * held for the few array writes of an update or the copy of a read.
+   */
+  private static final class MarketCandles {
+
+    private static final CandleInterval[] INTERVALS = CandleInterval.values();
+
+    private final CandleSeries[] series = new CandleSeries[INTERVALS.length];
+
+    private MarketCandles(int capacity) {
+      for (final CandleInterval interval : INTERVALS) {
+        series[interval.ordinal()] = new CandleSeries(interval.getMillis(), capacity);
+      }
+    }
+
+    private synchronized void update(long timestamp, double price, double quantity) {
+      for (final CandleSeries intervalSeries : series) {
+        intervalSeries.update(timestamp, price, quantity);
+      }
+    }
+
+    private synchronized List<Candle> getCandles(CandleInterval interval, int count) {
+      return series[interval.ordinal()].getCandles(count);
+    }
+  }
+}
@@ -31,6 +31,8 @@ import static org.easymock.EasyMock.verify;
 import com.gazbert.bxbot.domain.exchange.ExchangeConfig;
 import com.gazbert.bxbot.repository.ExchangeConfigRepository;
 import com.gazbert.bxbot.services.config.impl.ExchangeConfigServiceImpl;
+import java.util.Arrays;
+import java.util.List;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
@@ -56,6 +58,22 @@ public class TestExchangeConfigService {
     verify(exchangeConfigRepository);
   }
 
+  @Test
+  public void whenGetAllExchangeConfigCalledThenExpectAllConfigToBeReturned() {
+    final List<ExchangeConfig> exchangeConfigs =
+        Arrays.asList(new ExchangeConfig(), new ExchangeConfig());
+    final ExchangeConfigRepository exchangeConfigRepository =
+        EasyMock.createMock(ExchangeConfigRepository.class);
+    expect(exchangeConfigRepository.findAll()).andReturn(exchangeConfigs);
+    replay(exchangeConfigRepository);
+
+    final ExchangeConfigServiceImpl exchangeConfigService =
+        new ExchangeConfigServiceImpl(exchangeConfigRepository);
+
+    assertThat(exchangeConfigService.getAllExchangeConfig()).isEqualTo(exchangeConfigs);
+    verify(exchangeConfigRepository);
+  }
+
   @Test
   public void whenUpdateExchangeConfigCalledThenExpectUpdatedConfigToBeReturned() {
     final ExchangeConfig exchangeConfig = new ExchangeConfig();
@@ -47,15 +47,17 @@ public class TestMarketConfigService {
   public void whenGetMarketConfigCalledThenExpectConfigToBeReturned() {
     final MarketConfig marketConfig = new MarketConfig();
     marketConfig.setId("id-123");
+    marketConfig.setExchange("Kraken");
     final MarketConfigRepository marketConfigRepository =
         EasyMock.createMock(MarketConfigRepository.class);
-    expect(marketConfigRepository.findById(marketConfig.getId())).andReturn(marketConfig);
+    expect(marketConfigRepository.findById(marketConfig.getId(), marketConfig.getExchange()))
+        .andReturn(marketConfig);
     replay(marketConfigRepository);
 
     final MarketConfigServiceImpl marketConfigService =
         new MarketConfigServiceImpl(marketConfigRepository);
 
-    assertThat(marketConfigService.getMarketConfig(marketConfig.getId())).isEqualTo(marketConfig);
+    assertThat(marketConfigService.getMarketConfig("id-123", "Kraken")).isEqualTo(marketConfig);
     verify(marketConfigRepository);
   }
 
@@ -99,13 +101,13 @@ public class TestMarketConfigService {
     marketConfig.setId("id-123");
     final MarketConfigRepository marketConfigRepository =
         EasyMock.createMock(MarketConfigRepository.class);
-    expect(marketConfigRepository.delete(marketConfig.getId())).andReturn(marketConfig);
+    expect(marketConfigRepository.delete(marketConfig.getId(), null)).andReturn(marketConfig);
     replay(marketConfigRepository);
 
     final MarketConfigServiceImpl marketConfigService =
         new MarketConfigServiceImpl(marketConfigRepository);
 
-    assertThat(marketConfigService.deleteMarketConfig(marketConfig.getId()))
+    assertThat(marketConfigService.deleteMarketConfig(marketConfig.getId(), null))
         .isEqualTo(marketConfig);
     verify(marketConfigRepository);
   }
@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.services.runtime.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleApi;
+import com.gazbert.bxbot.trading.api.CandleInterval;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Candle Service behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestCandleService {
+
+  private static final String EXCHANGE_NAME = "Bitstamp";
+  private static final String MARKET_ID = "btcusd";
+  private static final long HOUR_START = 1_560_000_000_000L - 1_560_000_000_000L % 3_600_000L;
+  private static final double DELTA = 1e-9;
+
+  private long now;
+  private CandleServiceImpl candleService;
+
+  @Before
+  public void setUp() {
+    now = HOUR_START;
+    candleService = new CandleServiceImpl(3, () -> now);
+  }
+
+  @Test
+  public void testPricesAreFoldedIntoCandleOfEveryInterval() {
+    trade("100", "1");
+    now += 400;
+    trade("104", "0.5");
+    now += 300;
+    candleService.onPrice(EXCHANGE_NAME, MARKET_ID, new BigDecimal("98"));
+    now += 200;
+    trade("101", "2");
+
+    for (final CandleInterval interval : CandleInterval.values()) {
+      final List<Candle> candles = candleService.getCandles(EXCHANGE_NAME, MARKET_ID, interval, 10);
+      assertEquals(1, candles.size());
+      assertCandle(candles.get(0), HOUR_START, 100, 104, 98, 101, 3.5);
+    }
+  }
+
+  @Test
+  public void testNewCandleIsStartedWhenIntervalEnds() {
+    trade("100", "1");
+    now += 1500;
+    trade("102", "1");
+    now += 3000;
+    trade("99", "2");
+
+    final List<Candle> candles =
+        candleService.getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.ONE_SECOND, 10);
+    // no candle for the seconds without a price
+    assertEquals(3, candles.size());
+    assertCandle(candles.get(0), HOUR_START, 100, 100, 100, 100, 1);
+    assertCandle(candles.get(1), HOUR_START + 1000, 102, 102, 102, 102, 1);
+    assertCandle(candles.get(2), HOUR_START + 4000, 99, 99, 99, 99, 2);
+
+    final List<Candle> minuteCandles =
+        candleService.getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.ONE_MINUTE, 10);
+    assertEquals(1, minuteCandles.size());
+    assertCandle(minuteCandles.get(0), HOUR_START, 100, 102, 99, 99, 4);
+  }
+
+  @Test
+  public void testOldestCandlesAreDroppedOnceBufferIsFull() {
+    for (int minute = 0; minute < 5; minute++) {
+      now = HOUR_START + minute * 60_000L;
+      trade(Integer.toString(100 + minute), "1");
+    }
+
+    final List<Candle> candles =
+        candleService.getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.ONE_MINUTE, 10);
+    assertEquals(3, candles.size());
+    assertEquals(HOUR_START + 120_000L, candles.get(0).getOpenTime());
+    assertEquals(102, candles.get(0).getClose(), DELTA);
+    assertEquals(104, candles.get(2).getClose(), DELTA);
+
+    final List<Candle> latest =
+        candleService.getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.ONE_MINUTE, 2);
+    assertEquals(2, latest.size());
+    assertEquals(HOUR_START + 180_000L, latest.get(0).getOpenTime());
+    assertEquals(HOUR_START + 240_000L, latest.get(1).getOpenTime());
+
+    assertEquals(
+        1,
+        candleService.getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.FIVE_MINUTES, 10).size());
+  }
+
+  @Test
+  public void testPriceTooLateForCurrentCandleIsIgnored() {
+    now += 5000;
+    trade("100", "1");
+    now -= 2000;
+    trade("50", "1");
+
+    final List<Candle> candles =
+        candleService.getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.ONE_SECOND, 10);
+    assertEquals(1, candles.size());
+    assertCandle(candles.get(0), HOUR_START + 5000, 100, 100, 100, 100, 1);
+  }
+
+  @Test
+  public void testMissingPricesAreIgnored() {
+    candleService.onPrice(EXCHANGE_NAME, MARKET_ID, null);
+    candleService.onTrade(EXCHANGE_NAME, MARKET_ID, null, BigDecimal.ONE);
+
+    assertTrue(
+        candleService
+            .getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.ONE_MINUTE, 10)
+            .isEmpty());
+  }
+
+  @Test
+  public void testMarketsAndExchangesAreKeptApart() {
+    trade("100", "1");
+    candleService.onTrade(EXCHANGE_NAME, "ethusd", new BigDecimal("10"), BigDecimal.ONE);
+    candleService.onTrade("Kraken", MARKET_ID, new BigDecimal("200"), BigDecimal.ONE);
+
+    final CandleApi candleApi = candleService.getCandleApi("Kraken");
+    final List<Candle> candles = candleApi.getCandles(MARKET_ID, CandleInterval.ONE_MINUTE, 10);
+    assertEquals(1, candles.size());
+    assertEquals(200, candles.get(0).getClose(), DELTA);
+    assertEquals(
+        100,
+        candleService
+            .getCandles(EXCHANGE_NAME, MARKET_ID, CandleInterval.ONE_MINUTE, 10)
+            .get(0)
+            .getClose(),
+        DELTA);
+    assertTrue(candleApi.getCandles("ethusd", CandleInterval.ONE_MINUTE, 10).isEmpty());
+    assertTrue(
+        candleService.getCandles("Gemini", MARKET_ID, CandleInterval.ONE_MINUTE, 10).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapacityMustBeAtLeastOne() {
+    new CandleServiceImpl(0, () -> now);
+  }
+
+  private void trade(String price, String quantity) {
+    candleService.onTrade(
+        EXCHANGE_NAME, MARKET_ID, new BigDecimal(price), new BigDecimal(quantity));
+  }
+
+  private static void assertCandle(
+      Candle candle,
+      long openTime,
+      double open,
+      double high,
+      double low,
+      double close,
+      double volume) {
+    assertEquals(openTime, candle.getOpenTime());
+    assertEquals(open, candle.getOpen(), DELTA);
+    assertEquals(high, candle.getHigh(), DELTA);
+    assertEquals(low, candle.getLow(), DELTA);
+    assertEquals(close, candle.getClose(), DELTA);
+    assertEquals(volume, candle.getVolume(), DELTA);
+  }
+}
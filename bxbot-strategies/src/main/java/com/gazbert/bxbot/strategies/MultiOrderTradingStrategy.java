@@ -157,7 +157,7 @@ public class MultiOrderTradingStrategy extends AbstractTradingStrategy {
                 + " Amount to add to last buy order fill price: " + amountToAdd);
 
         BigDecimal unroundedPrice = lastOrder.price.add(amountToAdd);
-        final BigDecimal newAskPrice = context.roundValue(unroundedPrice);
+        final BigDecimal newAskPrice = context.roundPrice(unroundedPrice);
 
         // sendSellOrder
         boolean availableSlots = sellOrderStack.size() < getConfig().getMaxConcurrentSellOrders();
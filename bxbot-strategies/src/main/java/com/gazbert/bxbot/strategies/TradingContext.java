@@ -1,18 +1,25 @@
 package com.gazbert.bxbot.strategies;
 
+import com.gazbert.bxbot.trading.api.AsyncTradingApi;
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleApi;
+import com.gazbert.bxbot.trading.api.CandleInterval;
 import com.gazbert.bxbot.trading.api.ExchangeNetworkException;
 import com.gazbert.bxbot.trading.api.Market;
 import com.gazbert.bxbot.trading.api.MarketOrder;
+import com.gazbert.bxbot.trading.api.MarketOrderBook;
 import com.gazbert.bxbot.trading.api.OpenOrder;
 import com.gazbert.bxbot.trading.api.OrderType;
 import com.gazbert.bxbot.trading.api.TradingApi;
 import com.gazbert.bxbot.trading.api.TradingApiException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -25,10 +32,12 @@ public class TradingContext {
   private static final Logger LOG = LogManager.getLogger();
 
   private final TradingApi tradingApi;
+  private final AsyncTradingApi asyncTradingApi;
   private final Market market;
 
   TradingContext(TradingApi tradingApi, Market market) {
     this.tradingApi = tradingApi;
+    this.asyncTradingApi = AsyncTradingApi.from(tradingApi);
     this.market = market;
   }
 
@@ -58,6 +67,48 @@ public class TradingContext {
     return tradingApi.getMarketOrders(market.getId()).getSellOrders();
   }
 
+  /**
+   * Starts fetching the market order book without blocking.
+   *
+   * @return a future for the market order book.
+   */
+  public CompletableFuture<MarketOrderBook> getMarketOrderBookAsync() {
+    return asyncTradingApi.getMarketOrdersAsync(market.getId());
+  }
+
+  /**
+   * Starts fetching your open orders for the market without blocking.
+   *
+   * @return a future for your open orders.
+   */
+  public CompletableFuture<List<OpenOrder>> getYourOpenOrdersAsync() {
+    return asyncTradingApi.getYourOpenOrdersAsync(market.getId());
+  }
+
+  /**
+   * Starts fetching the latest market price without blocking.
+   *
+   * @return a future for the latest market price.
+   */
+  public CompletableFuture<BigDecimal> getLatestMarketPriceAsync() {
+    return asyncTradingApi.getLatestMarketPriceAsync(market.getId());
+  }
+
+  /**
+   * Returns the latest OHLCV candles for the market. No request is sent to the exchange.
+   *
+   * @param interval the candle interval.
+   * @param count the most candles to return.
+   * @return the candles, oldest first. The last one is for the current interval. Empty if the
+   *     Trading API does not provide candles, or no prices have been seen for the market yet.
+   */
+  public List<Candle> getCandles(CandleInterval interval, int count) {
+    if (!(tradingApi instanceof CandleApi)) {
+      return Collections.emptyList();
+    }
+    return ((CandleApi) tradingApi).getCandles(market.getId(), interval, count);
+  }
+
   /**
    * Round based on trading API rules.
    *
@@ -67,6 +118,24 @@ public class TradingContext {
     return tradingApi.roundValue(value);
   }
 
+  /**
+   * Round a price to the market's tick size.
+   *
+   * @return the price rounded to a price the exchange accepts for this market.
+   */
+  public BigDecimal roundPrice(BigDecimal price) {
+    return tradingApi.roundPrice(market.getId(), price);
+  }
+
+  /**
+   * Round a quantity down to the market's lot size.
+   *
+   * @return the quantity rounded to a quantity the exchange accepts for this market.
+   */
+  public BigDecimal roundQuantity(BigDecimal quantity) {
+    return tradingApi.roundQuantity(market.getId(), quantity);
+  }
+
   /**
    * Amount of base currency available to trade.
    *
@@ -186,7 +255,7 @@ public class TradingContext {
     BigDecimal unroundedBaseCurrency = amountOfCounterCurrency
             .divide(lastTradePriceInUsdForOneBtc, 16, RoundingMode.HALF_UP);
     final BigDecimal amountOfBaseCurrencyToBuy =
-            roundValue(unroundedBaseCurrency);
+            roundQuantity(unroundedBaseCurrency);
 
     LOG.info(() -> market.getName()
             + " Amount of base currency (" + market.getBaseCurrency() + ") corresponding to "
@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import com.gazbert.bxbot.trading.api.Candle;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Wilder's Average True Range (ATR): a measure of volatility from the high, low and close of each
+ * candle.
+ *
+ * <p>The true range of a candle is the greatest of its high less its low, and the distances of its
+ * high and low from the previous close; for the first candle it is the high less the low. The ATR
+ * starts as the mean of the first {@code period} true ranges, then is smoothed with Wilder's
+ * method.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+public final class AverageTrueRange implements Indicator {
+
+  private final int period;
+  private int count;
+  private double previousClose;
+  private double value;
+
+  /**
+   * Creates the ATR.
+   *
+   * @param period the period; 14 is usual.
+   * @throws IllegalArgumentException if the period is less than 1.
+   */
+  public AverageTrueRange(int period) {
+    if (period < 1) {
+      throw new IllegalArgumentException("Period must be at least 1: " + period);
+    }
+    this.period = period;
+  }
+
+  @Override
+  public void update(Candle candle) {
+    update(candle.getHigh(), candle.getLow(), candle.getClose());
+  }
+
+  /**
+   * Updates the ATR with the high, low and close of a candle.
+   *
+   * @param high the high price.
+   * @param low the low price.
+   * @param close the close price.
+   */
+  public void update(double high, double low, double close) {
+    double trueRange = high - low;
+    if (count > 0) {
+      trueRange = Math.max(trueRange, Math.abs(high - previousClose));
+      trueRange = Math.max(trueRange, Math.abs(low - previousClose));
+    }
+    previousClose = close;
+    if (count < period) {
+      count++;
+      value += (trueRange - value) / count;
+    } else {
+      value = (value * (period - 1) + trueRange) / period;
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return count == period;
+  }
+
+  @Override
+  public double getValue() {
+    return count == period ? value : Double.NaN;
+  }
+
+  @Override
+  public void reset() {
+    count = 0;
+    previousClose = 0;
+    value = 0;
+  }
+
+  /**
+   * Returns the period.
+   *
+   * @return the period.
+   */
+  public int getPeriod() {
+    return period;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("period", period)
+        .add("value", getValue())
+        .toString();
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Bollinger Bands: the Simple Moving Average of the latest prices, with bands a number of
+ * standard deviations above and below it. The value of the indicator is the middle band.
+ *
+ * <p>The standard deviation is of the prices in the window (the population standard deviation).
+ * The sum of squared deviations is moved along with the window as each price is added and the
+ * oldest is evicted, rather than summing the squares of the prices, which loses precision when the
+ * prices are large and the deviations small.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+public final class BollingerBands implements PriceIndicator {
+
+  private final RollingWindow window;
+  private final double multiplier;
+  private double mean;
+  private double sumOfSquaredDeviations;
+
+  /**
+   * Creates the Bollinger Bands.
+   *
+   * @param period the number of prices in the window; 20 is usual.
+   * @param multiplier the number of standard deviations from the middle band to the upper and
+   *     lower bands; 2 is usual.
+   * @throws IllegalArgumentException if the period is less than 1, or the multiplier is negative.
+   */
+  public BollingerBands(int period, double multiplier) {
+    if (!(multiplier >= 0)) {
+      throw new IllegalArgumentException("Multiplier must not be negative: " + multiplier);
+    }
+    window = new RollingWindow(period);
+    this.multiplier = multiplier;
+  }
+
+  @Override
+  public void update(double price) {
+    final boolean evicting = window.isFull();
+    final double evicted = window.add(price);
+    final double previousMean = mean;
+    mean = window.getSum() / window.size();
+    if (evicting) {
+      sumOfSquaredDeviations += (price - evicted) * (price - mean + evicted - previousMean);
+    } else {
+      sumOfSquaredDeviations += (price - previousMean) * (price - mean);
+    }
+    if (sumOfSquaredDeviations < 0) {
+      sumOfSquaredDeviations = 0;
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return window.isFull();
+  }
+
+  /**
+   * Returns the middle band.
+   *
+   * @return the middle band, or {@link Double#NaN} if the bands are not ready.
+   */
+  @Override
+  public double getValue() {
+    return getMiddle();
+  }
+
+  /**
+   * Returns the middle band: the Simple Moving Average of the prices.
+   *
+   * @return the middle band, or {@link Double#NaN} if the bands are not ready.
+   */
+  public double getMiddle() {
+    return window.isFull() ? mean : Double.NaN;
+  }
+
+  /**
+   * Returns the upper band.
+   *
+   * @return the upper band, or {@link Double#NaN} if the bands are not ready.
+   */
+  public double getUpper() {
+    return getMiddle() + multiplier * getStandardDeviation();
+  }
+
+  /**
+   * Returns the lower band.
+   *
+   * @return the lower band, or {@link Double#NaN} if the bands are not ready.
+   */
+  public double getLower() {
+    return getMiddle() - multiplier * getStandardDeviation();
+  }
+
+  /**
+   * Returns the standard deviation of the prices.
+   *
+   * @return the standard deviation, or {@link Double#NaN} if the bands are not ready.
+   */
+  public double getStandardDeviation() {
+    return window.isFull()
+        ? Math.sqrt(sumOfSquaredDeviations / window.capacity())
+        : Double.NaN;
+  }
+
+  /**
+   * Returns where the last price is relative to the bands (%b): 0 at the lower band and 1 at the
+   * upper band.
+   *
+   * @param price the price.
+   * @return %b, or {@link Double#NaN} if the bands are not ready or are zero width.
+   */
+  public double getPercentB(double price) {
+    final double lower = getLower();
+    final double width = getUpper() - lower;
+    return width > 0 ? (price - lower) / width : Double.NaN;
+  }
+
+  /**
+   * Returns the period.
+   *
+   * @return the number of prices in the window.
+   */
+  public int getPeriod() {
+    return window.capacity();
+  }
+
+  @Override
+  public void reset() {
+    window.clear();
+    mean = 0;
+    sumOfSquaredDeviations = 0;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("period", getPeriod())
+        .add("multiplier", multiplier)
+        .add("lower", getLower())
+        .add("middle", getMiddle())
+        .add("upper", getUpper())
+        .toString();
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The Exponential Moving Average (EMA): a moving average that weights recent prices more.
+ *
+ * <p>The smoothing factor is {@code 2 / (period + 1)}. The EMA starts from the mean of the first
+ * {@code period} prices, so it is ready once it has seen that many.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+public final class ExponentialMovingAverage implements PriceIndicator {
+
+  private final int period;
+  private final double alpha;
+  private int count;
+  private double value;
+
+  /**
+   * Creates the EMA.
+   *
+   * @param period the period.
+   * @throws IllegalArgumentException if the period is less than 1.
+   */
+  public ExponentialMovingAverage(int period) {
+    if (period < 1) {
+      throw new IllegalArgumentException("Period must be at least 1: " + period);
+    }
+    this.period = period;
+    alpha = 2.0 / (period + 1);
+  }
+
+  @Override
+  public void update(double price) {
+    if (count < period) {
+      count++;
+      value += (price - value) / count;
+    } else {
+      value += alpha * (price - value);
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return count == period;
+  }
+
+  @Override
+  public double getValue() {
+    return count == period ? value : Double.NaN;
+  }
+
+  @Override
+  public void reset() {
+    count = 0;
+    value = 0;
+  }
+
+  /**
+   * Returns the period.
+   *
+   * @return the period.
+   */
+  public int getPeriod() {
+    return period;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("period", period)
+        .add("value", getValue())
+        .toString();
+  }
+}
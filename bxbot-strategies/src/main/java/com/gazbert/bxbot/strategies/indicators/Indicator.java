@@ -0,0 +1,63 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import com.gazbert.bxbot.trading.api.Candle;
+
+/**
+ * A technical indicator that is updated one observation at a time.
+ *
+ * <p>Each update is constant time and does not allocate, so a strategy can keep many indicators
+ * for many markets and update them every tick. The indicators are not thread safe; the Trading
+ * Engine only sends 1 thread through a strategy at a time.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+public interface Indicator {
+
+  /**
+   * Updates the indicator with a candle.
+   *
+   * @param candle the candle.
+   */
+  void update(Candle candle);
+
+  /**
+   * Returns true once the indicator has seen enough updates to give a value.
+   *
+   * @return true if the indicator has a value.
+   */
+  boolean isReady();
+
+  /**
+   * Returns the value of the indicator.
+   *
+   * @return the value, or {@link Double#NaN} if the indicator is not ready.
+   */
+  double getValue();
+
+  /** Clears the indicator, as if it had not been updated. */
+  void reset();
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Moving Average Convergence Divergence (MACD): the fast EMA of the prices less the slow EMA, with
+ * a signal line that is an EMA of the MACD. The value of the indicator is the MACD line.
+ *
+ * <p>The MACD line starts once the slow EMA is ready, and the indicator is ready once the signal
+ * line is too: after {@code slowPeriod + signalPeriod - 1} prices.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+public final class MovingAverageConvergenceDivergence implements PriceIndicator {
+
+  private final ExponentialMovingAverage fast;
+  private final ExponentialMovingAverage slow;
+  private final ExponentialMovingAverage signal;
+
+  /** Creates the MACD with the usual periods: 12, 26 and 9. */
+  public MovingAverageConvergenceDivergence() {
+    this(12, 26, 9);
+  }
+
+  /**
+   * Creates the MACD.
+   *
+   * @param fastPeriod the period of the fast EMA.
+   * @param slowPeriod the period of the slow EMA.
+   * @param signalPeriod the period of the signal line EMA.
+   * @throws IllegalArgumentException if a period is less than 1, or the fast period is not less
+   *     than the slow period.
+   */
+  public MovingAverageConvergenceDivergence(int fastPeriod, int slowPeriod, int signalPeriod) {
+    if (fastPeriod >= slowPeriod) {
+      throw new IllegalArgumentException(
+          "Fast period must be less than slow period: " + fastPeriod + " >= " + slowPeriod);
+    }
+    fast = new ExponentialMovingAverage(fastPeriod);
+    slow = new ExponentialMovingAverage(slowPeriod);
+    signal = new ExponentialMovingAverage(signalPeriod);
+  }
+
+  @Override
+  public void update(double price) {
+    fast.update(price);
+    slow.update(price);
+    if (slow.isReady()) {
+      signal.update(fast.getValue() - slow.getValue());
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return signal.isReady();
+  }
+
+  /**
+   * Returns the MACD line.
+   *
+   * @return the MACD line, or {@link Double#NaN} if the MACD is not ready.
+   */
+  @Override
+  public double getValue() {
+    return signal.isReady() ? fast.getValue() - slow.getValue() : Double.NaN;
+  }
+
+  /**
+   * Returns the signal line.
+   *
+   * @return the signal line, or {@link Double#NaN} if the MACD is not ready.
+   */
+  public double getSignal() {
+    return signal.getValue();
+  }
+
+  /**
+   * Returns the histogram: the MACD line less the signal line.
+   *
+   * @return the histogram, or {@link Double#NaN} if the MACD is not ready.
+   */
+  public double getHistogram() {
+    return getValue() - getSignal();
+  }
+
+  @Override
+  public void reset() {
+    fast.reset();
+    slow.reset();
+    signal.reset();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("fastPeriod", fast.getPeriod())
+        .add("slowPeriod", slow.getPeriod())
+        .add("signalPeriod", signal.getPeriod())
+        .add("macd", getValue())
+        .add("signal", getSignal())
+        .add("histogram", getHistogram())
+        .toString();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Wilder's Relative Strength Index (RSI): a momentum oscillator from 0 to 100.
+ *
+ * <p>The average gain and loss start as the mean of the first {@code period} price changes, then
+ * are smoothed with Wilder's method: {@code average = (previous * (period - 1) + change) /
+ * period}. The RSI is ready once it has seen {@code period + 1} prices.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+public final class RelativeStrengthIndex implements PriceIndicator {
+
+  private final int period;
+  private int changes;
+  private boolean hasPrice;
+  private double previousPrice;
+  private double averageGain;
+  private double averageLoss;
+
+  /**
+   * Creates the RSI.
+   *
+   * @param period the period; 14 is usual.
+   * @throws IllegalArgumentException if the period is less than 1.
+   */
+  public RelativeStrengthIndex(int period) {
+    if (period < 1) {
+      throw new IllegalArgumentException("Period must be at least 1: " + period);
+    }
+    this.period = period;
+  }
+
+  @Override
+  public void update(double price) {
+    if (!hasPrice) {
+      hasPrice = true;
+      previousPrice = price;
+      return;
+    }
+    final double change = price - previousPrice;
+    previousPrice = price;
+    final double gain = change > 0 ? change : 0;
+    final double loss = change < 0 ? -change : 0;
+    if (changes < period) {
+      changes++;
+      averageGain += (gain - averageGain) / changes;
+      averageLoss += (loss - averageLoss) / changes;
+    } else {
+      averageGain = (averageGain * (period - 1) + gain) / period;
+      averageLoss = (averageLoss * (period - 1) + loss) / period;
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return changes == period;
+  }
+
+  /**
+   * Returns the RSI. It is 100 if there were only gains, and 50 if the price did not move.
+   *
+   * @return the RSI, or {@link Double#NaN} if it is not ready.
+   */
+  @Override
+  public double getValue() {
+    if (changes < period) {
+      return Double.NaN;
+    }
+    if (averageLoss == 0) {
+      return averageGain == 0 ? 50 : 100;
+    }
+    return 100 - 100 / (1 + averageGain / averageLoss);
+  }
+
+  @Override
+  public void reset() {
+    changes = 0;
+    hasPrice = false;
+    previousPrice = 0;
+    averageGain = 0;
+    averageLoss = 0;
+  }
+
+  /**
+   * Returns the period.
+   *
+   * @return the period.
+   */
+  public int getPeriod() {
+    return period;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("period", period)
+        .add("value", getValue())
+        .toString();
+  }
+}
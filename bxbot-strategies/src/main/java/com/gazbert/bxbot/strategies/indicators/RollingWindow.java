@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+/**
+ * A fixed size window over the latest values, held in a ring buffer of doubles, with their running
+ * sum.
+ *
+ * <p>The sum is compensated (Kahan summation): adding the new value and taking away the evicted one
+ * every update would otherwise let rounding errors build up over a long run.
+ *
+ * @author gazbert
+ */
+final class RollingWindow {
+
+  private final double[] values;
+  private int next;
+  private int size;
+  private double sum;
+  private double compensation;
+
+  RollingWindow(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Period must be at least 1: " + capacity);
+    }
+    values = new double[capacity];
+  }
+
+  /*
+   * Adds a value, evicting the oldest one if the window is full. Returns the evicted value, or 0
+   * if none was evicted.
+   */
+  double add(double value) {
+    final double evicted = values[next];
+    values[next] = value;
+    next = next + 1 == values.length ? 0 : next + 1;
+    addToSum(value);
+    if (size == values.length) {
+      addToSum(-evicted);
+      return evicted;
+    }
+    size++;
+    return 0;
+  }
+
+  boolean isFull() {
+    return size == values.length;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int capacity() {
+    return values.length;
+  }
+
+  double getSum() {
+    return sum;
+  }
+
+  void clear() {
+    next = 0;
+    size = 0;
+    sum = 0;
+    compensation = 0;
+  }
+
+  private void addToSum(double value) {
+    final double adjusted = value - compensation;
+    final double total = sum + adjusted;
+    compensation = (total - sum) - adjusted;
+    sum = total;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The Simple Moving Average (SMA): the mean of the latest prices.
+ *
+ * <p>It keeps the latest prices and their running sum, so each update is constant time whatever the
+ * period.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+public final class SimpleMovingAverage implements PriceIndicator {
+
+  private final RollingWindow window;
+
+  /**
+   * Creates the SMA.
+   *
+   * @param period the number of prices to average.
+   * @throws IllegalArgumentException if the period is less than 1.
+   */
+  public SimpleMovingAverage(int period) {
+    window = new RollingWindow(period);
+  }
+
+  @Override
+  public void update(double price) {
+    window.add(price);
+  }
+
+  @Override
+  public boolean isReady() {
+    return window.isFull();
+  }
+
+  @Override
+  public double getValue() {
+    return window.isFull() ? window.getSum() / window.capacity() : Double.NaN;
+  }
+
+  @Override
+  public void reset() {
+    window.clear();
+  }
+
+  /**
+   * Returns the period.
+   *
+   * @return the number of prices averaged.
+   */
+  public int getPeriod() {
+    return window.capacity();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("period", getPeriod())
+        .add("value", getValue())
+        .toString();
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import com.gazbert.bxbot.trading.api.Candle;
+import com.google.common.base.MoreObjects;
+
+/**
+ * The Volume Weighted Average Price (VWAP) over the latest trades or candles.
+ *
+ * <p>It keeps the latest {@code period} prices times volumes and volumes, with their running sums,
+ * so each update is constant time. A candle is weighted at its typical price: the mean of its high,
+ * low and close. Call {@link #reset()} to start a new session.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+public final class VolumeWeightedAveragePrice implements Indicator {
+
+  private final RollingWindow priceTimesVolume;
+  private final RollingWindow volume;
+
+  /**
+   * Creates the VWAP.
+   *
+   * @param period the number of trades or candles in the window.
+   * @throws IllegalArgumentException if the period is less than 1.
+   */
+  public VolumeWeightedAveragePrice(int period) {
+    priceTimesVolume = new RollingWindow(period);
+    volume = new RollingWindow(period);
+  }
+
+  @Override
+  public void update(Candle candle) {
+    update((candle.getHigh() + candle.getLow() + candle.getClose()) / 3, candle.getVolume());
+  }
+
+  /**
+   * Updates the VWAP with a trade.
+   *
+   * @param price the price.
+   * @param quantity the quantity traded.
+   */
+  public void update(double price, double quantity) {
+    priceTimesVolume.add(price * quantity);
+    volume.add(quantity);
+  }
+
+  @Override
+  public boolean isReady() {
+    return volume.isFull();
+  }
+
+  /**
+   * Returns the VWAP.
+   *
+   * @return the VWAP, or {@link Double#NaN} if it is not ready or nothing was traded in the
+   *     window.
+   */
+  @Override
+  public double getValue() {
+    return volume.isFull() && volume.getSum() > 0
+        ? priceTimesVolume.getSum() / volume.getSum()
+        : Double.NaN;
+  }
+
+  @Override
+  public void reset() {
+    priceTimesVolume.clear();
+    volume.clear();
+  }
+
+  /**
+   * Returns the period.
+   *
+   * @return the number of trades or candles in the window.
+   */
+  public int getPeriod() {
+    return volume.capacity();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("period", getPeriod())
+        .add("value", getValue())
+        .toString();
+  }
+}
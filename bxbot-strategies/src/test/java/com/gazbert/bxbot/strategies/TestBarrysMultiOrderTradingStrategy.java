@@ -196,7 +196,7 @@ public class TestBarrysMultiOrderTradingStrategy {
             MARKET_NAME, lastOrderAmount, lastOrderPrice, strategyName, exchangeApi);
     expect(transactionRepo.save(buyEntry)).andReturn(buyEntry);
 
-    expect(context.roundValue(new BigDecimal("1512.17872000000")))
+    expect(context.roundPrice(new BigDecimal("1512.17872000000")))
             .andReturn(new BigDecimal("1512.17872000"));
 
     // expect to send new sell order to exchange
@@ -6,9 +6,13 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.gazbert.bxbot.strategy.api.IStrategyConfigItems;
+import com.gazbert.bxbot.trading.api.Candle;
+import com.gazbert.bxbot.trading.api.CandleApi;
+import com.gazbert.bxbot.trading.api.CandleInterval;
 import com.gazbert.bxbot.trading.api.Market;
 import com.gazbert.bxbot.trading.api.MarketOrder;
 import com.gazbert.bxbot.trading.api.MarketOrderBook;
@@ -18,6 +22,7 @@ import com.gazbert.bxbot.trading.api.TradingApi;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
@@ -106,6 +111,20 @@ public class TestTradingContext {
     verify(market, tradingApi, config, marketOrderBook, marketBuyOrder, marketSellOrder);
   }
 
+  /*
+   * Tests the order book can be fetched without blocking.
+   */
+  @Test
+  public void testGetMarketOrderBookAsync() throws Exception {
+
+    replay(market, tradingApi, config, marketOrderBook, marketBuyOrder, marketSellOrder);
+
+    final TradingContext context = new TradingContext(tradingApi, market);
+    assertSame(marketOrderBook, context.getMarketOrderBookAsync().get());
+
+    verify(market, tradingApi, config, marketOrderBook, marketBuyOrder, marketSellOrder);
+  }
+
   /*
    * Tests send sell order.
    */
@@ -196,7 +215,7 @@ public class TestTradingContext {
     expect(market.getCounterCurrency()).andReturn("BTC").anyTimes();
     expect(tradingApi.getImplName()).andReturn("Bitstamp").anyTimes();
     BigDecimal lastTradePrice = new BigDecimal("1234.56");
-    expect(tradingApi.roundValue(BigDecimal.valueOf(0.0810005184033178)))
+    expect(tradingApi.roundQuantity(MARKET_ID, BigDecimal.valueOf(0.0810005184033178)))
             .andReturn(BigDecimal.valueOf(0.08100052));
     expect(tradingApi.getLatestMarketPrice(MARKET_ID)).andReturn(lastTradePrice);
 
@@ -212,4 +231,39 @@ public class TestTradingContext {
     verify(market, tradingApi, config, marketOrderBook, marketBuyOrder, marketSellOrder);
   }
 
+  /*
+   * Tests candles are read from the Trading API if it provides them.
+   */
+  @Test
+  public void testGetCandles() {
+
+    final CandleTradingApi candleTradingApi = createMock(CandleTradingApi.class);
+    final List<Candle> candles = Collections.singletonList(new Candle(0L, 1, 2, 0.5, 1.5, 10));
+    expect(candleTradingApi.getCandles(MARKET_ID, CandleInterval.FIVE_MINUTES, 20))
+            .andReturn(candles);
+
+    replay(market, candleTradingApi);
+
+    final TradingContext context = new TradingContext(candleTradingApi, market);
+    assertSame(candles, context.getCandles(CandleInterval.FIVE_MINUTES, 20));
+
+    verify(market, candleTradingApi);
+  }
+
+  /*
+   * Tests there are no candles if the Trading API does not provide them.
+   */
+  @Test
+  public void testGetCandlesWhenTradingApiDoesNotProvideThem() {
+
+    replay(market, tradingApi);
+
+    final TradingContext context = new TradingContext(tradingApi, market);
+    assertTrue(context.getCandles(CandleInterval.ONE_MINUTE, 20).isEmpty());
+
+    verify(market, tradingApi);
+  }
+
+  interface CandleTradingApi extends TradingApi, CandleApi {
+  }
 }
@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+/**
+ * Prices the indicator tests are run over. The expected values in the tests were computed from
+ * these by recalculating each indicator over its whole window.
+ *
+ * @author gazbert
+ */
+final class IndicatorTestData {
+
+  /** Closing prices from Wilder's RSI worked example. */
+  static final double[] PRICES = {
+    44.34, 44.09, 44.15, 43.61, 44.33, 44.83, 45.10, 45.42, 45.84, 46.08, 45.89, 46.03, 45.61,
+    46.28, 46.28, 46.00, 46.03, 46.41, 46.22, 45.64, 46.21, 46.25, 45.71, 46.45, 45.78, 45.35,
+    44.03, 44.18, 44.22, 44.57, 43.42, 42.66, 43.13
+  };
+
+  /** Candle highs from Wilder's ATR worked example. */
+  static final double[] HIGHS = {
+    48.70, 48.72, 48.90, 48.87, 48.82, 49.05, 49.20, 49.35, 49.92, 50.19, 50.12, 49.66, 49.88,
+    50.19, 50.36, 50.57, 50.65, 50.43, 49.63, 50.33
+  };
+
+  /** Candle lows from Wilder's ATR worked example. */
+  static final double[] LOWS = {
+    47.79, 48.14, 48.39, 48.37, 48.24, 48.64, 48.94, 48.86, 49.50, 49.87, 49.20, 48.90, 49.43,
+    49.73, 49.26, 50.09, 50.30, 49.21, 48.98, 49.61
+  };
+
+  /** Candle closes from Wilder's ATR worked example. */
+  static final double[] CLOSES = {
+    48.16, 48.61, 48.75, 48.63, 48.74, 49.03, 49.07, 49.32, 49.91, 50.13, 49.53, 49.50, 49.75,
+    50.03, 50.31, 50.52, 50.41, 49.34, 49.37, 50.23
+  };
+
+  /** Tolerance for comparing the indicators with the expected values. */
+  static final double DELTA = 1e-9;
+
+  private IndicatorTestData() {
+  }
+}
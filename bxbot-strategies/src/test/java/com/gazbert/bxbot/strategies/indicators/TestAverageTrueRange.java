@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.CLOSES;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.DELTA;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.HIGHS;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.LOWS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.trading.api.Candle;
+import org.junit.Test;
+
+/**
+ * Tests the Average True Range behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestAverageTrueRange {
+
+  @Test
+  public void testAtrMatchesGoldenValues() {
+    final AverageTrueRange atr = new AverageTrueRange(14);
+    for (int i = 0; i < 13; i++) {
+      atr.update(HIGHS[i], LOWS[i], CLOSES[i]);
+      assertFalse(atr.isReady());
+      assertTrue(Double.isNaN(atr.getValue()));
+    }
+    atr.update(new Candle(0L, 0, HIGHS[13], LOWS[13], CLOSES[13], 0));
+    assertTrue(atr.isReady());
+    assertEquals(0.5542857142857146, atr.getValue(), DELTA);
+    atr.update(HIGHS[14], LOWS[14], CLOSES[14]);
+    assertEquals(0.5932653061224494, atr.getValue(), DELTA);
+    for (int i = 15; i < HIGHS.length; i++) {
+      atr.update(HIGHS[i], LOWS[i], CLOSES[i]);
+    }
+    assertEquals(0.6418963737321555, atr.getValue(), DELTA);
+  }
+
+  @Test
+  public void testGapFromPreviousCloseIsTrueRange() {
+    final AverageTrueRange atr = new AverageTrueRange(1);
+    atr.update(10, 9, 10);
+    assertEquals(1, atr.getValue(), 0);
+    atr.update(13, 12, 12.5);
+    assertEquals(3, atr.getValue(), 0);
+    atr.reset();
+    assertFalse(atr.isReady());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPeriodMustBeAtLeastOne() {
+    new AverageTrueRange(0);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.DELTA;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.PRICES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests the Bollinger Bands behave as expected.
+ *
+ * @author gazbert
+ */
+public class TestBollingerBands {
+
+  @Test
+  public void testBandsMatchGoldenValues() {
+    final BollingerBands bands = new BollingerBands(20, 2);
+    for (int i = 0; i < 19; i++) {
+      bands.update(PRICES[i]);
+      assertFalse(bands.isReady());
+      assertTrue(Double.isNaN(bands.getUpper()));
+    }
+    bands.update(PRICES[19]);
+    assertTrue(bands.isReady());
+    assertEquals(43.70267177834978, bands.getLower(), DELTA);
+    assertEquals(45.409, bands.getMiddle(), DELTA);
+    assertEquals(47.115328221650216, bands.getUpper(), DELTA);
+    for (int i = 20; i < PRICES.length; i++) {
+      bands.update(PRICES[i]);
+    }
+    assertEquals(42.86184973152178, bands.getLower(), DELTA);
+    assertEquals(45.241, bands.getValue(), DELTA);
+    assertEquals(47.62015026847822, bands.getUpper(), DELTA);
+    assertEquals(0.5, bands.getPercentB(45.241), DELTA);
+  }
+
+  @Test
+  public void testStandardDeviationStaysAccurateOverLongRun() {
+    final int period = 20;
+    final BollingerBands bands = new BollingerBands(period, 2);
+    final double[] window = new double[period];
+    final Random random = new Random(42);
+    for (int i = 0; i < 200_000; i++) {
+      final double price = 60000 + random.nextGaussian();
+      window[i % period] = price;
+      bands.update(price);
+    }
+    double mean = 0;
+    for (final double price : window) {
+      mean += price / period;
+    }
+    double sumOfSquares = 0;
+    for (final double price : window) {
+      sumOfSquares += (price - mean) * (price - mean);
+    }
+    assertEquals(mean, bands.getMiddle(), 1e-9);
+    assertEquals(Math.sqrt(sumOfSquares / period), bands.getStandardDeviation(), 1e-6);
+  }
+
+  @Test
+  public void testFlatPricesGiveZeroWidthBands() {
+    final BollingerBands bands = new BollingerBands(3, 2);
+    bands.update(100);
+    bands.update(100);
+    bands.update(100);
+    assertEquals(100, bands.getLower(), 0);
+    assertEquals(100, bands.getUpper(), 0);
+    assertTrue(Double.isNaN(bands.getPercentB(100)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMultiplierMustNotBeNegative() {
+    new BollingerBands(20, -1);
+  }
+}
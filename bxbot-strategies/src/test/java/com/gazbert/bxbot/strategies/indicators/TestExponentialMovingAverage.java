@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.DELTA;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.PRICES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the Exponential Moving Average behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestExponentialMovingAverage {
+
+  @Test
+  public void testEmaIsSeededWithSmaThenSmoothed() {
+    final ExponentialMovingAverage ema = new ExponentialMovingAverage(10);
+    for (int i = 0; i < 9; i++) {
+      ema.update(PRICES[i]);
+      assertFalse(ema.isReady());
+      assertTrue(Double.isNaN(ema.getValue()));
+    }
+    ema.update(PRICES[9]);
+    assertTrue(ema.isReady());
+    assertEquals(44.779, ema.getValue(), DELTA);
+    ema.update(PRICES[10]);
+    assertEquals(44.981, ema.getValue(), DELTA);
+    for (int i = 11; i <= 20; i++) {
+      ema.update(PRICES[i]);
+    }
+    assertEquals(45.93211732474121, ema.getValue(), DELTA);
+    for (int i = 21; i < PRICES.length; i++) {
+      ema.update(PRICES[i]);
+    }
+    assertEquals(44.11929901522182, ema.getValue(), DELTA);
+  }
+
+  @Test
+  public void testResetClearsEma() {
+    final ExponentialMovingAverage ema = new ExponentialMovingAverage(1);
+    ema.update(5);
+    assertEquals(5, ema.getValue(), 0);
+    ema.update(7);
+    assertEquals(7, ema.getValue(), 0);
+    ema.reset();
+    assertFalse(ema.isReady());
+    ema.update(3);
+    assertEquals(3, ema.getValue(), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPeriodMustBeAtLeastOne() {
+    new ExponentialMovingAverage(0);
+  }
+}
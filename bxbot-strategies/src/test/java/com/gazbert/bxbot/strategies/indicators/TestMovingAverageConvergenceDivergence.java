@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.DELTA;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.PRICES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the Moving Average Convergence Divergence behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestMovingAverageConvergenceDivergence {
+
+  @Test
+  public void testMacdMatchesGoldenValues() {
+    final MovingAverageConvergenceDivergence macd =
+        new MovingAverageConvergenceDivergence(3, 6, 4);
+    for (int i = 0; i < 8; i++) {
+      macd.update(PRICES[i]);
+      assertFalse(macd.isReady());
+      assertTrue(Double.isNaN(macd.getValue()));
+      assertTrue(Double.isNaN(macd.getSignal()));
+    }
+    macd.update(PRICES[8]);
+    assertTrue(macd.isReady());
+    assertEquals(0.41375744047618923, macd.getValue(), DELTA);
+    assertEquals(0.33284040178571495, macd.getSignal(), DELTA);
+    assertEquals(0.41375744047618923 - 0.33284040178571495, macd.getHistogram(), DELTA);
+    macd.update(PRICES[9]);
+    assertEquals(0.4259093324829948, macd.getValue(), DELTA);
+    assertEquals(0.3700679740646269, macd.getSignal(), DELTA);
+    for (int i = 10; i <= 20; i++) {
+      macd.update(PRICES[i]);
+    }
+    assertEquals(0.013987564214694714, macd.getValue(), DELTA);
+    assertEquals(0.030617592464793522, macd.getSignal(), DELTA);
+    for (int i = 21; i < PRICES.length; i++) {
+      macd.update(PRICES[i]);
+    }
+    assertEquals(-0.43773270231185535, macd.getValue(), DELTA);
+    assertEquals(-0.4352098451012443, macd.getSignal(), DELTA);
+  }
+
+  @Test
+  public void testResetClearsMacd() {
+    final MovingAverageConvergenceDivergence macd = new MovingAverageConvergenceDivergence();
+    for (int i = 0; i < 34; i++) {
+      macd.update(PRICES[i % PRICES.length]);
+      assertEquals(i == 33, macd.isReady());
+    }
+    macd.reset();
+    assertFalse(macd.isReady());
+    assertTrue(Double.isNaN(macd.getHistogram()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFastPeriodMustBeLessThanSlowPeriod() {
+    new MovingAverageConvergenceDivergence(26, 12, 9);
+  }
+}
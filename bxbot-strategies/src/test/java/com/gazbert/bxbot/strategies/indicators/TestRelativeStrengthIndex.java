@@ -0,0 +1,83 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.DELTA;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.PRICES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the Relative Strength Index behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestRelativeStrengthIndex {
+
+  @Test
+  public void testRsiMatchesGoldenValues() {
+    final RelativeStrengthIndex rsi = new RelativeStrengthIndex(14);
+    for (int i = 0; i < 14; i++) {
+      rsi.update(PRICES[i]);
+      assertFalse(rsi.isReady());
+      assertTrue(Double.isNaN(rsi.getValue()));
+    }
+    rsi.update(PRICES[14]);
+    assertTrue(rsi.isReady());
+    assertEquals(70.46413502109705, rsi.getValue(), DELTA);
+    rsi.update(PRICES[15]);
+    assertEquals(66.24961855355505, rsi.getValue(), DELTA);
+    for (int i = 16; i <= 20; i++) {
+      rsi.update(PRICES[i]);
+    }
+    assertEquals(62.880718309962404, rsi.getValue(), DELTA);
+    for (int i = 21; i < PRICES.length; i++) {
+      rsi.update(PRICES[i]);
+    }
+    assertEquals(37.788771982057824, rsi.getValue(), DELTA);
+  }
+
+  @Test
+  public void testRsiIsHundredWithOnlyGainsAndFiftyWhenFlat() {
+    final RelativeStrengthIndex rsi = new RelativeStrengthIndex(2);
+    rsi.update(1);
+    rsi.update(2);
+    rsi.update(3);
+    assertEquals(100, rsi.getValue(), 0);
+
+    rsi.reset();
+    rsi.update(5);
+    rsi.update(5);
+    rsi.update(5);
+    assertEquals(50, rsi.getValue(), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPeriodMustBeAtLeastOne() {
+    new RelativeStrengthIndex(0);
+  }
+}
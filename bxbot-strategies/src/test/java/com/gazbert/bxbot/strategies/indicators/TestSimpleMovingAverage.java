@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.DELTA;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.PRICES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.trading.api.Candle;
+import org.junit.Test;
+
+/**
+ * Tests the Simple Moving Average behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestSimpleMovingAverage {
+
+  @Test
+  public void testSmaMatchesGoldenValues() {
+    final SimpleMovingAverage sma = new SimpleMovingAverage(5);
+    for (int i = 0; i < 4; i++) {
+      sma.update(PRICES[i]);
+      assertFalse(sma.isReady());
+      assertTrue(Double.isNaN(sma.getValue()));
+    }
+    for (int i = 4; i < 31; i++) {
+      sma.update(PRICES[i]);
+    }
+    assertTrue(sma.isReady());
+    assertEquals(44.084, sma.getValue(), DELTA);
+    sma.update(PRICES[31]);
+    assertEquals(43.81, sma.getValue(), DELTA);
+    sma.update(new Candle(0L, 0, 0, 0, PRICES[32], 0));
+    assertEquals(43.6, sma.getValue(), DELTA);
+  }
+
+  @Test
+  public void testSmaDoesNotDriftOverLongRun() {
+    final SimpleMovingAverage sma = new SimpleMovingAverage(3);
+    for (int i = 0; i < 1_000_000; i++) {
+      sma.update(60000.1 + (i % 7) * 0.01);
+    }
+    sma.update(1.1);
+    sma.update(2.2);
+    sma.update(3.3);
+    assertEquals(2.2, sma.getValue(), 1e-12);
+  }
+
+  @Test
+  public void testResetClearsSma() {
+    final SimpleMovingAverage sma = new SimpleMovingAverage(2);
+    sma.update(1);
+    sma.update(3);
+    assertEquals(2, sma.getValue(), 0);
+    sma.reset();
+    assertFalse(sma.isReady());
+    sma.update(10);
+    sma.update(20);
+    assertEquals(15, sma.getValue(), 0);
+    assertEquals(2, sma.getPeriod());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPeriodMustBeAtLeastOne() {
+    new SimpleMovingAverage(0);
+  }
+}
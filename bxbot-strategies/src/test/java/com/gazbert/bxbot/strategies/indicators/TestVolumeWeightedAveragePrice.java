@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategies.indicators;
+
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.CLOSES;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.DELTA;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.HIGHS;
+import static com.gazbert.bxbot.strategies.indicators.IndicatorTestData.LOWS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.gazbert.bxbot.trading.api.Candle;
+import org.junit.Test;
+
+/**
+ * Tests the Volume Weighted Average Price behaves as expected.
+ *
+ * @author gazbert
+ */
+public class TestVolumeWeightedAveragePrice {
+
+  private static final double[] VOLUMES = {12.0, 5.5, 8.25, 0.5, 20.0, 3.0, 7.75, 1.25};
+
+  @Test
+  public void testVwapOfCandlesMatchesGoldenValues() {
+    final VolumeWeightedAveragePrice vwap = new VolumeWeightedAveragePrice(4);
+    for (int i = 0; i < 3; i++) {
+      vwap.update(candle(i));
+      assertFalse(vwap.isReady());
+      assertTrue(Double.isNaN(vwap.getValue()));
+    }
+    vwap.update(candle(3));
+    assertTrue(vwap.isReady());
+    assertEquals(48.4273015873016, vwap.getValue(), DELTA);
+    for (int i = 4; i < VOLUMES.length; i++) {
+      vwap.update(candle(i));
+    }
+    assertEquals(48.76510416666667, vwap.getValue(), DELTA);
+  }
+
+  @Test
+  public void testVwapOfTrades() {
+    final VolumeWeightedAveragePrice vwap = new VolumeWeightedAveragePrice(2);
+    vwap.update(100, 1);
+    vwap.update(110, 3);
+    assertEquals(107.5, vwap.getValue(), 0);
+    vwap.update(90, 1);
+    assertEquals(105, vwap.getValue(), 0);
+  }
+
+  @Test
+  public void testVwapIsNotANumberWhenNothingTraded() {
+    final VolumeWeightedAveragePrice vwap = new VolumeWeightedAveragePrice(2);
+    vwap.update(100, 0);
+    vwap.update(101, 0);
+    assertTrue(vwap.isReady());
+    assertTrue(Double.isNaN(vwap.getValue()));
+    vwap.reset();
+    assertFalse(vwap.isReady());
+  }
+
+  private static Candle candle(int index) {
+    return new Candle(0L, 0, HIGHS[index], LOWS[index], CLOSES[index], VOLUMES[index]);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategy.api;
+
+import java.util.Collection;
+
+/**
+ * A Trading Strategy that is executed when 1 of its triggers fires, instead of every trade cycle.
+ *
+ * <p>This is only used if eventDrivenExecution is enabled in the engine.yaml config; otherwise the
+ * strategy is executed every trade cycle like any other. Strategies that do not implement this
+ * interface are executed on a timer set to the trade cycle interval.
+ *
+ * <p>Triggers that fire while the strategy is waiting to be executed, or while it is executing, are
+ * coalesced: the strategy is executed once more, not once per trigger.
+ *
+ * @author gazbert
+ * @since 1.1
+ */
+public interface EventDrivenTradingStrategy extends TradingStrategy {
+
+  /**
+   * Returns the triggers that execute this strategy. Called once by the Trading Engine, after
+   * {@link #init(com.gazbert.bxbot.trading.api.TradingApi, com.gazbert.bxbot.trading.api.Market,
+   * IStrategyConfigItems)}.
+   *
+   * @return the triggers. A strategy with no triggers is never executed.
+   */
+  Collection<StrategyTrigger> getTriggers();
+}
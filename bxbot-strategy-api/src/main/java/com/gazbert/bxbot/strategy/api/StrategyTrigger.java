@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategy.api;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import java.math.BigDecimal;
+
+/**
+ * A condition that makes the Trading Engine execute an {@link EventDrivenTradingStrategy}.
+ *
+ * <p>Triggers are created using the static factory methods:
+ *
+ * <ul>
+ *   <li>{@link #onBestPriceChange(String)} - the best bid or best ask price on a market changes.
+ *   <li>{@link #onPriceMove(String, BigDecimal)} - the mid price on a market moves by at least a
+ *       percentage since the trigger last fired.
+ *   <li>{@link #onOrderFill(String)} - 1 of the bot's open orders on a market is filled.
+ *   <li>{@link #onTimer(long)} - a fixed interval elapses.
+ * </ul>
+ *
+ * @author gazbert
+ * @since 1.1
+ */
+public final class StrategyTrigger {
+
+  /** The type of trigger. */
+  public enum Type {
+    BEST_PRICE_CHANGE,
+    PRICE_MOVE,
+    ORDER_FILL,
+    TIMER
+  }
+
+  private final Type type;
+  private final String marketId;
+  private final BigDecimal percentage;
+  private final long intervalMillis;
+
+  private StrategyTrigger(Type type, String marketId, BigDecimal percentage, long intervalMillis) {
+    this.type = type;
+    this.marketId = marketId;
+    this.percentage = percentage;
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Fires when the best bid or best ask price on the market changes.
+   *
+   * @param marketId the id of the market.
+   * @return the trigger.
+   */
+  public static StrategyTrigger onBestPriceChange(String marketId) {
+    return new StrategyTrigger(Type.BEST_PRICE_CHANGE, assertMarketId(marketId), null, 0);
+  }
+
+  /**
+   * Fires when the mid price on the market has moved by at least the given percentage, up or down,
+   * since the trigger last fired. The first price seen is the starting point.
+   *
+   * @param marketId the id of the market.
+   * @param percentage the percentage move, e.g. 0.5 for a 0.5% move. Must be more than 0.
+   * @return the trigger.
+   * @throws IllegalArgumentException if the percentage is not more than 0.
+   */
+  public static StrategyTrigger onPriceMove(String marketId, BigDecimal percentage) {
+    if (percentage == null || percentage.signum() <= 0) {
+      throw new IllegalArgumentException(
+          "Price move percentage must be more than 0: " + percentage);
+    }
+    return new StrategyTrigger(Type.PRICE_MOVE, assertMarketId(marketId), percentage, 0);
+  }
+
+  /**
+   * Fires when 1 of the bot's open orders on the market is filled, i.e. it is no longer open and
+   * the bot did not cancel it.
+   *
+   * @param marketId the id of the market.
+   * @return the trigger.
+   */
+  public static StrategyTrigger onOrderFill(String marketId) {
+    return new StrategyTrigger(Type.ORDER_FILL, assertMarketId(marketId), null, 0);
+  }
+
+  /**
+   * Fires every time the interval elapses.
+   *
+   * @param intervalMillis the interval in milliseconds. Must be more than 0.
+   * @return the trigger.
+   * @throws IllegalArgumentException if the interval is not more than 0.
+   */
+  public static StrategyTrigger onTimer(long intervalMillis) {
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException("Timer interval must be more than 0: " + intervalMillis);
+    }
+    return new StrategyTrigger(Type.TIMER, null, null, intervalMillis);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns the id of the market the trigger watches.
+   *
+   * @return the market id, or null for a timer.
+   */
+  public String getMarketId() {
+    return marketId;
+  }
+
+  /**
+   * Returns the percentage move for a price move trigger.
+   *
+   * @return the percentage, or null for other triggers.
+   */
+  public BigDecimal getPercentage() {
+    return percentage;
+  }
+
+  /**
+   * Returns the interval for a timer.
+   *
+   * @return the interval in milliseconds, or 0 for other triggers.
+   */
+  public long getIntervalMillis() {
+    return intervalMillis;
+  }
+
+  private static String assertMarketId(String marketId) {
+    if (marketId == null || marketId.isEmpty()) {
+      throw new IllegalArgumentException("Market id must be set");
+    }
+    return marketId;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final StrategyTrigger that = (StrategyTrigger) o;
+    return intervalMillis == that.intervalMillis
+        && type == that.type
+        && Objects.equal(marketId, that.marketId)
+        && (percentage == null
+            ? that.percentage == null
+            : that.percentage != null && percentage.compareTo(that.percentage) == 0);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(type, marketId, intervalMillis);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .omitNullValues()
+        .add("type", type)
+        .add("marketId", marketId)
+        .add("percentage", percentage)
+        .add("intervalMillis", intervalMillis == 0 ? null : intervalMillis)
+        .toString();
+  }
+}
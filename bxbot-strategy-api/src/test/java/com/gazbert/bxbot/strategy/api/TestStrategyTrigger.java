@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.strategy.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import org.junit.Test;
+
+/**
+ * Tests Strategy Triggers are created as expected.
+ *
+ * @author gazbert
+ */
+public class TestStrategyTrigger {
+
+  private static final String MARKET_ID = "btcusd";
+
+  @Test
+  public void testBestPriceChangeTriggerIsCreated() {
+    final StrategyTrigger trigger = StrategyTrigger.onBestPriceChange(MARKET_ID);
+    assertEquals(StrategyTrigger.Type.BEST_PRICE_CHANGE, trigger.getType());
+    assertEquals(MARKET_ID, trigger.getMarketId());
+    assertNull(trigger.getPercentage());
+    assertEquals(0, trigger.getIntervalMillis());
+  }
+
+  @Test
+  public void testPriceMoveTriggerIsCreated() {
+    final StrategyTrigger trigger = StrategyTrigger.onPriceMove(MARKET_ID, new BigDecimal("0.5"));
+    assertEquals(StrategyTrigger.Type.PRICE_MOVE, trigger.getType());
+    assertEquals(MARKET_ID, trigger.getMarketId());
+    assertEquals(new BigDecimal("0.5"), trigger.getPercentage());
+  }
+
+  @Test
+  public void testOrderFillTriggerIsCreated() {
+    final StrategyTrigger trigger = StrategyTrigger.onOrderFill(MARKET_ID);
+    assertEquals(StrategyTrigger.Type.ORDER_FILL, trigger.getType());
+    assertEquals(MARKET_ID, trigger.getMarketId());
+  }
+
+  @Test
+  public void testTimerTriggerIsCreated() {
+    final StrategyTrigger trigger = StrategyTrigger.onTimer(1500);
+    assertEquals(StrategyTrigger.Type.TIMER, trigger.getType());
+    assertNull(trigger.getMarketId());
+    assertEquals(1500, trigger.getIntervalMillis());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPriceMoveTriggerNeedsPositivePercentage() {
+    StrategyTrigger.onPriceMove(MARKET_ID, BigDecimal.ZERO);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTimerTriggerNeedsPositiveInterval() {
+    StrategyTrigger.onTimer(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMarketTriggerNeedsMarketId() {
+    StrategyTrigger.onOrderFill(null);
+  }
+
+  @Test
+  public void testEqualsWorksAsExpected() {
+    assertEquals(
+        StrategyTrigger.onPriceMove(MARKET_ID, new BigDecimal("0.5")),
+        StrategyTrigger.onPriceMove(MARKET_ID, new BigDecimal("0.50")));
+    assertNotEquals(
+        StrategyTrigger.onPriceMove(MARKET_ID, new BigDecimal("0.5")),
+        StrategyTrigger.onPriceMove(MARKET_ID, new BigDecimal("1.0")));
+    assertNotEquals(
+        StrategyTrigger.onBestPriceChange(MARKET_ID), StrategyTrigger.onOrderFill(MARKET_ID));
+    assertEquals(StrategyTrigger.onTimer(100), StrategyTrigger.onTimer(100));
+  }
+
+  @Test
+  public void testToStringWorksAsExpected() {
+    assertEquals(
+        "StrategyTrigger{type=PRICE_MOVE, marketId=btcusd, percentage=0.5}",
+        StrategyTrigger.onPriceMove(MARKET_ID, new BigDecimal("0.5")).toString());
+    assertEquals(
+        "StrategyTrigger{type=TIMER, intervalMillis=100}", StrategyTrigger.onTimer(100).toString());
+  }
+}
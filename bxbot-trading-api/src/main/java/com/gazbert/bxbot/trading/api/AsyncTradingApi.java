@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * BX-bot's asynchronous Trading API.
+ *
+ * <p>This is the non-blocking version of the {@link TradingApi}. Every call returns straight away
+ * with a {@link CompletableFuture} that is completed when the exchange responds. This lets a
+ * Trading Strategy, or the Trading Engine, fan out requests across many markets without tying up
+ * a thread per in-flight request.
+ *
+ * <p>If the call fails, the future is completed exceptionally with the same {@link
+ * ExchangeNetworkException} or {@link TradingApiException} the blocking call would have thrown.
+ * Use {@link #join(CompletableFuture)} to wait for a result and get these exceptions back.
+ *
+ * <p>Exchange Adapters that only implement the blocking {@link TradingApi} can be adapted using
+ * {@link #from(TradingApi)}.
+ *
+ * @author gazbert
+ * @since 1.3
+ */
+public interface AsyncTradingApi extends TradingApi {
+
+  /**
+   * Fetches latest <em>market</em> orders for a given market.
+   *
+   * @param marketId the id of the market.
+   * @return a future for the market order book.
+   * @since 1.3
+   */
+  CompletableFuture<MarketOrderBook> getMarketOrdersAsync(String marketId);
+
+  /**
+   * Fetches latest <em>market</em> orders for several markets. The requests are sent in parallel.
+   *
+   * @param marketIds the ids of the markets.
+   * @return a future for the market order books keyed by market id. It is completed exceptionally
+   *     if any of the requests fail.
+   * @since 1.3
+   */
+  default CompletableFuture<Map<String, MarketOrderBook>> getMarketOrdersForMarketsAsync(
+      Collection<String> marketIds) {
+    final List<String> markets = new ArrayList<>(marketIds);
+    final List<CompletableFuture<MarketOrderBook>> requests = new ArrayList<>(markets.size());
+    for (final String marketId : markets) {
+      requests.add(getMarketOrdersAsync(marketId));
+    }
+    return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0]))
+        .thenApply(
+            allDone -> {
+              final Map<String, MarketOrderBook> marketOrderBooks = new LinkedHashMap<>();
+              for (int i = 0; i < markets.size(); i++) {
+                marketOrderBooks.put(markets.get(i), requests.get(i).join());
+              }
+              return marketOrderBooks;
+            });
+  }
+
+  /**
+   * Fetches <em>your</em> current open orders, i.e. the orders placed by the bot.
+   *
+   * @param marketId the id of the market.
+   * @return a future for your current open orders.
+   * @since 1.3
+   */
+  CompletableFuture<List<OpenOrder>> getYourOpenOrdersAsync(String marketId);
+
+  /**
+   * Places an order on the exchange.
+   *
+   * @param marketId the id of the market.
+   * @param orderType Value must be {@link OrderType#BUY} or {@link OrderType#SELL}.
+   * @param quantity amount of units you are buying/selling in this order.
+   * @param price the price per unit you are buying/selling at.
+   * @return a future for the id of the order.
+   * @since 1.3
+   */
+  CompletableFuture<String> createOrderAsync(
+      String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price);
+
+  /**
+   * Cancels your existing order on the exchange.
+   *
+   * @param orderId your order Id.
+   * @param marketId the id of the market the order was placed on, e.g. btc_usd
+   * @return a future that is true if order cancelled ok, false otherwise.
+   * @since 1.3
+   */
+  CompletableFuture<Boolean> cancelOrderAsync(String orderId, String marketId);
+
+  /**
+   * Fetches the latest price for a given market.
+   *
+   * @param marketId the id of the market.
+   * @return a future for the latest market price.
+   * @since 1.3
+   */
+  CompletableFuture<BigDecimal> getLatestMarketPriceAsync(String marketId);
+
+  /**
+   * Fetches the balance of your wallets on the exchange.
+   *
+   * @return a future for your wallet balance info.
+   * @since 1.3
+   */
+  CompletableFuture<BalanceInfo> getBalanceInfoAsync();
+
+  /**
+   * Returns the exchange Ticker a given market id.
+   *
+   * @param marketId the id of the market.
+   * @return a future for the exchange Ticker.
+   * @since 1.3
+   */
+  CompletableFuture<Ticker> getTickerAsync(String marketId);
+
+  /**
+   * Returns an asynchronous view of the given Trading API.
+   *
+   * <p>If the Trading API is already asynchronous, it is returned as is. Otherwise, the blocking
+   * calls are run on a shared, bounded pool of daemon threads, so the caller is never blocked. If
+   * the pool is saturated, the returned futures fail with an {@link ExchangeNetworkException}.
+   *
+   * @param tradingApi the Trading API.
+   * @return the asynchronous Trading API.
+   * @since 1.3
+   */
+  static AsyncTradingApi from(TradingApi tradingApi) {
+    if (tradingApi instanceof AsyncTradingApi) {
+      return (AsyncTradingApi) tradingApi;
+    }
+    return bridge(tradingApi);
+  }
+
+  /**
+   * Returns an asynchronous Trading API that runs the blocking calls of the given Trading API on a
+   * shared, bounded pool of daemon threads.
+   *
+   * @param tradingApi the blocking Trading API.
+   * @return the asynchronous Trading API.
+   * @since 1.3
+   */
+  static AsyncTradingApi bridge(TradingApi tradingApi) {
+    return new BlockingTradingApiBridge(tradingApi, BlockingTradingApiBridge.defaultExecutor());
+  }
+
+  /**
+   * Returns an asynchronous Trading API that runs the blocking calls of the given Trading API on
+   * the given executor.
+   *
+   * @param tradingApi the blocking Trading API.
+   * @param executor the executor to run the blocking calls on.
+   * @return the asynchronous Trading API.
+   * @since 1.3
+   */
+  static AsyncTradingApi bridge(TradingApi tradingApi, Executor executor) {
+    return new BlockingTradingApiBridge(tradingApi, executor);
+  }
+
+  /**
+   * Waits for a future returned by the asynchronous Trading API and returns its result.
+   *
+   * @param future the future to wait for.
+   * @param <T> the type of the result.
+   * @return the result.
+   * @throws ExchangeNetworkException if a network error occurred trying to connect to the exchange,
+   *     or the calling thread was interrupted while waiting.
+   * @throws TradingApiException if the API call failed for any reason other than a network error.
+   * @since 1.3
+   */
+  static <T> T join(CompletableFuture<T> future)
+      throws ExchangeNetworkException, TradingApiException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExchangeNetworkException("Interrupted waiting for the exchange to respond", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      while (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof ExchangeNetworkException) {
+        throw (ExchangeNetworkException) cause;
+      }
+      if (cause instanceof TradingApiException) {
+        throw (TradingApiException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new TradingApiException("Asynchronous Trading API call failed", cause);
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adapts a blocking {@link TradingApi} to the {@link AsyncTradingApi} by running each blocking call
+ * on an executor and completing a future with the outcome.
+ *
+ * @author gazbert
+ * @since 1.3
+ */
+final class BlockingTradingApiBridge implements AsyncTradingApi {
+
+  private final TradingApi tradingApi;
+  private final Executor executor;
+
+  BlockingTradingApiBridge(TradingApi tradingApi, Executor executor) {
+    this.tradingApi = tradingApi;
+    this.executor = executor;
+  }
+
+  static Executor defaultExecutor() {
+    return DefaultExecutorHolder.EXECUTOR;
+  }
+
+  @Override
+  public CompletableFuture<MarketOrderBook> getMarketOrdersAsync(String marketId) {
+    return call(() -> tradingApi.getMarketOrders(marketId));
+  }
+
+  @Override
+  public CompletableFuture<List<OpenOrder>> getYourOpenOrdersAsync(String marketId) {
+    return call(() -> tradingApi.getYourOpenOrders(marketId));
+  }
+
+  @Override
+  public CompletableFuture<String> createOrderAsync(
+      String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price) {
+    return call(() -> tradingApi.createOrder(marketId, orderType, quantity, price));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> cancelOrderAsync(String orderId, String marketId) {
+    return call(() -> tradingApi.cancelOrder(orderId, marketId));
+  }
+
+  @Override
+  public CompletableFuture<BigDecimal> getLatestMarketPriceAsync(String marketId) {
+    return call(() -> tradingApi.getLatestMarketPrice(marketId));
+  }
+
+  @Override
+  public CompletableFuture<BalanceInfo> getBalanceInfoAsync() {
+    return call(tradingApi::getBalanceInfo);
+  }
+
+  @Override
+  public CompletableFuture<Ticker> getTickerAsync(String marketId) {
+    return call(() -> tradingApi.getTicker(marketId));
+  }
+
+  @Override
+  public String getVersion() {
+    return tradingApi.getVersion();
+  }
+
+  @Override
+  public String getImplName() {
+    return tradingApi.getImplName();
+  }
+
+  @Override
+  public MarketOrderBook getMarketOrders(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.getMarketOrders(marketId);
+  }
+
+  @Override
+  public List<OpenOrder> getYourOpenOrders(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.getYourOpenOrders(marketId);
+  }
+
+  @Override
+  public Map<String, List<OpenOrder>> getYourOpenOrdersForMarkets(Collection<String> marketIds)
+      throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.getYourOpenOrdersForMarkets(marketIds);
+  }
+
+  @Override
+  public BigDecimal roundValue(BigDecimal value) {
+    return tradingApi.roundValue(value);
+  }
+
+  @Override
+  public BigDecimal roundPrice(String marketId, BigDecimal price) {
+    return tradingApi.roundPrice(marketId, price);
+  }
+
+  @Override
+  public BigDecimal roundQuantity(String marketId, BigDecimal quantity) {
+    return tradingApi.roundQuantity(marketId, quantity);
+  }
+
+  @Override
+  public String createOrder(
+      String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price)
+      throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.createOrder(marketId, orderType, quantity, price);
+  }
+
+  @Override
+  public boolean cancelOrder(String orderId, String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.cancelOrder(orderId, marketId);
+  }
+
+  @Override
+  public List<OrderResult> createOrders(List<OrderRequest> orderRequests)
+      throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.createOrders(orderRequests);
+  }
+
+  @Override
+  public List<OrderResult> cancelOrders(List<String> orderIds, String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.cancelOrders(orderIds, marketId);
+  }
+
+  @Override
+  public List<OrderResult> cancelAllOrders(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.cancelAllOrders(marketId);
+  }
+
+  @Override
+  public BigDecimal getLatestMarketPrice(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.getLatestMarketPrice(marketId);
+  }
+
+  @Override
+  public BalanceInfo getBalanceInfo() throws ExchangeNetworkException, TradingApiException {
+    return tradingApi.getBalanceInfo();
+  }
+
+  @Override
+  public BigDecimal getPercentageOfBuyOrderTakenForExchangeFee(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return tradingApi.getPercentageOfBuyOrderTakenForExchangeFee(marketId);
+  }
+
+  @Override
+  public BigDecimal getPercentageOfSellOrderTakenForExchangeFee(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return tradingApi.getPercentageOfSellOrderTakenForExchangeFee(marketId);
+  }
+
+  @Override
+  public MarketMetadata getMarketMetadata(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return tradingApi.getMarketMetadata(marketId);
+  }
+
+  @Override
+  public Ticker getTicker(String marketId) throws TradingApiException, ExchangeNetworkException {
+    return tradingApi.getTicker(marketId);
+  }
+
+  private <T> CompletableFuture<T> call(TradingApiCall<T> tradingApiCall) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(
+          () -> {
+            try {
+              future.complete(tradingApiCall.call());
+            } catch (Exception e) {
+              future.completeExceptionally(e);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(
+          new ExchangeNetworkException("Too many requests in flight to the exchange", e));
+    }
+    return future;
+  }
+
+  /*
+   * A blocking Trading API call.
+   */
+  @FunctionalInterface
+  private interface TradingApiCall<T> {
+    T call() throws ExchangeNetworkException, TradingApiException;
+  }
+
+  /*
+   * Lazily creates the shared pool of daemon threads used when no executor is given. The pool and
+   * its queue are bounded: once both are full, calls fail fast instead of piling up threads.
+   */
+  private static final class DefaultExecutorHolder {
+
+    private static final int MAX_THREADS = 32;
+    private static final int MAX_QUEUED_CALLS = 1024;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private static ThreadPoolExecutor createExecutor() {
+      final ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(
+              MAX_THREADS,
+              MAX_THREADS,
+              IDLE_THREAD_TIMEOUT_SECONDS,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(MAX_QUEUED_CALLS),
+              runnable -> {
+                final Thread thread =
+                    new Thread(
+                        runnable, "bxbot-async-trading-api-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+  }
+}
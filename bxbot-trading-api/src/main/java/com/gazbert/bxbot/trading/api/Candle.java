@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Holds an OHLCV candle: the open, high, low and close price, and the volume traded, for an
+ * interval of time.
+ *
+ * <p>Candles are for analysis, so the prices and volume are doubles. Use the prices from the
+ * {@link TradingApi} for orders.
+ *
+ * @author gazbert
+ * @since 1.7
+ * @see CandleApi
+ */
+public final class Candle {
+
+  private final long openTime;
+  private final double open;
+  private final double high;
+  private final double low;
+  private final double close;
+  private final double volume;
+
+  /**
+   * Creates the candle.
+   *
+   * @param openTime the time the interval starts, in milliseconds since the epoch.
+   * @param open the first price in the interval.
+   * @param high the highest price in the interval.
+   * @param low the lowest price in the interval.
+   * @param close the last price in the interval.
+   * @param volume the quantity traded in the interval.
+   */
+  public Candle(long openTime, double open, double high, double low, double close, double volume) {
+    this.openTime = openTime;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+  }
+
+  /**
+   * Returns the time the interval starts.
+   *
+   * @return the open time in milliseconds since the epoch.
+   */
+  public long getOpenTime() {
+    return openTime;
+  }
+
+  /**
+   * Returns the first price in the interval.
+   *
+   * @return the open price.
+   */
+  public double getOpen() {
+    return open;
+  }
+
+  /**
+   * Returns the highest price in the interval.
+   *
+   * @return the high price.
+   */
+  public double getHigh() {
+    return high;
+  }
+
+  /**
+   * Returns the lowest price in the interval.
+   *
+   * @return the low price.
+   */
+  public double getLow() {
+    return low;
+  }
+
+  /**
+   * Returns the last price in the interval. For the candle of the current interval, this is the
+   * latest price.
+   *
+   * @return the close price.
+   */
+  public double getClose() {
+    return close;
+  }
+
+  /**
+   * Returns the quantity traded in the interval.
+   *
+   * @return the volume in the base currency, or 0 if no trades were seen.
+   */
+  public double getVolume() {
+    return volume;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("openTime", openTime)
+        .add("open", open)
+        .add("high", high)
+        .add("low", low)
+        .add("close", close)
+        .add("volume", volume)
+        .toString();
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import java.util.List;
+
+/**
+ * BX-bot's candle API.
+ *
+ * <p>This sits alongside the {@link TradingApi}. The Trading Engine folds the prices it sees for
+ * each market - streamed trades, and the tickers and latest prices fetched from the exchange -
+ * into OHLCV candles for every {@link CandleInterval} as they arrive. Reading them does not call
+ * the exchange or recompute anything.
+ *
+ * <p>A fixed number of candles is kept for each market and interval; older candles are dropped.
+ * There is no candle for an interval in which no price was seen.
+ *
+ * @author gazbert
+ * @since 1.7
+ */
+public interface CandleApi {
+
+  /**
+   * Returns the latest candles for a given market.
+   *
+   * @param marketId the id of the market.
+   * @param interval the candle interval.
+   * @param count the most candles to return.
+   * @return the candles, oldest first. The last one is for the current interval, so it changes
+   *     until the interval ends. Empty if no prices have been seen for the market.
+   */
+  List<Candle> getCandles(String marketId, CandleInterval interval, int count);
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+/**
+ * Defines the intervals that candles are built for.
+ *
+ * @author gazbert
+ * @since 1.7
+ * @see CandleApi
+ */
+public enum CandleInterval {
+
+  /** 1 second candles. */
+  ONE_SECOND("1s", 1000L),
+
+  /** 1 minute candles. */
+  ONE_MINUTE("1m", 60 * 1000L),
+
+  /** 5 minute candles. */
+  FIVE_MINUTES("5m", 5 * 60 * 1000L),
+
+  /** 1 hour candles. */
+  ONE_HOUR("1h", 60 * 60 * 1000L);
+
+  private final String interval;
+  private final long millis;
+
+  CandleInterval(String interval, long millis) {
+    this.interval = interval;
+    this.millis = millis;
+  }
+
+  public String getStringValue() {
+    return interval;
+  }
+
+  public long getMillis() {
+    return millis;
+  }
+
+  /**
+   * Returns the interval for a string value, e.g. 1m.
+   *
+   * @param interval the string value of the interval.
+   * @return the interval.
+   * @throws IllegalArgumentException if there is no interval for the string value.
+   */
+  public static CandleInterval fromStringValue(String interval) {
+    for (final CandleInterval candleInterval : values()) {
+      if (candleInterval.interval.equals(interval)) {
+        return candleInterval;
+      }
+    }
+    throw new IllegalArgumentException("Unknown candle interval: " + interval);
+  }
+}
@@ -34,8 +34,11 @@ package com.gazbert.bxbot.trading.api;
  * your Trading Strategy and let the Trading Engine execute your Trading Strategy at the next trade
  * cycle. This allows the you to recover from temporary network issues.
  *
+ * <p>The inbuilt Exchange Adapters also throw this exception, without calling the exchange, when
+ * calls to an endpoint have failed repeatedly and its circuit breaker is open.
+ *
  * <p>If the Trading Engine receives these exceptions from directly calling an Exchange Adapter
- * method, it will log the event and sleep until the next trade cycle.
+ * method, it will log the event and back off before the next trade cycle.
  *
  * @author gazbert
  * @since 1.0
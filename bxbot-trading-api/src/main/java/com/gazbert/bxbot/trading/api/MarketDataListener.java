@@ -0,0 +1,47 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+/**
+ * Receives market data updates from a {@link StreamingTradingApi} subscription.
+ *
+ * <p>Updates are delivered on the thread that reads the stream from the exchange. Listeners should
+ * return quickly and must not block; hand off any long running work to another thread.
+ *
+ * @param <T> the type of update, e.g. {@link MarketOrderBook}, {@link Ticker} or {@link
+ *     MarketTrade}
+ * @author gazbert
+ * @since 1.4
+ */
+@FunctionalInterface
+public interface MarketDataListener<T> {
+
+  /**
+   * Called when an update is received for the market.
+   *
+   * @param marketId the id of the market.
+   * @param update the update.
+   */
+  void onUpdate(String marketId, T update);
+}
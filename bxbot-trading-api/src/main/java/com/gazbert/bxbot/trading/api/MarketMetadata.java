@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import com.google.common.base.MoreObjects;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Holds the fees and trading rules of a market: the percentage of a buy and a sell order taken as
+ * the exchange fee, the tick size that prices must be a multiple of, and the lot size that order
+ * quantities must be a multiple of.
+ *
+ * <p>Not all exchanges provide the tick and lot sizes. If the exchange does not provide them, they
+ * are null, and prices and quantities are rounded to 8 decimal places.
+ *
+ * @author gazbert
+ * @since 1.6
+ * @see TradingApi#getMarketMetadata(String)
+ */
+public final class MarketMetadata {
+
+  /** The number of decimal places values are rounded to if the exchange does not say. */
+  public static final int DEFAULT_DECIMAL_PLACES = 8;
+
+  private final String marketId;
+  private final BigDecimal buyFeePercentage;
+  private final BigDecimal sellFeePercentage;
+  private final BigDecimal tickSize;
+  private final BigDecimal lotSize;
+
+  /**
+   * Creates the market metadata.
+   *
+   * @param marketId the id of the market.
+   * @param buyFeePercentage the percentage of a buy order taken as the exchange fee, e.g. 0.0025
+   *     for 0.25%.
+   * @param sellFeePercentage the percentage of a sell order taken as the exchange fee.
+   * @param tickSize the price increment, e.g. 0.01. This can be null.
+   * @param lotSize the order quantity increment, e.g. 0.00000001. This can be null.
+   */
+  public MarketMetadata(
+      String marketId,
+      BigDecimal buyFeePercentage,
+      BigDecimal sellFeePercentage,
+      BigDecimal tickSize,
+      BigDecimal lotSize) {
+    this.marketId = marketId;
+    this.buyFeePercentage = buyFeePercentage;
+    this.sellFeePercentage = sellFeePercentage;
+    this.tickSize = tickSize;
+    this.lotSize = lotSize;
+  }
+
+  /**
+   * Returns the id of the market.
+   *
+   * @return the id of the market.
+   */
+  public String getMarketId() {
+    return marketId;
+  }
+
+  /**
+   * Returns the percentage of a buy order taken as the exchange fee.
+   *
+   * @return the buy fee, e.g. 0.0025 for 0.25%.
+   */
+  public BigDecimal getBuyFeePercentage() {
+    return buyFeePercentage;
+  }
+
+  /**
+   * Returns the percentage of a sell order taken as the exchange fee.
+   *
+   * @return the sell fee, e.g. 0.0025 for 0.25%.
+   */
+  public BigDecimal getSellFeePercentage() {
+    return sellFeePercentage;
+  }
+
+  /**
+   * Returns the price increment.
+   *
+   * @return the tick size if the exchange provides it, null otherwise.
+   */
+  public BigDecimal getTickSize() {
+    return tickSize;
+  }
+
+  /**
+   * Returns the order quantity increment.
+   *
+   * @return the lot size if the exchange provides it, null otherwise.
+   */
+  public BigDecimal getLotSize() {
+    return lotSize;
+  }
+
+  /**
+   * Returns the number of decimal places in a price.
+   *
+   * @return the price precision.
+   */
+  public int getPricePrecision() {
+    return precisionOf(tickSize);
+  }
+
+  /**
+   * Returns the number of decimal places in an order quantity.
+   *
+   * @return the quantity precision.
+   */
+  public int getQuantityPrecision() {
+    return precisionOf(lotSize);
+  }
+
+  /**
+   * Rounds a price to the nearest tick.
+   *
+   * @param price the price.
+   * @return the rounded price.
+   */
+  public BigDecimal roundPrice(BigDecimal price) {
+    return round(price, tickSize, RoundingMode.HALF_UP);
+  }
+
+  /**
+   * Rounds an order quantity down to a whole number of lots, so the order never needs more than
+   * the quantity.
+   *
+   * @param quantity the quantity.
+   * @return the rounded quantity.
+   */
+  public BigDecimal roundQuantity(BigDecimal quantity) {
+    return round(quantity, lotSize, RoundingMode.DOWN);
+  }
+
+  private static int precisionOf(BigDecimal increment) {
+    return increment == null
+        ? DEFAULT_DECIMAL_PLACES
+        : Math.max(0, increment.stripTrailingZeros().scale());
+  }
+
+  private static BigDecimal round(BigDecimal value, BigDecimal increment, RoundingMode mode) {
+    if (increment == null || increment.signum() <= 0) {
+      return value.setScale(DEFAULT_DECIMAL_PLACES, RoundingMode.HALF_UP);
+    }
+    return value
+        .divide(increment, 0, mode)
+        .multiply(increment)
+        .setScale(precisionOf(increment), RoundingMode.HALF_UP);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("marketId", marketId)
+        .add("buyFeePercentage", buyFeePercentage)
+        .add("sellFeePercentage", sellFeePercentage)
+        .add("tickSize", tickSize)
+        .add("lotSize", lotSize)
+        .toString();
+  }
+}
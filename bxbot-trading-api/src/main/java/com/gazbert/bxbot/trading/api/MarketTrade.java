@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import java.math.BigDecimal;
+
+/**
+ * Represents a trade that has taken place on the exchange.
+ *
+ * <p>The type of trade (buy/sell) is the side of the taker, i.e. the order that crossed the spread.
+ * If the exchange does not provide a value, null is returned.
+ *
+ * @author gazbert
+ * @since 1.4
+ */
+public interface MarketTrade {
+
+  /**
+   * Returns the id of the trade.
+   *
+   * @return the id of the trade if the exchange provides it, null otherwise.
+   */
+  String getId();
+
+  /**
+   * Returns the type of trade. Value will be {@link OrderType#BUY} or {@link OrderType#SELL}.
+   *
+   * @return the type of trade.
+   */
+  OrderType getType();
+
+  /**
+   * Returns the price the trade took place at.
+   *
+   * @return the price of the trade.
+   */
+  BigDecimal getPrice();
+
+  /**
+   * Returns the quantity traded.
+   *
+   * @return the quantity of the trade.
+   */
+  BigDecimal getQuantity();
+
+  /**
+   * Returns the time the trade took place.
+   *
+   * @return the time of the trade in UNIX time in millis if the exchange provides it, null
+   *     otherwise.
+   */
+  Long getTimestamp();
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import com.google.common.base.MoreObjects;
+import java.math.BigDecimal;
+
+/**
+ * An order to place on the exchange as part of a batch.
+ *
+ * @author gazbert
+ * @since 1.5
+ * @see TradingApi#createOrders(java.util.List)
+ */
+public final class OrderRequest {
+
+  private final String marketId;
+  private final OrderType orderType;
+  private final BigDecimal quantity;
+  private final BigDecimal price;
+
+  /**
+   * Creates a new order request.
+   *
+   * @param marketId the id of the market.
+   * @param orderType Value must be {@link OrderType#BUY} or {@link OrderType#SELL}.
+   * @param quantity amount of units you are buying/selling in this order.
+   * @param price the price per unit you are buying/selling at.
+   */
+  public OrderRequest(
+      String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price) {
+    this.marketId = marketId;
+    this.orderType = orderType;
+    this.quantity = quantity;
+    this.price = price;
+  }
+
+  /**
+   * Returns the id of the market.
+   *
+   * @return the id of the market.
+   */
+  public String getMarketId() {
+    return marketId;
+  }
+
+  /**
+   * Returns the type of order.
+   *
+   * @return the type of order.
+   */
+  public OrderType getOrderType() {
+    return orderType;
+  }
+
+  /**
+   * Returns the amount of units you are buying/selling in this order.
+   *
+   * @return the quantity.
+   */
+  public BigDecimal getQuantity() {
+    return quantity;
+  }
+
+  /**
+   * Returns the price per unit you are buying/selling at.
+   *
+   * @return the price.
+   */
+  public BigDecimal getPrice() {
+    return price;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("marketId", marketId)
+        .add("orderType", orderType)
+        .add("quantity", quantity)
+        .add("price", price)
+        .toString();
+  }
+}
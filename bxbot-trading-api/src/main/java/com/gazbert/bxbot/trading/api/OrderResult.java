@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The outcome of a single order in a batch of orders sent to the exchange.
+ *
+ * <p>A batch call does not fail as a whole if some of its orders fail. Instead, there is a result
+ * for every order in the batch, in the same order as the batch, so you can see which ones made it.
+ *
+ * @author gazbert
+ * @since 1.5
+ */
+public final class OrderResult {
+
+  private final String orderId;
+  private final boolean success;
+  private final Exception failure;
+
+  private OrderResult(String orderId, boolean success, Exception failure) {
+    this.orderId = orderId;
+    this.success = success;
+    this.failure = failure;
+  }
+
+  /**
+   * Creates the result for an order the exchange accepted.
+   *
+   * @param orderId the id of the order.
+   * @return the result.
+   */
+  public static OrderResult succeeded(String orderId) {
+    return new OrderResult(orderId, true, null);
+  }
+
+  /**
+   * Creates the result for an order the exchange did not accept.
+   *
+   * @param orderId the id of the order, or null if the order was never created.
+   * @param failure the reason the order failed, or null if the exchange just said no.
+   * @return the result.
+   */
+  public static OrderResult failed(String orderId, Exception failure) {
+    return new OrderResult(orderId, false, failure);
+  }
+
+  /**
+   * Returns the id of the order. For a created order this is the id the exchange gave it; for a
+   * cancelled order it is the id that was cancelled.
+   *
+   * @return the id of the order, or null if the order was never created.
+   */
+  public String getOrderId() {
+    return orderId;
+  }
+
+  /**
+   * Returns true if the exchange accepted the order.
+   *
+   * @return true if the order succeeded, false otherwise.
+   */
+  public boolean isSuccess() {
+    return success;
+  }
+
+  /**
+   * Returns why the order failed. This is the {@link ExchangeNetworkException} or {@link
+   * TradingApiException} the single order call would have thrown.
+   *
+   * @return the failure, or null if the order succeeded or the exchange gave no reason.
+   */
+  public Exception getFailure() {
+    return failure;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("orderId", orderId)
+        .add("success", success)
+        .add("failure", failure)
+        .toString();
+  }
+}
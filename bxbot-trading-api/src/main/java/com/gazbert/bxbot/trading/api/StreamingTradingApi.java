@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+/**
+ * BX-bot's streaming market data API.
+ *
+ * <p>This sits alongside the {@link TradingApi}. Instead of polling the exchange for the order
+ * book or ticker, you subscribe to a market and the exchange pushes updates as they happen. The
+ * Exchange Adapter keeps a local copy of the order book up to date from these updates, so the
+ * latest state can be read without a network round trip.
+ *
+ * <p>If the connection to the exchange is lost, the local state is thrown away and the latest
+ * order book and ticker calls return null until it has been rebuilt. Use the {@link TradingApi}
+ * calls in the meantime.
+ *
+ * @author gazbert
+ * @since 1.4
+ */
+public interface StreamingTradingApi {
+
+  /**
+   * Subscribes to order book updates for a given market. The listener is given the whole order
+   * book each time it changes.
+   *
+   * @param marketId the id of the market.
+   * @param listener the listener to send the updates to.
+   * @return the subscription.
+   * @throws ExchangeNetworkException if a network error occurred trying to connect to the exchange.
+   * @throws TradingApiException if the subscription failed for any reason other than a network
+   *     error.
+   */
+  MarketDataSubscription subscribeToOrderBook(
+      String marketId, MarketDataListener<MarketOrderBook> listener)
+      throws ExchangeNetworkException, TradingApiException;
+
+  /**
+   * Subscribes to ticker updates for a given market.
+   *
+   * @param marketId the id of the market.
+   * @param listener the listener to send the updates to.
+   * @return the subscription.
+   * @throws ExchangeNetworkException if a network error occurred trying to connect to the exchange.
+   * @throws TradingApiException if the subscription failed for any reason other than a network
+   *     error.
+   */
+  MarketDataSubscription subscribeToTicker(String marketId, MarketDataListener<Ticker> listener)
+      throws ExchangeNetworkException, TradingApiException;
+
+  /**
+   * Subscribes to the trades taking place on a given market.
+   *
+   * @param marketId the id of the market.
+   * @param listener the listener to send the trades to.
+   * @return the subscription.
+   * @throws ExchangeNetworkException if a network error occurred trying to connect to the exchange.
+   * @throws TradingApiException if the subscription failed for any reason other than a network
+   *     error.
+   */
+  MarketDataSubscription subscribeToTrades(
+      String marketId, MarketDataListener<MarketTrade> listener)
+      throws ExchangeNetworkException, TradingApiException;
+
+  /**
+   * Returns the latest order book for a given market from the local copy. No request is sent to
+   * the exchange.
+   *
+   * @param marketId the id of the market.
+   * @return the latest order book, or null if there is no order book subscription for the market
+   *     or the local copy is not up to date.
+   */
+  MarketOrderBook getLatestMarketOrders(String marketId);
+
+  /**
+   * Returns the latest ticker for a given market from the local copy. No request is sent to the
+   * exchange.
+   *
+   * @param marketId the id of the market.
+   * @return the latest ticker, or null if there is no ticker subscription for the market or no
+   *     ticker has been received yet.
+   */
+  Ticker getLatestTicker(String marketId);
+}
@@ -25,7 +25,12 @@ package com.gazbert.bxbot.trading.api;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * BX-bot's Trading API.
@@ -52,7 +57,7 @@ public interface TradingApi {
    * @since 1.0
    */
   default String getVersion() {
-    return "1.1";
+    return "1.6";
   }
 
   /**
@@ -99,6 +104,36 @@ public interface TradingApi {
   List<OpenOrder> getYourOpenOrders(String marketId)
       throws ExchangeNetworkException, TradingApiException;
 
+  /**
+   * Fetches <em>your</em> current open orders for several markets, i.e. the orders placed by the
+   * bot.
+   *
+   * <p>The default implementation calls {@link #getYourOpenOrders(String)} for each market.
+   * Exchange Adapters for exchanges that return the open orders for all markets in a single call
+   * should override this to make just the 1 call.
+   *
+   * @param marketIds the ids of the markets.
+   * @return your current open orders keyed by market id. There is an entry for every market
+   *     requested; it is empty if you have no open orders on that market.
+   * @throws ExchangeNetworkException if a network error occurred trying to connect to the exchange.
+   *     This is implementation specific for each Exchange Adapter - see the documentation for the
+   *     adapter you are using. You could retry the API call, or exit from your Trading Strategy and
+   *     let the Trading Engine execute your Trading Strategy at the next trade cycle.
+   * @throws TradingApiException if the API call failed for any reason other than a network error.
+   *     This means something bad as happened; you would probably want to wrap this exception in a
+   *     StrategyException and let the Trading Engine shutdown the bot immediately to prevent
+   *     unexpected losses.
+   * @since 1.2
+   */
+  default Map<String, List<OpenOrder>> getYourOpenOrdersForMarkets(Collection<String> marketIds)
+      throws ExchangeNetworkException, TradingApiException {
+    final Map<String, List<OpenOrder>> openOrders = new HashMap<>();
+    for (final String marketId : marketIds) {
+      openOrders.put(marketId, getYourOpenOrders(marketId));
+    }
+    return openOrders;
+  }
+
   /**
    * Apply trading API specific rounding rule.
    * Most exchanges use 8 decimal places, but Kraken uses 1.
@@ -111,6 +146,38 @@ public interface TradingApi {
     return value.setScale(decimals, RoundingMode.HALF_UP);
   }
 
+  /**
+   * Rounds a price to the market's tick size. This never calls the exchange: Exchange Adapters
+   * that know the tick size use their cached {@link MarketMetadata}, and until it has been fetched
+   * they round the same as {@link #roundValue(BigDecimal)}.
+   *
+   * <p>The default implementation rounds the same as {@link #roundValue(BigDecimal)}.
+   *
+   * @param marketId the id of the market.
+   * @param price the price.
+   * @return the rounded price.
+   * @since 1.6
+   */
+  default BigDecimal roundPrice(String marketId, BigDecimal price) {
+    return roundValue(price);
+  }
+
+  /**
+   * Rounds an order quantity to the market's lot size. This never calls the exchange: Exchange
+   * Adapters that know the lot size use their cached {@link MarketMetadata}, and until it has been
+   * fetched they round the same as {@link #roundValue(BigDecimal)}.
+   *
+   * <p>The default implementation rounds the same as {@link #roundValue(BigDecimal)}.
+   *
+   * @param marketId the id of the market.
+   * @param quantity the order quantity.
+   * @return the rounded quantity.
+   * @since 1.6
+   */
+  default BigDecimal roundQuantity(String marketId, BigDecimal quantity) {
+    return roundValue(quantity);
+  }
+
   /**
    * Places an order on the exchange.
    *
@@ -151,6 +218,115 @@ public interface TradingApi {
   boolean cancelOrder(String orderId, String marketId)
       throws ExchangeNetworkException, TradingApiException;
 
+  /**
+   * Places a batch of orders on the exchange.
+   *
+   * <p>The default implementation sends the orders in parallel using {@link
+   * AsyncTradingApi#createOrderAsync(String, OrderType, BigDecimal, BigDecimal)}. The Exchange
+   * Adapter's rate limiter still applies, so a large batch is spread out rather than sent all at
+   * once. Exchange Adapters for exchanges that can place several orders in a single call should
+   * override this to use it.
+   *
+   * @param orderRequests the orders to place.
+   * @return a result for each order, in the same order as the requests. A successful result holds
+   *     the id of the new order.
+   * @throws ExchangeNetworkException if a network error occurred sending the whole batch to the
+   *     exchange. Failures of individual orders are returned in their {@link OrderResult}.
+   * @throws TradingApiException if the whole batch failed for any reason other than a network
+   *     error. Failures of individual orders are returned in their {@link OrderResult}.
+   * @since 1.5
+   */
+  default List<OrderResult> createOrders(List<OrderRequest> orderRequests)
+      throws ExchangeNetworkException, TradingApiException {
+    final AsyncTradingApi asyncTradingApi = AsyncTradingApi.from(this);
+    final List<CompletableFuture<String>> requests = new ArrayList<>(orderRequests.size());
+    for (final OrderRequest orderRequest : orderRequests) {
+      requests.add(
+          asyncTradingApi.createOrderAsync(
+              orderRequest.getMarketId(),
+              orderRequest.getOrderType(),
+              orderRequest.getQuantity(),
+              orderRequest.getPrice()));
+    }
+    final List<OrderResult> orderResults = new ArrayList<>(requests.size());
+    for (final CompletableFuture<String> request : requests) {
+      try {
+        orderResults.add(OrderResult.succeeded(AsyncTradingApi.join(request)));
+      } catch (ExchangeNetworkException | TradingApiException e) {
+        orderResults.add(OrderResult.failed(null, e));
+      }
+    }
+    return orderResults;
+  }
+
+  /**
+   * Cancels a batch of your existing orders on the exchange.
+   *
+   * <p>The default implementation sends the cancellations in parallel using {@link
+   * AsyncTradingApi#cancelOrderAsync(String, String)}. The Exchange Adapter's rate limiter still
+   * applies. Exchange Adapters for exchanges that can cancel several orders in a single call should
+   * override this to use it.
+   *
+   * @param orderIds your order Ids.
+   * @param marketId the id of the market the orders were placed on, e.g. btc_usd
+   * @return a result for each order, in the same order as the order ids.
+   * @throws ExchangeNetworkException if a network error occurred sending the whole batch to the
+   *     exchange. Failures of individual orders are returned in their {@link OrderResult}.
+   * @throws TradingApiException if the whole batch failed for any reason other than a network
+   *     error. Failures of individual orders are returned in their {@link OrderResult}.
+   * @since 1.5
+   */
+  default List<OrderResult> cancelOrders(List<String> orderIds, String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    final AsyncTradingApi asyncTradingApi = AsyncTradingApi.from(this);
+    final List<CompletableFuture<Boolean>> requests = new ArrayList<>(orderIds.size());
+    for (final String orderId : orderIds) {
+      requests.add(asyncTradingApi.cancelOrderAsync(orderId, marketId));
+    }
+    final List<OrderResult> orderResults = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      final String orderId = orderIds.get(i);
+      try {
+        orderResults.add(
+            AsyncTradingApi.join(requests.get(i))
+                ? OrderResult.succeeded(orderId)
+                : OrderResult.failed(orderId, null));
+      } catch (ExchangeNetworkException | TradingApiException e) {
+        orderResults.add(OrderResult.failed(orderId, e));
+      }
+    }
+    return orderResults;
+  }
+
+  /**
+   * Cancels all of your open orders on a given market.
+   *
+   * <p>The default implementation fetches your open orders using {@link
+   * #getYourOpenOrders(String)} and cancels them using {@link #cancelOrders(List, String)}.
+   * Exchange Adapters for exchanges that can cancel all orders in a single call should override
+   * this to use it.
+   *
+   * @param marketId the id of the market.
+   * @return a result for each order that was open on the market.
+   * @throws ExchangeNetworkException if a network error occurred trying to connect to the exchange.
+   *     This is implementation specific for each Exchange Adapter - see the documentation for the
+   *     adapter you are using. You could retry the API call, or exit from your Trading Strategy and
+   *     let the Trading Engine execute your Trading Strategy at the next trade cycle.
+   * @throws TradingApiException if the API call failed for any reason other than a network error.
+   *     This means something bad as happened; you would probably want to wrap this exception in a
+   *     StrategyException and let the Trading Engine shutdown the bot immediately to prevent
+   *     unexpected losses.
+   * @since 1.5
+   */
+  default List<OrderResult> cancelAllOrders(String marketId)
+      throws ExchangeNetworkException, TradingApiException {
+    final List<String> orderIds = new ArrayList<>();
+    for (final OpenOrder openOrder : getYourOpenOrders(marketId)) {
+      orderIds.add(openOrder.getId());
+    }
+    return cancelOrders(orderIds, marketId);
+  }
+
   /**
    * Fetches the latest price for a given market. This is usually in BTC for altcoin markets and USD
    * for BTC/USD markets - see the Exchange Adapter documentation.
@@ -228,6 +404,36 @@ public interface TradingApi {
   BigDecimal getPercentageOfSellOrderTakenForExchangeFee(String marketId)
       throws TradingApiException, ExchangeNetworkException;
 
+  /**
+   * Returns the fees and trading rules for a given market id: see {@link MarketMetadata}.
+   *
+   * <p>Fees and trading rules rarely change, so Exchange Adapters that have to fetch them from the
+   * exchange cache them, and refresh them in the background.
+   *
+   * <p>The default implementation returns the buy and sell fees, with no tick or lot size.
+   *
+   * @param marketId the id of the market.
+   * @return the market metadata.
+   * @throws ExchangeNetworkException if a network error occurred trying to connect to the exchange.
+   *     This is implementation specific for each Exchange Adapter - see the documentation for the
+   *     adapter you are using. You could retry the API call, or exit from your Trading Strategy and
+   *     let the Trading Engine execute your Trading Strategy at the next trade cycle.
+   * @throws TradingApiException if the API call failed for any reason other than a network error.
+   *     This means something bad as happened; you would probably want to wrap this exception in a
+   *     StrategyException and let the Trading Engine shutdown the bot immediately to prevent
+   *     unexpected losses.
+   * @since 1.6
+   */
+  default MarketMetadata getMarketMetadata(String marketId)
+      throws TradingApiException, ExchangeNetworkException {
+    return new MarketMetadata(
+        marketId,
+        getPercentageOfBuyOrderTakenForExchangeFee(marketId),
+        getPercentageOfSellOrderTakenForExchangeFee(marketId),
+        null,
+        null);
+  }
+
   /**
    * Returns the exchange Ticker a given market id.
    *
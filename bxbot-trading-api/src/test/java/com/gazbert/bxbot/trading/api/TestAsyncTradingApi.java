@@ -0,0 +1,241 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 gazbert
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+
+/**
+ * Tests the asynchronous Trading API bridge and default methods.
+ *
+ * @author gazbert
+ */
+public class TestAsyncTradingApi {
+
+  private static final Executor SAME_THREAD = Runnable::run;
+
+  @Test
+  public void testFromReturnsAsyncTradingApiAsIs() {
+    final AsyncTradingApi asyncTradingApi =
+        AsyncTradingApi.bridge(new StubTradingApi(), SAME_THREAD);
+    assertSame(asyncTradingApi, AsyncTradingApi.from(asyncTradingApi));
+  }
+
+  @Test
+  public void testBridgeRunsBlockingCallsOnExecutor() throws Exception {
+    final StubTradingApi tradingApi = new StubTradingApi();
+    final CountDownLatch released = new CountDownLatch(1);
+    final Executor executor =
+        task -> {
+          final Thread thread =
+              new Thread(
+                  () -> {
+                    try {
+                      released.await();
+                    } catch (InterruptedException e) {
+                      Thread.currentThread().interrupt();
+                    }
+                    task.run();
+                  });
+          thread.start();
+        };
+
+    final CompletableFuture<BigDecimal> price =
+        AsyncTradingApi.bridge(tradingApi, executor).getLatestMarketPriceAsync("btc_usd");
+    assertFalse(price.isDone());
+
+    released.countDown();
+    assertEquals(StubTradingApi.PRICE, AsyncTradingApi.join(price));
+  }
+
+  @Test
+  public void testBridgeDelegatesBlockingCalls() throws Exception {
+    final StubTradingApi tradingApi = new StubTradingApi();
+    final AsyncTradingApi asyncTradingApi = AsyncTradingApi.bridge(tradingApi, SAME_THREAD);
+
+    assertEquals("stub", asyncTradingApi.getImplName());
+    assertEquals(StubTradingApi.PRICE, asyncTradingApi.getLatestMarketPrice("btc_usd"));
+    assertEquals("order-1", AsyncTradingApi.join(
+        asyncTradingApi.createOrderAsync("btc_usd", OrderType.BUY, BigDecimal.ONE,
+            StubTradingApi.PRICE)));
+    assertTrue(AsyncTradingApi.join(asyncTradingApi.cancelOrderAsync("order-1", "btc_usd")));
+  }
+
+  @Test
+  public void testBridgeDelegatesBatchCallsSoNativeBatchingIsUsed() throws Exception {
+    final List<OrderResult> nativeResults = Collections.singletonList(OrderResult.succeeded("1"));
+    final StubTradingApi tradingApi =
+        new StubTradingApi() {
+          @Override
+          public List<OrderResult> cancelAllOrders(String marketId) {
+            return nativeResults;
+          }
+        };
+    final AsyncTradingApi asyncTradingApi = AsyncTradingApi.bridge(tradingApi, SAME_THREAD);
+
+    assertSame(nativeResults, asyncTradingApi.cancelAllOrders("btc_usd"));
+  }
+
+  @Test
+  public void testGetMarketOrdersForMarketsAsyncKeysOrderBooksByMarket() throws Exception {
+    final AsyncTradingApi asyncTradingApi =
+        AsyncTradingApi.bridge(new StubTradingApi(), SAME_THREAD);
+
+    final Map<String, MarketOrderBook> marketOrderBooks =
+        AsyncTradingApi.join(
+            asyncTradingApi.getMarketOrdersForMarketsAsync(Arrays.asList("btc_usd", "ltc_usd")));
+
+    assertEquals(Arrays.asList("btc_usd", "ltc_usd"),
+        Arrays.asList(marketOrderBooks.keySet().toArray()));
+    assertEquals("btc_usd", marketOrderBooks.get("btc_usd").getMarketId());
+    assertEquals("ltc_usd", marketOrderBooks.get("ltc_usd").getMarketId());
+  }
+
+  @Test
+  public void testJoinRethrowsExchangeNetworkException() throws Exception {
+    final StubTradingApi tradingApi = new StubTradingApi();
+    tradingApi.failure = new ExchangeNetworkException("timeout");
+    try {
+      AsyncTradingApi.join(
+          AsyncTradingApi.bridge(tradingApi, SAME_THREAD).getBalanceInfoAsync());
+      fail("Expected ExchangeNetworkException");
+    } catch (ExchangeNetworkException e) {
+      assertSame(tradingApi.failure, e);
+    }
+  }
+
+  @Test
+  public void testJoinRethrowsTradingApiExceptionFromDependentStage() throws Exception {
+    final StubTradingApi tradingApi = new StubTradingApi();
+    tradingApi.failure = new TradingApiException("bad request");
+    try {
+      AsyncTradingApi.join(
+          AsyncTradingApi.bridge(tradingApi, SAME_THREAD)
+              .getBalanceInfoAsync()
+              .thenApply(BalanceInfo::getBalancesAvailable));
+      fail("Expected TradingApiException");
+    } catch (TradingApiException e) {
+      assertSame(tradingApi.failure, e);
+    }
+  }
+
+  @Test(expected = ExchangeNetworkException.class)
+  public void testRejectedCallFailsWithExchangeNetworkException() throws Exception {
+    final Executor rejecting =
+        task -> {
+          throw new RejectedExecutionException("full");
+        };
+    AsyncTradingApi.join(
+        AsyncTradingApi.bridge(new StubTradingApi(), rejecting).getTickerAsync("btc_usd"));
+  }
+
+  /** Test class. */
+  static class StubTradingApi implements TradingApi {
+
+    static final BigDecimal PRICE = new BigDecimal("9123.45");
+
+    Exception failure;
+
+    @Override
+    public String getImplName() {
+      return "stub";
+    }
+
+    @Override
+    public MarketOrderBook getMarketOrders(String marketId) {
+      return new MarketOrderBook() {
+        @Override
+        public String getMarketId() {
+          return marketId;
+        }
+
+        @Override
+        public List<MarketOrder> getSellOrders() {
+          return null;
+        }
+
+        @Override
+        public List<MarketOrder> getBuyOrders() {
+          return null;
+        }
+      };
+    }
+
+    @Override
+    public List<OpenOrder> getYourOpenOrders(String marketId) {
+      return null;
+    }
+
+    @Override
+    public String createOrder(
+        String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price) {
+      return "order-1";
+    }
+
+    @Override
+    public boolean cancelOrder(String orderId, String marketId) {
+      return true;
+    }
+
+    @Override
+    public BigDecimal getLatestMarketPrice(String marketId) {
+      return PRICE;
+    }
+
+    @Override
+    public BalanceInfo getBalanceInfo() throws ExchangeNetworkException, TradingApiException {
+      if (failure instanceof ExchangeNetworkException) {
+        throw (ExchangeNetworkException) failure;
+      }
+      if (failure instanceof TradingApiException) {
+        throw (TradingApiException) failure;
+      }
+      return null;
+    }
+
+    @Override
+    public BigDecimal getPercentageOfBuyOrderTakenForExchangeFee(String marketId) {
+      return null;
+    }
+
+    @Override
+    public BigDecimal getPercentageOfSellOrderTakenForExchangeFee(String marketId) {
+      return null;
+    }
+  }
+}
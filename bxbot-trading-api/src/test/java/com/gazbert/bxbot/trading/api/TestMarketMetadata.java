@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.bxbot.trading.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import org.junit.Test;
+
+/**
+ * Tests MarketMetadata is created and rounds as expected.
+ *
+ * @author gazbert
+ */
+public class TestMarketMetadata {
+
+  private static final String MARKET_ID = "btcusd";
+  private static final BigDecimal FEE = new BigDecimal("0.0025");
+
+  @Test
+  public void testCreationAndGetters() {
+    final MarketMetadata marketMetadata =
+        new MarketMetadata(MARKET_ID, FEE, FEE, new BigDecimal("0.01"), new BigDecimal("0.001"));
+
+    assertEquals(MARKET_ID, marketMetadata.getMarketId());
+    assertEquals(FEE, marketMetadata.getBuyFeePercentage());
+    assertEquals(FEE, marketMetadata.getSellFeePercentage());
+    assertEquals(new BigDecimal("0.01"), marketMetadata.getTickSize());
+    assertEquals(new BigDecimal("0.001"), marketMetadata.getLotSize());
+    assertEquals(2, marketMetadata.getPricePrecision());
+    assertEquals(3, marketMetadata.getQuantityPrecision());
+  }
+
+  @Test
+  public void testRoundsPriceToNearestTickAndQuantityDownToLot() {
+    final MarketMetadata marketMetadata =
+        new MarketMetadata(MARKET_ID, FEE, FEE, new BigDecimal("0.05"), new BigDecimal("0.001"));
+
+    assertEquals(new BigDecimal("100.05"), marketMetadata.roundPrice(new BigDecimal("100.034")));
+    assertEquals(new BigDecimal("100.00"), marketMetadata.roundPrice(new BigDecimal("100.02")));
+    assertEquals(new BigDecimal("1.234"), marketMetadata.roundQuantity(new BigDecimal("1.2349")));
+  }
+
+  @Test
+  public void testRoundsToDefaultDecimalPlacesWhenExchangeDoesNotProvideIncrements() {
+    final MarketMetadata marketMetadata = new MarketMetadata(MARKET_ID, FEE, FEE, null, null);
+
+    assertNull(marketMetadata.getTickSize());
+    assertEquals(MarketMetadata.DEFAULT_DECIMAL_PLACES, marketMetadata.getPricePrecision());
+    assertEquals(
+        new BigDecimal("1.23456789"), marketMetadata.roundPrice(new BigDecimal("1.234567891")));
+    assertEquals(
+        new BigDecimal("1.23456790"), marketMetadata.roundQuantity(new BigDecimal("1.234567895")));
+  }
+}
@@ -24,11 +24,21 @@
 package com.gazbert.bxbot.trading.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 
 /**
@@ -41,7 +51,7 @@ public class TestTradingApi {
   @Test
   public void testGetVersion() {
     final MyApiImpl myApi = new MyApiImpl();
-    assertEquals("1.1", myApi.getVersion());
+    assertEquals("1.6", myApi.getVersion());
   }
 
   @Test
@@ -61,6 +71,17 @@ public class TestTradingApi {
     assertNull(ticker.getTimestamp());
   }
 
+  @Test
+  public void testGetYourOpenOrdersForMarkets() throws Exception {
+    final MyApiImpl myApi = new MyApiImpl();
+    final Map<String, List<OpenOrder>> openOrders =
+        myApi.getYourOpenOrdersForMarkets(Arrays.asList("market-123", "market-456"));
+
+    assertEquals(2, openOrders.size());
+    assertTrue(openOrders.get("market-123").isEmpty());
+    assertTrue(openOrders.get("market-456").isEmpty());
+  }
+
   @Test
   public void testGetRoundedValue() throws Exception {
     final MyApiImpl myApi = new MyApiImpl();
@@ -70,9 +91,104 @@ public class TestTradingApi {
     );
   }
 
+  @Test
+  public void testGetMarketMetadataAndRoundingDefaults() throws Exception {
+    final MyApiImpl myApi = new MyApiImpl();
+    final MarketMetadata marketMetadata = myApi.getMarketMetadata("market-123");
+    assertEquals("market-123", marketMetadata.getMarketId());
+    assertNull(marketMetadata.getTickSize());
+    assertNull(marketMetadata.getLotSize());
+
+    assertEquals(
+        BigDecimal.valueOf(123.23414321),
+        myApi.roundPrice("market-123", BigDecimal.valueOf(123.234143212313)));
+    assertEquals(
+        BigDecimal.valueOf(123.23414321),
+        myApi.roundQuantity("market-123", BigDecimal.valueOf(123.234143212313)));
+  }
+
+  @Test
+  public void testCreateOrdersReturnsResultForEachOrderInOrder() throws Exception {
+    final MyApiImpl myApi = new MyApiImpl();
+    final List<OrderResult> orderResults =
+        myApi.createOrders(
+            Arrays.asList(
+                new OrderRequest("market-123", OrderType.BUY, BigDecimal.ONE, new BigDecimal("1")),
+                new OrderRequest(
+                    MyApiImpl.BAD_MARKET, OrderType.SELL, BigDecimal.ONE, new BigDecimal("2")),
+                new OrderRequest(
+                    "market-123", OrderType.SELL, BigDecimal.ONE, new BigDecimal("3"))));
+
+    assertEquals(3, orderResults.size());
+    assertTrue(orderResults.get(0).isSuccess());
+    assertEquals("order-1", orderResults.get(0).getOrderId());
+    assertFalse(orderResults.get(1).isSuccess());
+    assertNull(orderResults.get(1).getOrderId());
+    assertTrue(orderResults.get(1).getFailure() instanceof TradingApiException);
+    assertTrue(orderResults.get(2).isSuccess());
+    assertEquals("order-3", orderResults.get(2).getOrderId());
+  }
+
+  @Test
+  public void testCancelOrdersReturnsResultForEachOrderInOrder() throws Exception {
+    final MyApiImpl myApi = new MyApiImpl();
+    final List<OrderResult> orderResults =
+        myApi.cancelOrders(
+            Arrays.asList("order-1", MyApiImpl.UNKNOWN_ORDER_ID, MyApiImpl.BAD_ORDER_ID),
+            "market-123");
+
+    assertEquals(3, orderResults.size());
+    assertTrue(orderResults.get(0).isSuccess());
+    assertEquals("order-1", orderResults.get(0).getOrderId());
+    assertFalse(orderResults.get(1).isSuccess());
+    assertEquals(MyApiImpl.UNKNOWN_ORDER_ID, orderResults.get(1).getOrderId());
+    assertNull(orderResults.get(1).getFailure());
+    assertFalse(orderResults.get(2).isSuccess());
+    assertEquals(MyApiImpl.BAD_ORDER_ID, orderResults.get(2).getOrderId());
+    assertTrue(orderResults.get(2).getFailure() instanceof ExchangeNetworkException);
+  }
+
+  @Test
+  public void testCancelAllOrdersCancelsEveryOpenOrderOnMarket() throws Exception {
+    final MyApiImpl myApi = new MyApiImpl();
+    final List<OrderResult> orderResults = myApi.cancelAllOrders(MyApiImpl.BUSY_MARKET);
+
+    assertEquals(2, orderResults.size());
+    assertEquals("open-1", orderResults.get(0).getOrderId());
+    assertEquals("open-2", orderResults.get(1).getOrderId());
+    assertTrue(orderResults.get(0).isSuccess());
+    assertTrue(orderResults.get(1).isSuccess());
+    // The cancellations run in parallel, so they can reach the exchange in any order.
+    assertEquals(
+        new HashSet<>(Arrays.asList("open-1", "open-2")), new HashSet<>(myApi.cancelledOrderIds));
+
+    assertTrue(myApi.cancelAllOrders("market-123").isEmpty());
+  }
+
+  @Test
+  public void testCancelOrdersSendsCancellationsInParallel() throws Exception {
+    final MyApiImpl myApi = new MyApiImpl();
+
+    // Each cancellation waits for the other one to start, so they only succeed if run together.
+    final List<OrderResult> orderResults =
+        myApi.cancelOrders(Arrays.asList("order-1", "order-2"), MyApiImpl.PARALLEL_MARKET);
+
+    assertTrue(orderResults.get(0).isSuccess());
+    assertTrue(orderResults.get(1).isSuccess());
+  }
+
   /** Test class. */
   class MyApiImpl implements TradingApi {
 
+    static final String BAD_MARKET = "market-bad";
+    static final String BUSY_MARKET = "market-busy";
+    static final String PARALLEL_MARKET = "market-parallel";
+    static final String UNKNOWN_ORDER_ID = "order-unknown";
+    static final String BAD_ORDER_ID = "order-bad";
+
+    final List<String> cancelledOrderIds = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch parallelCancels = new CountDownLatch(2);
+
     @Override
     public String getImplName() {
       return null;
@@ -85,18 +201,39 @@ public class TestTradingApi {
 
     @Override
     public List<OpenOrder> getYourOpenOrders(String marketId) {
-      return null;
+      if (BUSY_MARKET.equals(marketId)) {
+        return Arrays.asList(new MyOpenOrder("open-1"), new MyOpenOrder("open-2"));
+      }
+      return new ArrayList<>();
     }
 
     @Override
     public String createOrder(
-        String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price) {
-      return null;
+        String marketId, OrderType orderType, BigDecimal quantity, BigDecimal price)
+        throws TradingApiException {
+      if (BAD_MARKET.equals(marketId)) {
+        throw new TradingApiException("Unknown market");
+      }
+      return "order-" + price.toPlainString();
     }
 
     @Override
-    public boolean cancelOrder(String orderId, String marketId) {
-      return false;
+    public boolean cancelOrder(String orderId, String marketId)
+        throws ExchangeNetworkException {
+      if (BAD_ORDER_ID.equals(orderId)) {
+        throw new ExchangeNetworkException("Timed out");
+      }
+      if (PARALLEL_MARKET.equals(marketId)) {
+        parallelCancels.countDown();
+        try {
+          return parallelCancels.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      cancelledOrderIds.add(orderId);
+      return !UNKNOWN_ORDER_ID.equals(orderId);
     }
 
     @Override
@@ -119,4 +256,54 @@ public class TestTradingApi {
       return null;
     }
   }
+
+  /** Test open order. */
+  static class MyOpenOrder implements OpenOrder {
+
+    private final String id;
+
+    MyOpenOrder(String id) {
+      this.id = id;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public Date getCreationDate() {
+      return null;
+    }
+
+    @Override
+    public String getMarketId() {
+      return null;
+    }
+
+    @Override
+    public OrderType getType() {
+      return null;
+    }
+
+    @Override
+    public BigDecimal getPrice() {
+      return null;
+    }
+
+    @Override
+    public BigDecimal getQuantity() {
+      return null;
+    }
+
+    @Override
+    public BigDecimal getOriginalQuantity() {
+      return null;
+    }
+
+    @Override
+    public BigDecimal getTotal() {
+      return null;
+    }
+  }
 }
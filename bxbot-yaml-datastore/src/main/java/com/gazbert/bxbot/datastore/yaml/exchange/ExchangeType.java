@@ -24,6 +24,7 @@
 package com.gazbert.bxbot.datastore.yaml.exchange;
 
 import com.gazbert.bxbot.domain.exchange.ExchangeConfig;
+import java.util.List;
 
 /**
  * Wraps Exchange config for dumping to and loading from YAML.
@@ -33,6 +34,7 @@ import com.gazbert.bxbot.domain.exchange.ExchangeConfig;
 public class ExchangeType {
 
   private ExchangeConfig exchange;
+  private List<ExchangeConfig> additionalExchanges;
 
   public ExchangeConfig getExchange() {
     return exchange;
@@ -41,4 +43,12 @@ public class ExchangeType {
   public void setExchange(ExchangeConfig exchange) {
     this.exchange = exchange;
   }
+
+  public List<ExchangeConfig> getAdditionalExchanges() {
+    return additionalExchanges;
+  }
+
+  public void setAdditionalExchanges(List<ExchangeConfig> additionalExchanges) {
+    this.additionalExchanges = additionalExchanges;
+  }
 }
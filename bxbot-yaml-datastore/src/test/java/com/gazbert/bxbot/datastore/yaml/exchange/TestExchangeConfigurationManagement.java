@@ -46,6 +46,8 @@ public class TestExchangeConfigurationManagement {
 
   private static final String VALID_YAML_CONFIG_FILENAME =
       "src/test/config/exchange/valid-exchange.yaml";
+  private static final String VALID_MULTIPLE_EXCHANGES_YAML_CONFIG_FILENAME =
+      "src/test/config/exchange/valid-multiple-exchanges.yaml";
   private static final String INVALID_YAML_CONFIG_FILENAME =
       "src/test/config/exchange/invalid-exchange.yaml";
   private static final String MISSING_XML_CONFIG_FILENAME =
@@ -117,6 +119,32 @@ public class TestExchangeConfigurationManagement {
         .isEqualTo(SELL_FEE_CONFIG_ITEM_VALUE);
   }
 
+  @Test
+  public void testLoadingYamlConfigFileWithAdditionalExchangesIsSuccessful() {
+    final ExchangeType exchangeType =
+        ConfigurationManager.loadConfig(
+            ExchangeType.class, VALID_MULTIPLE_EXCHANGES_YAML_CONFIG_FILENAME);
+
+    assertThat(exchangeType.getExchange().getName()).isEqualTo(EXCHANGE_NAME);
+    assertThat(exchangeType.getAdditionalExchanges().size()).isEqualTo(1);
+
+    final ExchangeConfig krakenConfig = exchangeType.getAdditionalExchanges().get(0);
+    assertThat(krakenConfig.getName()).isEqualTo("Kraken");
+    assertThat(krakenConfig.getAdapter())
+        .isEqualTo("com.gazbert.bxbot.exchanges.KrakenExchangeAdapter");
+    assertThat(krakenConfig.getAuthenticationConfig().get(API_KEY_CONFIG_ITEM_KEY))
+        .isEqualTo("your-kraken-api-key");
+    assertThat(krakenConfig.getNetworkConfig().getConnectionTimeout()).isEqualTo(20);
+    assertThat(krakenConfig.getOtherConfig().get(BUY_FEE_CONFIG_ITEM_KEY)).isEqualTo("0.26");
+  }
+
+  @Test
+  public void testLoadingYamlConfigFileWithoutAdditionalExchangesLeavesThemNull() {
+    final ExchangeType exchangeType =
+        ConfigurationManager.loadConfig(ExchangeType.class, VALID_YAML_CONFIG_FILENAME);
+    assertThat(exchangeType.getAdditionalExchanges()).isNull();
+  }
+
   @Test(expected = IllegalStateException.class)
   public void testLoadingMissingYamlConfigFileThrowsException() {
     ConfigurationManager.loadConfig(ExchangeType.class, MISSING_XML_CONFIG_FILENAME);